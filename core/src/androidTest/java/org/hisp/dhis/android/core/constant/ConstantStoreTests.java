@@ -30,7 +30,6 @@ package org.hisp.dhis.android.core.constant;
 
 import android.database.Cursor;
 
-import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
 import org.hisp.dhis.android.core.data.database.AbsStoreTestCase;
 import org.junit.Before;
 import org.junit.Test;
@@ -72,7 +71,7 @@ public class ConstantStoreTests extends AbsStoreTestCase {
 
         assertThat(rowId).isNotEqualTo(-1L); // Checks that the insert was successful (row ID would otherwise be -1)
 
-        assertThatCursor(cursor).hasRow(UID, CODE, NAME, DISPLAY_NAME, BaseIdentifiableObject.DATE_FORMAT.format(CREATED), BaseIdentifiableObject.DATE_FORMAT.format(LAST_UPDATED), VALUE);
+        assertThatCursor(cursor).hasRow(UID, CODE, NAME, DISPLAY_NAME, CREATED.getTime(), LAST_UPDATED.getTime(), VALUE);
         assertThatCursor(cursor).isExhausted();
     }
 
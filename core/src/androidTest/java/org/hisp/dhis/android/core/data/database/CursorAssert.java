@@ -32,6 +32,11 @@ import android.content.ContentValues;
 import android.database.Cursor;
 import android.support.annotation.NonNull;
 
+import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
+
+import java.text.ParseException;
+import java.util.Date;
+
 import static com.google.common.truth.Truth.assertThat;
 
 public final class CursorAssert {
@@ -56,7 +61,7 @@ public final class CursorAssert {
 
         assertThat(cursor.getColumnCount()).named("column count").isEqualTo(values.length);
         for (int index = 0; index < values.length; index++) {
-            assertThat(cursor.getString(index))
+            assertThat(value(index, values[index]))
                     .named("row " + row + " column '" + cursor.getColumnName(index) + "'")
                     .isEqualTo(values[index] == null ? values[index] : String.valueOf(values[index]));
         }
@@ -80,6 +85,19 @@ public final class CursorAssert {
         return this;
     }
 
+    private String value(int index, Object expected) {
+        // dates are stored as epoch milliseconds, while expected rows may list them formatted
+        if (expected instanceof String && cursor.getType(index) == Cursor.FIELD_TYPE_INTEGER) {
+            try {
+                BaseIdentifiableObject.DATE_FORMAT.parse((String) expected);
+                return BaseIdentifiableObject.DATE_FORMAT.format(new Date(cursor.getLong(index)));
+            } catch (ParseException notADate) {
+                // compared as it is
+            }
+        }
+        return cursor.getString(index);
+    }
+
     public void isExhausted() {
         if (cursor.moveToNext()) {
             StringBuilder data = new StringBuilder();
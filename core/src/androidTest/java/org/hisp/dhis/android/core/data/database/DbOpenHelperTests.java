@@ -28,22 +28,286 @@
 
 package org.hisp.dhis.android.core.data.database;
 
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
 import android.support.test.runner.AndroidJUnit4;
 
+import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
+import org.hisp.dhis.android.core.common.State;
+import org.hisp.dhis.android.core.event.EventModel;
+import org.hisp.dhis.android.core.option.OptionModel;
+import org.hisp.dhis.android.core.resource.ResourceModel;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityDataValueModel;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.text.ParseException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 import static com.google.common.truth.Truth.assertThat;
 
 @RunWith(AndroidJUnit4.class)
 public class DbOpenHelperTests {
-    private static final int DATABASE_TESTS_VERSION = 1;
+    private static final int DATABASE_TESTS_VERSION = 5;
+
+    private static final String DATE = "2017-03-10T12:34:56.789";
+    private static final String WAL_DATABASE = "wal_test.db";
 
     @Test
     public void databaseVersion_shouldHaveCorrespondingTests() {
-        // ToDo: tests for schema migration (requires some research to be done)
         // make sure that whenever database version is bumped,
         // corresponding schema migration tests are implemented
         assertThat(DATABASE_TESTS_VERSION).isEqualTo(DbOpenHelper.VERSION);
     }
+
+    @Test
+    public void upgrade_fromVersionOne_shouldConvertFormattedDatesToEpochMillis() throws ParseException {
+        SQLiteDatabase database = DbOpenHelper.create();
+
+        // the option table as it was created by version 1
+        database.execSQL("DROP TABLE " + OptionModel.TABLE);
+        database.execSQL("CREATE TABLE " + OptionModel.TABLE + " (" +
+                OptionModel.Columns.ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
+                OptionModel.Columns.UID + " TEXT NOT NULL UNIQUE," +
+                OptionModel.Columns.CODE + " TEXT," +
+                OptionModel.Columns.NAME + " TEXT," +
+                OptionModel.Columns.DISPLAY_NAME + " TEXT," +
+                OptionModel.Columns.CREATED + " TEXT," +
+                OptionModel.Columns.LAST_UPDATED + " TEXT," +
+                OptionModel.Columns.OPTION_SET + " TEXT NOT NULL);");
+        database.execSQL("INSERT INTO " + OptionModel.TABLE + " (" +
+                OptionModel.Columns.UID + ", " +
+                OptionModel.Columns.CREATED + ", " +
+                OptionModel.Columns.LAST_UPDATED + ", " +
+                OptionModel.Columns.OPTION_SET + ") VALUES ('test_uid', ?, NULL, 'test_option_set');",
+                new Object[]{DATE});
+
+        new DbOpenHelper(InstrumentationRegistry.getTargetContext(), null).onUpgrade(database, 1, 2);
+
+        Cursor cursor = database.rawQuery("SELECT " +
+                OptionModel.Columns.UID + ", " +
+                "typeof(" + OptionModel.Columns.CREATED + "), " +
+                OptionModel.Columns.CREATED + ", " +
+                OptionModel.Columns.LAST_UPDATED +
+                " FROM " + OptionModel.TABLE, null);
+        try {
+            assertThat(cursor.moveToFirst()).isTrue();
+            assertThat(cursor.getString(0)).isEqualTo("test_uid");
+            assertThat(cursor.getString(1)).isEqualTo("integer");
+            assertThat(cursor.getLong(2)).isEqualTo(BaseIdentifiableObject.DATE_FORMAT.parse(DATE).getTime());
+            assertThat(cursor.isNull(3)).isTrue();
+            assertThat(cursor.moveToNext()).isFalse();
+        } finally {
+            cursor.close();
+        }
+
+        // the indexes of the rebuilt table are created again
+        Cursor indexes = database.rawQuery("SELECT name FROM sqlite_master " +
+                "WHERE type = 'index' AND tbl_name = ? AND name LIKE '%_index'", new String[]{OptionModel.TABLE});
+        try {
+            assertThat(indexes.getCount()).isGreaterThan(0);
+        } finally {
+            indexes.close();
+        }
+    }
+
+    @Test
+    public void upgrade_fromVersionOne_shouldDropDatesWhichCannotBeParsed() throws ParseException {
+        SQLiteDatabase database = DbOpenHelper.create();
+
+        // the option table as it was created by version 1
+        database.execSQL("DROP TABLE " + OptionModel.TABLE);
+        database.execSQL("CREATE TABLE " + OptionModel.TABLE + " (" +
+                OptionModel.Columns.ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
+                OptionModel.Columns.UID + " TEXT NOT NULL UNIQUE," +
+                OptionModel.Columns.CREATED + " TEXT," +
+                OptionModel.Columns.LAST_UPDATED + " TEXT," +
+                OptionModel.Columns.OPTION_SET + " TEXT NOT NULL);");
+        database.execSQL("INSERT INTO " + OptionModel.TABLE + " (" +
+                OptionModel.Columns.UID + ", " +
+                OptionModel.Columns.CREATED + ", " +
+                OptionModel.Columns.LAST_UPDATED + ", " +
+                OptionModel.Columns.OPTION_SET + ") VALUES ('test_uid', 'not a date', ?, 'test_option_set');",
+                new Object[]{DATE});
+
+        new DbOpenHelper(InstrumentationRegistry.getTargetContext(), null).onUpgrade(database, 1, 2);
+
+        Cursor cursor = database.rawQuery("SELECT " +
+                OptionModel.Columns.CREATED + ", " +
+                OptionModel.Columns.LAST_UPDATED +
+                " FROM " + OptionModel.TABLE, null);
+        try {
+            assertThat(cursor.moveToFirst()).isTrue();
+            assertThat(cursor.isNull(0)).isTrue();
+            // the other dates of the row are converted anyway
+            assertThat(cursor.getLong(1)).isEqualTo(BaseIdentifiableObject.DATE_FORMAT.parse(DATE).getTime());
+            assertThat(cursor.moveToNext()).isFalse();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void upgrade_fromVersionTwo_shouldTrackStateOfDataValues() {
+        SQLiteDatabase database = DbOpenHelper.create();
+
+        // the data value table as it was created by version 2 and the event table, reduced to the columns the
+        // migration reads and indexes
+        database.execSQL("DROP TABLE " + TrackedEntityDataValueModel.TABLE);
+        database.execSQL("DROP TABLE " + EventModel.TABLE);
+        database.execSQL("CREATE TABLE " + EventModel.TABLE + " (" +
+                EventModel.Columns.UID + " TEXT NOT NULL UNIQUE," +
+                EventModel.Columns.ENROLLMENT_UID + " TEXT," +
+                EventModel.Columns.PROGRAM + " TEXT," +
+                EventModel.Columns.PROGRAM_STAGE + " TEXT," +
+                EventModel.Columns.ORGANISATION_UNIT + " TEXT," +
+                EventModel.Columns.STATE + " TEXT);");
+        database.execSQL("CREATE TABLE " + TrackedEntityDataValueModel.TABLE + " (" +
+                TrackedEntityDataValueModel.Columns.ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
+                TrackedEntityDataValueModel.Columns.EVENT + " TEXT NOT NULL," +
+                TrackedEntityDataValueModel.Columns.DATA_ELEMENT + " TEXT NOT NULL," +
+                TrackedEntityDataValueModel.Columns.VALUE + " TEXT);");
+        database.execSQL("INSERT INTO " + EventModel.TABLE + " (" +
+                EventModel.Columns.UID + ", " + EventModel.Columns.STATE + ") VALUES " +
+                "('synced_event', ?), ('changed_event', ?);",
+                new Object[]{State.SYNCED.name(), State.TO_UPDATE.name()});
+        database.execSQL("INSERT INTO " + TrackedEntityDataValueModel.TABLE + " (" +
+                TrackedEntityDataValueModel.Columns.EVENT + ", " +
+                TrackedEntityDataValueModel.Columns.DATA_ELEMENT + ") VALUES " +
+                "('synced_event', 'test_data_element'), ('changed_event', 'test_data_element');");
+
+        new DbOpenHelper(InstrumentationRegistry.getTargetContext(), null).onUpgrade(database, 2, 3);
+
+        Cursor cursor = database.rawQuery("SELECT " +
+                TrackedEntityDataValueModel.Columns.EVENT + ", " +
+                TrackedEntityDataValueModel.Columns.STATE +
+                " FROM " + TrackedEntityDataValueModel.TABLE +
+                " ORDER BY " + TrackedEntityDataValueModel.Columns.ID, null);
+        try {
+            assertThat(cursor.moveToFirst()).isTrue();
+            assertThat(cursor.getString(0)).isEqualTo("synced_event");
+            assertThat(cursor.getString(1)).isEqualTo(State.SYNCED.name());
+            assertThat(cursor.moveToNext()).isTrue();
+            assertThat(cursor.getString(0)).isEqualTo("changed_event");
+            assertThat(cursor.getString(1)).isEqualTo(State.TO_UPDATE.name());
+            assertThat(cursor.moveToNext()).isFalse();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void upgrade_fromVersionThree_shouldAddPagingColumnsOfResources() {
+        SQLiteDatabase database = DbOpenHelper.create();
+
+        // the resource table as it was created before paging
+        database.execSQL("DROP TABLE " + ResourceModel.TABLE);
+        database.execSQL("CREATE TABLE " + ResourceModel.TABLE + " (" +
+                ResourceModel.Columns.ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
+                ResourceModel.Columns.RESOURCE_TYPE + " TEXT NOT NULL," +
+                ResourceModel.Columns.LAST_SYNCED + " INTEGER);");
+        database.execSQL("INSERT INTO " + ResourceModel.TABLE + " (" +
+                ResourceModel.Columns.RESOURCE_TYPE + ", " + ResourceModel.Columns.LAST_SYNCED + ") " +
+                "VALUES ('test_resource', 1);");
+
+        new DbOpenHelper(InstrumentationRegistry.getTargetContext(), null).onUpgrade(database, 3, 4);
+
+        Cursor cursor = database.rawQuery("SELECT " +
+                ResourceModel.Columns.RESOURCE_TYPE + ", " +
+                ResourceModel.Columns.PAGING_KEY + ", " +
+                ResourceModel.Columns.LAST_PAGE + ", " +
+                ResourceModel.Columns.PAGING_STARTED +
+                " FROM " + ResourceModel.TABLE, null);
+        try {
+            assertThat(cursor.moveToFirst()).isTrue();
+            assertThat(cursor.getString(0)).isEqualTo("test_resource");
+            assertThat(cursor.isNull(1)).isTrue();
+            assertThat(cursor.isNull(2)).isTrue();
+            assertThat(cursor.isNull(3)).isTrue();
+            assertThat(cursor.moveToNext()).isFalse();
+        } finally {
+            cursor.close();
+        }
+
+        // databases which already have the columns are upgraded as well
+        new DbOpenHelper(InstrumentationRegistry.getTargetContext(), null).onUpgrade(database, 3, 4);
+    }
+
+    @Test
+    public void upgrade_fromVersionFour_shouldCreateIndexes() {
+        SQLiteDatabase database = DbOpenHelper.create();
+
+        // the option table as it was created without indexes
+        database.execSQL("DROP TABLE " + OptionModel.TABLE);
+        database.execSQL("CREATE TABLE " + OptionModel.TABLE + " (" +
+                OptionModel.Columns.ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
+                OptionModel.Columns.UID + " TEXT NOT NULL UNIQUE," +
+                OptionModel.Columns.OPTION_SET + " TEXT NOT NULL);");
+
+        new DbOpenHelper(InstrumentationRegistry.getTargetContext(), null).onUpgrade(database, 4, 5);
+
+        Cursor indexes = database.rawQuery("SELECT name FROM sqlite_master " +
+                "WHERE type = 'index' AND tbl_name = ? AND name LIKE '%_index'", new String[]{OptionModel.TABLE});
+        try {
+            assertThat(indexes.getCount()).isEqualTo(1);
+        } finally {
+            indexes.close();
+        }
+
+        // databases which already have the indexes are upgraded as well
+        new DbOpenHelper(InstrumentationRegistry.getTargetContext(), null).onUpgrade(database, 4, 5);
+    }
+
+    @Test
+    public void writeAheadLogging_shouldServeQueriesOfOtherThreads_whileTransactionIsOpen() throws Exception {
+        Context context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(WAL_DATABASE);
+        DbOpenHelper dbOpenHelper = new DbOpenHelper(context, WAL_DATABASE);
+        final DatabaseAdapter databaseAdapter = new SqLiteDatabaseAdapter(dbOpenHelper);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertThat(dbOpenHelper.isWriteAheadLoggingEnabled()).isTrue();
+            assertThat(queryString(databaseAdapter, "PRAGMA journal_mode")).isEqualTo("wal");
+
+            Transaction transaction = databaseAdapter.beginNewTransaction();
+            try {
+                dbOpenHelper.getWritableDatabase().execSQL("INSERT INTO " + ResourceModel.TABLE + " (" +
+                        ResourceModel.Columns.RESOURCE_TYPE + ") VALUES ('" + ResourceModel.Type.PROGRAM + "');");
+
+                // the reader neither waits for the transaction nor sees its uncommitted row
+                Future<String> count = executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return queryString(databaseAdapter, "SELECT COUNT(*) FROM " + ResourceModel.TABLE);
+                    }
+                });
+                assertThat(count.get(5, TimeUnit.SECONDS)).isEqualTo("0");
+
+                transaction.setSuccessful();
+            } finally {
+                transaction.end();
+            }
+            assertThat(queryString(databaseAdapter, "SELECT COUNT(*) FROM " + ResourceModel.TABLE)).isEqualTo("1");
+        } finally {
+            executor.shutdown();
+            dbOpenHelper.close();
+            context.deleteDatabase(WAL_DATABASE);
+        }
+    }
+
+    private static String queryString(DatabaseAdapter databaseAdapter, String sql) {
+        Cursor cursor = databaseAdapter.query(sql);
+        try {
+            cursor.moveToFirst();
+            return cursor.getString(0);
+        } finally {
+            cursor.close();
+        }
+    }
 }
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.data.database;
+
+import android.database.Cursor;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.hisp.dhis.android.core.enrollment.EnrollmentModel;
+import org.hisp.dhis.android.core.event.EventModel;
+import org.hisp.dhis.android.core.option.OptionModel;
+import org.hisp.dhis.android.core.program.ProgramStageDataElementModel;
+import org.hisp.dhis.android.core.program.ProgramStageSectionDataElementLinkModel;
+import org.hisp.dhis.android.core.resource.ResourceModel;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttributeValueModel;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityDataValueModel;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityInstanceModel;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+// runs EXPLAIN QUERY PLAN over the lookups issued by the stores and by cascading deletes,
+// and fails on any full table scan
+@RunWith(AndroidJUnit4.class)
+public class QueryPlanTests extends AbsStoreTestCase {
+    private static final String[] QUERIES = {
+            "SELECT * FROM " + OptionModel.TABLE +
+                    " WHERE " + OptionModel.Columns.OPTION_SET + " = 'uid'",
+            "SELECT * FROM " + ProgramStageDataElementModel.TABLE +
+                    " WHERE " + ProgramStageDataElementModel.Columns.PROGRAM_STAGE + " = 'uid'",
+            "UPDATE " + ProgramStageSectionDataElementLinkModel.TABLE +
+                    " SET " + ProgramStageSectionDataElementLinkModel.Columns.DATA_ELEMENT + " = 'uid'" +
+                    " WHERE " + ProgramStageSectionDataElementLinkModel.Columns.PROGRAM_STAGE_SECTION + " = 'uid'" +
+                    " AND " + ProgramStageSectionDataElementLinkModel.Columns.DATA_ELEMENT + " = 'uid'",
+            "SELECT * FROM " + TrackedEntityDataValueModel.TABLE +
+                    " WHERE " + TrackedEntityDataValueModel.Columns.EVENT + " = 'uid'",
+            "SELECT * FROM " + TrackedEntityAttributeValueModel.TABLE +
+                    " WHERE " + TrackedEntityAttributeValueModel.Columns.TRACKED_ENTITY_INSTANCE + " = 'uid'",
+            "SELECT * FROM " + EventModel.TABLE +
+                    " WHERE " + EventModel.Columns.STATE + " = 'TO_POST'",
+            "SELECT * FROM " + EventModel.TABLE +
+                    " WHERE " + EventModel.Columns.ENROLLMENT_UID + " = 'uid'",
+            "SELECT * FROM " + EnrollmentModel.TABLE +
+                    " WHERE " + EnrollmentModel.Columns.STATE + " = 'TO_POST'",
+            "SELECT * FROM " + TrackedEntityInstanceModel.TABLE +
+                    " WHERE " + TrackedEntityInstanceModel.Columns.STATE + " = 'TO_POST'",
+            "SELECT * FROM " + ResourceModel.TABLE +
+                    " WHERE " + ResourceModel.Columns.RESOURCE_TYPE + " = 'type'"
+    };
+
+    @Test
+    public void queries_shouldNotScanTables() {
+        for (String query : QUERIES) {
+            assertThat(scans(query)).named(query).isEmpty();
+        }
+    }
+
+    @Test
+    public void foreignKeys_shouldBeLookedUpThroughIndexes() {
+        Cursor tables = database().rawQuery("SELECT name FROM sqlite_master WHERE type = 'table'" +
+                " AND name NOT LIKE 'sqlite_%' AND name != 'android_metadata'", null);
+        try {
+            assertThat(tables.getCount()).isGreaterThan(0);
+            while (tables.moveToNext()) {
+                String table = tables.getString(0);
+                for (String column : foreignKeys(table)) {
+                    // the lookup which SQLite performs for every cascading delete
+                    String query = "SELECT * FROM " + table + " WHERE " + column + " = 'uid'";
+                    assertThat(scans(query)).named(query).isEmpty();
+                }
+            }
+        } finally {
+            tables.close();
+        }
+    }
+
+    @Test
+    public void indexes_shouldBeCreatedOnce() {
+        for (String createIndex : DbOpenHelper.CREATE_INDEXES) {
+            database().execSQL(createIndex);
+        }
+
+        Cursor indexes = database().rawQuery("SELECT name FROM sqlite_master WHERE type = 'index'" +
+                " AND name LIKE '%_index'", null);
+        try {
+            assertThat(indexes.getCount()).isEqualTo(DbOpenHelper.CREATE_INDEXES.length);
+        } finally {
+            indexes.close();
+        }
+    }
+
+    private List<String> foreignKeys(String table) {
+        List<String> columns = new ArrayList<>();
+        Cursor foreignKeys = database().rawQuery("PRAGMA foreign_key_list(" + table + ")", null);
+        try {
+            while (foreignKeys.moveToNext()) {
+                columns.add(foreignKeys.getString(foreignKeys.getColumnIndexOrThrow("from")));
+            }
+        } finally {
+            foreignKeys.close();
+        }
+        return columns;
+    }
+
+    private List<String> scans(String query) {
+        List<String> scans = new ArrayList<>();
+        Cursor plan = database().rawQuery("EXPLAIN QUERY PLAN " + query, null);
+        try {
+            int detail = plan.getColumnIndexOrThrow("detail");
+            while (plan.moveToNext()) {
+                // "SCAN TABLE x" before SQLite 3.36, "SCAN x" since then
+                if (plan.getString(detail).startsWith("SCAN")) {
+                    scans.add(plan.getString(detail));
+                }
+            }
+        } finally {
+            plan.close();
+        }
+        return scans;
+    }
+}
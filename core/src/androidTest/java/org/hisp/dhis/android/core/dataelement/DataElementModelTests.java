@@ -32,7 +32,6 @@ import android.content.ContentValues;
 import android.database.MatrixCursor;
 import android.support.test.runner.AndroidJUnit4;
 
-import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
 import org.hisp.dhis.android.core.common.ValueType;
 import org.hisp.dhis.android.core.dataelement.DataElementModel.Columns;
 import org.junit.Test;
@@ -69,7 +68,7 @@ public class DataElementModelTests {
 
     public DataElementModelTests() {
         this.date = new Date();
-        this.dateString = BaseIdentifiableObject.DATE_FORMAT.format(date);
+        this.dateString = String.valueOf(date.getTime());
     }
     @Test
     public void create_shouldConvertToDataElementModel() {
@@ -33,7 +33,6 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteConstraintException;
 import android.support.test.runner.AndroidJUnit4;
 
-import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
 import org.hisp.dhis.android.core.common.ValueType;
 import org.hisp.dhis.android.core.data.database.AbsStoreTestCase;
 import org.hisp.dhis.android.core.dataelement.DataElementModel.Columns;
@@ -102,7 +101,7 @@ public class DataElementStoreTests extends AbsStoreTestCase {
 
     public DataElementStoreTests() {
         this.date = new Date();
-        this.dateString = BaseIdentifiableObject.DATE_FORMAT.format(date);
+        this.dateString = String.valueOf(date.getTime());
     }
 
     @Override
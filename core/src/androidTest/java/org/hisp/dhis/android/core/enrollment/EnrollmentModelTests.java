@@ -33,7 +33,6 @@ import android.database.MatrixCursor;
 import android.support.test.runner.AndroidJUnit4;
 
 import org.hisp.dhis.android.core.AndroidTestUtils;
-import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
 import org.hisp.dhis.android.core.common.State;
 import org.hisp.dhis.android.core.enrollment.EnrollmentModel.Columns;
 import org.junit.Test;
@@ -61,7 +60,7 @@ public class EnrollmentModelTests {
 
     public EnrollmentModelTests() {
         this.date = new Date();
-        this.dateString = BaseIdentifiableObject.DATE_FORMAT.format(date);
+        this.dateString = String.valueOf(date.getTime());
     }
 
     @Test
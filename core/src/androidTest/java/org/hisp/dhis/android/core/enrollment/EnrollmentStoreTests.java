@@ -34,7 +34,6 @@ import android.database.sqlite.SQLiteConstraintException;
 import android.support.test.runner.AndroidJUnit4;
 
 import org.hisp.dhis.android.core.AndroidTestUtils;
-import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
 import org.hisp.dhis.android.core.common.State;
 import org.hisp.dhis.android.core.data.database.AbsStoreTestCase;
 import org.hisp.dhis.android.core.organisationunit.CreateOrganisationUnitUtils;
@@ -53,6 +52,7 @@ import org.junit.runner.RunWith;
 
 import java.io.IOException;
 import java.text.ParseException;
+import java.util.Collections;
 import java.util.Date;
 
 import static com.google.common.truth.Truth.assertThat;
@@ -101,7 +101,7 @@ public class EnrollmentStoreTests extends AbsStoreTestCase {
 
     public EnrollmentStoreTests() throws ParseException {
         this.date = new Date();
-        this.dateString = BaseIdentifiableObject.DATE_FORMAT.format(date);
+        this.dateString = String.valueOf(date.getTime());
     }
 
     @Override
@@ -163,6 +163,44 @@ public class EnrollmentStoreTests extends AbsStoreTestCase {
         ).isExhausted();
     }
 
+    @Test
+    public void insertAll_shouldPersistInDatabase() {
+        int inserted = store.insertAll(Collections.singletonList(EnrollmentModel.builder()
+                .uid(UID)
+                .created(date)
+                .lastUpdated(date)
+                .organisationUnit(ORGANISATION_UNIT)
+                .program(PROGRAM)
+                .dateOfEnrollment(date)
+                .dateOfIncident(date)
+                .followUp(FOLLOW_UP)
+                .enrollmentStatus(ENROLLMENT_STATUS)
+                .trackedEntityInstance(TRACKED_ENTITY_INSTANCE)
+                .latitude(LATITUDE)
+                .longitude(LONGITUDE)
+                .state(STATE)
+                .build()));
+
+        Cursor cursor = database().query(TABLE, PROJECTION, null, null, null, null, null);
+
+        assertThat(inserted).isEqualTo(1);
+        assertThatCursor(cursor).hasRow(
+                UID,
+                dateString,
+                dateString,
+                ORGANISATION_UNIT,
+                PROGRAM,
+                dateString,
+                dateString,
+                AndroidTestUtils.toInteger(FOLLOW_UP),
+                ENROLLMENT_STATUS,
+                TRACKED_ENTITY_INSTANCE,
+                LATITUDE,
+                LONGITUDE,
+                STATE
+        ).isExhausted();
+    }
+
     @Test
     public void insert_shouldPersistDeferrableInDatabase() {
         final String deferredOrganisationUnit = "deferredOrganisationUnit";
@@ -33,7 +33,6 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteConstraintException;
 import android.support.test.runner.AndroidJUnit4;
 
-import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
 import org.hisp.dhis.android.core.common.State;
 import org.hisp.dhis.android.core.data.database.AbsStoreTestCase;
 import org.hisp.dhis.android.core.event.EventModel.Columns;
@@ -46,6 +45,7 @@ import org.hisp.dhis.android.core.program.ProgramStageModel;
 import org.hisp.dhis.android.core.relationship.CreateRelationshipTypeUtils;
 import org.hisp.dhis.android.core.relationship.RelationshipTypeModel;
 import org.hisp.dhis.android.core.trackedentity.CreateTrackedEntityUtils;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityDataValueModel;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityModel;
 import org.junit.Before;
 import org.junit.Test;
@@ -53,7 +53,9 @@ import org.junit.runner.RunWith;
 
 import java.io.IOException;
 import java.text.ParseException;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.hisp.dhis.android.core.data.database.CursorAssert.assertThatCursor;
@@ -99,7 +101,7 @@ public class EventStoreTests extends AbsStoreTestCase {
 
     public EventStoreTests() throws ParseException {
         this.date = new Date();
-        this.dateString = BaseIdentifiableObject.DATE_FORMAT.format(date);
+        this.dateString = String.valueOf(date.getTime());
     }
 
     @Override
@@ -391,4 +393,140 @@ public class EventStoreTests extends AbsStoreTestCase {
         store.insert(EVENT_UID, ENROLLMENT_UID, date, date, STATUS, LATITUDE, LONGITUDE, PROGRAM, PROGRAM_STAGE,
                 null, date, date, date, STATE);
     }
+
+    @Test
+    public void queryEventsToUpload_shouldReturnEventsToPostOrUpdateAfterTheKey() {
+        insertEvent("posted_uid", State.TO_POST);
+        insertEvent("synced_uid", State.SYNCED);
+        insertEvent("updated_uid", State.TO_UPDATE);
+        insertEvent("error_uid", State.ERROR);
+        insertEvent("last_uid", State.TO_POST);
+
+        List<EventModel> firstPage = store.queryEventsToUpload(0, 2);
+        assertThat(firstPage).hasSize(2);
+        assertThat(firstPage.get(0).uid()).isEqualTo("posted_uid");
+        assertThat(firstPage.get(0).latitude()).isEqualTo(LATITUDE);
+        assertThat(firstPage.get(1).uid()).isEqualTo("updated_uid");
+
+        List<EventModel> secondPage = store.queryEventsToUpload(firstPage.get(1).id(), 2);
+        assertThat(secondPage).hasSize(1);
+        assertThat(secondPage.get(0).uid()).isEqualTo("last_uid");
+    }
+
+    @Test
+    public void setState_shouldOnlyUpdateTheGivenEvents() {
+        insertEvent("posted_uid", State.TO_POST);
+        insertEvent("updated_uid", State.TO_UPDATE);
+        insertEvent("other_uid", State.TO_POST);
+
+        int updated = store.setState(Arrays.asList("posted_uid", "updated_uid"), State.SYNCED);
+
+        assertThat(updated).isEqualTo(2);
+        Cursor cursor = database().query(EventModel.TABLE, new String[]{Columns.UID, Columns.STATE},
+                null, null, null, null, Columns.ID);
+        assertThatCursor(cursor)
+                .hasRow("posted_uid", State.SYNCED)
+                .hasRow("updated_uid", State.SYNCED)
+                .hasRow("other_uid", State.TO_POST)
+                .isExhausted();
+    }
+
+    @Test
+    public void setStateIfUnchanged_shouldNotUpdateEventsChangedSinceTheyHaveBeenRead() {
+        insertEvent("posted_uid", State.TO_POST);
+        insertEvent("deleted_uid", State.TO_DELETE);
+        insertEvent("updated_uid", State.TO_UPDATE);
+        EventModel.Builder read = EventModel.builder()
+                .program(PROGRAM)
+                .programStage(PROGRAM_STAGE)
+                .organisationUnit(ORGANISATION_UNIT)
+                .lastUpdated(date);
+
+        // the second event has been deleted and the third one updated since they have been read
+        int updated = store.setStateIfUnchanged(Arrays.asList(
+                read.uid("posted_uid").state(State.TO_POST).build(),
+                read.uid("deleted_uid").state(State.TO_POST).build(),
+                read.uid("updated_uid").state(State.TO_UPDATE).lastUpdated(new Date(0)).build()), State.SYNCED);
+
+        assertThat(updated).isEqualTo(1);
+        Cursor cursor = database().query(EventModel.TABLE, new String[]{Columns.UID, Columns.STATE},
+                null, null, null, null, Columns.ID);
+        assertThatCursor(cursor)
+                .hasRow("posted_uid", State.SYNCED)
+                .hasRow("deleted_uid", State.TO_DELETE)
+                .hasRow("updated_uid", State.TO_UPDATE)
+                .isExhausted();
+    }
+
+    @Test
+    public void setStateIfUnchanged_shouldNotSyncEventsWithValuesLeftToUpdate() {
+        insertEvent("updated_uid", State.TO_UPDATE);
+        ContentValues dataValue = new ContentValues();
+        dataValue.put(TrackedEntityDataValueModel.Columns.EVENT, "updated_uid");
+        dataValue.put(TrackedEntityDataValueModel.Columns.DATA_ELEMENT, "test_data_element");
+        dataValue.put(TrackedEntityDataValueModel.Columns.STATE, State.TO_UPDATE.name());
+        database().insert(TrackedEntityDataValueModel.TABLE, null, dataValue);
+        EventModel read = EventModel.builder()
+                .uid("updated_uid")
+                .program(PROGRAM)
+                .programStage(PROGRAM_STAGE)
+                .organisationUnit(ORGANISATION_UNIT)
+                .lastUpdated(date)
+                .state(State.TO_UPDATE)
+                .build();
+
+        int synced = store.setStateIfUnchanged(Arrays.asList(read), State.SYNCED);
+        int failed = store.setStateIfUnchanged(Arrays.asList(read), State.ERROR);
+
+        assertThat(synced).isEqualTo(0);
+        assertThat(failed).isEqualTo(1);
+    }
+
+    @Test
+    public void insertAll_shouldPersistAllEvents() {
+        EventModel.Builder builder = EventModel.builder()
+                .program(PROGRAM)
+                .programStage(PROGRAM_STAGE)
+                .organisationUnit(ORGANISATION_UNIT)
+                .status(STATUS)
+                .state(State.SYNCED);
+
+        int inserted = store.insertAll(Arrays.asList(builder.uid("first_uid").build(),
+                builder.uid("second_uid").build()));
+
+        assertThat(inserted).isEqualTo(2);
+        Cursor cursor = database().query(EventModel.TABLE, new String[]{Columns.UID, Columns.STATUS, Columns.STATE},
+                null, null, null, null, Columns.ID);
+        assertThatCursor(cursor)
+                .hasRow("first_uid", STATUS, State.SYNCED)
+                .hasRow("second_uid", STATUS, State.SYNCED)
+                .isExhausted();
+    }
+
+    @Test
+    public void queryUidsWithLocalChanges_shouldReturnTheGivenEventsWhichAreNotSynced() {
+        insertEvent("posted_uid", State.TO_POST);
+        insertEvent("synced_uid", State.SYNCED);
+        insertEvent("other_uid", State.TO_UPDATE);
+
+        assertThat(store.queryUidsWithLocalChanges(Arrays.asList("posted_uid", "synced_uid", "unknown_uid")))
+                .containsExactly("posted_uid");
+    }
+
+    @Test
+    public void delete_shouldDeleteTheGivenEvents() {
+        insertEvent("deleted_uid", State.SYNCED);
+        insertEvent("kept_uid", State.SYNCED);
+
+        int deleted = store.delete(Arrays.asList("deleted_uid", "unknown_uid"));
+
+        assertThat(deleted).isEqualTo(1);
+        Cursor cursor = database().query(EventModel.TABLE, new String[]{Columns.UID}, null, null, null, null, null);
+        assertThatCursor(cursor).hasRow("kept_uid").isExhausted();
+    }
+
+    private void insertEvent(String uid, State state) {
+        store.insert(uid, ENROLLMENT_UID, date, date, STATUS, LATITUDE, LONGITUDE, PROGRAM, PROGRAM_STAGE,
+                ORGANISATION_UNIT, date, date, date, state);
+    }
 }
@@ -32,7 +32,6 @@ import android.content.ContentValues;
 import android.database.MatrixCursor;
 import android.support.test.runner.AndroidJUnit4;
 
-import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
 import org.hisp.dhis.android.core.option.OptionModel.Columns;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -55,7 +54,7 @@ public class OptionModelTests {
 
     public OptionModelTests() {
         this.date = new Date();
-        this.dateString = BaseIdentifiableObject.DATE_FORMAT.format(date);
+        this.dateString = String.valueOf(date.getTime());
     }
 
     @Test
@@ -109,4 +108,16 @@ public class OptionModelTests {
         assertThat(contentValues.getAsString(Columns.OPTION_SET)).isEqualTo(OPTION_SET);
     }
 
+    @Test
+    public void boundColumns_shouldListAllColumnsButId() {
+        assertThat(OptionModel.boundColumns()).asList().containsExactly(
+                Columns.UID,
+                Columns.CODE,
+                Columns.NAME,
+                Columns.DISPLAY_NAME,
+                Columns.CREATED,
+                Columns.LAST_UPDATED,
+                Columns.OPTION_SET
+        ).inOrder();
+    }
 }
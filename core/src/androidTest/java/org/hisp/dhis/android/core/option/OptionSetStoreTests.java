@@ -41,6 +41,7 @@ import org.junit.Test;
 import java.io.IOException;
 import java.text.ParseException;
 import java.util.Date;
+import java.util.Map;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.hisp.dhis.android.core.data.database.CursorAssert.assertThatCursor;
@@ -90,8 +91,8 @@ public class OptionSetStoreTests extends AbsStoreTestCase {
         assertThat(rowId).isEqualTo(1L);
         assertThatCursor(cursor).hasRow(
                 UID, CODE, NAME,
-                DISPLAY_NAME, BaseIdentifiableObject.DATE_FORMAT.format(date),
-                BaseIdentifiableObject.DATE_FORMAT.format(date),
+                DISPLAY_NAME, date.getTime(),
+                date.getTime(),
                 VERSION, VALUE_TYPE).isExhausted();
     }
 
@@ -274,4 +275,36 @@ public class OptionSetStoreTests extends AbsStoreTestCase {
 //
 //    }
 
+    @Test
+    public void insertIfNotExists_shouldNotOverwriteOptionSet() {
+        store.insert(UID, CODE, NAME, DISPLAY_NAME, date, date, VERSION, VALUE_TYPE);
+
+        store.insertIfNotExists(UID);
+        store.insertIfNotExists("referenced_uid");
+
+        Cursor cursor = database().query(OptionSetModel.TABLE, new String[]{Columns.UID, Columns.NAME},
+                null, null, null, null, Columns.ID);
+        assertThatCursor(cursor).hasRow(UID, NAME).hasRow("referenced_uid", null).isExhausted();
+    }
+
+    @Test
+    public void upsert_shouldInsertAndThenUpdateOptionSet() {
+        store.upsert(UID, CODE, NAME, DISPLAY_NAME, date, date, VERSION, VALUE_TYPE);
+        store.upsert(UID, CODE, "updated_name", DISPLAY_NAME, date, date, VERSION, VALUE_TYPE);
+
+        Cursor cursor = database().query(OptionSetModel.TABLE, new String[]{Columns.UID, Columns.NAME},
+                null, null, null, null, null);
+        assertThatCursor(cursor).hasRow(UID, "updated_name").isExhausted();
+    }
+
+    @Test
+    public void queryVersions_shouldOnlyReturnDownloadedOptionSets() {
+        store.insert(UID, CODE, NAME, DISPLAY_NAME, date, date, VERSION, VALUE_TYPE);
+        store.insertIfNotExists("referenced_uid");
+
+        Map<String, Integer> versions = store.queryVersions();
+
+        assertThat(versions.size()).isEqualTo(1);
+        assertThat(versions.get(UID)).isEqualTo(VERSION);
+    }
 }
@@ -33,7 +33,6 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteConstraintException;
 import android.support.test.runner.AndroidJUnit4;
 
-import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
 import org.hisp.dhis.android.core.data.database.AbsStoreTestCase;
 import org.hisp.dhis.android.core.option.OptionModel.Columns;
 import org.junit.Before;
@@ -42,6 +41,7 @@ import org.junit.runner.RunWith;
 
 import java.io.IOException;
 import java.util.Date;
+import java.util.Map;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.hisp.dhis.android.core.data.database.CursorAssert.assertThatCursor;
@@ -68,7 +68,7 @@ public class OptionStoreTests extends AbsStoreTestCase {
 
     public OptionStoreTests() {
         this.date = new Date();
-        this.dateString = BaseIdentifiableObject.DATE_FORMAT.format(date);
+        this.dateString = String.valueOf(date.getTime());
     }
 
     private OptionStore store;
@@ -100,8 +100,8 @@ public class OptionStoreTests extends AbsStoreTestCase {
         assertThat(rowId).isEqualTo(1L);
         assertThatCursor(cursor).hasRow(
                 UID, CODE, NAME,
-                DISPLAY_NAME, BaseIdentifiableObject.DATE_FORMAT.format(date),
-                BaseIdentifiableObject.DATE_FORMAT.format(date), OPTION_SET_UID)
+                DISPLAY_NAME, date.getTime(),
+                date.getTime(), OPTION_SET_UID)
                 .isExhausted();
     }
 
@@ -120,8 +120,8 @@ public class OptionStoreTests extends AbsStoreTestCase {
         assertThat(rowId).isEqualTo(1L);
         assertThatCursor(cursor).hasRow(
                 UID, CODE, NAME,
-                DISPLAY_NAME, BaseIdentifiableObject.DATE_FORMAT.format(date),
-                BaseIdentifiableObject.DATE_FORMAT.format(date), OPTION_SET_UID)
+                DISPLAY_NAME, date.getTime(),
+                date.getTime(), OPTION_SET_UID)
                 .isExhausted();
     }
 
@@ -241,4 +241,16 @@ public class OptionStoreTests extends AbsStoreTestCase {
     public void delete_null_uid() {
         store.delete(null);
     }
+
+    @Test
+    public void queryLastUpdated_shouldReturnOptionsOfOptionSet() {
+        database().insert(OptionSetModel.TABLE, null, CreateOptionSetUtils.create(OPTION_SET_ID, OPTION_SET_UID));
+        store.insert(UID, CODE, NAME, DISPLAY_NAME, date, date, OPTION_SET_UID);
+
+        Map<String, Date> lastUpdated = store.queryLastUpdated(OPTION_SET_UID);
+
+        assertThat(lastUpdated.size()).isEqualTo(1);
+        assertThat(lastUpdated.get(UID)).isEqualTo(date);
+        assertThat(store.queryLastUpdated("another_option_set_uid")).isEmpty();
+    }
 }
@@ -31,7 +31,6 @@ package org.hisp.dhis.android.core.organisationunit;
 import android.content.ContentValues;
 import android.database.Cursor;
 
-import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
 import org.hisp.dhis.android.core.data.database.AbsStoreTestCase;
 import org.junit.Before;
 import org.junit.Test;
@@ -79,7 +78,7 @@ public class OrganisationUnitStoreTests extends AbsStoreTestCase {
 
     public OrganisationUnitStoreTests() {
         this.date = new Date();
-        this.dateString = BaseIdentifiableObject.DATE_FORMAT.format(date);
+        this.dateString = String.valueOf(date.getTime());
     }
 
     @Before
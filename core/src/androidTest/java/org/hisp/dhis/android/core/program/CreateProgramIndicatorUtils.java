@@ -30,7 +30,6 @@ package org.hisp.dhis.android.core.program;
 import android.content.ContentValues;
 import android.support.annotation.NonNull;
 
-import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
 import org.hisp.dhis.android.core.program.ProgramIndicatorModel.Columns;
 
 import java.util.Date;
@@ -59,8 +58,8 @@ public class CreateProgramIndicatorUtils {
         contentValues.put(Columns.CODE, CODE);
         contentValues.put(Columns.NAME, NAME);
         contentValues.put(Columns.DISPLAY_NAME, DISPLAY_NAME);
-        contentValues.put(Columns.CREATED, BaseIdentifiableObject.DATE_FORMAT.format(DATE));
-        contentValues.put(Columns.CREATED, BaseIdentifiableObject.DATE_FORMAT.format(DATE));
+        contentValues.put(Columns.CREATED, DATE.getTime());
+        contentValues.put(Columns.CREATED, DATE.getTime());
         contentValues.put(Columns.SHORT_NAME, SHORT_NAME);
         contentValues.put(Columns.DISPLAY_SHORT_NAME, DISPLAY_SHORT_NAME);
         contentValues.put(Columns.DESCRIPTION, DESCRIPTION);
@@ -35,6 +35,7 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
+import org.hisp.dhis.android.core.common.ChangeDetector;
 import org.hisp.dhis.android.core.common.Call;
 import org.hisp.dhis.android.core.common.Payload;
 import org.hisp.dhis.android.core.data.api.FieldsConverterFactory;
@@ -62,7 +63,10 @@ import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttributeHandler;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttributeModel;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttributeStore;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttributeStoreImpl;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityHandler;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityModel;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityStore;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityStoreImpl;
 import org.hisp.dhis.android.core.utils.HeaderUtils;
 import org.junit.After;
 import org.junit.Before;
@@ -143,10 +147,11 @@ public class ProgramCallIntegrationTests extends AbsStoreTestCase {
                 .addConverterFactory(JacksonConverterFactory.create(objectMapper))
                 .addConverterFactory(FieldsConverterFactory.create())
                 .build();
+        ChangeDetector changeDetector = new ChangeDetector(databaseAdapter());
         TrackedEntityAttributeStore trackedEntityAttributeStore =
                 new TrackedEntityAttributeStoreImpl(databaseAdapter());
         TrackedEntityAttributeHandler trackedEntityAttributeHandler =
-                new TrackedEntityAttributeHandler(trackedEntityAttributeStore);
+                new TrackedEntityAttributeHandler(trackedEntityAttributeStore, changeDetector);
 
         ProgramTrackedEntityAttributeStore programTrackedEntityAttributeStore =
                 new ProgramTrackedEntityAttributeStoreImpl(databaseAdapter());
@@ -154,26 +159,30 @@ public class ProgramCallIntegrationTests extends AbsStoreTestCase {
         ProgramTrackedEntityAttributeHandler programTrackedEntityAttributeHandler =
                 new ProgramTrackedEntityAttributeHandler(
                         programTrackedEntityAttributeStore,
-                        trackedEntityAttributeHandler
+                        trackedEntityAttributeHandler,
+                        changeDetector
                 );
 
         ProgramRuleVariableStore programRuleVariableStore =
                 new ProgramRuleVariableStoreImpl(databaseAdapter());
         ProgramRuleVariableHandler programRuleVariableHandler =
-                new ProgramRuleVariableHandler(programRuleVariableStore);
+                new ProgramRuleVariableHandler(programRuleVariableStore, changeDetector);
 
         ProgramIndicatorStore programIndicatorStore = new ProgramIndicatorStoreImpl(databaseAdapter());
         ProgramStageSectionProgramIndicatorLinkStore programStageSectionProgramIndicatorLinkStore =
                 new ProgramStageSectionProgramIndicatorLinkStoreImpl(databaseAdapter());
         ProgramIndicatorHandler programIndicatorHandler = new ProgramIndicatorHandler(
                 programIndicatorStore,
-                programStageSectionProgramIndicatorLinkStore
+                programStageSectionProgramIndicatorLinkStore,
+                changeDetector
         );
 
         ProgramRuleActionStore programRuleActionStore = new ProgramRuleActionStoreImpl(databaseAdapter());
-        ProgramRuleActionHandler programRuleActionHandler = new ProgramRuleActionHandler(programRuleActionStore);
+        ProgramRuleActionHandler programRuleActionHandler =
+                new ProgramRuleActionHandler(programRuleActionStore, changeDetector);
         ProgramRuleStore programRuleStore = new ProgramRuleStoreImpl(databaseAdapter());
-        ProgramRuleHandler programRuleHandler = new ProgramRuleHandler(programRuleStore, programRuleActionHandler);
+        ProgramRuleHandler programRuleHandler =
+                new ProgramRuleHandler(programRuleStore, programRuleActionHandler, changeDetector);
 
         OptionStore optionStore = new OptionStoreImpl(databaseAdapter());
         OptionHandler optionHandler = new OptionHandler(optionStore);
@@ -183,32 +192,37 @@ public class ProgramCallIntegrationTests extends AbsStoreTestCase {
 
 
         DataElementStore dataElementStore = new DataElementStoreImpl(databaseAdapter());
-        DataElementHandler dataElementHandler = new DataElementHandler(dataElementStore, optionSetHandler);
+        DataElementHandler dataElementHandler =
+                new DataElementHandler(dataElementStore, optionSetHandler, changeDetector);
         ProgramStageDataElementStore programStageDataElementStore =
                 new ProgramStageDataElementStoreImpl(databaseAdapter());
 
         ProgramStageDataElementHandler programStageDataElementHandler = new ProgramStageDataElementHandler(
-                programStageDataElementStore, dataElementHandler
+                programStageDataElementStore, dataElementHandler, changeDetector
         );
 
         ProgramStageSectionStore programStageSectionStore = new ProgramStageSectionStoreImpl(databaseAdapter());
         ProgramStageSectionHandler programStageSectionHandler = new ProgramStageSectionHandler(
                 programStageSectionStore,
                 new ProgramStageSectionDataElementLinkStoreImpl(databaseAdapter()),
-                programIndicatorHandler
+                programIndicatorHandler,
+                changeDetector
         );
 
         ProgramStageStore programStageStore = new ProgramStageStoreImpl(databaseAdapter());
         ProgramStageHandler programStageHandler = new ProgramStageHandler(
                 programStageStore,
                 programStageSectionHandler,
-                programStageDataElementHandler
+                programStageDataElementHandler,
+                changeDetector
         );
 
         RelationshipTypeStore relationshipStore = new RelationshipTypeStoreImpl(databaseAdapter());
-        RelationshipTypeHandler relationshipTypeHandler = new RelationshipTypeHandler(relationshipStore);
+        RelationshipTypeHandler relationshipTypeHandler =
+                new RelationshipTypeHandler(relationshipStore, changeDetector);
         ProgramService programService = retrofit.create(ProgramService.class);
         ProgramStore programStore = new ProgramStoreImpl(databaseAdapter());
+        TrackedEntityStore trackedEntityStore = new TrackedEntityStoreImpl(databaseAdapter());
 
 
         ProgramHandler programHandler = new ProgramHandler(
@@ -218,7 +232,9 @@ public class ProgramCallIntegrationTests extends AbsStoreTestCase {
                 programIndicatorHandler,
                 programRuleHandler,
                 programTrackedEntityAttributeHandler,
-                relationshipTypeHandler);
+                relationshipTypeHandler,
+                new TrackedEntityHandler(trackedEntityStore),
+                changeDetector);
 
         ResourceStore resourceStore = new ResourceStoreImpl(databaseAdapter());
         ResourceHandler resourceHandler = new ResourceHandler(resourceStore);
@@ -236,7 +252,7 @@ public class ProgramCallIntegrationTests extends AbsStoreTestCase {
                 trackedEntityAttributeStore, programTrackedEntityAttributeStore, programRuleVariableStore,
                 programIndicatorStore, programStageSectionProgramIndicatorLinkStore, programRuleActionStore,
                 programRuleStore, optionStore, optionSetStore, dataElementStore, programStageDataElementStore,
-                programStageSectionStore, programStageStore, relationshipStore
+                programStageSectionStore, programStageStore, relationshipStore, trackedEntityStore
         );
     }
 
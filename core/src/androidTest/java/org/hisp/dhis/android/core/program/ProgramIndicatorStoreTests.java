@@ -32,7 +32,6 @@ import android.content.ContentValues;
 import android.database.Cursor;
 import android.support.test.runner.AndroidJUnit4;
 
-import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
 import org.hisp.dhis.android.core.data.database.AbsStoreTestCase;
 import org.hisp.dhis.android.core.program.ProgramIndicatorModel.Columns;
 import org.junit.Before;
@@ -129,8 +128,8 @@ public class ProgramIndicatorStoreTests extends AbsStoreTestCase {
                         CODE,
                         NAME,
                         DISPLAY_NAME,
-                        BaseIdentifiableObject.DATE_FORMAT.format(CREATED),
-                        BaseIdentifiableObject.DATE_FORMAT.format(LAST_UPDATED),
+                        CREATED.getTime(),
+                        LAST_UPDATED.getTime(),
                         SHORT_NAME,
                         DISPLAY_SHORT_NAME,
                         DESCRIPTION,
@@ -144,8 +144,8 @@ public class ProgramRuleActionModelTests {
         assertThat(contentValues.getAsString(ProgramRuleActionModel.Columns.CODE)).isEqualTo(CODE);
         assertThat(contentValues.getAsString(ProgramRuleActionModel.Columns.NAME)).isEqualTo(NAME);
         assertThat(contentValues.getAsString(ProgramRuleActionModel.Columns.DISPLAY_NAME)).isEqualTo(DISPLAY_NAME);
-        assertThat(contentValues.getAsString(ProgramRuleActionModel.Columns.CREATED)).isEqualTo(DATE);
-        assertThat(contentValues.getAsString(ProgramRuleActionModel.Columns.LAST_UPDATED)).isEqualTo(DATE);
+        assertThat(contentValues.getAsLong(ProgramRuleActionModel.Columns.CREATED)).isEqualTo(date.getTime());
+        assertThat(contentValues.getAsLong(ProgramRuleActionModel.Columns.LAST_UPDATED)).isEqualTo(date.getTime());
         assertThat(contentValues.getAsString(ProgramRuleActionModel.Columns.DATA)).isEqualTo(DATA);
         assertThat(contentValues.getAsString(ProgramRuleActionModel.Columns.CONTENT)).isEqualTo(CONTENT);
         assertThat(contentValues.getAsString(ProgramRuleActionModel.Columns.LOCATION)).isEqualTo(LOCATION);
@@ -33,7 +33,6 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteConstraintException;
 import android.support.test.runner.AndroidJUnit4;
 
-import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
 import org.hisp.dhis.android.core.data.database.AbsStoreTestCase;
 import org.hisp.dhis.android.core.program.ProgramRuleModel.Columns;
 import org.hisp.dhis.android.core.relationship.CreateRelationshipTypeUtils;
@@ -89,7 +88,7 @@ public class ProgramRuleStoreTests extends AbsStoreTestCase {
 
     public ProgramRuleStoreTests() {
         this.date = new Date();
-        this.dateString = BaseIdentifiableObject.DATE_FORMAT.format(date);
+        this.dateString = String.valueOf(date.getTime());
     }
 
     @Override
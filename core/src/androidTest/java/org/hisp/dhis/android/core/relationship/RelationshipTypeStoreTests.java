@@ -109,8 +109,8 @@ public class RelationshipTypeStoreTests extends AbsStoreTestCase {
                 CODE,
                 NAME,
                 DISPLAY_NAME,
-                BaseIdentifiableObject.DATE_FORMAT.format(date),
-                BaseIdentifiableObject.DATE_FORMAT.format(date),
+                date.getTime(),
+                date.getTime(),
                 A_IS_TO_B,
                 B_IS_TO_A
         ).isExhausted();
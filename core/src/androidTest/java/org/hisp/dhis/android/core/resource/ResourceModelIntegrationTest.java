@@ -21,14 +21,18 @@ public class ResourceModelIntegrationTest {
     // timestamp
     private static final String DATE = "2017-01-18T13:39:00.000";
 
+    private static final String PAGING_KEY = "test_paging_key";
+    private static final Integer LAST_PAGE = 3;
+
     @Test
     public void create_shouldConvertToModel() throws Exception {
         MatrixCursor matrixCursor = new MatrixCursor(new String[]{
-                Columns.ID, Columns.RESOURCE_TYPE, Columns.LAST_SYNCED
+                Columns.ID, Columns.RESOURCE_TYPE, Columns.LAST_SYNCED,
+                Columns.PAGING_KEY, Columns.LAST_PAGE, Columns.PAGING_STARTED
         });
 
         matrixCursor.addRow(new Object[]{
-                ID, RESOURCE_TYPE, DATE
+                ID, RESOURCE_TYPE, DATE, PAGING_KEY, LAST_PAGE, DATE
         });
 
         matrixCursor.moveToFirst();
@@ -39,6 +43,9 @@ public class ResourceModelIntegrationTest {
         assertThat(resource.id()).isEqualTo(ID);
         assertThat(resource.resourceType()).isEqualTo(RESOURCE_TYPE);
         assertThat(resource.lastSynced()).isEqualTo(timeStamp);
+        assertThat(resource.pagingKey()).isEqualTo(PAGING_KEY);
+        assertThat(resource.lastPage()).isEqualTo(LAST_PAGE);
+        assertThat(resource.pagingStarted()).isEqualTo(timeStamp);
     }
 
     @Test
@@ -48,12 +55,18 @@ public class ResourceModelIntegrationTest {
                 .id(ID)
                 .resourceType(RESOURCE_TYPE)
                 .lastSynced(timeStamp)
+                .pagingKey(PAGING_KEY)
+                .lastPage(LAST_PAGE)
+                .pagingStarted(timeStamp)
                 .build();
 
         ContentValues contentValues = resource.toContentValues();
 
         assertThat(contentValues.getAsLong(Columns.ID)).isEqualTo(ID);
         assertThat(contentValues.getAsString(Columns.RESOURCE_TYPE)).isEqualTo(RESOURCE_TYPE);
-        assertThat(contentValues.getAsString(Columns.LAST_SYNCED)).isEqualTo(DATE);
+        assertThat(contentValues.getAsLong(Columns.LAST_SYNCED)).isEqualTo(timeStamp.getTime());
+        assertThat(contentValues.getAsString(Columns.PAGING_KEY)).isEqualTo(PAGING_KEY);
+        assertThat(contentValues.getAsInteger(Columns.LAST_PAGE)).isEqualTo(LAST_PAGE);
+        assertThat(contentValues.getAsLong(Columns.PAGING_STARTED)).isEqualTo(timeStamp.getTime());
     }
 }
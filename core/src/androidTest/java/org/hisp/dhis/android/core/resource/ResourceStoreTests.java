@@ -34,7 +34,7 @@ public class ResourceStoreTests extends AbsStoreTestCase {
 
     public ResourceStoreTests() throws ParseException {
         this.date = new Date();
-        this.dateString = BaseIdentifiableObject.DATE_FORMAT.format(date);
+        this.dateString = String.valueOf(date.getTime());
 //        this.date2 = BaseIdentifiableObject.DATE_FORMAT.parse(dateString2);
     }
 
@@ -114,7 +114,7 @@ public class ResourceStoreTests extends AbsStoreTestCase {
         String lastUpdated = store.getLastUpdated(RESOURCE_TYPE);
 
         assertThat(lastUpdated).isNotNull();
-        assertThat(lastUpdated).isEqualTo(dateString);
+        assertThat(lastUpdated).isEqualTo(BaseIdentifiableObject.DATE_FORMAT.format(date));
     }
 
     @Test
@@ -123,6 +123,38 @@ public class ResourceStoreTests extends AbsStoreTestCase {
         assertThat(lastUpdated).isNull();
     }
 
+    @Test
+    public void updatePaging_shouldUpdateExisting() {
+        database().insert(ResourceModel.TABLE, null, createResource(RESOURCE_TYPE.name(), dateString2));
+
+        int returnValue = store.updatePaging(RESOURCE_TYPE.name(), "paging_key", 2, date);
+
+        ResourceModel resource = store.getResource(RESOURCE_TYPE);
+        assertThat(returnValue).isEqualTo(1);
+        assertThat(resource.pagingKey()).isEqualTo("paging_key");
+        assertThat(resource.lastPage()).isEqualTo(2);
+        assertThat(resource.pagingStarted()).isEqualTo(date);
+        assertThat(BaseIdentifiableObject.DATE_FORMAT.format(resource.lastSynced())).isEqualTo(dateString2);
+    }
+
+    @Test
+    public void update_shouldDiscardPaging() {
+        database().insert(ResourceModel.TABLE, null, createResource(RESOURCE_TYPE.name(), dateString2));
+        store.updatePaging(RESOURCE_TYPE.name(), "paging_key", 2, date);
+
+        store.update(RESOURCE_TYPE.name(), date, RESOURCE_TYPE.name());
+
+        ResourceModel resource = store.getResource(RESOURCE_TYPE);
+        assertThat(resource.pagingKey()).isNull();
+        assertThat(resource.lastPage()).isNull();
+        assertThat(resource.pagingStarted()).isNull();
+    }
+
+    @Test
+    public void getResource_shouldReturnNull_IfNotExisting() {
+        assertThat(store.getResource(RESOURCE_TYPE)).isNull();
+    }
+
     private ContentValues createResource(String resourceName, String dateString) {
         ContentValues resource = new ContentValues();
         resource.put(Columns.RESOURCE_TYPE, resourceName);
@@ -89,7 +89,7 @@ public class SystemInfoStoreTests extends AbsStoreTestCase {
 
         assertThat(rowId).isEqualTo(1L);
         assertThatCursor(cursor).hasRow(
-                BaseIdentifiableObject.DATE_FORMAT.format(date),
+                date.getTime(),
                 DATE_FORMAT,
                 VERSION,
                 CONTEXT_PATH
@@ -116,7 +116,7 @@ public class SystemInfoStoreTests extends AbsStoreTestCase {
         cursor = database().query(SystemInfoModel.TABLE, SYSTEM_INFO_PROJECTION, null, null, null, null, null);
 
         assertThatCursor(cursor).hasRow(
-                BaseIdentifiableObject.DATE_FORMAT.format(newDate),
+                newDate.getTime(),
                 DATE_FORMAT,
                 VERSION,
                 CONTEXT_PATH
@@ -41,6 +41,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import java.io.IOException;
+import java.util.Collections;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.hisp.dhis.android.core.data.database.CursorAssert.assertThatCursor;
@@ -97,6 +98,23 @@ public class TrackedEntityAttributeValueStoreTests extends AbsStoreTestCase {
                 .isExhausted();
     }
 
+    @Test
+    public void insertAll_shouldPersistTrackedEntityAttributeValuesInDatabase() {
+        int inserted = store.insertAll(Collections.singletonList(TrackedEntityAttributeValueModel.builder()
+                .state(STATE)
+                .value(VALUE)
+                .trackedEntityAttribute(TRACKED_ENTITY_ATTRIBUTE)
+                .trackedEntityInstance(TRACKED_ENTITY_INSTANCE)
+                .build()));
+
+        Cursor cursor = database().query(TrackedEntityAttributeValueModel.TABLE,
+                PROJECTION, null, null, null, null, null);
+
+        assertThat(inserted).isEqualTo(1);
+        assertThatCursor(cursor).hasRow(STATE, VALUE, TRACKED_ENTITY_ATTRIBUTE, TRACKED_ENTITY_INSTANCE)
+                .isExhausted();
+    }
+
     @Test
     public void insert_shouldPersistDeferrableTrackedEntityAttributeValueInDatabase() {
         final String deferredTrackedEntityAttribute = "deferredTrackedEntityAttribute";
@@ -135,6 +153,46 @@ public class TrackedEntityAttributeValueStoreTests extends AbsStoreTestCase {
                 .isExhausted();
     }
 
+    @Test
+    public void setValue_shouldUpdateValueAndMarkItAndItsInstanceAsChanged() {
+        store.insert(STATE, VALUE, TRACKED_ENTITY_ATTRIBUTE, TRACKED_ENTITY_INSTANCE);
+        setInstanceState(State.SYNCED);
+
+        int updated = store.setValue(TRACKED_ENTITY_INSTANCE, TRACKED_ENTITY_ATTRIBUTE, "changed_value");
+
+        assertThat(updated).isEqualTo(1);
+        Cursor cursor = database().query(TrackedEntityAttributeValueModel.TABLE,
+                PROJECTION, null, null, null, null, null);
+        assertThatCursor(cursor)
+                .hasRow(State.TO_UPDATE, "changed_value", TRACKED_ENTITY_ATTRIBUTE, TRACKED_ENTITY_INSTANCE)
+                .isExhausted();
+        assertThatCursor(queryInstanceState()).hasRow(State.TO_UPDATE.name()).isExhausted();
+    }
+
+    @Test
+    public void setValue_shouldInsertMissingValue() {
+        setInstanceState(State.SYNCED);
+
+        int updated = store.setValue(TRACKED_ENTITY_INSTANCE, TRACKED_ENTITY_ATTRIBUTE, VALUE);
+
+        assertThat(updated).isEqualTo(1);
+        Cursor cursor = database().query(TrackedEntityAttributeValueModel.TABLE,
+                PROJECTION, null, null, null, null, null);
+        assertThatCursor(cursor).hasRow(State.TO_UPDATE, VALUE, TRACKED_ENTITY_ATTRIBUTE, TRACKED_ENTITY_INSTANCE)
+                .isExhausted();
+        assertThatCursor(queryInstanceState()).hasRow(State.TO_UPDATE.name()).isExhausted();
+    }
+
+    @Test
+    public void setValue_shouldKeepStateOfInstanceWhichHasNotBeenUploaded() {
+        setInstanceState(State.TO_POST);
+
+        store.setValue(TRACKED_ENTITY_INSTANCE, TRACKED_ENTITY_ATTRIBUTE, VALUE);
+
+        // an instance which has not been uploaded yet is uploaded as a whole anyway
+        assertThatCursor(queryInstanceState()).hasRow(State.TO_POST.name()).isExhausted();
+    }
+
     @Test(expected = SQLiteConstraintException.class)
     public void exception_persistTrackedEntityAttributeValueWithInvalidTrackedEntityAttribute() {
         store.insert(STATE, VALUE, "wrong", TRACKED_ENTITY_INSTANCE);
@@ -191,4 +249,15 @@ public class TrackedEntityAttributeValueStoreTests extends AbsStoreTestCase {
     public void insert_null_trackedEntityInstance() {
         store.insert(STATE, VALUE, TRACKED_ENTITY_ATTRIBUTE, null);
     }
-}
\ No newline at end of file
+
+    private void setInstanceState(State state) {
+        ContentValues instanceState = new ContentValues();
+        instanceState.put(TrackedEntityInstanceModel.Columns.STATE, state.name());
+        database().update(TrackedEntityInstanceModel.TABLE, instanceState, null, null);
+    }
+
+    private Cursor queryInstanceState() {
+        return database().query(TrackedEntityInstanceModel.TABLE,
+                new String[]{TrackedEntityInstanceModel.Columns.STATE}, null, null, null, null, null);
+    }
+}
@@ -32,7 +32,7 @@ import android.content.ContentValues;
 import android.database.MatrixCursor;
 import android.support.test.runner.AndroidJUnit4;
 
-import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
+import org.hisp.dhis.android.core.common.State;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityDataValueModel.Columns;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -50,13 +50,14 @@ public class TrackedEntityDataValueModelTests {
     private static final String STORED_BY = "test_storedBy";
     private static final String VALUE = "test_value";
     private static final Boolean PROVIDED_ELSEWHERE = false;
+    private static final State STATE = State.TO_UPDATE;
 
     private final Date date;
     private final String dateString;
 
     public TrackedEntityDataValueModelTests() {
         this.date = new Date();
-        this.dateString = BaseIdentifiableObject.DATE_FORMAT.format(date);
+        this.dateString = String.valueOf(date.getTime());
     }
 
     @Test
@@ -69,10 +70,12 @@ public class TrackedEntityDataValueModelTests {
                 Columns.VALUE,
                 Columns.CREATED,
                 Columns.LAST_UPDATED,
-                Columns.PROVIDED_ELSEWHERE
+                Columns.PROVIDED_ELSEWHERE,
+                Columns.STATE
         });
         cursor.addRow(new Object[]{
-                ID, EVENT, DATA_ELEMENT, STORED_BY, VALUE, dateString, dateString, toInteger(PROVIDED_ELSEWHERE)});
+                ID, EVENT, DATA_ELEMENT, STORED_BY, VALUE, dateString, dateString, toInteger(PROVIDED_ELSEWHERE),
+                STATE.name()});
         cursor.moveToFirst();
 
         TrackedEntityDataValueModel model = TrackedEntityDataValueModel.create(cursor);
@@ -86,6 +89,7 @@ public class TrackedEntityDataValueModelTests {
         assertThat(model.created()).isEqualTo(date);
         assertThat(model.lastUpdated()).isEqualTo(date);
         assertThat(model.providedElsewhere()).isEqualTo(PROVIDED_ELSEWHERE);
+        assertThat(model.state()).isEqualTo(STATE);
     }
 
     @Test
@@ -99,6 +103,7 @@ public class TrackedEntityDataValueModelTests {
                 .created(date)
                 .lastUpdated(date)
                 .providedElsewhere(PROVIDED_ELSEWHERE)
+                .state(STATE)
                 .build();
         ContentValues contentValues = model.toContentValues();
 
@@ -110,5 +115,6 @@ public class TrackedEntityDataValueModelTests {
         assertThat(contentValues.getAsString(Columns.CREATED)).isEqualTo(dateString);
         assertThat(contentValues.getAsString(Columns.LAST_UPDATED)).isEqualTo(dateString);
         assertThat(contentValues.getAsBoolean(Columns.PROVIDED_ELSEWHERE)).isEqualTo(PROVIDED_ELSEWHERE);
+        assertThat(contentValues.getAsString(Columns.STATE)).isEqualTo(STATE.name());
     }
 }
@@ -33,7 +33,7 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteConstraintException;
 import android.support.test.runner.AndroidJUnit4;
 
-import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
+import org.hisp.dhis.android.core.common.State;
 import org.hisp.dhis.android.core.data.database.AbsStoreTestCase;
 import org.hisp.dhis.android.core.dataelement.CreateDataElementUtils;
 import org.hisp.dhis.android.core.dataelement.DataElementModel;
@@ -52,7 +52,10 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.hisp.dhis.android.core.AndroidTestUtils.toInteger;
@@ -94,7 +97,7 @@ public class TrackedEntityDataValueStoreTests extends AbsStoreTestCase {
 
     public TrackedEntityDataValueStoreTests() {
         this.date = new Date();
-        this.dateString = BaseIdentifiableObject.DATE_FORMAT.format(date);
+        this.dateString = String.valueOf(date.getTime());
     }
 
     @Before
@@ -152,6 +155,93 @@ public class TrackedEntityDataValueStoreTests extends AbsStoreTestCase {
         ).isExhausted();
     }
 
+    @Test
+    public void insertAll_shouldPersistAllRowsInDatabase() {
+        List<TrackedEntityDataValueModel> dataValues = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            dataValues.add(TrackedEntityDataValueModel.builder()
+                    .event(EVENT)
+                    .created(date)
+                    .lastUpdated(date)
+                    .dataElement(DATA_ELEMENT)
+                    .storedBy(STORED_BY)
+                    .value(VALUE + i)
+                    .providedElsewhere(PROVIDED_ELSEWHERE)
+                    .build());
+        }
+
+        int inserted = trackedEntityDataValueStore.insertAll(dataValues);
+
+        Cursor cursor = database().query(TrackedEntityDataValueModel.TABLE,
+                PROJECTION, null, null, null, null, null);
+        assertThat(inserted).isEqualTo(3);
+        assertThatCursor(cursor)
+                .hasRow(EVENT, dateString, dateString, DATA_ELEMENT, STORED_BY, VALUE + 0,
+                        toInteger(PROVIDED_ELSEWHERE))
+                .hasRow(EVENT, dateString, dateString, DATA_ELEMENT, STORED_BY, VALUE + 1,
+                        toInteger(PROVIDED_ELSEWHERE))
+                .hasRow(EVENT, dateString, dateString, DATA_ELEMENT, STORED_BY, VALUE + 2,
+                        toInteger(PROVIDED_ELSEWHERE))
+                .isExhausted();
+    }
+
+    @Test
+    public void setValue_shouldUpdateValueAndMarkItAndItsEventAsChanged() {
+        trackedEntityDataValueStore.insert(EVENT, date, date, DATA_ELEMENT, STORED_BY, VALUE, PROVIDED_ELSEWHERE);
+        ContentValues synced = new ContentValues();
+        synced.put(EventModel.Columns.STATE, State.SYNCED.name());
+        database().update(EventModel.TABLE, synced, null, null);
+
+        int updated = trackedEntityDataValueStore.setValue(EVENT, DATA_ELEMENT, "changed_value");
+
+        assertThat(updated).isEqualTo(1);
+        Cursor cursor = database().query(TrackedEntityDataValueModel.TABLE, new String[]{
+                TrackedEntityDataValueModel.Columns.VALUE, TrackedEntityDataValueModel.Columns.STATE
+        }, null, null, null, null, null);
+        assertThatCursor(cursor).hasRow("changed_value", State.TO_UPDATE.name()).isExhausted();
+        Cursor eventCursor = database().query(EventModel.TABLE, new String[]{EventModel.Columns.STATE},
+                null, null, null, null, null);
+        assertThatCursor(eventCursor).hasRow(State.TO_UPDATE.name()).isExhausted();
+    }
+
+    @Test
+    public void setValue_shouldInsertMissingValue() {
+        int updated = trackedEntityDataValueStore.setValue(EVENT, DATA_ELEMENT, VALUE);
+
+        assertThat(updated).isEqualTo(1);
+        Cursor cursor = database().query(TrackedEntityDataValueModel.TABLE, new String[]{
+                TrackedEntityDataValueModel.Columns.EVENT,
+                TrackedEntityDataValueModel.Columns.DATA_ELEMENT,
+                TrackedEntityDataValueModel.Columns.VALUE,
+                TrackedEntityDataValueModel.Columns.STATE
+        }, null, null, null, null, null);
+        assertThatCursor(cursor).hasRow(EVENT, DATA_ELEMENT, VALUE, State.TO_UPDATE.name()).isExhausted();
+    }
+
+    @Test
+    public void setState_shouldSetStateOfValuesWhichHaveNotChanged() {
+        trackedEntityDataValueStore.setValue(EVENT, DATA_ELEMENT, VALUE);
+        trackedEntityDataValueStore.setValue(EVENT, "other_data_element", VALUE);
+        TrackedEntityDataValueModel.Builder uploaded = TrackedEntityDataValueModel.builder()
+                .event(EVENT)
+                .value(VALUE);
+
+        // the second value has been changed while it was uploaded
+        trackedEntityDataValueStore.setValue(EVENT, "other_data_element", "changed_value");
+        int updated = trackedEntityDataValueStore.setState(Arrays.asList(
+                uploaded.dataElement(DATA_ELEMENT).build(),
+                uploaded.dataElement("other_data_element").build()), State.SYNCED);
+
+        assertThat(updated).isEqualTo(1);
+        Cursor cursor = database().query(TrackedEntityDataValueModel.TABLE, new String[]{
+                TrackedEntityDataValueModel.Columns.VALUE, TrackedEntityDataValueModel.Columns.STATE
+        }, null, null, null, null, TrackedEntityDataValueModel.Columns.ID);
+        assertThatCursor(cursor)
+                .hasRow(VALUE, State.SYNCED.name())
+                .hasRow("changed_value", State.TO_UPDATE.name())
+                .isExhausted();
+    }
+
     @Test
     public void insert_shouldPersistDeferrableEventInDatabase() {
         final String deferredEvent = "deferredEvent";
@@ -33,7 +33,6 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteConstraintException;
 import android.support.test.runner.AndroidJUnit4;
 
-import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
 import org.hisp.dhis.android.core.common.State;
 import org.hisp.dhis.android.core.data.database.AbsStoreTestCase;
 import org.hisp.dhis.android.core.organisationunit.CreateOrganisationUnitUtils;
@@ -43,6 +42,8 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 
 import static com.google.common.truth.Truth.assertThat;
@@ -62,7 +63,7 @@ public class TrackedEntityInstanceStoreTests extends AbsStoreTestCase {
 
     public TrackedEntityInstanceStoreTests() {
         this.date = new Date();
-        this.dateString = BaseIdentifiableObject.DATE_FORMAT.format(date);
+        this.dateString = String.valueOf(date.getTime());
     }
 
     public static final String[] PROJECTION = {
@@ -131,6 +132,57 @@ public class TrackedEntityInstanceStoreTests extends AbsStoreTestCase {
         ).isExhausted();
     }
 
+    @Test
+    public void insertAll_shouldPersistRowsInDatabase() {
+        int inserted = store.insertAll(Arrays.asList(
+                trackedEntityInstance("test_uid_1", State.SYNCED),
+                trackedEntityInstance("test_uid_2", State.SYNCED)));
+
+        Cursor cursor = database().query(TrackedEntityInstanceModel.TABLE, PROJECTION,
+                null, null, null, null, TrackedEntityInstanceModel.Columns.UID);
+        assertThat(inserted).isEqualTo(2);
+        assertThatCursor(cursor)
+                .hasRow("test_uid_1", dateString, dateString, ORGANISATION_UNIT, TRACKED_ENTITY, State.SYNCED)
+                .hasRow("test_uid_2", dateString, dateString, ORGANISATION_UNIT, TRACKED_ENTITY, State.SYNCED)
+                .isExhausted();
+    }
+
+    @Test
+    public void queryUidsWithLocalChanges_shouldReturnInstancesWithChangesOfTheirOwnOrOfTheirAttributeValues() {
+        store.insert("test_uid_1", date, date, ORGANISATION_UNIT, TRACKED_ENTITY, State.SYNCED);
+        store.insert("test_uid_2", date, date, ORGANISATION_UNIT, TRACKED_ENTITY, State.TO_UPDATE);
+        store.insert("test_uid_3", date, date, ORGANISATION_UNIT, TRACKED_ENTITY, State.SYNCED);
+        database().insert(TrackedEntityAttributeModel.TABLE, null,
+                CreateTrackedEntityAttributeUtils.create(1L, "test_attribute", null));
+        new TrackedEntityAttributeValueStoreImpl(databaseAdapter())
+                .insert(State.TO_POST, "test_value", "test_attribute", "test_uid_3");
+
+        assertThat(store.queryUidsWithLocalChanges(
+                Arrays.asList("test_uid_1", "test_uid_2", "test_uid_3", "test_uid_4")))
+                .containsExactly("test_uid_2", "test_uid_3");
+    }
+
+    @Test
+    public void delete_shouldRemoveGivenRowsWithTheirAttributeValues() {
+        store.insert("test_uid_1", date, date, ORGANISATION_UNIT, TRACKED_ENTITY, State.SYNCED);
+        store.insert("test_uid_2", date, date, ORGANISATION_UNIT, TRACKED_ENTITY, State.SYNCED);
+        database().insert(TrackedEntityAttributeModel.TABLE, null,
+                CreateTrackedEntityAttributeUtils.create(1L, "test_attribute", null));
+        new TrackedEntityAttributeValueStoreImpl(databaseAdapter())
+                .insert(State.SYNCED, "test_value", "test_attribute", "test_uid_1");
+
+        int deleted = store.delete(Collections.singleton("test_uid_1"));
+
+        assertThat(deleted).isEqualTo(1);
+        Cursor cursor = database().query(TrackedEntityInstanceModel.TABLE, PROJECTION, null, null, null, null, null);
+        assertThatCursor(cursor)
+                .hasRow("test_uid_2", dateString, dateString, ORGANISATION_UNIT, TRACKED_ENTITY, State.SYNCED)
+                .isExhausted();
+        Cursor attributeValues = database().query(TrackedEntityAttributeValueModel.TABLE,
+                null, null, null, null, null, null);
+        assertThatCursor(attributeValues).isExhausted();
+    }
+
     @Test
     public void delete_shouldRemoveAllRows() {
         database().insert(TrackedEntityInstanceModel.TABLE, null,
@@ -190,4 +242,15 @@ public class TrackedEntityInstanceStoreTests extends AbsStoreTestCase {
     public void insert_null_trackedEntity() {
         store.insert(UID, date, date, ORGANISATION_UNIT, null, STATE);
     }
+
+    private TrackedEntityInstanceModel trackedEntityInstance(String uid, State state) {
+        return TrackedEntityInstanceModel.builder()
+                .uid(uid)
+                .created(date)
+                .lastUpdated(date)
+                .organisationUnit(ORGANISATION_UNIT)
+                .trackedEntity(TRACKED_ENTITY)
+                .state(state)
+                .build();
+    }
 }
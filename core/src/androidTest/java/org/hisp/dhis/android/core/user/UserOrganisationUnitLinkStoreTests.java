@@ -39,6 +39,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.hisp.dhis.android.core.data.database.CursorAssert.assertThatCursor;
@@ -88,6 +89,25 @@ public class UserOrganisationUnitLinkStoreTests extends AbsStoreTestCase {
         ).isExhausted();
     }
 
+    @Test
+    public void addLinks_shouldKeepTheOtherLinksOfTheUser() {
+        final String otherOrganisationUnitUid = "test_other_organisation_unit_uid";
+        ContentValues otherOrganisationUnit = CreateOrganisationUnitUtils.createOrgUnit(2L, otherOrganisationUnitUid);
+        database().insert(OrganisationUnitModel.TABLE, null, otherOrganisationUnit);
+        store.insert(USER_UID, ORGANISATION_UNIT_UID, ORGANISATION_UNIT_SCOPE);
+
+        int inserted = store.addLinks(USER_UID, ORGANISATION_UNIT_SCOPE,
+                Arrays.asList(ORGANISATION_UNIT_UID, otherOrganisationUnitUid));
+
+        Cursor cursor = database().query(UserOrganisationUnitLinkModel.TABLE, PROJECTION, null, null, null, null,
+                UserOrganisationUnitLinkModel.Columns.ID);
+        assertThat(inserted).isEqualTo(1);
+        assertThatCursor(cursor)
+                .hasRow(USER_UID, ORGANISATION_UNIT_UID, ORGANISATION_UNIT_SCOPE)
+                .hasRow(USER_UID, otherOrganisationUnitUid, ORGANISATION_UNIT_SCOPE)
+                .isExhausted();
+    }
+
     @Test
     public void insert_shouldPersistDeferrableRowInDatabase() {
         final String deferrableUserUid = "deferrableUser";
@@ -43,6 +43,8 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.hisp.dhis.android.core.data.database.CursorAssert.assertThatCursor;
@@ -191,6 +193,42 @@ public class UserRoleProgramLinkStoreTests extends AbsStoreTestCase {
         store.insert(USER_ROLE_UID, null);
     }
 
+    @Test
+    public void replaceLinks_shouldDeleteStaleLinksAndInsertNewLinks() {
+        final String otherProgramUid = "test_other_program_uid";
+        ContentValues otherProgram = CreateProgramUtils.create(2L, otherProgramUid,
+                RELATIONSHIP_TYPE_UID, null, TRACKED_ENTITY_UID);
+        database().insert(ProgramModel.TABLE, null, otherProgram);
+        store.insert(USER_ROLE_UID, PROGRAM_UID);
+
+        int changed = store.replaceLinks(USER_ROLE_UID, Collections.singletonList(otherProgramUid));
+
+        Cursor cursor = database().query(UserRoleProgramLinkModel.TABLE, PROJECTION, null, null, null, null, null);
+        assertThat(changed).isEqualTo(2);
+        assertThatCursor(cursor).hasRow(USER_ROLE_UID, otherProgramUid).isExhausted();
+    }
+
+    @Test
+    public void replaceLinks_shouldNotRewriteUnchangedLinks() {
+        store.insert(USER_ROLE_UID, PROGRAM_UID);
+
+        int changed = store.replaceLinks(USER_ROLE_UID, Arrays.asList(PROGRAM_UID, PROGRAM_UID));
+
+        Cursor cursor = database().query(UserRoleProgramLinkModel.TABLE, PROJECTION, null, null, null, null, null);
+        assertThat(changed).isEqualTo(0);
+        assertThatCursor(cursor).hasRow(USER_ROLE_UID, PROGRAM_UID).isExhausted();
+    }
+
+    @Test
+    public void replaceLinks_shouldDeleteAllLinks_ifNoProgramIsGiven() {
+        store.insert(USER_ROLE_UID, PROGRAM_UID);
+
+        store.replaceLinks(USER_ROLE_UID, Collections.<String>emptyList());
+
+        Cursor cursor = database().query(UserRoleProgramLinkModel.TABLE, PROJECTION, null, null, null, null, null);
+        assertThatCursor(cursor).isExhausted();
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void update_null_userRole_arg() {
         store.update(null, PROGRAM_UID, USER_ROLE_UID, PROGRAM_UID);
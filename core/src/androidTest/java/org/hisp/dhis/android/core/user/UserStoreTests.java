@@ -32,7 +32,6 @@ import android.content.ContentValues;
 import android.database.Cursor;
 import android.support.test.runner.AndroidJUnit4;
 
-import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
 import org.hisp.dhis.android.core.data.database.AbsStoreTestCase;
 import org.junit.Before;
 import org.junit.Test;
@@ -144,8 +143,8 @@ public class UserStoreTests extends AbsStoreTestCase {
                         "test_user_code",
                         "test_user_name",
                         "test_user_display_name",
-                        BaseIdentifiableObject.DATE_FORMAT.format(date),
-                        BaseIdentifiableObject.DATE_FORMAT.format(date),
+                        date.getTime(),
+                        date.getTime(),
                         "test_user_birthday",
                         "test_user_education",
                         "test_user_gender",
@@ -172,8 +171,8 @@ public class UserStoreTests extends AbsStoreTestCase {
         user.put(UserModel.Columns.CODE, CODE);
         user.put(UserModel.Columns.NAME, NAME);
         user.put(UserModel.Columns.DISPLAY_NAME, DISPLAY_NAME);
-        user.put(UserModel.Columns.CREATED, BaseIdentifiableObject.DATE_FORMAT.format(date));
-        user.put(UserModel.Columns.LAST_UPDATED, BaseIdentifiableObject.DATE_FORMAT.format(date));
+        user.put(UserModel.Columns.CREATED, date.getTime());
+        user.put(UserModel.Columns.LAST_UPDATED, date.getTime());
 
         database().insert(UserModel.TABLE, null, user);
         String[] projection = {
@@ -188,8 +187,8 @@ public class UserStoreTests extends AbsStoreTestCase {
 
         // checking that the user was successfully inserted
         assertThatCursor(cursor).hasRow(ID, UID, CODE, NAME, DISPLAY_NAME,
-                BaseIdentifiableObject.DATE_FORMAT.format(date),
-                BaseIdentifiableObject.DATE_FORMAT.format(date));
+                date.getTime(),
+                date.getTime());
 
         String newName = "test_new_name";
         String newDisplayName = "test_new_display_name";
@@ -214,8 +213,8 @@ public class UserStoreTests extends AbsStoreTestCase {
         cursor = database().query(UserModel.TABLE, projection, null, null, null, null, null);
 
         assertThatCursor(cursor).hasRow(ID, UID, CODE, newName, newDisplayName,
-                BaseIdentifiableObject.DATE_FORMAT.format(date),
-                BaseIdentifiableObject.DATE_FORMAT.format(date)
+                date.getTime(),
+                date.getTime()
         ).isExhausted();
     }
 
@@ -29,6 +29,7 @@
 package org.hisp.dhis.android.core;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
@@ -36,13 +37,30 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
 import org.hisp.dhis.android.core.common.Call;
+import org.hisp.dhis.android.core.common.MetadataBundleCall;
 import org.hisp.dhis.android.core.common.MetadataCall;
+import org.hisp.dhis.android.core.common.MetadataService;
+import org.hisp.dhis.android.core.common.StageListener;
+import org.hisp.dhis.android.core.common.StageMetrics;
+import org.hisp.dhis.android.core.common.SyncCheckpoint;
 import org.hisp.dhis.android.core.configuration.ConfigurationModel;
+import org.hisp.dhis.android.core.data.api.CacheEvictingCall;
+import org.hisp.dhis.android.core.data.api.ConditionalCacheInterceptor;
 import org.hisp.dhis.android.core.data.api.FieldsConverterFactory;
 import org.hisp.dhis.android.core.data.api.FilterConverterFactory;
+import org.hisp.dhis.android.core.data.api.MetricsConverterFactory;
+import org.hisp.dhis.android.core.data.api.MetricsInterceptor;
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.MetricsDatabaseAdapter;
 import org.hisp.dhis.android.core.dataelement.DataElementStore;
 import org.hisp.dhis.android.core.dataelement.DataElementStoreImpl;
+import org.hisp.dhis.android.core.enrollment.EnrollmentStore;
+import org.hisp.dhis.android.core.enrollment.EnrollmentStoreImpl;
+import org.hisp.dhis.android.core.event.EventCall;
+import org.hisp.dhis.android.core.event.EventPostCall;
+import org.hisp.dhis.android.core.event.EventService;
+import org.hisp.dhis.android.core.event.EventStore;
+import org.hisp.dhis.android.core.event.EventStoreImpl;
 import org.hisp.dhis.android.core.option.OptionSetService;
 import org.hisp.dhis.android.core.option.OptionSetStore;
 import org.hisp.dhis.android.core.option.OptionSetStoreImpl;
@@ -81,6 +99,14 @@ import org.hisp.dhis.android.core.systeminfo.SystemInfoStore;
 import org.hisp.dhis.android.core.systeminfo.SystemInfoStoreImpl;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttributeStore;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttributeStoreImpl;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttributeValueStore;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttributeValueStoreImpl;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityDataValueStore;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityDataValueStoreImpl;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityInstanceCall;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityInstanceService;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityInstanceStore;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityInstanceStoreImpl;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityService;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityStore;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityStoreImpl;
@@ -102,9 +128,12 @@ import org.hisp.dhis.android.core.user.UserService;
 import org.hisp.dhis.android.core.user.UserStore;
 import org.hisp.dhis.android.core.user.UserStoreImpl;
 
+import java.util.Set;
 import java.util.concurrent.Callable;
 
+import okhttp3.Cache;
 import okhttp3.OkHttpClient;
+import retrofit2.Converter;
 import retrofit2.Response;
 import retrofit2.Retrofit;
 import retrofit2.converter.jackson.JacksonConverterFactory;
@@ -114,6 +143,15 @@ import retrofit2.converter.jackson.JacksonConverterFactory;
 public final class D2 {
     private final Retrofit retrofit;
     private final DatabaseAdapter databaseAdapter;
+    private final ObjectMapper objectMapper;
+    private final int pageSize;
+    private final int eventBatchSize;
+
+    @Nullable
+    private final Cache cache;
+    private final boolean checkpointedSync;
+    @Nullable
+    private final StageListener stageListener;
 
     // services
     private final UserService userService;
@@ -122,6 +160,9 @@ public final class D2 {
     private final OrganisationUnitService organisationUnitService;
     private final TrackedEntityService trackedEntityService;
     private final OptionSetService optionSetService;
+    private final MetadataService metadataService;
+    private final EventService eventService;
+    private final TrackedEntityInstanceService trackedEntityInstanceService;
 
     // stores
     private final UserStore userStore;
@@ -149,11 +190,24 @@ public final class D2 {
     private final ProgramStageStore programStageStore;
     private final RelationshipTypeStore relationshipStore;
     private final TrackedEntityStore trackedEntityStore;
+    private final EventStore eventStore;
+    private final TrackedEntityDataValueStore trackedEntityDataValueStore;
+    private final TrackedEntityInstanceStore trackedEntityInstanceStore;
+    private final TrackedEntityAttributeValueStore trackedEntityAttributeValueStore;
+    private final EnrollmentStore enrollmentStore;
 
     @VisibleForTesting
-    D2(@NonNull Retrofit retrofit, @NonNull DatabaseAdapter databaseAdapter) {
+    D2(@NonNull Retrofit retrofit, @NonNull DatabaseAdapter databaseAdapter,
+            @NonNull ObjectMapper objectMapper, int pageSize, int eventBatchSize, @Nullable Cache cache,
+            boolean checkpointedSync, @Nullable StageListener stageListener) {
         this.retrofit = retrofit;
         this.databaseAdapter = databaseAdapter;
+        this.objectMapper = objectMapper;
+        this.pageSize = pageSize;
+        this.eventBatchSize = eventBatchSize;
+        this.cache = cache;
+        this.checkpointedSync = checkpointedSync;
+        this.stageListener = stageListener;
 
         // services
         this.userService = retrofit.create(UserService.class);
@@ -162,6 +216,9 @@ public final class D2 {
         this.organisationUnitService = retrofit.create(OrganisationUnitService.class);
         this.trackedEntityService = retrofit.create(TrackedEntityService.class);
         this.optionSetService = retrofit.create(OptionSetService.class);
+        this.metadataService = retrofit.create(MetadataService.class);
+        this.eventService = retrofit.create(EventService.class);
+        this.trackedEntityInstanceService = retrofit.create(TrackedEntityInstanceService.class);
 
         // stores
         this.userStore = new UserStoreImpl(databaseAdapter);
@@ -190,6 +247,11 @@ public final class D2 {
         this.programStageStore = new ProgramStageStoreImpl(databaseAdapter);
         this.relationshipStore = new RelationshipTypeStoreImpl(databaseAdapter);
         this.trackedEntityStore = new TrackedEntityStoreImpl(databaseAdapter);
+        this.eventStore = new EventStoreImpl(databaseAdapter);
+        this.trackedEntityDataValueStore = new TrackedEntityDataValueStoreImpl(databaseAdapter);
+        this.trackedEntityInstanceStore = new TrackedEntityInstanceStoreImpl(databaseAdapter);
+        this.trackedEntityAttributeValueStore = new TrackedEntityAttributeValueStoreImpl(databaseAdapter);
+        this.enrollmentStore = new EnrollmentStoreImpl(databaseAdapter);
     }
 
     @NonNull
@@ -235,7 +297,25 @@ public final class D2 {
 
     @NonNull
     public Call<Response> syncMetaData() {
-        return new MetadataCall(
+        return evictCacheOnFailure(new MetadataCall(
+                databaseAdapter, systemInfoService, userService, programService, organisationUnitService,
+                trackedEntityService, optionSetService, systemInfoStore, resourceStore, userStore,
+                userCredentialsStore, userRoleStore, userRoleProgramLinkStore, organisationUnitStore,
+                userOrganisationUnitLinkStore, programStore, trackedEntityAttributeStore,
+                programTrackedEntityAttributeStore, programRuleVariableStore, programIndicatorStore,
+                programStageSectionProgramIndicatorLinkStore, programRuleActionStore, programRuleStore, optionStore,
+                optionSetStore, dataElementStore, programStageDataElementStore, programStageSectionStore,
+                programStageStore, relationshipStore, trackedEntityStore, objectMapper, pageSize, null,
+                checkpointedSync, stageListener));
+    }
+
+    /**
+     * Same as {@link #syncMetaData()}, but downloads programs, tracked entities, option sets and organisation
+     * units in a single request to the metadata endpoint. See {@link MetadataBundleCall}.
+     */
+    @NonNull
+    public Call<Response> syncMetaDataBundle() {
+        return evictCacheOnFailure(new MetadataCall(
                 databaseAdapter, systemInfoService, userService, programService, organisationUnitService,
                 trackedEntityService, optionSetService, systemInfoStore, resourceStore, userStore,
                 userCredentialsStore, userRoleStore, userRoleProgramLinkStore, organisationUnitStore,
@@ -243,13 +323,74 @@ public final class D2 {
                 programTrackedEntityAttributeStore, programRuleVariableStore, programIndicatorStore,
                 programStageSectionProgramIndicatorLinkStore, programRuleActionStore, programRuleStore, optionStore,
                 optionSetStore, dataElementStore, programStageDataElementStore, programStageSectionStore,
-                programStageStore, relationshipStore, trackedEntityStore);
+                programStageStore, relationshipStore, trackedEntityStore, objectMapper, pageSize,
+                metadataService, checkpointedSync, stageListener));
+    }
+
+    /**
+     * Downloads the events of the programs in the organisation units, and the organisation units below them,
+     * which have changed since the last download. Events are always paged, by the page size of the metadata
+     * sync or by its default page size if paging is disabled. See {@link EventCall}.
+     */
+    @NonNull
+    public Call<Response> downloadEvents(@NonNull Set<String> organisationUnitUids,
+                                         @NonNull Set<String> programUids) {
+        return new EventCall(databaseAdapter, systemInfoStore, systemInfoService, resourceStore, eventService,
+                eventStore, trackedEntityDataValueStore, objectMapper, organisationUnitUids, programUids,
+                pageSize > 0 ? pageSize : Builder.DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Downloads the tracked entity instances of the organisation units, and the organisation units below them,
+     * which have changed since the last download of the organisation unit, together with their attribute values,
+     * enrollments and events. Tracked entity instances are paged like events. See
+     * {@link TrackedEntityInstanceCall}.
+     */
+    @NonNull
+    public Call<Response> downloadTrackedEntityInstances(@NonNull Set<String> organisationUnitUids) {
+        return new TrackedEntityInstanceCall(databaseAdapter, systemInfoStore, systemInfoService, resourceStore,
+                trackedEntityInstanceService, trackedEntityInstanceStore, trackedEntityAttributeValueStore,
+                enrollmentStore, eventStore, trackedEntityDataValueStore, objectMapper, organisationUnitUids,
+                pageSize > 0 ? pageSize : Builder.DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Uploads the events which have been created or changed offline, by batches of the
+     * {@link Builder#eventBatchSize(int) event batch size}. See {@link EventPostCall}.
+     */
+    @NonNull
+    public Call<Response> uploadEvents() {
+        return uploadEvents(false);
+    }
+
+    /**
+     * Uploads the events which have been created or changed offline, like {@link #uploadEvents()}.
+     *
+     * @param changedValuesOnly whether the events the server already has are updated by uploading only the data
+     *                          values which have been changed offline
+     */
+    @NonNull
+    public Call<Response> uploadEvents(boolean changedValuesOnly) {
+        return new EventPostCall(databaseAdapter, eventService, eventStore, trackedEntityDataValueStore,
+                objectMapper, eventBatchSize, changedValuesOnly);
+    }
+
+    private Call<Response> evictCacheOnFailure(Call<Response> call) {
+        return cache == null ? call : new CacheEvictingCall(call, cache);
     }
 
     public static class Builder {
+        private static final int DEFAULT_PAGE_SIZE = 50;
+        private static final int DEFAULT_EVENT_BATCH_SIZE = 100;
+
         private ConfigurationModel configuration;
         private DatabaseAdapter databaseAdapter;
         private OkHttpClient okHttpClient;
+        private int pageSize = DEFAULT_PAGE_SIZE;
+        private int eventBatchSize = DEFAULT_EVENT_BATCH_SIZE;
+        private Cache cache;
+        private boolean checkpointedSync;
+        private StageListener stageListener;
 
         public Builder() {
             // empty constructor
@@ -273,6 +414,56 @@ public final class D2 {
             return this;
         }
 
+        /**
+         * Sets the number of items requested per page while syncing metadata, or 0 to disable paging.
+         */
+        @NonNull
+        public Builder pageSize(int pageSize) {
+            this.pageSize = pageSize;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of events uploaded in a single request.
+         */
+        @NonNull
+        public Builder eventBatchSize(int eventBatchSize) {
+            this.eventBatchSize = eventBatchSize;
+            return this;
+        }
+
+        /**
+         * Sets the cache used to revalidate metadata responses with conditional requests. Metadata which the
+         * server reports as not modified is neither parsed nor written again. See
+         * {@link ConditionalCacheInterceptor}.
+         */
+        @NonNull
+        public Builder cache(@NonNull Cache cache) {
+            this.cache = cache;
+            return this;
+        }
+
+        /**
+         * Sets whether the stages of the metadata sync are committed one by one, so that a sync which fails half way
+         * resumes with the stages it has not completed. See {@link SyncCheckpoint}.
+         */
+        @NonNull
+        public Builder checkpointedSync(boolean checkpointedSync) {
+            this.checkpointedSync = checkpointedSync;
+            return this;
+        }
+
+        /**
+         * Sets the listener which receives the {@link StageMetrics} of every stage of the metadata sync, like the
+         * time spent on the network, in parsing and in the database, and the number of rows written. Recording
+         * the metrics adds a little overhead to every request and write, so it is only enabled with a listener.
+         */
+        @NonNull
+        public Builder stageListener(@NonNull StageListener stageListener) {
+            this.stageListener = stageListener;
+            return this;
+        }
+
         public D2 build() {
             if (databaseAdapter == null) {
                 throw new IllegalArgumentException("databaseAdapter == null");
@@ -286,20 +477,48 @@ public final class D2 {
                 throw new IllegalArgumentException("okHttpClient == null");
             }
 
+            if (pageSize < 0) {
+                throw new IllegalArgumentException("pageSize < 0");
+            }
+
+            if (eventBatchSize <= 0) {
+                throw new IllegalArgumentException("eventBatchSize <= 0");
+            }
+
             ObjectMapper objectMapper = new ObjectMapper()
                     .setDateFormat(BaseIdentifiableObject.DATE_FORMAT.raw())
                     .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
 
+            OkHttpClient client = okHttpClient;
+            if (cache != null || stageListener != null) {
+                OkHttpClient.Builder clientBuilder = okHttpClient.newBuilder();
+                if (cache != null) {
+                    clientBuilder.cache(cache).addNetworkInterceptor(new ConditionalCacheInterceptor());
+                }
+                if (stageListener != null) {
+                    clientBuilder.addNetworkInterceptor(new MetricsInterceptor());
+                }
+                client = clientBuilder.build();
+            }
+
+            Converter.Factory converterFactory = JacksonConverterFactory.create(objectMapper);
+            DatabaseAdapter adapter = databaseAdapter;
+            if (stageListener != null) {
+                converterFactory = MetricsConverterFactory.create(converterFactory);
+                adapter = new MetricsDatabaseAdapter(databaseAdapter);
+            }
+
             Retrofit retrofit = new Retrofit.Builder()
                     .baseUrl(configuration.serverUrl())
-                    .client(okHttpClient)
-                    .addConverterFactory(JacksonConverterFactory.create(objectMapper))
+                    .client(client)
+                    .addConverterFactory(converterFactory)
                     .addConverterFactory(FilterConverterFactory.create())
                     .addConverterFactory(FieldsConverterFactory.create())
                     .validateEagerly(true)
                     .build();
 
-            return new D2(retrofit, databaseAdapter);
+            return new D2(retrofit, adapter, objectMapper, pageSize, eventBatchSize, cache, checkpointedSync,
+                    stageListener);
         }
     }
 }
\ No newline at end of file
@@ -31,6 +31,10 @@ package org.hisp.dhis.android.core.common;
 import java.util.concurrent.Callable;
 
 public interface Call<T> extends Callable<T> {
+    /**
+     * Maximum number of uids in a single request. Larger sets of uids are split into several requests,
+     * see {@link UidChunks}.
+     */
     int MAX_UIDS = 64;
 
     boolean isExecuted();
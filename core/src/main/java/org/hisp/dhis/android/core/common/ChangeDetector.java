@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hisp.dhis.android.core.common;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tells the handlers of a sync which rows have changed since they were stored, so that unchanged rows
+ * are not rewritten. The uid and lastUpdated columns of a table are loaded once, on its first lookup,
+ * into a pair of arrays sorted by uid.
+ */
+@SuppressWarnings("PMD.UseConcurrentHashMap")
+public class ChangeDetector {
+    private static final long UNKNOWN = Long.MIN_VALUE;
+
+    private final DatabaseAdapter databaseAdapter;
+    private final Map<String, LastUpdatedIndex> indexes = new HashMap<>();
+
+    public ChangeDetector(@NonNull DatabaseAdapter databaseAdapter) {
+        this.databaseAdapter = databaseAdapter;
+    }
+
+    /**
+     * Returns whether a row has to be written, which is the case unless the stored row is at least as
+     * recent as the incoming lastUpdated. A row reported as changed is remembered with the incoming date,
+     * so that an object contained in several programs is only written once per sync.
+     */
+    public synchronized boolean hasChanged(@NonNull String table, @NonNull String uid,
+                                           @Nullable Date lastUpdated) {
+        if (lastUpdated == null) {
+            return true;
+        }
+
+        LastUpdatedIndex index = indexes.get(table);
+        if (index == null) {
+            index = load(table);
+            indexes.put(table, index);
+        }
+
+        long incoming = lastUpdated.getTime();
+        if (incoming <= index.get(uid)) {
+            return false;
+        }
+        index.put(uid, incoming);
+        return true;
+    }
+
+    private LastUpdatedIndex load(String table) {
+        // uids are ascii, so the order of the uid index matches the order of String.compareTo. Should it
+        // not, the binary search misses and the row is written, as it was before.
+        Cursor cursor = databaseAdapter.query("SELECT " + BaseIdentifiableObjectModel.Columns.UID + ", " +
+                BaseIdentifiableObjectModel.Columns.LAST_UPDATED + " FROM " + table +
+                " ORDER BY " + BaseIdentifiableObjectModel.Columns.UID + ";");
+        if (cursor == null) {
+            return new LastUpdatedIndex(new String[0], new long[0]);
+        }
+
+        try {
+            int count = cursor.getCount();
+            String[] uids = new String[count];
+            long[] lastUpdated = new long[count];
+            for (int i = 0; i < count && cursor.moveToNext(); i++) {
+                uids[i] = cursor.getString(0);
+                lastUpdated[i] = cursor.isNull(1) ? UNKNOWN : cursor.getLong(1);
+            }
+            return new LastUpdatedIndex(uids, lastUpdated);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static final class LastUpdatedIndex {
+        private final String[] uids;
+        private final long[] lastUpdated;
+
+        // rows written during this sync
+        private final Map<String, Long> written = new HashMap<>();
+
+        LastUpdatedIndex(String[] uids, long[] lastUpdated) {
+            this.uids = uids;
+            this.lastUpdated = lastUpdated;
+        }
+
+        long get(String uid) {
+            Long stored = written.get(uid);
+            if (stored != null) {
+                return stored;
+            }
+            int position = Arrays.binarySearch(uids, uid);
+            return position < 0 ? UNKNOWN : lastUpdated[position];
+        }
+
+        void put(String uid, long lastUpdated) {
+            written.put(uid, lastUpdated);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.core.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Runs writes on the thread which writes the database on behalf of the threads which download.
+ * <p>
+ * The {@link StageScheduler} attaches its writer to the threads downloading the stages. A download which wants to
+ * commit its work before it has finished, like the pages of a {@link PagedSync}, hands it over with
+ * {@link #write(Callable)} and waits until it has been executed, so that it holds a single unit of work at a time.
+ * The scheduler executes the writes in between the downloads, outside of any transaction.
+ * </p>
+ */
+public final class DatabaseWriter {
+    private static final ThreadLocal<DatabaseWriter> CURRENT = new ThreadLocal<>();
+
+    private final BlockingQueue<Runnable> tasks = new LinkedBlockingQueue<>();
+
+    /**
+     * @return the writer of the current thread, or null if the current thread may write by itself
+     */
+    @Nullable
+    public static DatabaseWriter current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Attaches the writer to the current thread until {@link #detach()} is invoked.
+     */
+    void attach() {
+        CURRENT.set(this);
+    }
+
+    static void detach() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Executes the write on the writer thread, with the {@link StageMetricsRecorder} of the current thread, and
+     * waits for it.
+     *
+     * @return the result of the write
+     */
+    public <V> V write(@NonNull final Callable<V> write) throws IOException {
+        final StageMetricsRecorder recorder = StageMetricsRecorder.current();
+        FutureTask<V> task = new FutureTask<>(new Callable<V>() {
+            @Override
+            public V call() throws Exception {
+                if (recorder != null) {
+                    recorder.attach();
+                }
+                try {
+                    return write.call();
+                } finally {
+                    if (recorder != null) {
+                        StageMetricsRecorder.detach();
+                    }
+                }
+            }
+        });
+        tasks.add(task);
+
+        try {
+            return task.get();
+        } catch (InterruptedException interruptedException) {
+            task.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the writer");
+        } catch (ExecutionException executionException) {
+            Throwable cause = executionException.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Queues a task to be run by the writer thread, which also wakes it up.
+     */
+    void post(@NonNull Runnable task) {
+        tasks.add(task);
+    }
+
+    /**
+     * @return the next queued task; blocks until there is one
+     */
+    @NonNull
+    Runnable take() throws InterruptedException {
+        return tasks.take();
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hisp.dhis.android.core.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.hisp.dhis.android.core.data.api.ConditionalCacheInterceptor;
+import org.hisp.dhis.android.core.data.api.Fields;
+import org.hisp.dhis.android.core.data.api.Filter;
+import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Transaction;
+import org.hisp.dhis.android.core.dataelement.DataElement;
+import org.hisp.dhis.android.core.option.OptionSet;
+import org.hisp.dhis.android.core.option.OptionSetCall;
+import org.hisp.dhis.android.core.option.OptionSetHandler;
+import org.hisp.dhis.android.core.organisationunit.OrganisationUnit;
+import org.hisp.dhis.android.core.organisationunit.OrganisationUnitCall;
+import org.hisp.dhis.android.core.organisationunit.OrganisationUnitHandler;
+import org.hisp.dhis.android.core.organisationunit.OrganisationUnitModel;
+import org.hisp.dhis.android.core.program.Program;
+import org.hisp.dhis.android.core.program.ProgramCall;
+import org.hisp.dhis.android.core.program.ProgramHandler;
+import org.hisp.dhis.android.core.program.ProgramStage;
+import org.hisp.dhis.android.core.program.ProgramStageDataElement;
+import org.hisp.dhis.android.core.program.ProgramTrackedEntityAttribute;
+import org.hisp.dhis.android.core.resource.ResourceHandler;
+import org.hisp.dhis.android.core.resource.ResourceModel;
+import org.hisp.dhis.android.core.resource.ResourceStore;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttribute;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityCall;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityHandler;
+import org.hisp.dhis.android.core.user.User;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import okhttp3.ResponseBody;
+import okio.Okio;
+import retrofit2.Response;
+
+import static org.hisp.dhis.android.core.organisationunit.OrganisationUnitTree.findRoots;
+
+/**
+ * Downloads the programs assigned to the user and the organisation unit sub-trees of the user in a single
+ * request to the metadata endpoint, instead of one request per type of metadata.
+ * <p>
+ * The metadata endpoint can't filter option sets and tracked entities by the programs which reference them,
+ * so they are requested as part of the programs and persisted from there. Every organisation unit whose path
+ * contains one of the roots of the user is requested, which is the same sub-tree
+ * {@link OrganisationUnitCall} downloads with one request per root.
+ * </p>
+ * <p>
+ * The response is spooled into a temporary file by {@link #download()} and read one item at a time by
+ * {@link #persist(Response)}, so it is never held in memory as a whole. The bundle always contains the full
+ * metadata of the user, it is not restricted to the items which changed since the last sync.
+ * </p>
+ */
+@SuppressWarnings({"PMD.ExcessiveImports", "PMD.TooManyFields"})
+public class MetadataBundleCall implements SyncCall<Void> {
+    private static final String SPOOL_FILE_PREFIX = "metadata";
+    private static final String ROOT_JUNCTION = "OR";
+
+    private static final String PROGRAMS = "programs";
+    private static final String ORGANISATION_UNITS = "organisationUnits";
+
+    private final MetadataService metadataService;
+    private final DatabaseAdapter databaseAdapter;
+    private final ResourceStore resourceStore;
+    private final ObjectMapper objectMapper;
+    private final ProgramHandler programHandler;
+    private final OptionSetHandler optionSetHandler;
+    private final TrackedEntityHandler trackedEntityHandler;
+    private final OrganisationUnitHandler organisationUnitHandler;
+    private final User user;
+    private final Set<String> programUids;
+    private final Set<String> rootUids;
+    private final Date serverDate;
+
+    private boolean isExecuted;
+
+    @Nullable
+    private File spoolFile;
+
+    public MetadataBundleCall(@NonNull MetadataService metadataService,
+                              @NonNull DatabaseAdapter databaseAdapter,
+                              @NonNull ResourceStore resourceStore,
+                              @NonNull ObjectMapper objectMapper,
+                              @NonNull ProgramHandler programHandler,
+                              @NonNull OptionSetHandler optionSetHandler,
+                              @NonNull TrackedEntityHandler trackedEntityHandler,
+                              @NonNull OrganisationUnitHandler organisationUnitHandler,
+                              @NonNull User user,
+                              @Nullable Set<String> programUids,
+                              @NonNull Date serverDate) {
+        this.metadataService = metadataService;
+        this.databaseAdapter = databaseAdapter;
+        this.resourceStore = resourceStore;
+        this.objectMapper = objectMapper;
+        this.programHandler = programHandler;
+        this.optionSetHandler = optionSetHandler;
+        this.trackedEntityHandler = trackedEntityHandler;
+        this.organisationUnitHandler = organisationUnitHandler;
+        this.user = user;
+        this.programUids = programUids == null ? Collections.<String>emptySet() : programUids;
+        this.rootUids = findRoots(user.organisationUnits());
+        this.serverDate = new Date(serverDate.getTime());
+    }
+
+    @Override
+    public boolean isExecuted() {
+        synchronized (this) {
+            return isExecuted;
+        }
+    }
+
+    @Override
+    public Response<Void> call() throws Exception {
+        synchronized (this) {
+            if (isExecuted) {
+                throw new IllegalStateException("Already executed");
+            }
+            isExecuted = true;
+        }
+
+        Response<Void> response = download();
+        if (response.isSuccessful()) {
+            persist(response);
+        }
+        return response;
+    }
+
+    /**
+     * Sections without anything assigned to the user are excluded from the request, since the metadata
+     * endpoint would return every item of the type otherwise. Nothing is requested at all if both are empty.
+     * A response which has not been modified since the last sync is not even spooled.
+     */
+    @NonNull
+    @Override
+    public Response<Void> download() throws IOException {
+        if (programUids.isEmpty() && rootUids.isEmpty()) {
+            return Response.success(null);
+        }
+
+        Response<ResponseBody> response = metadataService.getMetadata(Boolean.FALSE, ROOT_JUNCTION,
+                !programUids.isEmpty(), programFields(), Program.uid.in(programUids),
+                !rootUids.isEmpty(), OrganisationUnitCall.fields(), pathFilters()
+        ).execute();
+        if (!response.isSuccessful()) {
+            return Response.error(response.errorBody(), response.raw());
+        }
+
+        if (ConditionalCacheInterceptor.isNotModified(response)) {
+            response.body().close();
+            return Response.success(null, response.raw());
+        }
+
+        spoolFile = SpoolFiles.spool(response.body(), SPOOL_FILE_PREFIX);
+        return Response.success(null, response.raw());
+    }
+
+    @Override
+    public void persist(@NonNull Response<Void> response) throws IOException {
+        if (spoolFile == null) {
+            return;
+        }
+
+        Transaction transaction = databaseAdapter.beginNewTransaction();
+        try {
+            parser().parse(Okio.buffer(Okio.source(spoolFile)));
+            handleResources();
+            transaction.setSuccessful();
+        } finally {
+            transaction.end();
+            SpoolFiles.delete(spoolFile);
+            spoolFile = null;
+        }
+    }
+
+    private MetadataParser parser() {
+        final Set<String> handledOptionSets = new HashSet<>();
+        return new MetadataParser(objectMapper)
+                .section(PROGRAMS, Program.class, new PayloadParser.ItemHandler<Program>() {
+                    @Override
+                    public void handle(@NonNull Program program) {
+                        for (OptionSet optionSet : getOptionSets(program)) {
+                            if (handledOptionSets.add(optionSet.uid())) {
+                                optionSetHandler.handleOptionSet(optionSet);
+                            }
+                        }
+                        if (program.trackedEntity() != null) {
+                            trackedEntityHandler.handleTrackedEntity(program.trackedEntity());
+                        }
+                        programHandler.handleProgram(program);
+                    }
+                })
+                .section(ORGANISATION_UNITS, OrganisationUnit.class,
+                        new PayloadParser.ItemHandler<OrganisationUnit>() {
+                            @Override
+                            public void handle(@NonNull OrganisationUnit organisationUnit) {
+                                organisationUnitHandler.handleOrganisationUnits(
+                                        Collections.singletonList(organisationUnit),
+                                        OrganisationUnitModel.Scope.SCOPE_DATA_CAPTURE, user.uid());
+                            }
+                        });
+    }
+
+    private void handleResources() {
+        ResourceHandler resourceHandler = new ResourceHandler(resourceStore);
+        if (!programUids.isEmpty()) {
+            resourceHandler.handleResource(ResourceModel.Type.PROGRAM, serverDate);
+            resourceHandler.handleResource(ResourceModel.Type.TRACKED_ENTITY, serverDate);
+            resourceHandler.handleResource(ResourceModel.Type.OPTION_SET, serverDate);
+        }
+        if (!rootUids.isEmpty()) {
+            resourceHandler.handleResource(ResourceModel.Type.ORGANISATION_UNIT, serverDate);
+        }
+    }
+
+    private List<Filter<OrganisationUnit, String>> pathFilters() {
+        List<Filter<OrganisationUnit, String>> filters = new ArrayList<>();
+        for (String rootUid : rootUids) {
+            filters.add(OrganisationUnit.path.like(rootUid));
+        }
+        return filters;
+    }
+
+    /**
+     * @return the fields of the programs, with complete option sets and tracked entities nested into them
+     */
+    private static Fields<Program> programFields() {
+        return ProgramCall.fields(OptionSetCall.fields(), TrackedEntityCall.fields());
+    }
+
+    private static List<OptionSet> getOptionSets(Program program) {
+        List<OptionSet> optionSets = new ArrayList<>();
+        List<ProgramTrackedEntityAttribute> attributes = program.programTrackedEntityAttributes();
+        if (attributes != null) {
+            for (ProgramTrackedEntityAttribute attribute : attributes) {
+                TrackedEntityAttribute trackedEntityAttribute = attribute.trackedEntityAttribute();
+                if (trackedEntityAttribute != null && trackedEntityAttribute.optionSet() != null) {
+                    optionSets.add(trackedEntityAttribute.optionSet());
+                }
+            }
+        }
+
+        List<ProgramStage> programStages = program.programStages();
+        if (programStages != null) {
+            for (ProgramStage programStage : programStages) {
+                List<ProgramStageDataElement> stageDataElements = programStage.programStageDataElements();
+                if (stageDataElements == null) {
+                    continue;
+                }
+                for (ProgramStageDataElement stageDataElement : stageDataElements) {
+                    DataElement dataElement = stageDataElement.dataElement();
+                    if (dataElement != null && dataElement.optionSet() != null) {
+                        optionSets.add(dataElement.optionSet());
+                    }
+                }
+            }
+        }
+        return optionSets;
+    }
+}
@@ -27,19 +27,28 @@
  */
 package org.hisp.dhis.android.core.common;
 
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
-import org.hisp.dhis.android.core.data.database.Transaction;
 import org.hisp.dhis.android.core.dataelement.DataElementStore;
+import org.hisp.dhis.android.core.option.OptionSet;
+import org.hisp.dhis.android.core.option.OptionHandler;
 import org.hisp.dhis.android.core.option.OptionSetCall;
+import org.hisp.dhis.android.core.option.OptionSetHandler;
 import org.hisp.dhis.android.core.option.OptionSetService;
 import org.hisp.dhis.android.core.option.OptionSetStore;
 import org.hisp.dhis.android.core.option.OptionStore;
 import org.hisp.dhis.android.core.organisationunit.OrganisationUnit;
 import org.hisp.dhis.android.core.organisationunit.OrganisationUnitCall;
+import org.hisp.dhis.android.core.organisationunit.OrganisationUnitHandler;
 import org.hisp.dhis.android.core.organisationunit.OrganisationUnitService;
 import org.hisp.dhis.android.core.organisationunit.OrganisationUnitStore;
 import org.hisp.dhis.android.core.program.Program;
 import org.hisp.dhis.android.core.program.ProgramCall;
+import org.hisp.dhis.android.core.program.ProgramHandler;
 import org.hisp.dhis.android.core.program.ProgramIndicatorStore;
 import org.hisp.dhis.android.core.program.ProgramRuleActionStore;
 import org.hisp.dhis.android.core.program.ProgramRuleStore;
@@ -62,6 +71,7 @@ import org.hisp.dhis.android.core.systeminfo.SystemInfoService;
 import org.hisp.dhis.android.core.systeminfo.SystemInfoStore;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttributeStore;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityCall;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityHandler;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityService;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityStore;
 import org.hisp.dhis.android.core.user.User;
@@ -74,15 +84,35 @@ import org.hisp.dhis.android.core.user.UserRoleStore;
 import org.hisp.dhis.android.core.user.UserService;
 import org.hisp.dhis.android.core.user.UserStore;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import retrofit2.Response;
 
-@SuppressWarnings({"PMD.ExcessiveImports", "PMD.TooManyFields"})
+@SuppressWarnings({"PMD.ExcessiveImports", "PMD.TooManyFields", "PMD.UseConcurrentHashMap"})
 public class MetadataCall implements Call<Response> {
+    private static final int MAX_CONCURRENT_DOWNLOADS = 2;
+
+    // names of the stages, as reported to a StageListener
+    public static final String SYSTEM_INFO = "systemInfo";
+    public static final String USER = "user";
+    public static final String ORGANISATION_UNIT = "organisationUnit";
+    public static final String PROGRAM = "program";
+    public static final String TRACKED_ENTITY = "trackedEntity";
+    public static final String OPTION_SET = "optionSet";
+    public static final String METADATA_BUNDLE = "metadataBundle";
+
+    private static final Set<String> RESUMABLE_STAGES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            ORGANISATION_UNIT, PROGRAM, TRACKED_ENTITY, OPTION_SET, METADATA_BUNDLE)));
+
     private final DatabaseAdapter databaseAdapter;
     private final SystemInfoService systemInfoService;
     private final UserService userService;
@@ -115,6 +145,28 @@ public class MetadataCall implements Call<Response> {
     private final RelationshipTypeStore relationshipStore;
     private final TrackedEntityStore trackedEntityStore;
 
+    @Nullable
+    private final ObjectMapper objectMapper;
+    private final int pageSize;
+
+    @Nullable
+    private final MetadataService metadataService;
+    private final boolean checkpointed;
+
+    @Nullable
+    private final StageListener stageListener;
+
+    /**
+     * @param objectMapper mapper used to stream the programs response, or null to parse it at once
+     * @param pageSize     page size for programs, tracked entities and option sets, or 0 to download each of
+     *                     them in a single request. Paged stages persist every page as soon as it is downloaded.
+     * @param metadataService service used to download programs, tracked entities, option sets and organisation
+     *                        units in a single request, see {@link MetadataBundleCall}, or null to download
+     *                        them separately. Requires an object mapper.
+     * @param checkpointed    whether every stage is committed on its own, see {@link SyncCheckpoint}. A sync
+     *                        which fails half way then resumes with the stages it has not completed.
+     * @param stageListener   listener which receives the {@link StageMetrics} of every stage, or null
+     */
     public MetadataCall(DatabaseAdapter databaseAdapter,
                         SystemInfoService systemInfoService,
                         UserService userService,
@@ -145,7 +197,15 @@ public class MetadataCall implements Call<Response> {
                         ProgramStageSectionStore programStageSectionStore,
                         ProgramStageStore programStageStore,
                         RelationshipTypeStore relationshipStore,
-                        TrackedEntityStore trackedEntityStore) {
+                        TrackedEntityStore trackedEntityStore,
+                        @Nullable ObjectMapper objectMapper,
+                        int pageSize,
+                        @Nullable MetadataService metadataService,
+                        boolean checkpointed,
+                        @Nullable StageListener stageListener) {
+        if (metadataService != null && objectMapper == null) {
+            throw new IllegalArgumentException("metadataService requires an objectMapper");
+        }
         this.databaseAdapter = databaseAdapter;
         this.systemInfoService = systemInfoService;
         this.userService = userService;
@@ -177,6 +237,11 @@ public class MetadataCall implements Call<Response> {
         this.programStageStore = programStageStore;
         this.relationshipStore = relationshipStore;
         this.trackedEntityStore = trackedEntityStore;
+        this.objectMapper = objectMapper;
+        this.pageSize = pageSize;
+        this.metadataService = metadataService;
+        this.checkpointed = checkpointed;
+        this.stageListener = stageListener;
     }
 
     @Override
@@ -186,91 +251,164 @@ public class MetadataCall implements Call<Response> {
 
     @Override
     public Response call() throws Exception {
-        Response response = null;
-        Transaction transaction = databaseAdapter.beginNewTransaction();
+        ExecutorService executor = Executors.newFixedThreadPool(MAX_CONCURRENT_DOWNLOADS);
         try {
-            response = new SystemInfoCall(
-                    databaseAdapter, systemInfoStore,
-                    systemInfoService, resourceStore
-            ).call();
-            if (!response.isSuccessful()) {
-                return response;
-            }
-            SystemInfo systemInfo = (SystemInfo) response.body();
-            Date serverDate = systemInfo.serverDate();
-
-            response = new UserCall(
-                    userService, databaseAdapter, userStore,
-                    userCredentialsStore, userRoleStore, resourceStore, serverDate,
-                    userRoleProgramLinkStore
-            ).call();
-            if (!response.isSuccessful()) {
-                return response;
-            }
-
-            User user = (User) response.body();
-            response = new OrganisationUnitCall(
-                    user, organisationUnitService, databaseAdapter, organisationUnitStore,
-                    resourceStore, serverDate, userOrganisationUnitLinkStore
-            ).call();
-            if (!response.isSuccessful()) {
-                return response;
+            StageScheduler scheduler = metadataService == null ? scheduler(executor) : bundleScheduler(executor);
+            scheduler.listener(stageListener);
+            if (checkpointed) {
+                return scheduler.execute(databaseAdapter,
+                        new SyncCheckpoint(resourceStore, new Date(), RESUMABLE_STAGES));
             }
+            return scheduler.execute(databaseAdapter);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-            Set<String> programUids = getAssignedProgramUids(user);
-            response = new ProgramCall(
-                    programService, databaseAdapter, resourceStore, programUids, programStore, serverDate,
-                    trackedEntityAttributeStore, programTrackedEntityAttributeStore, programRuleVariableStore,
-                    programIndicatorStore, programStageSectionProgramIndicatorLinkStore, programRuleActionStore,
-                    programRuleStore, optionStore, optionSetStore, dataElementStore, programStageDataElementStore,
-                    programStageSectionStore, programStageStore, relationshipStore
-            ).call();
-            if (!response.isSuccessful()) {
-                return response;
+    /**
+     * Models the metadata sync as a dependency graph. Organisation units and programs only need the user, while
+     * tracked entities and option sets only need the programs, so each of these pairs is downloaded concurrently.
+     * The uids referenced by the programs are collected while they are downloaded, which lets the program call
+     * stream its response without keeping the programs in memory. If the programs have been committed by an
+     * interrupted sync, the uids are read from the database instead.
+     */
+    private StageScheduler scheduler(ExecutorService executor) {
+        final Set<String> trackedEntityUids = new HashSet<>();
+        final Map<String, Integer> optionSetVersions = new HashMap<>();
+        final PayloadParser.ItemHandler<Program> programListener = new PayloadParser.ItemHandler<Program>() {
+            @Override
+            public void handle(@NonNull Program program) {
+                if (program.trackedEntity() != null) {
+                    trackedEntityUids.add(program.trackedEntity().uid());
+                }
+                getOptionSetVersionsForAttributes(optionSetVersions, program);
+                getOptionSetVersionsForDataElements(optionSetVersions, program);
             }
+        };
+
+        return userScheduler(executor)
+                .stage(ORGANISATION_UNIT, new StageScheduler.Stage() {
+                    @NonNull
+                    @Override
+                    public SyncCall<?> create(@NonNull Map<String, Response> dependencies) {
+                        return new OrganisationUnitCall(
+                                user(dependencies), organisationUnitService, databaseAdapter, organisationUnitStore,
+                                resourceStore, serverDate(dependencies), userOrganisationUnitLinkStore
+                        );
+                    }
+                }, SYSTEM_INFO, USER)
+                .stage(PROGRAM, new StageScheduler.Stage() {
+                    @NonNull
+                    @Override
+                    public SyncCall<?> create(@NonNull Map<String, Response> dependencies) {
+                        Set<String> programUids = getAssignedProgramUids(user(dependencies));
+                        return new ProgramCall(
+                                programService, databaseAdapter, resourceStore, programUids, programStore,
+                                serverDate(dependencies), trackedEntityAttributeStore,
+                                programTrackedEntityAttributeStore, programRuleVariableStore, programIndicatorStore,
+                                programStageSectionProgramIndicatorLinkStore, programRuleActionStore,
+                                programRuleStore, optionStore, optionSetStore, dataElementStore,
+                                programStageDataElementStore, programStageSectionStore, programStageStore,
+                                relationshipStore, trackedEntityStore, objectMapper, programListener, pageSize
+                        );
+                    }
+                }, SYSTEM_INFO, USER)
+                .stage(TRACKED_ENTITY, new StageScheduler.Stage() {
+                    @NonNull
+                    @Override
+                    public SyncCall<?> create(@NonNull Map<String, Response> dependencies) {
+                        Set<String> uids = dependencies.containsKey(PROGRAM)
+                                ? trackedEntityUids : trackedEntityStore.queryUids();
+                        return new TrackedEntityCall(
+                                uids, databaseAdapter, trackedEntityStore,
+                                resourceStore, trackedEntityService, serverDate(dependencies), pageSize
+                        );
+                    }
+                }, SYSTEM_INFO, PROGRAM)
+                .stage(OPTION_SET, new StageScheduler.Stage() {
+                    @NonNull
+                    @Override
+                    public SyncCall<?> create(@NonNull Map<String, Response> dependencies) {
+                        if (!dependencies.containsKey(PROGRAM)) {
+                            // versions are unknown, so all option sets are downloaded
+                            return new OptionSetCall(
+                                    optionSetService, optionSetStore, databaseAdapter, resourceStore,
+                                    optionSetStore.queryUids(), serverDate(dependencies), optionStore,
+                                    pageSize, null
+                            );
+                        }
+                        return new OptionSetCall(
+                                optionSetService, optionSetStore, databaseAdapter, resourceStore,
+                                new HashSet<>(optionSetVersions.keySet()), serverDate(dependencies), optionStore,
+                                pageSize, optionSetVersions
+                        );
+                    }
+                }, SYSTEM_INFO, PROGRAM);
+    }
 
-            List<Program> programs = ((Response<Payload<Program>>) response).body().items();
-            Set<String> trackedEntityUids = getAssignedTrackedEntityUids(programs);
-            response = new TrackedEntityCall(
-                    trackedEntityUids, databaseAdapter, trackedEntityStore,
-                    resourceStore, trackedEntityService, serverDate
-            ).call();
-            if (!response.isSuccessful()) {
-                return response;
-            }
+    /**
+     * Downloads everything the user needs after the user itself in a single request to the metadata endpoint.
+     */
+    private StageScheduler bundleScheduler(ExecutorService executor) {
+        return userScheduler(executor)
+                .stage(METADATA_BUNDLE, new StageScheduler.Stage() {
+                    @NonNull
+                    @Override
+                    public SyncCall<?> create(@NonNull Map<String, Response> dependencies) {
+                        User user = user(dependencies);
+                        return new MetadataBundleCall(
+                                metadataService, databaseAdapter, resourceStore, objectMapper,
+                                ProgramHandler.create(databaseAdapter, programStore, trackedEntityAttributeStore,
+                                        programTrackedEntityAttributeStore, programRuleVariableStore,
+                                        programIndicatorStore, programStageSectionProgramIndicatorLinkStore,
+                                        programRuleActionStore, programRuleStore, optionStore, optionSetStore,
+                                        dataElementStore, programStageDataElementStore, programStageSectionStore,
+                                        programStageStore, relationshipStore, trackedEntityStore),
+                                new OptionSetHandler(optionSetStore, new OptionHandler(optionStore)),
+                                new TrackedEntityHandler(trackedEntityStore),
+                                new OrganisationUnitHandler(organisationUnitStore, userOrganisationUnitLinkStore),
+                                user, getAssignedProgramUids(user), serverDate(dependencies)
+                        );
+                    }
+                }, SYSTEM_INFO, USER);
+    }
 
-            Set<String> optionSetUids = getAssignedOptionSetUids(programs);
-            response = new OptionSetCall(
-                    optionSetService, optionSetStore, databaseAdapter, resourceStore,
-                    optionSetUids, serverDate, optionStore
-            ).call();
-            if (!response.isSuccessful()) {
-                return response;
-            }
-            transaction.setSuccessful();
-            return response;
-        } finally {
-            transaction.end();
-        }
+    private StageScheduler userScheduler(ExecutorService executor) {
+        return new StageScheduler(executor)
+                .stage(SYSTEM_INFO, new StageScheduler.Stage() {
+                    @NonNull
+                    @Override
+                    public SyncCall<?> create(@NonNull Map<String, Response> dependencies) {
+                        return new SystemInfoCall(
+                                databaseAdapter, systemInfoStore,
+                                systemInfoService, resourceStore
+                        );
+                    }
+                })
+                .stage(USER, new StageScheduler.Stage() {
+                    @NonNull
+                    @Override
+                    public SyncCall<?> create(@NonNull Map<String, Response> dependencies) {
+                        return new UserCall(
+                                userService, databaseAdapter, userStore,
+                                userCredentialsStore, userRoleStore, resourceStore, serverDate(dependencies),
+                                userRoleProgramLinkStore
+                        );
+                    }
+                }, SYSTEM_INFO);
     }
 
-    /// Utilty methods:
-    private Set<String> getAssignedOptionSetUids(List<Program> programs) {
-        if (programs == null) {
-            return null;
-        }
-        Set<String> uids = new HashSet<>();
-        int size = programs.size();
-        for (int i = 0; i < size; i++) {
-            Program program = programs.get(i);
+    private static Date serverDate(Map<String, Response> dependencies) {
+        SystemInfo systemInfo = (SystemInfo) dependencies.get(SYSTEM_INFO).body();
+        return systemInfo.serverDate();
+    }
 
-            getOptionSetUidsForAttributes(uids, program);
-            getOptionSetUidsForDataElements(uids, program);
-        }
-        return uids;
+    private static User user(Map<String, Response> dependencies) {
+        return (User) dependencies.get(USER).body();
     }
 
-    private void getOptionSetUidsForDataElements(Set<String> uids, Program program) {
+    /// Utilty methods:
+    private void getOptionSetVersionsForDataElements(Map<String, Integer> versions, Program program) {
         List<ProgramStage> programStages = program.programStages();
         int programStagesSize = programStages.size();
 
@@ -284,13 +422,14 @@ public class MetadataCall implements Call<Response> {
 
                 if (programStageDataElement.dataElement() != null &&
                         programStageDataElement.dataElement().optionSet() != null) {
-                    uids.add(programStageDataElement.dataElement().optionSet().uid());
+                    OptionSet optionSet = programStageDataElement.dataElement().optionSet();
+                    versions.put(optionSet.uid(), optionSet.version());
                 }
             }
         }
     }
 
-    private void getOptionSetUidsForAttributes(Set<String> uids, Program program) {
+    private void getOptionSetVersionsForAttributes(Map<String, Integer> versions, Program program) {
         int programTrackedEntityAttributeSize = program.programTrackedEntityAttributes().size();
         List<ProgramTrackedEntityAttribute> programTrackedEntityAttributes =
                 program.programTrackedEntityAttributes();
@@ -300,27 +439,10 @@ public class MetadataCall implements Call<Response> {
 
             if (programTrackedEntityAttribute.trackedEntityAttribute() != null &&
                     programTrackedEntityAttribute.trackedEntityAttribute().optionSet() != null) {
-                uids.add(programTrackedEntityAttribute.trackedEntityAttribute().optionSet().uid());
-            }
-        }
-    }
-
-    private Set<String> getAssignedTrackedEntityUids(List<Program> programs) {
-        if (programs == null) {
-            return null;
-        }
-
-        Set<String> uids = new HashSet<>();
-
-        int size = programs.size();
-        for (int i = 0; i < size; i++) {
-            Program program = programs.get(i);
-
-            if (program.trackedEntity() != null) {
-                uids.add(program.trackedEntity().uid());
+                OptionSet optionSet = programTrackedEntityAttribute.trackedEntityAttribute().optionSet();
+                versions.put(optionSet.uid(), optionSet.version());
             }
         }
-        return uids;
     }
 
     private Set<String> getAssignedProgramUids(User user) {
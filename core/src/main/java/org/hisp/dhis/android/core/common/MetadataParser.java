@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hisp.dhis.android.core.common;
+
+import android.support.annotation.NonNull;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import okio.BufferedSource;
+
+/**
+ * Reads a response of the metadata endpoint, which contains one array per type of metadata, one item at a time.
+ * <p>
+ * Items of every registered section are deserialized and passed to the section's handler in the order they
+ * appear in the response. Sections which are not registered, like the system information the server adds
+ * to every response, are skipped without being deserialized.
+ * </p>
+ */
+@SuppressWarnings("PMD.UseConcurrentHashMap")
+public final class MetadataParser {
+    private final ObjectMapper objectMapper;
+    private final Map<String, Section<?>> sections;
+
+    public MetadataParser(@NonNull ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.sections = new HashMap<>();
+    }
+
+    @NonNull
+    public <T> MetadataParser section(@NonNull String name, @NonNull Class<T> itemType,
+                                      @NonNull PayloadParser.ItemHandler<T> itemHandler) {
+        sections.put(name, new Section<>(itemType, itemHandler));
+        return this;
+    }
+
+    /**
+     * Parses the response and closes the source.
+     */
+    public void parse(@NonNull BufferedSource source) throws IOException {
+        JsonParser parser = objectMapper.getFactory().createParser(source.inputStream());
+        try {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Metadata is not a json object");
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                Section<?> section = sections.get(parser.getCurrentName());
+                JsonToken token = parser.nextToken();
+
+                if (section != null && token == JsonToken.START_ARRAY) {
+                    section.parseItems(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } finally {
+            parser.close();
+        }
+    }
+
+    private final class Section<T> {
+        private final Class<T> itemType;
+        private final PayloadParser.ItemHandler<T> itemHandler;
+
+        Section(Class<T> itemType, PayloadParser.ItemHandler<T> itemHandler) {
+            this.itemType = itemType;
+            this.itemHandler = itemHandler;
+        }
+
+        void parseItems(JsonParser parser) throws IOException {
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                T item = objectMapper.readValue(parser, itemType);
+                if (item != null) {
+                    itemHandler.handle(item);
+                }
+            }
+        }
+    }
+}
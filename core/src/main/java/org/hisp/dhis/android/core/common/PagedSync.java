@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Transaction;
+import org.hisp.dhis.android.core.resource.ResourceHandler;
+import org.hisp.dhis.android.core.resource.ResourceModel;
+import org.hisp.dhis.android.core.resource.ResourceStore;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+
+import retrofit2.Response;
+
+/**
+ * Downloads a paged resource one page at a time.
+ * <p>
+ * Every page is persisted in its own transaction together with a checkpoint in the resource table, so a sync
+ * which fails half way resumes from the page after the last persisted one when the same request is repeated.
+ * The resource is marked as synced by {@link #complete()}, using the server date of the attempt which requested
+ * the first page, so that nothing which changed while the pages were downloaded is skipped by the next sync.
+ * </p>
+ * <p>
+ * Requests which are split into chunks of uids, see {@link UidChunks}, are paged one chunk after the other and the
+ * checkpoint records the chunk as well as the page.
+ * </p>
+ * <p>
+ * {@link #download(List)} writes every page on the calling thread as soon as it is downloaded, outside of any
+ * enclosing transaction. The download step of a {@link SyncCall} runs on a worker thread and must not write,
+ * so it uses {@link #downloadPages(List)} instead. When the worker thread has a {@link DatabaseWriter}, every
+ * page is handed over to it as soon as it is downloaded; otherwise the pages are held until the persist step
+ * writes them with {@link #persistPages()}.
+ * </p>
+ *
+ * @param <T> type of the payload items
+ */
+public final class PagedSync<T> {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String CHUNK_SEPARATOR = "/";
+
+    public interface PageCall<R> {
+
+        /**
+         * @param page     the page to download, starting from 1
+         * @param pageSize the maximum number of items in the page
+         */
+        @NonNull
+        Response<R> download(int page, int pageSize) throws IOException;
+
+        /**
+         * Persists a downloaded page. It is invoked within a transaction.
+         *
+         * @return the pager of the page, or null if the response is not paged
+         */
+        @Nullable
+        Pager persist(@NonNull R page) throws IOException;
+    }
+
+    private final DatabaseAdapter databaseAdapter;
+    private final ResourceHandler resourceHandler;
+    private final ResourceModel.Type resourceType;
+    private final int pageSize;
+    private final String pagingKey;
+    private final Date serverDate;
+
+    private final List<DownloadedPage<T>> downloadedPages;
+
+    private Date pagingStarted;
+
+    /**
+     * @param uids the uids the request is filtered by; a checkpoint is only resumed by a request for the same
+     *             uids and with the same page size
+     */
+    public PagedSync(@NonNull DatabaseAdapter databaseAdapter,
+                     @NonNull ResourceStore resourceStore,
+                     @NonNull ResourceModel.Type resourceType,
+                     @Nullable Set<String> uids,
+                     int pageSize,
+                     @NonNull Date serverDate) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive: " + pageSize);
+        }
+        this.databaseAdapter = databaseAdapter;
+        this.resourceHandler = new ResourceHandler(resourceStore);
+        this.resourceType = resourceType;
+        this.pageSize = pageSize;
+        this.pagingKey = pagingKey(uids, pageSize);
+        this.serverDate = new Date(serverDate.getTime());
+        this.downloadedPages = new ArrayList<>();
+    }
+
+    /**
+     * Downloads and persists the pages which have not been persisted yet, stopping at the first unsuccessful
+     * response.
+     *
+     * @return the pager of the last page; the items of the payload are always empty
+     */
+    @NonNull
+    public <R> Response<Payload<T>> download(@NonNull PageCall<R> pageCall) throws IOException {
+        return download(Collections.singletonList(pageCall));
+    }
+
+    /**
+     * Downloads and persists the pages of every chunk of the request, in the order of the chunks.
+     *
+     * @param chunks one call per chunk of uids; the same request has to be split into the same chunks
+     * @return the pager of the last page; the items of the payload are always empty
+     */
+    @NonNull
+    public <R> Response<Payload<T>> download(@NonNull List<? extends PageCall<R>> chunks) throws IOException {
+        int[] start = start();
+        int chunk = start[0];
+        int page = start[1];
+
+        Response<R> response = null;
+        Pager pager = null;
+        for (; chunk < chunks.size(); chunk++) {
+            PageCall<R> pageCall = chunks.get(chunk);
+            do {
+                response = pageCall.download(page, pageSize);
+                if (!response.isSuccessful()) {
+                    return Response.error(response.errorBody(), response.raw());
+                }
+                pager = persist(pageCall, response.body(), chunk, page);
+                page++;
+            } while (pager != null && page <= pager.pageCount());
+            page = 1;
+        }
+
+        Payload<T> payload = Payload.create(pager, Collections.<T>emptyList());
+        return response == null ? Response.success(payload) : Response.success(payload, response.raw());
+    }
+
+    /**
+     * Downloads the pages which have not been persisted yet like {@link #download(List)}, but without writing on
+     * the calling thread: every page is written by the {@link DatabaseWriter#current() writer} of the thread as
+     * soon as it is downloaded, or held until {@link #persistPages()} is invoked if there is none. Only pages
+     * which carry their pager can be downloaded ahead, since the pager tells how many pages there are.
+     *
+     * @return the pager of the last page; the items of the payload are always empty
+     */
+    @NonNull
+    public Response<Payload<T>> downloadPages(@NonNull List<? extends PageCall<Payload<T>>> chunks)
+            throws IOException {
+        int[] start = start();
+        int chunk = start[0];
+        int page = start[1];
+
+        DatabaseWriter writer = DatabaseWriter.current();
+        downloadedPages.clear();
+        Response<Payload<T>> response = null;
+        Pager pager = null;
+        for (; chunk < chunks.size(); chunk++) {
+            PageCall<Payload<T>> pageCall = chunks.get(chunk);
+            do {
+                response = pageCall.download(page, pageSize);
+                if (!response.isSuccessful()) {
+                    downloadedPages.clear();
+                    return Response.error(response.errorBody(), response.raw());
+                }
+                DownloadedPage<T> downloadedPage = new DownloadedPage<>(pageCall, response.body(), chunk, page);
+                if (writer == null) {
+                    downloadedPages.add(downloadedPage);
+                } else {
+                    writer.write(write(downloadedPage));
+                }
+                pager = response.body() == null ? null : response.body().pager();
+                page++;
+            } while (pager != null && page <= pager.pageCount());
+            page = 1;
+        }
+
+        Payload<T> payload = Payload.create(pager, Collections.<T>emptyList());
+        return response == null ? Response.success(payload) : Response.success(payload, response.raw());
+    }
+
+    /**
+     * Writes the pages held by {@link #downloadPages(List)}, if any, each in its own transaction together with
+     * its checkpoint. It has to be invoked on the thread which writes the database, like the persist step of a
+     * {@link SyncCall}.
+     */
+    public void persistPages() throws IOException {
+        try {
+            for (DownloadedPage<T> downloadedPage : downloadedPages) {
+                persist(downloadedPage.pageCall, downloadedPage.payload, downloadedPage.chunk, downloadedPage.page);
+            }
+        } finally {
+            downloadedPages.clear();
+        }
+    }
+
+    private Callable<Pager> write(final DownloadedPage<T> downloadedPage) {
+        return new Callable<Pager>() {
+            @Override
+            public Pager call() throws IOException {
+                return persist(downloadedPage.pageCall, downloadedPage.payload, downloadedPage.chunk,
+                        downloadedPage.page);
+            }
+        };
+    }
+
+    /**
+     * Marks the resource as synced once all pages are persisted, which also discards the checkpoint.
+     */
+    public void complete() {
+        resourceHandler.handleResource(resourceType, pagingStarted);
+    }
+
+    /**
+     * @return the server date the resource is marked as synced at by {@link #complete()}, which is the one of the
+     * attempt which requested the first page once the pages have been downloaded
+     */
+    @NonNull
+    public Date pagingStarted() {
+        return new Date(pagingStarted.getTime());
+    }
+
+    /**
+     * @return the chunk and the page to start from, which are the ones after the checkpoint of the same request
+     */
+    private int[] start() {
+        int chunk = 0;
+        int page = 1;
+        pagingStarted = serverDate;
+
+        ResourceModel resource = resourceHandler.getResource(resourceType);
+        Integer resumedChunk = resource == null ? null : resumedChunk(resource.pagingKey());
+        if (resumedChunk != null && resource.lastPage() != null && resource.pagingStarted() != null) {
+            chunk = resumedChunk;
+            page = resource.lastPage() + 1;
+            pagingStarted = resource.pagingStarted();
+        }
+        return new int[]{chunk, page};
+    }
+
+    @Nullable
+    private Integer resumedChunk(@Nullable String checkpointKey) {
+        String prefix = pagingKey + CHUNK_SEPARATOR;
+        if (checkpointKey == null || !checkpointKey.startsWith(prefix)) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(checkpointKey.substring(prefix.length()));
+        } catch (NumberFormatException numberFormatException) {
+            return null;
+        }
+    }
+
+    private <R> Pager persist(PageCall<R> pageCall, R body, int chunk, int page) throws IOException {
+        Transaction transaction = databaseAdapter.beginNewTransaction();
+        try {
+            Pager pager = pageCall.persist(body);
+            resourceHandler.handlePage(resourceType, pagingKey + CHUNK_SEPARATOR + chunk, page, pagingStarted);
+            transaction.setSuccessful();
+            return pager;
+        } finally {
+            transaction.end();
+        }
+    }
+
+    private static String pagingKey(@Nullable Set<String> uids, int pageSize) {
+        StringBuilder builder = new StringBuilder().append(pageSize);
+        if (uids != null) {
+            for (String uid : new TreeSet<>(uids)) {
+                builder.append(',').append(uid);
+            }
+        }
+        return UUID.nameUUIDFromBytes(builder.toString().getBytes(UTF_8)).toString();
+    }
+
+    private static final class DownloadedPage<T> {
+        final PageCall<Payload<T>> pageCall;
+        final Payload<T> payload;
+        final int chunk;
+        final int page;
+
+        DownloadedPage(PageCall<Payload<T>> pageCall, Payload<T> payload, int chunk, int page) {
+            this.pageCall = pageCall;
+            this.payload = payload;
+            this.chunk = chunk;
+            this.page = page;
+        }
+    }
+}
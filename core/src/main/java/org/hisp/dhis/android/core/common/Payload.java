@@ -28,6 +28,9 @@
 
 package org.hisp.dhis.android.core.common;
 
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
 import com.fasterxml.jackson.annotation.JsonAnySetter;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -46,6 +49,13 @@ public class Payload<T> {
         // explicit empty constructor
     }
 
+    public static <T> Payload<T> create(@Nullable Pager pager, @NonNull List<T> items) {
+        Payload<T> payload = new Payload<>();
+        payload.pager = pager;
+        payload.items = items;
+        return payload;
+    }
+
     @JsonAnySetter
     @SuppressWarnings("unused")
     /* package */ void processItems(String key, List<T> values) {
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+
+import okio.BufferedSource;
+
+/**
+ * Reads a {@link Payload} response one item at a time instead of materializing the whole list of items.
+ * <p>
+ * Every element of the items array is deserialized and passed to an {@link ItemHandler} before the next
+ * one is read, so memory use is bounded by the largest single item rather than by the size of the response.
+ * </p>
+ *
+ * @param <T> type of the payload items
+ */
+public final class PayloadParser<T> {
+    private static final String PAGER = "pager";
+
+    public interface ItemHandler<T> {
+        void handle(@NonNull T item);
+    }
+
+    private final ObjectMapper objectMapper;
+    private final Class<T> itemType;
+
+    public PayloadParser(@NonNull ObjectMapper objectMapper, @NonNull Class<T> itemType) {
+        this.objectMapper = objectMapper;
+        this.itemType = itemType;
+    }
+
+    /**
+     * Parses the payload and closes the source.
+     *
+     * @return the pager of the payload, or null if the response is not paged
+     */
+    @Nullable
+    public Pager parse(@NonNull BufferedSource source, @NonNull ItemHandler<T> itemHandler) throws IOException {
+        JsonParser parser = objectMapper.getFactory().createParser(source.inputStream());
+        try {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Payload is not a json object");
+            }
+
+            Pager pager = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+
+                if (PAGER.equals(fieldName)) {
+                    pager = objectMapper.readValue(parser, Pager.class);
+                } else if (token == JsonToken.START_ARRAY) {
+                    parseItems(parser, itemHandler);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return pager;
+        } finally {
+            parser.close();
+        }
+    }
+
+    private void parseItems(JsonParser parser, ItemHandler<T> itemHandler) throws IOException {
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            T item = objectMapper.readValue(parser, itemType);
+            if (item != null) {
+                itemHandler.handle(item);
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hisp.dhis.android.core.common;
+
+import android.support.annotation.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * Keeps response bodies in temporary files between the download and the persist step of a {@link SyncCall},
+ * so that large responses don't have to be held in memory while they wait for the database.
+ */
+public final class SpoolFiles {
+    private static final String SUFFIX = ".json";
+    private static final long READ_SIZE = 8192;
+
+    public interface Reader {
+
+        /**
+         * Reads the body while it is spooled. Closing the source has no effect.
+         */
+        void read(@NonNull BufferedSource source) throws IOException;
+    }
+
+    private SpoolFiles() {
+        // no instances
+    }
+
+    /**
+     * Writes the body into a new temporary file and closes the body.
+     */
+    @NonNull
+    public static File spool(@NonNull ResponseBody body, @NonNull String prefix) throws IOException {
+        File file = File.createTempFile(prefix, SUFFIX);
+        try {
+            BufferedSink sink = Okio.buffer(Okio.sink(file));
+            try {
+                sink.writeAll(body.source());
+            } finally {
+                sink.close();
+            }
+        } catch (IOException exception) {
+            delete(file);
+            throw exception;
+        } finally {
+            body.close();
+        }
+        return file;
+    }
+
+    /**
+     * Writes the body into a new temporary file like {@link #spool(ResponseBody, String)}, while the reader reads
+     * it as well, so that the body is only read once from the network. Whatever the reader leaves unread is still
+     * written into the file.
+     */
+    @NonNull
+    public static File spool(@NonNull ResponseBody body, @NonNull String prefix, @NonNull Reader reader)
+            throws IOException {
+        File file = File.createTempFile(prefix, SUFFIX);
+        try {
+            final BufferedSink sink = Okio.buffer(Okio.sink(file));
+            try {
+                Source teeSource = new ForwardingSource(body.source()) {
+                    @Override
+                    public long read(Buffer buffer, long byteCount) throws IOException {
+                        long read = super.read(buffer, byteCount);
+                        if (read > 0) {
+                            buffer.copyTo(sink.buffer(), buffer.size() - read, read);
+                            sink.emitCompleteSegments();
+                        }
+                        return read;
+                    }
+                };
+                reader.read(Okio.buffer(new ForwardingSource(teeSource) {
+                    @Override
+                    public void close() {
+                        // the body is closed once the rest of it has been written
+                    }
+                }));
+                Buffer rest = new Buffer();
+                while (teeSource.read(rest, READ_SIZE) != -1) {
+                    rest.clear();
+                }
+            } finally {
+                sink.close();
+            }
+        } catch (IOException | RuntimeException exception) {
+            delete(file);
+            throw exception;
+        } finally {
+            body.close();
+        }
+        return file;
+    }
+
+    public static void deleteAll(@NonNull List<File> files) {
+        synchronized (files) {
+            for (File file : files) {
+                delete(file);
+            }
+        }
+    }
+
+    public static void delete(@NonNull File file) {
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+}
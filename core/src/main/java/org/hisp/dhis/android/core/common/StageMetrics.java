@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hisp.dhis.android.core.common;
+
+import android.support.annotation.NonNull;
+
+import com.google.auto.value.AutoValue;
+
+/**
+ * What a single stage of a sync has spent its time on, reported to a {@link StageListener}.
+ * <p>
+ * Requests, bytes, parse time and row counts are only recorded if the {@link org.hisp.dhis.android.core.D2}
+ * instance has been built with a listener; otherwise they are zero.
+ * </p>
+ */
+@AutoValue
+public abstract class StageMetrics {
+
+    /**
+     * @return the name of the stage, like {@link MetadataCall#PROGRAM}
+     */
+    @NonNull
+    public abstract String stage();
+
+    /**
+     * @return the number of requests which have been sent to the server, including conditional requests answered
+     * with 304 Not Modified
+     */
+    public abstract int requests();
+
+    /**
+     * @return the time between sending the requests and receiving the headers of their responses, summed up over
+     * all requests. Requests which are sent concurrently are counted in full.
+     */
+    public abstract long requestMillis();
+
+    /**
+     * @return the number of bytes of the response bodies as transferred over the network, before decompression
+     */
+    public abstract long responseBytes();
+
+    /**
+     * @return the wall time of the download, from the first request until the last response has been parsed
+     */
+    public abstract long downloadMillis();
+
+    /**
+     * @return the time spent in converting response bodies to models, including the time spent in reading them
+     * from the network. Streamed responses are parsed while they are handled, so their parse time is part of the
+     * download or handler time instead.
+     */
+    public abstract long parseMillis();
+
+    /**
+     * @return the time spent in persisting the response, not including the commit
+     */
+    public abstract long handlerMillis();
+
+    /**
+     * @return the time spent in committing the transaction in which the stage has been persisted. If stages share
+     * a transaction, its commit time is reported with the last of them.
+     */
+    public abstract long commitMillis();
+
+    public abstract long rowsInserted();
+
+    public abstract long rowsUpdated();
+
+    public abstract long rowsDeleted();
+
+    @NonNull
+    public static Builder builder() {
+        return new AutoValue_StageMetrics.Builder();
+    }
+
+    @AutoValue.Builder
+    public static abstract class Builder {
+        public abstract Builder stage(@NonNull String stage);
+
+        public abstract Builder requests(int requests);
+
+        public abstract Builder requestMillis(long requestMillis);
+
+        public abstract Builder responseBytes(long responseBytes);
+
+        public abstract Builder downloadMillis(long downloadMillis);
+
+        public abstract Builder parseMillis(long parseMillis);
+
+        public abstract Builder handlerMillis(long handlerMillis);
+
+        public abstract Builder commitMillis(long commitMillis);
+
+        public abstract Builder rowsInserted(long rowsInserted);
+
+        public abstract Builder rowsUpdated(long rowsUpdated);
+
+        public abstract Builder rowsDeleted(long rowsDeleted);
+
+        public abstract StageMetrics build();
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hisp.dhis.android.core.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects the metrics of a stage while it is executed. The {@link StageScheduler} attaches the recorder of a
+ * stage to the thread which downloads or persists it, so that the network and database layers can record what
+ * they do on behalf of the stage without knowing about stages. Threads started by the stage, like the ones
+ * downloading chunks concurrently, inherit the recorder.
+ */
+public final class StageMetricsRecorder {
+    private static final ThreadLocal<StageMetricsRecorder> CURRENT = new InheritableThreadLocal<>();
+
+    private final String stage;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicLong requestNanos = new AtomicLong();
+    private final AtomicLong responseBytes = new AtomicLong();
+    private final AtomicLong downloadNanos = new AtomicLong();
+    private final AtomicLong parseNanos = new AtomicLong();
+    private final AtomicLong handlerNanos = new AtomicLong();
+    private final AtomicLong commitNanos = new AtomicLong();
+    private final AtomicLong rowsInserted = new AtomicLong();
+    private final AtomicLong rowsUpdated = new AtomicLong();
+    private final AtomicLong rowsDeleted = new AtomicLong();
+
+    public StageMetricsRecorder(@NonNull String stage) {
+        this.stage = stage;
+    }
+
+    /**
+     * @return the recorder of the stage executed by the current thread, or null if it doesn't execute a stage
+     */
+    @Nullable
+    public static StageMetricsRecorder current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Attaches the recorder to the current thread until {@link #detach()} is invoked.
+     */
+    public void attach() {
+        CURRENT.set(this);
+    }
+
+    public static void detach() {
+        CURRENT.remove();
+    }
+
+    public void recordRequest(long millis) {
+        requests.incrementAndGet();
+        requestNanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    public void recordResponseBytes(long bytes) {
+        responseBytes.addAndGet(bytes);
+    }
+
+    public void recordParse(long nanos) {
+        parseNanos.addAndGet(nanos);
+    }
+
+    public void recordInserted(long rows) {
+        rowsInserted.addAndGet(rows);
+    }
+
+    public void recordUpdated(long rows) {
+        rowsUpdated.addAndGet(rows);
+    }
+
+    public void recordDeleted(long rows) {
+        rowsDeleted.addAndGet(rows);
+    }
+
+    void recordDownload(long nanos) {
+        downloadNanos.addAndGet(nanos);
+    }
+
+    void recordHandler(long nanos) {
+        handlerNanos.addAndGet(nanos);
+    }
+
+    void recordCommit(long nanos) {
+        commitNanos.addAndGet(nanos);
+    }
+
+    @NonNull
+    public StageMetrics metrics() {
+        return StageMetrics.builder()
+                .stage(stage)
+                .requests(requests.get())
+                .requestMillis(TimeUnit.NANOSECONDS.toMillis(requestNanos.get()))
+                .responseBytes(responseBytes.get())
+                .downloadMillis(TimeUnit.NANOSECONDS.toMillis(downloadNanos.get()))
+                .parseMillis(TimeUnit.NANOSECONDS.toMillis(parseNanos.get()))
+                .handlerMillis(TimeUnit.NANOSECONDS.toMillis(handlerNanos.get()))
+                .commitMillis(TimeUnit.NANOSECONDS.toMillis(commitNanos.get()))
+                .rowsInserted(rowsInserted.get())
+                .rowsUpdated(rowsUpdated.get())
+                .rowsDeleted(rowsDeleted.get())
+                .build();
+    }
+}
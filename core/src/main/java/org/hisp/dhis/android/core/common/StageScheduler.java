@@ -0,0 +1,373 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Transaction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+
+import retrofit2.Response;
+
+/**
+ * Executes a set of {@link SyncCall}s which form a directed acyclic graph of dependencies.
+ * <p>
+ * Every stage is downloaded as soon as all of the stages it depends on have been downloaded, so stages which
+ * do not depend on each other hit the network concurrently. Once every stage has been downloaded successfully,
+ * the responses are persisted one by one on the calling thread, in declaration order and within a single
+ * transaction. If any of the downloads is not successful, nothing is written by this step.
+ * </p>
+ * <p>
+ * Downloads which commit their work as they go, like the pages of a {@link PagedSync}, hand it over to the
+ * {@link DatabaseWriter} of the scheduler, which runs it on the calling thread in between the downloads. Such
+ * work is committed on its own, whether or not the other stages succeed.
+ * </p>
+ * <p>
+ * Alternatively, {@link #execute(DatabaseAdapter, SyncCheckpoint)} commits every stage on its own as soon as it
+ * has been downloaded, so that a failing stage doesn't discard the work of the others. Stages which have been
+ * completed by an interrupted execution are skipped.
+ * </p>
+ * <p>
+ * Stages have to be declared after the stages they depend on, which rules out cycles by construction.
+ * </p>
+ * <p>
+ * The {@link StageMetrics} of every stage are passed to the {@link #listener(StageListener) listener} once
+ * the stage has been committed.
+ * </p>
+ */
+@SuppressWarnings("PMD.UseConcurrentHashMap")
+public final class StageScheduler {
+    private final ExecutorService executor;
+    private final Map<String, Stage> stages;
+    private final Map<String, List<String>> dependencies;
+    private StageListener listener;
+
+    public interface Stage {
+
+        /**
+         * @param dependencies successful responses of the stages this one depends on, keyed by stage name. Stages
+         *                     which have been skipped because of a {@link SyncCheckpoint} are missing.
+         * @return the call to download and persist for this stage
+         */
+        @NonNull
+        SyncCall<?> create(@NonNull Map<String, Response> dependencies);
+    }
+
+    public StageScheduler(@NonNull ExecutorService executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor == null");
+        }
+        this.executor = executor;
+        this.stages = new LinkedHashMap<>();
+        this.dependencies = new HashMap<>();
+    }
+
+    @NonNull
+    public StageScheduler stage(@NonNull String name, @NonNull Stage stage, @NonNull String... dependsOn) {
+        if (stages.containsKey(name)) {
+            throw new IllegalArgumentException("Stage is already declared: " + name);
+        }
+        for (String dependency : dependsOn) {
+            if (!stages.containsKey(dependency)) {
+                throw new IllegalArgumentException("Stage " + name + " depends on undeclared stage: " + dependency);
+            }
+        }
+        stages.put(name, stage);
+        dependencies.put(name, Arrays.asList(dependsOn));
+        return this;
+    }
+
+    @NonNull
+    public StageScheduler listener(@Nullable StageListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * @return the first unsuccessful response, or the response of the last declared stage if all succeeded
+     */
+    public Response execute(@NonNull DatabaseAdapter databaseAdapter) throws Exception {
+        Map<String, Download<?>> downloads = new HashMap<>();
+        Response failure = download(downloads, Collections.<String>emptySet(), null, null);
+        if (failure != null) {
+            return failure;
+        }
+
+        Download<?> download = null;
+        Transaction transaction = databaseAdapter.beginNewTransaction();
+        try {
+            for (String name : stages.keySet()) {
+                download = downloads.get(name);
+                download.persist();
+            }
+            transaction.setSuccessful();
+        } finally {
+            end(transaction, download);
+        }
+
+        for (String name : stages.keySet()) {
+            notifyListener(downloads.get(name));
+        }
+        return download == null ? null : download.response;
+    }
+
+    /**
+     * Commits every stage in a transaction of its own, together with a record of its completion in the checkpoint.
+     * Stages are committed on the calling thread while the downloads of the others continue, and stages which depend
+     * on a stage are only downloaded once it has been committed.
+     *
+     * @return the first unsuccessful response, or the response of the last declared stage which has been executed;
+     * null if all stages have been skipped
+     */
+    public Response execute(@NonNull DatabaseAdapter databaseAdapter,
+                            @NonNull SyncCheckpoint checkpoint) throws Exception {
+        Set<String> skipped = new HashSet<>();
+        for (String name : stages.keySet()) {
+            if (checkpoint.isCompleted(name)) {
+                skipped.add(name);
+            }
+        }
+
+        Map<String, Download<?>> downloads = new HashMap<>();
+        Response failure = download(downloads, skipped, databaseAdapter, checkpoint);
+        if (failure != null) {
+            return failure;
+        }
+
+        Transaction transaction = databaseAdapter.beginNewTransaction();
+        try {
+            checkpoint.finish();
+            transaction.setSuccessful();
+        } finally {
+            transaction.end();
+        }
+
+        Response response = null;
+        for (String name : stages.keySet()) {
+            if (downloads.containsKey(name)) {
+                response = downloads.get(name).response;
+            }
+        }
+        return response;
+    }
+
+    /**
+     * @param checkpoint if not null, every stage is committed as soon as it has been downloaded
+     */
+    private Response download(Map<String, Download<?>> downloads, Set<String> skipped,
+                              DatabaseAdapter databaseAdapter, SyncCheckpoint checkpoint) throws Exception {
+        DatabaseWriter writer = new DatabaseWriter();
+        List<DownloadFuture> futures = new ArrayList<>();
+        Set<String> pending = new LinkedHashSet<>(stages.keySet());
+        pending.removeAll(skipped);
+        Set<String> done = new HashSet<>(skipped);
+        int running = 0;
+
+        try {
+            while (!pending.isEmpty() || running > 0) {
+                Iterator<String> pendingIterator = pending.iterator();
+                while (pendingIterator.hasNext()) {
+                    String name = pendingIterator.next();
+                    if (done.containsAll(dependencies.get(name))) {
+                        pendingIterator.remove();
+
+                        SyncCall<?> call = stages.get(name).create(responses(name, downloads));
+                        DownloadFuture future = new DownloadFuture(downloadTask(name, call, writer), writer);
+                        futures.add(future);
+                        executor.execute(future);
+                        running++;
+                    }
+                }
+
+                Download<?> download = take(writer);
+                running--;
+
+                if (!download.response.isSuccessful()) {
+                    return download.response;
+                }
+                if (checkpoint != null) {
+                    commit(download, databaseAdapter, checkpoint);
+                    notifyListener(download);
+                }
+                downloads.put(download.name, download);
+                done.add(download.name);
+            }
+        } finally {
+            // only has an effect if we are leaving early
+            for (DownloadFuture future : futures) {
+                future.cancel(true);
+            }
+        }
+        return null;
+    }
+
+    private void commit(Download<?> download, DatabaseAdapter databaseAdapter,
+                               SyncCheckpoint checkpoint) throws Exception {
+        Transaction transaction = databaseAdapter.beginNewTransaction();
+        try {
+            download.persist();
+            checkpoint.complete(download.name);
+            transaction.setSuccessful();
+        } finally {
+            end(transaction, download);
+        }
+    }
+
+    /**
+     * Ends the transaction and records its commit time with the stage persisted last, if any.
+     */
+    private static void end(Transaction transaction, Download<?> download) {
+        long start = System.nanoTime();
+        transaction.end();
+        if (download != null) {
+            download.recorder.recordCommit(System.nanoTime() - start);
+        }
+    }
+
+    private void notifyListener(Download<?> download) {
+        if (listener != null) {
+            listener.onStageCompleted(download.recorder.metrics());
+        }
+    }
+
+    private Map<String, Response> responses(String name, Map<String, Download<?>> downloads) {
+        Map<String, Response> responses = new HashMap<>();
+        for (String dependency : dependencies.get(name)) {
+            if (downloads.containsKey(dependency)) {
+                responses.put(dependency, downloads.get(dependency).response);
+            }
+        }
+        return Collections.unmodifiableMap(responses);
+    }
+
+    /**
+     * Runs the writes handed over by the downloads until one of them has finished.
+     */
+    private static Download<?> take(DatabaseWriter writer) throws Exception {
+        while (true) {
+            Runnable task = writer.take();
+            if (!(task instanceof DownloadFuture)) {
+                task.run();
+                continue;
+            }
+            try {
+                return ((DownloadFuture) task).get();
+            } catch (ExecutionException executionException) {
+                Throwable cause = executionException.getCause();
+                if (cause instanceof Exception) {
+                    throw (Exception) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw executionException;
+            }
+        }
+    }
+
+    private static <T> Callable<Download<?>> downloadTask(final String name, final SyncCall<T> call,
+                                                          final DatabaseWriter writer) {
+        return new Callable<Download<?>>() {
+            @Override
+            public Download<?> call() throws Exception {
+                StageMetricsRecorder recorder = new StageMetricsRecorder(name);
+                recorder.attach();
+                writer.attach();
+                long start = System.nanoTime();
+                try {
+                    return new Download<>(name, call, call.download(), recorder);
+                } finally {
+                    recorder.recordDownload(System.nanoTime() - start);
+                    StageMetricsRecorder.detach();
+                    DatabaseWriter.detach();
+                }
+            }
+        };
+    }
+
+    /**
+     * A download which queues itself with the writer once it has finished, so that the writer thread waits for
+     * writes and finished downloads alike.
+     */
+    private static final class DownloadFuture extends FutureTask<Download<?>> {
+        private final DatabaseWriter writer;
+
+        DownloadFuture(Callable<Download<?>> task, DatabaseWriter writer) {
+            super(task);
+            this.writer = writer;
+        }
+
+        @Override
+        protected void done() {
+            writer.post(this);
+        }
+    }
+
+    private static final class Download<T> {
+        final String name;
+        final SyncCall<T> call;
+        final Response<T> response;
+        final StageMetricsRecorder recorder;
+
+        Download(String name, SyncCall<T> call, Response<T> response, StageMetricsRecorder recorder) {
+            this.name = name;
+            this.call = call;
+            this.response = response;
+            this.recorder = recorder;
+        }
+
+        void persist() throws Exception {
+            recorder.attach();
+            long start = System.nanoTime();
+            try {
+                call.persist(response);
+            } finally {
+                recorder.recordHandler(System.nanoTime() - start);
+                StageMetricsRecorder.detach();
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hisp.dhis.android.core.common;
+
+import android.support.annotation.NonNull;
+
+import org.hisp.dhis.android.core.resource.ResourceHandler;
+import org.hisp.dhis.android.core.resource.ResourceModel;
+import org.hisp.dhis.android.core.resource.ResourceStore;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records which stages of a {@link StageScheduler} have been committed, so that a sync which fails half way
+ * skips them when it is started again.
+ * <p>
+ * The checkpoint is kept in the paging columns of the {@link ResourceModel.Type#METADATA} resource: the paging
+ * key lists the completed stages and the paging start is the time at which the interrupted sync started. A
+ * checkpoint older than {@link #MAX_AGE_MILLIS} is ignored, so that stages are not skipped on the basis of data
+ * which has become stale in the meantime. Once all stages are committed, {@link #finish()} discards the
+ * checkpoint and records the start of the sync as the last time the metadata has been synced.
+ * </p>
+ * <p>
+ * Only resumable stages are ever skipped. Stages which others depend on for their response, like the system info
+ * and the user, have to be executed every time.
+ * </p>
+ */
+public final class SyncCheckpoint {
+    static final long MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final String SEPARATOR = ",";
+
+    private final ResourceHandler resourceHandler;
+    private final Set<String> resumableStages;
+    private final Set<String> completedStages;
+    private final Date started;
+
+    /**
+     * Reads the checkpoint of an interrupted sync, if any.
+     *
+     * @param now             the time at which the sync starts
+     * @param resumableStages the stages which can be skipped if they have been completed
+     */
+    public SyncCheckpoint(@NonNull ResourceStore resourceStore,
+                          @NonNull Date now,
+                          @NonNull Set<String> resumableStages) {
+        this.resourceHandler = new ResourceHandler(resourceStore);
+        this.resumableStages = Collections.unmodifiableSet(new LinkedHashSet<>(resumableStages));
+        this.completedStages = new LinkedHashSet<>();
+
+        ResourceModel resource = resourceHandler.getResource(ResourceModel.Type.METADATA);
+        if (resource != null && resource.pagingKey() != null && resource.pagingStarted() != null
+                && now.getTime() - resource.pagingStarted().getTime() <= MAX_AGE_MILLIS) {
+            completedStages.addAll(Arrays.asList(resource.pagingKey().split(SEPARATOR)));
+            completedStages.retainAll(this.resumableStages);
+            started = new Date(resource.pagingStarted().getTime());
+        } else {
+            started = new Date(now.getTime());
+        }
+    }
+
+    public boolean isCompleted(@NonNull String stage) {
+        return completedStages.contains(stage);
+    }
+
+    /**
+     * Records the stage as completed. It is invoked within the transaction which commits the stage.
+     */
+    public void complete(@NonNull String stage) {
+        if (!resumableStages.contains(stage) || !completedStages.add(stage)) {
+            return;
+        }
+
+        StringBuilder pagingKey = new StringBuilder();
+        for (String completedStage : completedStages) {
+            if (pagingKey.length() > 0) {
+                pagingKey.append(SEPARATOR);
+            }
+            pagingKey.append(completedStage);
+        }
+        resourceHandler.handlePage(ResourceModel.Type.METADATA, pagingKey.toString(),
+                completedStages.size(), started);
+    }
+
+    /**
+     * Discards the checkpoint once every stage has been completed.
+     */
+    public void finish() {
+        resourceHandler.handleResource(ResourceModel.Type.METADATA, started);
+        completedStages.clear();
+    }
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import retrofit2.Response;
+
+/**
+ * Decides when to sync metadata and data in the background, so that apps neither sync more often than the data
+ * changes nor leave it stale.
+ * <p>
+ * Each sync runs again after an interval which adapts to how many rows the previous syncs changed: it is halved
+ * after a sync which changed rows, down to the minimum interval, and doubled after a sync which changed nothing,
+ * up to the maximum interval. The rows of the synced content, leaving out the bookkeeping of the syncs, are
+ * counted by the database adapter which records the {@link StageMetrics}, so D2 has to be built with this
+ * scheduler as its {@link org.hisp.dhis.android.core.D2.Builder#stageListener(StageListener) stage listener}.
+ * Otherwise no sync appears to change anything and the interval grows to the maximum.
+ * </p>
+ * <p>
+ * A sync which throws or whose response is not successful is retried after an exponential backoff, which keeps
+ * its interval unchanged. Requested syncs run at the end of the batching window, so that all the requests
+ * received meanwhile are served by a single sync. Whenever a sync runs, the other one runs with it if it is due
+ * within the batching window, so that the radio wakes up once for both. Metadata is synced before data.
+ * </p>
+ * <p>
+ * {@link #runDue()} runs the syncs which are due on the calling thread, while {@link #start(ScheduledExecutorService)}
+ * runs them in the background. Time is read from the {@link Clock}, so that the scheduler can be driven by a fake
+ * clock in tests.
+ * </p>
+ */
+public final class SyncScheduler implements StageListener {
+    private final Clock clock;
+    private final Schedule metadata;
+    private final Schedule data;
+    private final long minInterval;
+    private final long maxInterval;
+    private final long initialBackoff;
+    private final long maxBackoff;
+    private final long batchingWindow;
+
+    // rows changed by the stages of the sync which is running
+    private final AtomicLong stageRows = new AtomicLong();
+    private final Object runLock = new Object();
+
+    private ScheduledExecutorService executor;
+    private ScheduledFuture<?> scheduled;
+
+    public interface Clock {
+        Clock SYSTEM = new Clock() {
+            @Override
+            public long currentTimeMillis() {
+                return System.currentTimeMillis();
+            }
+        };
+
+        long currentTimeMillis();
+    }
+
+    SyncScheduler(Builder builder) {
+        this.clock = builder.clock;
+        this.minInterval = builder.minInterval;
+        this.maxInterval = builder.maxInterval;
+        this.initialBackoff = builder.initialBackoff;
+        this.maxBackoff = builder.maxBackoff;
+        this.batchingWindow = builder.batchingWindow;
+
+        long now = clock.currentTimeMillis();
+        this.metadata = builder.metadataSync == null ? null
+                : new Schedule("metadata", builder.metadataSync, minInterval, now);
+        this.data = builder.dataSync == null ? null : new Schedule("data", builder.dataSync, minInterval, now);
+    }
+
+    /**
+     * Requests a metadata sync, which runs at the end of the batching window unless it is backing off.
+     */
+    public void requestMetadataSync() {
+        request(metadata);
+    }
+
+    /**
+     * Requests a data sync, which runs at the end of the batching window unless it is backing off.
+     */
+    public void requestDataSync() {
+        request(data);
+    }
+
+    /**
+     * @return the time at which a sync is due next, in milliseconds of the {@link Clock}
+     */
+    public synchronized long nextRunTime() {
+        long nextRunTime = Long.MAX_VALUE;
+        for (Schedule schedule : schedules()) {
+            nextRunTime = Math.min(nextRunTime, schedule.nextRun);
+        }
+        return nextRunTime;
+    }
+
+    /**
+     * Runs the syncs which are due, if any, together with the ones due within the batching window.
+     *
+     * @return the time at which a sync is due next, in milliseconds of the {@link Clock}
+     */
+    public long runDue() {
+        synchronized (runLock) {
+            List<Schedule> due = new ArrayList<>();
+            synchronized (this) {
+                long now = clock.currentTimeMillis();
+                if (nextRunTime() > now) {
+                    return nextRunTime();
+                }
+                for (Schedule schedule : schedules()) {
+                    if (schedule.nextRun <= now + batchingWindow) {
+                        due.add(schedule);
+                    }
+                }
+            }
+
+            for (Schedule schedule : due) {
+                run(schedule);
+            }
+            return nextRunTime();
+        }
+    }
+
+    /**
+     * Runs the syncs on the executor whenever they are due, until {@link #stop()} is invoked.
+     */
+    public synchronized void start(@NonNull ScheduledExecutorService executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor == null");
+        }
+        if (this.executor != null) {
+            throw new IllegalStateException("Already started");
+        }
+        this.executor = executor;
+        reschedule();
+    }
+
+    public synchronized void stop() {
+        if (scheduled != null) {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+        executor = null;
+    }
+
+    @Override
+    public void onStageCompleted(@NonNull StageMetrics metrics) {
+        stageRows.addAndGet(metrics.rowsInserted() + metrics.rowsUpdated() + metrics.rowsDeleted());
+    }
+
+    private void run(Schedule schedule) {
+        // rows written outside of stages, like the ones of data syncs, are recorded by this recorder
+        StageMetricsRecorder recorder = new StageMetricsRecorder(schedule.name);
+        stageRows.set(0);
+        recorder.attach();
+        boolean successful;
+        try {
+            Response response = schedule.sync.call();
+            successful = response != null && response.isSuccessful();
+        } catch (Exception exception) {
+            successful = false;
+        } finally {
+            StageMetricsRecorder.detach();
+        }
+
+        StageMetrics metrics = recorder.metrics();
+        long changedRows = stageRows.get() + metrics.rowsInserted() + metrics.rowsUpdated() + metrics.rowsDeleted();
+        synchronized (this) {
+            long now = clock.currentTimeMillis();
+            if (successful) {
+                schedule.failures = 0;
+                schedule.notBefore = 0;
+                schedule.interval = changedRows > 0
+                        ? Math.max(minInterval, schedule.interval / 2)
+                        : Math.min(maxInterval, schedule.interval * 2);
+                schedule.nextRun = now + schedule.interval;
+            } else {
+                long backoff = initialBackoff;
+                for (int i = 0; i < schedule.failures && backoff < maxBackoff; i++) {
+                    backoff *= 2;
+                }
+                schedule.failures++;
+                schedule.notBefore = now + Math.min(maxBackoff, backoff);
+                schedule.nextRun = schedule.notBefore;
+            }
+        }
+    }
+
+    private synchronized void request(Schedule schedule) {
+        if (schedule == null) {
+            throw new IllegalStateException("No such sync has been set");
+        }
+        long requested = Math.max(clock.currentTimeMillis() + batchingWindow, schedule.notBefore);
+        if (requested < schedule.nextRun) {
+            schedule.nextRun = requested;
+            reschedule();
+        }
+    }
+
+    private synchronized void reschedule() {
+        if (executor == null) {
+            return;
+        }
+        if (scheduled != null) {
+            scheduled.cancel(false);
+        }
+        long delay = Math.max(0, nextRunTime() - clock.currentTimeMillis());
+        scheduled = executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                runDue();
+                reschedule();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private List<Schedule> schedules() {
+        List<Schedule> schedules = new ArrayList<>(2);
+        if (metadata != null) {
+            schedules.add(metadata);
+        }
+        if (data != null) {
+            schedules.add(data);
+        }
+        return schedules;
+    }
+
+    private static final class Schedule {
+        final String name;
+        final Callable<Response> sync;
+        long interval;
+        long nextRun;
+        long notBefore;
+        int failures;
+
+        Schedule(String name, Callable<Response> sync, long interval, long nextRun) {
+            this.name = name;
+            this.sync = sync;
+            this.interval = interval;
+            this.nextRun = nextRun;
+        }
+    }
+
+    public static class Builder {
+        private static final long DEFAULT_MIN_INTERVAL = TimeUnit.MINUTES.toMillis(15);
+        private static final long DEFAULT_MAX_INTERVAL = TimeUnit.HOURS.toMillis(24);
+        private static final long DEFAULT_INITIAL_BACKOFF = TimeUnit.MINUTES.toMillis(1);
+        private static final long DEFAULT_MAX_BACKOFF = TimeUnit.HOURS.toMillis(6);
+        private static final long DEFAULT_BATCHING_WINDOW = TimeUnit.MINUTES.toMillis(1);
+
+        private Clock clock = Clock.SYSTEM;
+        private Callable<Response> metadataSync;
+        private Callable<Response> dataSync;
+        private long minInterval = DEFAULT_MIN_INTERVAL;
+        private long maxInterval = DEFAULT_MAX_INTERVAL;
+        private long initialBackoff = DEFAULT_INITIAL_BACKOFF;
+        private long maxBackoff = DEFAULT_MAX_BACKOFF;
+        private long batchingWindow = DEFAULT_BATCHING_WINDOW;
+
+        public Builder() {
+            // empty constructor
+        }
+
+        @NonNull
+        public Builder clock(@NonNull Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        /**
+         * Sets the metadata sync, like the execution of {@link org.hisp.dhis.android.core.D2#syncMetaData()}.
+         */
+        @NonNull
+        public Builder metadataSync(@Nullable Callable<Response> metadataSync) {
+            this.metadataSync = metadataSync;
+            return this;
+        }
+
+        /**
+         * Sets the data sync, like an upload of events followed by their download.
+         */
+        @NonNull
+        public Builder dataSync(@Nullable Callable<Response> dataSync) {
+            this.dataSync = dataSync;
+            return this;
+        }
+
+        /**
+         * Sets the bounds of the interval between syncs, in milliseconds. Syncs start at the minimum interval.
+         */
+        @NonNull
+        public Builder interval(long minInterval, long maxInterval) {
+            this.minInterval = minInterval;
+            this.maxInterval = maxInterval;
+            return this;
+        }
+
+        /**
+         * Sets the backoff after the first failure of a sync, which is doubled after every further failure up to
+         * the maximum backoff, in milliseconds.
+         */
+        @NonNull
+        public Builder backoff(long initialBackoff, long maxBackoff) {
+            this.initialBackoff = initialBackoff;
+            this.maxBackoff = maxBackoff;
+            return this;
+        }
+
+        /**
+         * Sets the time for which requested syncs are held back to be served together, in milliseconds.
+         */
+        @NonNull
+        public Builder batchingWindow(long batchingWindow) {
+            this.batchingWindow = batchingWindow;
+            return this;
+        }
+
+        public SyncScheduler build() {
+            if (clock == null) {
+                throw new IllegalArgumentException("clock == null");
+            }
+            if (metadataSync == null && dataSync == null) {
+                throw new IllegalArgumentException("metadataSync == null && dataSync == null");
+            }
+            if (minInterval <= 0 || maxInterval < minInterval) {
+                throw new IllegalArgumentException("Invalid interval: " + minInterval + ", " + maxInterval);
+            }
+            if (initialBackoff <= 0 || maxBackoff < initialBackoff) {
+                throw new IllegalArgumentException("Invalid backoff: " + initialBackoff + ", " + maxBackoff);
+            }
+            if (batchingWindow < 0) {
+                throw new IllegalArgumentException("batchingWindow < 0");
+            }
+            return new SyncScheduler(this);
+        }
+    }
+}
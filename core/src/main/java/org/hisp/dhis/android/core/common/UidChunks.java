@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hisp.dhis.android.core.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.hisp.dhis.android.core.data.api.ConditionalCacheInterceptor;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import retrofit2.Response;
+
+/**
+ * Splits a set of uids which is too large for a single {@code uid:in:[...]} filter into chunks, which are
+ * downloaded concurrently and merged back into a single response.
+ * <p>
+ * Chunks are built from the sorted uids, so the same set of uids is always split into the same chunks.
+ * </p>
+ */
+public final class UidChunks {
+
+    /**
+     * Maximum length of the uids of a single filter, separators included. This is the length
+     * of {@link Call#MAX_UIDS} uids of eleven characters.
+     */
+    public static final int MAX_FILTER_LENGTH = Call.MAX_UIDS * 12;
+
+    /**
+     * Maximum number of chunks which are downloaded at the same time.
+     */
+    public static final int MAX_CONCURRENT_CHUNKS = 4;
+
+    public interface ChunkCall<R> {
+
+        @NonNull
+        Response<R> download(@NonNull Set<String> uids) throws IOException;
+    }
+
+    private UidChunks() {
+        // no instances
+    }
+
+    /**
+     * @return the chunks of uids, none of them longer than {@code maxLength} unless it consists of a single uid.
+     * Null or empty uids result in a single chunk with the uids as they are.
+     */
+    @NonNull
+    public static List<Set<String>> split(@Nullable Set<String> uids, int maxLength) {
+        if (uids == null || uids.isEmpty()) {
+            return Collections.singletonList(uids);
+        }
+
+        List<Set<String>> chunks = new ArrayList<>();
+        Set<String> chunk = new LinkedHashSet<>();
+        int length = 0;
+        for (String uid : new TreeSet<>(uids)) {
+            int uidLength = uid.length() + 1;
+            if (!chunk.isEmpty() && length + uidLength > maxLength) {
+                chunks.add(chunk);
+                chunk = new LinkedHashSet<>();
+                length = 0;
+            }
+            chunk.add(uid);
+            length += uidLength;
+        }
+        chunks.add(chunk);
+        return chunks;
+    }
+
+    /**
+     * Downloads every chunk of the uids and merges the items of all of them into a single payload.
+     *
+     * @return the first unsuccessful response, or the merged payload without a pager
+     */
+    @NonNull
+    public static <T> Response<Payload<T>> download(@Nullable Set<String> uids,
+                                                    @NonNull ChunkCall<Payload<T>> chunkCall) throws IOException {
+        List<Set<String>> chunks = split(uids, MAX_FILTER_LENGTH);
+        if (chunks.size() == 1) {
+            return chunkCall.download(chunks.get(0));
+        }
+
+        Response<List<Payload<T>>> response = downloadAll(chunks, chunkCall, MAX_CONCURRENT_CHUNKS);
+        if (!response.isSuccessful()) {
+            return failure(response);
+        }
+
+        List<T> items = new ArrayList<>();
+        for (Payload<T> payload : response.body()) {
+            if (payload.items() != null) {
+                items.addAll(payload.items());
+            }
+        }
+        return Response.success(Payload.create(null, items), response.raw());
+    }
+
+    /**
+     * Downloads the chunks with at most {@code maxConcurrency} requests at a time. The remaining downloads
+     * are cancelled as soon as one of them fails.
+     *
+     * @return the first unsuccessful response, or the bodies of all chunks in the order of the chunks. The
+     * merged response is only {@link ConditionalCacheInterceptor#isNotModified not modified} if all chunks are.
+     */
+    @NonNull
+    public static <R> Response<List<R>> downloadAll(@NonNull List<Set<String>> chunks,
+                                                    @NonNull final ChunkCall<R> chunkCall,
+                                                    int maxConcurrency) throws IOException {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency must be positive: " + maxConcurrency);
+        }
+        if (chunks.isEmpty()) {
+            return Response.success(Collections.<R>emptyList());
+        }
+
+        // chunks are downloaded on a pool of their own, calls may already run on a pool with a bounded size
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(maxConcurrency, chunks.size()));
+        try {
+            List<Future<Response<R>>> futures = new ArrayList<>(chunks.size());
+            for (final Set<String> chunk : chunks) {
+                futures.add(executor.submit(new Callable<Response<R>>() {
+                    @Override
+                    public Response<R> call() throws IOException {
+                        return chunkCall.download(chunk);
+                    }
+                }));
+            }
+
+            List<R> bodies = new ArrayList<>(chunks.size());
+            okhttp3.Response raw = null;
+            for (Future<Response<R>> future : futures) {
+                Response<R> response = get(future);
+                if (!response.isSuccessful()) {
+                    return failure(response);
+                }
+                bodies.add(response.body());
+                if (raw == null || ConditionalCacheInterceptor.isNotModified(raw)) {
+                    raw = response.raw();
+                }
+            }
+            return Response.success(bodies, raw);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Passes an unsuccessful response on as the response of a call with another body type. This is safe since an
+     * unsuccessful response has no body.
+     */
+    @NonNull
+    @SuppressWarnings("unchecked")
+    public static <R> Response<R> failure(@NonNull Response<?> response) {
+        if (response.isSuccessful()) {
+            throw new IllegalArgumentException("response is successful");
+        }
+        return (Response<R>) response;
+    }
+
+    private static <R> Response<R> get(Future<Response<R>> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while downloading chunks");
+        } catch (ExecutionException executionException) {
+            Throwable cause = executionException.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
@@ -54,16 +54,15 @@ public class ConfigurationStoreImpl implements ConfigurationStore {
     };
 
     private final DatabaseAdapter databaseAdapter;
-    private final SQLiteStatement insertStatement;
 
 
     public ConfigurationStoreImpl(DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
-        this.insertStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
     }
 
     @Override
     public long save(@NonNull String serverUrl) {
+        SQLiteStatement insertStatement = databaseAdapter.cachedStatement(INSERT_STATEMENT);
         nonNull(serverUrl);
 
         delete(); // Delete all rows from table. We only allow one row.
@@ -50,18 +50,17 @@ public class ConstantStoreImpl implements ConstantStore {
             ConstantModel.Columns.VALUE +
             ") VALUES (?, ?, ?, ?, ?, ?, ?);";
 
-    private final SQLiteStatement insertStatement;
     private final DatabaseAdapter databaseAdapter;
 
     public ConstantStoreImpl(DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
-        this.insertStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
     }
 
     @Override
     public long insert(@NonNull String uid, @Nullable String code, @Nullable String name,
                        @Nullable String displayName, @Nullable Date created,
                        @Nullable Date lastUpdated, @NonNull String value) {
+        SQLiteStatement insertStatement = databaseAdapter.cachedStatement(INSERT_STATEMENT);
         nonNull(uid);
         sqLiteBind(insertStatement, 1, uid);
         sqLiteBind(insertStatement, 2, code);
@@ -78,6 +77,6 @@ public class ConstantStoreImpl implements ConstantStore {
 
     @Override
     public void close() {
-        insertStatement.close();
+        // the statements are borrowed from the statement cache of the database adapter
     }
 }
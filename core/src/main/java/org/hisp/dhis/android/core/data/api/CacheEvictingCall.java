@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hisp.dhis.android.core.data.api;
+
+import android.support.annotation.NonNull;
+
+import org.hisp.dhis.android.core.common.Call;
+
+import java.io.IOException;
+
+import okhttp3.Cache;
+import retrofit2.Response;
+
+/**
+ * Clears the cache of {@link ConditionalCacheInterceptor} whenever the wrapped call fails.
+ * <p>
+ * A response is stored in the cache as soon as it is downloaded, but it only ends up in the database if the
+ * whole call succeeds. Should the server confirm such a response as not modified later on, the call would skip
+ * writing it and the database would never catch up. Evicting the cache after a failure rules this out, at the
+ * cost of downloading full responses once more on the next call.
+ * </p>
+ */
+public final class CacheEvictingCall implements Call<Response> {
+    private final Call<Response> call;
+    private final Cache cache;
+
+    public CacheEvictingCall(@NonNull Call<Response> call, @NonNull Cache cache) {
+        this.call = call;
+        this.cache = cache;
+    }
+
+    @Override
+    public boolean isExecuted() {
+        return call.isExecuted();
+    }
+
+    @Override
+    public Response call() throws Exception {
+        Response response;
+        try {
+            response = call.call();
+        } catch (Exception exception) {
+            evict();
+            throw exception;
+        }
+        if (response != null && !response.isSuccessful()) {
+            evict();
+        }
+        return response;
+    }
+
+    private void evict() throws IOException {
+        cache.evictAll();
+    }
+}
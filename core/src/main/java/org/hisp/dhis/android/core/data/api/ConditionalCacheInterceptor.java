@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hisp.dhis.android.core.data.api;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * Network interceptor which lets an {@link okhttp3.Cache} keep every response carrying a validator and
+ * revalidate it with a conditional request on every subsequent call.
+ * <p>
+ * The cache sends If-None-Match and If-Modified-Since on its own, but only stores responses the server allows
+ * it to. This interceptor replaces the caching headers of responses with an ETag or a Last-Modified header, so
+ * they are stored and never served without asking the server first. When the server answers with
+ * 304 Not Modified, the cached body is handed to the caller and {@link #isNotModified(retrofit2.Response)}
+ * tells it that there is nothing new to persist.
+ * </p>
+ */
+public final class ConditionalCacheInterceptor implements Interceptor {
+    private static final String GET = "GET";
+    private static final String CACHE_CONTROL = "Cache-Control";
+    private static final String NO_CACHE = "no-cache";
+    private static final String PRAGMA = "Pragma";
+    private static final String EXPIRES = "Expires";
+    private static final String ETAG = "ETag";
+    private static final String LAST_MODIFIED = "Last-Modified";
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Response response = chain.proceed(chain.request());
+        if (!GET.equals(chain.request().method()) || response.code() != HttpURLConnection.HTTP_OK
+                || (response.header(ETAG) == null && response.header(LAST_MODIFIED) == null)) {
+            return response;
+        }
+
+        return response.newBuilder()
+                .header(CACHE_CONTROL, NO_CACHE)
+                .removeHeader(PRAGMA)
+                .removeHeader(EXPIRES)
+                .build();
+    }
+
+    /**
+     * @return true if the body of the response has been served from the cache after the server confirmed that
+     * it has not changed since it was stored
+     */
+    public static boolean isNotModified(@NonNull retrofit2.Response<?> response) {
+        return isNotModified(response.raw());
+    }
+
+    public static boolean isNotModified(@NonNull Response response) {
+        Response networkResponse = response.networkResponse();
+        return response.cacheResponse() != null && networkResponse != null
+                && networkResponse.code() == HttpURLConnection.HTTP_NOT_MODIFIED;
+    }
+}
@@ -47,6 +47,10 @@ public abstract class Field<Parent, Child> implements Property<Parent, Child> {
         return InFilter.create(this, values);
     }
 
+    public Filter<Parent, Child> like(String value) {
+        return LikeFilter.create(this, value);
+    }
+
     public static <T, K> Field<T, K> create(@NonNull String name) {
         return new AutoValue_Field<>(name);
     }
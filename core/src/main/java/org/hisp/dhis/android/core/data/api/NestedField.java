@@ -54,4 +54,11 @@ public abstract class NestedField<Parent, Child> implements Property<Parent, Chi
 
         return create(name());
     }
+
+    /**
+     * Requests the same fields of the nested object as are requested when it is queried on its own.
+     */
+    public final NestedField<Parent, ?> with(@NonNull Fields<Child> fields) {
+        return new AutoValue_NestedField<>(name(), fields.fields());
+    }
 }
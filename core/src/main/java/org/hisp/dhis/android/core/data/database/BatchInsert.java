@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hisp.dhis.android.core.data.database;
+
+import android.database.sqlite.SQLiteStatement;
+import android.support.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hisp.dhis.android.core.data.database.DbUtils.multiRowInsertStatement;
+
+/**
+ * Inserts a list of rows with multi-row {@code INSERT ... VALUES (...), (...)} statements, which saves the
+ * round trip to SQLite and the reset of the statement which every row executed on its own costs.
+ * <p>
+ * The statements are sized to the limits of SQLite: at most {@value #MAX_BIND_ARGUMENTS} bind arguments and
+ * {@value #MAX_ROWS} rows per statement. A list is inserted by as many statements of the largest size as
+ * possible, and the remaining rows by statements of decreasing powers of two, so that a store never borrows
+ * more than a handful of statements from the statement cache. SQLite versions without multi-row inserts
+ * execute one row per statement.
+ * </p>
+ * <p>
+ * Like the statements of the store, a batch insert must not be used by two threads at the same time.
+ * </p>
+ *
+ * @param <M> type of the rows, which bind themselves to the statements
+ */
+@SuppressWarnings("PMD.UseConcurrentHashMap")
+public class BatchInsert<M extends StatementBinder> {
+    // SQLITE_MAX_VARIABLE_NUMBER and SQLITE_MAX_COMPOUND_SELECT of the SQLite builds shipped with Android
+    public static final int MAX_BIND_ARGUMENTS = 999;
+    static final int MAX_ROWS = 500;
+
+    private final DatabaseAdapter databaseAdapter;
+    private final String table;
+    private final String insertStatement;
+    private final int columns;
+    private final int maxRows;
+    private final Map<Integer, String> statements;
+
+    /**
+     * @param insertStatement single-row insert statement of the bound columns of the rows, optionally with an
+     *                        upsert clause. Upserts are only batched if {@link DatabaseAdapter#isUpsertSupported()}.
+     */
+    public BatchInsert(@NonNull DatabaseAdapter databaseAdapter, @NonNull String table,
+                       @NonNull String insertStatement) {
+        this.databaseAdapter = databaseAdapter;
+        this.table = table;
+        this.insertStatement = insertStatement;
+        this.columns = countBindArguments(insertStatement);
+        this.maxRows = databaseAdapter.isMultiRowInsertSupported() ?
+                Math.min(MAX_ROWS, MAX_BIND_ARGUMENTS / columns) : 1;
+        this.statements = new HashMap<>();
+    }
+
+    /**
+     * @return the number of rows inserted
+     */
+    public int insertAll(@NonNull List<M> rows) {
+        int inserted = 0;
+        int offset = 0;
+        while (offset < rows.size()) {
+            int batchRows = batchRows(rows.size() - offset);
+            SQLiteStatement statement = statement(batchRows);
+            for (int i = 0; i < batchRows; i++) {
+                rows.get(offset + i).bindTo(statement, i * columns + 1);
+            }
+
+            inserted += databaseAdapter.executeInsertRows(table, statement);
+            statement.clearBindings();
+            offset += batchRows;
+        }
+        return inserted;
+    }
+
+    private int batchRows(int remainingRows) {
+        if (remainingRows >= maxRows) {
+            return maxRows;
+        }
+        return Integer.highestOneBit(remainingRows);
+    }
+
+    private SQLiteStatement statement(int rows) {
+        String statement = statements.get(rows);
+        if (statement == null) {
+            statement = multiRowInsertStatement(insertStatement, rows);
+            statements.put(rows, statement);
+        }
+        return databaseAdapter.cachedStatement(statement);
+    }
+
+    private static int countBindArguments(String insertStatement) {
+        int count = 0;
+        for (int i = 0; i < insertStatement.length(); i++) {
+            if (insertStatement.charAt(i) == '?') {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -50,6 +50,19 @@ public interface DatabaseAdapter {
      */
     SQLiteStatement compileStatement(String sql);
 
+    /**
+     * Borrows the pre-compiled statement of {@code sql} from a bounded cache of statements, compiling it
+     * on the first use. When the cache is full, the least recently borrowed statement is closed.
+     * <p>
+     * Borrowed statements are shared by all the callers which use the same SQL. Borrow the statement for
+     * every execution, bind it, execute it and clear its bindings right away; never hold on to it or close it.
+     *
+     * @param sql The raw SQL statement, may contain ? for unknown values to be
+     *            bound later.
+     * @return A pre-compiled {@link SQLiteStatement} object owned by the cache.
+     */
+    SQLiteStatement cachedStatement(String sql);
+
     /**
      * Runs the provided SQL and returns a {@link Cursor} over the result set.
      *
@@ -74,6 +87,16 @@ public interface DatabaseAdapter {
      */
     long executeInsert(String table, SQLiteStatement sqLiteStatement);
 
+    /**
+     * Executes an INSERT statement which may insert several rows, like a multi-row
+     * {@code INSERT ... VALUES (...), (...)} statement.
+     *
+     * @param table           The affected table
+     * @param sqLiteStatement The SQL statement to execute
+     * @return the number of rows inserted, or updated by an upsert
+     */
+    int executeInsertRows(String table, SQLiteStatement sqLiteStatement);
+
     /**
      * Execute this SQL statement, if the the number of rows affected by execution of this SQL
      * statement is of any importance to the caller - for example, UPDATE / DELETE SQL statements.
@@ -115,4 +138,16 @@ public interface DatabaseAdapter {
      */
     Transaction beginNewTransaction();
 
+    /**
+     * @return true if the underlying SQLite library understands {@code INSERT ... ON CONFLICT (...) DO UPDATE}
+     * (SQLite 3.24.0 or newer). Stores must not compile upsert statements if this returns false.
+     */
+    boolean isUpsertSupported();
+
+    /**
+     * @return true if the underlying SQLite library understands inserts of several rows by a single
+     * {@code INSERT ... VALUES (...), (...)} statement (SQLite 3.7.11 or newer).
+     */
+    boolean isMultiRowInsertSupported();
+
 }
\ No newline at end of file
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.data.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rebuilds the tables whose date columns have been declared TEXT by an older schema, and converts the
+ * formatted dates to epoch milliseconds. Dates which cannot be parsed are logged and set to NULL.
+ * <p>
+ * SQLite cannot change the type of a column, and a column with TEXT affinity would store the milliseconds as
+ * text again, so each table is created anew from its current CREATE statement, the rows are copied over and the
+ * old table is dropped. Indexes have to be created again afterwards. Foreign keys must not be enforced while
+ * migrating, which is the case in {@link DbOpenHelper#onUpgrade(SQLiteDatabase, int, int)}.
+ * </p>
+ */
+final class DateColumnsMigration {
+    private static final String TAG = DateColumnsMigration.class.getSimpleName();
+    private static final String CREATE_TABLE = "CREATE TABLE ";
+    private static final String MIGRATED_TABLE = "%s_migration";
+
+    private final SQLiteDatabase database;
+
+    DateColumnsMigration(@NonNull SQLiteDatabase database) {
+        this.database = database;
+    }
+
+    /**
+     * @param createTable current CREATE TABLE statement of the table to migrate
+     */
+    void migrate(@NonNull String createTable) {
+        String table = createTable.substring(CREATE_TABLE.length(), createTable.indexOf('(')).trim();
+        String migratedTable = String.format(MIGRATED_TABLE, table);
+
+        Map<String, String> columns = columnTypes(table);
+        database.execSQL(CREATE_TABLE + migratedTable + createTable.substring(createTable.indexOf('(')));
+        Map<String, String> migratedColumns = columnTypes(migratedTable);
+
+        List<String> dateColumns = new ArrayList<>();
+        for (Map.Entry<String, String> column : migratedColumns.entrySet()) {
+            if ("INTEGER".equalsIgnoreCase(column.getValue())
+                    && "TEXT".equalsIgnoreCase(columns.get(column.getKey()))) {
+                dateColumns.add(column.getKey());
+            }
+        }
+
+        if (dateColumns.isEmpty()) {
+            database.execSQL("DROP TABLE " + migratedTable);
+            return;
+        }
+
+        String columnList = join(columns.keySet());
+        database.execSQL("INSERT INTO " + migratedTable + " (" + columnList + ") " +
+                "SELECT " + columnList + " FROM " + table);
+        database.execSQL("DROP TABLE " + table);
+        database.execSQL("ALTER TABLE " + migratedTable + " RENAME TO " + table);
+
+        for (String dateColumn : dateColumns) {
+            convertDates(table, dateColumn);
+        }
+    }
+
+    private void convertDates(String table, String column) {
+        SQLiteStatement update = database.compileStatement(
+                "UPDATE " + table + " SET " + column + " = ? WHERE rowid = ?");
+        Cursor cursor = database.rawQuery("SELECT rowid, " + column + " FROM " + table +
+                " WHERE typeof(" + column + ") = 'text'", null);
+        try {
+            while (cursor.moveToNext()) {
+                String date = cursor.getString(1);
+                try {
+                    update.bindLong(1, BaseIdentifiableObject.DATE_FORMAT.parse(date).getTime());
+                } catch (ParseException parseException) {
+                    // a date which cannot be read is dropped rather than failing the upgrade of the database
+                    Log.w(TAG, "Unparseable date in " + table + "." + column + ": " + date, parseException);
+                    update.bindNull(1);
+                }
+                update.bindLong(2, cursor.getLong(0));
+                update.executeUpdateDelete();
+            }
+        } finally {
+            cursor.close();
+            update.close();
+        }
+    }
+
+    private Map<String, String> columnTypes(String table) {
+        Map<String, String> columnTypes = new LinkedHashMap<>();
+        Cursor cursor = database.rawQuery("PRAGMA table_info(" + table + ")", null);
+        try {
+            int name = cursor.getColumnIndexOrThrow("name");
+            int type = cursor.getColumnIndexOrThrow("type");
+            while (cursor.moveToNext()) {
+                columnTypes.put(cursor.getString(name), cursor.getString(type));
+            }
+        } finally {
+            cursor.close();
+        }
+        return columnTypes;
+    }
+
+    private static String join(Iterable<String> columns) {
+        StringBuilder joined = new StringBuilder();
+        for (String column : columns) {
+            joined.append(joined.length() == 0 ? "" : ", ").append(column);
+        }
+        return joined.toString();
+    }
+}
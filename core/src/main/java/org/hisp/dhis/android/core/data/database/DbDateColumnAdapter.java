@@ -38,31 +38,51 @@ import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
 import java.text.ParseException;
 import java.util.Date;
 
+/**
+ * Stores dates as epoch milliseconds in INTEGER columns. Dates formatted with
+ * {@link BaseIdentifiableObject#DATE_FORMAT}, as stored before version 2 of the schema, can still be read.
+ */
 public final class DbDateColumnAdapter implements ColumnTypeAdapter<Date> {
 
     @Override
     public Date fromCursor(Cursor cursor, String columnName) {
         // infer index from column name
         int columnIndex = cursor.getColumnIndex(columnName);
-        String sourceDate = cursor.getString(columnIndex);
+        if (cursor.isNull(columnIndex)) {
+            return null;
+        }
 
-        Date date = null;
-        if (sourceDate != null) {
-            try {
-                date = BaseIdentifiableObject.DATE_FORMAT.parse(sourceDate);
-            } catch (ParseException parseException) {
-                // wrap checked exception into unchecked
-                throw new RuntimeException(parseException);
-            }
+        if (cursor.getType(columnIndex) == Cursor.FIELD_TYPE_INTEGER) {
+            return new Date(cursor.getLong(columnIndex));
+        }
+
+        // columns without INTEGER affinity hand the milliseconds out as text
+        String sourceDate = cursor.getString(columnIndex);
+        if (isMillis(sourceDate)) {
+            return new Date(Long.parseLong(sourceDate));
         }
 
-        return date;
+        try {
+            return BaseIdentifiableObject.DATE_FORMAT.parse(sourceDate);
+        } catch (ParseException parseException) {
+            // wrap checked exception into unchecked
+            throw new RuntimeException(parseException);
+        }
     }
 
     @Override
     public void toContentValues(ContentValues contentValues, String columnName, Date date) {
         if (date != null) {
-            contentValues.put(columnName, BaseIdentifiableObject.DATE_FORMAT.format(date));
+            contentValues.put(columnName, date.getTime());
+        }
+    }
+
+    private static boolean isMillis(String sourceDate) {
+        for (int i = 0; i < sourceDate.length(); i++) {
+            if (!Character.isDigit(sourceDate.charAt(i))) {
+                return false;
+            }
         }
+        return !sourceDate.isEmpty();
     }
 }
@@ -29,12 +29,14 @@
 package org.hisp.dhis.android.core.data.database;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
 
+import org.hisp.dhis.android.core.common.State;
 import org.hisp.dhis.android.core.configuration.ConfigurationModel;
 import org.hisp.dhis.android.core.constant.ConstantModel;
 import org.hisp.dhis.android.core.dataelement.DataElementModel;
@@ -79,7 +81,7 @@ import static org.hisp.dhis.android.core.user.UserOrganisationUnitLinkModel.Colu
 public class DbOpenHelper extends SQLiteOpenHelper {
 
     @VisibleForTesting
-    static final int VERSION = 1;
+    static final int VERSION = 5;
 
     private static final String CREATE_CONFIGURATION_TABLE = "CREATE TABLE " + ConfigurationModel.CONFIGURATION + " (" +
             ConfigurationModel.Columns.ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
@@ -92,8 +94,8 @@ public class DbOpenHelper extends SQLiteOpenHelper {
             UserModel.Columns.CODE + " TEXT," +
             UserModel.Columns.NAME + " TEXT," +
             UserModel.Columns.DISPLAY_NAME + " TEXT," +
-            UserModel.Columns.CREATED + " TEXT," +
-            UserModel.Columns.LAST_UPDATED + " TEXT," +
+            UserModel.Columns.CREATED + " INTEGER," +
+            UserModel.Columns.LAST_UPDATED + " INTEGER," +
             UserModel.Columns.BIRTHDAY + " TEXT," +
             UserModel.Columns.EDUCATION + " TEXT," +
             UserModel.Columns.GENDER + " TEXT," +
@@ -116,8 +118,8 @@ public class DbOpenHelper extends SQLiteOpenHelper {
             UserCredentialsModel.Columns.CODE + " TEXT," +
             UserCredentialsModel.Columns.NAME + " TEXT," +
             UserCredentialsModel.Columns.DISPLAY_NAME + " TEXT," +
-            UserCredentialsModel.Columns.CREATED + " TEXT," +
-            UserCredentialsModel.Columns.LAST_UPDATED + " TEXT," +
+            UserCredentialsModel.Columns.CREATED + " INTEGER," +
+            UserCredentialsModel.Columns.LAST_UPDATED + " INTEGER," +
             UserCredentialsModel.Columns.USERNAME + " TEXT," +
             UserCredentialsModel.Columns.USER + " TEXT NOT NULL UNIQUE," +
             " FOREIGN KEY (" + UserCredentialsModel.Columns.USER + ") " +
@@ -132,15 +134,15 @@ public class DbOpenHelper extends SQLiteOpenHelper {
             OrganisationUnitModel.Columns.CODE + " TEXT," +
             OrganisationUnitModel.Columns.NAME + " TEXT," +
             OrganisationUnitModel.Columns.DISPLAY_NAME + " TEXT," +
-            OrganisationUnitModel.Columns.CREATED + " TEXT," +
-            OrganisationUnitModel.Columns.LAST_UPDATED + " TEXT," +
+            OrganisationUnitModel.Columns.CREATED + " INTEGER," +
+            OrganisationUnitModel.Columns.LAST_UPDATED + " INTEGER," +
             OrganisationUnitModel.Columns.SHORT_NAME + " TEXT," +
             OrganisationUnitModel.Columns.DISPLAY_SHORT_NAME + " TEXT," +
             OrganisationUnitModel.Columns.DESCRIPTION + " TEXT," +
             OrganisationUnitModel.Columns.DISPLAY_DESCRIPTION + " TEXT," +
             OrganisationUnitModel.Columns.PATH + " TEXT," +
-            OrganisationUnitModel.Columns.OPENING_DATE + " TEXT," +
-            OrganisationUnitModel.Columns.CLOSED_DATE + " TEXT," +
+            OrganisationUnitModel.Columns.OPENING_DATE + " INTEGER," +
+            OrganisationUnitModel.Columns.CLOSED_DATE + " INTEGER," +
             OrganisationUnitModel.Columns.LEVEL + " INTEGER," +
             OrganisationUnitModel.Columns.PARENT + " TEXT" +
             ");";
@@ -178,8 +180,8 @@ public class DbOpenHelper extends SQLiteOpenHelper {
             OptionSetModel.Columns.CODE + " TEXT," +
             OptionSetModel.Columns.NAME + " TEXT," +
             OptionSetModel.Columns.DISPLAY_NAME + " TEXT," +
-            OptionSetModel.Columns.CREATED + " TEXT," +
-            OptionSetModel.Columns.LAST_UPDATED + " TEXT," +
+            OptionSetModel.Columns.CREATED + " INTEGER," +
+            OptionSetModel.Columns.LAST_UPDATED + " INTEGER," +
             OptionSetModel.Columns.VERSION + " INTEGER," +
             OptionSetModel.Columns.VALUE_TYPE + " TEXT" +
             ");";
@@ -190,8 +192,8 @@ public class DbOpenHelper extends SQLiteOpenHelper {
             OptionModel.Columns.CODE + " TEXT," +
             OptionModel.Columns.NAME + " TEXT," +
             OptionModel.Columns.DISPLAY_NAME + " TEXT," +
-            OptionModel.Columns.CREATED + " TEXT," +
-            OptionModel.Columns.LAST_UPDATED + " TEXT," +
+            OptionModel.Columns.CREATED + " INTEGER," +
+            OptionModel.Columns.LAST_UPDATED + " INTEGER," +
             OptionModel.Columns.OPTION_SET + " TEXT NOT NULL," +
             " FOREIGN KEY (" + OptionModel.Columns.OPTION_SET + ") " +
             " REFERENCES " + OptionSetModel.TABLE +
@@ -204,8 +206,8 @@ public class DbOpenHelper extends SQLiteOpenHelper {
             ProgramModel.Columns.CODE + " TEXT," +
             ProgramModel.Columns.NAME + " TEXT," +
             ProgramModel.Columns.DISPLAY_NAME + " TEXT," +
-            ProgramModel.Columns.CREATED + " TEXT," +
-            ProgramModel.Columns.LAST_UPDATED + " TEXT," +
+            ProgramModel.Columns.CREATED + " INTEGER," +
+            ProgramModel.Columns.LAST_UPDATED + " INTEGER," +
             ProgramModel.Columns.SHORT_NAME + " TEXT," +
             ProgramModel.Columns.DISPLAY_SHORT_NAME + " TEXT," +
             ProgramModel.Columns.DESCRIPTION + " TEXT," +
@@ -244,8 +246,8 @@ public class DbOpenHelper extends SQLiteOpenHelper {
             TrackedEntityModel.Columns.CODE + " TEXT," +
             TrackedEntityModel.Columns.NAME + " TEXT," +
             TrackedEntityModel.Columns.DISPLAY_NAME + " TEXT," +
-            TrackedEntityModel.Columns.CREATED + " TEXT," +
-            TrackedEntityModel.Columns.LAST_UPDATED + " TEXT," +
+            TrackedEntityModel.Columns.CREATED + " INTEGER," +
+            TrackedEntityModel.Columns.LAST_UPDATED + " INTEGER," +
             TrackedEntityModel.Columns.SHORT_NAME + " TEXT," +
             TrackedEntityModel.Columns.DISPLAY_SHORT_NAME + " TEXT," +
             TrackedEntityModel.Columns.DESCRIPTION + " TEXT," +
@@ -258,8 +260,8 @@ public class DbOpenHelper extends SQLiteOpenHelper {
             DataElementModel.Columns.CODE + " TEXT," +
             DataElementModel.Columns.NAME + " TEXT," +
             DataElementModel.Columns.DISPLAY_NAME + " TEXT," +
-            DataElementModel.Columns.CREATED + " TEXT," +
-            DataElementModel.Columns.LAST_UPDATED + " TEXT," +
+            DataElementModel.Columns.CREATED + " INTEGER," +
+            DataElementModel.Columns.LAST_UPDATED + " INTEGER," +
             DataElementModel.Columns.SHORT_NAME + " TEXT," +
             DataElementModel.Columns.DISPLAY_SHORT_NAME + " TEXT," +
             DataElementModel.Columns.DESCRIPTION + " TEXT," +
@@ -285,8 +287,8 @@ public class DbOpenHelper extends SQLiteOpenHelper {
             ProgramStageDataElementModel.Columns.CODE + " TEXT," +
             ProgramStageDataElementModel.Columns.NAME + " TEXT," +
             ProgramStageDataElementModel.Columns.DISPLAY_NAME + " TEXT," +
-            ProgramStageDataElementModel.Columns.CREATED + " TEXT," +
-            ProgramStageDataElementModel.Columns.LAST_UPDATED + " TEXT," +
+            ProgramStageDataElementModel.Columns.CREATED + " INTEGER," +
+            ProgramStageDataElementModel.Columns.LAST_UPDATED + " INTEGER," +
             ProgramStageDataElementModel.Columns.DISPLAY_IN_REPORTS + " INTEGER," +
             ProgramStageDataElementModel.Columns.COMPULSORY + " INTEGER," +
             ProgramStageDataElementModel.Columns.ALLOW_PROVIDED_ELSEWHERE + " INTEGER," +
@@ -329,8 +331,8 @@ public class DbOpenHelper extends SQLiteOpenHelper {
             RelationshipTypeModel.Columns.CODE + " TEXT, " +
             RelationshipTypeModel.Columns.NAME + " TEXT, " +
             RelationshipTypeModel.Columns.DISPLAY_NAME + " TEXT, " +
-            RelationshipTypeModel.Columns.CREATED + " TEXT, " +
-            RelationshipTypeModel.Columns.LAST_UPDATED + " TEXT, " +
+            RelationshipTypeModel.Columns.CREATED + " INTEGER, " +
+            RelationshipTypeModel.Columns.LAST_UPDATED + " INTEGER, " +
             RelationshipTypeModel.Columns.B_IS_TO_A + " TEXT, " +
             RelationshipTypeModel.Columns.A_IS_TO_B + " TEXT " +
             ");";
@@ -342,8 +344,8 @@ public class DbOpenHelper extends SQLiteOpenHelper {
             ProgramStageSectionModel.Columns.CODE + " TEXT," +
             ProgramStageSectionModel.Columns.NAME + " TEXT," +
             ProgramStageSectionModel.Columns.DISPLAY_NAME + " TEXT," +
-            ProgramStageSectionModel.Columns.CREATED + " TEXT," +
-            ProgramStageSectionModel.Columns.LAST_UPDATED + " TEXT," +
+            ProgramStageSectionModel.Columns.CREATED + " INTEGER," +
+            ProgramStageSectionModel.Columns.LAST_UPDATED + " INTEGER," +
             ProgramStageSectionModel.Columns.SORT_ORDER + " INTEGER," +
             ProgramStageSectionModel.Columns.PROGRAM_STAGE + " TEXT NOT NULL," +
             " FOREIGN KEY ( " + ProgramStageSectionModel.Columns.PROGRAM_STAGE + ")" +
@@ -373,8 +375,8 @@ public class DbOpenHelper extends SQLiteOpenHelper {
             ProgramStageModel.Columns.CODE + " TEXT," +
             ProgramStageModel.Columns.NAME + " TEXT," +
             ProgramStageModel.Columns.DISPLAY_NAME + " TEXT," +
-            ProgramStageModel.Columns.CREATED + " TEXT," +
-            ProgramStageModel.Columns.LAST_UPDATED + " TEXT," +
+            ProgramStageModel.Columns.CREATED + " INTEGER," +
+            ProgramStageModel.Columns.LAST_UPDATED + " INTEGER," +
             ProgramStageModel.Columns.EXECUTION_DATE_LABEL + " TEXT," +
             ProgramStageModel.Columns.ALLOW_GENERATE_NEXT_VISIT + " INTEGER," +
             ProgramStageModel.Columns.VALID_COMPLETE_ONLY + " INTEGER," +
@@ -404,8 +406,8 @@ public class DbOpenHelper extends SQLiteOpenHelper {
             ProgramRuleVariableModel.Columns.CODE + " TEXT," +
             ProgramRuleVariableModel.Columns.NAME + " TEXT," +
             ProgramRuleVariableModel.Columns.DISPLAY_NAME + " TEXT," +
-            ProgramRuleVariableModel.Columns.CREATED + " TEXT," +
-            ProgramRuleVariableModel.Columns.LAST_UPDATED + " TEXT," +
+            ProgramRuleVariableModel.Columns.CREATED + " INTEGER," +
+            ProgramRuleVariableModel.Columns.LAST_UPDATED + " INTEGER," +
             ProgramRuleVariableModel.Columns.USE_CODE_FOR_OPTION_SET + " INTEGER," +
             ProgramRuleVariableModel.Columns.PROGRAM + " TEXT NOT NULL," +
             ProgramRuleVariableModel.Columns.PROGRAM_STAGE + " TEXT," +
@@ -433,8 +435,8 @@ public class DbOpenHelper extends SQLiteOpenHelper {
             TrackedEntityAttributeModel.Columns.CODE + " TEXT," +
             TrackedEntityAttributeModel.Columns.NAME + " TEXT," +
             TrackedEntityAttributeModel.Columns.DISPLAY_NAME + " TEXT," +
-            TrackedEntityAttributeModel.Columns.CREATED + " TEXT," +
-            TrackedEntityAttributeModel.Columns.LAST_UPDATED + " TEXT," +
+            TrackedEntityAttributeModel.Columns.CREATED + " INTEGER," +
+            TrackedEntityAttributeModel.Columns.LAST_UPDATED + " INTEGER," +
             TrackedEntityAttributeModel.Columns.SHORT_NAME + " TEXT," +
             TrackedEntityAttributeModel.Columns.DISPLAY_SHORT_NAME + " TEXT," +
             TrackedEntityAttributeModel.Columns.DESCRIPTION + " TEXT," +
@@ -464,8 +466,8 @@ public class DbOpenHelper extends SQLiteOpenHelper {
             ProgramTrackedEntityAttributeModel.Columns.CODE + " TEXT," +
             ProgramTrackedEntityAttributeModel.Columns.NAME + " TEXT," +
             ProgramTrackedEntityAttributeModel.Columns.DISPLAY_NAME + " TEXT," +
-            ProgramTrackedEntityAttributeModel.Columns.CREATED + " TEXT," +
-            ProgramTrackedEntityAttributeModel.Columns.LAST_UPDATED + " TEXT," +
+            ProgramTrackedEntityAttributeModel.Columns.CREATED + " INTEGER," +
+            ProgramTrackedEntityAttributeModel.Columns.LAST_UPDATED + " INTEGER," +
             ProgramTrackedEntityAttributeModel.Columns.SHORT_NAME + " TEXT," +
             ProgramTrackedEntityAttributeModel.Columns.DISPLAY_SHORT_NAME + " TEXT," +
             ProgramTrackedEntityAttributeModel.Columns.DESCRIPTION + " TEXT," +
@@ -492,8 +494,8 @@ public class DbOpenHelper extends SQLiteOpenHelper {
             ProgramRuleModel.Columns.CODE + " TEXT," +
             ProgramRuleModel.Columns.NAME + " TEXT," +
             ProgramRuleModel.Columns.DISPLAY_NAME + " TEXT," +
-            ProgramRuleModel.Columns.CREATED + " TEXT," +
-            ProgramRuleModel.Columns.LAST_UPDATED + " TEXT," +
+            ProgramRuleModel.Columns.CREATED + " INTEGER," +
+            ProgramRuleModel.Columns.LAST_UPDATED + " INTEGER," +
             ProgramRuleModel.Columns.PRIORITY + " INTEGER," +
             ProgramRuleModel.Columns.CONDITION + " TEXT," +
             ProgramRuleModel.Columns.PROGRAM + " TEXT NOT NULL," +
@@ -512,14 +514,14 @@ public class DbOpenHelper extends SQLiteOpenHelper {
             ConstantModel.Columns.CODE + " TEXT," +
             ConstantModel.Columns.NAME + " TEXT," +
             ConstantModel.Columns.DISPLAY_NAME + " TEXT," +
-            ConstantModel.Columns.CREATED + " TEXT," +
-            ConstantModel.Columns.LAST_UPDATED + " TEXT," +
+            ConstantModel.Columns.CREATED + " INTEGER," +
+            ConstantModel.Columns.LAST_UPDATED + " INTEGER," +
             ConstantModel.Columns.VALUE + " TEXT" +
             ");";
 
     private static final String CREATE_SYSTEM_INFO_TABLE = "CREATE TABLE " + SystemInfoModel.TABLE + " (" +
             SystemInfoModel.Columns.ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
-            SystemInfoModel.Columns.SERVER_DATE + " TEXT," +
+            SystemInfoModel.Columns.SERVER_DATE + " INTEGER," +
             SystemInfoModel.Columns.DATE_FORMAT + " TEXT," +
             SystemInfoModel.Columns.VERSION + " TEXT," +
             SystemInfoModel.Columns.CONTEXT_PATH + " TEXT" +
@@ -532,8 +534,8 @@ public class DbOpenHelper extends SQLiteOpenHelper {
             ProgramIndicatorModel.Columns.CODE + " TEXT," +
             ProgramIndicatorModel.Columns.NAME + " TEXT," +
             ProgramIndicatorModel.Columns.DISPLAY_NAME + " TEXT," +
-            ProgramIndicatorModel.Columns.CREATED + " TEXT," +
-            ProgramIndicatorModel.Columns.LAST_UPDATED + " TEXT," +
+            ProgramIndicatorModel.Columns.CREATED + " INTEGER," +
+            ProgramIndicatorModel.Columns.LAST_UPDATED + " INTEGER," +
             ProgramIndicatorModel.Columns.SHORT_NAME + " TEXT," +
             ProgramIndicatorModel.Columns.DISPLAY_SHORT_NAME + " TEXT," +
             ProgramIndicatorModel.Columns.DESCRIPTION + " TEXT," +
@@ -556,8 +558,8 @@ public class DbOpenHelper extends SQLiteOpenHelper {
             ProgramRuleActionModel.Columns.CODE + " TEXT," +
             ProgramRuleActionModel.Columns.NAME + " TEXT," +
             ProgramRuleActionModel.Columns.DISPLAY_NAME + " TEXT," +
-            ProgramRuleActionModel.Columns.CREATED + " TEXT," +
-            ProgramRuleActionModel.Columns.LAST_UPDATED + " TEXT," +
+            ProgramRuleActionModel.Columns.CREATED + " INTEGER," +
+            ProgramRuleActionModel.Columns.LAST_UPDATED + " INTEGER," +
             ProgramRuleActionModel.Columns.DATA + " TEXT," +
             ProgramRuleActionModel.Columns.CONTENT + " TEXT," +
             ProgramRuleActionModel.Columns.LOCATION + " TEXT," +
@@ -601,9 +603,10 @@ public class DbOpenHelper extends SQLiteOpenHelper {
             TrackedEntityDataValueModel.Columns.DATA_ELEMENT + " TEXT NOT NULL," +
             TrackedEntityDataValueModel.Columns.STORED_BY + " TEXT," +
             TrackedEntityDataValueModel.Columns.VALUE + " TEXT," +
-            TrackedEntityDataValueModel.Columns.CREATED + " TEXT," +
-            TrackedEntityDataValueModel.Columns.LAST_UPDATED + " TEXT," +
+            TrackedEntityDataValueModel.Columns.CREATED + " INTEGER," +
+            TrackedEntityDataValueModel.Columns.LAST_UPDATED + " INTEGER," +
             TrackedEntityDataValueModel.Columns.PROVIDED_ELSEWHERE + " INTEGER," +
+            TrackedEntityDataValueModel.Columns.STATE + " TEXT," +
             " FOREIGN KEY (" + TrackedEntityDataValueModel.Columns.DATA_ELEMENT + ")" +
             " REFERENCES " + DataElementModel.TABLE +
             " (" + DataElementModel.Columns.UID + ")" +
@@ -634,17 +637,17 @@ public class DbOpenHelper extends SQLiteOpenHelper {
             EventModel.Columns.ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
             EventModel.Columns.UID + " TEXT NOT NULL UNIQUE," +
             EventModel.Columns.ENROLLMENT_UID + " TEXT," +
-            EventModel.Columns.CREATED + " TEXT," +
-            EventModel.Columns.LAST_UPDATED + " TEXT," +
+            EventModel.Columns.CREATED + " INTEGER," +
+            EventModel.Columns.LAST_UPDATED + " INTEGER," +
             EventModel.Columns.STATUS + " TEXT," +
             EventModel.Columns.LATITUDE + " TEXT," +
             EventModel.Columns.LONGITUDE + " TEXT," +
             EventModel.Columns.PROGRAM + " TEXT NOT NULL," +
             EventModel.Columns.PROGRAM_STAGE + " TEXT NOT NULL," +
             EventModel.Columns.ORGANISATION_UNIT + " TEXT NOT NULL," +
-            EventModel.Columns.EVENT_DATE + " TEXT," +
-            EventModel.Columns.COMPLETE_DATE + " TEXT," +
-            EventModel.Columns.DUE_DATE + " TEXT," +
+            EventModel.Columns.EVENT_DATE + " INTEGER," +
+            EventModel.Columns.COMPLETE_DATE + " INTEGER," +
+            EventModel.Columns.DUE_DATE + " INTEGER," +
             EventModel.Columns.STATE + " TEXT," +
             " FOREIGN KEY (" + EventModel.Columns.PROGRAM + ")" +
             " REFERENCES " + ProgramModel.TABLE +
@@ -664,8 +667,8 @@ public class DbOpenHelper extends SQLiteOpenHelper {
             TrackedEntityInstanceModel.TABLE + " (" +
             TrackedEntityInstanceModel.Columns.ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
             TrackedEntityInstanceModel.Columns.UID + " TEXT NOT NULL UNIQUE," +
-            TrackedEntityInstanceModel.Columns.CREATED + " TEXT," +
-            TrackedEntityInstanceModel.Columns.LAST_UPDATED + " TEXT," +
+            TrackedEntityInstanceModel.Columns.CREATED + " INTEGER," +
+            TrackedEntityInstanceModel.Columns.LAST_UPDATED + " INTEGER," +
             TrackedEntityInstanceModel.Columns.ORGANISATION_UNIT + " TEXT NOT NULL," +
             TrackedEntityInstanceModel.Columns.TRACKED_ENTITY + " TEXT NOT NULL," +
             TrackedEntityInstanceModel.Columns.STATE + " TEXT," +
@@ -680,12 +683,12 @@ public class DbOpenHelper extends SQLiteOpenHelper {
     private static final String CREATE_ENROLLMENT_TABLE = "CREATE TABLE " + EnrollmentModel.TABLE + " (" +
             EnrollmentModel.Columns.ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
             EnrollmentModel.Columns.UID + " TEXT NOT NULL UNIQUE," +
-            EnrollmentModel.Columns.CREATED + " TEXT," +
-            EnrollmentModel.Columns.LAST_UPDATED + " TEXT," +
+            EnrollmentModel.Columns.CREATED + " INTEGER," +
+            EnrollmentModel.Columns.LAST_UPDATED + " INTEGER," +
             EnrollmentModel.Columns.ORGANISATION_UNIT + " TEXT NOT NULL," +
             EnrollmentModel.Columns.PROGRAM + " TEXT NOT NULL," +
-            EnrollmentModel.Columns.DATE_OF_ENROLLMENT + " TEXT," +
-            EnrollmentModel.Columns.DATE_OF_INCIDENT + " TEXT," +
+            EnrollmentModel.Columns.DATE_OF_ENROLLMENT + " INTEGER," +
+            EnrollmentModel.Columns.DATE_OF_INCIDENT + " INTEGER," +
             EnrollmentModel.Columns.FOLLOW_UP + " INTEGER," +
             EnrollmentModel.Columns.ENROLLMENT_STATUS + " TEXT," +
             EnrollmentModel.Columns.TRACKED_ENTITY_INSTANCE + " TEXT NOT NULL," +
@@ -709,7 +712,10 @@ public class DbOpenHelper extends SQLiteOpenHelper {
     private static final String CREATE_RESOURCE_TABLE = "CREATE TABLE " + ResourceModel.TABLE + " (" +
             ResourceModel.Columns.ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
             ResourceModel.Columns.RESOURCE_TYPE + " TEXT NOT NULL," +
-            ResourceModel.Columns.LAST_SYNCED + " TEXT" + ");";
+            ResourceModel.Columns.LAST_SYNCED + " INTEGER," +
+            ResourceModel.Columns.PAGING_KEY + " TEXT," +
+            ResourceModel.Columns.LAST_PAGE + " INTEGER," +
+            ResourceModel.Columns.PAGING_STARTED + " INTEGER" + ");";
 
     private static final String CREATE_ORGANISATION_UNIT_PROGRAM_LINK_TABLE = "CREATE TABLE " +
             OrganisationUnitProgramLinkModel.ORGANISATION_UNIT_PROGRAM_LINK + " (" +
@@ -731,8 +737,8 @@ public class DbOpenHelper extends SQLiteOpenHelper {
             UserRoleModel.Columns.CODE + " TEXT," +
             UserRoleModel.Columns.NAME + " TEXT," +
             UserRoleModel.Columns.DISPLAY_NAME + " TEXT," +
-            UserRoleModel.Columns.CREATED + " TEXT," +
-            UserRoleModel.Columns.LAST_UPDATED + " TEXT" +
+            UserRoleModel.Columns.CREATED + " INTEGER," +
+            UserRoleModel.Columns.LAST_UPDATED + " INTEGER" +
             ");";
 
     private static final String CREATE_USER_ROLE_PROGRAM_TABLE = "CREATE TABLE " +
@@ -765,6 +771,126 @@ public class DbOpenHelper extends SQLiteOpenHelper {
             ProgramStageSectionProgramIndicatorLinkModel.Columns.PROGRAM_INDICATOR + ")" +
             ");";
 
+    private static final String[] CREATE_TABLES = {
+            CREATE_CONFIGURATION_TABLE,
+            CREATE_USER_TABLE,
+            CREATE_USER_CREDENTIALS_TABLE,
+            CREATE_ORGANISATION_UNIT_TABLE,
+            CREATE_USER_ORGANISATION_UNIT_TABLE,
+            CREATE_AUTHENTICATED_USER_TABLE,
+            CREATE_OPTION_SET_TABLE,
+            CREATE_OPTION_TABLE,
+            CREATE_PROGRAM_TABLE,
+            CREATE_TRACKED_ENTITY_TABLE,
+            CREATE_DATA_ELEMENT_TABLE,
+            CREATE_PROGRAM_STAGE_DATA_ELEMENT_TABLE,
+            CREATE_RELATIONSHIP_TABLE,
+            CREATE_RELATIONSHIP_TYPE_TABLE,
+            CREATE_PROGRAM_STAGE_SECTION_TABLE,
+            CREATE_PROGRAM_STAGE_SECTION_DATA_ELEMENT_LINK_TABLE,
+            CREATE_PROGRAM_STAGE_TABLE,
+            CREATE_PROGRAM_RULE_VARIABLE_TABLE,
+            CREATE_TRACKED_ENTITY_ATTRIBUTE_TABLE,
+            CREATE_PROGRAM_TRACKED_ENTITY_ATTRIBUTE_TABLE,
+            CREATE_CONSTANT_TABLE,
+            CREATE_SYSTEM_INFO_TABLE,
+            CREATE_PROGRAM_RULE_TABLE,
+            CREATE_PROGRAM_INDICATOR_TABLE,
+            CREATE_PROGRAM_RULE_ACTION_TABLE,
+            CREATE_TRACKED_ENTITY_DATA_VALUE_TABLE,
+            CREATE_TRACKED_ENTITY_ATTRIBUTE_VALUE_TABLE,
+            CREATE_EVENT_TABLE,
+            CREATE_TRACKED_ENTITY_INSTANCE_TABLE,
+            CREATE_ENROLLMENT_TABLE,
+            CREATE_RESOURCE_TABLE,
+            CREATE_ORGANISATION_UNIT_PROGRAM_LINK_TABLE,
+            CREATE_USER_ROLE_TABLE,
+            CREATE_USER_ROLE_PROGRAM_TABLE,
+            CREATE_PROGRAM_STAGE_SECTION_PROGRAM_INDICATOR_LINK_TABLE
+    };
+
+    /**
+     * Indexes on every foreign key column which is not already the leading column of a UNIQUE constraint
+     * (SQLite looks up child rows through them on each cascading delete) and on the columns the stores filter by.
+     */
+    @VisibleForTesting
+    static final String[] CREATE_INDEXES = {
+            createIndex(UserOrganisationUnitLinkModel.TABLE, UserOrganisationUnitLinkModel.Columns.ORGANISATION_UNIT),
+            createIndex(OptionModel.TABLE, OptionModel.Columns.OPTION_SET),
+            createIndex(ProgramModel.TABLE, ProgramModel.Columns.RELATIONSHIP_TYPE),
+            createIndex(ProgramModel.TABLE, ProgramModel.Columns.TRACKED_ENTITY),
+            createIndex(DataElementModel.TABLE, DataElementModel.Columns.OPTION_SET),
+            createIndex(ProgramStageDataElementModel.TABLE, ProgramStageDataElementModel.Columns.PROGRAM_STAGE),
+            createIndex(ProgramStageDataElementModel.TABLE, ProgramStageDataElementModel.Columns.DATA_ELEMENT),
+            createIndex(ProgramStageDataElementModel.TABLE,
+                    ProgramStageDataElementModel.Columns.PROGRAM_STAGE_SECTION),
+            createIndex(RelationshipModel.TABLE, RelationshipModel.Columns.RELATIONSHIP_TYPE),
+            createIndex(RelationshipModel.TABLE, RelationshipModel.Columns.TRACKED_ENTITY_INSTANCE_A),
+            createIndex(RelationshipModel.TABLE, RelationshipModel.Columns.TRACKED_ENTITY_INSTANCE_B),
+            createIndex(ProgramStageSectionModel.TABLE, ProgramStageSectionModel.Columns.PROGRAM_STAGE),
+            createIndex(ProgramStageSectionDataElementLinkModel.TABLE,
+                    ProgramStageSectionDataElementLinkModel.Columns.PROGRAM_STAGE_SECTION,
+                    ProgramStageSectionDataElementLinkModel.Columns.DATA_ELEMENT),
+            createIndex(ProgramStageSectionDataElementLinkModel.TABLE,
+                    ProgramStageSectionDataElementLinkModel.Columns.DATA_ELEMENT),
+            createIndex(ProgramStageModel.TABLE, ProgramStageModel.Columns.PROGRAM),
+            createIndex(ProgramRuleVariableModel.TABLE, ProgramRuleVariableModel.Columns.PROGRAM),
+            createIndex(ProgramRuleVariableModel.TABLE, ProgramRuleVariableModel.Columns.PROGRAM_STAGE),
+            createIndex(ProgramRuleVariableModel.TABLE, ProgramRuleVariableModel.Columns.TRACKED_ENTITY_ATTRIBUTE),
+            createIndex(ProgramRuleVariableModel.TABLE, ProgramRuleVariableModel.Columns.DATA_ELEMENT),
+            createIndex(TrackedEntityAttributeModel.TABLE, TrackedEntityAttributeModel.Columns.OPTION_SET),
+            createIndex(ProgramTrackedEntityAttributeModel.TABLE,
+                    ProgramTrackedEntityAttributeModel.Columns.TRACKED_ENTITY_ATTRIBUTE),
+            createIndex(ProgramTrackedEntityAttributeModel.TABLE, ProgramTrackedEntityAttributeModel.Columns.PROGRAM),
+            createIndex(ProgramRuleModel.TABLE, ProgramRuleModel.Columns.PROGRAM),
+            createIndex(ProgramRuleModel.TABLE, ProgramRuleModel.Columns.PROGRAM_STAGE),
+            createIndex(ProgramIndicatorModel.TABLE, ProgramIndicatorModel.Columns.PROGRAM),
+            createIndex(ProgramRuleActionModel.TABLE, ProgramRuleActionModel.Columns.PROGRAM_RULE),
+            createIndex(ProgramRuleActionModel.TABLE, ProgramRuleActionModel.Columns.TRACKED_ENTITY_ATTRIBUTE),
+            createIndex(ProgramRuleActionModel.TABLE, ProgramRuleActionModel.Columns.PROGRAM_INDICATOR),
+            createIndex(ProgramRuleActionModel.TABLE, ProgramRuleActionModel.Columns.PROGRAM_STAGE_SECTION),
+            createIndex(ProgramRuleActionModel.TABLE, ProgramRuleActionModel.Columns.PROGRAM_STAGE),
+            createIndex(ProgramRuleActionModel.TABLE, ProgramRuleActionModel.Columns.DATA_ELEMENT),
+            createIndex(TrackedEntityDataValueModel.TABLE, TrackedEntityDataValueModel.Columns.EVENT,
+                    TrackedEntityDataValueModel.Columns.DATA_ELEMENT),
+            createIndex(TrackedEntityDataValueModel.TABLE, TrackedEntityDataValueModel.Columns.DATA_ELEMENT),
+            createIndex(TrackedEntityAttributeValueModel.TABLE,
+                    TrackedEntityAttributeValueModel.Columns.TRACKED_ENTITY_INSTANCE,
+                    TrackedEntityAttributeValueModel.Columns.TRACKED_ENTITY_ATTRIBUTE),
+            createIndex(TrackedEntityAttributeValueModel.TABLE,
+                    TrackedEntityAttributeValueModel.Columns.TRACKED_ENTITY_ATTRIBUTE),
+            createIndex(EventModel.TABLE, EventModel.Columns.PROGRAM),
+            createIndex(EventModel.TABLE, EventModel.Columns.PROGRAM_STAGE),
+            createIndex(EventModel.TABLE, EventModel.Columns.ORGANISATION_UNIT),
+            createIndex(EventModel.TABLE, EventModel.Columns.ENROLLMENT_UID),
+            createIndex(EventModel.TABLE, EventModel.Columns.STATE),
+            createIndex(TrackedEntityInstanceModel.TABLE, TrackedEntityInstanceModel.Columns.ORGANISATION_UNIT),
+            createIndex(TrackedEntityInstanceModel.TABLE, TrackedEntityInstanceModel.Columns.TRACKED_ENTITY),
+            createIndex(TrackedEntityInstanceModel.TABLE, TrackedEntityInstanceModel.Columns.STATE),
+            createIndex(EnrollmentModel.TABLE, EnrollmentModel.Columns.ORGANISATION_UNIT),
+            createIndex(EnrollmentModel.TABLE, EnrollmentModel.Columns.PROGRAM),
+            createIndex(EnrollmentModel.TABLE, EnrollmentModel.Columns.TRACKED_ENTITY_INSTANCE),
+            createIndex(EnrollmentModel.TABLE, EnrollmentModel.Columns.STATE),
+            createIndex(ResourceModel.TABLE, ResourceModel.Columns.RESOURCE_TYPE),
+            createIndex(OrganisationUnitProgramLinkModel.ORGANISATION_UNIT_PROGRAM_LINK,
+                    OrganisationUnitProgramLinkModel.Columns.PROGRAM),
+            createIndex(UserRoleProgramLinkModel.TABLE, UserRoleProgramLinkModel.Columns.PROGRAM),
+            createIndex(ProgramStageSectionProgramIndicatorLinkModel.TABLE,
+                    ProgramStageSectionProgramIndicatorLinkModel.Columns.PROGRAM_INDICATOR)
+    };
+
+    private final boolean writeAheadLogging;
+
+    private static String createIndex(String table, String... columns) {
+        StringBuilder name = new StringBuilder(table);
+        StringBuilder indexed = new StringBuilder();
+        for (String column : columns) {
+            name.append('_').append(column);
+            indexed.append(indexed.length() == 0 ? "" : ", ").append(column);
+        }
+        return "CREATE INDEX IF NOT EXISTS " + name + "_index ON " + table + " (" + indexed + ");";
+    }
+
     /**
      * This method should be used only for testing purposes
      */
@@ -776,46 +902,35 @@ public class DbOpenHelper extends SQLiteOpenHelper {
 
 
     private static SQLiteDatabase create(SQLiteDatabase database) {
-        database.execSQL(CREATE_CONFIGURATION_TABLE);
-        database.execSQL(CREATE_USER_TABLE);
-        database.execSQL(CREATE_USER_CREDENTIALS_TABLE);
-        database.execSQL(CREATE_ORGANISATION_UNIT_TABLE);
-        database.execSQL(CREATE_USER_ORGANISATION_UNIT_TABLE);
-        database.execSQL(CREATE_AUTHENTICATED_USER_TABLE);
-        database.execSQL(CREATE_OPTION_SET_TABLE);
-        database.execSQL(CREATE_OPTION_TABLE);
-        database.execSQL(CREATE_PROGRAM_TABLE);
-        database.execSQL(CREATE_TRACKED_ENTITY_TABLE);
-        database.execSQL(CREATE_DATA_ELEMENT_TABLE);
-        database.execSQL(CREATE_PROGRAM_STAGE_DATA_ELEMENT_TABLE);
-        database.execSQL(CREATE_RELATIONSHIP_TABLE);
-        database.execSQL(CREATE_RELATIONSHIP_TYPE_TABLE);
-        database.execSQL(CREATE_PROGRAM_STAGE_SECTION_TABLE);
-        database.execSQL(CREATE_PROGRAM_STAGE_SECTION_DATA_ELEMENT_LINK_TABLE);
-        database.execSQL(CREATE_PROGRAM_STAGE_TABLE);
-        database.execSQL(CREATE_PROGRAM_RULE_VARIABLE_TABLE);
-        database.execSQL(CREATE_TRACKED_ENTITY_ATTRIBUTE_TABLE);
-        database.execSQL(CREATE_PROGRAM_TRACKED_ENTITY_ATTRIBUTE_TABLE);
-        database.execSQL(CREATE_CONSTANT_TABLE);
-        database.execSQL(CREATE_SYSTEM_INFO_TABLE);
-        database.execSQL(CREATE_PROGRAM_RULE_TABLE);
-        database.execSQL(CREATE_PROGRAM_INDICATOR_TABLE);
-        database.execSQL(CREATE_PROGRAM_RULE_ACTION_TABLE);
-        database.execSQL(CREATE_TRACKED_ENTITY_DATA_VALUE_TABLE);
-        database.execSQL(CREATE_TRACKED_ENTITY_ATTRIBUTE_VALUE_TABLE);
-        database.execSQL(CREATE_EVENT_TABLE);
-        database.execSQL(CREATE_TRACKED_ENTITY_INSTANCE_TABLE);
-        database.execSQL(CREATE_ENROLLMENT_TABLE);
-        database.execSQL(CREATE_RESOURCE_TABLE);
-        database.execSQL(CREATE_ORGANISATION_UNIT_PROGRAM_LINK_TABLE);
-        database.execSQL(CREATE_USER_ROLE_TABLE);
-        database.execSQL(CREATE_USER_ROLE_PROGRAM_TABLE);
-        database.execSQL(CREATE_PROGRAM_STAGE_SECTION_PROGRAM_INDICATOR_LINK_TABLE);
+        for (String createTable : CREATE_TABLES) {
+            database.execSQL(createTable);
+        }
+        for (String createIndex : CREATE_INDEXES) {
+            database.execSQL(createIndex);
+        }
         return database;
     }
 
+    /**
+     * Opens the database in WAL journal mode, see {@link #DbOpenHelper(Context, String, boolean)}.
+     */
     public DbOpenHelper(@NonNull Context context, @Nullable String databaseName) {
+        this(context, databaseName, true);
+    }
+
+    /**
+     * @param writeAheadLogging if true, the database is opened in WAL journal mode: writers use
+     *                          non-exclusive transactions and queries of other threads are served by
+     *                          a pool of reader connections while a transaction (like a sync) is open.
+     *                          Has no effect on in-memory databases.
+     */
+    public DbOpenHelper(@NonNull Context context, @Nullable String databaseName, boolean writeAheadLogging) {
         super(context, databaseName, null, VERSION);
+        this.writeAheadLogging = writeAheadLogging && databaseName != null;
+    }
+
+    public boolean isWriteAheadLoggingEnabled() {
+        return writeAheadLogging;
     }
 
     @Override
@@ -825,7 +940,55 @@ public class DbOpenHelper extends SQLiteOpenHelper {
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // ToDo: logic for proper schema migration
+        // run before the tables of version 1 are rebuilt, which copies the columns they already have
+        if (oldVersion < 4) {
+            // the paging state of resources was added to version 1 without a version bump: databases created
+            // before may lack the columns
+            addColumnIfMissing(db, ResourceModel.TABLE, ResourceModel.Columns.PAGING_KEY, "TEXT");
+            addColumnIfMissing(db, ResourceModel.TABLE, ResourceModel.Columns.LAST_PAGE, "INTEGER");
+            addColumnIfMissing(db, ResourceModel.TABLE, ResourceModel.Columns.PAGING_STARTED, "INTEGER");
+        }
+        if (oldVersion < 3) {
+            // version 2 did not track the state of data values: the values of events with local changes are
+            // all considered changed
+            db.execSQL("ALTER TABLE " + TrackedEntityDataValueModel.TABLE +
+                    " ADD COLUMN " + TrackedEntityDataValueModel.Columns.STATE + " TEXT;");
+            db.execSQL("UPDATE " + TrackedEntityDataValueModel.TABLE + " SET " +
+                    TrackedEntityDataValueModel.Columns.STATE + " = CASE WHEN " +
+                    TrackedEntityDataValueModel.Columns.EVENT + " IN (SELECT " + EventModel.Columns.UID +
+                    " FROM " + EventModel.TABLE + " WHERE " + EventModel.Columns.STATE + " != '" +
+                    State.SYNCED.name() + "') THEN '" + State.TO_UPDATE.name() + "' ELSE '" +
+                    State.SYNCED.name() + "' END;");
+        }
+        if (oldVersion < 2) {
+            // version 1 stored dates as formatted TEXT
+            DateColumnsMigration migration = new DateColumnsMigration(db);
+            for (String createTable : CREATE_TABLES) {
+                migration.migrate(createTable);
+            }
+        }
+        if (oldVersion < 5) {
+            // the indexes were added to version 1 without a version bump; this also creates them again on the
+            // tables rebuilt for version 2
+            for (String createIndex : CREATE_INDEXES) {
+                db.execSQL(createIndex);
+            }
+        }
+    }
+
+    private static void addColumnIfMissing(SQLiteDatabase db, String table, String column, String type) {
+        Cursor cursor = db.rawQuery("PRAGMA table_info(" + table + ")", null);
+        try {
+            int name = cursor.getColumnIndexOrThrow("name");
+            while (cursor.moveToNext()) {
+                if (column.equals(cursor.getString(name))) {
+                    return;
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        db.execSQL("ALTER TABLE " + table + " ADD COLUMN " + column + " " + type + ";");
     }
 
     @Override
@@ -834,5 +997,10 @@ public class DbOpenHelper extends SQLiteOpenHelper {
 
         // enable foreign key support in database
         db.execSQL("PRAGMA foreign_keys = ON;");
+
+        if (writeAheadLogging && !db.isReadOnly()) {
+            // sizes the connection pool of the database for concurrent readers
+            db.enableWriteAheadLogging();
+        }
     }
 }
@@ -32,6 +32,8 @@ import android.support.annotation.NonNull;
 
 @SuppressWarnings("PMD.UseVarargs")
 public final class DbUtils {
+    private static final String INSERT_INTO = "INSERT INTO";
+    private static final String VALUES = "VALUES";
 
     private DbUtils() {
         // no instances
@@ -48,4 +50,120 @@ public final class DbUtils {
         }
         return sqlStringBuilder.toString();
     }
+
+    /**
+     * @return an {@code INSERT INTO table (a, b) VALUES (?, ?);} statement of the columns, like the
+     * {@link StatementBinder#bindTo(android.database.sqlite.SQLiteStatement, int) bound columns} of a model
+     */
+    @NonNull
+    public static String insertStatement(@NonNull String table, @NonNull String[] columns) {
+        return INSERT_INTO + " " + table + " (" + projectionToSqlString(columns) + ") " +
+                VALUES + " (" + placeholders(columns.length) + ");";
+    }
+
+    /**
+     * @return an {@code UPDATE table SET a = ?, b = ? WHERE where = ?;} statement of the columns, like the
+     * {@link StatementBinder#bindTo(android.database.sqlite.SQLiteStatement, int) bound columns} of a model.
+     * The where argument is bound after the columns, at {@code columns.length + 1}.
+     */
+    @NonNull
+    public static String updateStatement(@NonNull String table, @NonNull String[] columns,
+                                         @NonNull String whereColumn) {
+        StringBuilder updateBuilder = new StringBuilder("UPDATE ").append(table).append(" SET ");
+        for (int i = 0; i < columns.length; i++) {
+            updateBuilder.append(i == 0 ? "" : ", ").append(columns[i]).append(" = ?");
+        }
+        return updateBuilder.append(" WHERE ").append(whereColumn).append(" = ?;").toString();
+    }
+
+    /**
+     * @return {@code count} comma separated bind argument placeholders, like {@code ?, ?, ?} for the values
+     * of an {@code IN (...)} clause
+     */
+    @NonNull
+    public static String placeholders(int count) {
+        StringBuilder placeholdersBuilder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            placeholdersBuilder.append(i == 0 ? "?" : ", ?");
+        }
+        return placeholdersBuilder.toString();
+    }
+
+    /**
+     * Turns an {@code INSERT INTO table (a, b, c) VALUES (?, ?, ?);} statement into an upsert which updates all
+     * the other columns of the row if a row with the same {@code conflictColumn} value exists already. The
+     * bind arguments of the upsert are the same as the ones of the insert statement.
+     */
+    @NonNull
+    public static String upsertStatement(@NonNull String insertStatement, @NonNull String conflictColumn) {
+        String statement = insertStatement.trim();
+        if (statement.endsWith(";")) {
+            statement = statement.substring(0, statement.length() - 1);
+        }
+
+        int columnsStart = statement.indexOf('(');
+        int columnsEnd = statement.indexOf(')', columnsStart);
+        if (columnsStart < 0 || columnsEnd < 0) {
+            throw new IllegalArgumentException("No column list in: " + insertStatement);
+        }
+
+        StringBuilder upsertBuilder = new StringBuilder(statement)
+                .append(" ON CONFLICT (").append(conflictColumn).append(") DO UPDATE SET ");
+        boolean first = true;
+        for (String column : statement.substring(columnsStart + 1, columnsEnd).split(",")) {
+            String trimmedColumn = column.trim();
+            if (!trimmedColumn.equals(conflictColumn)) {
+                if (!first) {
+                    upsertBuilder.append(", ");
+                }
+                upsertBuilder.append(trimmedColumn).append(" = excluded.").append(trimmedColumn);
+                first = false;
+            }
+        }
+        return upsertBuilder.append(';').toString();
+    }
+
+    /**
+     * Turns an {@code INSERT INTO table (a, b) VALUES (?, ?)} statement, which may be followed by an upsert
+     * clause, into a statement which inserts {@code rows} rows at once. The bind arguments are the ones of the
+     * insert statement, repeated for every row.
+     */
+    @NonNull
+    public static String multiRowInsertStatement(@NonNull String insertStatement, int rows) {
+        int valuesStart = insertStatement.indexOf('(', insertStatement.indexOf(VALUES));
+        int valuesEnd = insertStatement.indexOf(')', valuesStart);
+        if (insertStatement.indexOf(VALUES) < 0 || valuesStart < 0 || valuesEnd < 0) {
+            throw new IllegalArgumentException("No values in: " + insertStatement);
+        }
+
+        String values = insertStatement.substring(valuesStart, valuesEnd + 1);
+        StringBuilder statementBuilder = new StringBuilder(insertStatement.substring(0, valuesEnd + 1));
+        for (int i = 1; i < rows; i++) {
+            statementBuilder.append(", ").append(values);
+        }
+        return statementBuilder.append(insertStatement.substring(valuesEnd + 1)).toString();
+    }
+
+    /**
+     * @return true if the dotted {@code version}, like "3.24.0", is at least the {@code minimum} version given
+     * by its major, minor and further components. Missing components of {@code version} count as 0.
+     */
+    public static boolean isVersionAtLeast(String version, int... minimum) {
+        if (version == null) {
+            return false;
+        }
+
+        String[] parts = version.trim().split("\\.");
+        try {
+            for (int i = 0; i < minimum.length; i++) {
+                int component = i < parts.length ? Integer.parseInt(parts[i]) : 0;
+                if (component != minimum[i]) {
+                    return component > minimum[i];
+                }
+            }
+            return true;
+        } catch (NumberFormatException numberFormatException) {
+            return false;
+        }
+    }
 }
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hisp.dhis.android.core.data.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hisp.dhis.android.core.data.database.DbUtils.placeholders;
+
+/**
+ * Synchronizes the links of a parent in a link table with the links of a payload. The children linked to the
+ * parent are read by a single query, and only the difference is written: stale links are deleted and new ones
+ * inserted by batches of rows.
+ * <p>
+ * The parent of a link may span several columns, like the user and the scope of a user organisation unit link.
+ * </p>
+ */
+public class LinkSynchronizer {
+    private final DatabaseAdapter databaseAdapter;
+    private final String table;
+    private final String childColumn;
+    private final String[] parentColumns;
+    private final String parentClause;
+    private final String queryStatement;
+    private final BatchInsert<Link> batchInsert;
+
+    public LinkSynchronizer(@NonNull DatabaseAdapter databaseAdapter, @NonNull String table,
+                            @NonNull String childColumn, @NonNull String... parentColumns) {
+        if (parentColumns.length == 0) {
+            throw new IllegalArgumentException("No parent columns");
+        }
+        this.databaseAdapter = databaseAdapter;
+        this.table = table;
+        this.childColumn = childColumn;
+        this.parentColumns = parentColumns.clone();
+
+        StringBuilder parentClauseBuilder = new StringBuilder();
+        for (int i = 0; i < parentColumns.length; i++) {
+            parentClauseBuilder.append(i == 0 ? "" : " AND ").append(parentColumns[i]).append(" = ?");
+        }
+        this.parentClause = parentClauseBuilder.toString();
+        this.queryStatement = "SELECT " + childColumn + " FROM " + table + " WHERE " + parentClause;
+
+        String[] columns = new String[parentColumns.length + 1];
+        System.arraycopy(parentColumns, 0, columns, 0, parentColumns.length);
+        columns[parentColumns.length] = childColumn;
+        this.batchInsert = new BatchInsert<>(databaseAdapter, table, DbUtils.insertStatement(table, columns));
+    }
+
+    /**
+     * Makes {@code children} the only children linked to the parent.
+     *
+     * @param parent values of the parent columns, in the order of the columns
+     * @return the number of links deleted and inserted
+     */
+    public int replaceLinks(@NonNull Collection<String> children, @NonNull String... parent) {
+        checkParent(parent);
+        Set<String> newChildren = new LinkedHashSet<>(children);
+        Set<String> linkedChildren = queryChildren(parent);
+
+        List<String> staleChildren = new ArrayList<>();
+        for (String linkedChild : linkedChildren) {
+            if (!newChildren.contains(linkedChild)) {
+                staleChildren.add(linkedChild);
+            }
+        }
+
+        return delete(staleChildren, parent) + insert(newChildren, linkedChildren, parent);
+    }
+
+    /**
+     * Links {@code children} to the parent, keeping the links it has already. Unlike
+     * {@link #replaceLinks(Collection, String...)}, only the links of the given children are read.
+     *
+     * @param parent values of the parent columns, in the order of the columns
+     * @return the number of links inserted
+     */
+    public int addLinks(@NonNull Collection<String> children, @NonNull String... parent) {
+        checkParent(parent);
+        Set<String> newChildren = new LinkedHashSet<>(children);
+
+        // only the given children are looked up, as the parent may have many more links
+        Set<String> linkedChildren = new HashSet<>();
+        List<String> childList = new ArrayList<>(newChildren);
+        int chunkSize = BatchInsert.MAX_BIND_ARGUMENTS - parent.length;
+        for (int offset = 0; offset < childList.size(); offset += chunkSize) {
+            List<String> chunk = childList.subList(offset, Math.min(childList.size(), offset + chunkSize));
+            linkedChildren.addAll(queryChildren(queryStatement + " AND " + childColumn + " IN (" +
+                    placeholders(chunk.size()) + ")", arguments(parent, chunk)));
+        }
+
+        return insert(newChildren, linkedChildren, parent);
+    }
+
+    private Set<String> queryChildren(String... parent) {
+        return queryChildren(queryStatement, parent);
+    }
+
+    private Set<String> queryChildren(String query, String... arguments) {
+        Set<String> children = new HashSet<>();
+        Cursor cursor = databaseAdapter.query(query, arguments);
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    children.add(cursor.getString(0));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return children;
+    }
+
+    private int delete(List<String> children, String... parent) {
+        int deleted = 0;
+        int chunkSize = BatchInsert.MAX_BIND_ARGUMENTS - parent.length;
+        for (int offset = 0; offset < children.size(); offset += chunkSize) {
+            List<String> chunk = children.subList(offset, Math.min(children.size(), offset + chunkSize));
+            deleted += databaseAdapter.delete(table, parentClause + " AND " + childColumn + " IN (" +
+                    placeholders(chunk.size()) + ")", arguments(parent, chunk));
+        }
+        return deleted;
+    }
+
+    private int insert(Set<String> children, Set<String> linkedChildren, String... parent) {
+        List<Link> links = new ArrayList<>();
+        for (String child : children) {
+            if (!linkedChildren.contains(child)) {
+                links.add(new Link(parent, child));
+            }
+        }
+        return links.isEmpty() ? 0 : batchInsert.insertAll(links);
+    }
+
+    private static String[] arguments(String[] parent, List<String> children) {
+        String[] arguments = new String[parent.length + children.size()];
+        System.arraycopy(parent, 0, arguments, 0, parent.length);
+        for (int i = 0; i < children.size(); i++) {
+            arguments[parent.length + i] = children.get(i);
+        }
+        return arguments;
+    }
+
+    private void checkParent(String... parent) {
+        if (parent.length != parentColumns.length) {
+            throw new IllegalArgumentException("Expected " + parentColumns.length + " parent values");
+        }
+        for (String value : parent) {
+            if (value == null) {
+                throw new IllegalArgumentException("Parent values must not be null");
+            }
+        }
+    }
+
+    private static final class Link implements StatementBinder {
+        private final String[] parent;
+        private final String child;
+
+        Link(String[] parent, String child) {
+            this.parent = parent;
+            this.child = child;
+        }
+
+        @Override
+        public void bindTo(@NonNull SQLiteStatement statement, int index) {
+            for (int i = 0; i < parent.length; i++) {
+                statement.bindString(index + i, parent[i]);
+            }
+            statement.bindString(index + parent.length, child);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hisp.dhis.android.core.data.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
+
+import org.hisp.dhis.android.core.common.StageMetricsRecorder;
+import org.hisp.dhis.android.core.resource.ResourceModel;
+import org.hisp.dhis.android.core.systeminfo.SystemInfoModel;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Decorates a {@link DatabaseAdapter} in order to record the rows inserted, updated and deleted with the
+ * {@link StageMetricsRecorder} of the stage writing them. Writes outside of a stage are not recorded.
+ * <p>
+ * Updates and deletes are both executed by {@link #executeUpdateDelete(String, SQLiteStatement)}, so the
+ * statements are told apart by the SQL they have been compiled from. Upserts are executed as inserts and are
+ * recorded as such, whether they have inserted or updated the row.
+ * </p>
+ * <p>
+ * Rows of the tables which keep track of the syncs themselves, like the resource and system info tables, are
+ * written by every sync and are therefore not recorded: the metrics only tell how much of the synced content
+ * has changed.
+ * </p>
+ */
+@SuppressWarnings("PMD.UseVarargs")
+public class MetricsDatabaseAdapter implements DatabaseAdapter {
+    private static final String DELETE = "DELETE";
+    private static final Set<String> UNRECORDED_TABLES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            ResourceModel.TABLE, SystemInfoModel.TABLE
+    )));
+
+    private final DatabaseAdapter databaseAdapter;
+    private final Set<SQLiteStatement> deleteStatements =
+            Collections.newSetFromMap(Collections.synchronizedMap(new WeakHashMap<SQLiteStatement, Boolean>()));
+
+    public MetricsDatabaseAdapter(DatabaseAdapter databaseAdapter) {
+        if (databaseAdapter == null) {
+            throw new IllegalArgumentException("databaseAdapter == null");
+        }
+        this.databaseAdapter = databaseAdapter;
+    }
+
+    @Override
+    public SQLiteStatement compileStatement(String sql) {
+        return register(sql, databaseAdapter.compileStatement(sql));
+    }
+
+    @Override
+    public SQLiteStatement cachedStatement(String sql) {
+        return register(sql, databaseAdapter.cachedStatement(sql));
+    }
+
+    @Override
+    public Cursor query(String sql, String... selectionArgs) {
+        return databaseAdapter.query(sql, selectionArgs);
+    }
+
+    @Override
+    public long executeInsert(String table, SQLiteStatement sqLiteStatement) {
+        long rowId = databaseAdapter.executeInsert(table, sqLiteStatement);
+        StageMetricsRecorder recorder = recorder(table);
+        // ignored inserts, like INSERT OR IGNORE of an existing row, return -1
+        if (recorder != null && rowId != -1) {
+            recorder.recordInserted(1);
+        }
+        return rowId;
+    }
+
+    @Override
+    public int executeInsertRows(String table, SQLiteStatement sqLiteStatement) {
+        int rows = databaseAdapter.executeInsertRows(table, sqLiteStatement);
+        StageMetricsRecorder recorder = recorder(table);
+        if (recorder != null && rows > 0) {
+            recorder.recordInserted(rows);
+        }
+        return rows;
+    }
+
+    @Override
+    public int executeUpdateDelete(String table, SQLiteStatement sqLiteStatement) {
+        int rows = databaseAdapter.executeUpdateDelete(table, sqLiteStatement);
+        StageMetricsRecorder recorder = recorder(table);
+        if (recorder != null && rows > 0) {
+            if (deleteStatements.contains(sqLiteStatement)) {
+                recorder.recordDeleted(rows);
+            } else {
+                recorder.recordUpdated(rows);
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public int delete(String table, String whereClause, String[] whereArgs) {
+        return recordDeleted(table, databaseAdapter.delete(table, whereClause, whereArgs));
+    }
+
+    @Override
+    public int delete(String table) {
+        return recordDeleted(table, databaseAdapter.delete(table));
+    }
+
+    @Override
+    public Transaction beginNewTransaction() {
+        return databaseAdapter.beginNewTransaction();
+    }
+
+    @Override
+    public boolean isUpsertSupported() {
+        return databaseAdapter.isUpsertSupported();
+    }
+
+    @Override
+    public boolean isMultiRowInsertSupported() {
+        return databaseAdapter.isMultiRowInsertSupported();
+    }
+
+    /**
+     * @return the recorder of the current stage, or null if there is none or the rows of the table aren't recorded
+     */
+    private static StageMetricsRecorder recorder(String table) {
+        return UNRECORDED_TABLES.contains(table) ? null : StageMetricsRecorder.current();
+    }
+
+    private static int recordDeleted(String table, int rows) {
+        StageMetricsRecorder recorder = recorder(table);
+        if (recorder != null && rows > 0) {
+            recorder.recordDeleted(rows);
+        }
+        return rows;
+    }
+
+    private SQLiteStatement register(String sql, SQLiteStatement statement) {
+        if (sql.trim().toUpperCase(Locale.US).startsWith(DELETE)) {
+            deleteStatements.add(statement);
+        }
+        return statement;
+    }
+}
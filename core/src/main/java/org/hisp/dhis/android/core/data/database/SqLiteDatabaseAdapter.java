@@ -35,13 +35,30 @@ import android.support.annotation.NonNull;
 
 public class SqLiteDatabaseAdapter implements DatabaseAdapter {
 
+    private static final String QUERY_VERSION = "SELECT sqlite_version()";
+    private static final int UPSERT_MAJOR_VERSION = 3;
+    private static final int UPSERT_MINOR_VERSION = 24;
+    private static final int MULTI_ROW_INSERT_MAJOR_VERSION = 3;
+    private static final int MULTI_ROW_INSERT_MINOR_VERSION = 7;
+    private static final int MULTI_ROW_INSERT_PATCH_VERSION = 11;
+    private static final int STATEMENT_CACHE_CAPACITY = 64;
+
     private final DbOpenHelper dbOpenHelper;
+    private final StatementCache statementCache;
+
+    private String sqliteVersion;
 
     public SqLiteDatabaseAdapter(@NonNull DbOpenHelper dbOpenHelper) {
         if (dbOpenHelper == null) {
             throw new IllegalArgumentException("dbOpenHelper == null");
         }
         this.dbOpenHelper = dbOpenHelper;
+        this.statementCache = new StatementCache(new StatementCache.Compiler() {
+            @Override
+            public SQLiteStatement compile(String sql) {
+                return compileStatement(sql);
+            }
+        }, STATEMENT_CACHE_CAPACITY);
     }
 
     @Override
@@ -56,6 +73,11 @@ public class SqLiteDatabaseAdapter implements DatabaseAdapter {
         return database().compileStatement(sql);
     }
 
+    @Override
+    public SQLiteStatement cachedStatement(String sql) {
+        return statementCache.get(sql);
+    }
+
     @Override
     public Cursor query(String sql, String... selectionArgs) {
         return readableDatabase().rawQuery(sql, selectionArgs);
@@ -66,6 +88,12 @@ public class SqLiteDatabaseAdapter implements DatabaseAdapter {
         return sqLiteStatement.executeInsert();
     }
 
+    @Override
+    public int executeInsertRows(String table, SQLiteStatement sqLiteStatement) {
+        // executeInsert() only returns the row id of the last row
+        return sqLiteStatement.executeUpdateDelete();
+    }
+
     @Override
     public int executeUpdateDelete(String table, SQLiteStatement sqLiteStatement) {
         return sqLiteStatement.executeUpdateDelete();
@@ -81,6 +109,31 @@ public class SqLiteDatabaseAdapter implements DatabaseAdapter {
         return delete(table, "1", null);
     }
 
+    @Override
+    public boolean isUpsertSupported() {
+        return DbUtils.isVersionAtLeast(sqliteVersion(), UPSERT_MAJOR_VERSION, UPSERT_MINOR_VERSION);
+    }
+
+    @Override
+    public boolean isMultiRowInsertSupported() {
+        return DbUtils.isVersionAtLeast(sqliteVersion(), MULTI_ROW_INSERT_MAJOR_VERSION,
+                MULTI_ROW_INSERT_MINOR_VERSION, MULTI_ROW_INSERT_PATCH_VERSION);
+    }
+
+    private synchronized String sqliteVersion() {
+        if (sqliteVersion == null) {
+            Cursor cursor = query(QUERY_VERSION);
+            try {
+                if (cursor.moveToFirst()) {
+                    sqliteVersion = cursor.getString(0);
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return sqliteVersion;
+    }
+
     private SQLiteDatabase database() {
         return dbOpenHelper.getWritableDatabase();
     }
@@ -43,7 +43,8 @@ public class SqLiteTransaction implements Transaction {
     }
 
     /**
-     * Begins a transaction in EXCLUSIVE mode.
+     * Begins a transaction in EXCLUSIVE mode or, if the database uses write-ahead logging,
+     * in IMMEDIATE mode, which lets other connections keep reading while the transaction is open.
      * <p>
      * Transactions can be nested.
      * When the outer transaction is ended all of
@@ -65,7 +66,11 @@ public class SqLiteTransaction implements Transaction {
      */
     @Override
     public void begin() {
-        database().beginTransaction();
+        if (dbOpenHelper.isWriteAheadLoggingEnabled()) {
+            database().beginTransactionNonExclusive();
+        } else {
+            database().beginTransaction();
+        }
     }
 
     /**
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hisp.dhis.android.core.data.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteConstraintException;
+import android.database.sqlite.SQLiteStatement;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Picks the cheapest way for a store to upsert the rows of a table.
+ * <p>
+ * Where SQLite supports it, every row is upserted by a single {@code INSERT ... ON CONFLICT DO UPDATE} statement.
+ * Older versions have to update the row and insert it if no row has been updated, which costs two statements
+ * for every new row, like all the rows of the first sync. While new rows are expected, that is while the table
+ * is empty on first use or once the previous row has been inserted, the row is therefore offered to the insert
+ * statement first, and the store only updates the rows which violate a constraint, most likely because they
+ * exist already. A row which violates another constraint, like NOT NULL, is not updated either and fails the
+ * insert which follows the update in the store.
+ * </p>
+ * <p>
+ * Like the statements of the store, an upsert must not be used by two threads at the same time.
+ * </p>
+ */
+public class Upsert {
+    private static final String QUERY_EXISTS = "SELECT EXISTS (SELECT 1 FROM %s)";
+
+    private final DatabaseAdapter databaseAdapter;
+    private final String table;
+    private final boolean nativeUpsert;
+    private final String statement;
+
+    private Boolean insertFirst;
+
+    /**
+     * @param insertStatement the insert statement of the store
+     * @param upsertStatement the same insert statement with an {@code ON CONFLICT DO UPDATE} clause, see
+     *                        {@link DbUtils#upsertStatement(String, String)}
+     */
+    public Upsert(@NonNull DatabaseAdapter databaseAdapter, @NonNull String table,
+                  @NonNull String insertStatement, @NonNull String upsertStatement) {
+        this.databaseAdapter = databaseAdapter;
+        this.table = table;
+        this.nativeUpsert = databaseAdapter.isUpsertSupported();
+        this.statement = nativeUpsert ? upsertStatement : insertStatement;
+    }
+
+    /**
+     * @return the statement to bind the arguments of the insert statement to, or null if the store has to update
+     * the row and insert it if no row has been updated, in which case it reports the insert to {@link #inserted()}
+     */
+    @Nullable
+    public SQLiteStatement statement() {
+        if (nativeUpsert) {
+            return databaseAdapter.cachedStatement(statement);
+        }
+        if (insertFirst == null) {
+            insertFirst = isTableEmpty();
+        }
+        return insertFirst ? databaseAdapter.cachedStatement(statement) : null;
+    }
+
+    /**
+     * Executes the statement returned by {@link #statement()} and clears its bindings.
+     *
+     * @return false if the row violates a constraint, in which case the store has to update it instead
+     */
+    public boolean execute() {
+        SQLiteStatement sqLiteStatement = databaseAdapter.cachedStatement(statement);
+        try {
+            databaseAdapter.executeInsert(table, sqLiteStatement);
+            return true;
+        } catch (SQLiteConstraintException constraintException) {
+            if (nativeUpsert) {
+                throw constraintException;
+            }
+
+            // the row exists already, so the rows which follow are probably not new either
+            insertFirst = false;
+            return false;
+        } finally {
+            sqLiteStatement.clearBindings();
+        }
+    }
+
+    /**
+     * Tells that the row could not be updated and has been inserted, so the rows which follow are probably new too.
+     */
+    public void inserted() {
+        insertFirst = true;
+    }
+
+    private boolean isTableEmpty() {
+        Cursor cursor = databaseAdapter.query(String.format(QUERY_EXISTS, table));
+        if (cursor == null) {
+            return false;
+        }
+        try {
+            return cursor.moveToFirst() && cursor.getInt(0) == 0;
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -27,6 +27,7 @@
  */
 package org.hisp.dhis.android.core.dataelement;
 
+import org.hisp.dhis.android.core.common.ChangeDetector;
 import org.hisp.dhis.android.core.option.OptionSetHandler;
 
 import static org.hisp.dhis.android.core.utils.Utils.isDeleted;
@@ -34,11 +35,14 @@ import static org.hisp.dhis.android.core.utils.Utils.isDeleted;
 public class DataElementHandler {
     private final DataElementStore dataElementStore;
     private final OptionSetHandler optionSetHandler;
+    private final ChangeDetector changeDetector;
 
     public DataElementHandler(DataElementStore dataElementStore,
-                              OptionSetHandler optionSetHandler) {
+                              OptionSetHandler optionSetHandler,
+                              ChangeDetector changeDetector) {
         this.dataElementStore = dataElementStore;
         this.optionSetHandler = optionSetHandler;
+        this.changeDetector = changeDetector;
     }
 
     public void handleDataElement(DataElement dataElement) {
@@ -50,40 +54,31 @@ public class DataElementHandler {
 
     /**
      * Deletes or persists data elements and applies changes to database.
-     * This method has a nested call to deleteOrPersistOptionSets
+     * This method has a nested call to handleOptionSetReference
      *
      * @param dataElement
      */
     private void deleteOrPersistDataElement(DataElement dataElement) {
         if (isDeleted(dataElement)) {
             dataElementStore.delete(dataElement.uid());
-        } else {
+        } else if (changeDetector.hasChanged(DataElementModel.TABLE, dataElement.uid(), dataElement.lastUpdated())) {
             String optionSetUid = null;
 
             if (dataElement.optionSet() != null) {
                 optionSetUid = dataElement.optionSet().uid();
             }
 
-            int updatedRow = dataElementStore.update(dataElement.uid(), dataElement.code(), dataElement.name(),
+            dataElementStore.upsert(dataElement.uid(), dataElement.code(), dataElement.name(),
                     dataElement.displayName(), dataElement.created(), dataElement.lastUpdated(),
                     dataElement.shortName(), dataElement.displayShortName(), dataElement.description(),
                     dataElement.displayDescription(), dataElement.valueType(),
                     dataElement.zeroIsSignificant(), dataElement.aggregationType(), dataElement.formName(),
                     dataElement.numberType(), dataElement.domainType(), dataElement.dimension(),
-                    dataElement.displayFormName(), optionSetUid, dataElement.uid());
-
-            if (updatedRow <= 0) {
-                dataElementStore.insert(dataElement.uid(), dataElement.code(), dataElement.name(),
-                        dataElement.displayName(), dataElement.created(), dataElement.lastUpdated(),
-                        dataElement.shortName(), dataElement.displayShortName(), dataElement.description(),
-                        dataElement.displayDescription(), dataElement.valueType(),
-                        dataElement.zeroIsSignificant(), dataElement.aggregationType(), dataElement.formName(),
-                        dataElement.numberType(), dataElement.domainType(), dataElement.dimension(),
-                        dataElement.displayFormName(), optionSetUid);
-            }
+                    dataElement.displayFormName(), optionSetUid);
         }
 
-        optionSetHandler.handleOptionSet(dataElement.optionSet());
+        // the option set is only referenced here, it is downloaded by the option set call
+        optionSetHandler.handleOptionSetReference(dataElement.optionSet());
 
     }
 }
@@ -51,6 +51,23 @@ public interface DataElementStore {
             @Nullable String optionSet
     );
 
+    /**
+     * Inserts the row, or updates it if a row with the same uid exists already.
+     */
+    void upsert(
+            @NonNull String uid,
+            @Nullable String code,
+            @NonNull String name,
+            @NonNull String displayName, @NonNull Date created, @NonNull Date lastUpdated,
+            @Nullable String shortName, @Nullable String displayShortName,
+            @Nullable String description, @Nullable String displayDescription,
+            @NonNull ValueType valueType, @Nullable Boolean zeroIsSignificant,
+            @Nullable String aggregationOperator, @Nullable String formName,
+            @Nullable String numberType, @Nullable String domainType,
+            @Nullable String dimension, @Nullable String displayFormName,
+            @Nullable String optionSet
+    );
+
     int delete(String uid);
 
     int update(
@@ -34,9 +34,11 @@ import android.support.annotation.Nullable;
 
 import org.hisp.dhis.android.core.common.ValueType;
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Upsert;
 
 import java.util.Date;
 
+import static org.hisp.dhis.android.core.data.database.DbUtils.upsertStatement;
 import static org.hisp.dhis.android.core.utils.StoreUtils.nonNull;
 import static org.hisp.dhis.android.core.utils.StoreUtils.sqLiteBind;
 
@@ -66,6 +68,8 @@ public class DataElementStoreImpl implements DataElementStore {
             DataElementModel.Columns.OPTION_SET + ") " +
             "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);";
 
+    private static final String UPSERT_STATEMENT = upsertStatement(INSERT_STATEMENT, DataElementModel.Columns.UID);
+
     private static final String UPDATE_STATEMENT = "UPDATE " + DataElementModel.TABLE + " SET " +
             DataElementModel.Columns.UID + " =?, " +
             DataElementModel.Columns.CODE + " =?, " +
@@ -91,17 +95,13 @@ public class DataElementStoreImpl implements DataElementStore {
     private static final String DELETE_STATEMENT = "DELETE FROM " + DataElementModel.TABLE +
             " WHERE " + DataElementModel.Columns.UID + " =?;";
 
-    private final SQLiteStatement insertStatement;
-    private final SQLiteStatement updateStatement;
-    private final SQLiteStatement deleteStatement;
+    private final Upsert upsert;
 
     private final DatabaseAdapter databaseAdapter;
 
     public DataElementStoreImpl(DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
-        this.insertStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
-        this.updateStatement = databaseAdapter.compileStatement(UPDATE_STATEMENT);
-        this.deleteStatement = databaseAdapter.compileStatement(DELETE_STATEMENT);
+        this.upsert = new Upsert(databaseAdapter, DataElementModel.TABLE, INSERT_STATEMENT, UPSERT_STATEMENT);
     }
 
     @Override
@@ -114,6 +114,7 @@ public class DataElementStoreImpl implements DataElementStore {
                        @Nullable String formName, @Nullable String numberType,
                        @Nullable String domainType, @Nullable String dimension,
                        @Nullable String displayFormName, @Nullable String optionSet) {
+        SQLiteStatement insertStatement = databaseAdapter.cachedStatement(INSERT_STATEMENT);
         nonNull(uid);
         bindArguments(insertStatement, uid, code, name, displayName, created, lastUpdated, shortName, displayShortName,
                 description, displayDescription, valueType, zeroIsSignificant, aggregationOperator, formName,
@@ -125,8 +126,41 @@ public class DataElementStoreImpl implements DataElementStore {
         return insert;
     }
 
+    @Override
+    public void upsert(@NonNull String uid, @Nullable String code, @NonNull String name,
+                       @NonNull String displayName, @NonNull Date created,
+                       @NonNull Date lastUpdated, @Nullable String shortName,
+                       @Nullable String displayShortName, @Nullable String description,
+                       @Nullable String displayDescription, @NonNull ValueType valueType,
+                       @Nullable Boolean zeroIsSignificant, @Nullable String aggregationOperator,
+                       @Nullable String formName, @Nullable String numberType,
+                       @Nullable String domainType, @Nullable String dimension,
+                       @Nullable String displayFormName, @Nullable String optionSet) {
+        SQLiteStatement statement = upsert.statement();
+        if (statement != null) {
+            nonNull(uid);
+            bindArguments(statement, uid, code, name, displayName, created, lastUpdated, shortName, displayShortName,
+                    description, displayDescription, valueType, zeroIsSignificant, aggregationOperator, formName,
+                    numberType, domainType, dimension, displayFormName, optionSet);
+
+            if (upsert.execute()) {
+                return;
+            }
+        }
+
+        if (update(uid, code, name, displayName, created, lastUpdated, shortName, displayShortName, description,
+                displayDescription, valueType, zeroIsSignificant, aggregationOperator, formName, numberType,
+                domainType, dimension, displayFormName, optionSet, uid) <= 0) {
+            insert(uid, code, name, displayName, created, lastUpdated, shortName, displayShortName, description,
+                    displayDescription, valueType, zeroIsSignificant, aggregationOperator, formName, numberType,
+                    domainType, dimension, displayFormName, optionSet);
+            upsert.inserted();
+        }
+    }
+
     @Override
     public int delete(String uid) {
+        SQLiteStatement deleteStatement = databaseAdapter.cachedStatement(DELETE_STATEMENT);
         nonNull(uid);
         // bind the where argument
         sqLiteBind(deleteStatement, 1, uid);
@@ -146,6 +180,7 @@ public class DataElementStoreImpl implements DataElementStore {
                       @Nullable String formName, @Nullable String numberType, @Nullable String domainType,
                       @Nullable String dimension, @Nullable String displayFormName, @Nullable String optionSet,
                       @NonNull String whereDataElementUid) {
+        SQLiteStatement updateStatement = databaseAdapter.cachedStatement(UPDATE_STATEMENT);
         nonNull(uid);
         nonNull(whereDataElementUid);
         bindArguments(updateStatement, uid, code, name, displayName, created, lastUpdated, shortName,
@@ -39,11 +39,12 @@ import com.google.auto.value.AutoValue;
 
 import org.hisp.dhis.android.core.common.BaseDataModel;
 import org.hisp.dhis.android.core.data.database.DbDateColumnAdapter;
+import org.hisp.dhis.android.core.data.database.StatementBinder;
 
 import java.util.Date;
 
 @AutoValue
-public abstract class EnrollmentModel extends BaseDataModel {
+public abstract class EnrollmentModel extends BaseDataModel implements StatementBinder {
 
     public static final String TABLE = "Enrollment";
 
@@ -51,6 +52,15 @@ public abstract class EnrollmentModel extends BaseDataModel {
         return AutoValue_EnrollmentModel.createFromCursor(cursor);
     }
 
+    /**
+     * @return the columns bound by {@link #bindTo(android.database.sqlite.SQLiteStatement, int)}, in the order of
+     * their bind arguments
+     */
+    @NonNull
+    public static String[] boundColumns() {
+        return AutoValue_EnrollmentModel.COLUMNS.clone();
+    }
+
     public static EnrollmentModel.Builder builder() {
         return new $$AutoValue_EnrollmentModel.Builder();
     }
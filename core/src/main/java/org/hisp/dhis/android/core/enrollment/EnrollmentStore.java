@@ -34,6 +34,7 @@ import android.support.annotation.Nullable;
 import org.hisp.dhis.android.core.common.State;
 
 import java.util.Date;
+import java.util.List;
 
 public interface EnrollmentStore {
     long insert(@NonNull String uid,
@@ -51,5 +52,13 @@ public interface EnrollmentStore {
                 @Nullable State state
     );
 
+    /**
+     * Inserts all the enrollments, like the ones of a downloaded page of tracked entity instances, with
+     * multi-row statements where SQLite supports it.
+     *
+     * @return the number of enrollments inserted
+     */
+    int insertAll(@NonNull List<EnrollmentModel> enrollments);
+
     void close();
 }
@@ -33,38 +33,27 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import org.hisp.dhis.android.core.common.State;
+import org.hisp.dhis.android.core.data.database.BatchInsert;
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
 import org.hisp.dhis.android.core.enrollment.EnrollmentModel.Columns;
 
 import java.util.Date;
+import java.util.List;
 
+import static org.hisp.dhis.android.core.data.database.DbUtils.insertStatement;
 import static org.hisp.dhis.android.core.utils.StoreUtils.nonNull;
-import static org.hisp.dhis.android.core.utils.StoreUtils.sqLiteBind;
 
 public class EnrollmentStoreImpl implements EnrollmentStore {
 
-    private static final String INSERT_STATEMENT = "INSERT INTO " + EnrollmentModel.TABLE + " (" +
-            Columns.UID + ", " +
-            Columns.CREATED + ", " +
-            Columns.LAST_UPDATED + ", " +
-            Columns.ORGANISATION_UNIT + ", " +
-            Columns.PROGRAM + ", " +
-            Columns.DATE_OF_ENROLLMENT + ", " +
-            Columns.DATE_OF_INCIDENT + ", " +
-            Columns.FOLLOW_UP + ", " +
-            Columns.ENROLLMENT_STATUS + ", " +
-            Columns.TRACKED_ENTITY_INSTANCE + ", " +
-            Columns.LATITUDE + ", " +
-            Columns.LONGITUDE + ", " +
-            Columns.STATE + ") " +
-            "VALUES(?,?,?,?,?,?,?,?,?,?,?,?,?);";
+    private static final String INSERT_STATEMENT = insertStatement(
+            EnrollmentModel.TABLE, EnrollmentModel.boundColumns());
 
-    private final SQLiteStatement sqLiteStatement;
     private final DatabaseAdapter databaseAdapter;
+    private final BatchInsert<EnrollmentModel> batchInsert;
 
     public EnrollmentStoreImpl(DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
-        this.sqLiteStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
+        this.batchInsert = new BatchInsert<>(databaseAdapter, EnrollmentModel.TABLE, INSERT_STATEMENT);
     }
 
     @Override
@@ -73,32 +62,49 @@ public class EnrollmentStoreImpl implements EnrollmentStore {
                        @Nullable Date dateOfIncident, @Nullable Boolean followUp,
                        @Nullable EnrollmentStatus enrollmentStatus, @NonNull String trackedEntityInstance,
                        @Nullable String latitude, @Nullable String longitude, @Nullable State state) {
+        SQLiteStatement sqLiteStatement = databaseAdapter.cachedStatement(INSERT_STATEMENT);
 
         nonNull(uid);
         nonNull(organisationUnit);
         nonNull(program);
         nonNull(trackedEntityInstance);
-        sqLiteBind(sqLiteStatement, 1, uid);
-        sqLiteBind(sqLiteStatement, 2, created);
-        sqLiteBind(sqLiteStatement, 3, lastUpdated);
-        sqLiteBind(sqLiteStatement, 4, organisationUnit);
-        sqLiteBind(sqLiteStatement, 5, program);
-        sqLiteBind(sqLiteStatement, 6, dateOfEnrollment);
-        sqLiteBind(sqLiteStatement, 7, dateOfIncident);
-        sqLiteBind(sqLiteStatement, 8, followUp);
-        sqLiteBind(sqLiteStatement, 9, enrollmentStatus);
-        sqLiteBind(sqLiteStatement, 10, trackedEntityInstance);
-        sqLiteBind(sqLiteStatement, 11, latitude);
-        sqLiteBind(sqLiteStatement, 12, longitude);
-        sqLiteBind(sqLiteStatement, 13, state);
+        EnrollmentModel.builder()
+                .uid(uid)
+                .created(created)
+                .lastUpdated(lastUpdated)
+                .organisationUnit(organisationUnit)
+                .program(program)
+                .dateOfEnrollment(dateOfEnrollment)
+                .dateOfIncident(dateOfIncident)
+                .followUp(followUp)
+                .enrollmentStatus(enrollmentStatus)
+                .trackedEntityInstance(trackedEntityInstance)
+                .latitude(latitude)
+                .longitude(longitude)
+                .state(state)
+                .build()
+                .bindTo(sqLiteStatement, 1);
 
         long ret = databaseAdapter.executeInsert(EnrollmentModel.TABLE, sqLiteStatement);
         sqLiteStatement.clearBindings();
         return ret;
     }
 
+    @Override
+    public int insertAll(@NonNull List<EnrollmentModel> enrollments) {
+        int size = enrollments.size();
+        for (int i = 0; i < size; i++) {
+            EnrollmentModel enrollment = enrollments.get(i);
+            nonNull(enrollment.uid());
+            nonNull(enrollment.organisationUnit());
+            nonNull(enrollment.program());
+            nonNull(enrollment.trackedEntityInstance());
+        }
+        return batchInsert.insertAll(enrollments);
+    }
+
     @Override
     public void close() {
-        sqLiteStatement.close();
+        // the statements are borrowed from the statement cache of the database adapter
     }
 }
@@ -35,6 +35,8 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.auto.value.AutoValue;
 
 import org.hisp.dhis.android.core.common.Coordinates;
+import org.hisp.dhis.android.core.data.api.Field;
+import org.hisp.dhis.android.core.data.api.NestedField;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityDataValue;
 
 import java.util.Date;
@@ -58,6 +60,22 @@ public abstract class Event {
     private static final String DUE_DATE = "dueDate";
     private static final String TRACKED_ENTITY_DATA_VALUES = "dataValues";
 
+    public static final Field<Event, String> uid = Field.create(EVENT_UID);
+    public static final Field<Event, String> enrollment = Field.create(ENROLLMENT_UID);
+    public static final Field<Event, Date> created = Field.create(CREATED);
+    public static final Field<Event, Date> lastUpdated = Field.create(LAST_UPDATED);
+    public static final Field<Event, EventStatus> status = Field.create(STATUS);
+    public static final Field<Event, Coordinates> coordinates = Field.create(COORDINATE);
+    public static final Field<Event, String> program = Field.create(PROGRAM);
+    public static final Field<Event, String> programStage = Field.create(PROGRAM_STAGE);
+    public static final Field<Event, String> organisationUnit = Field.create(ORGANISATION_UNIT);
+    public static final Field<Event, Date> eventDate = Field.create(EVENT_DATE);
+    public static final Field<Event, Date> completedDate = Field.create(COMPLETE_DATE);
+    public static final Field<Event, Date> dueDate = Field.create(DUE_DATE);
+
+    public static final NestedField<Event, TrackedEntityDataValue> trackedEntityDataValues
+            = NestedField.create(TRACKED_ENTITY_DATA_VALUES);
+
     @JsonProperty(EVENT_UID)
     public abstract String uid();
 
@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.event;
+
+import android.support.annotation.NonNull;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.hisp.dhis.android.core.common.Call;
+import org.hisp.dhis.android.core.common.PagedSync;
+import org.hisp.dhis.android.core.common.Pager;
+import org.hisp.dhis.android.core.common.PayloadParser;
+import org.hisp.dhis.android.core.common.State;
+import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Transaction;
+import org.hisp.dhis.android.core.resource.ResourceHandler;
+import org.hisp.dhis.android.core.resource.ResourceModel;
+import org.hisp.dhis.android.core.resource.ResourceStore;
+import org.hisp.dhis.android.core.systeminfo.SystemInfo;
+import org.hisp.dhis.android.core.systeminfo.SystemInfoCall;
+import org.hisp.dhis.android.core.systeminfo.SystemInfoService;
+import org.hisp.dhis.android.core.systeminfo.SystemInfoStore;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityDataValue;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityDataValueModel;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityDataValueStore;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import okhttp3.ResponseBody;
+import retrofit2.Response;
+
+/**
+ * Downloads the events of programs in organisation units, and the organisation units below them, which have
+ * changed since the last download of the program in the organisation unit.
+ * <p>
+ * Events are requested page by page, one program and organisation unit after the other, and every page is
+ * persisted in its own transaction, see {@link PagedSync}. The events of a page are parsed one at a time and
+ * written by batches of rows together with their data values, so memory use is bounded by the size of a batch
+ * rather than by the number of events. Events which have local changes that have not been uploaded yet are
+ * kept as they are.
+ * </p>
+ */
+public class EventCall implements Call<Response> {
+    private static final String DESCENDANTS = "DESCENDANTS";
+    private static final String KEY_SEPARATOR = ":";
+    private static final int BATCH_SIZE = 100;
+
+    private final DatabaseAdapter databaseAdapter;
+    private final SystemInfoStore systemInfoStore;
+    private final SystemInfoService systemInfoService;
+    private final ResourceStore resourceStore;
+    private final EventService eventService;
+    private final EventStore eventStore;
+    private final TrackedEntityDataValueStore trackedEntityDataValueStore;
+    private final ObjectMapper objectMapper;
+    private final Set<String> organisationUnitUids;
+    private final Set<String> programUids;
+    private final int pageSize;
+    private boolean isExecuted;
+
+    /**
+     * @param pageSize number of events per page
+     */
+    public EventCall(@NonNull DatabaseAdapter databaseAdapter,
+                     @NonNull SystemInfoStore systemInfoStore,
+                     @NonNull SystemInfoService systemInfoService,
+                     @NonNull ResourceStore resourceStore,
+                     @NonNull EventService eventService,
+                     @NonNull EventStore eventStore,
+                     @NonNull TrackedEntityDataValueStore trackedEntityDataValueStore,
+                     @NonNull ObjectMapper objectMapper,
+                     @NonNull Set<String> organisationUnitUids,
+                     @NonNull Set<String> programUids,
+                     int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize <= 0");
+        }
+        this.databaseAdapter = databaseAdapter;
+        this.systemInfoStore = systemInfoStore;
+        this.systemInfoService = systemInfoService;
+        this.resourceStore = resourceStore;
+        this.eventService = eventService;
+        this.eventStore = eventStore;
+        this.trackedEntityDataValueStore = trackedEntityDataValueStore;
+        this.objectMapper = objectMapper;
+        this.organisationUnitUids = new TreeSet<>(organisationUnitUids);
+        this.programUids = new TreeSet<>(programUids);
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public boolean isExecuted() {
+        synchronized (this) {
+            return isExecuted;
+        }
+    }
+
+    @Override
+    public Response call() throws Exception {
+        synchronized (this) {
+            if (isExecuted) {
+                throw new IllegalStateException("Already executed");
+            }
+            isExecuted = true;
+        }
+
+        Response<SystemInfo> systemInfoResponse = new SystemInfoCall(
+                databaseAdapter, systemInfoStore, systemInfoService, resourceStore).call();
+        if (!systemInfoResponse.isSuccessful()) {
+            return systemInfoResponse;
+        }
+
+        // every program is requested in every organisation unit, in the same order by every attempt
+        Set<String> keys = new TreeSet<>();
+        List<PagedSync.PageCall<ResponseBody>> pages = new ArrayList<>();
+        for (String organisationUnitUid : organisationUnitUids) {
+            for (String programUid : programUids) {
+                keys.add(key(organisationUnitUid, programUid));
+                pages.add(pages(organisationUnitUid, programUid));
+            }
+        }
+
+        PagedSync<Event> pagedSync = new PagedSync<>(databaseAdapter, resourceStore, ResourceModel.Type.EVENT,
+                keys, pageSize, systemInfoResponse.body().serverDate());
+        Response response = pagedSync.download(pages);
+        if (response.isSuccessful()) {
+            ResourceHandler resourceHandler = new ResourceHandler(resourceStore);
+            Transaction transaction = databaseAdapter.beginNewTransaction();
+            try {
+                for (String key : keys) {
+                    resourceHandler.handleResource(ResourceModel.Type.EVENT, key, pagedSync.pagingStarted());
+                }
+                pagedSync.complete();
+                transaction.setSuccessful();
+            } finally {
+                transaction.end();
+            }
+        }
+        return response;
+    }
+
+    private static String key(String organisationUnitUid, String programUid) {
+        return organisationUnitUid + KEY_SEPARATOR + programUid;
+    }
+
+    private PagedSync.PageCall<ResponseBody> pages(final String organisationUnitUid, final String programUid) {
+        return new PagedSync.PageCall<ResponseBody>() {
+            @NonNull
+            @Override
+            public Response<ResponseBody> download(int page, int pageSize) throws IOException {
+                String lastUpdated = new ResourceHandler(resourceStore).getLastUpdated(ResourceModel.Type.EVENT,
+                        key(organisationUnitUid, programUid));
+                return eventService.events(organisationUnitUid, DESCENDANTS, programUid, lastUpdated,
+                        page, pageSize, true).execute();
+            }
+
+            @Override
+            public Pager persist(@NonNull ResponseBody body) throws IOException {
+                EventBatch eventBatch = new EventBatch();
+                Pager pager = new PayloadParser<>(objectMapper, Event.class).parse(body.source(), eventBatch);
+                eventBatch.write();
+                return pager;
+            }
+        };
+    }
+
+    /**
+     * Collects parsed events and writes them once a batch is full.
+     */
+    private final class EventBatch implements PayloadParser.ItemHandler<Event> {
+        private List<EventModel> events = new ArrayList<>(BATCH_SIZE);
+        private List<TrackedEntityDataValueModel> dataValues = new ArrayList<>();
+
+        @Override
+        public void handle(@NonNull Event event) {
+            events.add(eventModel(event));
+            List<TrackedEntityDataValue> eventDataValues = event.trackedEntityDataValues();
+            if (eventDataValues != null) {
+                for (TrackedEntityDataValue dataValue : eventDataValues) {
+                    dataValues.add(dataValueModel(event.uid(), dataValue));
+                }
+            }
+
+            if (events.size() >= BATCH_SIZE) {
+                write();
+            }
+        }
+
+        void write() {
+            if (events.isEmpty()) {
+                return;
+            }
+
+            Set<String> uids = new HashSet<>();
+            for (EventModel event : events) {
+                uids.add(event.uid());
+            }
+            Set<String> uidsWithLocalChanges = eventStore.queryUidsWithLocalChanges(uids);
+            if (!uidsWithLocalChanges.isEmpty()) {
+                removeEventsWithLocalChanges(uidsWithLocalChanges);
+                uids.removeAll(uidsWithLocalChanges);
+            }
+
+            // the data values of the events are deleted with them, so that values removed on the server go too
+            eventStore.delete(uids);
+            eventStore.insertAll(events);
+            if (!dataValues.isEmpty()) {
+                trackedEntityDataValueStore.insertAll(dataValues);
+            }
+
+            events = new ArrayList<>(BATCH_SIZE);
+            dataValues = new ArrayList<>();
+        }
+
+        private void removeEventsWithLocalChanges(Set<String> uidsWithLocalChanges) {
+            List<EventModel> eventsToWrite = new ArrayList<>(events.size());
+            for (EventModel event : events) {
+                if (!uidsWithLocalChanges.contains(event.uid())) {
+                    eventsToWrite.add(event);
+                }
+            }
+            events = eventsToWrite;
+
+            List<TrackedEntityDataValueModel> dataValuesToWrite = new ArrayList<>(dataValues.size());
+            for (TrackedEntityDataValueModel dataValue : dataValues) {
+                if (!uidsWithLocalChanges.contains(dataValue.event())) {
+                    dataValuesToWrite.add(dataValue);
+                }
+            }
+            dataValues = dataValuesToWrite;
+        }
+    }
+
+    /**
+     * @return the row of a downloaded event
+     */
+    public static EventModel eventModel(Event event) {
+        String latitude = null;
+        String longitude = null;
+        if (event.coordinates() != null) {
+            latitude = String.valueOf(event.coordinates().latitude());
+            longitude = String.valueOf(event.coordinates().longitude());
+        }
+        return EventModel.builder()
+                .uid(event.uid())
+                .enrollmentUid(event.enrollmentUid())
+                .created(event.created())
+                .lastUpdated(event.lastUpdated())
+                .status(event.status())
+                .latitude(latitude)
+                .longitude(longitude)
+                .program(event.program())
+                .programStage(event.programStage())
+                .organisationUnit(event.organisationUnit())
+                .eventDate(event.eventDate())
+                .completedDate(event.completedDate())
+                .dueDate(event.dueDate())
+                .state(State.SYNCED)
+                .build();
+    }
+
+    /**
+     * @return the row of a data value of a downloaded event
+     */
+    public static TrackedEntityDataValueModel dataValueModel(String event, TrackedEntityDataValue dataValue) {
+        return TrackedEntityDataValueModel.builder()
+                .event(event)
+                .created(dataValue.created())
+                .lastUpdated(dataValue.lastUpdated())
+                .dataElement(dataValue.dataElement())
+                .storedBy(dataValue.storedBy())
+                .value(dataValue.value())
+                .providedElsewhere(dataValue.providedElsewhere())
+                .state(State.SYNCED)
+                .build();
+    }
+}
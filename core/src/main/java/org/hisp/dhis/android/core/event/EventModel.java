@@ -40,11 +40,12 @@ import com.google.auto.value.AutoValue;
 import org.hisp.dhis.android.core.common.BaseDataModel;
 import org.hisp.dhis.android.core.data.database.DbDateColumnAdapter;
 import org.hisp.dhis.android.core.data.database.DbEventStatusColumnAdapter;
+import org.hisp.dhis.android.core.data.database.StatementBinder;
 
 import java.util.Date;
 
 @AutoValue
-public abstract class EventModel extends BaseDataModel {
+public abstract class EventModel extends BaseDataModel implements StatementBinder {
 
     public static final String TABLE = "Event";
 
@@ -68,6 +69,15 @@ public abstract class EventModel extends BaseDataModel {
         return AutoValue_EventModel.createFromCursor(cursor);
     }
 
+    /**
+     * @return the columns bound by {@link #bindTo(android.database.sqlite.SQLiteStatement, int)}, in the order of
+     * their bind arguments
+     */
+    @NonNull
+    public static String[] boundColumns() {
+        return AutoValue_EventModel.COLUMNS.clone();
+    }
+
     public static Builder builder() {
         return new $$AutoValue_EventModel.Builder();
     }
@@ -0,0 +1,352 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.event;
+
+import android.support.annotation.NonNull;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.hisp.dhis.android.core.common.Call;
+import org.hisp.dhis.android.core.common.Coordinates;
+import org.hisp.dhis.android.core.common.PayloadParser;
+import org.hisp.dhis.android.core.common.State;
+import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Transaction;
+import org.hisp.dhis.android.core.imports.ImportStatus;
+import org.hisp.dhis.android.core.imports.ImportSummary;
+import org.hisp.dhis.android.core.imports.ImportSummaryParser;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityDataValue;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityDataValueModel;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityDataValueStore;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import okhttp3.ResponseBody;
+import retrofit2.Response;
+
+/**
+ * Uploads the events which have been created or changed offline, that is the events in the
+ * {@link State#TO_POST} or {@link State#TO_UPDATE} state, together with their data values.
+ * <p>
+ * Events are read page by page and every page is uploaded in a single request, so that neither the events
+ * nor their import summaries are ever held in memory all at once. The import summaries are parsed as they
+ * are received and the state of the events of a batch is set in a single transaction: {@link State#SYNCED}
+ * for the events the server imported and {@link State#ERROR} for the ones it rejected, unless an event has been
+ * changed since it was read. Events the server does not report on keep their state and are uploaded again by
+ * the next call.
+ * </p>
+ * <p>
+ * When only changed values are uploaded, an event the server already has and of which data values have been
+ * changed on the device, see {@link TrackedEntityDataValueStore#setValue(String, String, String)}, is not
+ * uploaded as a whole: each of its changed values is sent on its own, together with the fields of the event.
+ * The values the server accepts are {@link State#SYNCED} and the event is too once all of them are, while an
+ * event of which the server rejects a value is set to {@link State#ERROR}.
+ * </p>
+ */
+public class EventPostCall implements Call<Response> {
+    private final DatabaseAdapter databaseAdapter;
+    private final EventService eventService;
+    private final EventStore eventStore;
+    private final TrackedEntityDataValueStore trackedEntityDataValueStore;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final boolean changedValuesOnly;
+    private boolean isExecuted;
+
+    /**
+     * @param batchSize maximum number of events uploaded in a single request
+     */
+    public EventPostCall(@NonNull DatabaseAdapter databaseAdapter,
+                         @NonNull EventService eventService,
+                         @NonNull EventStore eventStore,
+                         @NonNull TrackedEntityDataValueStore trackedEntityDataValueStore,
+                         @NonNull ObjectMapper objectMapper,
+                         int batchSize) {
+        this(databaseAdapter, eventService, eventStore, trackedEntityDataValueStore, objectMapper, batchSize, false);
+    }
+
+    /**
+     * @param batchSize         maximum number of events uploaded in a single request
+     * @param changedValuesOnly whether only the changed data values of the events the server already has are
+     *                          uploaded
+     */
+    public EventPostCall(@NonNull DatabaseAdapter databaseAdapter,
+                         @NonNull EventService eventService,
+                         @NonNull EventStore eventStore,
+                         @NonNull TrackedEntityDataValueStore trackedEntityDataValueStore,
+                         @NonNull ObjectMapper objectMapper,
+                         int batchSize,
+                         boolean changedValuesOnly) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize <= 0");
+        }
+        this.databaseAdapter = databaseAdapter;
+        this.eventService = eventService;
+        this.eventStore = eventStore;
+        this.trackedEntityDataValueStore = trackedEntityDataValueStore;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.changedValuesOnly = changedValuesOnly;
+    }
+
+    @Override
+    public boolean isExecuted() {
+        synchronized (this) {
+            return isExecuted;
+        }
+    }
+
+    /**
+     * @return the response of the last request, which is an empty successful response if there was nothing to
+     * upload. The upload stops at the first batch the server fails to import as a whole, or at the first changed
+     * value it fails to import for another reason than the value itself.
+     */
+    @Override
+    public Response call() throws Exception {
+        synchronized (this) {
+            if (isExecuted) {
+                throw new IllegalStateException("Already executed");
+            }
+            isExecuted = true;
+        }
+
+        Response response = Response.success(null);
+        long afterId = 0;
+        List<EventModel> eventModels = eventStore.queryEventsToUpload(afterId, batchSize);
+        while (!eventModels.isEmpty()) {
+            Map<String, List<TrackedEntityDataValueModel>> dataValues =
+                    trackedEntityDataValueStore.queryByEvents(uids(eventModels));
+
+            List<Event> events = new ArrayList<>(eventModels.size());
+            Map<String, EventModel> postedEvents = new HashMap<>();
+            List<TrackedEntityDataValueModel> postedValues = new ArrayList<>();
+            for (EventModel eventModel : eventModels) {
+                List<TrackedEntityDataValueModel> eventValues = dataValues.get(eventModel.uid());
+                List<TrackedEntityDataValueModel> changedValues = changedValuesOnly
+                        && eventModel.state() == State.TO_UPDATE
+                        ? changedValues(eventValues) : Collections.<TrackedEntityDataValueModel>emptyList();
+                if (changedValues.isEmpty()) {
+                    events.add(event(eventModel, eventValues));
+                    postedEvents.put(eventModel.uid(), eventModel);
+                    if (eventValues != null) {
+                        postedValues.addAll(eventValues);
+                    }
+                    continue;
+                }
+
+                Response<ResponseBody> valueResponse = putChangedValues(eventModel, changedValues);
+                response = valueResponse;
+                if (!valueResponse.isSuccessful() && !isClientError(valueResponse)) {
+                    return response;
+                }
+            }
+
+            if (!events.isEmpty()) {
+                Response<ResponseBody> batchResponse = eventService.postEvents(EventPayload.create(events)).execute();
+                response = batchResponse;
+
+                // a batch of which some events have been rejected is answered with a conflict
+                if (batchResponse.isSuccessful()) {
+                    persist(batchResponse.body(), postedEvents, postedValues);
+                } else if (batchResponse.code() == HttpURLConnection.HTTP_CONFLICT) {
+                    persist(batchResponse.errorBody(), postedEvents, postedValues);
+                } else {
+                    break;
+                }
+            }
+
+            if (eventModels.size() < batchSize) {
+                break;
+            }
+            afterId = eventModels.get(eventModels.size() - 1).id();
+            eventModels = eventStore.queryEventsToUpload(afterId, batchSize);
+        }
+        return response;
+    }
+
+    /**
+     * Uploads the changed values of an event one by one and sets their state, and the state of the event once
+     * the server has answered for all of them.
+     *
+     * @return the response of the last value uploaded
+     */
+    private Response<ResponseBody> putChangedValues(EventModel eventModel,
+                                                    List<TrackedEntityDataValueModel> changedValues)
+            throws IOException {
+        List<TrackedEntityDataValueModel> synced = new ArrayList<>(changedValues.size());
+        boolean rejected = false;
+        Response<ResponseBody> response = null;
+        for (TrackedEntityDataValueModel changedValue : changedValues) {
+            response = eventService.putEventValue(eventModel.uid(), changedValue.dataElement(),
+                    event(eventModel, Collections.singletonList(changedValue))).execute();
+            if (response.isSuccessful()) {
+                if (response.body() != null) {
+                    response.body().close();
+                }
+                synced.add(changedValue);
+            } else if (isClientError(response)) {
+                rejected = true;
+            } else {
+                // the event keeps its state, so that the values which are left are uploaded by the next call
+                persistValues(eventModel, synced, null);
+                return response;
+            }
+        }
+        persistValues(eventModel, synced, rejected ? State.ERROR : State.SYNCED);
+        return response;
+    }
+
+    private void persistValues(EventModel eventModel, List<TrackedEntityDataValueModel> syncedValues,
+                               State eventState) {
+        Transaction transaction = databaseAdapter.beginNewTransaction();
+        try {
+            trackedEntityDataValueStore.setState(syncedValues, State.SYNCED);
+            if (eventState != null) {
+                eventStore.setStateIfUnchanged(Collections.singletonList(eventModel), eventState);
+            }
+            transaction.setSuccessful();
+        } finally {
+            transaction.end();
+        }
+    }
+
+    private static boolean isClientError(Response<?> response) {
+        return response.code() >= HttpURLConnection.HTTP_BAD_REQUEST
+                && response.code() < HttpURLConnection.HTTP_INTERNAL_ERROR;
+    }
+
+    private static List<String> uids(List<EventModel> eventModels) {
+        List<String> uids = new ArrayList<>(eventModels.size());
+        for (EventModel eventModel : eventModels) {
+            uids.add(eventModel.uid());
+        }
+        return uids;
+    }
+
+    private static List<TrackedEntityDataValueModel> valuesOf(List<EventModel> eventModels,
+                                                              List<TrackedEntityDataValueModel> dataValues) {
+        Set<String> events = new HashSet<>(uids(eventModels));
+        List<TrackedEntityDataValueModel> eventValues = new ArrayList<>();
+        for (TrackedEntityDataValueModel dataValue : dataValues) {
+            if (events.contains(dataValue.event())) {
+                eventValues.add(dataValue);
+            }
+        }
+        return eventValues;
+    }
+
+    private static List<TrackedEntityDataValueModel> changedValues(List<TrackedEntityDataValueModel> dataValues) {
+        if (dataValues == null) {
+            return Collections.emptyList();
+        }
+        List<TrackedEntityDataValueModel> changedValues = new ArrayList<>();
+        for (TrackedEntityDataValueModel dataValue : dataValues) {
+            if (dataValue.state() == State.TO_UPDATE && dataValue.dataElement() != null) {
+                changedValues.add(dataValue);
+            }
+        }
+        return changedValues;
+    }
+
+    private static Event event(EventModel eventModel, List<TrackedEntityDataValueModel> dataValues) {
+        return Event.create(eventModel.uid(), eventModel.enrollmentUid(), eventModel.created(),
+                eventModel.lastUpdated(), eventModel.program(), eventModel.programStage(),
+                eventModel.organisationUnit(), eventModel.eventDate(), eventModel.status(),
+                coordinates(eventModel), eventModel.completedDate(), eventModel.dueDate(),
+                dataValues(dataValues));
+    }
+
+    private static Coordinates coordinates(EventModel eventModel) {
+        if (eventModel.latitude() == null || eventModel.longitude() == null) {
+            return null;
+        }
+        return Coordinates.builder()
+                .latitude(Double.valueOf(eventModel.latitude()))
+                .longitude(Double.valueOf(eventModel.longitude()))
+                .build();
+    }
+
+    private static List<TrackedEntityDataValue> dataValues(List<TrackedEntityDataValueModel> dataValueModels) {
+        if (dataValueModels == null) {
+            return Collections.emptyList();
+        }
+        List<TrackedEntityDataValue> dataValues = new ArrayList<>(dataValueModels.size());
+        for (TrackedEntityDataValueModel dataValueModel : dataValueModels) {
+            dataValues.add(TrackedEntityDataValue.create(dataValueModel.created(), dataValueModel.lastUpdated(),
+                    dataValueModel.dataElement(), dataValueModel.storedBy(), dataValueModel.value(),
+                    dataValueModel.providedElsewhere()));
+        }
+        return dataValues;
+    }
+
+    /**
+     * @param postedEvents the events of the batch by uid, as they have been read
+     * @param postedValues the data values of the events of the batch, as they have been read
+     */
+    private void persist(ResponseBody body, final Map<String, EventModel> postedEvents,
+                         List<TrackedEntityDataValueModel> postedValues) throws IOException {
+        final List<EventModel> synced = new ArrayList<>();
+        final List<EventModel> failed = new ArrayList<>();
+
+        // the summaries are read before the transaction begins, so that it is not held open while receiving
+        new ImportSummaryParser(objectMapper).parse(body.source(), new PayloadParser.ItemHandler<ImportSummary>() {
+            @Override
+            public void handle(@NonNull ImportSummary summary) {
+                EventModel event = summary.reference() == null ? null : postedEvents.get(summary.reference());
+                if (event == null) {
+                    return;
+                }
+                if (summary.status() == ImportStatus.ERROR) {
+                    failed.add(event);
+                } else {
+                    synced.add(event);
+                }
+            }
+        });
+
+        Transaction transaction = databaseAdapter.beginNewTransaction();
+        try {
+            // events and values changed while they were uploaded keep their state, and so are uploaded again
+            trackedEntityDataValueStore.setState(valuesOf(synced, postedValues), State.SYNCED);
+            eventStore.setStateIfUnchanged(synced, State.SYNCED);
+            eventStore.setStateIfUnchanged(failed, State.ERROR);
+            transaction.setSuccessful();
+        } finally {
+            transaction.end();
+        }
+    }
+}
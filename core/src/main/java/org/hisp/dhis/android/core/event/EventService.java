@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.event;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.http.Body;
+import retrofit2.http.GET;
+import retrofit2.http.POST;
+import retrofit2.http.PUT;
+import retrofit2.http.Path;
+import retrofit2.http.Query;
+import retrofit2.http.Streaming;
+
+public interface EventService {
+
+    /**
+     * Downloads a page of the events of a program in an organisation unit. The response is read as a stream,
+     * see {@link org.hisp.dhis.android.core.common.PayloadParser}.
+     *
+     * @param totalPages whether the pager of the response reports the number of pages, which the server has to
+     *                   count the events for
+     */
+    @Streaming
+    @GET("events")
+    Call<ResponseBody> events(@NonNull @Query("orgUnit") String organisationUnit,
+                              @NonNull @Query("ouMode") String organisationUnitMode,
+                              @NonNull @Query("program") String program,
+                              @Nullable @Query("lastUpdatedStartDate") String lastUpdatedStartDate,
+                              @Query("page") int page,
+                              @Query("pageSize") int pageSize,
+                              @Query("totalPages") boolean totalPages);
+
+    /**
+     * Uploads events, creating the ones the server does not know and updating the others. The response
+     * contains an import summary for every event and is read as a stream, see
+     * {@link org.hisp.dhis.android.core.imports.ImportSummaryParser}.
+     */
+    @Streaming
+    @POST("events")
+    Call<ResponseBody> postEvents(@Body EventPayload events);
+
+    /**
+     * Updates a single data value of an event the server already has, leaving its other data values untouched.
+     * The event carries the value among its data values.
+     */
+    @PUT("events/{event}/{dataElement}")
+    Call<ResponseBody> putEventValue(@NonNull @Path("event") String eventUid,
+                                     @NonNull @Path("dataElement") String dataElement,
+                                     @Body Event event);
+}
@@ -33,7 +33,10 @@ import android.support.annotation.Nullable;
 
 import org.hisp.dhis.android.core.common.State;
 
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
+import java.util.Set;
 
 public interface EventStore {
     long insert(@NonNull String uid,
@@ -52,5 +55,53 @@ public interface EventStore {
                 @Nullable State state
     );
 
+    /**
+     * Inserts all the events, like the ones of a downloaded page, with multi-row statements where SQLite
+     * supports it.
+     *
+     * @return the number of events inserted
+     */
+    int insertAll(@NonNull List<EventModel> events);
+
+    /**
+     * @return the uids of the given events which have local changes, that is which are stored in another state
+     * than {@link State#SYNCED}
+     */
+    @NonNull
+    Set<String> queryUidsWithLocalChanges(@NonNull Collection<String> uids);
+
+    /**
+     * Deletes the events together with their data values.
+     *
+     * @return the number of events deleted
+     */
+    int delete(@NonNull Collection<String> uids);
+
+    /**
+     * Queries the events which have to be uploaded, that is the events in the {@link State#TO_POST} or
+     * {@link State#TO_UPDATE} state, in the order of their ids. Pages are read with a keyset rather than an offset,
+     * so that reading a page costs the same however many events have been uploaded before.
+     *
+     * @param afterId id of the last event of the previous page, or 0 for the first page
+     * @param limit   maximum number of events of the page
+     */
+    @NonNull
+    List<EventModel> queryEventsToUpload(long afterId, int limit);
+
+    /**
+     * @return the number of events whose state has been set
+     */
+    int setState(@NonNull Collection<String> uids, @NonNull State state);
+
+    /**
+     * Sets the state of the events which have not changed since they have been read, that is which still have
+     * the state and the last updated date of the given rows. An event is not {@link State#SYNCED} either while
+     * some of its data values are left to update. An event changed while it was uploaded keeps its state and is
+     * uploaded again.
+     *
+     * @return the number of events whose state has been set
+     */
+    int setStateIfUnchanged(@NonNull Collection<EventModel> events, @NonNull State state);
+
     void close();
 }
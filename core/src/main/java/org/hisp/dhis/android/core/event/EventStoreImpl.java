@@ -28,44 +28,59 @@
 
 package org.hisp.dhis.android.core.event;
 
+import android.database.Cursor;
 import android.database.sqlite.SQLiteStatement;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import org.hisp.dhis.android.core.common.State;
+import org.hisp.dhis.android.core.data.database.BatchInsert;
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
 import org.hisp.dhis.android.core.event.EventModel.Columns;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityDataValueModel;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hisp.dhis.android.core.data.database.DbUtils.insertStatement;
+import static org.hisp.dhis.android.core.data.database.DbUtils.placeholders;
 
 import static org.hisp.dhis.android.core.utils.StoreUtils.nonNull;
 import static org.hisp.dhis.android.core.utils.StoreUtils.sqLiteBind;
 
 public class EventStoreImpl implements EventStore {
 
-    private static final String INSERT_STATEMENT = "INSERT INTO " + EventModel.TABLE + " (" +
-            Columns.UID + ", " +
-            Columns.ENROLLMENT_UID + ", " +
-            Columns.CREATED + ", " +
-            Columns.LAST_UPDATED + ", " +
-            Columns.STATUS + ", " +
-            Columns.LATITUDE + ", " +
-            Columns.LONGITUDE + ", " +
-            Columns.PROGRAM + ", " +
-            Columns.PROGRAM_STAGE + ", " +
-            Columns.ORGANISATION_UNIT + ", " +
-            Columns.EVENT_DATE + ", " +
-            Columns.COMPLETE_DATE + ", " +
-            Columns.DUE_DATE + ", " +
-            Columns.STATE + ") " +
-            "VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);";
-
-    private final SQLiteStatement sqLiteStatement;
+    private static final String INSERT_STATEMENT = insertStatement(EventModel.TABLE, EventModel.boundColumns());
+
+    private static final String QUERY_UIDS_WITH_LOCAL_CHANGES_STATEMENT = "SELECT " + Columns.UID +
+            " FROM " + EventModel.TABLE + " WHERE " + Columns.STATE + " != ? AND " + Columns.UID + " IN (";
+
+    private static final String QUERY_EVENTS_TO_UPLOAD_STATEMENT = "SELECT * FROM " + EventModel.TABLE +
+            " WHERE " + Columns.STATE + " IN (?, ?) AND " + Columns.ID + " > ?" +
+            " ORDER BY " + Columns.ID + " LIMIT ?";
+
+    private static final String UPDATE_STATE_STATEMENT = "UPDATE " + EventModel.TABLE +
+            " SET " + Columns.STATE + " = ? WHERE " + Columns.UID + " IN (";
+
+    private static final String UPDATE_STATE_IF_UNCHANGED_STATEMENT = "UPDATE " + EventModel.TABLE +
+            " SET " + Columns.STATE + " = ? WHERE " + Columns.UID + " = ? AND " + Columns.STATE + " = ? AND " +
+            Columns.LAST_UPDATED + " IS ?";
+
+    private static final String WITHOUT_VALUES_TO_UPDATE = " AND NOT EXISTS (SELECT 1 FROM " +
+            TrackedEntityDataValueModel.TABLE + " WHERE " + TrackedEntityDataValueModel.Columns.EVENT + " = " +
+            EventModel.TABLE + "." + Columns.UID + " AND " + TrackedEntityDataValueModel.Columns.STATE + " = '" +
+            State.TO_UPDATE.name() + "')";
+
     private final DatabaseAdapter databaseAdapter;
+    private final BatchInsert<EventModel> batchInsert;
 
     public EventStoreImpl(DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
-        this.sqLiteStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
+        this.batchInsert = new BatchInsert<>(databaseAdapter, EventModel.TABLE, INSERT_STATEMENT);
     }
 
     @Override
@@ -76,33 +91,152 @@ public class EventStoreImpl implements EventStore {
                        @NonNull String programStage, @NonNull String organisationUnit,
                        @Nullable Date eventDate, @Nullable Date completedDate,
                        @Nullable Date dueDate, @Nullable State state) {
+        SQLiteStatement sqLiteStatement = databaseAdapter.cachedStatement(INSERT_STATEMENT);
         nonNull(uid);
         nonNull(program);
         nonNull(programStage);
         nonNull(organisationUnit);
 
-        sqLiteBind(sqLiteStatement, 1, uid);
-        sqLiteBind(sqLiteStatement, 2, enrollmentUid);
-        sqLiteBind(sqLiteStatement, 3, created);
-        sqLiteBind(sqLiteStatement, 4, lastUpdated);
-        sqLiteBind(sqLiteStatement, 5, status);
-        sqLiteBind(sqLiteStatement, 6, latitude);
-        sqLiteBind(sqLiteStatement, 7, longitude);
-        sqLiteBind(sqLiteStatement, 8, program);
-        sqLiteBind(sqLiteStatement, 9, programStage);
-        sqLiteBind(sqLiteStatement, 10, organisationUnit);
-        sqLiteBind(sqLiteStatement, 11, eventDate);
-        sqLiteBind(sqLiteStatement, 12, completedDate);
-        sqLiteBind(sqLiteStatement, 13, dueDate);
-        sqLiteBind(sqLiteStatement, 14, state);
+        EventModel.builder()
+                .uid(uid)
+                .enrollmentUid(enrollmentUid)
+                .created(created)
+                .lastUpdated(lastUpdated)
+                .status(status)
+                .latitude(latitude)
+                .longitude(longitude)
+                .program(program)
+                .programStage(programStage)
+                .organisationUnit(organisationUnit)
+                .eventDate(eventDate)
+                .completedDate(completedDate)
+                .dueDate(dueDate)
+                .state(state)
+                .build()
+                .bindTo(sqLiteStatement, 1);
 
         long ret = databaseAdapter.executeInsert(EventModel.TABLE, sqLiteStatement);
         sqLiteStatement.clearBindings();
         return ret;
     }
 
+    @Override
+    public int insertAll(@NonNull List<EventModel> events) {
+        int size = events.size();
+        for (int i = 0; i < size; i++) {
+            EventModel event = events.get(i);
+            nonNull(event.uid());
+            nonNull(event.program());
+            nonNull(event.programStage());
+            nonNull(event.organisationUnit());
+        }
+        return batchInsert.insertAll(events);
+    }
+
+    @NonNull
+    @Override
+    public Set<String> queryUidsWithLocalChanges(@NonNull Collection<String> uids) {
+        Set<String> uidsWithLocalChanges = new HashSet<>();
+        List<String> uidList = new ArrayList<>(uids);
+        int chunkSize = BatchInsert.MAX_BIND_ARGUMENTS - 1;
+        for (int offset = 0; offset < uidList.size(); offset += chunkSize) {
+            List<String> chunk = uidList.subList(offset, Math.min(uidList.size(), offset + chunkSize));
+            String[] arguments = new String[chunk.size() + 1];
+            arguments[0] = State.SYNCED.name();
+            for (int i = 0; i < chunk.size(); i++) {
+                arguments[i + 1] = chunk.get(i);
+            }
+
+            Cursor cursor = databaseAdapter.query(QUERY_UIDS_WITH_LOCAL_CHANGES_STATEMENT +
+                    placeholders(chunk.size()) + ")", arguments);
+            if (cursor != null) {
+                try {
+                    while (cursor.moveToNext()) {
+                        uidsWithLocalChanges.add(cursor.getString(0));
+                    }
+                } finally {
+                    cursor.close();
+                }
+            }
+        }
+        return uidsWithLocalChanges;
+    }
+
+    @Override
+    public int delete(@NonNull Collection<String> uids) {
+        int deleted = 0;
+        List<String> uidList = new ArrayList<>(uids);
+        for (int offset = 0; offset < uidList.size(); offset += BatchInsert.MAX_BIND_ARGUMENTS) {
+            List<String> chunk = uidList.subList(offset,
+                    Math.min(uidList.size(), offset + BatchInsert.MAX_BIND_ARGUMENTS));
+            deleted += databaseAdapter.delete(EventModel.TABLE, Columns.UID + " IN (" +
+                    placeholders(chunk.size()) + ")", chunk.toArray(new String[chunk.size()]));
+        }
+        return deleted;
+    }
+
+    @NonNull
+    @Override
+    public List<EventModel> queryEventsToUpload(long afterId, int limit) {
+        List<EventModel> events = new ArrayList<>();
+        Cursor cursor = databaseAdapter.query(QUERY_EVENTS_TO_UPLOAD_STATEMENT, State.TO_POST.name(),
+                State.TO_UPDATE.name(), String.valueOf(afterId), String.valueOf(limit));
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    events.add(EventModel.create(cursor));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return events;
+    }
+
+    @Override
+    public int setState(@NonNull Collection<String> uids, @NonNull State state) {
+        int updated = 0;
+        List<String> uidList = new ArrayList<>(uids);
+        int chunkSize = BatchInsert.MAX_BIND_ARGUMENTS - 1;
+        for (int offset = 0; offset < uidList.size(); offset += chunkSize) {
+            List<String> chunk = uidList.subList(offset, Math.min(uidList.size(), offset + chunkSize));
+            // the statement varies with the size of the chunk, so it is not kept in the statement cache
+            SQLiteStatement sqLiteStatement = databaseAdapter.compileStatement(UPDATE_STATE_STATEMENT +
+                    placeholders(chunk.size()) + ");");
+            try {
+                sqLiteBind(sqLiteStatement, 1, state);
+                for (int i = 0; i < chunk.size(); i++) {
+                    sqLiteBind(sqLiteStatement, i + 2, chunk.get(i));
+                }
+                updated += databaseAdapter.executeUpdateDelete(EventModel.TABLE, sqLiteStatement);
+            } finally {
+                sqLiteStatement.close();
+            }
+        }
+        return updated;
+    }
+
+    @Override
+    public int setStateIfUnchanged(@NonNull Collection<EventModel> events, @NonNull State state) {
+        int updated = 0;
+        // a value changed while its event was uploaded is left to update, and so is the event
+        SQLiteStatement sqLiteStatement = databaseAdapter.cachedStatement(state == State.SYNCED
+                ? UPDATE_STATE_IF_UNCHANGED_STATEMENT + WITHOUT_VALUES_TO_UPDATE + ";"
+                : UPDATE_STATE_IF_UNCHANGED_STATEMENT + ";");
+        for (EventModel event : events) {
+            nonNull(event.uid());
+            sqLiteBind(sqLiteStatement, 1, state);
+            sqLiteBind(sqLiteStatement, 2, event.uid());
+            sqLiteBind(sqLiteStatement, 3, event.state());
+            sqLiteBind(sqLiteStatement, 4, event.lastUpdated());
+            updated += databaseAdapter.executeUpdateDelete(EventModel.TABLE, sqLiteStatement);
+            sqLiteStatement.clearBindings();
+        }
+        return updated;
+    }
+
     @Override
     public void close() {
-        sqLiteStatement.close();
+        // the statements are borrowed from the statement cache of the database adapter
     }
 }
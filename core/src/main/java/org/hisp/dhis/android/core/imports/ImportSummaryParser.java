@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.imports;
+
+import android.support.annotation.NonNull;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.hisp.dhis.android.core.common.PayloadParser;
+
+import java.io.IOException;
+
+import okio.BufferedSource;
+
+/**
+ * Reads the import summaries of an upload response one at a time, instead of materializing the summaries of
+ * the whole upload.
+ * <p>
+ * Depending on the version of the server, the summaries are at the top level of the response or wrapped in
+ * a {@code response} object, so the {@code importSummaries} array is looked up at any depth.
+ * </p>
+ */
+public final class ImportSummaryParser {
+    private static final String IMPORT_SUMMARIES = "importSummaries";
+
+    private final ObjectMapper objectMapper;
+
+    public ImportSummaryParser(@NonNull ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Parses the response and closes the source.
+     */
+    public void parse(@NonNull BufferedSource source,
+                      @NonNull PayloadParser.ItemHandler<ImportSummary> summaryHandler) throws IOException {
+        JsonParser parser = objectMapper.getFactory().createParser(source.inputStream());
+        try {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Import summary is not a json object");
+            }
+
+            JsonToken token = parser.nextToken();
+            while (token != null) {
+                if (token == JsonToken.FIELD_NAME && IMPORT_SUMMARIES.equals(parser.getCurrentName())
+                        && parser.nextToken() == JsonToken.START_ARRAY) {
+                    parseSummaries(parser, summaryHandler);
+                }
+                token = parser.nextToken();
+            }
+        } finally {
+            parser.close();
+        }
+    }
+
+    private void parseSummaries(JsonParser parser,
+                                PayloadParser.ItemHandler<ImportSummary> summaryHandler) throws IOException {
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            ImportSummary summary = objectMapper.readValue(parser, ImportSummary.class);
+            if (summary != null) {
+                summaryHandler.handle(summary);
+            }
+        }
+    }
+}
@@ -27,7 +27,10 @@
  */
 package org.hisp.dhis.android.core.option;
 
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 import static org.hisp.dhis.android.core.utils.Utils.isDeleted;
 
@@ -46,23 +49,50 @@ public class OptionHandler {
         deleteOrPersistOptions(options);
     }
 
+    /**
+     * Like {@link #handleOptions(List)}, but skips the options which have not changed since they were stored.
+     */
+    public void handleChangedOptions(String optionSetUid, List<Option> options) {
+        if (options == null) {
+            return;
+        }
+
+        deleteOrPersistOptions(options, optionStore.queryLastUpdated(optionSetUid));
+    }
+
     private void deleteOrPersistOptions(List<Option> options) {
+        deleteOrPersistOptions(options, null);
+    }
+
+    private void deleteOrPersistOptions(List<Option> options, Map<String, Date> storedLastUpdated) {
         int size = options.size();
+        List<OptionModel> persistedOptions = new ArrayList<>(size);
 
         for (int i = 0; i < size; i++) {
             Option option = options.get(i);
 
+            if (storedLastUpdated != null && !isDeleted(option) && option.lastUpdated() != null
+                    && option.lastUpdated().equals(storedLastUpdated.get(option.uid()))) {
+                continue;
+            }
+
             if (isDeleted(option)) {
                 optionStore.delete(option.uid());
             } else {
-                int updatedRow = optionStore.update(option.uid(), option.code(), option.name(), option.displayName(),
-                        option.created(), option.lastUpdated(), option.optionSet().uid(), option.uid());
-
-                if (updatedRow <= 0) {
-                    optionStore.insert(option.uid(), option.code(), option.name(), option.displayName(),
-                            option.created(), option.lastUpdated(), option.optionSet().uid());
-                }
+                persistedOptions.add(OptionModel.builder()
+                        .uid(option.uid())
+                        .code(option.code())
+                        .name(option.name())
+                        .displayName(option.displayName())
+                        .created(option.created())
+                        .lastUpdated(option.lastUpdated())
+                        .optionSet(option.optionSet().uid())
+                        .build());
             }
         }
+
+        if (!persistedOptions.isEmpty()) {
+            optionStore.upsertAll(persistedOptions);
+        }
     }
 }
@@ -30,6 +30,7 @@ package org.hisp.dhis.android.core.option;
 
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
@@ -37,9 +38,10 @@ import com.gabrielittner.auto.value.cursor.ColumnName;
 import com.google.auto.value.AutoValue;
 
 import org.hisp.dhis.android.core.common.BaseIdentifiableObjectModel;
+import org.hisp.dhis.android.core.data.database.StatementBinder;
 
 @AutoValue
-public abstract class OptionModel extends BaseIdentifiableObjectModel {
+public abstract class OptionModel extends BaseIdentifiableObjectModel implements StatementBinder {
     public static final String TABLE = "Option";
 
     public static class Columns extends BaseIdentifiableObjectModel.Columns {
@@ -50,6 +52,14 @@ public abstract class OptionModel extends BaseIdentifiableObjectModel {
         return AutoValue_OptionModel.createFromCursor(cursor);
     }
 
+    /**
+     * @return the columns bound by {@link #bindTo(SQLiteStatement, int)}, in the order of their bind arguments
+     */
+    @NonNull
+    public static String[] boundColumns() {
+        return AutoValue_OptionModel.COLUMNS.clone();
+    }
+
     public static Builder builder() {
         return new $$AutoValue_OptionModel.Builder();
     }
@@ -28,8 +28,15 @@
 
 package org.hisp.dhis.android.core.option;
 
-import org.hisp.dhis.android.core.common.Call;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.hisp.dhis.android.core.common.PagedSync;
+import org.hisp.dhis.android.core.common.Pager;
 import org.hisp.dhis.android.core.common.Payload;
+import org.hisp.dhis.android.core.common.SyncCall;
+import org.hisp.dhis.android.core.common.UidChunks;
+import org.hisp.dhis.android.core.data.api.ConditionalCacheInterceptor;
 import org.hisp.dhis.android.core.data.api.Fields;
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
 import org.hisp.dhis.android.core.data.database.Transaction;
@@ -38,13 +45,24 @@ import org.hisp.dhis.android.core.resource.ResourceModel;
 import org.hisp.dhis.android.core.resource.ResourceStore;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import retrofit2.Response;
 
-public class OptionSetCall implements Call<Response<Payload<OptionSet>>> {
+/**
+ * Downloads and persists the option sets with the given uids.
+ * <p>
+ * When the versions of the option sets are known, only the option sets whose version differs from the stored one
+ * are downloaded, and only the options which changed since they were stored are written.
+ * </p>
+ */
+public class OptionSetCall implements SyncCall<Payload<OptionSet>> {
     // retrofit service
     private final OptionSetService optionSetService;
 
@@ -55,6 +73,11 @@ public class OptionSetCall implements Call<Response<Payload<OptionSet>>> {
     private final ResourceStore resourceStore;
     private final Date serverDate;
     private final Set<String> uids;
+    @Nullable
+    private final Map<String, Integer> versions;
+    private final int pageSize;
+    private Set<String> changedUids;
+    private PagedSync<OptionSet> pagedSync;
     private boolean isExecuted;
 
     public OptionSetCall(OptionSetService optionSetService,
@@ -63,6 +86,23 @@ public class OptionSetCall implements Call<Response<Payload<OptionSet>>> {
                          ResourceStore resourceStore,
                          Set<String> uids,
                          Date serverDate, OptionStore optionStore) {
+        this(optionSetService, optionSetStore, databaseAdapter, resourceStore, uids, serverDate, optionStore,
+                0, null);
+    }
+
+    /**
+     * @param pageSize number of option sets per page, or 0 to download all of them at once. Pages are
+     *                 persisted one by one, see {@link PagedSync}.
+     * @param versions the current versions of the option sets keyed by uid, as referenced by the programs,
+     *                 or null to download all of them
+     */
+    public OptionSetCall(OptionSetService optionSetService,
+                         OptionSetStore optionSetStore,
+                         DatabaseAdapter databaseAdapter,
+                         ResourceStore resourceStore,
+                         Set<String> uids,
+                         Date serverDate, OptionStore optionStore,
+                         int pageSize, @Nullable Map<String, Integer> versions) {
         this.optionSetService = optionSetService;
         this.optionSetStore = optionSetStore;
         this.databaseAdapter = databaseAdapter;
@@ -70,6 +110,8 @@ public class OptionSetCall implements Call<Response<Payload<OptionSet>>> {
         this.uids = uids;
         this.serverDate = new Date(serverDate.getTime());
         this.optionStore = optionStore;
+        this.pageSize = pageSize;
+        this.versions = versions;
     }
 
 
@@ -90,21 +132,125 @@ public class OptionSetCall implements Call<Response<Payload<OptionSet>>> {
             isExecuted = true;
         }
 
-        if (uids.size() > MAX_UIDS) {
-            throw new IllegalArgumentException(
-                    "Can't handle the amount of option sets: " + uids.size() + ". " + "Max size is: " + MAX_UIDS);
+        // every page is written as soon as it is downloaded, since this is the thread which writes
+        Response<Payload<OptionSet>> response = download(false);
 
+        if (response != null && response.isSuccessful()) {
+            persist(response);
         }
-        Response<Payload<OptionSet>> response = getOptionSets(uids);
+        return response;
+    }
 
-        if (response != null && response.isSuccessful()) {
+    @NonNull
+    @Override
+    public Response<Payload<OptionSet>> download() throws IOException {
+        return download(true);
+    }
+
+    /**
+     * @param ahead whether the pages are only written by {@link #persist(Response)}, as the download step runs on
+     *              a worker thread
+     */
+    private Response<Payload<OptionSet>> download(boolean ahead) throws IOException {
+        changedUids = changedOptionSets();
+        if (changedUids != null && changedUids.isEmpty()) {
+            return Response.success(Payload.create(null, Collections.<OptionSet>emptyList()));
+        }
+        if (pageSize > 0) {
+            pagedSync = new PagedSync<>(databaseAdapter, resourceStore,
+                    ResourceModel.Type.OPTION_SET, changedUids, pageSize, serverDate);
+            return ahead ? pagedSync.downloadPages(pages()) : pagedSync.download(pages());
+        }
+        return getOptionSets(changedUids);
+    }
+
+    @Override
+    public void persist(@NonNull Response<Payload<OptionSet>> response) throws IOException {
+        if (pagedSync == null) {
             saveOptionSets(response);
+            return;
+        }
+
+        Transaction transaction = databaseAdapter.beginNewTransaction();
+        try {
+            pagedSync.persistPages();
+            pagedSync.complete();
+            transaction.setSuccessful();
+        } finally {
+            transaction.end();
         }
-        return response;
+    }
+
+    /**
+     * @return the uids of the option sets whose stored version differs from the current one. All of them
+     * are considered changed if their versions are not known or the option sets have never been synced.
+     */
+    private Set<String> changedOptionSets() {
+        if (uids == null || versions == null
+                || new ResourceHandler(resourceStore).getLastUpdated(ResourceModel.Type.OPTION_SET) == null) {
+            return uids;
+        }
+
+        Map<String, Integer> storedVersions = optionSetStore.queryVersions();
+        Set<String> changed = new HashSet<>();
+        for (String uid : uids) {
+            Integer version = versions.get(uid);
+            if (version == null || !version.equals(storedVersions.get(uid))) {
+                changed.add(uid);
+            }
+        }
+        return changed;
     }
 
     private Response<Payload<OptionSet>> getOptionSets(Set<String> uids) throws IOException {
-        Fields<OptionSet> optionSetFields = Fields.<OptionSet>builder().fields(
+        return UidChunks.download(uids, new UidChunks.ChunkCall<Payload<OptionSet>>() {
+            @NonNull
+            @Override
+            public Response<Payload<OptionSet>> download(@NonNull Set<String> chunk) throws IOException {
+                return optionSetService.optionSets(false, fields(), OptionSet.uid.in(chunk)).execute();
+            }
+        });
+    }
+
+    private List<PagedSync.PageCall<Payload<OptionSet>>> pages() {
+        List<PagedSync.PageCall<Payload<OptionSet>>> pages = new ArrayList<>();
+        for (Set<String> chunk : UidChunks.split(changedUids, UidChunks.MAX_FILTER_LENGTH)) {
+            pages.add(pages(chunk));
+        }
+        return pages;
+    }
+
+    private PagedSync.PageCall<Payload<OptionSet>> pages(final Set<String> chunk) {
+        return new PagedSync.PageCall<Payload<OptionSet>>() {
+            @NonNull
+            @Override
+            public Response<Payload<OptionSet>> download(int page, int pageSize) throws IOException {
+                return optionSetService.optionSetsPage(
+                        fields(), OptionSet.uid.in(chunk), page, pageSize).execute();
+            }
+
+            @Override
+            public Pager persist(@NonNull Payload<OptionSet> payload) {
+                List<OptionSet> optionSets = payload.items();
+                if (optionSets != null) {
+                    OptionSetHandler optionSetHandler =
+                            new OptionSetHandler(optionSetStore, new OptionHandler(optionStore));
+                    int size = optionSets.size();
+                    for (int i = 0; i < size; i++) {
+                        optionSetHandler.handleOptionSet(optionSets.get(i));
+                    }
+                }
+                return payload.pager();
+            }
+        };
+    }
+
+    /**
+     * @return the fields requested for option sets
+     */
+    @NonNull
+    public static Fields<OptionSet> fields() {
+        return Fields.<OptionSet>builder().fields(
                 OptionSet.uid, OptionSet.code, OptionSet.name,
                 OptionSet.displayName, OptionSet.created,
                 OptionSet.lastUpdated, OptionSet.version,
@@ -117,11 +263,13 @@ public class OptionSetCall implements Call<Response<Payload<OptionSet>>> {
                         )
                 )
         ).build();
-
-        return optionSetService.optionSets(false, optionSetFields, OptionSet.uid.in(uids)).execute();
     }
 
     private void saveOptionSets(Response<Payload<OptionSet>> response) {
+        if (ConditionalCacheInterceptor.isNotModified(response)) {
+            return;
+        }
+
         List<OptionSet> optionSets = response.body().items();
         if (optionSets != null && !optionSets.isEmpty()) {
             OptionHandler optionHandler = new OptionHandler(optionStore);
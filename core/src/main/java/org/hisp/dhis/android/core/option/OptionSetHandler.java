@@ -46,21 +46,27 @@ public class OptionSetHandler {
         deleteOrPersistOptionSet(optionSet);
     }
 
+    /**
+     * Makes sure that an option set which is referenced by another object exists, without overwriting it.
+     * The option set itself is downloaded separately.
+     */
+    public void handleOptionSetReference(OptionSet optionSet) {
+        if (optionSet == null || isDeleted(optionSet)) {
+            return;
+        }
+
+        optionSetStore.insertIfNotExists(optionSet.uid());
+    }
+
 
     private void deleteOrPersistOptionSet(OptionSet optionSet) {
         if (isDeleted(optionSet)) {
             optionSetStore.delete(optionSet.uid());
         } else {
-            int updatedRow = optionSetStore.update(optionSet.uid(), optionSet.code(), optionSet.name(),
-                    optionSet.displayName(), optionSet.created(), optionSet.lastUpdated(), optionSet.version(),
-                    optionSet.valueType(), optionSet.uid());
-
-            if (updatedRow <= 0) {
-                optionSetStore.insert(optionSet.uid(), optionSet.code(), optionSet.name(), optionSet.displayName(),
-                        optionSet.created(), optionSet.lastUpdated(), optionSet.version(), optionSet.valueType());
-            }
+            optionSetStore.upsert(optionSet.uid(), optionSet.code(), optionSet.name(), optionSet.displayName(),
+                    optionSet.created(), optionSet.lastUpdated(), optionSet.version(), optionSet.valueType());
         }
 
-        optionHandler.handleOptions(optionSet.options());
+        optionHandler.handleChangedOptions(optionSet.uid(), optionSet.options());
     }
 }
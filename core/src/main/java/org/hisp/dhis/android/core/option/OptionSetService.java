@@ -44,4 +44,10 @@ public interface OptionSetService {
     Call<Payload<OptionSet>> optionSets(@Query("paging") boolean paging,
                                         @Query("fields") @Which Fields<OptionSet> fields,
                                         @Query("filter") @Where Filter<OptionSet, String> filter);
+
+    @GET("optionSets")
+    Call<Payload<OptionSet>> optionSetsPage(@Query("fields") @Which Fields<OptionSet> fields,
+                                            @Query("filter") @Where Filter<OptionSet, String> filter,
+                                            @Query("page") int page,
+                                            @Query("pageSize") int pageSize);
 }
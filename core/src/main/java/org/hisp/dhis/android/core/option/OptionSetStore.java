@@ -33,6 +33,8 @@ import android.support.annotation.NonNull;
 import org.hisp.dhis.android.core.common.ValueType;
 
 import java.util.Date;
+import java.util.Map;
+import java.util.Set;
 
 public interface OptionSetStore {
     long insert(
@@ -41,6 +43,15 @@ public interface OptionSetStore {
             @NonNull Integer version, @NonNull ValueType valueType
     );
 
+    /**
+     * Inserts the row, or updates it if a row with the same uid exists already.
+     */
+    void upsert(
+            @NonNull String uid, @NonNull String code, @NonNull String name,
+            @NonNull String displayName, @NonNull Date created, @NonNull Date lastUpdated,
+            @NonNull Integer version, @NonNull ValueType valueType
+    );
+
     int update(
             @NonNull String uid, @NonNull String code, @NonNull String name,
             @NonNull String displayName, @NonNull Date created, @NonNull Date lastUpdated,
@@ -51,4 +62,22 @@ public interface OptionSetStore {
             @NonNull String uid
     );
 
+    /**
+     * Inserts an option set which is only known by its uid, unless it already exists. It is replaced once the
+     * option set is downloaded.
+     */
+    long insertIfNotExists(@NonNull String uid);
+
+    /**
+     * @return the versions of the option sets which have been downloaded, keyed by uid
+     */
+    @NonNull
+    Map<String, Integer> queryVersions();
+
+    /**
+     * @return the uids of all stored option sets, including the ones which have only been inserted by uid
+     */
+    @NonNull
+    Set<String> queryUids();
+
 }
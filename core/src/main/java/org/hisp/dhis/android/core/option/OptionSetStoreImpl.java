@@ -28,14 +28,21 @@
 
 package org.hisp.dhis.android.core.option;
 
+import android.database.Cursor;
 import android.database.sqlite.SQLiteStatement;
 import android.support.annotation.NonNull;
 
 import org.hisp.dhis.android.core.common.ValueType;
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Upsert;
 
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
+import static org.hisp.dhis.android.core.data.database.DbUtils.upsertStatement;
 import static org.hisp.dhis.android.core.utils.StoreUtils.nonNull;
 import static org.hisp.dhis.android.core.utils.StoreUtils.sqLiteBind;
 
@@ -52,6 +59,8 @@ public class OptionSetStoreImpl implements OptionSetStore {
             OptionSetModel.Columns.VALUE_TYPE + ") " +
             "VALUES (?, ?, ?, ?, ?, ?, ?, ?);";
 
+    private static final String UPSERT_STATEMENT = upsertStatement(INSERT_STATEMENT, OptionSetModel.Columns.UID);
+
     private static final String UPDATE_STATEMENT = "UPDATE " + OptionSetModel.TABLE + " SET " +
             OptionSetModel.Columns.UID + " =?, " +
             OptionSetModel.Columns.CODE + "=?, " +
@@ -66,22 +75,31 @@ public class OptionSetStoreImpl implements OptionSetStore {
     private static final String DELETE_STATEMENT = "DELETE FROM " + OptionSetModel.TABLE +
             " WHERE " + OptionSetModel.Columns.UID + " =?;";
 
-    private final SQLiteStatement updateStatement;
-    private final SQLiteStatement deleteStatement;
-    private final SQLiteStatement insertStatement;
+    private static final String INSERT_IF_NOT_EXISTS_STATEMENT = "INSERT OR IGNORE INTO " + OptionSetModel.TABLE +
+            " (" + OptionSetModel.Columns.UID + ") VALUES (?);";
+
+    // option sets which have only been inserted by uid have no lastUpdated date
+    private static final String QUERY_VERSIONS_STATEMENT = "SELECT " +
+            OptionSetModel.Columns.UID + ", " +
+            OptionSetModel.Columns.VERSION + " FROM " + OptionSetModel.TABLE +
+            " WHERE " + OptionSetModel.Columns.LAST_UPDATED + " IS NOT NULL";
+
+    private static final String QUERY_UIDS_STATEMENT = "SELECT " + OptionSetModel.Columns.UID +
+            " FROM " + OptionSetModel.TABLE;
+
+    private final Upsert upsert;
     private final DatabaseAdapter databaseAdapter;
 
     public OptionSetStoreImpl(DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
-        this.updateStatement = databaseAdapter.compileStatement(UPDATE_STATEMENT);
-        this.insertStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
-        this.deleteStatement = databaseAdapter.compileStatement(DELETE_STATEMENT);
+        this.upsert = new Upsert(databaseAdapter, OptionSetModel.TABLE, INSERT_STATEMENT, UPSERT_STATEMENT);
     }
 
     @Override
     public long insert(@NonNull String uid, @NonNull String code, @NonNull String name, @NonNull String displayName,
                        @NonNull Date created, @NonNull Date lastUpdated, @NonNull Integer version,
                        @NonNull ValueType valueType) {
+        SQLiteStatement insertStatement = databaseAdapter.cachedStatement(INSERT_STATEMENT);
         nonNull(uid);
         bindArguments(insertStatement, uid, code, name, displayName, created, lastUpdated, version, valueType);
 
@@ -93,11 +111,32 @@ public class OptionSetStoreImpl implements OptionSetStore {
 
     }
 
+    @Override
+    public void upsert(@NonNull String uid, @NonNull String code, @NonNull String name, @NonNull String displayName,
+                       @NonNull Date created, @NonNull Date lastUpdated, @NonNull Integer version,
+                       @NonNull ValueType valueType) {
+        SQLiteStatement statement = upsert.statement();
+        if (statement != null) {
+            nonNull(uid);
+            bindArguments(statement, uid, code, name, displayName, created, lastUpdated, version, valueType);
+
+            if (upsert.execute()) {
+                return;
+            }
+        }
+
+        if (update(uid, code, name, displayName, created, lastUpdated, version, valueType, uid) <= 0) {
+            insert(uid, code, name, displayName, created, lastUpdated, version, valueType);
+            upsert.inserted();
+        }
+    }
+
     @Override
     public int update(@NonNull String uid, @NonNull String code, @NonNull String name,
                       @NonNull String displayName, @NonNull Date created,
                       @NonNull Date lastUpdated, @NonNull Integer version, @NonNull ValueType valueType,
                       @NonNull String whereUid) {
+        SQLiteStatement updateStatement = databaseAdapter.cachedStatement(UPDATE_STATEMENT);
         nonNull(uid);
         nonNull(whereUid);
         bindArguments(updateStatement, uid, code, name, displayName, created, lastUpdated, version, valueType);
@@ -113,6 +152,7 @@ public class OptionSetStoreImpl implements OptionSetStore {
 
     @Override
     public int delete(@NonNull String uid) {
+        SQLiteStatement deleteStatement = databaseAdapter.cachedStatement(DELETE_STATEMENT);
         nonNull(uid);
         // bind the where clause
         sqLiteBind(deleteStatement, 1, uid);
@@ -124,6 +164,53 @@ public class OptionSetStoreImpl implements OptionSetStore {
         return delete;
     }
 
+    @Override
+    public long insertIfNotExists(@NonNull String uid) {
+        SQLiteStatement insertIfNotExistsStatement = databaseAdapter.cachedStatement(INSERT_IF_NOT_EXISTS_STATEMENT);
+        nonNull(uid);
+        sqLiteBind(insertIfNotExistsStatement, 1, uid);
+
+        long insert = databaseAdapter.executeInsert(OptionSetModel.TABLE, insertIfNotExistsStatement);
+        insertIfNotExistsStatement.clearBindings();
+
+        return insert;
+    }
+
+    @NonNull
+    @Override
+    @SuppressWarnings("PMD.UseConcurrentHashMap")
+    public Map<String, Integer> queryVersions() {
+        Map<String, Integer> versions = new HashMap<>();
+        Cursor cursor = databaseAdapter.query(QUERY_VERSIONS_STATEMENT);
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    versions.put(cursor.getString(0), cursor.isNull(1) ? null : cursor.getInt(1));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return versions;
+    }
+
+    @NonNull
+    @Override
+    public Set<String> queryUids() {
+        Set<String> uids = new HashSet<>();
+        Cursor cursor = databaseAdapter.query(QUERY_UIDS_STATEMENT);
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    uids.add(cursor.getString(0));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return uids;
+    }
+
     private void bindArguments(SQLiteStatement sqLiteStatement, @NonNull String uid, @NonNull String code,
                                @NonNull String name, @NonNull String displayName, @NonNull Date created,
                                @NonNull Date lastUpdated, @NonNull Integer version, @NonNull ValueType valueType) {
@@ -31,6 +31,8 @@ package org.hisp.dhis.android.core.option;
 import android.support.annotation.NonNull;
 
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 
 public interface OptionStore {
     long insert(
@@ -39,6 +41,21 @@ public interface OptionStore {
             @NonNull String optionSet
     );
 
+    /**
+     * Inserts the row, or updates it if a row with the same uid exists already.
+     */
+    void upsert(
+            @NonNull String uid, @NonNull String code, @NonNull String name,
+            @NonNull String displayName, @NonNull Date created, @NonNull Date lastUpdated,
+            @NonNull String optionSet
+    );
+
+    /**
+     * Like {@link #upsert(String, String, String, String, Date, Date, String)}, but upserts all the options at
+     * once with multi-row statements where SQLite supports it.
+     */
+    void upsertAll(@NonNull List<OptionModel> options);
+
     int update(
             @NonNull String uid, @NonNull String code, @NonNull String name,
             @NonNull String displayName, @NonNull Date created, @NonNull Date lastUpdated,
@@ -46,4 +63,10 @@ public interface OptionStore {
     );
 
     int delete(@NonNull String uid);
+
+    /**
+     * @return the lastUpdated dates of the options of the option set, keyed by uid
+     */
+    @NonNull
+    Map<String, Date> queryLastUpdated(@NonNull String optionSet);
 }
@@ -28,53 +28,56 @@
 
 package org.hisp.dhis.android.core.option;
 
+import android.database.Cursor;
 import android.database.sqlite.SQLiteStatement;
 import android.support.annotation.NonNull;
 
+import org.hisp.dhis.android.core.data.database.BatchInsert;
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.DbDateColumnAdapter;
+import org.hisp.dhis.android.core.data.database.Upsert;
 
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+import static org.hisp.dhis.android.core.data.database.DbUtils.insertStatement;
+import static org.hisp.dhis.android.core.data.database.DbUtils.updateStatement;
+import static org.hisp.dhis.android.core.data.database.DbUtils.upsertStatement;
 import static org.hisp.dhis.android.core.utils.StoreUtils.nonNull;
 import static org.hisp.dhis.android.core.utils.StoreUtils.sqLiteBind;
 
 @SuppressWarnings("PMD.AvoidDuplicateLiterals")
 public class OptionStoreImpl implements OptionStore {
 
-    private static final String INSERT_STATEMENT = "INSERT INTO " + OptionModel.TABLE + " (" +
-            OptionModel.Columns.UID + ", " +
-            OptionModel.Columns.CODE + ", " +
-            OptionModel.Columns.NAME + ", " +
-            OptionModel.Columns.DISPLAY_NAME + ", " +
-            OptionModel.Columns.CREATED + ", " +
-            OptionModel.Columns.LAST_UPDATED + ", " +
-            OptionModel.Columns.OPTION_SET + ")" +
-            "VALUES (?, ?, ?, ?, ?, ?, ?);";
-
-    private static final String UPDATE_STATEMENT = "UPDATE " + OptionModel.TABLE + " SET " +
-            OptionModel.Columns.UID + " =?, " +
-            OptionModel.Columns.CODE + " =?, " +
-            OptionModel.Columns.NAME + " =?, " +
-            OptionModel.Columns.DISPLAY_NAME + " =?, " +
-            OptionModel.Columns.CREATED + " =?, " +
-            OptionModel.Columns.LAST_UPDATED + " =?, " +
-            OptionModel.Columns.OPTION_SET + " =? " +
-            " WHERE " + OptionModel.Columns.UID + " =?;";
+    private static final String INSERT_STATEMENT = insertStatement(OptionModel.TABLE, OptionModel.boundColumns());
+
+    private static final String UPSERT_STATEMENT = upsertStatement(INSERT_STATEMENT, OptionModel.Columns.UID);
+
+    private static final String UPDATE_STATEMENT = updateStatement(
+            OptionModel.TABLE, OptionModel.boundColumns(), OptionModel.Columns.UID);
+
+    private static final int WHERE_UID_INDEX = OptionModel.boundColumns().length + 1;
 
     private static final String DELETE_STATEMENT = "DELETE FROM " + OptionModel.TABLE +
             " WHERE " + OptionModel.Columns.UID + " =?;";
 
-    private final SQLiteStatement insertStatement;
-    private final SQLiteStatement updateStatement;
-    private final SQLiteStatement deleteStatement;
+    private static final String QUERY_LAST_UPDATED_STATEMENT = "SELECT " +
+            OptionModel.Columns.UID + ", " +
+            OptionModel.Columns.LAST_UPDATED + " FROM " + OptionModel.TABLE +
+            " WHERE " + OptionModel.Columns.OPTION_SET + " = ?";
+
+    private final Upsert upsert;
+    private final BatchInsert<OptionModel> batchUpsert;
 
     private final DatabaseAdapter databaseAdapter;
 
     public OptionStoreImpl(DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
-        this.insertStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
-        this.updateStatement = databaseAdapter.compileStatement(UPDATE_STATEMENT);
-        this.deleteStatement = databaseAdapter.compileStatement(DELETE_STATEMENT);
+        this.upsert = new Upsert(databaseAdapter, OptionModel.TABLE, INSERT_STATEMENT, UPSERT_STATEMENT);
+        this.batchUpsert = databaseAdapter.isUpsertSupported() ?
+                new BatchInsert<OptionModel>(databaseAdapter, OptionModel.TABLE, UPSERT_STATEMENT) : null;
     }
 
     @Override
@@ -85,15 +88,36 @@ public class OptionStoreImpl implements OptionStore {
                        @NonNull Date created,
                        @NonNull Date lastUpdated,
                        @NonNull String optionSet) {
-        nonNull(uid);
-        nonNull(optionSet);
-        bindArguments(insertStatement, uid, code, name, displayName, created, lastUpdated, optionSet);
+        return insert(option(uid, code, name, displayName, created, lastUpdated, optionSet));
+    }
 
-        // execute and clear bindings
-        Long insert = databaseAdapter.executeInsert(OptionModel.TABLE, insertStatement);
-        insertStatement.clearBindings();
+    @Override
+    public void upsert(@NonNull String uid,
+                       @NonNull String code,
+                       @NonNull String name,
+                       @NonNull String displayName,
+                       @NonNull Date created,
+                       @NonNull Date lastUpdated,
+                       @NonNull String optionSet) {
+        upsert(option(uid, code, name, displayName, created, lastUpdated, optionSet));
+    }
 
-        return insert;
+    @Override
+    public void upsertAll(@NonNull List<OptionModel> options) {
+        if (batchUpsert == null) {
+            int size = options.size();
+            for (int i = 0; i < size; i++) {
+                upsert(options.get(i));
+            }
+            return;
+        }
+
+        int size = options.size();
+        for (int i = 0; i < size; i++) {
+            nonNull(options.get(i).uid());
+            nonNull(options.get(i).optionSet());
+        }
+        batchUpsert.insertAll(options);
     }
 
     @Override
@@ -105,13 +129,81 @@ public class OptionStoreImpl implements OptionStore {
                       @NonNull Date lastUpdated,
                       @NonNull String optionSet,
                       @NonNull String whereOptionUid) {
+        return update(option(uid, code, name, displayName, created, lastUpdated, optionSet), whereOptionUid);
+    }
+
+    @Override
+    public int delete(@NonNull String uid) {
+        SQLiteStatement deleteStatement = databaseAdapter.cachedStatement(DELETE_STATEMENT);
         nonNull(uid);
+        sqLiteBind(deleteStatement, 1, uid);
+
+        int delete = databaseAdapter.executeUpdateDelete(OptionModel.TABLE, deleteStatement);
+        deleteStatement.clearBindings();
+        return delete;
+    }
+
+    @NonNull
+    @Override
+    @SuppressWarnings("PMD.UseConcurrentHashMap")
+    public Map<String, Date> queryLastUpdated(@NonNull String optionSet) {
         nonNull(optionSet);
+        Map<String, Date> lastUpdated = new HashMap<>();
+        DbDateColumnAdapter dateColumnAdapter = new DbDateColumnAdapter();
+        Cursor cursor = databaseAdapter.query(QUERY_LAST_UPDATED_STATEMENT, optionSet);
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    lastUpdated.put(cursor.getString(0),
+                            dateColumnAdapter.fromCursor(cursor, OptionModel.Columns.LAST_UPDATED));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return lastUpdated;
+    }
+
+    private long insert(@NonNull OptionModel option) {
+        SQLiteStatement insertStatement = databaseAdapter.cachedStatement(INSERT_STATEMENT);
+        nonNull(option.uid());
+        nonNull(option.optionSet());
+        option.bindTo(insertStatement, 1);
+
+        // execute and clear bindings
+        Long insert = databaseAdapter.executeInsert(OptionModel.TABLE, insertStatement);
+        insertStatement.clearBindings();
+
+        return insert;
+    }
+
+    private void upsert(@NonNull OptionModel option) {
+        SQLiteStatement statement = upsert.statement();
+        if (statement != null) {
+            nonNull(option.uid());
+            nonNull(option.optionSet());
+            option.bindTo(statement, 1);
+
+            if (upsert.execute()) {
+                return;
+            }
+        }
+
+        if (update(option, option.uid()) <= 0) {
+            insert(option);
+            upsert.inserted();
+        }
+    }
+
+    private int update(@NonNull OptionModel option, @NonNull String whereOptionUid) {
+        SQLiteStatement updateStatement = databaseAdapter.cachedStatement(UPDATE_STATEMENT);
+        nonNull(option.uid());
+        nonNull(option.optionSet());
         nonNull(whereOptionUid);
-        bindArguments(updateStatement, uid, code, name, displayName, created, lastUpdated, optionSet);
+        option.bindTo(updateStatement, 1);
 
         // bind the where argument
-        sqLiteBind(updateStatement, 8, whereOptionUid);
+        sqLiteBind(updateStatement, WHERE_UID_INDEX, whereOptionUid);
 
         // execute and clear bindings
         int update = databaseAdapter.executeUpdateDelete(OptionModel.TABLE, updateStatement);
@@ -120,30 +212,16 @@ public class OptionStoreImpl implements OptionStore {
         return update;
     }
 
-    @Override
-    public int delete(@NonNull String uid) {
-        nonNull(uid);
-        sqLiteBind(deleteStatement, 1, uid);
-
-        int delete = databaseAdapter.executeUpdateDelete(OptionModel.TABLE, deleteStatement);
-        deleteStatement.clearBindings();
-        return delete;
-    }
-
-    private void bindArguments(@NonNull SQLiteStatement sqliteStatement,
-                               @NonNull String uid,
-                               @NonNull String code,
-                               @NonNull String name,
-                               @NonNull String displayName,
-                               @NonNull Date created,
-                               @NonNull Date lastUpdated,
-                               @NonNull String optionSet) {
-        sqLiteBind(sqliteStatement, 1, uid);
-        sqLiteBind(sqliteStatement, 2, code);
-        sqLiteBind(sqliteStatement, 3, name);
-        sqLiteBind(sqliteStatement, 4, displayName);
-        sqLiteBind(sqliteStatement, 5, created);
-        sqLiteBind(sqliteStatement, 6, lastUpdated);
-        sqLiteBind(sqliteStatement, 7, optionSet);
+    private static OptionModel option(String uid, String code, String name, String displayName,
+                                      Date created, Date lastUpdated, String optionSet) {
+        return OptionModel.builder()
+                .uid(uid)
+                .code(code)
+                .name(name)
+                .displayName(displayName)
+                .created(created)
+                .lastUpdated(lastUpdated)
+                .optionSet(optionSet)
+                .build();
     }
 }
@@ -30,8 +30,10 @@ package org.hisp.dhis.android.core.organisationunit;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
-import org.hisp.dhis.android.core.common.Call;
 import org.hisp.dhis.android.core.common.Payload;
+import org.hisp.dhis.android.core.common.SyncCall;
+import org.hisp.dhis.android.core.common.UidChunks;
+import org.hisp.dhis.android.core.data.api.ConditionalCacheInterceptor;
 import org.hisp.dhis.android.core.data.api.Fields;
 import org.hisp.dhis.android.core.data.api.Filter;
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
@@ -44,14 +46,22 @@ import org.hisp.dhis.android.core.user.User;
 import org.hisp.dhis.android.core.user.UserOrganisationUnitLinkStore;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Set;
 
 import retrofit2.Response;
 
 import static org.hisp.dhis.android.core.organisationunit.OrganisationUnitTree.findRoots;
 
-public class OrganisationUnitCall implements Call<Response<Payload<OrganisationUnit>>> {
+public class OrganisationUnitCall implements SyncCall<Payload<OrganisationUnit>> {
+
+    /**
+     * Maximum number of organisation unit sub-trees which are downloaded at the same time.
+     */
+    public static final int MAX_CONCURRENT_ROOTS = 4;
 
     private final User user;
     private final OrganisationUnitService organisationUnitService;
@@ -95,33 +105,11 @@ public class OrganisationUnitCall implements Call<Response<Payload<OrganisationU
             isExecuted = true;
         }
         Response<Payload<OrganisationUnit>> response = null;
-        ResourceHandler resourceHandler = new ResourceHandler(resourceStore);
-
-        OrganisationUnitHandler organisationUnitHandler = new OrganisationUnitHandler(
-                organisationUnitStore, userOrganisationUnitLinkStore
-        );
-
         Transaction transaction = database.beginNewTransaction();
         try {
-            Set<String> rootOrgUnitUids = findRoots(user.organisationUnits());
-            Filter<OrganisationUnit, String> lastUpdatedFilter = OrganisationUnit.lastUpdated.gt(
-                    resourceHandler.getLastUpdated(ResourceModel.Type.ORGANISATION_UNIT)
-            );
-            // Call OrganisationUnitService for each tree root & try to handleTrackedEntity sub-tree:
-            for (String uid : rootOrgUnitUids) {
-                response = getOrganisationUnit(uid, lastUpdatedFilter);
-                if (response.isSuccessful()) {
-                    organisationUnitHandler.handleOrganisationUnits(
-                            response.body().items(),
-                            OrganisationUnitModel.Scope.SCOPE_DATA_CAPTURE,
-                            user.uid()
-                    );
-                } else {
-                    break; //stop early unsuccessful:
-                }
-            }
-            if (response != null && response.isSuccessful()) {
-                resourceHandler.handleResource(ResourceModel.Type.ORGANISATION_UNIT, serverDate);
+            response = download();
+            if (response.isSuccessful()) {
+                handleOrganisationUnits(response);
                 transaction.setSuccessful();
             }
         } finally {
@@ -130,11 +118,98 @@ public class OrganisationUnitCall implements Call<Response<Payload<OrganisationU
         return response;
     }
 
+    /**
+     * Downloads the sub-tree of every root organisation unit assigned to the user and merges them into a single
+     * payload. Up to {@link #MAX_CONCURRENT_ROOTS} sub-trees are downloaded at the same time, but they are merged
+     * in the order of the roots, so they are persisted exactly as if they had been downloaded one after the other.
+     * The first unsuccessful response is returned as is. The merged response is only
+     * {@link ConditionalCacheInterceptor#isNotModified not modified} if none of the sub-trees has been modified.
+     */
+    @NonNull
+    @Override
+    public Response<Payload<OrganisationUnit>> download() throws IOException {
+        ResourceHandler resourceHandler = new ResourceHandler(resourceStore);
+        Set<String> rootOrgUnitUids = findRoots(user.organisationUnits());
+        final Filter<OrganisationUnit, String> lastUpdatedFilter = OrganisationUnit.lastUpdated.gt(
+                resourceHandler.getLastUpdated(ResourceModel.Type.ORGANISATION_UNIT)
+        );
+
+        // every root is a chunk of its own, as the sub-trees are requested by the uid of their root
+        List<Set<String>> roots = new ArrayList<>(rootOrgUnitUids.size());
+        for (String uid : rootOrgUnitUids) {
+            roots.add(Collections.singleton(uid));
+        }
+
+        Response<List<Payload<OrganisationUnit>>> response = UidChunks.downloadAll(roots,
+                new UidChunks.ChunkCall<Payload<OrganisationUnit>>() {
+                    @NonNull
+                    @Override
+                    public Response<Payload<OrganisationUnit>> download(@NonNull Set<String> root)
+                            throws IOException {
+                        return getOrganisationUnit(root.iterator().next(), lastUpdatedFilter);
+                    }
+                }, MAX_CONCURRENT_ROOTS);
+        if (!response.isSuccessful()) {
+            return UidChunks.failure(response);
+        }
+
+        List<OrganisationUnit> organisationUnits = new ArrayList<>();
+        for (Payload<OrganisationUnit> subTree : response.body()) {
+            if (subTree.items() != null) {
+                organisationUnits.addAll(subTree.items());
+            }
+        }
+
+        Payload<OrganisationUnit> payload = Payload.create(null, organisationUnits);
+        return roots.isEmpty() ? Response.success(payload) : Response.success(payload, response.raw());
+    }
+
+    @Override
+    public void persist(@NonNull Response<Payload<OrganisationUnit>> response) {
+        Transaction transaction = database.beginNewTransaction();
+        try {
+            handleOrganisationUnits(response);
+            transaction.setSuccessful();
+        } finally {
+            transaction.end();
+        }
+    }
+
+    private void handleOrganisationUnits(Response<Payload<OrganisationUnit>> response) {
+        if (ConditionalCacheInterceptor.isNotModified(response)) {
+            return;
+        }
+
+        OrganisationUnitHandler organisationUnitHandler = new OrganisationUnitHandler(
+                organisationUnitStore, userOrganisationUnitLinkStore
+        );
+        List<OrganisationUnit> organisationUnits = response.body().items();
+        organisationUnitHandler.handleOrganisationUnits(
+                organisationUnits,
+                OrganisationUnitModel.Scope.SCOPE_DATA_CAPTURE,
+                user.uid()
+        );
+
+        // without assigned roots nothing has been requested, so the resource must not be marked as synced. An
+        // empty delta keeps the last sync, so that the next requests have the same urls and can be revalidated.
+        if (!findRoots(user.organisationUnits()).isEmpty() && !organisationUnits.isEmpty()) {
+            ResourceHandler resourceHandler = new ResourceHandler(resourceStore);
+            resourceHandler.handleResource(ResourceModel.Type.ORGANISATION_UNIT, serverDate);
+        }
+    }
+
     private Response<Payload<OrganisationUnit>> getOrganisationUnit(
             @NonNull String uid,
             @Nullable Filter<OrganisationUnit, String> lastUpdatedFilter) throws IOException {
+        return organisationUnitService.getOrganisationUnits(uid, fields(), lastUpdatedFilter, true, false).execute();
+    }
 
-        Fields<OrganisationUnit> fields = Fields.<OrganisationUnit>builder().fields(
+    /**
+     * @return the fields requested for organisation units
+     */
+    @NonNull
+    public static Fields<OrganisationUnit> fields() {
+        return Fields.<OrganisationUnit>builder().fields(
                 OrganisationUnit.uid, OrganisationUnit.code, OrganisationUnit.name,
                 OrganisationUnit.displayName, OrganisationUnit.created, OrganisationUnit.lastUpdated,
                 OrganisationUnit.shortName, OrganisationUnit.displayShortName,
@@ -145,6 +220,5 @@ public class OrganisationUnitCall implements Call<Response<Payload<OrganisationU
                 //TODO: find out if programs are relevant: can they be updated on their own ?
                 OrganisationUnit.programs.with(Program.uid)
         ).build();
-        return organisationUnitService.getOrganisationUnits(uid, fields, lastUpdatedFilter, true, false).execute();
     }
 }
\ No newline at end of file
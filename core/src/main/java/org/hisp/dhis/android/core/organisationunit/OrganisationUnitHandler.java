@@ -32,6 +32,7 @@ import android.support.annotation.Nullable;
 
 import org.hisp.dhis.android.core.user.UserOrganisationUnitLinkStore;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.hisp.dhis.android.core.utils.Utils.isDeleted;
@@ -50,6 +51,7 @@ public class OrganisationUnitHandler {
                                         @Nullable OrganisationUnitModel.Scope scope,
                                         @NonNull String userUid) {
         int size = organisationUnits.size();
+        List<String> linkedOrganisationUnitUids = new ArrayList<>(size);
         for (int i = 0; i < size; i++) {
             OrganisationUnit organisationUnit = organisationUnits.get(i);
 
@@ -60,7 +62,8 @@ public class OrganisationUnitHandler {
                 if (organisationUnit.parent() != null) {
                     uid = organisationUnit.parent().uid();
                 }
-                int updatedRow = organisationUnitStore.update(organisationUnit.uid(),
+                organisationUnitStore.upsert(
+                        organisationUnit.uid(),
                         organisationUnit.code(),
                         organisationUnit.name(),
                         organisationUnit.displayName(),
@@ -74,34 +77,16 @@ public class OrganisationUnitHandler {
                         organisationUnit.openingDate(),
                         organisationUnit.closedDate(),
                         uid,
-                        organisationUnit.level(), organisationUnit.uid());
-                if (updatedRow <= 0) {
-                    organisationUnitStore.insert(
-                            organisationUnit.uid(),
-                            organisationUnit.code(),
-                            organisationUnit.name(),
-                            organisationUnit.displayName(),
-                            organisationUnit.created(),
-                            organisationUnit.lastUpdated(),
-                            organisationUnit.shortName(),
-                            organisationUnit.displayShortName(),
-                            organisationUnit.description(),
-                            organisationUnit.displayDescription(),
-                            organisationUnit.path(),
-                            organisationUnit.openingDate(),
-                            organisationUnit.closedDate(),
-                            uid,
-                            organisationUnit.level()
-                    );
-                }
-                if(scope != null) {
-                    int updatedLinkRow = userOrganisationUnitLinkStore.update(userUid, organisationUnit.uid(),
-                            scope.name(), userUid, organisationUnit.uid(), scope.name());
-                    if (updatedLinkRow <= 0) {
-                        userOrganisationUnitLinkStore.insert(userUid, organisationUnit.uid(), scope.name());
-                    }
-                }
+                        organisationUnit.level()
+                );
+                linkedOrganisationUnitUids.add(organisationUnit.uid());
             }
         }
+
+        // the payload only contains the organisation units changed since the last sync, so the other links
+        // of the user are kept. Links of deleted organisation units are deleted with them.
+        if (scope != null && !linkedOrganisationUnitUids.isEmpty()) {
+            userOrganisationUnitLinkStore.addLinks(userUid, scope.name(), linkedOrganisationUnitUids);
+        }
     }
 }
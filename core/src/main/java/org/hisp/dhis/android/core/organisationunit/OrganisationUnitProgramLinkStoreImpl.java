@@ -42,16 +42,15 @@ public class OrganisationUnitProgramLinkStoreImpl implements OrganisationUnitPro
             OrganisationUnitProgramLinkModel.Columns.PROGRAM + ") " +
             "VALUES(?,?);";
 
-    private final SQLiteStatement insertStatement;
     private final DatabaseAdapter databaseAdapter;
 
     public OrganisationUnitProgramLinkStoreImpl(DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
-        this.insertStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
     }
 
     @Override
     public long insert(@NonNull String organisationUnitUid, @NonNull String programUid) {
+        SQLiteStatement insertStatement = databaseAdapter.cachedStatement(INSERT_STATEMENT);
 
         nonNull(organisationUnitUid);
         nonNull(programUid);
@@ -43,6 +43,18 @@ public interface OrganisationUnitStore {
             @Nullable String parent, @Nullable Integer level
     );
 
+    /**
+     * Inserts the row, or updates it if a row with the same uid exists already.
+     */
+    void upsert(
+            @NonNull String uid, @Nullable String code, @Nullable String name,
+            @Nullable String displayName, @Nullable Date created, @Nullable Date lastUpdated,
+            @Nullable String shortName, @Nullable String displayShortName,
+            @Nullable String description, @Nullable String displayDescription,
+            @Nullable String path, @Nullable Date openingDate, @Nullable Date closedDate,
+            @Nullable String parent, @Nullable Integer level
+    );
+
     int update(
             @NonNull String uid, @Nullable String code, @Nullable String name,
             @Nullable String displayName, @Nullable Date created, @Nullable Date lastUpdated,
@@ -33,9 +33,11 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Upsert;
 
 import java.util.Date;
 
+import static org.hisp.dhis.android.core.data.database.DbUtils.upsertStatement;
 import static org.hisp.dhis.android.core.utils.StoreUtils.nonNull;
 import static org.hisp.dhis.android.core.utils.StoreUtils.sqLiteBind;
 
@@ -59,6 +61,8 @@ public class OrganisationUnitStoreImpl implements OrganisationUnitStore {
             OrganisationUnitModel.Columns.PARENT + ") " +
             "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);";
 
+    private static final String UPSERT_STATEMENT = upsertStatement(INSERT_STATEMENT, OrganisationUnitModel.Columns.UID);
+
     private static final String UPDATE_STATEMENT = "UPDATE " + OrganisationUnitModel.TABLE + " SET " +
             OrganisationUnitModel.Columns.UID + " =?, " +
             OrganisationUnitModel.Columns.CODE + "=?, " +
@@ -82,15 +86,11 @@ public class OrganisationUnitStoreImpl implements OrganisationUnitStore {
 
 
     private final DatabaseAdapter databaseAdapter;
-    private final SQLiteStatement insertStatement;
-    private final SQLiteStatement updateStatement;
-    private final SQLiteStatement deleteStatement;
+    private final Upsert upsert;
 
     public OrganisationUnitStoreImpl(DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
-        this.insertStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
-        this.updateStatement = databaseAdapter.compileStatement(UPDATE_STATEMENT);
-        this.deleteStatement = databaseAdapter.compileStatement(DELETE_STATEMENT);
+        this.upsert = new Upsert(databaseAdapter, OrganisationUnitModel.TABLE, INSERT_STATEMENT, UPSERT_STATEMENT);
     }
 
     @Override
@@ -110,6 +110,7 @@ public class OrganisationUnitStoreImpl implements OrganisationUnitStore {
             @Nullable Date closedDate,
             @Nullable String parent,
             @Nullable Integer level) {
+        SQLiteStatement insertStatement = databaseAdapter.cachedStatement(INSERT_STATEMENT);
 
         nonNull(uid);
         bindArguments(insertStatement, uid, code, name, displayName, created,
@@ -122,6 +123,44 @@ public class OrganisationUnitStoreImpl implements OrganisationUnitStore {
         return ret;
     }
 
+    @Override
+    public void upsert(
+            @NonNull String uid,
+            @Nullable String code,
+            @Nullable String name,
+            @Nullable String displayName,
+            @Nullable Date created,
+            @Nullable Date lastUpdated,
+            @Nullable String shortName,
+            @Nullable String displayShortName,
+            @Nullable String description,
+            @Nullable String displayDescription,
+            @Nullable String path,
+            @Nullable Date openingDate,
+            @Nullable Date closedDate,
+            @Nullable String parent,
+            @Nullable Integer level) {
+        SQLiteStatement statement = upsert.statement();
+        if (statement != null) {
+            nonNull(uid);
+            bindArguments(statement, uid, code, name, displayName, created,
+                    lastUpdated, shortName, displayShortName, description, displayDescription,
+                    path, openingDate, closedDate, parent, level
+            );
+
+            if (upsert.execute()) {
+                return;
+            }
+        }
+
+        if (update(uid, code, name, displayName, created, lastUpdated, shortName, displayShortName, description,
+                displayDescription, path, openingDate, closedDate, parent, level, uid) <= 0) {
+            insert(uid, code, name, displayName, created, lastUpdated, shortName, displayShortName, description,
+                    displayDescription, path, openingDate, closedDate, parent, level);
+            upsert.inserted();
+        }
+    }
+
     @Override
     public int update(@NonNull String uid, @Nullable String code, @Nullable String name, @Nullable String displayName,
                       @Nullable Date created, @Nullable Date lastUpdated,
@@ -129,6 +168,7 @@ public class OrganisationUnitStoreImpl implements OrganisationUnitStore {
                       @Nullable String description, @Nullable String displayDescription,
                       @Nullable String path, @Nullable Date openingDate, @Nullable Date closedDate,
                       @Nullable String parent, @Nullable Integer level, @NonNull String whereUid) {
+        SQLiteStatement updateStatement = databaseAdapter.cachedStatement(UPDATE_STATEMENT);
 
         nonNull(uid);
         nonNull(whereUid);
@@ -144,6 +184,7 @@ public class OrganisationUnitStoreImpl implements OrganisationUnitStore {
 
     @Override
     public int delete(@NonNull String uid) {
+        SQLiteStatement deleteStatement = databaseAdapter.cachedStatement(DELETE_STATEMENT);
         nonNull(uid);
         sqLiteBind(deleteStatement, 1, uid);
 
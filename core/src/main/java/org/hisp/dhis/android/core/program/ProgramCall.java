@@ -27,38 +27,73 @@
  */
 package org.hisp.dhis.android.core.program;
 
-import org.hisp.dhis.android.core.common.Call;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.hisp.dhis.android.core.common.PagedSync;
+import org.hisp.dhis.android.core.common.Pager;
 import org.hisp.dhis.android.core.common.Payload;
+import org.hisp.dhis.android.core.common.PayloadParser;
+import org.hisp.dhis.android.core.common.SpoolFiles;
+import org.hisp.dhis.android.core.common.SyncCall;
+import org.hisp.dhis.android.core.common.UidChunks;
+import org.hisp.dhis.android.core.data.api.ConditionalCacheInterceptor;
 import org.hisp.dhis.android.core.data.api.Fields;
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
 import org.hisp.dhis.android.core.data.database.Transaction;
 import org.hisp.dhis.android.core.dataelement.DataElement;
-import org.hisp.dhis.android.core.dataelement.DataElementHandler;
 import org.hisp.dhis.android.core.dataelement.DataElementStore;
-import org.hisp.dhis.android.core.option.OptionHandler;
 import org.hisp.dhis.android.core.option.OptionSet;
-import org.hisp.dhis.android.core.option.OptionSetHandler;
 import org.hisp.dhis.android.core.option.OptionSetStore;
 import org.hisp.dhis.android.core.option.OptionStore;
 import org.hisp.dhis.android.core.relationship.RelationshipType;
-import org.hisp.dhis.android.core.relationship.RelationshipTypeHandler;
 import org.hisp.dhis.android.core.relationship.RelationshipTypeStore;
 import org.hisp.dhis.android.core.resource.ResourceHandler;
 import org.hisp.dhis.android.core.resource.ResourceModel;
 import org.hisp.dhis.android.core.resource.ResourceStore;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntity;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttribute;
-import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttributeHandler;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttributeStore;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityStore;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
 
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.Okio;
 import retrofit2.Response;
 
-@SuppressWarnings({"PMD.TooManyFields", "PMD.ExcessiveMethodLength"})
-public class ProgramCall implements Call<Response<Payload<Program>>> {
+/**
+ * Downloads and persists the programs with the given uids.
+ * <p>
+ * When created with an {@link ObjectMapper} the call works in streaming mode: programs are parsed from the
+ * response body one by one and handed to the {@link ProgramHandler} as soon as they are read, instead of
+ * being materialized as a whole. In this mode the items of the returned payload are always empty. When the
+ * download and persist steps are executed separately, the body is spooled into a temporary file in between.
+ * The download step only reads the programs for the download listener while it spools them, and returns no
+ * pager since the chunks of uids are spooled concurrently.
+ * </p>
+ * <p>
+ * Large sets of uids are split into several requests, see {@link UidChunks}.
+ * </p>
+ * <p>
+ * When created with a positive page size, the programs are downloaded page by page and each page is persisted
+ * in its own transaction, see {@link PagedSync}. When the download and persist steps are executed separately,
+ * the pages are parsed as a whole and held until the persist step writes them.
+ * </p>
+ */
+@SuppressWarnings({"PMD.TooManyFields", "PMD.ExcessiveMethodLength", "PMD.ExcessiveParameterList"})
+public class ProgramCall implements SyncCall<Payload<Program>> {
+    private static final String SPOOL_FILE_PREFIX = "programs";
+
     private final ProgramService programService;
 
     private final DatabaseAdapter databaseAdapter;
@@ -70,6 +105,52 @@ public class ProgramCall implements Call<Response<Payload<Program>>> {
 
     private final ProgramHandler programHandler;
 
+    @Nullable
+    private final ObjectMapper objectMapper;
+
+    @Nullable
+    private final PayloadParser.ItemHandler<Program> downloadListener;
+
+    @Nullable
+    private final PagedSync<Program> pagedSync;
+
+    private List<File> spoolFiles;
+    private int handledPrograms;
+
+    public ProgramCall(ProgramService programService,
+                       DatabaseAdapter databaseAdapter,
+                       ResourceStore resourceStore,
+                       Set<String> uids,
+                       ProgramStore programStore,
+                       Date serverDate,
+                       TrackedEntityAttributeStore trackedEntityAttributeStore,
+                       ProgramTrackedEntityAttributeStore programTrackedEntityAttributeStore,
+                       ProgramRuleVariableStore programRuleVariableStore,
+                       ProgramIndicatorStore programIndicatorStore,
+                       ProgramStageSectionProgramIndicatorLinkStore programStageSectionProgramIndicatorLinkStore,
+                       ProgramRuleActionStore programRuleActionStore,
+                       ProgramRuleStore programRuleStore,
+                       OptionStore optionStore,
+                       OptionSetStore optionSetStore,
+                       DataElementStore dataElementStore,
+                       ProgramStageDataElementStore programStageDataElementStore,
+                       ProgramStageSectionStore programStageSectionStore,
+                       ProgramStageStore programStageStore,
+                       RelationshipTypeStore relationshipStore,
+                       TrackedEntityStore trackedEntityStore) {
+        this(programService, databaseAdapter, resourceStore, uids, programStore, serverDate,
+                trackedEntityAttributeStore, programTrackedEntityAttributeStore, programRuleVariableStore,
+                programIndicatorStore, programStageSectionProgramIndicatorLinkStore, programRuleActionStore,
+                programRuleStore, optionStore, optionSetStore, dataElementStore, programStageDataElementStore,
+                programStageSectionStore, programStageStore, relationshipStore, trackedEntityStore, null, null, 0);
+    }
+
+    /**
+     * @param objectMapper     mapper used to parse the response in streaming mode, or null to parse
+     *                         the whole payload at once
+     * @param downloadListener notified with every program while it is downloaded, before it is persisted
+     * @param pageSize         number of programs per page, or 0 to download all of them at once
+     */
     public ProgramCall(ProgramService programService,
                        DatabaseAdapter databaseAdapter,
                        ResourceStore resourceStore,
@@ -89,40 +170,26 @@ public class ProgramCall implements Call<Response<Payload<Program>>> {
                        ProgramStageDataElementStore programStageDataElementStore,
                        ProgramStageSectionStore programStageSectionStore,
                        ProgramStageStore programStageStore,
-                       RelationshipTypeStore relationshipStore) {
+                       RelationshipTypeStore relationshipStore,
+                       TrackedEntityStore trackedEntityStore,
+                       @Nullable ObjectMapper objectMapper,
+                       @Nullable PayloadParser.ItemHandler<Program> downloadListener,
+                       int pageSize) {
         this.programService = programService;
+        this.objectMapper = objectMapper;
+        this.downloadListener = downloadListener;
         this.databaseAdapter = databaseAdapter;
         this.resourceStore = resourceStore;
         this.uids = uids;
         this.serverDate = new Date(serverDate.getTime());
+        this.pagedSync = pageSize > 0 ? new PagedSync<Program>(databaseAdapter, resourceStore,
+                ResourceModel.Type.PROGRAM, uids, pageSize, serverDate) : null;
 
-        //TODO: make this an argument to the constructor:
-        ProgramStageSectionDataElementLinkStore programStageSectionDataElementLinkStore =
-                new ProgramStageSectionDataElementLinkStoreImpl(databaseAdapter);
-
-        ProgramIndicatorHandler programIndicatorHandler = new ProgramIndicatorHandler(programIndicatorStore,
-                programStageSectionProgramIndicatorLinkStore);
-
-        this.programHandler = new ProgramHandler(programStore,
-                new ProgramRuleVariableHandler(programRuleVariableStore),
-                new ProgramStageHandler(
-                        programStageStore,
-                        new ProgramStageSectionHandler(programStageSectionStore,
-                                programStageSectionDataElementLinkStore,
-                                programIndicatorHandler
-                        ),
-                        new ProgramStageDataElementHandler(programStageDataElementStore,
-                                new DataElementHandler(dataElementStore, new OptionSetHandler(optionSetStore,
-                                        new OptionHandler(optionStore))
-                                )
-                        )
-                ),
-                programIndicatorHandler,
-                new ProgramRuleHandler(programRuleStore, new ProgramRuleActionHandler(programRuleActionStore)),
-                new ProgramTrackedEntityAttributeHandler(programTrackedEntityAttributeStore,
-                        new TrackedEntityAttributeHandler(trackedEntityAttributeStore)
-                ),
-                new RelationshipTypeHandler(relationshipStore));
+        this.programHandler = ProgramHandler.create(databaseAdapter, programStore, trackedEntityAttributeStore,
+                programTrackedEntityAttributeStore, programRuleVariableStore, programIndicatorStore,
+                programStageSectionProgramIndicatorLinkStore, programRuleActionStore, programRuleStore, optionStore,
+                optionSetStore, dataElementStore, programStageDataElementStore, programStageSectionStore,
+                programStageStore, relationshipStore, trackedEntityStore);
     }
 
     @Override
@@ -140,35 +207,316 @@ public class ProgramCall implements Call<Response<Payload<Program>>> {
             }
             isExecuted = true;
         }
-        if (uids.size() > MAX_UIDS) {
-            throw new IllegalArgumentException("Can't handle the amount of programs: " + uids.size() + ". " +
-                    "Max size is: " + MAX_UIDS);
+        if (pagedSync != null) {
+            // every page is written as soon as it is downloaded, since this is the thread which writes
+            Response<Payload<Program>> response = downloadPages(false);
+            if (response.isSuccessful()) {
+                persist(response);
+            }
+            return response;
         }
-        ResourceHandler resourceHandler = new ResourceHandler(resourceStore);
-        String lastSyncedPrograms = resourceHandler.getLastUpdated(ResourceModel.Type.PROGRAM);
-        Response<Payload<Program>> programsByLastUpdated = programService.getPrograms(
-                getFields(), Program.lastUpdated.gt(lastSyncedPrograms),
-                Program.uid.in(uids), Boolean.FALSE
-        ).execute();
-        if (programsByLastUpdated.isSuccessful()) {
-            Transaction transaction = databaseAdapter.beginNewTransaction();
-            try {
-                List<Program> programs = programsByLastUpdated.body().items();
+        if (objectMapper == null) {
+            Response<Payload<Program>> programsByLastUpdated = download();
+            if (programsByLastUpdated.isSuccessful()) {
+                persist(programsByLastUpdated);
+            }
+            return programsByLastUpdated;
+        }
+
+        // the transaction is only opened once there is something to write
+        Transaction transaction = null;
+        try {
+            Response<ResponseBody> response = null;
+            Pager pager = null;
+            for (Set<String> chunk : UidChunks.split(uids, UidChunks.MAX_FILTER_LENGTH)) {
+                response = streamPrograms(chunk);
+                if (!response.isSuccessful()) {
+                    return Response.error(response.errorBody(), response.raw());
+                }
+                if (ConditionalCacheInterceptor.isNotModified(response)) {
+                    response.body().close();
+                    continue;
+                }
+                if (transaction == null) {
+                    transaction = databaseAdapter.beginNewTransaction();
+                }
+                pager = handlePrograms(response.body().source(), true);
+            }
+            if (transaction != null) {
+                handleResource(handledPrograms);
+                transaction.setSuccessful();
+            }
+            return Response.success(Payload.create(pager, Collections.<Program>emptyList()), response.raw());
+        } finally {
+            if (transaction != null) {
+                transaction.end();
+            }
+        }
+    }
+
+    @NonNull
+    @Override
+    public Response<Payload<Program>> download() throws IOException {
+        if (pagedSync != null) {
+            return downloadPages(true);
+        }
+        if (objectMapper == null) {
+            Response<Payload<Program>> response = UidChunks.download(uids,
+                    new UidChunks.ChunkCall<Payload<Program>>() {
+                        @NonNull
+                        @Override
+                        public Response<Payload<Program>> download(@NonNull Set<String> chunk) throws IOException {
+                            return programService.getPrograms(
+                                    getFields(), Program.lastUpdated.gt(lastSyncedPrograms()),
+                                    Program.uid.in(chunk), Boolean.FALSE
+                            ).execute();
+                        }
+                    });
+            if (response.isSuccessful() && downloadListener != null) {
+                List<Program> programs = response.body().items();
+                int size = programs.size();
+                for (int i = 0; i < size; i++) {
+                    downloadListener.handle(programs.get(i));
+                }
+            }
+            return response;
+        }
+
+        // the programs are persisted in a separate step, so keep the bodies on disk rather than in memory
+        Response<List<File>> response = spoolPrograms();
+        if (!response.isSuccessful()) {
+            return Response.error(response.errorBody(), response.raw());
+        }
+
+        spoolFiles = response.body();
+        return Response.success(Payload.create(null, Collections.<Program>emptyList()), response.raw());
+    }
+
+    @Override
+    public void persist(@NonNull Response<Payload<Program>> response) throws IOException {
+        if (pagedSync == null && ConditionalCacheInterceptor.isNotModified(response)) {
+            deleteSpoolFiles();
+            return;
+        }
+
+        Transaction transaction = databaseAdapter.beginNewTransaction();
+        try {
+            if (pagedSync != null) {
+                // the pages downloaded ahead by download(), if any
+                pagedSync.persistPages();
+                pagedSync.complete();
+            } else if (spoolFiles == null) {
+                List<Program> programs = response.body().items();
                 int size = programs.size();
                 for (int i = 0; i < size; i++) {
                     Program program = programs.get(i);
                     programHandler.handleProgram(program);
                 }
-                resourceHandler.handleResource(ResourceModel.Type.PROGRAM, serverDate);
-                transaction.setSuccessful();
-            } finally {
-                transaction.end();
+                handleResource(size);
+            } else {
+                for (File spoolFile : spoolFiles) {
+                    handlePrograms(Okio.buffer(Okio.source(spoolFile)), false);
+                }
+                handleResource(handledPrograms);
             }
+            transaction.setSuccessful();
+        } finally {
+            transaction.end();
+            deleteSpoolFiles();
+        }
+    }
+
+    /**
+     * Marks the programs as synced, unless the delta was empty: the last sync is kept then, so that the next
+     * request has the same url and can be revalidated.
+     */
+    private void handleResource(int programs) {
+        if (programs > 0) {
+            new ResourceHandler(resourceStore).handleResource(ResourceModel.Type.PROGRAM, serverDate);
+        }
+    }
+
+    private String lastSyncedPrograms() {
+        return new ResourceHandler(resourceStore).getLastUpdated(ResourceModel.Type.PROGRAM);
+    }
+
+    private Response<ResponseBody> streamPrograms(Set<String> chunk) throws IOException {
+        return programService.streamPrograms(
+                getFields(), Program.lastUpdated.gt(lastSyncedPrograms()),
+                Program.uid.in(chunk), Boolean.FALSE, null, null
+        ).execute();
+    }
+
+    /**
+     * @param ahead whether the pages are only written by {@link #persist(Response)}, as the download step runs on
+     *              a worker thread. Pages which are held are parsed as a whole rather than streamed.
+     */
+    private Response<Payload<Program>> downloadPages(boolean ahead) throws IOException {
+        List<Set<String>> chunks = UidChunks.split(uids, UidChunks.MAX_FILTER_LENGTH);
+        if (objectMapper == null || ahead) {
+            List<PagedSync.PageCall<Payload<Program>>> pages = new ArrayList<>();
+            for (Set<String> chunk : chunks) {
+                pages.add(pages(chunk));
+            }
+            return ahead ? pagedSync.downloadPages(pages) : pagedSync.download(pages);
+        }
+
+        List<PagedSync.PageCall<ResponseBody>> pages = new ArrayList<>();
+        for (Set<String> chunk : chunks) {
+            pages.add(streamedPages(chunk));
+        }
+        return pagedSync.download(pages);
+    }
+
+    private Response<List<File>> spoolPrograms() throws IOException {
+        final List<File> spooled = Collections.synchronizedList(new ArrayList<File>());
+        Response<List<File>> response;
+        try {
+            response = UidChunks.downloadAll(UidChunks.split(uids, UidChunks.MAX_FILTER_LENGTH),
+                    new UidChunks.ChunkCall<File>() {
+                        @NonNull
+                        @Override
+                        public Response<File> download(@NonNull Set<String> chunk) throws IOException {
+                            Response<ResponseBody> chunkResponse = streamPrograms(chunk);
+                            if (!chunkResponse.isSuccessful()) {
+                                return Response.error(chunkResponse.errorBody(), chunkResponse.raw());
+                            }
+                            File file = downloadListener == null
+                                    ? SpoolFiles.spool(chunkResponse.body(), SPOOL_FILE_PREFIX)
+                                    : SpoolFiles.spool(chunkResponse.body(), SPOOL_FILE_PREFIX, notifyListener());
+                            spooled.add(file);
+                            return Response.success(file, chunkResponse.raw());
+                        }
+                    }, UidChunks.MAX_CONCURRENT_CHUNKS);
+        } catch (IOException | RuntimeException exception) {
+            SpoolFiles.deleteAll(spooled);
+            throw exception;
+        }
+        if (!response.isSuccessful()) {
+            SpoolFiles.deleteAll(spooled);
+        }
+        return response;
+    }
+
+    private PagedSync.PageCall<Payload<Program>> pages(final Set<String> chunk) {
+        return new PagedSync.PageCall<Payload<Program>>() {
+            @NonNull
+            @Override
+            public Response<Payload<Program>> download(int page, int pageSize) throws IOException {
+                Response<Payload<Program>> response = programService.getProgramsPage(
+                        getFields(), Program.lastUpdated.gt(lastSyncedPrograms()),
+                        Program.uid.in(chunk), page, pageSize
+                ).execute();
+                // the pages may be persisted only after the whole download, so the listener is notified here
+                if (response.isSuccessful() && response.body() != null && downloadListener != null) {
+                    List<Program> programs = response.body().items();
+                    int size = programs == null ? 0 : programs.size();
+                    for (int i = 0; i < size; i++) {
+                        downloadListener.handle(programs.get(i));
+                    }
+                }
+                return response;
+            }
+
+            @Override
+            public Pager persist(@NonNull Payload<Program> payload) {
+                List<Program> programs = payload.items();
+                int size = programs == null ? 0 : programs.size();
+                for (int i = 0; i < size; i++) {
+                    programHandler.handleProgram(programs.get(i));
+                }
+                return payload.pager();
+            }
+        };
+    }
+
+    private PagedSync.PageCall<ResponseBody> streamedPages(final Set<String> chunk) {
+        return new PagedSync.PageCall<ResponseBody>() {
+            @NonNull
+            @Override
+            public Response<ResponseBody> download(int page, int pageSize) throws IOException {
+                return programService.streamPrograms(
+                        getFields(), Program.lastUpdated.gt(lastSyncedPrograms()),
+                        Program.uid.in(chunk), Boolean.TRUE, page, pageSize
+                ).execute();
+            }
+
+            @Override
+            public Pager persist(@NonNull ResponseBody body) throws IOException {
+                return new PayloadParser<>(objectMapper, Program.class).parse(body.source(),
+                        new PayloadParser.ItemHandler<Program>() {
+                            @Override
+                            public void handle(@NonNull Program program) {
+                                if (downloadListener != null) {
+                                    downloadListener.handle(program);
+                                }
+                                programHandler.handleProgram(program);
+                            }
+                        });
+            }
+        };
+    }
+
+    /**
+     * @param notify whether the download listener is notified, which is the case unless the programs have been
+     *               read while they were spooled
+     */
+    private Pager handlePrograms(BufferedSource source, final boolean notify) throws IOException {
+        return new PayloadParser<>(objectMapper, Program.class).parse(source,
+                new PayloadParser.ItemHandler<Program>() {
+                    @Override
+                    public void handle(@NonNull Program program) {
+                        if (notify && downloadListener != null) {
+                            downloadListener.handle(program);
+                        }
+                        programHandler.handleProgram(program);
+                        handledPrograms++;
+                    }
+                });
+    }
+
+    /**
+     * @return a reader which notifies the download listener with the programs of a body while it is spooled.
+     * Bodies are spooled concurrently, so the notifications are serialized.
+     */
+    private SpoolFiles.Reader notifyListener() {
+        return new SpoolFiles.Reader() {
+            @Override
+            public void read(@NonNull BufferedSource source) throws IOException {
+                new PayloadParser<>(objectMapper, Program.class).parse(source,
+                        new PayloadParser.ItemHandler<Program>() {
+                            @Override
+                            public void handle(@NonNull Program program) {
+                                synchronized (downloadListener) {
+                                    downloadListener.handle(program);
+                                }
+                            }
+                        });
+            }
+        };
+    }
+
+    private void deleteSpoolFiles() {
+        if (spoolFiles != null) {
+            SpoolFiles.deleteAll(spoolFiles);
+            spoolFiles = null;
         }
-        return programsByLastUpdated;
     }
 
     private Fields<Program> getFields() {
+        return fields(
+                Fields.<OptionSet>builder().fields(OptionSet.uid, OptionSet.version).build(),
+                Fields.<TrackedEntity>builder().fields(TrackedEntity.uid).build()
+        );
+    }
+
+    /**
+     * @return the fields requested for programs, with the given fields for the option sets and the tracked entity
+     * they reference
+     */
+    @NonNull
+    public static Fields<Program> fields(@NonNull Fields<OptionSet> optionSetFields,
+                                         @NonNull Fields<TrackedEntity> trackedEntityFields) {
         return Fields.<Program>builder().fields(
                 Program.uid, Program.code, Program.name, Program.displayName, Program.created,
                 Program.lastUpdated, Program.shortName, Program.displayShortName, Program.description,
@@ -204,7 +552,7 @@ public class ProgramCall implements Call<Response<Payload<Program>>> {
                                         DataElement.deleted, DataElement.dimension, DataElement.displayFormName,
                                         DataElement.domainType, DataElement.formName, DataElement.numberType,
                                         DataElement.valueType, DataElement.zeroIsSignificant,
-                                        DataElement.optionSet.with(OptionSet.uid, OptionSet.version)
+                                        DataElement.optionSet.with(optionSetFields)
                                 )
                         ),
                         ProgramStage.programStageSections.with(
@@ -280,11 +628,11 @@ public class ProgramCall implements Call<Response<Payload<Program>>> {
                                 TrackedEntityAttribute.pattern, TrackedEntityAttribute.sortOrderInListNoProgram,
                                 TrackedEntityAttribute.unique, TrackedEntityAttribute.valueType,
                                 TrackedEntityAttribute.searchScope, TrackedEntityAttribute.optionSet.with(
-                                        OptionSet.uid, OptionSet.version
+                                        optionSetFields
                                 )
                         )
                 ),
-                Program.trackedEntity.with(TrackedEntity.uid),
+                Program.trackedEntity.with(trackedEntityFields),
                 Program.relationshipType.with(
                         RelationshipType.uid, RelationshipType.code, RelationshipType.name,
                         RelationshipType.displayName, RelationshipType.created, RelationshipType.lastUpdated,
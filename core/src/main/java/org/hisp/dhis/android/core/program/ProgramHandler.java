@@ -27,7 +27,20 @@
  */
 package org.hisp.dhis.android.core.program;
 
+import org.hisp.dhis.android.core.common.ChangeDetector;
+import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.dataelement.DataElementHandler;
+import org.hisp.dhis.android.core.dataelement.DataElementStore;
+import org.hisp.dhis.android.core.option.OptionHandler;
+import org.hisp.dhis.android.core.option.OptionSetHandler;
+import org.hisp.dhis.android.core.option.OptionSetStore;
+import org.hisp.dhis.android.core.option.OptionStore;
 import org.hisp.dhis.android.core.relationship.RelationshipTypeHandler;
+import org.hisp.dhis.android.core.relationship.RelationshipTypeStore;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttributeHandler;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttributeStore;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityHandler;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityStore;
 
 import static org.hisp.dhis.android.core.utils.Utils.isDeleted;
 
@@ -41,6 +54,8 @@ public class ProgramHandler {
     private final ProgramRuleHandler programRuleHandler;
     private final ProgramTrackedEntityAttributeHandler programTrackedEntityAttributeHandler;
     private final RelationshipTypeHandler relationshipHandler;
+    private final TrackedEntityHandler trackedEntityHandler;
+    private final ChangeDetector changeDetector;
 
     public ProgramHandler(ProgramStore programStore,
                           ProgramRuleVariableHandler programRuleVariableHandler,
@@ -48,7 +63,9 @@ public class ProgramHandler {
                           ProgramIndicatorHandler programIndicatorHandler,
                           ProgramRuleHandler programRuleHandler,
                           ProgramTrackedEntityAttributeHandler programTrackedEntityAttributeHandler,
-                          RelationshipTypeHandler relationshipHandler) {
+                          RelationshipTypeHandler relationshipHandler,
+                          TrackedEntityHandler trackedEntityHandler,
+                          ChangeDetector changeDetector) {
         this.programStore = programStore;
         this.programRuleVariableHandler = programRuleVariableHandler;
         this.programStageHandler = programStageHandler;
@@ -56,6 +73,70 @@ public class ProgramHandler {
         this.programRuleHandler = programRuleHandler;
         this.programTrackedEntityAttributeHandler = programTrackedEntityAttributeHandler;
         this.relationshipHandler = relationshipHandler;
+        this.trackedEntityHandler = trackedEntityHandler;
+        this.changeDetector = changeDetector;
+    }
+
+    /**
+     * Creates a handler which persists programs together with everything they contain into the given stores.
+     * Rows whose lastUpdated is not newer than the stored one are not rewritten.
+     */
+    @SuppressWarnings("PMD.ExcessiveParameterList")
+    public static ProgramHandler create(DatabaseAdapter databaseAdapter,
+                                        ProgramStore programStore,
+                                        TrackedEntityAttributeStore trackedEntityAttributeStore,
+                                        ProgramTrackedEntityAttributeStore programTrackedEntityAttributeStore,
+                                        ProgramRuleVariableStore programRuleVariableStore,
+                                        ProgramIndicatorStore programIndicatorStore,
+                                        ProgramStageSectionProgramIndicatorLinkStore
+                                                programStageSectionProgramIndicatorLinkStore,
+                                        ProgramRuleActionStore programRuleActionStore,
+                                        ProgramRuleStore programRuleStore,
+                                        OptionStore optionStore,
+                                        OptionSetStore optionSetStore,
+                                        DataElementStore dataElementStore,
+                                        ProgramStageDataElementStore programStageDataElementStore,
+                                        ProgramStageSectionStore programStageSectionStore,
+                                        ProgramStageStore programStageStore,
+                                        RelationshipTypeStore relationshipStore,
+                                        TrackedEntityStore trackedEntityStore) {
+        //TODO: make this an argument to the constructor:
+        ProgramStageSectionDataElementLinkStore programStageSectionDataElementLinkStore =
+                new ProgramStageSectionDataElementLinkStoreImpl(databaseAdapter);
+
+        // the handler is created for a single sync, which loads the stored lastUpdated of each table once
+        ChangeDetector changeDetector = new ChangeDetector(databaseAdapter);
+
+        ProgramIndicatorHandler programIndicatorHandler = new ProgramIndicatorHandler(programIndicatorStore,
+                programStageSectionProgramIndicatorLinkStore, changeDetector);
+
+        return new ProgramHandler(programStore,
+                new ProgramRuleVariableHandler(programRuleVariableStore, changeDetector),
+                new ProgramStageHandler(
+                        programStageStore,
+                        new ProgramStageSectionHandler(programStageSectionStore,
+                                programStageSectionDataElementLinkStore,
+                                programIndicatorHandler,
+                                changeDetector
+                        ),
+                        new ProgramStageDataElementHandler(programStageDataElementStore,
+                                new DataElementHandler(dataElementStore, new OptionSetHandler(optionSetStore,
+                                        new OptionHandler(optionStore)), changeDetector
+                                ),
+                                changeDetector
+                        ),
+                        changeDetector
+                ),
+                programIndicatorHandler,
+                new ProgramRuleHandler(programRuleStore,
+                        new ProgramRuleActionHandler(programRuleActionStore, changeDetector), changeDetector),
+                new ProgramTrackedEntityAttributeHandler(programTrackedEntityAttributeStore,
+                        new TrackedEntityAttributeHandler(trackedEntityAttributeStore, changeDetector),
+                        changeDetector
+                ),
+                new RelationshipTypeHandler(relationshipStore, changeDetector),
+                new TrackedEntityHandler(trackedEntityStore),
+                changeDetector);
     }
 
     public void handleProgram(Program program) {
@@ -64,7 +145,7 @@ public class ProgramHandler {
         }
         if (isDeleted(program)) {
             programStore.delete(program.uid());
-        } else {
+        } else if (changeDetector.hasChanged(ProgramModel.TABLE, program.uid(), program.lastUpdated())) {
             String relatedProgramUid = null;
             if (program.relatedProgram() != null) {
                 relatedProgramUid = program.relatedProgram().uid();
@@ -72,13 +153,15 @@ public class ProgramHandler {
             String trackedEntityUid = null;
             if (program.trackedEntity() != null) {
                 trackedEntityUid = program.trackedEntity().uid();
+                // the tracked entity is downloaded separately and may be committed after the program
+                trackedEntityHandler.handleTrackedEntityReference(program.trackedEntity());
             }
             String relationshipTypeUid = null;
             if (program.relationshipType() != null) {
                 relationshipTypeUid = program.relationshipType().uid();
             }
 
-            int updatedRow = programStore.update(
+            programStore.upsert(
                     program.uid(), program.code(), program.name(), program.displayName(), program.created(),
                     program.lastUpdated(), program.shortName(), program.displayShortName(), program.description(),
                     program.displayDescription(), program.version(), program.onlyEnrollOnce(),
@@ -88,21 +171,7 @@ public class ProgramHandler {
                     program.selectIncidentDatesInFuture(), program.captureCoordinates(),
                     program.useFirstStageDuringRegistration(), program.displayFrontPageList(),
                     program.programType(), relationshipTypeUid, program.relationshipText(),
-                    relatedProgramUid, trackedEntityUid, program.uid());
-
-            if (updatedRow <= 0) {
-                programStore.insert(
-                        program.uid(), program.code(), program.name(), program.displayName(), program.created(),
-                        program.lastUpdated(), program.shortName(), program.displayShortName(), program.description(),
-                        program.displayDescription(), program.version(), program.onlyEnrollOnce(),
-                        program.enrollmentDateLabel(), program.displayIncidentDate(),
-                        program.incidentDateLabel(), program.registration(), program.selectEnrollmentDatesInFuture(),
-                        program.dataEntryMethod(), program.ignoreOverdueEvents(), program.relationshipFromA(),
-                        program.selectIncidentDatesInFuture(), program.captureCoordinates(),
-                        program.useFirstStageDuringRegistration(), program.displayFrontPageList(),
-                        program.programType(), relationshipTypeUid, program.relationshipText(),
-                        relatedProgramUid, trackedEntityUid);
-            }
+                    relatedProgramUid, trackedEntityUid);
         }
         // programStageHandler will invoke programStageSectionHandler, programStageDataElementHandler,
         // programIndicatorHandler, dataElement handler and optionSetHandler
@@ -27,6 +27,9 @@
  */
 package org.hisp.dhis.android.core.program;
 
+import org.hisp.dhis.android.core.common.ChangeDetector;
+
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.hisp.dhis.android.core.utils.Utils.isDeleted;
@@ -34,12 +37,15 @@ import static org.hisp.dhis.android.core.utils.Utils.isDeleted;
 public class ProgramIndicatorHandler {
     private final ProgramIndicatorStore programIndicatorStore;
     private final ProgramStageSectionProgramIndicatorLinkStore programStageSectionProgramIndicatorLinkStore;
+    private final ChangeDetector changeDetector;
 
     public ProgramIndicatorHandler(ProgramIndicatorStore programIndicatorStore,
                                    ProgramStageSectionProgramIndicatorLinkStore
-                                           programStageSectionProgramIndicatorLinkStore) {
+                                           programStageSectionProgramIndicatorLinkStore,
+                                   ChangeDetector changeDetector) {
         this.programIndicatorStore = programIndicatorStore;
         this.programStageSectionProgramIndicatorLinkStore = programStageSectionProgramIndicatorLinkStore;
+        this.changeDetector = changeDetector;
     }
 
     public void handleProgramIndicator(String programStageSectionUid, List<ProgramIndicator> programIndicators) {
@@ -61,52 +67,38 @@ public class ProgramIndicatorHandler {
     private void deleteOrPersistProgramIndicators(String programStageSectionUid,
                                                   List<ProgramIndicator> programIndicators) {
         int size = programIndicators.size();
+        List<String> linkedProgramIndicatorUids = new ArrayList<>(size);
 
         for (int i = 0; i < size; i++) {
             ProgramIndicator programIndicator = programIndicators.get(i);
 
             if (isDeleted(programIndicator)) {
                 programIndicatorStore.delete(programIndicator.uid());
-            } else {
-                int updatedRow = programIndicatorStore.update(
+                continue;
+            }
+            linkedProgramIndicatorUids.add(programIndicator.uid());
+
+            if (changeDetector.hasChanged(ProgramIndicatorModel.TABLE, programIndicator.uid(),
+                    programIndicator.lastUpdated())) {
+                programIndicatorStore.upsert(
                         programIndicator.uid(), programIndicator.code(),
-                        programIndicator.name(), programIndicator.displayName(), programIndicator.created(),
-                        programIndicator.lastUpdated(), programIndicator.shortName(),
-                        programIndicator.displayShortName(), programIndicator.description(),
+                        programIndicator.name(), programIndicator.displayName(),
+                        programIndicator.created(), programIndicator.lastUpdated(),
+                        programIndicator.shortName(), programIndicator.displayShortName(),
+                        programIndicator.description(),
                         programIndicator.displayDescription(), programIndicator.displayInForm(),
-                        programIndicator.expression(), programIndicator.dimensionItem(), programIndicator.filter(),
-                        programIndicator.decimals(), programIndicator.program().uid(), programIndicator.uid()
+                        programIndicator.expression(), programIndicator.dimensionItem(),
+                        programIndicator.filter(),
+                        programIndicator.decimals(), programIndicator.program().uid()
                 );
-
-                if (updatedRow <= 0) {
-                    programIndicatorStore.insert(
-                            programIndicator.uid(), programIndicator.code(),
-                            programIndicator.name(), programIndicator.displayName(),
-                            programIndicator.created(), programIndicator.lastUpdated(),
-                            programIndicator.shortName(), programIndicator.displayShortName(),
-                            programIndicator.description(),
-                            programIndicator.displayDescription(), programIndicator.displayInForm(),
-                            programIndicator.expression(), programIndicator.dimensionItem(),
-                            programIndicator.filter(),
-                            programIndicator.decimals(), programIndicator.program().uid()
-                    );
-                }
             }
+        }
 
-            if (programStageSectionUid != null) {
-                // since this is many-to-many relationship we need to update link table
-
-                int updatedLink = programStageSectionProgramIndicatorLinkStore.update(
-                        programStageSectionUid, programIndicator.uid(),
-                        programStageSectionUid, programIndicator.uid()
-                );
-
-                if (updatedLink <= 0) {
-                    programStageSectionProgramIndicatorLinkStore.insert(
-                            programStageSectionUid, programIndicator.uid()
-                    );
-                }
-            }
+        if (programStageSectionUid != null) {
+            // since this is many-to-many relationship we need to update link table
+            programStageSectionProgramIndicatorLinkStore.replaceLinks(
+                    programStageSectionUid, linkedProgramIndicatorUids
+            );
         }
     }
 }
@@ -42,6 +42,17 @@ public interface ProgramIndicatorStore {
                 @Nullable String dimensionItem, @Nullable String filter,
                 @Nullable Integer decimals, @Nullable String program);
 
+    /**
+     * Inserts the row, or updates it if a row with the same uid exists already.
+     */
+    void upsert(@NonNull String uid, @Nullable String code, @NonNull String name,
+                @Nullable String displayName, @NonNull Date created, @NonNull Date lastUpdated,
+                @Nullable String shortName, @Nullable String displayShortName,
+                @Nullable String description, @Nullable String displayDescription,
+                @Nullable Boolean displayInForm, @Nullable String expression,
+                @Nullable String dimensionItem, @Nullable String filter,
+                @Nullable Integer decimals, @Nullable String program);
+
     int update(@NonNull String uid, @Nullable String code, @NonNull String name,
                @Nullable String displayName, @NonNull Date created, @NonNull Date lastUpdated,
                @Nullable String shortName, @Nullable String displayShortName,
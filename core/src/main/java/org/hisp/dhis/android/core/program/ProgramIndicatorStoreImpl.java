@@ -33,9 +33,11 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Upsert;
 
 import java.util.Date;
 
+import static org.hisp.dhis.android.core.data.database.DbUtils.upsertStatement;
 import static org.hisp.dhis.android.core.utils.StoreUtils.nonNull;
 import static org.hisp.dhis.android.core.utils.StoreUtils.sqLiteBind;
 
@@ -62,6 +64,8 @@ public class ProgramIndicatorStoreImpl implements ProgramIndicatorStore {
             ProgramIndicatorModel.Columns.PROGRAM + ") "
             + "VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
 
+    private static final String UPSERT_STATEMENT = upsertStatement(INSERT_STATEMENT, ProgramIndicatorModel.Columns.UID);
+
     private static final String UPDATE_STATEMENT = "UPDATE " + ProgramIndicatorModel.TABLE + " SET " +
             ProgramIndicatorModel.Columns.UID + " =?, " +
             ProgramIndicatorModel.Columns.CODE + " =?, " +
@@ -84,17 +88,13 @@ public class ProgramIndicatorStoreImpl implements ProgramIndicatorStore {
     private static final String DELETE_STATEMENT = "DELETE FROM " + ProgramIndicatorModel.TABLE +
             " WHERE " + ProgramIndicatorModel.Columns.UID + " =?;";
 
-    private final SQLiteStatement insertRowStatement;
-    private final SQLiteStatement updateStatement;
-    private final SQLiteStatement deleteStatement;
+    private final Upsert upsert;
 
     private final DatabaseAdapter databaseAdapter;
 
     public ProgramIndicatorStoreImpl(DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
-        this.insertRowStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
-        this.updateStatement = databaseAdapter.compileStatement(UPDATE_STATEMENT);
-        this.deleteStatement = databaseAdapter.compileStatement(DELETE_STATEMENT);
+        this.upsert = new Upsert(databaseAdapter, ProgramIndicatorModel.TABLE, INSERT_STATEMENT, UPSERT_STATEMENT);
     }
 
     @Override
@@ -106,6 +106,7 @@ public class ProgramIndicatorStoreImpl implements ProgramIndicatorStore {
                        @Nullable String expression, @Nullable String dimensionItem,
                        @Nullable String filter, @Nullable Integer decimals,
                        @Nullable String program) {
+        SQLiteStatement insertRowStatement = databaseAdapter.cachedStatement(INSERT_STATEMENT);
         nonNull(uid);
         nonNull(program);
         bindArguments(insertRowStatement, uid, code, name, displayName, created, lastUpdated, shortName,
@@ -118,6 +119,37 @@ public class ProgramIndicatorStoreImpl implements ProgramIndicatorStore {
         return insert;
     }
 
+    @Override
+    public void upsert(@NonNull String uid, @Nullable String code, @NonNull String name,
+                       @Nullable String displayName, @NonNull Date created,
+                       @NonNull Date lastUpdated, @Nullable String shortName,
+                       @Nullable String displayShortName, @Nullable String description,
+                       @Nullable String displayDescription, @Nullable Boolean displayInForm,
+                       @Nullable String expression, @Nullable String dimensionItem,
+                       @Nullable String filter, @Nullable Integer decimals,
+                       @Nullable String program) {
+        SQLiteStatement statement = upsert.statement();
+        if (statement != null) {
+            nonNull(uid);
+            nonNull(program);
+            bindArguments(statement, uid, code, name, displayName, created, lastUpdated, shortName,
+                    displayShortName, description, displayDescription, displayInForm, expression, dimensionItem,
+                    filter, decimals, program);
+
+            if (upsert.execute()) {
+                return;
+            }
+        }
+
+        if (update(uid, code, name, displayName, created, lastUpdated, shortName, displayShortName, description,
+                displayDescription, displayInForm, expression, dimensionItem, filter, decimals, program,
+                uid) <= 0) {
+            insert(uid, code, name, displayName, created, lastUpdated, shortName, displayShortName, description,
+                    displayDescription, displayInForm, expression, dimensionItem, filter, decimals, program);
+            upsert.inserted();
+        }
+    }
+
     @Override
     public int update(@NonNull String uid, @Nullable String code, @NonNull String name, @Nullable String displayName,
                       @NonNull Date created, @NonNull Date lastUpdated, @Nullable String shortName,
@@ -126,6 +158,7 @@ public class ProgramIndicatorStoreImpl implements ProgramIndicatorStore {
                       @Nullable String expression, @Nullable String dimensionItem, @Nullable String filter,
                       @Nullable Integer decimals, @Nullable String program,
                       @NonNull String whereProgramIndicatorUid) {
+        SQLiteStatement updateStatement = databaseAdapter.cachedStatement(UPDATE_STATEMENT);
         nonNull(uid);
         nonNull(program);
         nonNull(whereProgramIndicatorUid);
@@ -143,6 +176,7 @@ public class ProgramIndicatorStoreImpl implements ProgramIndicatorStore {
 
     @Override
     public int delete(String uid) {
+        SQLiteStatement deleteStatement = databaseAdapter.cachedStatement(DELETE_STATEMENT);
         nonNull(uid);
         // bind the where argument
         sqLiteBind(deleteStatement, 1, uid);
@@ -39,9 +39,10 @@ import com.google.auto.value.AutoValue;
 
 import org.hisp.dhis.android.core.common.BaseNameableObjectModel;
 import org.hisp.dhis.android.core.data.database.DbProgramTypeColumnAdapter;
+import org.hisp.dhis.android.core.data.database.StatementBinder;
 
 @AutoValue
-public abstract class ProgramModel extends BaseNameableObjectModel {
+public abstract class ProgramModel extends BaseNameableObjectModel implements StatementBinder {
 
     public static final String TABLE = "Program";
 
@@ -71,6 +72,15 @@ public abstract class ProgramModel extends BaseNameableObjectModel {
         return AutoValue_ProgramModel.createFromCursor(cursor);
     }
 
+    /**
+     * @return the columns bound by {@link #bindTo(android.database.sqlite.SQLiteStatement, int)}, in the order of
+     * their bind arguments
+     */
+    @NonNull
+    public static String[] boundColumns() {
+        return AutoValue_ProgramModel.COLUMNS.clone();
+    }
+
     public static Builder builder() {
         return new $$AutoValue_ProgramModel.Builder();
     }
@@ -27,15 +27,20 @@
  */
 package org.hisp.dhis.android.core.program;
 
+import org.hisp.dhis.android.core.common.ChangeDetector;
+
 import java.util.List;
 
 import static org.hisp.dhis.android.core.utils.Utils.isDeleted;
 
 public class ProgramRuleActionHandler {
     private final ProgramRuleActionStore programRuleActionStore;
+    private final ChangeDetector changeDetector;
 
-    public ProgramRuleActionHandler(ProgramRuleActionStore programRuleActionStore) {
+    public ProgramRuleActionHandler(ProgramRuleActionStore programRuleActionStore,
+                                    ChangeDetector changeDetector) {
         this.programRuleActionStore = programRuleActionStore;
+        this.changeDetector = changeDetector;
     }
 
     public void handleProgramRuleActions(List<ProgramRuleAction> programRuleActions) {
@@ -59,7 +64,8 @@ public class ProgramRuleActionHandler {
 
             if (isDeleted(programRuleAction)) {
                 programRuleActionStore.delete(programRuleAction.uid());
-            } else {
+            } else if (changeDetector.hasChanged(ProgramRuleActionModel.TABLE, programRuleAction.uid(),
+                    programRuleAction.lastUpdated())) {
                 String trackedEntityAttributeUid = null;
                 if(programRuleAction.trackedEntityAttribute() != null) {
                     trackedEntityAttributeUid = programRuleAction.trackedEntityAttribute().uid();
@@ -85,7 +91,7 @@ public class ProgramRuleActionHandler {
                     programStageUid = programRuleAction.programStage().uid();
                 }
 
-                int updatedRow = programRuleActionStore.update(
+                programRuleActionStore.upsert(
                         programRuleAction.uid(),
                         programRuleAction.code(),
                         programRuleAction.name(),
@@ -101,31 +107,8 @@ public class ProgramRuleActionHandler {
                         programRuleAction.programRuleActionType(),
                         programStageUid,
                         dataElementUid,
-                        programRuleAction.programRule().uid(),
-                        programRuleAction.uid()
+                        programRuleAction.programRule().uid()
                 );
-
-                if (updatedRow <= 0) {
-                    programRuleActionStore.insert(
-                            programRuleAction.uid(),
-                            programRuleAction.code(),
-                            programRuleAction.name(),
-                            programRuleAction.displayName(),
-                            programRuleAction.created(),
-                            programRuleAction.lastUpdated(),
-                            programRuleAction.data(),
-                            programRuleAction.content(),
-                            programRuleAction.location(),
-                            trackedEntityAttributeUid,
-                            programIndicatorUid,
-                            programStageSectionUid,
-                            programRuleAction.programRuleActionType(),
-                            programStageUid,
-                            dataElementUid,
-                            programRuleAction.programRule().uid()
-                    );
-
-                }
             }
         }
     }
@@ -43,6 +43,18 @@ public interface ProgramRuleActionStore {
                 @Nullable String programStage, @Nullable String dataElement,
                 @Nullable String programRule);
 
+    /**
+     * Inserts the row, or updates it if a row with the same uid exists already.
+     */
+    void upsert(@NonNull String uid, @Nullable String code, @NonNull String name,
+                @Nullable String displayName, @NonNull Date created, @NonNull Date lastUpdated,
+                @Nullable String data, @Nullable String content, @Nullable String location,
+                @Nullable String trackedEntityAttribute, @Nullable String programIndicator,
+                @Nullable String programStageSection,
+                @NonNull ProgramRuleActionType programRuleActionType,
+                @Nullable String programStage, @Nullable String dataElement,
+                @Nullable String programRule);
+
     int update(
             @NonNull String uid, @Nullable String code, @NonNull String name,
             @Nullable String displayName, @NonNull Date created, @NonNull Date lastUpdated,
@@ -33,9 +33,11 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Upsert;
 
 import java.util.Date;
 
+import static org.hisp.dhis.android.core.data.database.DbUtils.upsertStatement;
 import static org.hisp.dhis.android.core.utils.StoreUtils.nonNull;
 import static org.hisp.dhis.android.core.utils.StoreUtils.sqLiteBind;
 
@@ -62,6 +64,9 @@ public class ProgramRuleActionStoreImpl implements ProgramRuleActionStore {
             ProgramRuleActionModel.Columns.PROGRAM_RULE +
             ") " + "VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
 
+    private static final String UPSERT_STATEMENT = upsertStatement(INSERT_STATEMENT,
+            ProgramRuleActionModel.Columns.UID);
+
     private static final String UPDATE_STATEMENT = "UPDATE " + ProgramRuleActionModel.TABLE + " SET " +
             ProgramRuleActionModel.Columns.UID + " =?, " +
             ProgramRuleActionModel.Columns.CODE + " =?, " +
@@ -86,17 +91,13 @@ public class ProgramRuleActionStoreImpl implements ProgramRuleActionStore {
             " WHERE " +
             ProgramRuleActionModel.Columns.UID + " =?;";
 
-    private final SQLiteStatement insertStatement;
-    private final SQLiteStatement updateStatement;
-    private final SQLiteStatement deleteStatement;
+    private final Upsert upsert;
 
     private final DatabaseAdapter databaseAdapter;
 
     public ProgramRuleActionStoreImpl(DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
-        this.insertStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
-        this.updateStatement = databaseAdapter.compileStatement(UPDATE_STATEMENT);
-        this.deleteStatement = databaseAdapter.compileStatement(DELETE_STATEMENT);
+        this.upsert = new Upsert(databaseAdapter, ProgramRuleActionModel.TABLE, INSERT_STATEMENT, UPSERT_STATEMENT);
     }
 
 
@@ -112,6 +113,7 @@ public class ProgramRuleActionStoreImpl implements ProgramRuleActionStore {
                        @Nullable String programStage,
                        @Nullable String dataElement,
                        @Nullable String programRule) {
+        SQLiteStatement insertStatement = databaseAdapter.cachedStatement(INSERT_STATEMENT);
         nonNull(uid);
         nonNull(programRule);
         bindArguments(insertStatement, uid, code, name, displayName, created, lastUpdated, data,
@@ -127,6 +129,41 @@ public class ProgramRuleActionStoreImpl implements ProgramRuleActionStore {
 
     }
 
+    @Override
+    public void upsert(@NonNull String uid, @Nullable String code, @NonNull String name,
+                       @Nullable String displayName, @NonNull Date created,
+                       @NonNull Date lastUpdated, @Nullable String data, @Nullable String content,
+                       @Nullable String location,
+                       @Nullable String trackedEntityAttribute,
+                       @Nullable String programIndicator,
+                       @Nullable String programStageSection,
+                       @NonNull ProgramRuleActionType programRuleActionType,
+                       @Nullable String programStage,
+                       @Nullable String dataElement,
+                       @Nullable String programRule) {
+        SQLiteStatement statement = upsert.statement();
+        if (statement != null) {
+            nonNull(uid);
+            nonNull(programRule);
+            bindArguments(statement, uid, code, name, displayName, created, lastUpdated, data,
+                    content, location, trackedEntityAttribute, programIndicator, programStageSection,
+                    programRuleActionType, programStage, dataElement, programRule);
+
+            if (upsert.execute()) {
+                return;
+            }
+        }
+
+        if (update(uid, code, name, displayName, created, lastUpdated, data, content, location,
+                trackedEntityAttribute, programIndicator, programStageSection, programRuleActionType,
+                programStage, dataElement, programRule, uid) <= 0) {
+            insert(uid, code, name, displayName, created, lastUpdated, data, content, location,
+                    trackedEntityAttribute, programIndicator, programStageSection, programRuleActionType,
+                    programStage, dataElement, programRule);
+            upsert.inserted();
+        }
+    }
+
     @Override
     public int update(@NonNull String uid, @Nullable String code, @NonNull String name, @Nullable String displayName,
                       @NonNull Date created, @NonNull Date lastUpdated, @Nullable String data,
@@ -139,6 +176,7 @@ public class ProgramRuleActionStoreImpl implements ProgramRuleActionStore {
                       @Nullable String dataElement,
                       @Nullable String programRule,
                       @NonNull String whereProgramRuleActionUid) {
+        SQLiteStatement updateStatement = databaseAdapter.cachedStatement(UPDATE_STATEMENT);
         nonNull(uid);
         nonNull(programRule);
         nonNull(whereProgramRuleActionUid);
@@ -159,6 +197,7 @@ public class ProgramRuleActionStoreImpl implements ProgramRuleActionStore {
 
     @Override
     public int delete(String uid) {
+        SQLiteStatement deleteStatement = databaseAdapter.cachedStatement(DELETE_STATEMENT);
         nonNull(uid);
         // bind the where argument
         sqLiteBind(deleteStatement, 1, uid);
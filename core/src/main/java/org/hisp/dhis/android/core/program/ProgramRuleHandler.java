@@ -27,6 +27,8 @@
  */
 package org.hisp.dhis.android.core.program;
 
+import org.hisp.dhis.android.core.common.ChangeDetector;
+
 import java.util.List;
 
 import static org.hisp.dhis.android.core.utils.Utils.isDeleted;
@@ -34,11 +36,14 @@ import static org.hisp.dhis.android.core.utils.Utils.isDeleted;
 public class ProgramRuleHandler {
     private final ProgramRuleStore programRuleStore;
     private final ProgramRuleActionHandler programRuleActionHandler;
+    private final ChangeDetector changeDetector;
 
     public ProgramRuleHandler(ProgramRuleStore programRuleStore,
-                              ProgramRuleActionHandler programRuleActionHandler) {
+                              ProgramRuleActionHandler programRuleActionHandler,
+                              ChangeDetector changeDetector) {
         this.programRuleStore = programRuleStore;
         this.programRuleActionHandler = programRuleActionHandler;
+        this.changeDetector = changeDetector;
     }
 
     public void handleProgramRules(List<ProgramRule> programRules) {
@@ -63,23 +68,17 @@ public class ProgramRuleHandler {
 
             if (isDeleted(programRule)) {
                 programRuleStore.delete(programRule.uid());
-            } else {
+            } else if (changeDetector.hasChanged(ProgramRuleModel.TABLE, programRule.uid(),
+                    programRule.lastUpdated())) {
                 String programStageUid = null;
                 if (programRule.programStage() != null) {
                     programStageUid = programRule.programStage().uid();
                 }
-                int updatedRow = programRuleStore.update(programRule.uid(), programRule.code(), programRule.name(),
+                programRuleStore.upsert(
+                        programRule.uid(), programRule.code(), programRule.name(),
                         programRule.displayName(), programRule.created(), programRule.lastUpdated(),
                         programRule.priority(), programRule.condition(), programRule.program().uid(),
-                        programStageUid, programRule.uid());
-
-                if (updatedRow <= 0) {
-                    programRuleStore.insert(
-                            programRule.uid(), programRule.code(), programRule.name(),
-                            programRule.displayName(), programRule.created(), programRule.lastUpdated(),
-                            programRule.priority(), programRule.condition(), programRule.program().uid(),
-                            programStageUid);
-                }
+                        programStageUid);
             }
 
             programRuleActionHandler.handleProgramRuleActions(programRule.programRuleActions());
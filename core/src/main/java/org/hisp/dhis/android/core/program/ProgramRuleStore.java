@@ -39,6 +39,14 @@ public interface ProgramRuleStore {
                 @Nullable Integer priority, @Nullable String condition, @NonNull String program,
                 @Nullable String programStage);
 
+    /**
+     * Inserts the row, or updates it if a row with the same uid exists already.
+     */
+    void upsert(@NonNull String uid, @Nullable String code, @NonNull String name,
+                @NonNull String displayName, @NonNull Date created, @NonNull Date lastUpdated,
+                @Nullable Integer priority, @Nullable String condition, @NonNull String program,
+                @Nullable String programStage);
+
     int update(
             @NonNull String uid, @Nullable String code, @NonNull String name,
             @NonNull String displayName, @NonNull Date created, @NonNull Date lastUpdated,
@@ -33,10 +33,12 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Upsert;
 import org.hisp.dhis.android.core.program.ProgramRuleModel.Columns;
 
 import java.util.Date;
 
+import static org.hisp.dhis.android.core.data.database.DbUtils.upsertStatement;
 import static org.hisp.dhis.android.core.utils.StoreUtils.nonNull;
 import static org.hisp.dhis.android.core.utils.StoreUtils.sqLiteBind;
 
@@ -58,6 +60,8 @@ public class ProgramRuleStoreImpl implements ProgramRuleStore {
             Columns.PROGRAM_STAGE + ") " +
             "VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?, ?);";
 
+    private static final String UPSERT_STATEMENT = upsertStatement(INSERT_STATEMENT, ProgramRuleModel.Columns.UID);
+
     private static final String UPDATE_STATEMENT = "UPDATE " + ProgramRuleModel.TABLE + " SET " +
             Columns.UID + " =?, " +
             Columns.CODE + " =?, " +
@@ -76,17 +80,13 @@ public class ProgramRuleStoreImpl implements ProgramRuleStore {
             " WHERE " +
             Columns.UID + " =?;";
 
-    private final SQLiteStatement insertStatement;
-    private final SQLiteStatement updateStatement;
-    private final SQLiteStatement deleteStatement;
+    private final Upsert upsert;
 
     private final DatabaseAdapter databaseAdapter;
 
     public ProgramRuleStoreImpl(DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
-        this.insertStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
-        this.updateStatement = databaseAdapter.compileStatement(UPDATE_STATEMENT);
-        this.deleteStatement = databaseAdapter.compileStatement(DELETE_STATEMENT);
+        this.upsert = new Upsert(databaseAdapter, ProgramRuleModel.TABLE, INSERT_STATEMENT, UPSERT_STATEMENT);
     }
 
     @Override
@@ -95,6 +95,7 @@ public class ProgramRuleStoreImpl implements ProgramRuleStore {
                        @NonNull Date lastUpdated, @Nullable Integer priority,
                        @Nullable String condition, @NonNull String program,
                        @Nullable String programStage) {
+        SQLiteStatement insertStatement = databaseAdapter.cachedStatement(INSERT_STATEMENT);
         nonNull(uid);
         nonNull(program);
         bindArguments(insertStatement, uid, code, name, displayName, created, lastUpdated, priority,
@@ -106,11 +107,38 @@ public class ProgramRuleStoreImpl implements ProgramRuleStore {
         return insert;
     }
 
+    @Override
+    public void upsert(@NonNull String uid, @Nullable String code, @NonNull String name,
+                       @NonNull String displayName, @NonNull Date created,
+                       @NonNull Date lastUpdated, @Nullable Integer priority,
+                       @Nullable String condition, @NonNull String program,
+                       @Nullable String programStage) {
+        SQLiteStatement statement = upsert.statement();
+        if (statement != null) {
+            nonNull(uid);
+            nonNull(program);
+            bindArguments(statement, uid, code, name, displayName, created, lastUpdated, priority,
+                    condition, program, programStage);
+
+            if (upsert.execute()) {
+                return;
+            }
+        }
+
+        if (update(uid, code, name, displayName, created, lastUpdated, priority, condition, program, programStage,
+                uid) <= 0) {
+            insert(uid, code, name, displayName, created, lastUpdated, priority, condition, program,
+                    programStage);
+            upsert.inserted();
+        }
+    }
+
     @Override
     public int update(@NonNull String uid, @Nullable String code, @NonNull String name, @NonNull String displayName,
                       @NonNull Date created, @NonNull Date lastUpdated, @Nullable Integer priority,
                       @Nullable String condition, @NonNull String program, @Nullable String programStage,
                       @NonNull String whereProgramRuleUid) {
+        SQLiteStatement updateStatement = databaseAdapter.cachedStatement(UPDATE_STATEMENT);
         nonNull(uid);
         nonNull(program);
         nonNull(whereProgramRuleUid);
@@ -128,6 +156,7 @@ public class ProgramRuleStoreImpl implements ProgramRuleStore {
 
     @Override
     public int delete(String uid) {
+        SQLiteStatement deleteStatement = databaseAdapter.cachedStatement(DELETE_STATEMENT);
         nonNull(uid);
         // bind the where argument
         sqLiteBind(deleteStatement, 1, uid);
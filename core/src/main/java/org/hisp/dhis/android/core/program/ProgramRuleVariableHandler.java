@@ -27,15 +27,20 @@
  */
 package org.hisp.dhis.android.core.program;
 
+import org.hisp.dhis.android.core.common.ChangeDetector;
+
 import java.util.List;
 
 import static org.hisp.dhis.android.core.utils.Utils.isDeleted;
 
 public class ProgramRuleVariableHandler {
     private final ProgramRuleVariableStore programRuleVariableStore;
+    private final ChangeDetector changeDetector;
 
-    public ProgramRuleVariableHandler(ProgramRuleVariableStore programRuleVariableStore) {
+    public ProgramRuleVariableHandler(ProgramRuleVariableStore programRuleVariableStore,
+                                      ChangeDetector changeDetector) {
         this.programRuleVariableStore = programRuleVariableStore;
+        this.changeDetector = changeDetector;
     }
 
     public void handleProgramRuleVariables(List<ProgramRuleVariable> programRuleVariables) {
@@ -54,7 +59,8 @@ public class ProgramRuleVariableHandler {
 
             if (isDeleted(programRuleVariable)) {
                 programRuleVariableStore.delete(programRuleVariable.uid());
-            } else {
+            } else if (changeDetector.hasChanged(ProgramRuleVariableModel.TABLE, programRuleVariable.uid(),
+                    programRuleVariable.lastUpdated())) {
                 String programStageUid = null;
                 if(programRuleVariable.programStage() != null) {
                     programStageUid = programRuleVariable.programStage().uid();
@@ -70,7 +76,7 @@ public class ProgramRuleVariableHandler {
                     trackedEntityAttributeUid = programRuleVariable.trackedEntityAttribute().uid();
                 }
 
-                int updatedRow = programRuleVariableStore.update(
+                programRuleVariableStore.upsert(
                         programRuleVariable.uid(), programRuleVariable.code(),
                         programRuleVariable.name(), programRuleVariable.displayName(),
                         programRuleVariable.created(), programRuleVariable.lastUpdated(),
@@ -78,21 +84,8 @@ public class ProgramRuleVariableHandler {
                         programRuleVariable.program().uid(), programStageUid,
                         dataElementUid,
                         trackedEntityAttributeUid,
-                        programRuleVariable.programRuleVariableSourceType(), programRuleVariable.uid()
+                        programRuleVariable.programRuleVariableSourceType()
                 );
-
-                if (updatedRow <= 0) {
-                    programRuleVariableStore.insert(
-                            programRuleVariable.uid(), programRuleVariable.code(),
-                            programRuleVariable.name(), programRuleVariable.displayName(),
-                            programRuleVariable.created(), programRuleVariable.lastUpdated(),
-                            programRuleVariable.useCodeForOptionSet(),
-                            programRuleVariable.program().uid(), programStageUid,
-                            dataElementUid,
-                            trackedEntityAttributeUid,
-                            programRuleVariable.programRuleVariableSourceType()
-                    );
-                }
             }
 
         }
@@ -42,6 +42,17 @@ public interface ProgramRuleVariableStore {
                 @Nullable ProgramRuleVariableSourceType programRuleVariableSourceType
     );
 
+    /**
+     * Inserts the row, or updates it if a row with the same uid exists already.
+     */
+    void upsert(@NonNull String uid, @Nullable String code, @NonNull String name,
+                @NonNull String displayName, @NonNull Date created, @NonNull Date lastUpdated,
+                @Nullable Boolean useCodeForOptionSet, @NonNull String program,
+                @Nullable String programStage, @Nullable String dataElement,
+                @Nullable String trackedEntityAttribute,
+                @Nullable ProgramRuleVariableSourceType programRuleVariableSourceType
+    );
+
     int update(
             @NonNull String uid, @Nullable String code, @NonNull String name,
             @NonNull String displayName, @NonNull Date created, @NonNull Date lastUpdated,
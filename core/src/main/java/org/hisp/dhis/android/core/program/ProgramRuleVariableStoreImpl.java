@@ -33,9 +33,11 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Upsert;
 
 import java.util.Date;
 
+import static org.hisp.dhis.android.core.data.database.DbUtils.upsertStatement;
 import static org.hisp.dhis.android.core.utils.StoreUtils.nonNull;
 import static org.hisp.dhis.android.core.utils.StoreUtils.sqLiteBind;
 
@@ -60,6 +62,9 @@ public class ProgramRuleVariableStoreImpl implements ProgramRuleVariableStore {
             ProgramRuleVariableModel.Columns.PROGRAM_RULE_VARIABLE_SOURCE_TYPE + ") " +
             "VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);";
 
+    private static final String UPSERT_STATEMENT = upsertStatement(INSERT_STATEMENT,
+            ProgramRuleVariableModel.Columns.UID);
+
     private static final String UPDATE_STATEMENT = "UPDATE " + ProgramRuleVariableModel.TABLE +
             " SET " +
             ProgramRuleVariableModel.Columns.UID + " =?, " +
@@ -79,17 +84,13 @@ public class ProgramRuleVariableStoreImpl implements ProgramRuleVariableStore {
     private static final String DELETE_STATEMENT = "DELETE FROM " + ProgramRuleVariableModel.TABLE +
             " WHERE " + ProgramRuleVariableModel.Columns.UID + " =?;";
 
-    private final SQLiteStatement insertStatement;
-    private final SQLiteStatement updateStatement;
-    private final SQLiteStatement deleteStatement;
+    private final Upsert upsert;
 
     private final DatabaseAdapter databaseAdapter;
 
     public ProgramRuleVariableStoreImpl(DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
-        this.insertStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
-        this.updateStatement = databaseAdapter.compileStatement(UPDATE_STATEMENT);
-        this.deleteStatement = databaseAdapter.compileStatement(DELETE_STATEMENT);
+        this.upsert = new Upsert(databaseAdapter, ProgramRuleVariableModel.TABLE, INSERT_STATEMENT, UPSERT_STATEMENT);
     }
 
     @Override
@@ -99,6 +100,7 @@ public class ProgramRuleVariableStoreImpl implements ProgramRuleVariableStore {
                        @NonNull String program, @Nullable String programStage,
                        @Nullable String dataElement, @Nullable String trackedEntityAttribute,
                        @Nullable ProgramRuleVariableSourceType programRuleVariableSourceType) {
+        SQLiteStatement insertStatement = databaseAdapter.cachedStatement(INSERT_STATEMENT);
         nonNull(uid);
         nonNull(program);
         bindArguments(insertStatement, uid, code, name, displayName, created, lastUpdated, useCodeForOptionSet,
@@ -110,6 +112,33 @@ public class ProgramRuleVariableStoreImpl implements ProgramRuleVariableStore {
         return insert;
     }
 
+    @Override
+    public void upsert(@NonNull String uid, @Nullable String code, @NonNull String name,
+                       @NonNull String displayName, @NonNull Date created,
+                       @NonNull Date lastUpdated, @Nullable Boolean useCodeForOptionSet,
+                       @NonNull String program, @Nullable String programStage,
+                       @Nullable String dataElement, @Nullable String trackedEntityAttribute,
+                       @Nullable ProgramRuleVariableSourceType programRuleVariableSourceType) {
+        SQLiteStatement statement = upsert.statement();
+        if (statement != null) {
+            nonNull(uid);
+            nonNull(program);
+            bindArguments(statement, uid, code, name, displayName, created, lastUpdated, useCodeForOptionSet,
+                    program, programStage, dataElement, trackedEntityAttribute, programRuleVariableSourceType);
+
+            if (upsert.execute()) {
+                return;
+            }
+        }
+
+        if (update(uid, code, name, displayName, created, lastUpdated, useCodeForOptionSet, program, programStage,
+                dataElement, trackedEntityAttribute, programRuleVariableSourceType, uid) <= 0) {
+            insert(uid, code, name, displayName, created, lastUpdated, useCodeForOptionSet, program, programStage,
+                    dataElement, trackedEntityAttribute, programRuleVariableSourceType);
+            upsert.inserted();
+        }
+    }
+
     @Override
     public int update(@NonNull String uid, @Nullable String code, @NonNull String name, @NonNull String displayName,
                       @NonNull Date created, @NonNull Date lastUpdated, @Nullable Boolean useCodeForOptionSet,
@@ -117,6 +146,7 @@ public class ProgramRuleVariableStoreImpl implements ProgramRuleVariableStore {
                       @Nullable String trackedEntityAttribute,
                       @Nullable ProgramRuleVariableSourceType programRuleVariableSourceType,
                       @NonNull String whereProgramRuleVariableUid) {
+        SQLiteStatement updateStatement = databaseAdapter.cachedStatement(UPDATE_STATEMENT);
         nonNull(uid);
         nonNull(program);
         nonNull(whereProgramRuleVariableUid);
@@ -134,6 +164,7 @@ public class ProgramRuleVariableStoreImpl implements ProgramRuleVariableStore {
 
     @Override
     public int delete(String uid) {
+        SQLiteStatement deleteStatement = databaseAdapter.cachedStatement(DELETE_STATEMENT);
         nonNull(uid);
         // bind the where argument
         sqLiteBind(deleteStatement, 1, uid);
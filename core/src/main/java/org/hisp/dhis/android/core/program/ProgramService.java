@@ -33,9 +33,11 @@ import org.hisp.dhis.android.core.data.api.Filter;
 import org.hisp.dhis.android.core.data.api.Where;
 import org.hisp.dhis.android.core.data.api.Which;
 
+import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.http.GET;
 import retrofit2.http.Query;
+import retrofit2.http.Streaming;
 
 public interface ProgramService {
     @GET("programs")
@@ -44,4 +46,20 @@ public interface ProgramService {
                                        @Query("filter") @Where Filter<Program, String> uids,
                                        @Query("paging") Boolean paging);
 
+    @GET("programs")
+    Call<Payload<Program>> getProgramsPage(@Query("fields") @Which Fields<Program> fields,
+                                           @Query("filter") @Where Filter<Program, String> lastUpdated,
+                                           @Query("filter") @Where Filter<Program, String> uids,
+                                           @Query("page") int page,
+                                           @Query("pageSize") int pageSize);
+
+    @Streaming
+    @GET("programs")
+    Call<ResponseBody> streamPrograms(@Query("fields") @Which Fields<Program> fields,
+                                      @Query("filter") @Where Filter<Program, String> lastUpdated,
+                                      @Query("filter") @Where Filter<Program, String> uids,
+                                      @Query("paging") Boolean paging,
+                                      @Query("page") Integer page,
+                                      @Query("pageSize") Integer pageSize);
+
 }
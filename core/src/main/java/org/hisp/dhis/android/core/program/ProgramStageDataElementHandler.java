@@ -27,6 +27,7 @@
  */
 package org.hisp.dhis.android.core.program;
 
+import org.hisp.dhis.android.core.common.ChangeDetector;
 import org.hisp.dhis.android.core.dataelement.DataElementHandler;
 
 import java.util.List;
@@ -36,11 +37,14 @@ import static org.hisp.dhis.android.core.utils.Utils.isDeleted;
 public class ProgramStageDataElementHandler {
     private final ProgramStageDataElementStore programStageDataElementStore;
     private final DataElementHandler dataElementHandler;
+    private final ChangeDetector changeDetector;
 
     public ProgramStageDataElementHandler(ProgramStageDataElementStore programStageDataElementStore,
-                                          DataElementHandler dataElementHandler) {
+                                          DataElementHandler dataElementHandler,
+                                          ChangeDetector changeDetector) {
         this.programStageDataElementStore = programStageDataElementStore;
         this.dataElementHandler = dataElementHandler;
+        this.changeDetector = changeDetector;
     }
 
     public void handleProgramStageDataElements(String programStageSectionUid,
@@ -53,7 +57,7 @@ public class ProgramStageDataElementHandler {
 
     /**
      * This method deletes or persists program stage data elements and applies the changes to database.
-     * Method will call update with or without programStageSectionUid depending if it exists.
+     * A program stage data element without programStageSectionUid keeps the section it has been stored with.
      *
      * @param programStageSectionUid
      * @param programStageDataElements
@@ -66,42 +70,17 @@ public class ProgramStageDataElementHandler {
 
             if (isDeleted(programStageDataElement)) {
                 programStageDataElementStore.delete(programStageDataElement.uid());
-            } else {
-                int updatedRow;
-                if (programStageSectionUid == null) {
-                    updatedRow = programStageDataElementStore.updateWithoutSection(
-                            programStageDataElement.uid(),
-                            programStageDataElement.code(), programStageDataElement.name(),
-                            programStageDataElement.displayName(), programStageDataElement.created(),
-                            programStageDataElement.lastUpdated(), programStageDataElement.displayInReports(),
-                            programStageDataElement.compulsory(), programStageDataElement.allowProvidedElsewhere(),
-                            programStageDataElement.sortOrder(), programStageDataElement.allowFutureDate(),
-                            programStageDataElement.dataElement().uid(), programStageDataElement.programStage().uid(),
-                            programStageDataElement.uid());
-                } else {
-                    updatedRow = programStageDataElementStore.updateWithSection(
-                            programStageDataElement.uid(),
-                            programStageDataElement.code(), programStageDataElement.name(),
-                            programStageDataElement.displayName(), programStageDataElement.created(),
-                            programStageDataElement.lastUpdated(), programStageDataElement.displayInReports(),
-                            programStageDataElement.compulsory(), programStageDataElement.allowProvidedElsewhere(),
-                            programStageDataElement.sortOrder(), programStageDataElement.allowFutureDate(),
-                            programStageDataElement.dataElement().uid(), programStageDataElement.programStage().uid(),
-                            programStageSectionUid, programStageDataElement.uid()
-                    );
-                }
-
-                if (updatedRow <= 0) {
-                    programStageDataElementStore.insert(
-                            programStageDataElement.uid(), programStageDataElement.code(),
-                            programStageDataElement.name(), programStageDataElement.displayName(),
-                            programStageDataElement.created(), programStageDataElement.lastUpdated(),
-                            programStageDataElement.displayInReports(), programStageDataElement.compulsory(),
-                            programStageDataElement.allowProvidedElsewhere(), programStageDataElement.sortOrder(),
-                            programStageDataElement.allowFutureDate(), programStageDataElement.dataElement().uid(),
-                            programStageDataElement.programStage().uid(), programStageSectionUid
-                            );
-                }
+            } else if (changeDetector.hasChanged(ProgramStageDataElementModel.TABLE, programStageDataElement.uid(),
+                    programStageDataElement.lastUpdated())) {
+                programStageDataElementStore.upsert(
+                        programStageDataElement.uid(), programStageDataElement.code(),
+                        programStageDataElement.name(), programStageDataElement.displayName(),
+                        programStageDataElement.created(), programStageDataElement.lastUpdated(),
+                        programStageDataElement.displayInReports(), programStageDataElement.compulsory(),
+                        programStageDataElement.allowProvidedElsewhere(), programStageDataElement.sortOrder(),
+                        programStageDataElement.allowFutureDate(), programStageDataElement.dataElement().uid(),
+                        programStageDataElement.programStage().uid(), programStageSectionUid
+                );
             }
             dataElementHandler.handleDataElement(programStageDataElement.dataElement());
         }
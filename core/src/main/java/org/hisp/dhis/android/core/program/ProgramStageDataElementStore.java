@@ -43,6 +43,19 @@ public interface ProgramStageDataElementStore {
             @Nullable String programStageUid
     );
 
+    /**
+     * Inserts the row, or updates it if a row with the same uid exists already. A null program stage section does
+     * not overwrite the section of an existing row.
+     */
+    void upsert(
+            @NonNull String uid, @Nullable String code, @Nullable String name,
+            @Nullable String displayName, @NonNull Date created, @NonNull Date lastUpdated,
+            @NonNull Boolean displayInReports, @NonNull Boolean compulsory,
+            @NonNull Boolean allowProvidedElsewhere, @Nullable Integer sortOrder,
+            @NonNull Boolean allowFutureDate, @NonNull String dataElement, @Nullable String programStageSection,
+            @Nullable String programStageUid
+    );
+
     int updateWithSection(@NonNull String uid, @Nullable String code, @Nullable String name,
                           @Nullable String displayName, @NonNull Date created, @NonNull Date lastUpdated,
                           @NonNull Boolean displayInReports, @NonNull Boolean compulsory,
@@ -33,9 +33,11 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Upsert;
 
 import java.util.Date;
 
+import static org.hisp.dhis.android.core.data.database.DbUtils.upsertStatement;
 import static org.hisp.dhis.android.core.utils.StoreUtils.nonNull;
 import static org.hisp.dhis.android.core.utils.StoreUtils.sqLiteBind;
 
@@ -62,6 +64,16 @@ public class ProgramStageDataElementStoreImpl implements ProgramStageDataElement
             ProgramStageDataElementModel.Columns.PROGRAM_STAGE_SECTION + ") " +
             "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);";
 
+    // program stage data elements are also handled through their program stage, which does not know the
+    // section: an unknown section must not overwrite a known one
+    private static final String UPSERT_STATEMENT = upsertStatement(INSERT_STATEMENT,
+            ProgramStageDataElementModel.Columns.UID).replace(
+            ProgramStageDataElementModel.Columns.PROGRAM_STAGE_SECTION + " = excluded." +
+                    ProgramStageDataElementModel.Columns.PROGRAM_STAGE_SECTION,
+            ProgramStageDataElementModel.Columns.PROGRAM_STAGE_SECTION + " = COALESCE(excluded." +
+                    ProgramStageDataElementModel.Columns.PROGRAM_STAGE_SECTION + ", " +
+                    ProgramStageDataElementModel.Columns.PROGRAM_STAGE_SECTION + ")");
+
     private static final String UPDATE_WITH_SECTION_STATEMENT = "UPDATE " +
             ProgramStageDataElementModel.TABLE + " SET " +
             ProgramStageDataElementModel.Columns.UID + " =?, " +
@@ -102,19 +114,14 @@ public class ProgramStageDataElementStoreImpl implements ProgramStageDataElement
     private static final String DELETE_STATEMENT = "DELETE FROM " + ProgramStageDataElementModel.TABLE + " WHERE " +
             ProgramStageDataElementModel.Columns.UID + " =?;";
 
-    private final SQLiteStatement insertStatement;
-    private final SQLiteStatement updateWithSectionStatement;
-    private final SQLiteStatement updateWithoutSectionStatement;
-    private final SQLiteStatement deleteStatement;
+    private final Upsert upsert;
 
     private final DatabaseAdapter databaseAdapter;
 
     public ProgramStageDataElementStoreImpl(DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
-        this.insertStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
-        this.updateWithSectionStatement = databaseAdapter.compileStatement(UPDATE_WITH_SECTION_STATEMENT);
-        this.updateWithoutSectionStatement = databaseAdapter.compileStatement(UPDATE_WITHOUT_SECTION_STATEMENT);
-        this.deleteStatement = databaseAdapter.compileStatement(DELETE_STATEMENT);
+        this.upsert = new Upsert(databaseAdapter, ProgramStageDataElementModel.TABLE,
+                INSERT_STATEMENT, UPSERT_STATEMENT);
     }
 
     @Override
@@ -125,6 +132,7 @@ public class ProgramStageDataElementStoreImpl implements ProgramStageDataElement
                        @Nullable Integer sortOrder, @NonNull Boolean allowFutureDate,
                        @NonNull String dataElement, @Nullable String programStageUid,
                        @Nullable String programStageSection) {
+        SQLiteStatement insertStatement = databaseAdapter.cachedStatement(INSERT_STATEMENT);
         nonNull(uid);
         nonNull(dataElement);
         nonNull(programStageUid);
@@ -140,6 +148,45 @@ public class ProgramStageDataElementStoreImpl implements ProgramStageDataElement
         return insert;
     }
 
+    @Override
+    public void upsert(@NonNull String uid, @Nullable String code, @Nullable String name,
+                       @Nullable String displayName, @NonNull Date created,
+                       @NonNull Date lastUpdated, @NonNull Boolean displayInReports,
+                       @NonNull Boolean compulsory, @NonNull Boolean allowProvidedElsewhere,
+                       @Nullable Integer sortOrder, @NonNull Boolean allowFutureDate,
+                       @NonNull String dataElement, @Nullable String programStageUid,
+                       @Nullable String programStageSection) {
+        SQLiteStatement statement = upsert.statement();
+        if (statement != null) {
+            nonNull(uid);
+            nonNull(dataElement);
+            nonNull(programStageUid);
+            bindArguments(statement, uid, code, name, displayName, created, lastUpdated, displayInReports, compulsory,
+                    allowProvidedElsewhere, sortOrder, allowFutureDate, dataElement, programStageUid);
+
+            // bind the optional argument program stage section
+            sqLiteBind(statement, 14, programStageSection);
+
+            if (upsert.execute()) {
+                return;
+            }
+        }
+
+        int updatedRow = programStageSection == null ?
+                updateWithoutSection(uid, code, name, displayName, created, lastUpdated, displayInReports,
+                        compulsory, allowProvidedElsewhere, sortOrder, allowFutureDate, dataElement,
+                        programStageUid, uid) :
+                updateWithSection(uid, code, name, displayName, created, lastUpdated, displayInReports,
+                        compulsory, allowProvidedElsewhere, sortOrder, allowFutureDate, dataElement,
+                        programStageUid, programStageSection, uid);
+        if (updatedRow <= 0) {
+            insert(uid, code, name, displayName, created, lastUpdated, displayInReports, compulsory,
+                    allowProvidedElsewhere, sortOrder, allowFutureDate, dataElement, programStageUid,
+                    programStageSection);
+            upsert.inserted();
+        }
+    }
+
     // TODO: Refactor updateWithSection and updateWithoutSection when programStageSection is available as a direct
     // TODO: property of the program stage data element. It should be there in March according to Morten and Lars.
     @Override
@@ -150,6 +197,7 @@ public class ProgramStageDataElementStoreImpl implements ProgramStageDataElement
                                  @NonNull Boolean allowFutureDate, @NonNull String dataElement,
                                  @Nullable String programStageUid, @Nullable String programStageSection,
                                  @NonNull String whereProgramStageDataElementUid) {
+        SQLiteStatement updateWithSectionStatement = databaseAdapter.cachedStatement(UPDATE_WITH_SECTION_STATEMENT);
         nonNull(uid);
         nonNull(dataElement);
         nonNull(programStageUid);
@@ -177,6 +225,8 @@ public class ProgramStageDataElementStoreImpl implements ProgramStageDataElement
                                     @NonNull Boolean allowProvidedElsewhere, @Nullable Integer sortOrder,
                                     @NonNull Boolean allowFutureDate, @NonNull String dataElement,
                                     @Nullable String programStageUid, @NonNull String whereProgramStageDataElementUid) {
+        SQLiteStatement updateWithoutSectionStatement =
+                databaseAdapter.cachedStatement(UPDATE_WITHOUT_SECTION_STATEMENT);
         nonNull(uid);
         nonNull(dataElement);
         nonNull(programStageUid);
@@ -199,6 +249,7 @@ public class ProgramStageDataElementStoreImpl implements ProgramStageDataElement
 
     @Override
     public int delete(@NonNull String uid) {
+        SQLiteStatement deleteStatement = databaseAdapter.cachedStatement(DELETE_STATEMENT);
         nonNull(uid);
         // bind the where argument
         sqLiteBind(deleteStatement, 1, uid);
@@ -27,6 +27,8 @@
  */
 package org.hisp.dhis.android.core.program;
 
+import org.hisp.dhis.android.core.common.ChangeDetector;
+
 import java.util.List;
 
 import static org.hisp.dhis.android.core.utils.Utils.isDeleted;
@@ -35,13 +37,16 @@ public class ProgramStageHandler {
     private final ProgramStageStore programStageStore;
     private final ProgramStageSectionHandler programStageSectionHandler;
     private final ProgramStageDataElementHandler programStageDataElementHandler;
+    private final ChangeDetector changeDetector;
 
     public ProgramStageHandler(ProgramStageStore programStageStore,
                                ProgramStageSectionHandler programStageSectionHandler,
-                               ProgramStageDataElementHandler programStageDataElementHandler) {
+                               ProgramStageDataElementHandler programStageDataElementHandler,
+                               ChangeDetector changeDetector) {
         this.programStageStore = programStageStore;
         this.programStageSectionHandler = programStageSectionHandler;
         this.programStageDataElementHandler = programStageDataElementHandler;
+        this.changeDetector = changeDetector;
     }
 
     public void handleProgramStage(String programUid, List<ProgramStage> programStages) {
@@ -52,9 +57,9 @@ public class ProgramStageHandler {
             ProgramStage programStage = programStages.get(i);
             if (isDeleted(programStage)) {
                 programStageStore.delete(programStage.uid());
-            } else {
-                int updatedRow = programStageStore.update(
-                        programStage.uid(), programStage.code(), programStage.name(),
+            } else if (changeDetector.hasChanged(ProgramStageModel.TABLE, programStage.uid(),
+                    programStage.lastUpdated())) {
+                programStageStore.upsert(programStage.uid(), programStage.code(), programStage.name(),
                         programStage.displayName(), programStage.created(), programStage.lastUpdated(),
                         programStage.executionDateLabel(), programStage.allowGenerateNextVisit(),
                         programStage.validCompleteOnly(), programStage.reportDateToUse(),
@@ -64,21 +69,7 @@ public class ProgramStageHandler {
                         programStage.generatedByEnrollmentDate(), programStage.autoGenerateEvent(),
                         programStage.sortOrder(), programStage.hideDueDate(),
                         programStage.blockEntryForm(), programStage.minDaysFromStart(),
-                        programStage.standardInterval(), programUid, programStage.uid()
-                );
-                if (updatedRow <= 0) {
-                    programStageStore.insert(programStage.uid(), programStage.code(), programStage.name(),
-                            programStage.displayName(), programStage.created(), programStage.lastUpdated(),
-                            programStage.executionDateLabel(), programStage.allowGenerateNextVisit(),
-                            programStage.validCompleteOnly(), programStage.reportDateToUse(),
-                            programStage.openAfterEnrollment(), programStage.repeatable(),
-                            programStage.captureCoordinates(), programStage.formType(),
-                            programStage.displayGenerateEventBox(),
-                            programStage.generatedByEnrollmentDate(), programStage.autoGenerateEvent(),
-                            programStage.sortOrder(), programStage.hideDueDate(),
-                            programStage.blockEntryForm(), programStage.minDaysFromStart(),
-                            programStage.standardInterval(), programUid);
-                }
+                        programStage.standardInterval(), programUid);
             }
             programStageSectionHandler.handleProgramStageSection(programStage.uid(),
                     programStage.programStageSections());
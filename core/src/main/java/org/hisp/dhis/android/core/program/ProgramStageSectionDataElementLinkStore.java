@@ -2,9 +2,18 @@ package org.hisp.dhis.android.core.program;
 
 import android.support.annotation.NonNull;
 
+import java.util.Collection;
+
 public interface ProgramStageSectionDataElementLinkStore {
     Long insert(@NonNull String programStageSection, @NonNull String dataElement);
 
     int update(@NonNull String programStageSection, @NonNull String dataElement,
                       @NonNull String whereProgramStageSection, @NonNull String whereDataElement);
+
+    /**
+     * Makes the given data elements the only ones linked to the program stage section.
+     *
+     * @return the number of links deleted and inserted
+     */
+    int replaceLinks(@NonNull String programStageSection, @NonNull Collection<String> dataElements);
 }
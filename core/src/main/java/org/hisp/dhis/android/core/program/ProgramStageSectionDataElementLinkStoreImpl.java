@@ -5,8 +5,11 @@ import android.database.sqlite.SQLiteStatement;
 import android.support.annotation.NonNull;
 
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.LinkSynchronizer;
 import org.hisp.dhis.android.core.program.ProgramStageSectionDataElementLinkModel.Columns;
 
+import java.util.Collection;
+
 import static org.hisp.dhis.android.core.utils.StoreUtils.nonNull;
 import static org.hisp.dhis.android.core.utils.StoreUtils.sqLiteBind;
 
@@ -22,16 +25,18 @@ public class ProgramStageSectionDataElementLinkStoreImpl implements ProgramStage
             Columns.PROGRAM_STAGE_SECTION + "=?, " + Columns.DATA_ELEMENT + "=? " +
             " WHERE " + Columns.PROGRAM_STAGE_SECTION + "=? " + " AND " + Columns.DATA_ELEMENT + "=?;";
 
-    private final SQLiteStatement insertStatement;
-    private final SQLiteStatement updateStatement;
+    private final DatabaseAdapter databaseAdapter;
+    private final LinkSynchronizer linkSynchronizer;
 
     public ProgramStageSectionDataElementLinkStoreImpl(DatabaseAdapter databaseAdapter) {
-        this.insertStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
-        this.updateStatement = databaseAdapter.compileStatement(UPDATE_STATEMENT);
+        this.databaseAdapter = databaseAdapter;
+        this.linkSynchronizer = new LinkSynchronizer(databaseAdapter, ProgramStageSectionDataElementLinkModel.TABLE,
+                Columns.DATA_ELEMENT, Columns.PROGRAM_STAGE_SECTION);
     }
 
     @Override
     public Long insert(@NonNull String programStageSection, @NonNull String dataElement) {
+        SQLiteStatement insertStatement = databaseAdapter.cachedStatement(INSERT_STATEMENT);
 
         nonNull(programStageSection);
         nonNull(dataElement);
@@ -47,6 +52,7 @@ public class ProgramStageSectionDataElementLinkStoreImpl implements ProgramStage
     @Override
     public int update(@NonNull String programStageSection, @NonNull String dataElement,
                       @NonNull String whereProgramStageSection, @NonNull String whereDataElement) {
+        SQLiteStatement updateStatement = databaseAdapter.cachedStatement(UPDATE_STATEMENT);
 
         nonNull(programStageSection);
         nonNull(dataElement);
@@ -62,4 +68,13 @@ public class ProgramStageSectionDataElementLinkStoreImpl implements ProgramStage
         updateStatement.clearBindings();
         return result;
     }
+
+    @Override
+    public int replaceLinks(@NonNull String programStageSection,
+                            @NonNull Collection<String> dataElements) {
+        nonNull(programStageSection);
+        nonNull(dataElements);
+
+        return linkSynchronizer.replaceLinks(dataElements, programStageSection);
+    }
 }
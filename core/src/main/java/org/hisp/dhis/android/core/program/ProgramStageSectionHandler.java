@@ -27,8 +27,10 @@
  */
 package org.hisp.dhis.android.core.program;
 
+import org.hisp.dhis.android.core.common.ChangeDetector;
 import org.hisp.dhis.android.core.dataelement.DataElement;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.hisp.dhis.android.core.utils.Utils.isDeleted;
@@ -37,13 +39,16 @@ public class ProgramStageSectionHandler {
     private final ProgramStageSectionStore programStageSectionStore;
     private final ProgramStageSectionDataElementLinkStore programStageSectionDataElementLinkStore;
     private final ProgramIndicatorHandler programIndicatorHandler;
+    private final ChangeDetector changeDetector;
 
     public ProgramStageSectionHandler(ProgramStageSectionStore programStageSectionStore,
                                       ProgramStageSectionDataElementLinkStore programStageSectionDataElementLinkStore,
-                                      ProgramIndicatorHandler programIndicatorHandler) {
+                                      ProgramIndicatorHandler programIndicatorHandler,
+                                      ChangeDetector changeDetector) {
         this.programStageSectionStore = programStageSectionStore;
         this.programStageSectionDataElementLinkStore = programStageSectionDataElementLinkStore;
         this.programIndicatorHandler = programIndicatorHandler;
+        this.changeDetector = changeDetector;
     }
 
     public void handleProgramStageSection(String programStageUid, List<ProgramStageSection> programStageSections) {
@@ -55,35 +60,23 @@ public class ProgramStageSectionHandler {
 
             if (isDeleted(programStageSection)) {
                 programStageSectionStore.delete(programStageSection.uid());
-            } else {
-                int updatedRow = programStageSectionStore.update(
+            } else if (changeDetector.hasChanged(ProgramStageSectionModel.TABLE, programStageSection.uid(),
+                    programStageSection.lastUpdated())) {
+                programStageSectionStore.upsert(
                         programStageSection.uid(), programStageSection.code(),
-                        programStageSection.name(), programStageSection.displayName(), programStageSection.created(),
-                        programStageSection.lastUpdated(), programStageSection.sortOrder(),
-                        programStageUid, programStageSection.uid()
+                        programStageSection.name(), programStageSection.displayName(),
+                        programStageSection.created(), programStageSection.lastUpdated(),
+                        programStageSection.sortOrder(), programStageUid
                 );
-
-                if (updatedRow <= 0) {
-                    programStageSectionStore.insert(
-                            programStageSection.uid(), programStageSection.code(),
-                            programStageSection.name(), programStageSection.displayName(),
-                            programStageSection.created(), programStageSection.lastUpdated(),
-                            programStageSection.sortOrder(), programStageUid
-                    );
-                }
             }
-            //Loop over the list and add all entries
-            String pssUid = programStageSection.uid();
+            // the links of a deleted section are deleted with it
             List<DataElement> dataElements = programStageSection.dataElements();
-            for(int j = 0, deSize = dataElements.size(); j < deSize; j++) {
-                String deUid = dataElements.get(j).uid();
-                //TODO: figure out a way to handle deletions. Maybe dump all pssUid entries and re-insert all ?
-                //TODO: double check if this is right: (Problem is with the fact that neither pssUid, nor deUid are
-                // defined as unique in the table (and should not be).
-                int updated = programStageSectionDataElementLinkStore.update(pssUid, deUid, pssUid, deUid);
-                if(updated <= 0) {
-                    programStageSectionDataElementLinkStore.insert(pssUid, deUid);
+            if (!isDeleted(programStageSection) && dataElements != null) {
+                List<String> dataElementUids = new ArrayList<>(dataElements.size());
+                for (int j = 0, deSize = dataElements.size(); j < deSize; j++) {
+                    dataElementUids.add(dataElements.get(j).uid());
                 }
+                programStageSectionDataElementLinkStore.replaceLinks(programStageSection.uid(), dataElementUids);
             }
             programIndicatorHandler.handleProgramIndicator(programStageSection.uid(),
                     programStageSection.programIndicators());
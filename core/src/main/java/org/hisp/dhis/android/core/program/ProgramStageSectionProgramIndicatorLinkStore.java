@@ -29,9 +29,25 @@ package org.hisp.dhis.android.core.program;
 
 import android.support.annotation.NonNull;
 
+import java.util.Collection;
+
 public interface ProgramStageSectionProgramIndicatorLinkStore {
     Long insert(@NonNull String programStageSection, @NonNull String programIndicator);
 
+    /**
+     * Inserts the link unless it exists already.
+     *
+     * @return the row id of the inserted link, or -1 if it existed already
+     */
+    long insertIfNotExists(@NonNull String programStageSection, @NonNull String programIndicator);
+
     int update(@NonNull String programStageSection, @NonNull String programIndicator,
                @NonNull String whereProgramStageSection, @NonNull String whereProgramIndicator);
+
+    /**
+     * Makes the given program indicators the only ones linked to the program stage section.
+     *
+     * @return the number of links deleted and inserted
+     */
+    int replaceLinks(@NonNull String programStageSection, @NonNull Collection<String> programIndicators);
 }
@@ -31,6 +31,9 @@ import android.database.sqlite.SQLiteStatement;
 import android.support.annotation.NonNull;
 
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.LinkSynchronizer;
+
+import java.util.Collection;
 
 import static org.hisp.dhis.android.core.utils.StoreUtils.nonNull;
 import static org.hisp.dhis.android.core.utils.StoreUtils.sqLiteBind;
@@ -42,6 +45,12 @@ public class ProgramStageSectionProgramIndicatorLinkStoreImpl implements Program
             ProgramStageSectionProgramIndicatorLinkModel.Columns.PROGRAM_INDICATOR + ") " +
             "VALUES(?, ?);";
 
+    private static final String INSERT_IF_NOT_EXISTS_STATEMENT = "INSERT OR IGNORE INTO " +
+            ProgramStageSectionProgramIndicatorLinkModel.TABLE + " (" +
+            ProgramStageSectionProgramIndicatorLinkModel.Columns.PROGRAM_STAGE_SECTION + ", " +
+            ProgramStageSectionProgramIndicatorLinkModel.Columns.PROGRAM_INDICATOR + ") " +
+            "VALUES(?, ?);";
+
     private static final String UPDATE_STATEMENT = "UPDATE " +
             ProgramStageSectionProgramIndicatorLinkModel.TABLE + " SET " +
             ProgramStageSectionProgramIndicatorLinkModel.Columns.PROGRAM_STAGE_SECTION + " =?, " +
@@ -49,16 +58,21 @@ public class ProgramStageSectionProgramIndicatorLinkStoreImpl implements Program
             " WHERE " + ProgramStageSectionProgramIndicatorLinkModel.Columns.PROGRAM_STAGE_SECTION + " =? " +
             " AND " + ProgramStageSectionProgramIndicatorLinkModel.Columns.PROGRAM_INDICATOR + " =?;";
 
-    private final SQLiteStatement insertStatement;
-    private final SQLiteStatement updateStatement;
+
+    private final DatabaseAdapter databaseAdapter;
+    private final LinkSynchronizer linkSynchronizer;
 
     public ProgramStageSectionProgramIndicatorLinkStoreImpl(DatabaseAdapter databaseAdapter) {
-        this.insertStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
-        this.updateStatement = databaseAdapter.compileStatement(UPDATE_STATEMENT);
+        this.databaseAdapter = databaseAdapter;
+        this.linkSynchronizer = new LinkSynchronizer(databaseAdapter,
+                ProgramStageSectionProgramIndicatorLinkModel.TABLE,
+                ProgramStageSectionProgramIndicatorLinkModel.Columns.PROGRAM_INDICATOR,
+                ProgramStageSectionProgramIndicatorLinkModel.Columns.PROGRAM_STAGE_SECTION);
     }
 
     @Override
     public Long insert(@NonNull String programStageSection, @NonNull String programIndicator) {
+        SQLiteStatement insertStatement = databaseAdapter.cachedStatement(INSERT_STATEMENT);
 
         nonNull(programStageSection);
         nonNull(programIndicator);
@@ -71,9 +85,25 @@ public class ProgramStageSectionProgramIndicatorLinkStoreImpl implements Program
         return insert;
     }
 
+    @Override
+    public long insertIfNotExists(@NonNull String programStageSection, @NonNull String programIndicator) {
+        SQLiteStatement insertIfNotExistsStatement = databaseAdapter.cachedStatement(INSERT_IF_NOT_EXISTS_STATEMENT);
+        nonNull(programStageSection);
+        nonNull(programIndicator);
+
+        sqLiteBind(insertIfNotExistsStatement, 1, programStageSection);
+        sqLiteBind(insertIfNotExistsStatement, 2, programIndicator);
+
+        long insert = databaseAdapter.executeInsert(
+                ProgramStageSectionProgramIndicatorLinkModel.TABLE, insertIfNotExistsStatement);
+        insertIfNotExistsStatement.clearBindings();
+        return insert;
+    }
+
     @Override
     public int update(@NonNull String programStageSection, @NonNull String programIndicator,
                       @NonNull String whereProgramStageSection, @NonNull String whereProgramIndicator) {
+        SQLiteStatement updateStatement = databaseAdapter.cachedStatement(UPDATE_STATEMENT);
         nonNull(programStageSection);
         nonNull(programIndicator);
         nonNull(whereProgramStageSection);
@@ -91,4 +121,13 @@ public class ProgramStageSectionProgramIndicatorLinkStoreImpl implements Program
         updateStatement.clearBindings();
         return update;
     }
+
+    @Override
+    public int replaceLinks(@NonNull String programStageSection,
+                            @NonNull Collection<String> programIndicators) {
+        nonNull(programStageSection);
+        nonNull(programIndicators);
+
+        return linkSynchronizer.replaceLinks(programIndicators, programStageSection);
+    }
 }
@@ -40,6 +40,15 @@ public interface ProgramStageSectionStore {
             @Nullable Integer sortOrder, @Nullable String programStage
     );
 
+    /**
+     * Inserts the row, or updates it if a row with the same uid exists already.
+     */
+    void upsert(
+            @NonNull String uid, @Nullable String code, @NonNull String name,
+            @NonNull String displayName, @NonNull Date created, @NonNull Date lastUpdated,
+            @Nullable Integer sortOrder, @Nullable String programStage
+    );
+
     int update(@NonNull String uid, @Nullable String code, @NonNull String name,
                @NonNull String displayName, @NonNull Date created, @NonNull Date lastUpdated,
                @Nullable Integer sortOrder, @Nullable String programStage,
@@ -33,9 +33,11 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Upsert;
 
 import java.util.Date;
 
+import static org.hisp.dhis.android.core.data.database.DbUtils.upsertStatement;
 import static org.hisp.dhis.android.core.utils.StoreUtils.nonNull;
 import static org.hisp.dhis.android.core.utils.StoreUtils.sqLiteBind;
 
@@ -56,6 +58,9 @@ public class ProgramStageSectionStoreImpl implements ProgramStageSectionStore {
             ProgramStageSectionModel.Columns.PROGRAM_STAGE + ") " +
             "VALUES (?, ?, ?, ?, ?, ?, ?, ?);";
 
+    private static final String UPSERT_STATEMENT = upsertStatement(INSERT_STATEMENT,
+            ProgramStageSectionModel.Columns.UID);
+
     private static final String UPDATE_STATEMENT = "UPDATE " + ProgramStageSectionModel.TABLE + " SET " +
             ProgramStageSectionModel.Columns.UID + " =?, " +
             ProgramStageSectionModel.Columns.CODE + " =?, " +
@@ -70,17 +75,13 @@ public class ProgramStageSectionStoreImpl implements ProgramStageSectionStore {
     private static final String DELETE_STATEMENT = "DELETE FROM " + ProgramStageSectionModel.TABLE +
             " WHERE " + ProgramStageSectionModel.Columns.UID + " =?;";
 
-    private final SQLiteStatement insertStatement;
-    private final SQLiteStatement updateStatement;
-    private final SQLiteStatement deleteStatement;
+    private final Upsert upsert;
 
     private final DatabaseAdapter databaseAdapter;
 
     public ProgramStageSectionStoreImpl(DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
-        this.insertStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
-        this.updateStatement = databaseAdapter.compileStatement(UPDATE_STATEMENT);
-        this.deleteStatement = databaseAdapter.compileStatement(DELETE_STATEMENT);
+        this.upsert = new Upsert(databaseAdapter, ProgramStageSectionModel.TABLE, INSERT_STATEMENT, UPSERT_STATEMENT);
     }
 
     @Override
@@ -88,6 +89,7 @@ public class ProgramStageSectionStoreImpl implements ProgramStageSectionStore {
                        @NonNull String name, @NonNull String displayName,
                        @NonNull Date created, @NonNull Date lastUpdated,
                        @Nullable Integer sortOrder, @Nullable String programStage) {
+        SQLiteStatement insertStatement = databaseAdapter.cachedStatement(INSERT_STATEMENT);
         nonNull(uid);
         nonNull(programStage);
         bindArguments(insertStatement, uid, code, name, displayName, created, lastUpdated, sortOrder, programStage);
@@ -98,10 +100,33 @@ public class ProgramStageSectionStoreImpl implements ProgramStageSectionStore {
         return insert;
     }
 
+    @Override
+    public void upsert(@NonNull String uid, @Nullable String code,
+                       @NonNull String name, @NonNull String displayName,
+                       @NonNull Date created, @NonNull Date lastUpdated,
+                       @Nullable Integer sortOrder, @Nullable String programStage) {
+        SQLiteStatement statement = upsert.statement();
+        if (statement != null) {
+            nonNull(uid);
+            nonNull(programStage);
+            bindArguments(statement, uid, code, name, displayName, created, lastUpdated, sortOrder, programStage);
+
+            if (upsert.execute()) {
+                return;
+            }
+        }
+
+        if (update(uid, code, name, displayName, created, lastUpdated, sortOrder, programStage, uid) <= 0) {
+            insert(uid, code, name, displayName, created, lastUpdated, sortOrder, programStage);
+            upsert.inserted();
+        }
+    }
+
     @Override
     public int update(@NonNull String uid, @Nullable String code, @NonNull String name, @NonNull String displayName,
                       @NonNull Date created, @NonNull Date lastUpdated, @Nullable Integer sortOrder,
                       @Nullable String programStage, @NonNull String whereProgramStageSectionUid) {
+        SQLiteStatement updateStatement = databaseAdapter.cachedStatement(UPDATE_STATEMENT);
         nonNull(uid);
         nonNull(programStage);
         nonNull(whereProgramStageSectionUid);
@@ -119,6 +144,7 @@ public class ProgramStageSectionStoreImpl implements ProgramStageSectionStore {
 
     @Override
     public int delete(String uid) {
+        SQLiteStatement deleteStatement = databaseAdapter.cachedStatement(DELETE_STATEMENT);
         nonNull(uid);
         sqLiteBind(deleteStatement, 1, uid);
         int delete = databaseAdapter.executeUpdateDelete(ProgramStageSectionModel.TABLE, deleteStatement);
@@ -49,6 +49,22 @@ public interface ProgramStageStore {
             @NonNull String program
     );
 
+    /**
+     * Inserts the row, or updates it if a row with the same uid exists already.
+     */
+    void upsert(
+            @NonNull String uid, @Nullable String code, @NonNull String name, @NonNull String displayName,
+            @NonNull Date created, @NonNull Date lastUpdated, @Nullable String executionDateLabel,
+            @NonNull Boolean allowGenerateNextVisit, @NonNull Boolean validCompleteOnly,
+            @Nullable String reportDateToUse, @NonNull Boolean openAfterEnrollment,
+            @NonNull Boolean repeatable, @NonNull Boolean captureCoordinates,
+            @NonNull FormType formType, @NonNull Boolean displayGenerateEventBox,
+            @NonNull Boolean generatedByEnrollmentDate, @NonNull Boolean autoGenerateEvent,
+            @NonNull Integer sortOrder, @NonNull Boolean hideDueDate, @NonNull Boolean blockEntryForm,
+            @NonNull Integer minDaysFromStart, @NonNull Integer standardInterval,
+            @NonNull String program
+    );
+
     int update(@NonNull String uid, @Nullable String code, @NonNull String name, @NonNull String displayName,
                @NonNull Date created, @NonNull Date lastUpdated, @Nullable String executionDateLabel,
                @NonNull Boolean allowGenerateNextVisit, @NonNull Boolean validCompleteOnly,
@@ -34,9 +34,11 @@ import android.support.annotation.Nullable;
 
 import org.hisp.dhis.android.core.common.FormType;
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Upsert;
 
 import java.util.Date;
 
+import static org.hisp.dhis.android.core.data.database.DbUtils.upsertStatement;
 import static org.hisp.dhis.android.core.utils.StoreUtils.nonNull;
 import static org.hisp.dhis.android.core.utils.StoreUtils.sqLiteBind;
 
@@ -70,6 +72,8 @@ public class ProgramStageStoreImpl implements ProgramStageStore {
             ProgramStageModel.Columns.PROGRAM + ") " +
             "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);";
 
+    private static final String UPSERT_STATEMENT = upsertStatement(INSERT_STATEMENT, ProgramStageModel.Columns.UID);
+
     private static final String UPDATE_STATEMENT = "UPDATE " + ProgramStageModel.TABLE + " SET " +
             ProgramStageModel.Columns.UID + " =?, " +
             ProgramStageModel.Columns.CODE + " =?, " +
@@ -99,17 +103,13 @@ public class ProgramStageStoreImpl implements ProgramStageStore {
     private static final String DELETE_STATEMENT = "DELETE FROM " + ProgramStageModel.TABLE + " WHERE " +
             ProgramStageModel.Columns.UID + " =?;";
 
-    private final SQLiteStatement insertStatement;
-    private final SQLiteStatement updateStatement;
-    private final SQLiteStatement deleteStatement;
+    private final Upsert upsert;
 
     private final DatabaseAdapter databaseAdapter;
 
     public ProgramStageStoreImpl(DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
-        this.insertStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
-        this.updateStatement = databaseAdapter.compileStatement(UPDATE_STATEMENT);
-        this.deleteStatement = databaseAdapter.compileStatement(DELETE_STATEMENT);
+        this.upsert = new Upsert(databaseAdapter, ProgramStageModel.TABLE, INSERT_STATEMENT, UPSERT_STATEMENT);
     }
 
     @Override
@@ -136,6 +136,7 @@ public class ProgramStageStoreImpl implements ProgramStageStore {
                        @NonNull Integer minDaysFromStart,
                        @NonNull Integer standardInterval,
                        @NonNull String program) {
+        SQLiteStatement insertStatement = databaseAdapter.cachedStatement(INSERT_STATEMENT);
         nonNull(uid);
         nonNull(program);
         bindArguments(insertStatement, uid, code, name, displayName, created, lastUpdated, executionDateLabel,
@@ -149,6 +150,56 @@ public class ProgramStageStoreImpl implements ProgramStageStore {
         return insert;
     }
 
+    @Override
+    public void upsert(@NonNull String uid,
+                       @Nullable String code,
+                       @NonNull String name,
+                       @NonNull String displayName,
+                       @NonNull Date created,
+                       @NonNull Date lastUpdated,
+                       @Nullable String executionDateLabel,
+                       @NonNull Boolean allowGenerateNextVisit,
+                       @NonNull Boolean validCompleteOnly,
+                       @Nullable String reportDateToUse,
+                       @NonNull Boolean openAfterEnrollment,
+                       @NonNull Boolean repeatable,
+                       @NonNull Boolean captureCoordinates,
+                       @NonNull FormType formType,
+                       @NonNull Boolean displayGenerateEventBox,
+                       @NonNull Boolean generatedByEnrollmentDate,
+                       @NonNull Boolean autoGenerateEvent,
+                       @NonNull Integer sortOrder,
+                       @NonNull Boolean hideDueDate,
+                       @NonNull Boolean blockEntryForm,
+                       @NonNull Integer minDaysFromStart,
+                       @NonNull Integer standardInterval,
+                       @NonNull String program) {
+        SQLiteStatement statement = upsert.statement();
+        if (statement != null) {
+            nonNull(uid);
+            nonNull(program);
+            bindArguments(statement, uid, code, name, displayName, created, lastUpdated, executionDateLabel,
+                    allowGenerateNextVisit, validCompleteOnly, reportDateToUse, openAfterEnrollment, repeatable,
+                    captureCoordinates, formType, displayGenerateEventBox, generatedByEnrollmentDate, autoGenerateEvent,
+                    sortOrder, hideDueDate, blockEntryForm, minDaysFromStart, standardInterval, program);
+
+            if (upsert.execute()) {
+                return;
+            }
+        }
+
+        if (update(uid, code, name, displayName, created, lastUpdated, executionDateLabel, allowGenerateNextVisit,
+                validCompleteOnly, reportDateToUse, openAfterEnrollment, repeatable, captureCoordinates, formType,
+                displayGenerateEventBox, generatedByEnrollmentDate, autoGenerateEvent, sortOrder, hideDueDate,
+                blockEntryForm, minDaysFromStart, standardInterval, program, uid) <= 0) {
+            insert(uid, code, name, displayName, created, lastUpdated, executionDateLabel, allowGenerateNextVisit,
+                    validCompleteOnly, reportDateToUse, openAfterEnrollment, repeatable, captureCoordinates,
+                    formType, displayGenerateEventBox, generatedByEnrollmentDate, autoGenerateEvent, sortOrder,
+                    hideDueDate, blockEntryForm, minDaysFromStart, standardInterval, program);
+            upsert.inserted();
+        }
+    }
+
     @Override
     public int update(@NonNull String uid, @Nullable String code, @NonNull String name, @NonNull String displayName,
                       @NonNull Date created, @NonNull Date lastUpdated, @Nullable String executionDateLabel,
@@ -160,6 +211,7 @@ public class ProgramStageStoreImpl implements ProgramStageStore {
                       @NonNull Integer sortOrder, @NonNull Boolean hideDueDate, @NonNull Boolean blockEntryForm,
                       @NonNull Integer minDaysFromStart, @NonNull Integer standardInterval,
                       @NonNull String program, @NonNull String whereProgramStageUid) {
+        SQLiteStatement updateStatement = databaseAdapter.cachedStatement(UPDATE_STATEMENT);
         nonNull(uid);
         nonNull(program);
         nonNull(whereProgramStageUid);
@@ -181,6 +233,7 @@ public class ProgramStageStoreImpl implements ProgramStageStore {
 
     @Override
     public int delete(@NonNull String uid) {
+        SQLiteStatement deleteStatement = databaseAdapter.cachedStatement(DELETE_STATEMENT);
         nonNull(uid);
         // bind the where argument
         sqLiteBind(deleteStatement, 1, uid);
@@ -68,6 +68,41 @@ public interface ProgramStore {
 //            @NonNull CategoryCombo categoryCombo
     );
 
+    /**
+     * Inserts the row, or updates it if a row with the same uid exists already.
+     */
+    void upsert(
+            @NonNull String uid,
+            @Nullable String code,
+            @NonNull String name,
+            @Nullable String displayName,
+            @Nullable Date created,
+            @Nullable Date lastUpdated,
+            @Nullable String shortName,
+            @Nullable String displayShortName,
+            @Nullable String description,
+            @Nullable String displayDescription,
+            @Nullable Integer version,
+            @Nullable Boolean onlyEnrollOnce,
+            @Nullable String enrollmentDateLabel,
+            @Nullable Boolean displayIncidentDate,
+            @Nullable String incidentDateLabel,
+            @Nullable Boolean registration,
+            @Nullable Boolean selectEnrollmentDatesInFuture,
+            @Nullable Boolean dataEntryMethod,
+            @Nullable Boolean ignoreOverdueEvents,
+            @Nullable Boolean relationshipFromA,
+            @Nullable Boolean selectIncidentDatesInFuture,
+            @Nullable Boolean captureCoordinates,
+            @Nullable Boolean useFirstStageDuringRegistration,
+            @Nullable Boolean displayInFrontPageList,
+            @Nullable ProgramType programType,
+            @Nullable String relationshipType,
+            @Nullable String relationshipText,
+            @Nullable String relatedProgram,
+            @Nullable String trackedEntity
+    );
+
     int update(
             @NonNull String uid,
             @Nullable String code,
@@ -33,9 +33,13 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Upsert;
 
 import java.util.Date;
 
+import static org.hisp.dhis.android.core.data.database.DbUtils.insertStatement;
+import static org.hisp.dhis.android.core.data.database.DbUtils.updateStatement;
+import static org.hisp.dhis.android.core.data.database.DbUtils.upsertStatement;
 import static org.hisp.dhis.android.core.utils.StoreUtils.nonNull;
 import static org.hisp.dhis.android.core.utils.StoreUtils.sqLiteBind;
 
@@ -43,89 +47,25 @@ import static org.hisp.dhis.android.core.utils.StoreUtils.sqLiteBind;
         "PMD.AvoidDuplicateLiterals"
 })
 public class ProgramStoreImpl implements ProgramStore {
-    private static final String INSERT_STATEMENT = "INSERT INTO " + ProgramModel.TABLE + " (" +
-            ProgramModel.Columns.UID + ", " +
-            ProgramModel.Columns.CODE + ", " +
-            ProgramModel.Columns.NAME + ", " +
-            ProgramModel.Columns.DISPLAY_NAME + ", " +
-            ProgramModel.Columns.CREATED + ", " +
-            ProgramModel.Columns.LAST_UPDATED + ", " +
-            ProgramModel.Columns.SHORT_NAME + ", " +
-            ProgramModel.Columns.DISPLAY_SHORT_NAME + ", " +
-            ProgramModel.Columns.DESCRIPTION + ", " +
-            ProgramModel.Columns.DISPLAY_DESCRIPTION + ", " +
-            ProgramModel.Columns.VERSION + ", " +
-            ProgramModel.Columns.ONLY_ENROLL_ONCE + ", " +
-            ProgramModel.Columns.ENROLLMENT_DATE_LABEL + ", " +
-            ProgramModel.Columns.DISPLAY_INCIDENT_DATE + ", " +
-            ProgramModel.Columns.INCIDENT_DATE_LABEL + ", " +
-            ProgramModel.Columns.REGISTRATION + ", " +
-            ProgramModel.Columns.SELECT_ENROLLMENT_DATES_IN_FUTURE + ", " +
-            ProgramModel.Columns.DATA_ENTRY_METHOD + ", " +
-            ProgramModel.Columns.IGNORE_OVERDUE_EVENTS + ", " +
-            ProgramModel.Columns.RELATIONSHIP_FROM_A + ", " +
-            ProgramModel.Columns.SELECT_INCIDENT_DATES_IN_FUTURE + ", " +
-            ProgramModel.Columns.CAPTURE_COORDINATES + ", " +
-            ProgramModel.Columns.USE_FIRST_STAGE_DURING_REGISTRATION + ", " +
-            ProgramModel.Columns.DISPLAY_FRONT_PAGE_LIST + ", " +
-            ProgramModel.Columns.PROGRAM_TYPE + ", " +
-            ProgramModel.Columns.RELATIONSHIP_TYPE + ", " +
-            ProgramModel.Columns.RELATIONSHIP_TEXT + ", " +
-            ProgramModel.Columns.RELATED_PROGRAM + ", " +
-            ProgramModel.Columns.TRACKED_ENTITY + ") " +
-            "VALUES (" +
-            "?, ?, ?, ?, ?, ?, ?, ?, ?, ?, " +
-            "?, ?, ?, ?, ?, ?, ?, ?, ?, ?, " +
-            "?, ?, ?, ?, ?, ?, ?, ?, ?);";
-
-    private static final String UPDATE_STATEMENT = "UPDATE " + ProgramModel.TABLE + " SET " +
-            ProgramModel.Columns.UID + " =?, " +
-            ProgramModel.Columns.CODE + " =?, " +
-            ProgramModel.Columns.NAME + " =?, " +
-            ProgramModel.Columns.DISPLAY_NAME + " =?, " +
-            ProgramModel.Columns.CREATED + " =?, " +
-            ProgramModel.Columns.LAST_UPDATED + " =?, " +
-            ProgramModel.Columns.SHORT_NAME + " =?, " +
-            ProgramModel.Columns.DISPLAY_SHORT_NAME + " =?, " +
-            ProgramModel.Columns.DESCRIPTION + " =?, " +
-            ProgramModel.Columns.DISPLAY_DESCRIPTION + " =?, " +
-            ProgramModel.Columns.VERSION + " =?, " +
-            ProgramModel.Columns.ONLY_ENROLL_ONCE + " =?, " +
-            ProgramModel.Columns.ENROLLMENT_DATE_LABEL + " =?, " +
-            ProgramModel.Columns.DISPLAY_INCIDENT_DATE + " =?, " +
-            ProgramModel.Columns.INCIDENT_DATE_LABEL + " =?, " +
-            ProgramModel.Columns.REGISTRATION + " =?, " +
-            ProgramModel.Columns.SELECT_ENROLLMENT_DATES_IN_FUTURE + " =?, " +
-            ProgramModel.Columns.DATA_ENTRY_METHOD + " =?, " +
-            ProgramModel.Columns.IGNORE_OVERDUE_EVENTS + " =?, " +
-            ProgramModel.Columns.RELATIONSHIP_FROM_A + " =?, " +
-            ProgramModel.Columns.SELECT_INCIDENT_DATES_IN_FUTURE + " =?, " +
-            ProgramModel.Columns.CAPTURE_COORDINATES + " =?, " +
-            ProgramModel.Columns.USE_FIRST_STAGE_DURING_REGISTRATION + " =?, " +
-            ProgramModel.Columns.DISPLAY_FRONT_PAGE_LIST + " =?, " +
-            ProgramModel.Columns.PROGRAM_TYPE + " =?, " +
-            ProgramModel.Columns.RELATIONSHIP_TYPE + " =?, " +
-            ProgramModel.Columns.RELATIONSHIP_TEXT + " =?, " +
-            ProgramModel.Columns.RELATED_PROGRAM + " =?, " +
-            ProgramModel.Columns.TRACKED_ENTITY + " =? " +
-            " WHERE " +
-            ProgramModel.Columns.UID + " = ?;";
+    private static final String INSERT_STATEMENT = insertStatement(ProgramModel.TABLE, ProgramModel.boundColumns());
 
+    private static final String UPSERT_STATEMENT = upsertStatement(INSERT_STATEMENT, ProgramModel.Columns.UID);
+
+    private static final String UPDATE_STATEMENT = updateStatement(
+            ProgramModel.TABLE, ProgramModel.boundColumns(), ProgramModel.Columns.UID);
+
+    private static final int WHERE_UID_INDEX = ProgramModel.boundColumns().length + 1;
 
     private static final String DELETE_STATEMENT = "DELETE FROM " + ProgramModel.TABLE + " WHERE " +
             ProgramModel.Columns.UID + " =?;";
 
-    private final SQLiteStatement insertStatement;
-    private final SQLiteStatement updateStatement;
-    private final SQLiteStatement deleteStatement;
+    private final Upsert upsert;
 
     private final DatabaseAdapter databaseAdapter;
 
     public ProgramStoreImpl(DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
-        this.insertStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
-        this.updateStatement = databaseAdapter.compileStatement(UPDATE_STATEMENT);
-        this.deleteStatement = databaseAdapter.compileStatement(DELETE_STATEMENT);
+        this.upsert = new Upsert(databaseAdapter, ProgramModel.TABLE, INSERT_STATEMENT, UPSERT_STATEMENT);
     }
 
     @Override
@@ -162,19 +102,69 @@ public class ProgramStoreImpl implements ProgramStore {
             //TODO: add category combo when implemented.
 //            @NonNull CategoryCombo categoryCombo
     ) {
+        return insert(program(uid, code, name, displayName, created, lastUpdated, shortName, displayShortName,
+                description, displayDescription, version, onlyEnrollOnce, enrollmentDateLabel, displayIncidentDate,
+                incidentDateLabel, registration, selectEnrollmentDatesInFuture, dataEntryMethod,
+                ignoreOverdueEvents, relationshipFromA, selectIncidentDatesInFuture, captureCoordinates,
+                useFirstStageDuringRegistration, displayInFrontPageList, programType,
+                relationshipType, relationshipText, relatedProgram, trackedEntity));
+    }
 
-        nonNull(uid);
-        bindArguments(insertStatement, uid, code, name, displayName, created, lastUpdated, shortName, displayShortName,
+    @Override
+    public void upsert(
+            @NonNull String uid,
+            @Nullable String code,
+            @NonNull String name,
+            @Nullable String displayName,
+            @Nullable Date created,
+            @Nullable Date lastUpdated,
+            @Nullable String shortName,
+            @Nullable String displayShortName,
+            @Nullable String description,
+            @Nullable String displayDescription,
+            @Nullable Integer version,
+            @Nullable Boolean onlyEnrollOnce,
+            @Nullable String enrollmentDateLabel,
+            @Nullable Boolean displayIncidentDate,
+            @Nullable String incidentDateLabel,
+            @Nullable Boolean registration,
+            @Nullable Boolean selectEnrollmentDatesInFuture,
+            @Nullable Boolean dataEntryMethod,
+            @Nullable Boolean ignoreOverdueEvents,
+            @Nullable Boolean relationshipFromA,
+            @Nullable Boolean selectIncidentDatesInFuture,
+            @Nullable Boolean captureCoordinates,
+            @Nullable Boolean useFirstStageDuringRegistration,
+            @Nullable Boolean displayInFrontPageList,
+            @Nullable ProgramType programType,
+            @Nullable String relationshipType,
+            @Nullable String relationshipText,
+            @Nullable String relatedProgram,
+            @Nullable String trackedEntity
+            //TODO: add category combo when implemented.
+//            @NonNull CategoryCombo categoryCombo
+    ) {
+        ProgramModel program = program(uid, code, name, displayName, created, lastUpdated, shortName, displayShortName,
                 description, displayDescription, version, onlyEnrollOnce, enrollmentDateLabel, displayIncidentDate,
                 incidentDateLabel, registration, selectEnrollmentDatesInFuture, dataEntryMethod,
                 ignoreOverdueEvents, relationshipFromA, selectIncidentDatesInFuture, captureCoordinates,
                 useFirstStageDuringRegistration, displayInFrontPageList, programType,
                 relationshipType, relationshipText, relatedProgram, trackedEntity);
 
-        Long insert = databaseAdapter.executeInsert(ProgramModel.TABLE, insertStatement);
-        insertStatement.clearBindings();
+        SQLiteStatement statement = upsert.statement();
+        if (statement != null) {
+            nonNull(uid);
+            program.bindTo(statement, 1);
 
-        return insert;
+            if (upsert.execute()) {
+                return;
+            }
+        }
+
+        if (update(program, uid) <= 0) {
+            insert(program);
+            upsert.inserted();
+        }
     }
 
     @Override
@@ -208,28 +198,18 @@ public class ProgramStoreImpl implements ProgramStore {
                       @Nullable String relatedProgram,
                       @Nullable String trackedEntity,
                       @NonNull String whereProgramUid) {
-        nonNull(uid);
-        nonNull(whereProgramUid);
-        bindArguments(updateStatement, uid, code, name, displayName, created, lastUpdated, shortName, displayShortName,
+        return update(program(uid, code, name, displayName, created, lastUpdated, shortName, displayShortName,
                 description, displayDescription, version, onlyEnrollOnce, enrollmentDateLabel, displayIncidentDate,
                 incidentDateLabel, registration, selectEnrollmentDatesInFuture, dataEntryMethod,
                 ignoreOverdueEvents, relationshipFromA, selectIncidentDatesInFuture, captureCoordinates,
                 useFirstStageDuringRegistration, displayInFrontPageList, programType,
-                relationshipType, relationshipText, relatedProgram, trackedEntity);
-
-        // bind the where argument
-        sqLiteBind(updateStatement, 30, whereProgramUid);
-
-        // execute and clear bindings
-        int update = databaseAdapter.executeUpdateDelete(ProgramModel.TABLE, updateStatement);
-        updateStatement.clearBindings();
-
-        return update;
+                relationshipType, relationshipText, relatedProgram, trackedEntity), whereProgramUid);
     }
 
 
     @Override
     public int delete(@NonNull String uid) {
+        SQLiteStatement deleteStatement = databaseAdapter.cachedStatement(DELETE_STATEMENT);
         nonNull(uid);
         // bind the where argument
         sqLiteBind(deleteStatement, 1, uid);
@@ -241,65 +221,93 @@ public class ProgramStoreImpl implements ProgramStore {
         return delete;
     }
 
-    private void bindArguments(@NonNull SQLiteStatement sqLiteStatement,
-                               @NonNull String uid,
-                               @Nullable String code,
-                               @NonNull String name,
-                               @Nullable String displayName,
-                               @Nullable Date created,
-                               @Nullable Date lastUpdated,
-                               @Nullable String shortName,
-                               @Nullable String displayShortName,
-                               @Nullable String description,
-                               @Nullable String displayDescription,
-                               @Nullable Integer version,
-                               @Nullable Boolean onlyEnrollOnce,
-                               @Nullable String enrollmentDateLabel,
-                               @Nullable Boolean displayIncidentDate,
-                               @Nullable String incidentDateLabel,
-                               @Nullable Boolean registration,
-                               @Nullable Boolean selectEnrollmentDatesInFuture,
-                               @Nullable Boolean dataEntryMethod,
-                               @Nullable Boolean ignoreOverdueEvents,
-                               @Nullable Boolean relationshipFromA,
-                               @Nullable Boolean selectIncidentDatesInFuture,
-                               @Nullable Boolean captureCoordinates,
-                               @Nullable Boolean useFirstStageDuringRegistration,
-                               @Nullable Boolean displayInFrontPageList,
-                               @Nullable ProgramType programType,
-                               @Nullable String relationshipType,
-                               @Nullable String relationshipText,
-                               @Nullable String relatedProgram,
-                               @Nullable String trackedEntity) {
-        sqLiteBind(sqLiteStatement, 1, uid);
-        sqLiteBind(sqLiteStatement, 2, code);
-        sqLiteBind(sqLiteStatement, 3, name);
-        sqLiteBind(sqLiteStatement, 4, displayName);
-        sqLiteBind(sqLiteStatement, 5, created);
-        sqLiteBind(sqLiteStatement, 6, lastUpdated);
-        sqLiteBind(sqLiteStatement, 7, shortName);
-        sqLiteBind(sqLiteStatement, 8, displayShortName);
-        sqLiteBind(sqLiteStatement, 9, description);
-        sqLiteBind(sqLiteStatement, 10, displayDescription);
-        sqLiteBind(sqLiteStatement, 11, version);
-        sqLiteBind(sqLiteStatement, 12, onlyEnrollOnce);
-        sqLiteBind(sqLiteStatement, 13, enrollmentDateLabel);
-        sqLiteBind(sqLiteStatement, 14, displayIncidentDate);
-        sqLiteBind(sqLiteStatement, 15, incidentDateLabel);
-        sqLiteBind(sqLiteStatement, 16, registration);
-        sqLiteBind(sqLiteStatement, 17, selectEnrollmentDatesInFuture);
-        sqLiteBind(sqLiteStatement, 18, dataEntryMethod);
-        sqLiteBind(sqLiteStatement, 19, ignoreOverdueEvents);
-        sqLiteBind(sqLiteStatement, 20, relationshipFromA);
-        sqLiteBind(sqLiteStatement, 21, selectIncidentDatesInFuture);
-        sqLiteBind(sqLiteStatement, 22, captureCoordinates);
-        sqLiteBind(sqLiteStatement, 23, useFirstStageDuringRegistration);
-        sqLiteBind(sqLiteStatement, 24, displayInFrontPageList);
-        sqLiteBind(sqLiteStatement, 25, programType.name());
-        sqLiteBind(sqLiteStatement, 26, relationshipType);
-        sqLiteBind(sqLiteStatement, 27, relationshipText);
-        sqLiteBind(sqLiteStatement, 28, relatedProgram);
-        sqLiteBind(sqLiteStatement, 29, trackedEntity);
+    private long insert(@NonNull ProgramModel program) {
+        SQLiteStatement insertStatement = databaseAdapter.cachedStatement(INSERT_STATEMENT);
+
+        nonNull(program.uid());
+        program.bindTo(insertStatement, 1);
+
+        Long insert = databaseAdapter.executeInsert(ProgramModel.TABLE, insertStatement);
+        insertStatement.clearBindings();
+
+        return insert;
+    }
+
+    private int update(@NonNull ProgramModel program, @NonNull String whereProgramUid) {
+        SQLiteStatement updateStatement = databaseAdapter.cachedStatement(UPDATE_STATEMENT);
+        nonNull(program.uid());
+        nonNull(whereProgramUid);
+        program.bindTo(updateStatement, 1);
+
+        // bind the where argument
+        sqLiteBind(updateStatement, WHERE_UID_INDEX, whereProgramUid);
+
+        // execute and clear bindings
+        int update = databaseAdapter.executeUpdateDelete(ProgramModel.TABLE, updateStatement);
+        updateStatement.clearBindings();
+
+        return update;
     }
 
+    private static ProgramModel program(@NonNull String uid,
+                                        @Nullable String code,
+                                        @NonNull String name,
+                                        @Nullable String displayName,
+                                        @Nullable Date created,
+                                        @Nullable Date lastUpdated,
+                                        @Nullable String shortName,
+                                        @Nullable String displayShortName,
+                                        @Nullable String description,
+                                        @Nullable String displayDescription,
+                                        @Nullable Integer version,
+                                        @Nullable Boolean onlyEnrollOnce,
+                                        @Nullable String enrollmentDateLabel,
+                                        @Nullable Boolean displayIncidentDate,
+                                        @Nullable String incidentDateLabel,
+                                        @Nullable Boolean registration,
+                                        @Nullable Boolean selectEnrollmentDatesInFuture,
+                                        @Nullable Boolean dataEntryMethod,
+                                        @Nullable Boolean ignoreOverdueEvents,
+                                        @Nullable Boolean relationshipFromA,
+                                        @Nullable Boolean selectIncidentDatesInFuture,
+                                        @Nullable Boolean captureCoordinates,
+                                        @Nullable Boolean useFirstStageDuringRegistration,
+                                        @Nullable Boolean displayInFrontPageList,
+                                        @Nullable ProgramType programType,
+                                        @Nullable String relationshipType,
+                                        @Nullable String relationshipText,
+                                        @Nullable String relatedProgram,
+                                        @Nullable String trackedEntity) {
+        return ProgramModel.builder()
+                .uid(uid)
+                .code(code)
+                .name(name)
+                .displayName(displayName)
+                .created(created)
+                .lastUpdated(lastUpdated)
+                .shortName(shortName)
+                .displayShortName(displayShortName)
+                .description(description)
+                .displayDescription(displayDescription)
+                .version(version)
+                .onlyEnrollOnce(onlyEnrollOnce)
+                .enrollmentDateLabel(enrollmentDateLabel)
+                .displayIncidentDate(displayIncidentDate)
+                .incidentDateLabel(incidentDateLabel)
+                .registration(registration)
+                .selectEnrollmentDatesInFuture(selectEnrollmentDatesInFuture)
+                .dataEntryMethod(dataEntryMethod)
+                .ignoreOverdueEvents(ignoreOverdueEvents)
+                .relationshipFromA(relationshipFromA)
+                .selectIncidentDatesInFuture(selectIncidentDatesInFuture)
+                .captureCoordinates(captureCoordinates)
+                .useFirstStageDuringRegistration(useFirstStageDuringRegistration)
+                .displayFrontPageList(displayInFrontPageList)
+                .programType(programType)
+                .relationshipType(relationshipType)
+                .relationshipText(relationshipText)
+                .relatedProgram(relatedProgram)
+                .trackedEntity(trackedEntity)
+                .build();
+    }
 }
@@ -27,6 +27,7 @@
  */
 package org.hisp.dhis.android.core.program;
 
+import org.hisp.dhis.android.core.common.ChangeDetector;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttributeHandler;
 
 import java.util.List;
@@ -36,11 +37,14 @@ import static org.hisp.dhis.android.core.utils.Utils.isDeleted;
 public class ProgramTrackedEntityAttributeHandler {
     private final ProgramTrackedEntityAttributeStore programTrackedEntityAttributeStore;
     private final TrackedEntityAttributeHandler trackedEntityAttributeHandler;
+    private final ChangeDetector changeDetector;
 
     public ProgramTrackedEntityAttributeHandler(ProgramTrackedEntityAttributeStore programTrackedEntityAttributeStore,
-                                                TrackedEntityAttributeHandler trackedEntityAttributeHandler) {
+                                                TrackedEntityAttributeHandler trackedEntityAttributeHandler,
+                                                ChangeDetector changeDetector) {
         this.programTrackedEntityAttributeStore = programTrackedEntityAttributeStore;
         this.trackedEntityAttributeHandler = trackedEntityAttributeHandler;
+        this.changeDetector = changeDetector;
     }
 
     public void handleProgramTrackedEntityAttributes(List<ProgramTrackedEntityAttribute>
@@ -67,39 +71,23 @@ public class ProgramTrackedEntityAttributeHandler {
 
             if (isDeleted(programTrackedEntityAttribute)) {
                 programTrackedEntityAttributeStore.delete(programTrackedEntityAttribute.uid());
-            } else {
-                int update = programTrackedEntityAttributeStore.update(
+            } else if (changeDetector.hasChanged(ProgramTrackedEntityAttributeModel.TABLE,
+                    programTrackedEntityAttribute.uid(), programTrackedEntityAttribute.lastUpdated())) {
+                programTrackedEntityAttributeStore.upsert(
                         programTrackedEntityAttribute.uid(), programTrackedEntityAttribute.code(),
                         programTrackedEntityAttribute.name(), programTrackedEntityAttribute.displayName(),
                         programTrackedEntityAttribute.created(), programTrackedEntityAttribute.lastUpdated(),
-                        programTrackedEntityAttribute.shortName(), programTrackedEntityAttribute.displayShortName(),
+                        programTrackedEntityAttribute.shortName(),
+                        programTrackedEntityAttribute.displayShortName(),
                         programTrackedEntityAttribute.description(),
                         programTrackedEntityAttribute.displayDescription(),
                         programTrackedEntityAttribute.mandatory(),
                         programTrackedEntityAttribute.trackedEntityAttribute().uid(),
                         programTrackedEntityAttribute.allowFutureDate(),
                         programTrackedEntityAttribute.displayInList(),
-                        programTrackedEntityAttribute.program().uid(), programTrackedEntityAttribute.sortOrder(),
-                        programTrackedEntityAttribute.uid());
-
-                if (update <= 0) {
-                    programTrackedEntityAttributeStore.insert(
-                            programTrackedEntityAttribute.uid(), programTrackedEntityAttribute.code(),
-                            programTrackedEntityAttribute.name(), programTrackedEntityAttribute.displayName(),
-                            programTrackedEntityAttribute.created(), programTrackedEntityAttribute.lastUpdated(),
-                            programTrackedEntityAttribute.shortName(),
-                            programTrackedEntityAttribute.displayShortName(),
-                            programTrackedEntityAttribute.description(),
-                            programTrackedEntityAttribute.displayDescription(),
-                            programTrackedEntityAttribute.mandatory(),
-                            programTrackedEntityAttribute.trackedEntityAttribute().uid(),
-                            programTrackedEntityAttribute.allowFutureDate(),
-                            programTrackedEntityAttribute.displayInList(),
-                            programTrackedEntityAttribute.program().uid(),
-                            programTrackedEntityAttribute.sortOrder()
-                    );
-
-                }
+                        programTrackedEntityAttribute.program().uid(),
+                        programTrackedEntityAttribute.sortOrder()
+                );
             }
 
             trackedEntityAttributeHandler.handleTrackedEntityAttribute(
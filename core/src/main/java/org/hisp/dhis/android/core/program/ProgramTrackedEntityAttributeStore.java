@@ -42,6 +42,17 @@ public interface ProgramTrackedEntityAttributeStore {
                 @Nullable Boolean allowFutureDates, @Nullable Boolean displayInList, @NonNull String program,
                 @Nullable Integer sortOrder);
 
+    /**
+     * Inserts the row, or updates it if a row with the same uid exists already.
+     */
+    void upsert(@NonNull String uid, @Nullable String code, @NonNull String name,
+                @Nullable String displayName, @NonNull Date created, @NonNull Date lastUpdated,
+                @Nullable String shortName, @Nullable String displayShortName,
+                @Nullable String description, @Nullable String displayDescription,
+                @Nullable Boolean mandatory, @NonNull String trackedEntityAttribute,
+                @Nullable Boolean allowFutureDates, @Nullable Boolean displayInList, @NonNull String program,
+                @Nullable Integer sortOrder);
+
     int update(@NonNull String uid, @Nullable String code, @NonNull String name,
                @Nullable String displayName, @NonNull Date created, @NonNull Date lastUpdated,
                @Nullable String shortName, @Nullable String displayShortName,
@@ -33,9 +33,11 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Upsert;
 
 import java.util.Date;
 
+import static org.hisp.dhis.android.core.data.database.DbUtils.upsertStatement;
 import static org.hisp.dhis.android.core.utils.StoreUtils.nonNull;
 import static org.hisp.dhis.android.core.utils.StoreUtils.sqLiteBind;
 
@@ -63,6 +65,9 @@ public class ProgramTrackedEntityAttributeStoreImpl implements ProgramTrackedEnt
             ProgramTrackedEntityAttributeModel.Columns.SORT_ORDER +
             ") " + "VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
 
+    private static final String UPSERT_STATEMENT = upsertStatement(INSERT_STATEMENT,
+            ProgramTrackedEntityAttributeModel.Columns.UID);
+
     private static final String UPDATE_STATEMENT = "UPDATE " + ProgramTrackedEntityAttributeModel.TABLE +
             " SET " +
             ProgramTrackedEntityAttributeModel.Columns.UID + " =?, " +
@@ -88,17 +93,14 @@ public class ProgramTrackedEntityAttributeStoreImpl implements ProgramTrackedEnt
             " WHERE " +
             ProgramTrackedEntityAttributeModel.Columns.UID + " =?;";
 
-    private final SQLiteStatement insertStatement;
-    private final SQLiteStatement updateStatement;
-    private final SQLiteStatement deleteStatement;
+    private final Upsert upsert;
 
     private final DatabaseAdapter databaseAdapter;
 
     public ProgramTrackedEntityAttributeStoreImpl(DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
-        this.insertStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
-        this.updateStatement = databaseAdapter.compileStatement(UPDATE_STATEMENT);
-        this.deleteStatement = databaseAdapter.compileStatement(DELETE_STATEMENT);
+        this.upsert = new Upsert(databaseAdapter, ProgramTrackedEntityAttributeModel.TABLE,
+                INSERT_STATEMENT, UPSERT_STATEMENT);
     }
 
     @Override
@@ -109,6 +111,7 @@ public class ProgramTrackedEntityAttributeStoreImpl implements ProgramTrackedEnt
                        @Nullable String displayDescription, @Nullable Boolean mandatory,
                        @NonNull String trackedEntityAttribute, @Nullable Boolean allowFutureDates,
                        @Nullable Boolean displayInList, @NonNull String program, @Nullable Integer sortOrder) {
+        SQLiteStatement insertStatement = databaseAdapter.cachedStatement(INSERT_STATEMENT);
         nonNull(uid);
         nonNull(trackedEntityAttribute);
         nonNull(program);
@@ -121,6 +124,38 @@ public class ProgramTrackedEntityAttributeStoreImpl implements ProgramTrackedEnt
         return insert;
     }
 
+    @Override
+    public void upsert(@NonNull String uid, @Nullable String code, @NonNull String name,
+                       @Nullable String displayName, @NonNull Date created,
+                       @NonNull Date lastUpdated, @Nullable String shortName,
+                       @Nullable String displayShortName, @Nullable String description,
+                       @Nullable String displayDescription, @Nullable Boolean mandatory,
+                       @NonNull String trackedEntityAttribute, @Nullable Boolean allowFutureDates,
+                       @Nullable Boolean displayInList, @NonNull String program, @Nullable Integer sortOrder) {
+        SQLiteStatement statement = upsert.statement();
+        if (statement != null) {
+            nonNull(uid);
+            nonNull(trackedEntityAttribute);
+            nonNull(program);
+            bindArguments(statement, uid, code, name, displayName, created, lastUpdated, shortName,
+                    displayShortName, description, displayDescription, mandatory, trackedEntityAttribute,
+                    allowFutureDates, displayInList, program, sortOrder);
+
+            if (upsert.execute()) {
+                return;
+            }
+        }
+
+        if (update(uid, code, name, displayName, created, lastUpdated, shortName, displayShortName, description,
+                displayDescription, mandatory, trackedEntityAttribute, allowFutureDates, displayInList, program,
+                sortOrder, uid) <= 0) {
+            insert(uid, code, name, displayName, created, lastUpdated, shortName, displayShortName, description,
+                    displayDescription, mandatory, trackedEntityAttribute, allowFutureDates, displayInList,
+                    program, sortOrder);
+            upsert.inserted();
+        }
+    }
+
     @Override
     public int update(@NonNull String uid, @Nullable String code, @NonNull String name, @Nullable String displayName,
                       @NonNull Date created, @NonNull Date lastUpdated, @Nullable String shortName,
@@ -129,6 +164,7 @@ public class ProgramTrackedEntityAttributeStoreImpl implements ProgramTrackedEnt
                       @NonNull String trackedEntityAttribute, @Nullable Boolean allowFutureDates,
                       @Nullable Boolean displayInList, @NonNull String program, @Nullable Integer sortOrder,
                       @NonNull String whereProgramTrackedEntityAttributeUid) {
+        SQLiteStatement updateStatement = databaseAdapter.cachedStatement(UPDATE_STATEMENT);
         nonNull(uid);
         nonNull(trackedEntityAttribute);
         nonNull(program);
@@ -148,6 +184,7 @@ public class ProgramTrackedEntityAttributeStoreImpl implements ProgramTrackedEnt
 
     @Override
     public int delete(@NonNull String uid) {
+        SQLiteStatement deleteStatement = databaseAdapter.cachedStatement(DELETE_STATEMENT);
         nonNull(uid);
         // bind the where argument
         sqLiteBind(deleteStatement, 1, uid);
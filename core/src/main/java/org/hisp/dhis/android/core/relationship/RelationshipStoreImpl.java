@@ -46,18 +46,17 @@ public class RelationshipStoreImpl implements RelationshipStore {
             RelationshipModel.Columns.RELATIONSHIP_TYPE + ") " +
             "VALUES(?, ?, ?);";
 
-    private final SQLiteStatement insertStatement;
     private final DatabaseAdapter databaseAdapter;
 
     public RelationshipStoreImpl(DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
-        this.insertStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
     }
 
     @Override
     public long insert(@Nullable String trackedEntityInstanceA,
                        @Nullable String trackedEntityInstanceB,
                        @NonNull String relationshipType) {
+        SQLiteStatement insertStatement = databaseAdapter.cachedStatement(INSERT_STATEMENT);
 
         nonNull(relationshipType);
         sqLiteBind(insertStatement, 1, trackedEntityInstanceA);
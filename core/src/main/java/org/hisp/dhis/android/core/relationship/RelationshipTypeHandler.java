@@ -27,13 +27,18 @@
  */
 package org.hisp.dhis.android.core.relationship;
 
+import org.hisp.dhis.android.core.common.ChangeDetector;
+
 import static org.hisp.dhis.android.core.utils.Utils.isDeleted;
 
 public class RelationshipTypeHandler {
     private final RelationshipTypeStore relationshipTypeStore;
+    private final ChangeDetector changeDetector;
 
-    public RelationshipTypeHandler(RelationshipTypeStore relationshipTypeStore) {
+    public RelationshipTypeHandler(RelationshipTypeStore relationshipTypeStore,
+                                   ChangeDetector changeDetector) {
         this.relationshipTypeStore = relationshipTypeStore;
+        this.changeDetector = changeDetector;
     }
 
     public void handleRelationshipType(RelationshipType relationshipType) {
@@ -43,8 +48,9 @@ public class RelationshipTypeHandler {
 
         if (isDeleted(relationshipType)) {
             relationshipTypeStore.delete(relationshipType.uid());
-        } else {
-            int update = relationshipTypeStore.update(
+        } else if (changeDetector.hasChanged(RelationshipTypeModel.TABLE, relationshipType.uid(),
+                relationshipType.lastUpdated())) {
+            relationshipTypeStore.upsert(
                     relationshipType.uid(),
                     relationshipType.code(),
                     relationshipType.name(),
@@ -52,20 +58,7 @@ public class RelationshipTypeHandler {
                     relationshipType.created(),
                     relationshipType.lastUpdated(),
                     relationshipType.aIsToB(),
-                    relationshipType.bIsToA(),
-                    relationshipType.uid());
-
-            if (update <= 0) {
-                relationshipTypeStore.insert(
-                        relationshipType.uid(),
-                        relationshipType.code(),
-                        relationshipType.name(),
-                        relationshipType.displayName(),
-                        relationshipType.created(),
-                        relationshipType.lastUpdated(),
-                        relationshipType.aIsToB(),
-                        relationshipType.bIsToA());
-            }
+                    relationshipType.bIsToA());
         }
     }
 }
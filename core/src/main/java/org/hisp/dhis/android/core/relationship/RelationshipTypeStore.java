@@ -45,6 +45,19 @@ public interface RelationshipTypeStore {
             @NonNull String aIsToB,
             @NonNull String bIsToA);
 
+    /**
+     * Inserts the row, or updates it if a row with the same uid exists already.
+     */
+    void upsert(
+            @NonNull String uid,
+            @Nullable String code,
+            @NonNull String name,
+            @Nullable String displayName,
+            @Nullable Date created,
+            @Nullable Date lastUpdated,
+            @NonNull String aIsToB,
+            @NonNull String bIsToA);
+
     int update(
             @NonNull String uid,
             @Nullable String code,
@@ -33,9 +33,11 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Upsert;
 
 import java.util.Date;
 
+import static org.hisp.dhis.android.core.data.database.DbUtils.upsertStatement;
 import static org.hisp.dhis.android.core.utils.StoreUtils.nonNull;
 import static org.hisp.dhis.android.core.utils.StoreUtils.sqLiteBind;
 
@@ -55,6 +57,8 @@ public class RelationshipTypeStoreImpl implements RelationshipTypeStore {
             RelationshipTypeModel.Columns.B_IS_TO_A + ") " +
             "VALUES (" + "?, ?, ?, ?, ?, ?, ?, ?" + ");";
 
+    private static final String UPSERT_STATEMENT = upsertStatement(INSERT_STATEMENT, RelationshipTypeModel.Columns.UID);
+
     private static final String UPDATE_STATEMENT = "UPDATE " + RelationshipTypeModel.TABLE + " SET " +
             RelationshipTypeModel.Columns.UID + " =?, " +
             RelationshipTypeModel.Columns.CODE + " =?, " +
@@ -71,17 +75,13 @@ public class RelationshipTypeStoreImpl implements RelationshipTypeStore {
             " WHERE " +
             RelationshipTypeModel.Columns.UID + " =?;";
 
-    private final SQLiteStatement insertStatement;
-    private final SQLiteStatement updateStatement;
-    private final SQLiteStatement deleteStatement;
+    private final Upsert upsert;
 
     private final DatabaseAdapter databaseAdapter;
 
     public RelationshipTypeStoreImpl(DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
-        this.insertStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
-        this.updateStatement = databaseAdapter.compileStatement(UPDATE_STATEMENT);
-        this.deleteStatement = databaseAdapter.compileStatement(DELETE_STATEMENT);
+        this.upsert = new Upsert(databaseAdapter, RelationshipTypeModel.TABLE, INSERT_STATEMENT, UPSERT_STATEMENT);
     }
 
     @Override
@@ -93,6 +93,7 @@ public class RelationshipTypeStoreImpl implements RelationshipTypeStore {
                        @Nullable Date lastUpdated,
                        @NonNull String aIsToB,
                        @NonNull String bIsToA) {
+        SQLiteStatement insertStatement = databaseAdapter.cachedStatement(INSERT_STATEMENT);
         nonNull(uid);
         nonNull(aIsToB);
         nonNull(bIsToA);
@@ -103,6 +104,33 @@ public class RelationshipTypeStoreImpl implements RelationshipTypeStore {
         return ret;
     }
 
+    @Override
+    public void upsert(@NonNull String uid,
+                       @Nullable String code,
+                       @NonNull String name,
+                       @Nullable String displayName,
+                       @Nullable Date created,
+                       @Nullable Date lastUpdated,
+                       @NonNull String aIsToB,
+                       @NonNull String bIsToA) {
+        SQLiteStatement statement = upsert.statement();
+        if (statement != null) {
+            nonNull(uid);
+            nonNull(aIsToB);
+            nonNull(bIsToA);
+            bindArguments(statement, uid, code, name, displayName, created, lastUpdated, aIsToB, bIsToA);
+
+            if (upsert.execute()) {
+                return;
+            }
+        }
+
+        if (update(uid, code, name, displayName, created, lastUpdated, aIsToB, bIsToA, uid) <= 0) {
+            insert(uid, code, name, displayName, created, lastUpdated, aIsToB, bIsToA);
+            upsert.inserted();
+        }
+    }
+
     @Override
     public int update(@NonNull String uid,
                       @Nullable String code,
@@ -113,6 +141,7 @@ public class RelationshipTypeStoreImpl implements RelationshipTypeStore {
                       @NonNull String aIsToB,
                       @NonNull String bIsToA,
                       @NonNull String whereUid) {
+        SQLiteStatement updateStatement = databaseAdapter.cachedStatement(UPDATE_STATEMENT);
         nonNull(uid);
         nonNull(aIsToB);
         nonNull(bIsToA);
@@ -127,6 +156,7 @@ public class RelationshipTypeStoreImpl implements RelationshipTypeStore {
 
     @Override
     public int delete(@NonNull String uid) {
+        SQLiteStatement deleteStatement = databaseAdapter.cachedStatement(DELETE_STATEMENT);
         nonNull(uid);
         sqLiteBind(deleteStatement, 1, uid);
 
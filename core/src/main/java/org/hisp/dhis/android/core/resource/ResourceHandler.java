@@ -30,6 +30,8 @@ package org.hisp.dhis.android.core.resource;
 import java.util.Date;
 
 public class ResourceHandler {
+    private static final String SCOPE_SEPARATOR = "/";
+
     private final ResourceStore resourceStore;
 
     public ResourceHandler(ResourceStore resourceStore) {
@@ -40,12 +42,60 @@ public class ResourceHandler {
         if (resourceType == null || serverDate == null) {
             return;
         }
-        int updatedResourceRow = resourceStore.update(resourceType.name(), serverDate, resourceType.name());
+        handleResource(resourceType.name(), serverDate);
+    }
+
+    /**
+     * Records the time of the last sync of a resource which is synced separately for every scope, like every
+     * organisation unit.
+     *
+     * @param resourceType Type of the resource.
+     * @param scope        the scope the resource has been synced for.
+     * @param serverDate   server date at which the sync started.
+     */
+    public void handleResource(ResourceModel.Type resourceType, String scope, Date serverDate) {
+        if (resourceType == null || scope == null || serverDate == null) {
+            return;
+        }
+        handleResource(scoped(resourceType, scope), serverDate);
+    }
+
+    private void handleResource(String resourceType, Date serverDate) {
+        int updatedResourceRow = resourceStore.update(resourceType, serverDate, resourceType);
         if (updatedResourceRow <= 0) {
-            resourceStore.insert(resourceType.name(), serverDate);
+            resourceStore.insert(resourceType, serverDate);
         }
     }
 
+    /**
+     * Records that a page of a paged request has been persisted, creating the resource row if needed.
+     *
+     * @param resourceType  Type of the resource.
+     * @param pagingKey     identifies the paged request.
+     * @param lastPage      the page which has been persisted.
+     * @param pagingStarted server date at which the paged request started.
+     */
+    public void handlePage(ResourceModel.Type resourceType, String pagingKey, int lastPage, Date pagingStarted) {
+        if (resourceType == null || pagingKey == null) {
+            return;
+        }
+        int updatedResourceRow = resourceStore.updatePaging(resourceType.name(), pagingKey, lastPage, pagingStarted);
+        if (updatedResourceRow <= 0) {
+            resourceStore.insert(resourceType.name(), null);
+            resourceStore.updatePaging(resourceType.name(), pagingKey, lastPage, pagingStarted);
+        }
+    }
+
+    /**
+     * A wrapper to expose resourceStore.getResource(type).
+     *
+     * @param type Type of the resource.
+     * @return the stored resource, or null if it has never been synced
+     */
+    public ResourceModel getResource(ResourceModel.Type type) {
+        return resourceStore.getResource(type);
+    }
+
     /**
      * A wrapper to expose resourceStore.getLastUpdated(str).
      *
@@ -55,4 +105,17 @@ public class ResourceHandler {
     public String getLastUpdated(ResourceModel.Type type) {
         return resourceStore.getLastUpdated(type);
     }
+
+    /**
+     * @param type  Type of the resource.
+     * @param scope the scope the resource is synced for.
+     * @return a string representing the last synched date of the resource in the scope
+     */
+    public String getLastUpdated(ResourceModel.Type type, String scope) {
+        return resourceStore.getLastUpdated(scoped(type, scope));
+    }
+
+    private static String scoped(ResourceModel.Type type, String scope) {
+        return type.name() + SCOPE_SEPARATOR + scope;
+    }
 }
@@ -48,9 +48,13 @@ public abstract class ResourceModel extends BaseModel {
     public static class Columns extends BaseModel.Columns {
         public static final String RESOURCE_TYPE = "resourceType";
         public static final String LAST_SYNCED = "lastSynced";
+        public static final String PAGING_KEY = "pagingKey";
+        public static final String LAST_PAGE = "lastPage";
+        public static final String PAGING_STARTED = "pagingStarted";
     }
 
-    public enum Type {SYSTEM_INFO, USER, ORGANISATION_UNIT, PROGRAM, OPTION_SET, TRACKED_ENTITY}
+    public enum Type {SYSTEM_INFO, USER, ORGANISATION_UNIT, PROGRAM, OPTION_SET, TRACKED_ENTITY, METADATA, EVENT,
+        TRACKED_ENTITY_INSTANCE}
 
     @Nullable
     @ColumnName(Columns.RESOURCE_TYPE)
@@ -61,6 +65,28 @@ public abstract class ResourceModel extends BaseModel {
     @ColumnAdapter(DbDateColumnAdapter.class)
     public abstract Date lastSynced();
 
+    /**
+     * Identifies the paged request which is in progress for this resource, if any.
+     */
+    @Nullable
+    @ColumnName(Columns.PAGING_KEY)
+    public abstract String pagingKey();
+
+    /**
+     * The last page of the request identified by {@link #pagingKey()} which has been persisted.
+     */
+    @Nullable
+    @ColumnName(Columns.LAST_PAGE)
+    public abstract Integer lastPage();
+
+    /**
+     * Server date at which the paged request started; it becomes {@link #lastSynced()} once all pages are persisted.
+     */
+    @Nullable
+    @ColumnName(Columns.PAGING_STARTED)
+    @ColumnAdapter(DbDateColumnAdapter.class)
+    public abstract Date pagingStarted();
+
     @NonNull
     public abstract ContentValues toContentValues();
 
@@ -80,6 +106,12 @@ public abstract class ResourceModel extends BaseModel {
 
         public abstract Builder lastSynced(@Nullable Date lastSynced);
 
+        public abstract Builder pagingKey(@Nullable String pagingKey);
+
+        public abstract Builder lastPage(@Nullable Integer lastPage);
+
+        public abstract Builder pagingStarted(@Nullable Date pagingStarted);
+
         public abstract ResourceModel build();
     }
 
@@ -35,12 +35,29 @@ import java.util.Date;
 public interface ResourceStore {
     long insert(@NonNull String resourceType, @Nullable Date lastSynced);
 
+    /**
+     * Updates the time of the last sync of the resource, which also discards any paging progress.
+     */
     int update(
             @NonNull String resourceType, @Nullable Date lastSynced,
             @NonNull String whereResourceUid
     );
 
+    int updatePaging(
+            @NonNull String resourceType, @Nullable String pagingKey,
+            @Nullable Integer lastPage, @Nullable Date pagingStarted
+    );
+
     int delete(@NonNull String resourceType);
 
     String getLastUpdated(ResourceModel.Type type);
+
+    /**
+     * @param resourceType the name of the resource row, which is not necessarily the name of a
+     *                     {@link ResourceModel.Type}
+     */
+    String getLastUpdated(@NonNull String resourceType);
+
+    @Nullable
+    ResourceModel getResource(@NonNull ResourceModel.Type type);
 }
@@ -32,6 +32,7 @@ import android.database.sqlite.SQLiteStatement;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
 import org.hisp.dhis.android.core.resource.ResourceModel.Columns;
 
@@ -48,26 +49,37 @@ public class ResourceStoreImpl implements ResourceStore {
 
     private static final String UPDATE_STATEMENT = "UPDATE " + ResourceModel.TABLE + " SET " +
             Columns.RESOURCE_TYPE + " =?, " +
-            Columns.LAST_SYNCED + "=? " + " WHERE " +
+            Columns.LAST_SYNCED + "=?, " +
+            Columns.PAGING_KEY + " = NULL, " +
+            Columns.LAST_PAGE + " = NULL, " +
+            Columns.PAGING_STARTED + " = NULL " + " WHERE " +
             Columns.RESOURCE_TYPE + " = ?;";
 
+    private static final String UPDATE_PAGING_STATEMENT = "UPDATE " + ResourceModel.TABLE + " SET " +
+            Columns.PAGING_KEY + " =?, " +
+            Columns.LAST_PAGE + " =?, " +
+            Columns.PAGING_STARTED + " =? " + " WHERE " +
+            Columns.RESOURCE_TYPE + " = ?;";
+
+    private static final String QUERY_LAST_SYNCED_STATEMENT = "SELECT " + Columns.LAST_SYNCED +
+            " FROM " + ResourceModel.TABLE + " WHERE " + Columns.RESOURCE_TYPE + " = ? AND " +
+            Columns.LAST_SYNCED + " IS NOT NULL;";
+
+    private static final String QUERY_RESOURCE_STATEMENT = "SELECT * FROM " + ResourceModel.TABLE +
+            " WHERE " + Columns.RESOURCE_TYPE + " = ?";
+
     private static final String DELETE_STATEMENT = "DELETE FROM " + ResourceModel.TABLE +
             " WHERE " + Columns.RESOURCE_TYPE + " =?;";
     
     private final DatabaseAdapter databaseAdapter;
-    private final SQLiteStatement insertStatement;
-    private final SQLiteStatement updateStatement;
-    private final SQLiteStatement deleteStatement;
 
     public ResourceStoreImpl(DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
-        this.insertStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
-        this.updateStatement = databaseAdapter.compileStatement(UPDATE_STATEMENT);
-        this.deleteStatement = databaseAdapter.compileStatement(DELETE_STATEMENT);
     }
 
     @Override
     public long insert(@NonNull String resourceType, @Nullable Date lastSynced) {
+        SQLiteStatement insertStatement = databaseAdapter.cachedStatement(INSERT_STATEMENT);
         nonNull(resourceType);
         sqLiteBind(insertStatement, 1, resourceType);
         sqLiteBind(insertStatement, 2, lastSynced);
@@ -80,6 +92,7 @@ public class ResourceStoreImpl implements ResourceStore {
     @Override
     public int update(@NonNull String resourceType, @Nullable Date lastSynced,
                       @NonNull String whereResourceType) {
+        SQLiteStatement updateStatement = databaseAdapter.cachedStatement(UPDATE_STATEMENT);
         nonNull(resourceType);
         nonNull(whereResourceType);
         sqLiteBind(updateStatement, 1, resourceType);
@@ -91,8 +104,24 @@ public class ResourceStoreImpl implements ResourceStore {
         return returnValue;
     }
 
+    @Override
+    public int updatePaging(@NonNull String resourceType, @Nullable String pagingKey,
+                            @Nullable Integer lastPage, @Nullable Date pagingStarted) {
+        SQLiteStatement updatePagingStatement = databaseAdapter.cachedStatement(UPDATE_PAGING_STATEMENT);
+        nonNull(resourceType);
+        sqLiteBind(updatePagingStatement, 1, pagingKey);
+        sqLiteBind(updatePagingStatement, 2, lastPage);
+        sqLiteBind(updatePagingStatement, 3, pagingStarted);
+        sqLiteBind(updatePagingStatement, 4, resourceType);
+
+        int returnValue = databaseAdapter.executeUpdateDelete(ResourceModel.TABLE, updatePagingStatement);
+        updatePagingStatement.clearBindings();
+        return returnValue;
+    }
+
     @Override
     public int delete(@NonNull String resourceType) {
+        SQLiteStatement deleteStatement = databaseAdapter.cachedStatement(DELETE_STATEMENT);
         nonNull(resourceType);
         sqLiteBind(deleteStatement, 1, resourceType);
 
@@ -103,19 +132,41 @@ public class ResourceStoreImpl implements ResourceStore {
 
     @Override
     public String getLastUpdated(ResourceModel.Type type) {
+        return getLastUpdated(type.name());
+    }
+
+    @Override
+    public String getLastUpdated(@NonNull String resourceType) {
+        // read with a cursor of its own, since the download threads of a sync read their lastUpdated concurrently
         String lastUpdated = null;
-        Cursor cursor = databaseAdapter.query("SELECT " + ResourceModel.Columns.LAST_SYNCED +
-                " FROM " + ResourceModel.TABLE +
-                " WHERE " + ResourceModel.Columns.RESOURCE_TYPE +
-                " = '" + type.name() + "'"
-        );
-        if(cursor != null) {
-            cursor.moveToFirst();
-            if (cursor.getCount() > 0) {
-                lastUpdated = cursor.getString(cursor.getColumnIndex(ResourceModel.Columns.LAST_SYNCED));
+        Cursor cursor = databaseAdapter.query(QUERY_LAST_SYNCED_STATEMENT, resourceType);
+        if (cursor != null) {
+            try {
+                if (cursor.moveToFirst()) {
+                    // the server expects the formatted date in its lastUpdated filter
+                    lastUpdated = BaseIdentifiableObject.DATE_FORMAT.format(new Date(cursor.getLong(0)));
+                }
+            } finally {
+                cursor.close();
             }
-            cursor.close();
         }
         return lastUpdated;
     }
+
+    @Nullable
+    @Override
+    public ResourceModel getResource(@NonNull ResourceModel.Type type) {
+        ResourceModel resource = null;
+        Cursor cursor = databaseAdapter.query(QUERY_RESOURCE_STATEMENT, type.name());
+        if (cursor != null) {
+            try {
+                if (cursor.moveToFirst()) {
+                    resource = ResourceModel.create(cursor);
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return resource;
+    }
 }
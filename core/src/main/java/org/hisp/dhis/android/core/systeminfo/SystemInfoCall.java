@@ -27,7 +27,9 @@
  */
 package org.hisp.dhis.android.core.systeminfo;
 
-import org.hisp.dhis.android.core.common.Call;
+import android.support.annotation.NonNull;
+
+import org.hisp.dhis.android.core.common.SyncCall;
 import org.hisp.dhis.android.core.data.api.Fields;
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
 import org.hisp.dhis.android.core.data.database.Transaction;
@@ -39,7 +41,7 @@ import java.io.IOException;
 
 import retrofit2.Response;
 
-public class SystemInfoCall implements Call<Response<SystemInfo>> {
+public class SystemInfoCall implements SyncCall<SystemInfo> {
     private final DatabaseAdapter databaseAdapter;
     private final SystemInfoStore systemInfoStore;
     private final SystemInfoService systemInfoService;
@@ -74,16 +76,23 @@ public class SystemInfoCall implements Call<Response<SystemInfo>> {
             isExecuted = true;
         }
 
-        Response<SystemInfo> response = getSystemInfo();
+        Response<SystemInfo> response = download();
         if (response.isSuccessful()) {
-            insertOrUpdateSystemInfo(response);
+            persist(response);
         }
 
 
         return response;
     }
 
-    private void insertOrUpdateSystemInfo(Response<SystemInfo> response) {
+    @NonNull
+    @Override
+    public Response<SystemInfo> download() throws IOException {
+        return getSystemInfo();
+    }
+
+    @Override
+    public void persist(@NonNull Response<SystemInfo> response) {
         SystemInfoHandler systemInfoHandler = new SystemInfoHandler(systemInfoStore);
         ResourceHandler resourceHandler = new ResourceHandler(resourceStore);
 
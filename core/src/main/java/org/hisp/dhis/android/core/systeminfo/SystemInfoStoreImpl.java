@@ -57,16 +57,10 @@ public class SystemInfoStoreImpl implements SystemInfoStore {
     private static final String DELETE_STATEMENT = "DELETE FROM " + SystemInfoModel.TABLE +
             " WHERE " + Columns.CONTEXT_PATH + " =?;";
 
-    private final SQLiteStatement insertStatement;
-    private final SQLiteStatement updateStatement;
-    private final SQLiteStatement deleteStatement;
     private final DatabaseAdapter databaseAdapter;
 
     public SystemInfoStoreImpl(DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
-        this.insertStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
-        this.updateStatement = databaseAdapter.compileStatement(UPDATE_STATEMENT);
-        this.deleteStatement = databaseAdapter.compileStatement(DELETE_STATEMENT);
     }
 
     @Override
@@ -74,6 +68,7 @@ public class SystemInfoStoreImpl implements SystemInfoStore {
                        @NonNull String dateFormat,
                        @NonNull String version,
                        @NonNull String contextPath) {
+        SQLiteStatement insertStatement = databaseAdapter.cachedStatement(INSERT_STATEMENT);
         nonNull(serverDate);
         nonNull(dateFormat);
         nonNull(version);
@@ -90,6 +85,7 @@ public class SystemInfoStoreImpl implements SystemInfoStore {
                       @NonNull String version,
                       @NonNull String contextPath,
                       @NonNull String whereContextPath) {
+        SQLiteStatement updateStatement = databaseAdapter.cachedStatement(UPDATE_STATEMENT);
         nonNull(serverDate);
         nonNull(dateFormat);
         nonNull(version);
@@ -105,6 +101,7 @@ public class SystemInfoStoreImpl implements SystemInfoStore {
 
     @Override
     public int delete(@NonNull String contextPath) {
+        SQLiteStatement deleteStatement = databaseAdapter.cachedStatement(DELETE_STATEMENT);
         nonNull(contextPath);
         sqLiteBind(deleteStatement, 1, contextPath);
 
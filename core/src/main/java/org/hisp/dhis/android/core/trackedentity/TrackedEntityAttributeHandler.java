@@ -27,14 +27,19 @@
  */
 package org.hisp.dhis.android.core.trackedentity;
 
+import org.hisp.dhis.android.core.common.ChangeDetector;
+
 import static org.hisp.dhis.android.core.utils.Utils.isDeleted;
 
 public class TrackedEntityAttributeHandler {
 
     private final TrackedEntityAttributeStore trackedEntityAttributeStore;
+    private final ChangeDetector changeDetector;
 
-    public TrackedEntityAttributeHandler(TrackedEntityAttributeStore trackedEntityAttributeStore) {
+    public TrackedEntityAttributeHandler(TrackedEntityAttributeStore trackedEntityAttributeStore,
+                                         ChangeDetector changeDetector) {
         this.trackedEntityAttributeStore = trackedEntityAttributeStore;
+        this.changeDetector = changeDetector;
     }
 
     public void handleTrackedEntityAttribute(TrackedEntityAttribute trackedEntityAttribute) {
@@ -48,13 +53,14 @@ public class TrackedEntityAttributeHandler {
 
         if (isDeleted(trackedEntityAttribute)) {
             trackedEntityAttributeStore.delete(trackedEntityAttribute.uid());
-        } else {
+        } else if (changeDetector.hasChanged(TrackedEntityAttributeModel.TABLE, trackedEntityAttribute.uid(),
+                trackedEntityAttribute.lastUpdated())) {
             String optionSetUid = null;
             if (trackedEntityAttribute.optionSet() != null) {
                 optionSetUid = trackedEntityAttribute.optionSet().uid();
             }
 
-            int updatedRow = trackedEntityAttributeStore.update(
+            trackedEntityAttributeStore.upsert(
                     trackedEntityAttribute.uid(), trackedEntityAttribute.code(),
                     trackedEntityAttribute.name(), trackedEntityAttribute.displayName(),
                     trackedEntityAttribute.created(), trackedEntityAttribute.lastUpdated(),
@@ -63,28 +69,11 @@ public class TrackedEntityAttributeHandler {
                     trackedEntityAttribute.pattern(), trackedEntityAttribute.sortOrderInListNoProgram(),
                     optionSetUid,
                     trackedEntityAttribute.valueType(), trackedEntityAttribute.expression(),
-                    trackedEntityAttribute.searchScope(),
-                    trackedEntityAttribute.programScope(), trackedEntityAttribute.displayInListNoProgram(),
+                    trackedEntityAttribute.searchScope(), trackedEntityAttribute.programScope(),
+                    trackedEntityAttribute.displayInListNoProgram(),
                     trackedEntityAttribute.generated(), trackedEntityAttribute.displayOnVisitSchedule(),
                     trackedEntityAttribute.orgUnitScope(), trackedEntityAttribute.unique(),
-                    trackedEntityAttribute.inherit(), trackedEntityAttribute.uid());
-
-            if (updatedRow <= 0) {
-                trackedEntityAttributeStore.insert(
-                        trackedEntityAttribute.uid(), trackedEntityAttribute.code(),
-                        trackedEntityAttribute.name(), trackedEntityAttribute.displayName(),
-                        trackedEntityAttribute.created(), trackedEntityAttribute.lastUpdated(),
-                        trackedEntityAttribute.shortName(), trackedEntityAttribute.displayShortName(),
-                        trackedEntityAttribute.description(), trackedEntityAttribute.displayDescription(),
-                        trackedEntityAttribute.pattern(), trackedEntityAttribute.sortOrderInListNoProgram(),
-                        optionSetUid,
-                        trackedEntityAttribute.valueType(), trackedEntityAttribute.expression(),
-                        trackedEntityAttribute.searchScope(), trackedEntityAttribute.programScope(),
-                        trackedEntityAttribute.displayInListNoProgram(),
-                        trackedEntityAttribute.generated(), trackedEntityAttribute.displayOnVisitSchedule(),
-                        trackedEntityAttribute.orgUnitScope(), trackedEntityAttribute.unique(),
-                        trackedEntityAttribute.inherit());
-            }
+                    trackedEntityAttribute.inherit());
         }
     }
 }
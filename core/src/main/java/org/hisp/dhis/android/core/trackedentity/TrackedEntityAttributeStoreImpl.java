@@ -34,9 +34,11 @@ import android.support.annotation.Nullable;
 
 import org.hisp.dhis.android.core.common.ValueType;
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Upsert;
 
 import java.util.Date;
 
+import static org.hisp.dhis.android.core.data.database.DbUtils.upsertStatement;
 import static org.hisp.dhis.android.core.utils.StoreUtils.nonNull;
 import static org.hisp.dhis.android.core.utils.StoreUtils.sqLiteBind;
 
@@ -71,6 +73,9 @@ public class TrackedEntityAttributeStoreImpl implements TrackedEntityAttributeSt
             TrackedEntityAttributeModel.Columns.INHERIT +
             ") " + "VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
 
+    private static final String UPSERT_STATEMENT = upsertStatement(INSERT_STATEMENT,
+            TrackedEntityAttributeModel.Columns.UID);
+
     private static final String UPDATE_STATEMENT = "UPDATE " + TrackedEntityAttributeModel.TABLE + " SET " +
             TrackedEntityAttributeModel.Columns.UID + " =?, " +
             TrackedEntityAttributeModel.Columns.CODE + " =?, " +
@@ -100,17 +105,14 @@ public class TrackedEntityAttributeStoreImpl implements TrackedEntityAttributeSt
     private static final String DELETE_STATEMENT = "DELETE FROM " + TrackedEntityAttributeModel.TABLE +
             " WHERE " + TrackedEntityAttributeModel.Columns.UID + " =?;";
 
-    private final SQLiteStatement insertStatement;
-    private final SQLiteStatement updateStatement;
-    private final SQLiteStatement deleteStatement;
+    private final Upsert upsert;
 
     private final DatabaseAdapter databaseAdapter;
 
     public TrackedEntityAttributeStoreImpl(DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
-        this.insertStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
-        this.updateStatement = databaseAdapter.compileStatement(UPDATE_STATEMENT);
-        this.deleteStatement = databaseAdapter.compileStatement(DELETE_STATEMENT);
+        this.upsert = new Upsert(databaseAdapter, TrackedEntityAttributeModel.TABLE,
+                INSERT_STATEMENT, UPSERT_STATEMENT);
     }
 
     @Override
@@ -126,6 +128,7 @@ public class TrackedEntityAttributeStoreImpl implements TrackedEntityAttributeSt
                        @Nullable Boolean generated, @Nullable Boolean displayOnVisitSchedule,
                        @Nullable Boolean orgUnitScope, @Nullable Boolean unique,
                        @Nullable Boolean inherit) {
+        SQLiteStatement insertStatement = databaseAdapter.cachedStatement(INSERT_STATEMENT);
         nonNull(uid);
         bindArguments(insertStatement, uid, code, name, displayName, created, lastUpdated, shortName,
                 displayShortName, description, displayDescription, pattern, sortOrderInListNoProgram, optionSet,
@@ -137,6 +140,44 @@ public class TrackedEntityAttributeStoreImpl implements TrackedEntityAttributeSt
         return insert;
     }
 
+    @Override
+    public void upsert(@NonNull String uid, @Nullable String code, @Nullable String name,
+                       @Nullable String displayName, @Nullable Date created,
+                       @Nullable Date lastUpdated, @Nullable String shortName,
+                       @Nullable String displayShortName, @Nullable String description,
+                       @Nullable String displayDescription, @Nullable String pattern,
+                       @Nullable Integer sortOrderInListNoProgram, @Nullable String optionSet,
+                       @Nullable ValueType valueType, @Nullable String expression,
+                       @Nullable TrackedEntityAttributeSearchScope searchScope,
+                       @Nullable Boolean programScope, @Nullable Boolean displayInListNoProgram,
+                       @Nullable Boolean generated, @Nullable Boolean displayOnVisitSchedule,
+                       @Nullable Boolean orgUnitScope, @Nullable Boolean unique,
+                       @Nullable Boolean inherit) {
+        SQLiteStatement statement = upsert.statement();
+        if (statement != null) {
+            nonNull(uid);
+            bindArguments(statement, uid, code, name, displayName, created, lastUpdated, shortName,
+                    displayShortName, description, displayDescription, pattern, sortOrderInListNoProgram, optionSet,
+                    valueType, expression, searchScope, programScope, displayInListNoProgram,
+                    generated, displayOnVisitSchedule, orgUnitScope, unique, inherit);
+
+            if (upsert.execute()) {
+                return;
+            }
+        }
+
+        if (update(uid, code, name, displayName, created, lastUpdated, shortName, displayShortName, description,
+                displayDescription, pattern, sortOrderInListNoProgram, optionSet, valueType, expression,
+                searchScope, programScope, displayInListNoProgram, generated, displayOnVisitSchedule,
+                orgUnitScope, unique, inherit, uid) <= 0) {
+            insert(uid, code, name, displayName, created, lastUpdated, shortName, displayShortName, description,
+                    displayDescription, pattern, sortOrderInListNoProgram, optionSet, valueType, expression,
+                    searchScope, programScope, displayInListNoProgram, generated, displayOnVisitSchedule,
+                    orgUnitScope, unique, inherit);
+            upsert.inserted();
+        }
+    }
+
     @Override
     public int update(@NonNull String uid, @Nullable String code, @NonNull String name, @Nullable String displayName,
                       @NonNull Date created, @NonNull Date lastUpdated, @Nullable String shortName,
@@ -149,6 +190,7 @@ public class TrackedEntityAttributeStoreImpl implements TrackedEntityAttributeSt
                       @Nullable Boolean displayOnVisitSchedule, @Nullable Boolean orgUnitScope,
                       @Nullable Boolean unique, @Nullable Boolean inherit,
                       @NonNull String whereUid) {
+        SQLiteStatement updateStatement = databaseAdapter.cachedStatement(UPDATE_STATEMENT);
         nonNull(uid);
         nonNull(whereUid);
         bindArguments(updateStatement, uid, code, name, displayName, created, lastUpdated, shortName,
@@ -164,6 +206,7 @@ public class TrackedEntityAttributeStoreImpl implements TrackedEntityAttributeSt
 
     @Override
     public int delete(@NonNull String uid) {
+        SQLiteStatement deleteStatement = databaseAdapter.cachedStatement(DELETE_STATEMENT);
         nonNull(uid);
         sqLiteBind(deleteStatement, 1, uid);
 
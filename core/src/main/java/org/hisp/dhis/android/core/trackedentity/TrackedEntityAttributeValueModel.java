@@ -37,9 +37,10 @@ import com.gabrielittner.auto.value.cursor.ColumnName;
 import com.google.auto.value.AutoValue;
 
 import org.hisp.dhis.android.core.common.BaseDataModel;
+import org.hisp.dhis.android.core.data.database.StatementBinder;
 
 @AutoValue
-public abstract class TrackedEntityAttributeValueModel extends BaseDataModel {
+public abstract class TrackedEntityAttributeValueModel extends BaseDataModel implements StatementBinder {
 
     public static final String TABLE = "TrackedEntityAttributeValue";
 
@@ -53,6 +54,15 @@ public abstract class TrackedEntityAttributeValueModel extends BaseDataModel {
         return AutoValue_TrackedEntityAttributeValueModel.createFromCursor(cursor);
     }
 
+    /**
+     * @return the columns bound by {@link #bindTo(android.database.sqlite.SQLiteStatement, int)}, in the order of
+     * their bind arguments
+     */
+    @NonNull
+    public static String[] boundColumns() {
+        return AutoValue_TrackedEntityAttributeValueModel.COLUMNS.clone();
+    }
+
     public static Builder builder() {
         return new $$AutoValue_TrackedEntityAttributeValueModel.Builder();
     }
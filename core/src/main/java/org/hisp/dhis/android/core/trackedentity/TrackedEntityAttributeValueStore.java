@@ -33,6 +33,8 @@ import android.support.annotation.Nullable;
 
 import org.hisp.dhis.android.core.common.State;
 
+import java.util.List;
+
 public interface TrackedEntityAttributeValueStore {
 
     long insert(
@@ -41,5 +43,23 @@ public interface TrackedEntityAttributeValueStore {
             @NonNull String trackedEntityAttribute,
             @NonNull String trackedEntityInstance);
 
+    /**
+     * Inserts all the attribute values, like the ones of a downloaded page of tracked entity instances, with
+     * multi-row statements where SQLite supports it.
+     *
+     * @return the number of attribute values inserted
+     */
+    int insertAll(@NonNull List<TrackedEntityAttributeValueModel> trackedEntityAttributeValues);
+
+    /**
+     * Sets an attribute value of a tracked entity instance on the device and marks it as changed, that is
+     * {@link State#TO_UPDATE}, inserting it if the instance has no value of the attribute yet. A synced tracked
+     * entity instance is marked as changed too.
+     *
+     * @return the number of attribute values set
+     */
+    int setValue(@NonNull String trackedEntityInstance, @NonNull String trackedEntityAttribute,
+                 @Nullable String value);
+
     void close();
 }
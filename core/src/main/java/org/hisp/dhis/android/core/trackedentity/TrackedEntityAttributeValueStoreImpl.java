@@ -33,27 +33,37 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import org.hisp.dhis.android.core.common.State;
+import org.hisp.dhis.android.core.data.database.BatchInsert;
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Transaction;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttributeValueModel.Columns;
 
+import java.util.List;
+
+import static org.hisp.dhis.android.core.data.database.DbUtils.insertStatement;
 import static org.hisp.dhis.android.core.utils.StoreUtils.nonNull;
 import static org.hisp.dhis.android.core.utils.StoreUtils.sqLiteBind;
 
 public class TrackedEntityAttributeValueStoreImpl implements TrackedEntityAttributeValueStore {
 
-    private static final String INSERT_STATEMENT = "INSERT INTO " +
-            TrackedEntityAttributeValueModel.TABLE + " (" +
-            TrackedEntityAttributeValueModel.Columns.STATE + ", " +
-            TrackedEntityAttributeValueModel.Columns.VALUE + ", " +
-            TrackedEntityAttributeValueModel.Columns.TRACKED_ENTITY_ATTRIBUTE + ", " +
-            TrackedEntityAttributeValueModel.Columns.TRACKED_ENTITY_INSTANCE + ") " +
-            "VALUES (?, ?, ?, ?)";
+    private static final String INSERT_STATEMENT = insertStatement(
+            TrackedEntityAttributeValueModel.TABLE, TrackedEntityAttributeValueModel.boundColumns());
+
+    private static final String UPDATE_VALUE_STATEMENT = "UPDATE " + TrackedEntityAttributeValueModel.TABLE +
+            " SET " + Columns.VALUE + " = ?, " + Columns.STATE + " = ?" +
+            " WHERE " + Columns.TRACKED_ENTITY_INSTANCE + " = ? AND " + Columns.TRACKED_ENTITY_ATTRIBUTE + " = ?;";
+
+    private static final String UPDATE_INSTANCE_STATE_STATEMENT = "UPDATE " + TrackedEntityInstanceModel.TABLE +
+            " SET " + TrackedEntityInstanceModel.Columns.STATE + " = ?" +
+            " WHERE " + TrackedEntityInstanceModel.Columns.UID + " = ?" +
+            " AND " + TrackedEntityInstanceModel.Columns.STATE + " = ?;";
 
-    private final SQLiteStatement insertRowStatement;
     private final DatabaseAdapter databaseAdapter;
+    private final BatchInsert<TrackedEntityAttributeValueModel> batchInsert;
 
     public TrackedEntityAttributeValueStoreImpl(DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
-        this.insertRowStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
+        this.batchInsert = new BatchInsert<>(databaseAdapter, TrackedEntityAttributeValueModel.TABLE, INSERT_STATEMENT);
     }
 
     @Override
@@ -61,21 +71,77 @@ public class TrackedEntityAttributeValueStoreImpl implements TrackedEntityAttrib
                        @Nullable String value,
                        @NonNull String trackedEntityAttribute,
                        @NonNull String trackedEntityInstance) {
+        SQLiteStatement insertRowStatement = databaseAdapter.cachedStatement(INSERT_STATEMENT);
         nonNull(state);
         nonNull(trackedEntityAttribute);
         nonNull(trackedEntityInstance);
-        sqLiteBind(insertRowStatement, 1, state);
-        sqLiteBind(insertRowStatement, 2, value);
-        sqLiteBind(insertRowStatement, 3, trackedEntityAttribute);
-        sqLiteBind(insertRowStatement, 4, trackedEntityInstance);
+        TrackedEntityAttributeValueModel.builder()
+                .state(state)
+                .value(value)
+                .trackedEntityAttribute(trackedEntityAttribute)
+                .trackedEntityInstance(trackedEntityInstance)
+                .build()
+                .bindTo(insertRowStatement, 1);
 
         long returnValue = databaseAdapter.executeInsert(TrackedEntityAttributeValueModel.TABLE, insertRowStatement);
         insertRowStatement.clearBindings();
         return returnValue;
     }
 
+    @Override
+    public int insertAll(@NonNull List<TrackedEntityAttributeValueModel> trackedEntityAttributeValues) {
+        int size = trackedEntityAttributeValues.size();
+        for (int i = 0; i < size; i++) {
+            TrackedEntityAttributeValueModel trackedEntityAttributeValue = trackedEntityAttributeValues.get(i);
+            nonNull(trackedEntityAttributeValue.state());
+            nonNull(trackedEntityAttributeValue.trackedEntityAttribute());
+            nonNull(trackedEntityAttributeValue.trackedEntityInstance());
+        }
+        return batchInsert.insertAll(trackedEntityAttributeValues);
+    }
+
+    @Override
+    public int setValue(@NonNull String trackedEntityInstance, @NonNull String trackedEntityAttribute,
+                        @Nullable String value) {
+        nonNull(trackedEntityInstance);
+        nonNull(trackedEntityAttribute);
+
+        // the value and the state of its instance are set together, so that an upload sees both or neither
+        Transaction transaction = databaseAdapter.beginNewTransaction();
+        try {
+            int updated = updateOrInsertValue(trackedEntityInstance, trackedEntityAttribute, value);
+
+            // an instance which has not been uploaded yet is uploaded as a whole anyway
+            SQLiteStatement instanceStatement = databaseAdapter.cachedStatement(UPDATE_INSTANCE_STATE_STATEMENT);
+            sqLiteBind(instanceStatement, 1, State.TO_UPDATE);
+            sqLiteBind(instanceStatement, 2, trackedEntityInstance);
+            sqLiteBind(instanceStatement, 3, State.SYNCED);
+            databaseAdapter.executeUpdateDelete(TrackedEntityInstanceModel.TABLE, instanceStatement);
+            instanceStatement.clearBindings();
+
+            transaction.setSuccessful();
+            return updated;
+        } finally {
+            transaction.end();
+        }
+    }
+
+    private int updateOrInsertValue(String trackedEntityInstance, String trackedEntityAttribute, String value) {
+        SQLiteStatement updateStatement = databaseAdapter.cachedStatement(UPDATE_VALUE_STATEMENT);
+        sqLiteBind(updateStatement, 1, value);
+        sqLiteBind(updateStatement, 2, State.TO_UPDATE);
+        sqLiteBind(updateStatement, 3, trackedEntityInstance);
+        sqLiteBind(updateStatement, 4, trackedEntityAttribute);
+        int updated = databaseAdapter.executeUpdateDelete(TrackedEntityAttributeValueModel.TABLE, updateStatement);
+        updateStatement.clearBindings();
+        if (updated > 0) {
+            return updated;
+        }
+        return insert(State.TO_UPDATE, value, trackedEntityAttribute, trackedEntityInstance) > 0 ? 1 : 0;
+    }
+
     @Override
     public void close() {
-        insertRowStatement.close();
+        // the statements are borrowed from the statement cache of the database adapter
     }
 }
@@ -30,8 +30,12 @@ package org.hisp.dhis.android.core.trackedentity;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
-import org.hisp.dhis.android.core.common.Call;
+import org.hisp.dhis.android.core.common.PagedSync;
+import org.hisp.dhis.android.core.common.Pager;
 import org.hisp.dhis.android.core.common.Payload;
+import org.hisp.dhis.android.core.common.SyncCall;
+import org.hisp.dhis.android.core.common.UidChunks;
+import org.hisp.dhis.android.core.data.api.ConditionalCacheInterceptor;
 import org.hisp.dhis.android.core.data.api.Fields;
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
 import org.hisp.dhis.android.core.data.database.Transaction;
@@ -40,13 +44,14 @@ import org.hisp.dhis.android.core.resource.ResourceModel;
 import org.hisp.dhis.android.core.resource.ResourceStore;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
 
 import retrofit2.Response;
 
-public class TrackedEntityCall implements Call<Response<Payload<TrackedEntity>>> {
+public class TrackedEntityCall implements SyncCall<Payload<TrackedEntity>> {
 
     private final TrackedEntityService service;
     private final DatabaseAdapter databaseAdapter;
@@ -55,6 +60,7 @@ public class TrackedEntityCall implements Call<Response<Payload<TrackedEntity>>>
     private final Set<String> uidSet;
     private final Date serverDate;
     private final ResourceModel.Type resourceType = ResourceModel.Type.TRACKED_ENTITY;
+    private final PagedSync<TrackedEntity> pagedSync;
     private Boolean isExecuted = false;
 
     public TrackedEntityCall(@Nullable Set<String> uidSet,
@@ -63,12 +69,28 @@ public class TrackedEntityCall implements Call<Response<Payload<TrackedEntity>>>
                              @NonNull ResourceStore resourceStore,
                              @NonNull TrackedEntityService service,
                              @NonNull Date serverDate) {
+        this(uidSet, databaseAdapter, trackedEntityStore, resourceStore, service, serverDate, 0);
+    }
+
+    /**
+     * @param pageSize number of tracked entities per page, or 0 to download all of them at once. Pages are
+     *                 persisted one by one, see {@link PagedSync}.
+     */
+    public TrackedEntityCall(@Nullable Set<String> uidSet,
+                             @NonNull DatabaseAdapter databaseAdapter,
+                             @NonNull TrackedEntityStore trackedEntityStore,
+                             @NonNull ResourceStore resourceStore,
+                             @NonNull TrackedEntityService service,
+                             @NonNull Date serverDate,
+                             int pageSize) {
         this.uidSet = uidSet;
         this.databaseAdapter = databaseAdapter;
         this.trackedEntityStore = trackedEntityStore;
         this.resourceStore = resourceStore;
         this.service = service;
         this.serverDate = new Date(serverDate.getTime());
+        this.pagedSync = pageSize > 0 ? new PagedSync<TrackedEntity>(databaseAdapter, resourceStore,
+                resourceType, uidSet, pageSize, serverDate) : null;
     }
 
     @Override
@@ -87,52 +109,144 @@ public class TrackedEntityCall implements Call<Response<Payload<TrackedEntity>>>
             isExecuted = true;
         }
 
-        if (uidSet.size() > MAX_UIDS) {
-            throw new IllegalArgumentException("Can't handle the amount of tracked entities: " + uidSet.size() + ". " +
-                    "Max size is: " + MAX_UIDS);
+        if (pagedSync != null) {
+            // every page is written as soon as it is downloaded, since this is the thread which writes
+            Response<Payload<TrackedEntity>> response = pagedSync.download(pages());
+            if (response.isSuccessful()) {
+                persist(response);
+            }
+            return response;
+        }
+
+        Response<Payload<TrackedEntity>> response = download();
+        Transaction transaction = databaseAdapter.beginNewTransaction();
+        try {
+            if (response != null && response.isSuccessful()) {
+                handleTrackedEntities(response);
+                transaction.setSuccessful();
+            }
+        } finally {
+            transaction.end();
+        }
+        return response;
+    }
+
+    @NonNull
+    @Override
+    public Response<Payload<TrackedEntity>> download() throws IOException {
+        if (pagedSync != null) {
+            return pagedSync.downloadPages(pages());
         }
         ResourceHandler resourceHandler = new ResourceHandler(resourceStore);
 
         String lastUpdated = resourceHandler.getLastUpdated(resourceType);
-        Response<Payload<TrackedEntity>> response = getTrackedEntities(lastUpdated);
+        return getTrackedEntities(lastUpdated);
+    }
 
-        TrackedEntityHandler trackedEntityHandler = new TrackedEntityHandler(trackedEntityStore);
+    @Override
+    public void persist(@NonNull Response<Payload<TrackedEntity>> response) throws IOException {
         Transaction transaction = databaseAdapter.beginNewTransaction();
         try {
+            if (pagedSync == null) {
+                handleTrackedEntities(response);
+            } else {
+                // the pages downloaded ahead by download(), if any
+                pagedSync.persistPages();
+                pagedSync.complete();
+            }
+            transaction.setSuccessful();
+        } finally {
+            transaction.end();
+        }
+    }
 
-            if (response != null && response.isSuccessful()) {
-                List<TrackedEntity> trackedEntities = response.body().items();
-                int size = trackedEntities.size();
+    private void handleTrackedEntities(Response<Payload<TrackedEntity>> response) {
+        if (ConditionalCacheInterceptor.isNotModified(response)) {
+            return;
+        }
 
-                for (int i = 0; i < size; i++) {
-                    TrackedEntity trackedEntity = trackedEntities.get(i);
+        TrackedEntityHandler trackedEntityHandler = new TrackedEntityHandler(trackedEntityStore);
+        ResourceHandler resourceHandler = new ResourceHandler(resourceStore);
 
-                    trackedEntityHandler.handleTrackedEntity(trackedEntity);
-                }
-                resourceHandler.handleResource(
-                        resourceType,
-                        serverDate
-                );
-                transaction.setSuccessful();
+        List<TrackedEntity> trackedEntities = response.body().items();
+        int size = trackedEntities.size();
+
+        for (int i = 0; i < size; i++) {
+            TrackedEntity trackedEntity = trackedEntities.get(i);
+
+            trackedEntityHandler.handleTrackedEntity(trackedEntity);
+        }
+
+        // an empty delta keeps the last sync, so that the next request has the same url and can be revalidated
+        if (size > 0) {
+            resourceHandler.handleResource(
+                    resourceType,
+                    serverDate
+            );
+        }
+    }
+
+    private Response<Payload<TrackedEntity>> getTrackedEntities(final String lastUpdated) throws IOException {
+        return UidChunks.download(uidSet, new UidChunks.ChunkCall<Payload<TrackedEntity>>() {
+            @NonNull
+            @Override
+            public Response<Payload<TrackedEntity>> download(@NonNull Set<String> chunk) throws IOException {
+                return service.trackedEntities(
+                        fields(),
+                        TrackedEntity.uid.in(chunk),
+                        TrackedEntity.lastUpdated.gt(lastUpdated),
+                        false
+                ).execute();
             }
-        } finally {
-            transaction.end();
+        });
+    }
+
+    private List<PagedSync.PageCall<Payload<TrackedEntity>>> pages() {
+        List<PagedSync.PageCall<Payload<TrackedEntity>>> pages = new ArrayList<>();
+        for (Set<String> chunk : UidChunks.split(uidSet, UidChunks.MAX_FILTER_LENGTH)) {
+            pages.add(pages(chunk));
         }
-        return response;
+        return pages;
+    }
+
+    private PagedSync.PageCall<Payload<TrackedEntity>> pages(final Set<String> chunk) {
+        return new PagedSync.PageCall<Payload<TrackedEntity>>() {
+            @NonNull
+            @Override
+            public Response<Payload<TrackedEntity>> download(int page, int pageSize) throws IOException {
+                String lastUpdated = new ResourceHandler(resourceStore).getLastUpdated(resourceType);
+                return service.trackedEntitiesPage(
+                        fields(),
+                        TrackedEntity.uid.in(chunk),
+                        TrackedEntity.lastUpdated.gt(lastUpdated),
+                        page, pageSize
+                ).execute();
+            }
+
+            @Override
+            public Pager persist(@NonNull Payload<TrackedEntity> payload) {
+                TrackedEntityHandler trackedEntityHandler = new TrackedEntityHandler(trackedEntityStore);
+                List<TrackedEntity> trackedEntities = payload.items();
+                int size = trackedEntities == null ? 0 : trackedEntities.size();
+                for (int i = 0; i < size; i++) {
+                    trackedEntityHandler.handleTrackedEntity(trackedEntities.get(i));
+                }
+                return payload.pager();
+            }
+        };
     }
 
-    private Response<Payload<TrackedEntity>> getTrackedEntities(String lastUpdated) throws IOException {
-        return service.trackedEntities(
-                Fields.<TrackedEntity>builder().fields(
-                        TrackedEntity.uid, TrackedEntity.code, TrackedEntity.name,
-                        TrackedEntity.displayName, TrackedEntity.created, TrackedEntity.lastUpdated,
-                        TrackedEntity.shortName, TrackedEntity.displayShortName,
-                        TrackedEntity.description, TrackedEntity.displayDescription,
-                        TrackedEntity.deleted
-                ).build(),
-                TrackedEntity.uid.in(uidSet),
-                TrackedEntity.lastUpdated.gt(lastUpdated),
-                false
-        ).execute();
+    /**
+     * @return the fields requested for tracked entities
+     */
+    @NonNull
+    public static Fields<TrackedEntity> fields() {
+        return Fields.<TrackedEntity>builder().fields(
+                TrackedEntity.uid, TrackedEntity.code, TrackedEntity.name,
+                TrackedEntity.displayName, TrackedEntity.created, TrackedEntity.lastUpdated,
+                TrackedEntity.shortName, TrackedEntity.displayShortName,
+                TrackedEntity.description, TrackedEntity.displayDescription,
+                TrackedEntity.deleted
+        ).build();
     }
 }
@@ -47,12 +47,12 @@ public abstract class TrackedEntityDataValue {
     public final static String LAST_UPDATED = "lastUpdated";
     public final static String PROVIDED_ELSEWHERE = "providedElsewhere";
 
-    public static final Field<TrackedEntityAttribute, String> dataElement = Field.create(DATA_ELEMENT);
-    public static final Field<TrackedEntityAttribute, String> storedBy = Field.create(STORED_BY);
-    public static final Field<TrackedEntityAttribute, String> value = Field.create(VALUE);
-    public static final Field<TrackedEntityAttribute, Date> created = Field.create(CREATED);
-    public static final Field<TrackedEntityAttribute, Date> lastUpdated = Field.create(LAST_UPDATED);
-    public static final Field<TrackedEntityAttribute, Boolean> providedElsewhere = Field.create(PROVIDED_ELSEWHERE);
+    public static final Field<TrackedEntityDataValue, String> dataElement = Field.create(DATA_ELEMENT);
+    public static final Field<TrackedEntityDataValue, String> storedBy = Field.create(STORED_BY);
+    public static final Field<TrackedEntityDataValue, String> value = Field.create(VALUE);
+    public static final Field<TrackedEntityDataValue, Date> created = Field.create(CREATED);
+    public static final Field<TrackedEntityDataValue, Date> lastUpdated = Field.create(LAST_UPDATED);
+    public static final Field<TrackedEntityDataValue, Boolean> providedElsewhere = Field.create(PROVIDED_ELSEWHERE);
 
     @Nullable
     @JsonProperty(CREATED)
@@ -30,6 +30,7 @@ package org.hisp.dhis.android.core.trackedentity;
 
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
@@ -37,17 +38,18 @@ import com.gabrielittner.auto.value.cursor.ColumnAdapter;
 import com.gabrielittner.auto.value.cursor.ColumnName;
 import com.google.auto.value.AutoValue;
 
-import org.hisp.dhis.android.core.common.BaseModel;
+import org.hisp.dhis.android.core.common.BaseDataModel;
 import org.hisp.dhis.android.core.data.database.DbDateColumnAdapter;
+import org.hisp.dhis.android.core.data.database.StatementBinder;
 
 import java.util.Date;
 
 @AutoValue
-public abstract class TrackedEntityDataValueModel extends BaseModel {
+public abstract class TrackedEntityDataValueModel extends BaseDataModel implements StatementBinder {
 
     public static final String TABLE = "TrackedEntityDataValue";
 
-    public static class Columns extends BaseModel.Columns {
+    public static class Columns extends BaseDataModel.Columns {
         public static final String EVENT = "event";
         public static final String DATA_ELEMENT = "dataElement";
         public static final String STORED_BY = "storedBy";
@@ -57,6 +59,14 @@ public abstract class TrackedEntityDataValueModel extends BaseModel {
         public static final String PROVIDED_ELSEWHERE = "providedElsewhere";
     }
 
+    /**
+     * @return the columns bound by {@link #bindTo(SQLiteStatement, int)}, in the order of their bind arguments
+     */
+    @NonNull
+    public static String[] boundColumns() {
+        return AutoValue_TrackedEntityDataValueModel.COLUMNS.clone();
+    }
+
     @NonNull
     public static TrackedEntityDataValueModel.Builder builder() {
         return new $$AutoValue_TrackedEntityDataValueModel.Builder();
@@ -101,7 +111,7 @@ public abstract class TrackedEntityDataValueModel extends BaseModel {
     public abstract ContentValues toContentValues();
 
     @AutoValue.Builder
-    public static abstract class Builder extends BaseModel.Builder<Builder> {
+    public static abstract class Builder extends BaseDataModel.Builder<Builder> {
 
         public abstract Builder created(@Nullable Date created);
 
@@ -31,7 +31,12 @@ package org.hisp.dhis.android.core.trackedentity;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import org.hisp.dhis.android.core.common.State;
+
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 
 public interface TrackedEntityDataValueStore {
     long insert(@NonNull String event, @Nullable Date created, @Nullable Date lastUpdated,
@@ -39,5 +44,35 @@ public interface TrackedEntityDataValueStore {
                 @Nullable String value, @Nullable Boolean providedElsewhere
     );
 
+    /**
+     * Inserts all the data values, like the ones of an event, with multi-row statements where SQLite supports it.
+     *
+     * @return the number of data values inserted
+     */
+    int insertAll(@NonNull List<TrackedEntityDataValueModel> dataValues);
+
+    /**
+     * @return the data values of the events, by event uid. Events without data values have no entry.
+     */
+    @NonNull
+    Map<String, List<TrackedEntityDataValueModel>> queryByEvents(@NonNull Collection<String> events);
+
+    /**
+     * Sets a value of an event on the device and marks it as changed, that is {@link State#TO_UPDATE}, inserting
+     * it if the event has no value of the data element yet. A synced event is marked as changed too, so that it
+     * is uploaded.
+     *
+     * @return the number of data values set
+     */
+    int setValue(@NonNull String event, @NonNull String dataElement, @Nullable String value);
+
+    /**
+     * Sets the state of the data values which still have the value of the given rows, like once they have been
+     * uploaded. A value changed since it has been read keeps its state and is uploaded again.
+     *
+     * @return the number of data values whose state has been set
+     */
+    int setState(@NonNull Collection<TrackedEntityDataValueModel> dataValues, @NonNull State state);
+
     void close();
 }
@@ -28,59 +28,194 @@
 
 package org.hisp.dhis.android.core.trackedentity;
 
+import android.database.Cursor;
 import android.database.sqlite.SQLiteStatement;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import org.hisp.dhis.android.core.common.State;
+import org.hisp.dhis.android.core.data.database.BatchInsert;
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Transaction;
+import org.hisp.dhis.android.core.event.EventModel;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityDataValueModel.Columns;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+import static org.hisp.dhis.android.core.data.database.DbUtils.insertStatement;
+import static org.hisp.dhis.android.core.data.database.DbUtils.placeholders;
 import static org.hisp.dhis.android.core.utils.StoreUtils.nonNull;
 import static org.hisp.dhis.android.core.utils.StoreUtils.sqLiteBind;
 
 public class TrackedEntityDataValueStoreImpl implements TrackedEntityDataValueStore {
-    private static final String INSERT_STATEMENT = "INSERT INTO " +
-            TrackedEntityDataValueModel.TABLE + " (" +
-            TrackedEntityDataValueModel.Columns.EVENT + ", " +
-            TrackedEntityDataValueModel.Columns.CREATED + ", " +
-            TrackedEntityDataValueModel.Columns.LAST_UPDATED + ", " +
-            TrackedEntityDataValueModel.Columns.DATA_ELEMENT + ", " +
-            TrackedEntityDataValueModel.Columns.STORED_BY + ", " +
-            TrackedEntityDataValueModel.Columns.VALUE + ", " +
-            TrackedEntityDataValueModel.Columns.PROVIDED_ELSEWHERE +
-            ") " + "VALUES (?,?,?,?,?,?,?)";
-
-    private final SQLiteStatement insertRowStatement;
+    private static final String INSERT_STATEMENT = insertStatement(
+            TrackedEntityDataValueModel.TABLE, TrackedEntityDataValueModel.boundColumns());
+
+    private static final String QUERY_BY_EVENTS_STATEMENT = "SELECT * FROM " + TrackedEntityDataValueModel.TABLE +
+            " WHERE " + TrackedEntityDataValueModel.Columns.EVENT + " IN (";
+
+    private static final String UPDATE_VALUE_STATEMENT = "UPDATE " + TrackedEntityDataValueModel.TABLE +
+            " SET " + Columns.VALUE + " = ?, " + Columns.STATE + " = ?" +
+            " WHERE " + Columns.EVENT + " = ? AND " + Columns.DATA_ELEMENT + " = ?;";
+
+    private static final String INSERT_VALUE_STATEMENT = "INSERT INTO " + TrackedEntityDataValueModel.TABLE + " (" +
+            Columns.EVENT + ", " +
+            Columns.DATA_ELEMENT + ", " +
+            Columns.VALUE + ", " +
+            Columns.STATE + ") " +
+            "VALUES (?, ?, ?, ?);";
+
+    private static final String UPDATE_EVENT_STATE_STATEMENT = "UPDATE " + EventModel.TABLE +
+            " SET " + EventModel.Columns.STATE + " = ?" +
+            " WHERE " + EventModel.Columns.UID + " = ? AND " + EventModel.Columns.STATE + " = ?;";
+
+    private static final String UPDATE_STATE_STATEMENT = "UPDATE " + TrackedEntityDataValueModel.TABLE +
+            " SET " + Columns.STATE + " = ? WHERE " + Columns.EVENT + " = ? AND " + Columns.DATA_ELEMENT + " = ?" +
+            " AND " + Columns.VALUE + " IS ?;";
+
+    private final BatchInsert<TrackedEntityDataValueModel> batchInsert;
     private final DatabaseAdapter databaseAdapter;
 
     public TrackedEntityDataValueStoreImpl(DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
-        this.insertRowStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
+        this.batchInsert = new BatchInsert<>(databaseAdapter, TrackedEntityDataValueModel.TABLE, INSERT_STATEMENT);
     }
 
     @Override
     public long insert(@NonNull String event, @Nullable Date created, @Nullable Date lastUpdated,
                        @Nullable String dataElement, @Nullable String storedBy,
                        @Nullable String value, @Nullable Boolean providedElsewhere) {
+        SQLiteStatement insertRowStatement = databaseAdapter.cachedStatement(INSERT_STATEMENT);
 
         nonNull(event);
         nonNull(dataElement);
-        sqLiteBind(insertRowStatement, 1, event);
-        sqLiteBind(insertRowStatement, 2, created);
-        sqLiteBind(insertRowStatement, 3, lastUpdated);
-        sqLiteBind(insertRowStatement, 4, dataElement);
-        sqLiteBind(insertRowStatement, 5, storedBy);
-        sqLiteBind(insertRowStatement, 6, value);
-        sqLiteBind(insertRowStatement, 7, providedElsewhere);
+        TrackedEntityDataValueModel.builder()
+                .event(event)
+                .created(created)
+                .lastUpdated(lastUpdated)
+                .dataElement(dataElement)
+                .storedBy(storedBy)
+                .value(value)
+                .providedElsewhere(providedElsewhere)
+                .build()
+                .bindTo(insertRowStatement, 1);
 
         long ret = databaseAdapter.executeInsert(TrackedEntityDataValueModel.TABLE, insertRowStatement);
         insertRowStatement.clearBindings();
         return ret;
     }
 
+    @Override
+    public int insertAll(@NonNull List<TrackedEntityDataValueModel> dataValues) {
+        int size = dataValues.size();
+        for (int i = 0; i < size; i++) {
+            nonNull(dataValues.get(i).event());
+            nonNull(dataValues.get(i).dataElement());
+        }
+        return batchInsert.insertAll(dataValues);
+    }
+
+    @NonNull
+    @Override
+    @SuppressWarnings("PMD.UseConcurrentHashMap")
+    public Map<String, List<TrackedEntityDataValueModel>> queryByEvents(@NonNull Collection<String> events) {
+        Map<String, List<TrackedEntityDataValueModel>> dataValues = new HashMap<>();
+        List<String> eventList = new ArrayList<>(events);
+        for (int offset = 0; offset < eventList.size(); offset += BatchInsert.MAX_BIND_ARGUMENTS) {
+            List<String> chunk = eventList.subList(offset,
+                    Math.min(eventList.size(), offset + BatchInsert.MAX_BIND_ARGUMENTS));
+            Cursor cursor = databaseAdapter.query(QUERY_BY_EVENTS_STATEMENT + placeholders(chunk.size()) + ")",
+                    chunk.toArray(new String[chunk.size()]));
+            if (cursor != null) {
+                try {
+                    while (cursor.moveToNext()) {
+                        TrackedEntityDataValueModel dataValue = TrackedEntityDataValueModel.create(cursor);
+                        List<TrackedEntityDataValueModel> eventDataValues = dataValues.get(dataValue.event());
+                        if (eventDataValues == null) {
+                            eventDataValues = new ArrayList<>();
+                            dataValues.put(dataValue.event(), eventDataValues);
+                        }
+                        eventDataValues.add(dataValue);
+                    }
+                } finally {
+                    cursor.close();
+                }
+            }
+        }
+        return dataValues;
+    }
+
+    @Override
+    public int setValue(@NonNull String event, @NonNull String dataElement, @Nullable String value) {
+        nonNull(event);
+        nonNull(dataElement);
+
+        // the value and the state of its event are set together, so that an upload sees both or neither
+        Transaction transaction = databaseAdapter.beginNewTransaction();
+        try {
+            int updated = updateOrInsertValue(event, dataElement, value);
+
+            // an event which has not been uploaded yet is uploaded as a whole anyway
+            SQLiteStatement eventStatement = databaseAdapter.cachedStatement(UPDATE_EVENT_STATE_STATEMENT);
+            sqLiteBind(eventStatement, 1, State.TO_UPDATE);
+            sqLiteBind(eventStatement, 2, event);
+            sqLiteBind(eventStatement, 3, State.SYNCED);
+            databaseAdapter.executeUpdateDelete(EventModel.TABLE, eventStatement);
+            eventStatement.clearBindings();
+
+            transaction.setSuccessful();
+            return updated;
+        } finally {
+            transaction.end();
+        }
+    }
+
+    private int updateOrInsertValue(String event, String dataElement, String value) {
+        SQLiteStatement updateStatement = databaseAdapter.cachedStatement(UPDATE_VALUE_STATEMENT);
+        sqLiteBind(updateStatement, 1, value);
+        sqLiteBind(updateStatement, 2, State.TO_UPDATE);
+        sqLiteBind(updateStatement, 3, event);
+        sqLiteBind(updateStatement, 4, dataElement);
+        int updated = databaseAdapter.executeUpdateDelete(TrackedEntityDataValueModel.TABLE, updateStatement);
+        updateStatement.clearBindings();
+        if (updated > 0) {
+            return updated;
+        }
+
+        SQLiteStatement insertStatement = databaseAdapter.cachedStatement(INSERT_VALUE_STATEMENT);
+        sqLiteBind(insertStatement, 1, event);
+        sqLiteBind(insertStatement, 2, dataElement);
+        sqLiteBind(insertStatement, 3, value);
+        sqLiteBind(insertStatement, 4, State.TO_UPDATE);
+        long inserted = databaseAdapter.executeInsert(TrackedEntityDataValueModel.TABLE, insertStatement);
+        insertStatement.clearBindings();
+        return inserted > 0 ? 1 : 0;
+    }
+
+    @Override
+    public int setState(@NonNull Collection<TrackedEntityDataValueModel> dataValues, @NonNull State state) {
+        int updated = 0;
+        SQLiteStatement sqLiteStatement = databaseAdapter.cachedStatement(UPDATE_STATE_STATEMENT);
+        for (TrackedEntityDataValueModel dataValue : dataValues) {
+            nonNull(dataValue.event());
+            nonNull(dataValue.dataElement());
+            sqLiteBind(sqLiteStatement, 1, state);
+            sqLiteBind(sqLiteStatement, 2, dataValue.event());
+            sqLiteBind(sqLiteStatement, 3, dataValue.dataElement());
+            sqLiteBind(sqLiteStatement, 4, dataValue.value());
+            updated += databaseAdapter.executeUpdateDelete(TrackedEntityDataValueModel.TABLE, sqLiteStatement);
+            sqLiteStatement.clearBindings();
+        }
+        return updated;
+    }
+
     @Override
     public void close() {
-        insertRowStatement.close();
+        // the statements are borrowed from the statement cache of the database adapter
     }
 }
@@ -39,11 +39,23 @@ public class TrackedEntityHandler {
         this.store = store;
     }
 
+    /**
+     * Makes sure that a tracked entity which is referenced by another object exists, without overwriting it.
+     * The tracked entity itself is downloaded separately.
+     */
+    public void handleTrackedEntityReference(TrackedEntity trackedEntity) {
+        if (trackedEntity == null || isDeleted(trackedEntity)) {
+            return;
+        }
+
+        store.insertIfNotExists(trackedEntity.uid());
+    }
+
     public void handleTrackedEntity(@NonNull TrackedEntity trackedEntity) {
         if (isDeleted(trackedEntity)) {
             store.delete(trackedEntity.uid());
         } else {
-            int updatedRow = store.update(
+            store.upsert(
                     trackedEntity.uid(),
                     trackedEntity.code(),
                     trackedEntity.name(),
@@ -53,23 +65,8 @@ public class TrackedEntityHandler {
                     trackedEntity.shortName(),
                     trackedEntity.displayShortName(),
                     trackedEntity.description(),
-                    trackedEntity.displayDescription(),
-                    trackedEntity.uid()
+                    trackedEntity.displayDescription()
             );
-            if (updatedRow <= 0) {
-                store.insert(
-                        trackedEntity.uid(),
-                        trackedEntity.code(),
-                        trackedEntity.name(),
-                        trackedEntity.displayName(),
-                        trackedEntity.created(),
-                        trackedEntity.lastUpdated(),
-                        trackedEntity.shortName(),
-                        trackedEntity.displayShortName(),
-                        trackedEntity.description(),
-                        trackedEntity.displayDescription()
-                );
-            }
         }
     }
 }
@@ -36,6 +36,7 @@ import com.google.auto.value.AutoValue;
 
 import org.hisp.dhis.android.core.data.api.Field;
 import org.hisp.dhis.android.core.data.api.NestedField;
+import org.hisp.dhis.android.core.enrollment.Enrollment;
 import org.hisp.dhis.android.core.relationship.Relationship;
 
 import java.util.Date;
@@ -52,16 +53,20 @@ public abstract class TrackedEntityInstance {
     private static final String TRACKED_ENTITY_ATTRIBUTES = "attributes";
     private static final String RELATIONSHIPS = "relationships";
     private static final String TRACKED_ENTITY = "trackedEntity";
+    private static final String ENROLLMENTS = "enrollments";
 
     public static final Field<TrackedEntityInstance, String> uid = Field.create(UID);
     public static final Field<TrackedEntityInstance, Date> created = Field.create(CREATED);
     public static final Field<TrackedEntityInstance, Date> lastUpdated = Field.create(LAST_UPDATED);
     public static final Field<TrackedEntityInstance, String> organisationUnit = Field.create(ORGANISATION_UNIT);
+    public static final Field<TrackedEntityInstance, String> trackedEntity = Field.create(TRACKED_ENTITY);
 
-    public static final NestedField<TrackedEntityInstance, TrackedEntityAttribute> trackedEntityAttributes
+    public static final NestedField<TrackedEntityInstance, TrackedEntityAttributeValue> trackedEntityAttributes
             = NestedField.create(TRACKED_ENTITY_ATTRIBUTES);
     public static final NestedField<TrackedEntityInstance, Relationship> relationships
             = NestedField.create(RELATIONSHIPS);
+    public static final NestedField<TrackedEntityInstance, Enrollment> enrollments
+            = NestedField.create(ENROLLMENTS);
 
     @JsonProperty(UID)
     public abstract String uid();
@@ -90,6 +95,10 @@ public abstract class TrackedEntityInstance {
     @JsonProperty(RELATIONSHIPS)
     public abstract List<Relationship> relationships();
 
+    @Nullable
+    @JsonProperty(ENROLLMENTS)
+    public abstract List<Enrollment> enrollments();
+
     @JsonCreator
     public static TrackedEntityInstance create(
             @JsonProperty(UID) String uid,
@@ -98,9 +107,11 @@ public abstract class TrackedEntityInstance {
             @JsonProperty(ORGANISATION_UNIT) String organisationUnit,
             @JsonProperty(TRACKED_ENTITY) String trackedEntity,
             @JsonProperty(TRACKED_ENTITY_ATTRIBUTES) List<TrackedEntityAttributeValue> trackedEntityAttributeValues,
-            @JsonProperty(RELATIONSHIPS) List<Relationship> relationships) {
+            @JsonProperty(RELATIONSHIPS) List<Relationship> relationships,
+            @JsonProperty(ENROLLMENTS) List<Enrollment> enrollments) {
         return new AutoValue_TrackedEntityInstance(uid, created, lastUpdated, organisationUnit, trackedEntity,
                 safeUnmodifiableList(trackedEntityAttributeValues),
-                safeUnmodifiableList(relationships));
+                safeUnmodifiableList(relationships),
+                safeUnmodifiableList(enrollments));
     }
 }
@@ -0,0 +1,414 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.trackedentity;
+
+import android.support.annotation.NonNull;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.hisp.dhis.android.core.common.Call;
+import org.hisp.dhis.android.core.common.Coordinates;
+import org.hisp.dhis.android.core.common.PagedSync;
+import org.hisp.dhis.android.core.common.Pager;
+import org.hisp.dhis.android.core.common.PayloadParser;
+import org.hisp.dhis.android.core.common.State;
+import org.hisp.dhis.android.core.data.api.Fields;
+import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Transaction;
+import org.hisp.dhis.android.core.enrollment.Enrollment;
+import org.hisp.dhis.android.core.enrollment.EnrollmentModel;
+import org.hisp.dhis.android.core.enrollment.EnrollmentStore;
+import org.hisp.dhis.android.core.event.Event;
+import org.hisp.dhis.android.core.event.EventCall;
+import org.hisp.dhis.android.core.event.EventModel;
+import org.hisp.dhis.android.core.event.EventStore;
+import org.hisp.dhis.android.core.resource.ResourceHandler;
+import org.hisp.dhis.android.core.resource.ResourceModel;
+import org.hisp.dhis.android.core.resource.ResourceStore;
+import org.hisp.dhis.android.core.systeminfo.SystemInfo;
+import org.hisp.dhis.android.core.systeminfo.SystemInfoCall;
+import org.hisp.dhis.android.core.systeminfo.SystemInfoService;
+import org.hisp.dhis.android.core.systeminfo.SystemInfoStore;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import okhttp3.ResponseBody;
+import retrofit2.Response;
+
+/**
+ * Downloads the tracked entity instances of organisation units, and of the organisation units below them, which
+ * have changed since the last download of the organisation unit, together with their attribute values, their
+ * enrollments and the events of their enrollments.
+ * <p>
+ * Tracked entity instances are requested page by page, one organisation unit after the other, and every page is
+ * persisted in its own transaction, see {@link PagedSync}. The payload is read as a stream: tracked entity
+ * instances are parsed one at a time, with everything nested in them, and written by batches of rows, so memory
+ * use is bounded by the size of a batch rather than by the size of the caseload. A tracked entity instance is
+ * replaced as a whole, so enrollments and events removed on the server go too, unless it has local changes which
+ * have not been uploaded yet, in which case it is kept as it is.
+ * </p>
+ * <p>
+ * The last download is recorded for every organisation unit, so an organisation unit which is added later is
+ * downloaded in full without downloading the others again. Relationships are not requested, since the tracked
+ * entity instances they point to are not necessarily downloaded.
+ * </p>
+ */
+public class TrackedEntityInstanceCall implements Call<Response> {
+    private static final String DESCENDANTS = "DESCENDANTS";
+    private static final int BATCH_SIZE = 50;
+
+    private final DatabaseAdapter databaseAdapter;
+    private final SystemInfoStore systemInfoStore;
+    private final SystemInfoService systemInfoService;
+    private final ResourceStore resourceStore;
+    private final TrackedEntityInstanceService trackedEntityInstanceService;
+    private final TrackedEntityInstanceStore trackedEntityInstanceStore;
+    private final TrackedEntityAttributeValueStore trackedEntityAttributeValueStore;
+    private final EnrollmentStore enrollmentStore;
+    private final EventStore eventStore;
+    private final TrackedEntityDataValueStore trackedEntityDataValueStore;
+    private final ObjectMapper objectMapper;
+    private final Set<String> organisationUnitUids;
+    private final int pageSize;
+    private boolean isExecuted;
+
+    /**
+     * @param pageSize number of tracked entity instances per page
+     */
+    public TrackedEntityInstanceCall(@NonNull DatabaseAdapter databaseAdapter,
+                                     @NonNull SystemInfoStore systemInfoStore,
+                                     @NonNull SystemInfoService systemInfoService,
+                                     @NonNull ResourceStore resourceStore,
+                                     @NonNull TrackedEntityInstanceService trackedEntityInstanceService,
+                                     @NonNull TrackedEntityInstanceStore trackedEntityInstanceStore,
+                                     @NonNull TrackedEntityAttributeValueStore trackedEntityAttributeValueStore,
+                                     @NonNull EnrollmentStore enrollmentStore,
+                                     @NonNull EventStore eventStore,
+                                     @NonNull TrackedEntityDataValueStore trackedEntityDataValueStore,
+                                     @NonNull ObjectMapper objectMapper,
+                                     @NonNull Set<String> organisationUnitUids,
+                                     int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize <= 0");
+        }
+        this.databaseAdapter = databaseAdapter;
+        this.systemInfoStore = systemInfoStore;
+        this.systemInfoService = systemInfoService;
+        this.resourceStore = resourceStore;
+        this.trackedEntityInstanceService = trackedEntityInstanceService;
+        this.trackedEntityInstanceStore = trackedEntityInstanceStore;
+        this.trackedEntityAttributeValueStore = trackedEntityAttributeValueStore;
+        this.enrollmentStore = enrollmentStore;
+        this.eventStore = eventStore;
+        this.trackedEntityDataValueStore = trackedEntityDataValueStore;
+        this.objectMapper = objectMapper;
+        this.organisationUnitUids = new TreeSet<>(organisationUnitUids);
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public boolean isExecuted() {
+        synchronized (this) {
+            return isExecuted;
+        }
+    }
+
+    @Override
+    public Response call() throws Exception {
+        synchronized (this) {
+            if (isExecuted) {
+                throw new IllegalStateException("Already executed");
+            }
+            isExecuted = true;
+        }
+
+        Response<SystemInfo> systemInfoResponse = new SystemInfoCall(
+                databaseAdapter, systemInfoStore, systemInfoService, resourceStore).call();
+        if (!systemInfoResponse.isSuccessful()) {
+            return systemInfoResponse;
+        }
+
+        // the organisation units are requested in the same order by every attempt
+        List<PagedSync.PageCall<ResponseBody>> pages = new ArrayList<>();
+        for (String organisationUnitUid : organisationUnitUids) {
+            pages.add(pages(organisationUnitUid));
+        }
+
+        PagedSync<TrackedEntityInstance> pagedSync = new PagedSync<>(databaseAdapter, resourceStore,
+                ResourceModel.Type.TRACKED_ENTITY_INSTANCE, organisationUnitUids, pageSize,
+                systemInfoResponse.body().serverDate());
+        Response response = pagedSync.download(pages);
+        if (response.isSuccessful()) {
+            ResourceHandler resourceHandler = new ResourceHandler(resourceStore);
+            Transaction transaction = databaseAdapter.beginNewTransaction();
+            try {
+                for (String organisationUnitUid : organisationUnitUids) {
+                    resourceHandler.handleResource(ResourceModel.Type.TRACKED_ENTITY_INSTANCE,
+                            organisationUnitUid, pagedSync.pagingStarted());
+                }
+                pagedSync.complete();
+                transaction.setSuccessful();
+            } finally {
+                transaction.end();
+            }
+        }
+        return response;
+    }
+
+    private PagedSync.PageCall<ResponseBody> pages(final String organisationUnitUid) {
+        return new PagedSync.PageCall<ResponseBody>() {
+            @NonNull
+            @Override
+            public Response<ResponseBody> download(int page, int pageSize) throws IOException {
+                String lastUpdated = new ResourceHandler(resourceStore).getLastUpdated(
+                        ResourceModel.Type.TRACKED_ENTITY_INSTANCE, organisationUnitUid);
+                return trackedEntityInstanceService.trackedEntityInstances(organisationUnitUid, DESCENDANTS,
+                        fields(), lastUpdated, page, pageSize, true).execute();
+            }
+
+            @Override
+            public Pager persist(@NonNull ResponseBody body) throws IOException {
+                TrackedEntityInstanceBatch batch = new TrackedEntityInstanceBatch();
+                Pager pager = new PayloadParser<>(objectMapper, TrackedEntityInstance.class)
+                        .parse(body.source(), batch);
+                batch.write();
+                return pager;
+            }
+        };
+    }
+
+    private static Fields<TrackedEntityInstance> fields() {
+        return Fields.<TrackedEntityInstance>builder().fields(
+                TrackedEntityInstance.uid, TrackedEntityInstance.created, TrackedEntityInstance.lastUpdated,
+                TrackedEntityInstance.organisationUnit, TrackedEntityInstance.trackedEntity,
+                TrackedEntityInstance.trackedEntityAttributes.with(
+                        TrackedEntityAttributeValue.trackedEntityAttribute, TrackedEntityAttributeValue.value
+                ),
+                TrackedEntityInstance.enrollments.with(
+                        Enrollment.uid, Enrollment.created, Enrollment.lastUpdated, Enrollment.organisationUnit,
+                        Enrollment.program, Enrollment.dateOfEnrollment, Enrollment.dateOfIncident,
+                        Enrollment.followUp, Enrollment.enrollmentStatus, Enrollment.trackedEntityInstance,
+                        Enrollment.coordinate,
+                        Enrollment.events.with(
+                                Event.uid, Event.enrollment, Event.created, Event.lastUpdated, Event.status,
+                                Event.coordinates, Event.program, Event.programStage, Event.organisationUnit,
+                                Event.eventDate, Event.completedDate, Event.dueDate,
+                                Event.trackedEntityDataValues.with(
+                                        TrackedEntityDataValue.dataElement, TrackedEntityDataValue.storedBy,
+                                        TrackedEntityDataValue.value, TrackedEntityDataValue.created,
+                                        TrackedEntityDataValue.lastUpdated, TrackedEntityDataValue.providedElsewhere
+                                )
+                        )
+                )
+        ).build();
+    }
+
+    /**
+     * Collects parsed tracked entity instances and writes them, with the rows nested in them, once a batch is
+     * full.
+     */
+    private final class TrackedEntityInstanceBatch implements PayloadParser.ItemHandler<TrackedEntityInstance> {
+        private List<TrackedEntityInstance> trackedEntityInstances = new ArrayList<>(BATCH_SIZE);
+
+        @Override
+        public void handle(@NonNull TrackedEntityInstance trackedEntityInstance) {
+            trackedEntityInstances.add(trackedEntityInstance);
+            if (trackedEntityInstances.size() >= BATCH_SIZE) {
+                write();
+            }
+        }
+
+        void write() {
+            if (trackedEntityInstances.isEmpty()) {
+                return;
+            }
+
+            Set<String> uids = new HashSet<>();
+            for (TrackedEntityInstance trackedEntityInstance : trackedEntityInstances) {
+                uids.add(trackedEntityInstance.uid());
+            }
+            Set<String> uidsWithLocalChanges = trackedEntityInstanceStore.queryUidsWithLocalChanges(uids);
+            uids.removeAll(uidsWithLocalChanges);
+
+            List<TrackedEntityInstanceModel> instanceRows = new ArrayList<>(uids.size());
+            List<TrackedEntityAttributeValueModel> attributeValueRows = new ArrayList<>();
+            List<EnrollmentModel> enrollmentRows = new ArrayList<>();
+            List<EventModel> eventRows = new ArrayList<>();
+            List<TrackedEntityDataValueModel> dataValueRows = new ArrayList<>();
+            for (TrackedEntityInstance trackedEntityInstance : trackedEntityInstances) {
+                if (uidsWithLocalChanges.contains(trackedEntityInstance.uid())) {
+                    continue;
+                }
+                instanceRows.add(trackedEntityInstanceModel(trackedEntityInstance));
+                addAttributeValueRows(trackedEntityInstance, attributeValueRows);
+                addEnrollmentRows(trackedEntityInstance, enrollmentRows, eventRows, dataValueRows);
+            }
+
+            // attribute values and enrollments are deleted with the tracked entity instances, events are not
+            // linked to them in the database and may have been written by the download of events
+            Set<String> eventUids = eventUids(eventRows);
+            Set<String> eventUidsWithLocalChanges = eventStore.queryUidsWithLocalChanges(eventUids);
+            if (!eventUidsWithLocalChanges.isEmpty()) {
+                eventRows = withoutEvents(eventRows, eventUidsWithLocalChanges);
+                dataValueRows = withoutDataValuesOfEvents(dataValueRows, eventUidsWithLocalChanges);
+                eventUids.removeAll(eventUidsWithLocalChanges);
+            }
+
+            trackedEntityInstanceStore.delete(uids);
+            eventStore.delete(eventUids);
+            trackedEntityInstanceStore.insertAll(instanceRows);
+            if (!attributeValueRows.isEmpty()) {
+                trackedEntityAttributeValueStore.insertAll(attributeValueRows);
+            }
+            if (!enrollmentRows.isEmpty()) {
+                enrollmentStore.insertAll(enrollmentRows);
+            }
+            if (!eventRows.isEmpty()) {
+                eventStore.insertAll(eventRows);
+            }
+            if (!dataValueRows.isEmpty()) {
+                trackedEntityDataValueStore.insertAll(dataValueRows);
+            }
+
+            trackedEntityInstances = new ArrayList<>(BATCH_SIZE);
+        }
+    }
+
+    private static Set<String> eventUids(List<EventModel> eventRows) {
+        Set<String> eventUids = new HashSet<>();
+        for (EventModel event : eventRows) {
+            eventUids.add(event.uid());
+        }
+        return eventUids;
+    }
+
+    private static List<EventModel> withoutEvents(List<EventModel> eventRows, Set<String> eventUids) {
+        List<EventModel> remainingRows = new ArrayList<>(eventRows.size());
+        for (EventModel event : eventRows) {
+            if (!eventUids.contains(event.uid())) {
+                remainingRows.add(event);
+            }
+        }
+        return remainingRows;
+    }
+
+    private static List<TrackedEntityDataValueModel> withoutDataValuesOfEvents(
+            List<TrackedEntityDataValueModel> dataValueRows, Set<String> eventUids) {
+        List<TrackedEntityDataValueModel> remainingRows = new ArrayList<>(dataValueRows.size());
+        for (TrackedEntityDataValueModel dataValue : dataValueRows) {
+            if (!eventUids.contains(dataValue.event())) {
+                remainingRows.add(dataValue);
+            }
+        }
+        return remainingRows;
+    }
+
+    private static void addAttributeValueRows(TrackedEntityInstance trackedEntityInstance,
+                                              List<TrackedEntityAttributeValueModel> attributeValueRows) {
+        List<TrackedEntityAttributeValue> attributeValues = trackedEntityInstance.trackedEntityAttributeValues();
+        if (attributeValues == null) {
+            return;
+        }
+        for (TrackedEntityAttributeValue attributeValue : attributeValues) {
+            attributeValueRows.add(TrackedEntityAttributeValueModel.builder()
+                    .trackedEntityInstance(trackedEntityInstance.uid())
+                    .trackedEntityAttribute(attributeValue.trackedEntityAttribute())
+                    .value(attributeValue.value())
+                    .state(State.SYNCED)
+                    .build());
+        }
+    }
+
+    private static void addEnrollmentRows(TrackedEntityInstance trackedEntityInstance,
+                                          List<EnrollmentModel> enrollmentRows, List<EventModel> eventRows,
+                                          List<TrackedEntityDataValueModel> dataValueRows) {
+        List<Enrollment> enrollments = trackedEntityInstance.enrollments();
+        if (enrollments == null) {
+            return;
+        }
+        for (Enrollment enrollment : enrollments) {
+            enrollmentRows.add(enrollmentModel(trackedEntityInstance.uid(), enrollment));
+            List<Event> events = enrollment.events();
+            if (events == null) {
+                continue;
+            }
+            for (Event event : events) {
+                eventRows.add(EventCall.eventModel(event));
+                List<TrackedEntityDataValue> dataValues = event.trackedEntityDataValues();
+                if (dataValues != null) {
+                    for (TrackedEntityDataValue dataValue : dataValues) {
+                        dataValueRows.add(EventCall.dataValueModel(event.uid(), dataValue));
+                    }
+                }
+            }
+        }
+    }
+
+    private static TrackedEntityInstanceModel trackedEntityInstanceModel(
+            TrackedEntityInstance trackedEntityInstance) {
+        return TrackedEntityInstanceModel.builder()
+                .uid(trackedEntityInstance.uid())
+                .created(trackedEntityInstance.created())
+                .lastUpdated(trackedEntityInstance.lastUpdated())
+                .organisationUnit(trackedEntityInstance.organisationUnit())
+                .trackedEntity(trackedEntityInstance.trackedEntity())
+                .state(State.SYNCED)
+                .build();
+    }
+
+    private static EnrollmentModel enrollmentModel(String trackedEntityInstance, Enrollment enrollment) {
+        String latitude = null;
+        String longitude = null;
+        Coordinates coordinate = enrollment.coordinate();
+        if (coordinate != null) {
+            latitude = String.valueOf(coordinate.latitude());
+            longitude = String.valueOf(coordinate.longitude());
+        }
+        return EnrollmentModel.builder()
+                .uid(enrollment.uid())
+                .created(enrollment.created())
+                .lastUpdated(enrollment.lastUpdated())
+                .organisationUnit(enrollment.organisationUnit())
+                .program(enrollment.program())
+                .dateOfEnrollment(enrollment.dateOfEnrollment())
+                .dateOfIncident(enrollment.dateOfIncident())
+                .followUp(enrollment.followUp())
+                .enrollmentStatus(enrollment.enrollmentStatus())
+                .trackedEntityInstance(trackedEntityInstance)
+                .latitude(latitude)
+                .longitude(longitude)
+                .state(State.SYNCED)
+                .build();
+    }
+}
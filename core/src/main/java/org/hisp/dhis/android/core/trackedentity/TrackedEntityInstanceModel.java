@@ -37,9 +37,10 @@ import com.gabrielittner.auto.value.cursor.ColumnName;
 import com.google.auto.value.AutoValue;
 
 import org.hisp.dhis.android.core.common.BaseIdentifiableDataModel;
+import org.hisp.dhis.android.core.data.database.StatementBinder;
 
 @AutoValue
-public abstract class TrackedEntityInstanceModel extends BaseIdentifiableDataModel {
+public abstract class TrackedEntityInstanceModel extends BaseIdentifiableDataModel implements StatementBinder {
     public static final String TABLE = "TrackedEntityInstance";
 
     public static class Columns extends BaseIdentifiableDataModel.Columns {
@@ -48,6 +49,15 @@ public abstract class TrackedEntityInstanceModel extends BaseIdentifiableDataMod
         public static final String TRACKED_ENTITY = "trackedEntity";
     }
 
+    /**
+     * @return the columns bound by {@link #bindTo(android.database.sqlite.SQLiteStatement, int)}, in the order of
+     * their bind arguments
+     */
+    @NonNull
+    public static String[] boundColumns() {
+        return AutoValue_TrackedEntityInstanceModel.COLUMNS.clone();
+    }
+
     @NonNull
     public static TrackedEntityInstanceModel.Builder builder() {
         return new $$AutoValue_TrackedEntityInstanceModel.Builder();
@@ -33,11 +33,38 @@ import android.support.annotation.Nullable;
 
 import org.hisp.dhis.android.core.common.State;
 
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
+import java.util.Set;
 
 public interface TrackedEntityInstanceStore {
     long insert(@NonNull String uid, @Nullable Date created, @Nullable Date lastUpdated,
                 @NonNull String organisationUnit, @NonNull String trackedEntity, @Nullable State state);
 
+    /**
+     * Inserts all the tracked entity instances, like the ones of a downloaded page, with multi-row statements
+     * where SQLite supports it.
+     *
+     * @return the number of tracked entity instances inserted
+     */
+    int insertAll(@NonNull List<TrackedEntityInstanceModel> trackedEntityInstances);
+
+    /**
+     * @return the uids of the given tracked entity instances which have local changes, that is which, one of
+     * their attribute values, enrollments or the events of their enrollments are stored in another state than
+     * {@link State#SYNCED}
+     */
+    @NonNull
+    Set<String> queryUidsWithLocalChanges(@NonNull Collection<String> uids);
+
+    /**
+     * Deletes the tracked entity instances together with their attribute values, their enrollments and the
+     * events of their enrollments.
+     *
+     * @return the number of tracked entity instances deleted
+     */
+    int delete(@NonNull Collection<String> uids);
+
     int delete();
 }
@@ -28,57 +28,146 @@
 
 package org.hisp.dhis.android.core.trackedentity;
 
+import android.database.Cursor;
 import android.database.sqlite.SQLiteStatement;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import org.hisp.dhis.android.core.common.State;
+import org.hisp.dhis.android.core.data.database.BatchInsert;
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.enrollment.EnrollmentModel;
+import org.hisp.dhis.android.core.event.EventModel;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityInstanceModel.Columns;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
+import static org.hisp.dhis.android.core.data.database.DbUtils.insertStatement;
+import static org.hisp.dhis.android.core.data.database.DbUtils.placeholders;
 import static org.hisp.dhis.android.core.utils.StoreUtils.nonNull;
-import static org.hisp.dhis.android.core.utils.StoreUtils.sqLiteBind;
-
-class TrackedEntityInstanceStoreImpl implements TrackedEntityInstanceStore {
-    private static final String INSERT_STATEMENT = "INSERT INTO " +
-            TrackedEntityInstanceModel.TABLE + " (" +
-            TrackedEntityInstanceModel.Columns.UID + ", " +
-            TrackedEntityInstanceModel.Columns.CREATED + ", " +
-            TrackedEntityInstanceModel.Columns.LAST_UPDATED + ", " +
-            TrackedEntityInstanceModel.Columns.ORGANISATION_UNIT + ", " +
-            TrackedEntityInstanceModel.Columns.TRACKED_ENTITY + ", " +
-            TrackedEntityInstanceModel.Columns.STATE +
-            ") " + "VALUES (?, ?, ?, ?, ?, ?)";
-
-    private final SQLiteStatement insertStatement;
+
+public class TrackedEntityInstanceStoreImpl implements TrackedEntityInstanceStore {
+    private static final String INSERT_STATEMENT = insertStatement(
+            TrackedEntityInstanceModel.TABLE, TrackedEntityInstanceModel.boundColumns());
+
+    // a tracked entity instance has local changes when any row it owns has one
+    private static final String QUERY_UIDS_WITH_LOCAL_CHANGES_STATEMENT = "SELECT " + Columns.UID +
+            " FROM " + TrackedEntityInstanceModel.TABLE + " t WHERE (t." + Columns.STATE + " != ?" +
+            " OR EXISTS (SELECT 1 FROM " + TrackedEntityAttributeValueModel.TABLE + " a WHERE a." +
+            TrackedEntityAttributeValueModel.Columns.TRACKED_ENTITY_INSTANCE + " = t." + Columns.UID +
+            " AND a." + TrackedEntityAttributeValueModel.Columns.STATE + " != ?)" +
+            " OR EXISTS (SELECT 1 FROM " + EnrollmentModel.TABLE + " e WHERE e." +
+            EnrollmentModel.Columns.TRACKED_ENTITY_INSTANCE + " = t." + Columns.UID +
+            " AND (e." + EnrollmentModel.Columns.STATE + " != ?" +
+            " OR EXISTS (SELECT 1 FROM " + EventModel.TABLE + " v WHERE v." + EventModel.Columns.ENROLLMENT_UID +
+            " = e." + EnrollmentModel.Columns.UID + " AND v." + EventModel.Columns.STATE + " != ?))))" +
+            " AND t." + Columns.UID + " IN (";
+
+    private static final int LOCAL_CHANGES_STATE_ARGUMENTS = 4;
+
+    // the events of enrollments are not bound to them by a foreign key, so they do not go with the cascade
+    private static final String DELETE_EVENTS_WHERE = EventModel.Columns.ENROLLMENT_UID + " IN (SELECT " +
+            EnrollmentModel.Columns.UID + " FROM " + EnrollmentModel.TABLE + " WHERE " +
+            EnrollmentModel.Columns.TRACKED_ENTITY_INSTANCE + " IN (";
+
     private final DatabaseAdapter databaseAdapter;
+    private final BatchInsert<TrackedEntityInstanceModel> batchInsert;
 
-    TrackedEntityInstanceStoreImpl(DatabaseAdapter databaseAdapter) {
+    public TrackedEntityInstanceStoreImpl(DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
-        this.insertStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
+        this.batchInsert = new BatchInsert<>(databaseAdapter, TrackedEntityInstanceModel.TABLE, INSERT_STATEMENT);
     }
 
     @Override
     public long insert(@NonNull String uid, @Nullable Date created, @Nullable Date lastUpdated,
             @NonNull String organisationUnit, @NonNull String trackedEntity, @Nullable State state) {
+        SQLiteStatement insertStatement = databaseAdapter.cachedStatement(INSERT_STATEMENT);
 
         nonNull(uid);
         nonNull(organisationUnit);
         nonNull(trackedEntity);
 
-        sqLiteBind(insertStatement, 1, uid);
-        sqLiteBind(insertStatement, 2, created);
-        sqLiteBind(insertStatement, 3, lastUpdated);
-        sqLiteBind(insertStatement, 4, organisationUnit);
-        sqLiteBind(insertStatement, 5, trackedEntity);
-        sqLiteBind(insertStatement, 6, state);
+        TrackedEntityInstanceModel.builder()
+                .uid(uid)
+                .created(created)
+                .lastUpdated(lastUpdated)
+                .organisationUnit(organisationUnit)
+                .trackedEntity(trackedEntity)
+                .state(state)
+                .build()
+                .bindTo(insertStatement, 1);
 
         long returnValue = databaseAdapter.executeInsert(TrackedEntityInstanceModel.TABLE, insertStatement);
         insertStatement.clearBindings();
         return returnValue;
     }
 
+    @Override
+    public int insertAll(@NonNull List<TrackedEntityInstanceModel> trackedEntityInstances) {
+        int size = trackedEntityInstances.size();
+        for (int i = 0; i < size; i++) {
+            TrackedEntityInstanceModel trackedEntityInstance = trackedEntityInstances.get(i);
+            nonNull(trackedEntityInstance.uid());
+            nonNull(trackedEntityInstance.organisationUnit());
+            nonNull(trackedEntityInstance.trackedEntity());
+        }
+        return batchInsert.insertAll(trackedEntityInstances);
+    }
+
+    @NonNull
+    @Override
+    public Set<String> queryUidsWithLocalChanges(@NonNull Collection<String> uids) {
+        Set<String> uidsWithLocalChanges = new HashSet<>();
+        List<String> uidList = new ArrayList<>(uids);
+        int chunkSize = BatchInsert.MAX_BIND_ARGUMENTS - LOCAL_CHANGES_STATE_ARGUMENTS;
+        for (int offset = 0; offset < uidList.size(); offset += chunkSize) {
+            List<String> chunk = uidList.subList(offset, Math.min(uidList.size(), offset + chunkSize));
+            String[] arguments = new String[chunk.size() + LOCAL_CHANGES_STATE_ARGUMENTS];
+            for (int i = 0; i < LOCAL_CHANGES_STATE_ARGUMENTS; i++) {
+                arguments[i] = State.SYNCED.name();
+            }
+            for (int i = 0; i < chunk.size(); i++) {
+                arguments[i + LOCAL_CHANGES_STATE_ARGUMENTS] = chunk.get(i);
+            }
+
+            Cursor cursor = databaseAdapter.query(QUERY_UIDS_WITH_LOCAL_CHANGES_STATEMENT +
+                    placeholders(chunk.size()) + ")", arguments);
+            if (cursor != null) {
+                try {
+                    while (cursor.moveToNext()) {
+                        uidsWithLocalChanges.add(cursor.getString(0));
+                    }
+                } finally {
+                    cursor.close();
+                }
+            }
+        }
+        return uidsWithLocalChanges;
+    }
+
+    @Override
+    public int delete(@NonNull Collection<String> uids) {
+        int deleted = 0;
+        List<String> uidList = new ArrayList<>(uids);
+        for (int offset = 0; offset < uidList.size(); offset += BatchInsert.MAX_BIND_ARGUMENTS) {
+            List<String> chunk = uidList.subList(offset,
+                    Math.min(uidList.size(), offset + BatchInsert.MAX_BIND_ARGUMENTS));
+            String[] arguments = chunk.toArray(new String[chunk.size()]);
+
+            // attribute values and enrollments, like the data values of the events, go with the cascade
+            databaseAdapter.delete(EventModel.TABLE, DELETE_EVENTS_WHERE +
+                    placeholders(chunk.size()) + "))", arguments);
+            deleted += databaseAdapter.delete(TrackedEntityInstanceModel.TABLE, Columns.UID + " IN (" +
+                    placeholders(chunk.size()) + ")", arguments);
+        }
+        return deleted;
+    }
+
     @Override
     public int delete() {
         return databaseAdapter.delete(TrackedEntityInstanceModel.TABLE);
@@ -50,4 +50,13 @@ public interface TrackedEntityService {
             @Nullable @Query("filter") @Where Filter<TrackedEntity, String> lastUpdated,
             @NonNull @Query("paging") boolean paging
     );
+
+    @GET("trackedEntities")
+    Call<Payload<TrackedEntity>> trackedEntitiesPage(
+            @NonNull @Query("fields") @Which Fields<TrackedEntity> fields,
+            @NonNull @Query("filter") @Where Filter<TrackedEntity, String> idFilter,
+            @Nullable @Query("filter") @Where Filter<TrackedEntity, String> lastUpdated,
+            @Query("page") int page,
+            @Query("pageSize") int pageSize
+    );
 }
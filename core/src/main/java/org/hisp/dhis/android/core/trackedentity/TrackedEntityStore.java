@@ -32,6 +32,7 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import java.util.Date;
+import java.util.Set;
 
 public interface TrackedEntityStore {
 
@@ -41,6 +42,15 @@ public interface TrackedEntityStore {
                 @Nullable String description, @Nullable String displayDescription
     );
 
+    /**
+     * Inserts the row, or updates it if a row with the same uid exists already.
+     */
+    void upsert(@NonNull String uid, @Nullable String code, @Nullable String name,
+                @Nullable String displayName, @Nullable Date created, @Nullable Date lastUpdated,
+                @Nullable String shortName, @Nullable String displayShortName,
+                @Nullable String description, @Nullable String displayDescription
+    );
+
     int update(@NonNull String uid, @Nullable String code, @Nullable String name,
                 @Nullable String displayName, @Nullable Date created, @Nullable Date lastUpdated,
                 @Nullable String shortName, @Nullable String displayShortName,
@@ -49,5 +59,17 @@ public interface TrackedEntityStore {
 
     int delete(@NonNull String uid);
 
+    /**
+     * Inserts a tracked entity which is only known by its uid, unless it already exists. It is replaced once
+     * the tracked entity is downloaded.
+     */
+    long insertIfNotExists(@NonNull String uid);
+
+    /**
+     * @return the uids of all stored tracked entities
+     */
+    @NonNull
+    Set<String> queryUids();
+
     void close();
 }
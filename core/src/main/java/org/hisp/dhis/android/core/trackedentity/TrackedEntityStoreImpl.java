@@ -28,14 +28,19 @@
 
 package org.hisp.dhis.android.core.trackedentity;
 
+import android.database.Cursor;
 import android.database.sqlite.SQLiteStatement;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Upsert;
 
 import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
 
+import static org.hisp.dhis.android.core.data.database.DbUtils.upsertStatement;
 import static org.hisp.dhis.android.core.utils.StoreUtils.nonNull;
 import static org.hisp.dhis.android.core.utils.StoreUtils.sqLiteBind;
 @SuppressWarnings("PMD.AvoidDuplicateLiterals")
@@ -53,6 +58,8 @@ public class TrackedEntityStoreImpl implements TrackedEntityStore {
             TrackedEntityModel.Columns.DISPLAY_DESCRIPTION +
             ") " + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
+    private static final String UPSERT_STATEMENT = upsertStatement(INSERT_STATEMENT, TrackedEntityModel.Columns.UID);
+
     private static final String UPDATE_STATEMENT = "UPDATE " + TrackedEntityModel.TABLE + " SET " +
             TrackedEntityModel.Columns.UID + "=?, " +
             TrackedEntityModel.Columns.CODE + "=?, " +
@@ -70,18 +77,19 @@ public class TrackedEntityStoreImpl implements TrackedEntityStore {
     private static final String DELETE_STATEMENT = "DELETE FROM " + TrackedEntityModel.TABLE +
             " WHERE " + TrackedEntityModel.Columns.UID + " =?;";
 
-    private final SQLiteStatement insertStatement;
-    private final SQLiteStatement updateStatement;
-    private final SQLiteStatement deleteStatement;
+    private static final String INSERT_IF_NOT_EXISTS_STATEMENT = "INSERT OR IGNORE INTO " +
+            TrackedEntityModel.TABLE + " (" + TrackedEntityModel.Columns.UID + ") VALUES (?);";
+
+    private static final String QUERY_UIDS_STATEMENT = "SELECT " + TrackedEntityModel.Columns.UID +
+            " FROM " + TrackedEntityModel.TABLE;
+
+    private final Upsert upsert;
 
     private final DatabaseAdapter database;
 
     public TrackedEntityStoreImpl(DatabaseAdapter database) {
         this.database = database;
-        this.insertStatement = database.compileStatement(INSERT_STATEMENT);
-        this.updateStatement = database.compileStatement(UPDATE_STATEMENT);
-        this.deleteStatement = database.compileStatement(DELETE_STATEMENT);
-
+        this.upsert = new Upsert(database, TrackedEntityModel.TABLE, INSERT_STATEMENT, UPSERT_STATEMENT);
     }
 
     @Override
@@ -91,6 +99,7 @@ public class TrackedEntityStoreImpl implements TrackedEntityStore {
                        @Nullable String displayShortName, @Nullable String description,
                        @Nullable String displayDescription
     ) {
+        SQLiteStatement insertStatement = database.cachedStatement(INSERT_STATEMENT);
         nonNull(uid);
         sqLiteBind(insertStatement, 1, uid);
         sqLiteBind(insertStatement, 2, code);
@@ -109,12 +118,47 @@ public class TrackedEntityStoreImpl implements TrackedEntityStore {
 
     }
 
+    @Override
+    public void upsert(@NonNull String uid, @Nullable String code, @Nullable String name,
+                       @Nullable String displayName, @Nullable Date created,
+                       @Nullable Date lastUpdated, @Nullable String shortName,
+                       @Nullable String displayShortName, @Nullable String description,
+                       @Nullable String displayDescription
+    ) {
+        SQLiteStatement statement = upsert.statement();
+        if (statement != null) {
+            nonNull(uid);
+            sqLiteBind(statement, 1, uid);
+            sqLiteBind(statement, 2, code);
+            sqLiteBind(statement, 3, name);
+            sqLiteBind(statement, 4, displayName);
+            sqLiteBind(statement, 5, created);
+            sqLiteBind(statement, 6, lastUpdated);
+            sqLiteBind(statement, 7, shortName);
+            sqLiteBind(statement, 8, displayShortName);
+            sqLiteBind(statement, 9, description);
+            sqLiteBind(statement, 10, displayDescription);
+
+            if (upsert.execute()) {
+                return;
+            }
+        }
+
+        if (update(uid, code, name, displayName, created, lastUpdated, shortName, displayShortName, description,
+                displayDescription, uid) <= 0) {
+            insert(uid, code, name, displayName, created, lastUpdated, shortName, displayShortName, description,
+                    displayDescription);
+            upsert.inserted();
+        }
+    }
+
     @Override
     public int update(@NonNull String uid, @Nullable String code, @Nullable String name,
                       @Nullable String displayName, @Nullable Date created, @Nullable Date lastUpdated,
                       @Nullable String shortName, @Nullable String displayShortName, @Nullable String description,
                       @Nullable String displayDescription, @NonNull String whereUid
     ) {
+        SQLiteStatement updateStatement = database.cachedStatement(UPDATE_STATEMENT);
         nonNull(uid);
         nonNull(whereUid);
         sqLiteBind(updateStatement, 1, uid);
@@ -136,6 +180,7 @@ public class TrackedEntityStoreImpl implements TrackedEntityStore {
 
     @Override
     public int delete(@NonNull String uid) {
+        SQLiteStatement deleteStatement = database.cachedStatement(DELETE_STATEMENT);
         nonNull(uid);
         sqLiteBind(deleteStatement, 1, uid);
         int rowId = deleteStatement.executeUpdateDelete();
@@ -143,8 +188,36 @@ public class TrackedEntityStoreImpl implements TrackedEntityStore {
         return rowId;
     }
 
+    @Override
+    public long insertIfNotExists(@NonNull String uid) {
+        SQLiteStatement insertIfNotExistsStatement = database.cachedStatement(INSERT_IF_NOT_EXISTS_STATEMENT);
+        nonNull(uid);
+        sqLiteBind(insertIfNotExistsStatement, 1, uid);
+
+        long rowId = database.executeInsert(TrackedEntityModel.TABLE, insertIfNotExistsStatement);
+        insertIfNotExistsStatement.clearBindings();
+        return rowId;
+    }
+
+    @NonNull
+    @Override
+    public Set<String> queryUids() {
+        Set<String> uids = new HashSet<>();
+        Cursor cursor = database.query(QUERY_UIDS_STATEMENT);
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    uids.add(cursor.getString(0));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return uids;
+    }
+
     @Override
     public void close() {
-        insertStatement.close();
+        // the statements are borrowed from the statement cache of the database adapter
     }
 }
@@ -52,16 +52,15 @@ public class AuthenticatedUserStoreImpl implements AuthenticatedUserStore {
             " (" + AuthenticatedUserModel.Columns.USER + ", " + AuthenticatedUserModel.Columns.CREDENTIALS + ")" +
             " VALUES (?, ?);";
 
-    private final SQLiteStatement insertRowStatement;
     private final DatabaseAdapter databaseAdapter;
 
     public AuthenticatedUserStoreImpl(@NonNull DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
-        this.insertRowStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
     }
 
     @Override
     public long insert(@NonNull String userUid, @NonNull String credentials) {
+        SQLiteStatement insertRowStatement = databaseAdapter.cachedStatement(INSERT_STATEMENT);
         nonNull(userUid);
         nonNull(credentials);
 
@@ -108,6 +107,6 @@ public class AuthenticatedUserStoreImpl implements AuthenticatedUserStore {
 
     @Override
     public void close() {
-        insertRowStatement.close();
+        // the statements are borrowed from the statement cache of the database adapter
     }
 }
@@ -28,9 +28,11 @@
 package org.hisp.dhis.android.core.user;
 
 import android.database.sqlite.SQLiteConstraintException;
+import android.support.annotation.NonNull;
 import android.util.Log;
 
-import org.hisp.dhis.android.core.common.Call;
+import org.hisp.dhis.android.core.common.SyncCall;
+import org.hisp.dhis.android.core.data.api.ConditionalCacheInterceptor;
 import org.hisp.dhis.android.core.data.api.Fields;
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
 import org.hisp.dhis.android.core.data.database.Transaction;
@@ -46,7 +48,7 @@ import java.util.List;
 
 import retrofit2.Response;
 
-public final class UserCall implements Call<Response<User>> {
+public final class UserCall implements SyncCall<User> {
     // retrofit service
     private final UserService userService;
     // databaseAdapter and handlers
@@ -93,37 +95,52 @@ public final class UserCall implements Call<Response<User>> {
             }
             isExecuted = true;
         }
-        Response<User> response = getUser();
+        Response<User> response = download();
         if (response.isSuccessful()) {
-            UserHandler userHandler = new UserHandler(userStore);
-            UserCredentialsHandler userCredentialsHandler = new UserCredentialsHandler(userCredentialsStore);
-            UserRoleHandler userRoleHandler = new UserRoleHandler(userRoleStore, userRoleProgramLinkStore);
-            ResourceHandler resourceHandler = new ResourceHandler(resourceStore);
-
-            Transaction transaction = databaseAdapter.beginNewTransaction();
-            try {
-                User user = response.body();
-                // TODO: check that this is user is authenticated and is persisted in db
-                userHandler.handleUser(user);
-                UserCredentials userCredentials = user.userCredentials();
-                userCredentialsHandler.handleUserCredentials(userCredentials, user);
-
-                List<UserRole> userRoles = userCredentials.userRoles();
-                userRoleHandler.handleUserRoles(userRoles);
-
-                resourceHandler.handleResource(ResourceModel.Type.USER, serverDate);
-
-                transaction.setSuccessful();
-            } catch (SQLiteConstraintException constraintException) {
-                //constraintException.printStackTrace();
-                Log.d("CAll", "call: constraintException");
-            } finally {
-                transaction.end();
-            }
+            persist(response);
         }
         return response;
     }
 
+    @NonNull
+    @Override
+    public Response<User> download() throws IOException {
+        return getUser();
+    }
+
+    @Override
+    public void persist(@NonNull Response<User> response) {
+        if (ConditionalCacheInterceptor.isNotModified(response)) {
+            return;
+        }
+
+        UserHandler userHandler = new UserHandler(userStore);
+        UserCredentialsHandler userCredentialsHandler = new UserCredentialsHandler(userCredentialsStore);
+        UserRoleHandler userRoleHandler = new UserRoleHandler(userRoleStore, userRoleProgramLinkStore);
+        ResourceHandler resourceHandler = new ResourceHandler(resourceStore);
+
+        Transaction transaction = databaseAdapter.beginNewTransaction();
+        try {
+            User user = response.body();
+            // TODO: check that this is user is authenticated and is persisted in db
+            userHandler.handleUser(user);
+            UserCredentials userCredentials = user.userCredentials();
+            userCredentialsHandler.handleUserCredentials(userCredentials, user);
+
+            List<UserRole> userRoles = userCredentials.userRoles();
+            userRoleHandler.handleUserRoles(userRoles);
+
+            resourceHandler.handleResource(ResourceModel.Type.USER, serverDate);
+
+            transaction.setSuccessful();
+        } catch (SQLiteConstraintException constraintException) {
+            //constraintException.printStackTrace();
+            Log.d("CAll", "call: constraintException");
+        } finally {
+            transaction.end();
+        }
+    }
+
     private Response<User> getUser() throws IOException {
         Fields<User> fields = Fields.<User>builder().fields(
                 User.uid, User.code, User.name, User.displayName,
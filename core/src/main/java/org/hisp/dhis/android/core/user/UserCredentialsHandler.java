@@ -48,18 +48,11 @@ public class UserCredentialsHandler {
         if (isDeleted(userCredentials)) {
             userCredentialsStore.delete(userCredentials.uid());
         } else {
-            int updatedRow = userCredentialsStore.update(userCredentials.uid(), userCredentials.code(),
-                    userCredentials.name(), userCredentials.displayName(), userCredentials.created(),
-                    userCredentials.lastUpdated(), userCredentials.username(), user.uid(), userCredentials.uid()
+            userCredentialsStore.upsert(
+                    userCredentials.uid(), userCredentials.code(), userCredentials.name(),
+                    userCredentials.displayName(), userCredentials.created(), userCredentials.lastUpdated(),
+                    userCredentials.username(), user.uid()
             );
-
-            if (updatedRow <= 0) {
-                userCredentialsStore.insert(
-                        userCredentials.uid(), userCredentials.code(), userCredentials.name(),
-                        userCredentials.displayName(), userCredentials.created(), userCredentials.lastUpdated(),
-                        userCredentials.username(), user.uid()
-                );
-            }
         }
     }
 
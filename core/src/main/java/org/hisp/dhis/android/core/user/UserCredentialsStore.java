@@ -44,6 +44,19 @@ public interface UserCredentialsStore {
             @Nullable String username,
             @NonNull String user);
 
+    /**
+     * Inserts the row, or updates it if a row with the same uid exists already.
+     */
+    void upsert(
+            @NonNull String uid,
+            @Nullable String code,
+            @Nullable String name,
+            @Nullable String displayName,
+            @Nullable Date created,
+            @Nullable Date lastUpdated,
+            @Nullable String username,
+            @NonNull String user);
+
     int update(
             @NonNull String uid,
             @Nullable String code,
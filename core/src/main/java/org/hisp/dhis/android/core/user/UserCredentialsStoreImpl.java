@@ -33,9 +33,11 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Upsert;
 
 import java.util.Date;
 
+import static org.hisp.dhis.android.core.data.database.DbUtils.upsertStatement;
 import static org.hisp.dhis.android.core.utils.StoreUtils.nonNull;
 import static org.hisp.dhis.android.core.utils.StoreUtils.sqLiteBind;
 
@@ -52,6 +54,8 @@ public class UserCredentialsStoreImpl implements UserCredentialsStore {
             UserCredentialsModel.Columns.USER + ") " +
             "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
 
+    private static final String UPSERT_STATEMENT = upsertStatement(INSERT_STATEMENT, UserCredentialsModel.Columns.UID);
+
     private static final String UPDATE_STATEMENT = "UPDATE " + UserCredentialsModel.TABLE + " SET " +
             UserCredentialsModel.Columns.UID + " =?, " +
             UserCredentialsModel.Columns.CODE + "=?, " +
@@ -67,21 +71,18 @@ public class UserCredentialsStoreImpl implements UserCredentialsStore {
             " WHERE " + UserCredentialsModel.Columns.UID + " =?;";
 
     private final DatabaseAdapter databaseAdapter;
-    private final SQLiteStatement insertStatement;
-    private final SQLiteStatement updateStatement;
-    private final SQLiteStatement deleteStatement;
+    private final Upsert upsert;
 
     public UserCredentialsStoreImpl(DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
-        this.insertStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
-        this.updateStatement = databaseAdapter.compileStatement(UPDATE_STATEMENT);
-        this.deleteStatement = databaseAdapter.compileStatement(DELETE_STATEMENT);
+        this.upsert = new Upsert(databaseAdapter, UserCredentialsModel.TABLE, INSERT_STATEMENT, UPSERT_STATEMENT);
     }
 
     @Override
     public long insert(@NonNull String uid, @Nullable String code, @Nullable String name,
                        @Nullable String displayName, @Nullable Date created, @Nullable Date lastUpdated,
                        @Nullable String username, @NonNull String user) {
+        SQLiteStatement insertStatement = databaseAdapter.cachedStatement(INSERT_STATEMENT);
 
         nonNull(uid);
         nonNull(user);
@@ -92,10 +93,32 @@ public class UserCredentialsStoreImpl implements UserCredentialsStore {
         return returnValue;
     }
 
+    @Override
+    public void upsert(@NonNull String uid, @Nullable String code, @Nullable String name,
+                       @Nullable String displayName, @Nullable Date created, @Nullable Date lastUpdated,
+                       @Nullable String username, @NonNull String user) {
+        SQLiteStatement statement = upsert.statement();
+        if (statement != null) {
+            nonNull(uid);
+            nonNull(user);
+            bindArguments(statement, uid, code, name, displayName, created, lastUpdated, username, user);
+
+            if (upsert.execute()) {
+                return;
+            }
+        }
+
+        if (update(uid, code, name, displayName, created, lastUpdated, username, user, uid) <= 0) {
+            insert(uid, code, name, displayName, created, lastUpdated, username, user);
+            upsert.inserted();
+        }
+    }
+
     @Override
     public int update(@NonNull String uid, @Nullable String code, @Nullable String name,
                       @Nullable String displayName, @Nullable Date created, @Nullable Date lastUpdated,
                       @Nullable String username, @NonNull String user, @NonNull String whereUid) {
+        SQLiteStatement updateStatement = databaseAdapter.cachedStatement(UPDATE_STATEMENT);
 
         nonNull(uid);
         nonNull(user);
@@ -110,6 +133,7 @@ public class UserCredentialsStoreImpl implements UserCredentialsStore {
 
     @Override
     public int delete(@NonNull String uid) {
+        SQLiteStatement deleteStatement = databaseAdapter.cachedStatement(DELETE_STATEMENT);
         nonNull(uid);
         sqLiteBind(deleteStatement, 1, uid);
 
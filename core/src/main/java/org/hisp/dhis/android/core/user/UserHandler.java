@@ -48,19 +48,11 @@ public class UserHandler {
         if (isDeleted(user)) {
             userStore.delete(user.uid());
         } else {
-            int updatedRow = userStore.update(user.uid(), user.code(), user.name(), user.displayName(),
-                    user.created(), user.lastUpdated(), user.birthday(), user.education(),
+            userStore.upsert(user.uid(), user.code(), user.name(), user.displayName(), user.created(),
+                    user.lastUpdated(), user.birthday(), user.education(),
                     user.gender(), user.jobTitle(), user.surname(), user.firstName(),
                     user.introduction(), user.employer(), user.interests(), user.languages(),
-                    user.email(), user.phoneNumber(), user.nationality(), user.uid());
-
-            if (updatedRow <= 0) {
-                userStore.insert(user.uid(), user.code(), user.name(), user.displayName(), user.created(),
-                        user.lastUpdated(), user.birthday(), user.education(),
-                        user.gender(), user.jobTitle(), user.surname(), user.firstName(),
-                        user.introduction(), user.employer(), user.interests(), user.languages(),
-                        user.email(), user.phoneNumber(), user.nationality());
-            }
+                    user.email(), user.phoneNumber(), user.nationality());
         }
     }
 }
@@ -30,6 +30,8 @@ package org.hisp.dhis.android.core.user;
 
 import android.support.annotation.NonNull;
 
+import java.util.Collection;
+
 public interface UserOrganisationUnitLinkStore {
 
     long insert(@NonNull String user,
@@ -37,6 +39,16 @@ public interface UserOrganisationUnitLinkStore {
                 @NonNull String organisationUnitScope
     );
 
+    /**
+     * Inserts the link unless it exists already.
+     *
+     * @return the row id of the inserted link, or -1 if it existed already
+     */
+    long insertIfNotExists(@NonNull String user,
+                           @NonNull String organisationUnit,
+                           @NonNull String organisationUnitScope
+    );
+
     int update(@NonNull String user,
                @NonNull String organisationUnit,
                @NonNull String organisationUnitScope,
@@ -49,4 +61,11 @@ public interface UserOrganisationUnitLinkStore {
 
     int delete();
 
-}
\ No newline at end of file
+    /**
+     * Links the given organisation units to the user in the scope, unless they are linked already.
+     *
+     * @return the number of links inserted
+     */
+    int addLinks(@NonNull String user, @NonNull String organisationUnitScope,
+                 @NonNull Collection<String> organisationUnits);
+}
@@ -32,6 +32,9 @@ import android.database.sqlite.SQLiteStatement;
 import android.support.annotation.NonNull;
 
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.LinkSynchronizer;
+
+import java.util.Collection;
 
 import static org.hisp.dhis.android.core.utils.StoreUtils.nonNull;
 import static org.hisp.dhis.android.core.utils.StoreUtils.sqLiteBind;
@@ -47,6 +50,13 @@ public class UserOrganisationUnitLinkStoreImpl implements UserOrganisationUnitLi
             UserOrganisationUnitLinkModel.Columns.ORGANISATION_UNIT_SCOPE + ") " +
             "VALUES (?, ?, ?);";
 
+    private static final String INSERT_IF_NOT_EXISTS_STATEMENT = "INSERT OR IGNORE INTO " +
+            UserOrganisationUnitLinkModel.TABLE + " (" +
+            UserOrganisationUnitLinkModel.Columns.USER + ", " +
+            UserOrganisationUnitLinkModel.Columns.ORGANISATION_UNIT + ", " +
+            UserOrganisationUnitLinkModel.Columns.ORGANISATION_UNIT_SCOPE + ") " +
+            "VALUES (?, ?, ?);";
+
     private static final String UPDATE_STATEMENT = "UPDATE " + UserOrganisationUnitLinkModel.TABLE + " SET " +
             UserOrganisationUnitLinkModel.Columns.USER + " =?, " +
             UserOrganisationUnitLinkModel.Columns.ORGANISATION_UNIT + "=?, " +
@@ -62,19 +72,18 @@ public class UserOrganisationUnitLinkStoreImpl implements UserOrganisationUnitLi
             UserOrganisationUnitLinkModel.Columns.ORGANISATION_UNIT_SCOPE + " =?;";
 
     private final DatabaseAdapter databaseAdapter;
-    private final SQLiteStatement insertStatement;
-    private final SQLiteStatement updateStatement;
-    private final SQLiteStatement deleteStatement;
+    private final LinkSynchronizer linkSynchronizer;
 
     public UserOrganisationUnitLinkStoreImpl(DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
-        this.insertStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
-        this.updateStatement = databaseAdapter.compileStatement(UPDATE_STATEMENT);
-        this.deleteStatement = databaseAdapter.compileStatement(DELETE_STATEMENT);
+        this.linkSynchronizer = new LinkSynchronizer(databaseAdapter, UserOrganisationUnitLinkModel.TABLE,
+                UserOrganisationUnitLinkModel.Columns.ORGANISATION_UNIT, UserOrganisationUnitLinkModel.Columns.USER,
+                UserOrganisationUnitLinkModel.Columns.ORGANISATION_UNIT_SCOPE);
     }
 
     @Override
     public long insert(@NonNull String user, @NonNull String organisationUnit, @NonNull String organisationUnitScope) {
+        SQLiteStatement insertStatement = databaseAdapter.cachedStatement(INSERT_STATEMENT);
         nonNull(user);
         nonNull(organisationUnit);
         nonNull(organisationUnitScope);
@@ -86,10 +95,26 @@ public class UserOrganisationUnitLinkStoreImpl implements UserOrganisationUnitLi
         return insert;
     }
 
+    @Override
+    public long insertIfNotExists(@NonNull String user, @NonNull String organisationUnit,
+                                  @NonNull String organisationUnitScope) {
+        SQLiteStatement insertIfNotExistsStatement = databaseAdapter.cachedStatement(INSERT_IF_NOT_EXISTS_STATEMENT);
+        nonNull(user);
+        nonNull(organisationUnit);
+        nonNull(organisationUnitScope);
+
+        bindArguments(insertIfNotExistsStatement, user, organisationUnit, organisationUnitScope);
+
+        long insert = databaseAdapter.executeInsert(UserOrganisationUnitLinkModel.TABLE, insertIfNotExistsStatement);
+        insertIfNotExistsStatement.clearBindings();
+        return insert;
+    }
+
     @Override
     public int update(@NonNull String user, @NonNull String organisationUnit, @NonNull String organisationUnitScope,
                       @NonNull String whereUserUid, @NonNull String whereOrganisationUnitUid,
                       @NonNull String whereOrganisationUnitScope) {
+        SQLiteStatement updateStatement = databaseAdapter.cachedStatement(UPDATE_STATEMENT);
         nonNull(user);
         nonNull(organisationUnit);
         nonNull(organisationUnitScope);
@@ -110,6 +135,7 @@ public class UserOrganisationUnitLinkStoreImpl implements UserOrganisationUnitLi
     @Override
     public int delete(@NonNull String userUid, @NonNull String organisationUnitUid,
                       @NonNull String organisationUnitScope) {
+        SQLiteStatement deleteStatement = databaseAdapter.cachedStatement(DELETE_STATEMENT);
         nonNull(userUid);
         nonNull(organisationUnitUid);
         nonNull(organisationUnitScope);
@@ -133,4 +159,13 @@ public class UserOrganisationUnitLinkStoreImpl implements UserOrganisationUnitLi
         return databaseAdapter.delete(UserOrganisationUnitLinkModel.TABLE);
     }
 
+    @Override
+    public int addLinks(@NonNull String user, @NonNull String organisationUnitScope,
+                        @NonNull Collection<String> organisationUnits) {
+        nonNull(user);
+        nonNull(organisationUnitScope);
+        nonNull(organisationUnits);
+
+        return linkSynchronizer.addLinks(organisationUnits, user, organisationUnitScope);
+    }
 }
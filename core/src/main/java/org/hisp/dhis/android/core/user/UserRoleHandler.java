@@ -29,6 +29,7 @@ package org.hisp.dhis.android.core.user;
 
 import org.hisp.dhis.android.core.program.Program;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.hisp.dhis.android.core.utils.Utils.isDeleted;
@@ -59,14 +60,9 @@ public class UserRoleHandler {
             if (isDeleted(userRole)) {
                 userRoleStore.delete(userRole.uid());
             } else {
-                int updatedRow = userRoleStore.update(userRole.uid(), userRole.code(),
+                userRoleStore.upsert(userRole.uid(), userRole.code(),
                         userRole.name(), userRole.displayName(), userRole.created(),
-                        userRole.lastUpdated(), userRole.uid());
-                if (updatedRow <= 0) {
-                    userRoleStore.insert(userRole.uid(), userRole.code(),
-                            userRole.name(), userRole.displayName(), userRole.created(),
-                            userRole.lastUpdated());
-                }
+                        userRole.lastUpdated());
 
                 List<Program> programs = userRole.programs();
 
@@ -83,15 +79,10 @@ public class UserRoleHandler {
         }
 
         int programSize = programs.size();
+        List<String> programUids = new ArrayList<>(programSize);
         for (int i = 0; i < programSize; i++) {
-
-            Program program = programs.get(i);
-            int updatedLinkRow = userRoleProgramLinkStore.update(
-                    userRole.uid(), program.uid(), userRole.uid(), program.uid());
-
-            if (updatedLinkRow <= 0) {
-                userRoleProgramLinkStore.insert(userRole.uid(), program.uid());
-            }
+            programUids.add(programs.get(i).uid());
         }
+        userRoleProgramLinkStore.replaceLinks(userRole.uid(), programUids);
     }
 }
@@ -29,12 +29,28 @@ package org.hisp.dhis.android.core.user;
 
 import android.support.annotation.NonNull;
 
+import java.util.Collection;
+
 public interface UserRoleProgramLinkStore {
 
     long insert(@NonNull String userRole, @NonNull String program);
 
+    /**
+     * Inserts the link unless it exists already.
+     *
+     * @return the row id of the inserted link, or -1 if it existed already
+     */
+    long insertIfNotExists(@NonNull String userRole, @NonNull String program);
+
     int update(@NonNull String userRoleUid, @NonNull String programUid,
                @NonNull String whereUserRoleUid, @NonNull String whereProgramUid);
 
     int delete(@NonNull String userRoleUid, @NonNull String programUid);
+
+    /**
+     * Makes the given programs the only ones linked to the user role.
+     *
+     * @return the number of links deleted and inserted
+     */
+    int replaceLinks(@NonNull String userRole, @NonNull Collection<String> programs);
 }
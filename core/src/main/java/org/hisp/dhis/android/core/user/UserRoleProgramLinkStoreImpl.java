@@ -31,8 +31,11 @@ import android.database.sqlite.SQLiteStatement;
 import android.support.annotation.NonNull;
 
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.LinkSynchronizer;
 import org.hisp.dhis.android.core.user.UserRoleProgramLinkModel.Columns;
 
+import java.util.Collection;
+
 import static org.hisp.dhis.android.core.utils.StoreUtils.nonNull;
 import static org.hisp.dhis.android.core.utils.StoreUtils.sqLiteBind;
 
@@ -41,6 +44,10 @@ public class UserRoleProgramLinkStoreImpl implements UserRoleProgramLinkStore {
             Columns.USER_ROLE + ", " + Columns.PROGRAM + ") " +
             "VALUES (?, ?);";
 
+    private static final String INSERT_IF_NOT_EXISTS_STATEMENT = "INSERT OR IGNORE INTO " +
+            UserRoleProgramLinkModel.TABLE + " (" + Columns.USER_ROLE + ", " + Columns.PROGRAM + ") " +
+            "VALUES (?, ?);";
+
     private static final String UPDATE_STATEMENT = "UPDATE " + UserRoleProgramLinkModel.TABLE +
             " SET " + Columns.USER_ROLE + "=?," + Columns.PROGRAM + "=?" +
             " WHERE " + Columns.USER_ROLE + "=?" + " AND " + Columns.PROGRAM + "=?;";
@@ -48,21 +55,19 @@ public class UserRoleProgramLinkStoreImpl implements UserRoleProgramLinkStore {
     private static final String DELETE_STATEMENT = "DELETE FROM " + UserRoleProgramLinkModel.TABLE +
             " WHERE " + Columns.USER_ROLE + " =?" + " AND " + Columns.PROGRAM + "=?;";
 
-    private final SQLiteStatement insertStatement;
-    private final SQLiteStatement updateStatement;
-    private final SQLiteStatement deleteStatement;
 
     private final DatabaseAdapter databaseAdapter;
+    private final LinkSynchronizer linkSynchronizer;
 
     public UserRoleProgramLinkStoreImpl(DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
-        this.insertStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
-        this.updateStatement = databaseAdapter.compileStatement(UPDATE_STATEMENT);
-        this.deleteStatement = databaseAdapter.compileStatement(DELETE_STATEMENT);
+        this.linkSynchronizer = new LinkSynchronizer(databaseAdapter, UserRoleProgramLinkModel.TABLE,
+                Columns.PROGRAM, Columns.USER_ROLE);
     }
 
     @Override
     public long insert(@NonNull String userRole, @NonNull String program) {
+        SQLiteStatement insertStatement = databaseAdapter.cachedStatement(INSERT_STATEMENT);
         nonNull(userRole);
         nonNull(program);
         sqLiteBind(insertStatement, 1, userRole);
@@ -74,9 +79,24 @@ public class UserRoleProgramLinkStoreImpl implements UserRoleProgramLinkStore {
         return insert;
     }
 
+    @Override
+    public long insertIfNotExists(@NonNull String userRole, @NonNull String program) {
+        SQLiteStatement insertIfNotExistsStatement = databaseAdapter.cachedStatement(INSERT_IF_NOT_EXISTS_STATEMENT);
+        nonNull(userRole);
+        nonNull(program);
+        sqLiteBind(insertIfNotExistsStatement, 1, userRole);
+        sqLiteBind(insertIfNotExistsStatement, 2, program);
+
+        long insert = databaseAdapter.executeInsert(UserRoleProgramLinkModel.TABLE, insertIfNotExistsStatement);
+        insertIfNotExistsStatement.clearBindings();
+
+        return insert;
+    }
+
     @Override
     public int update(@NonNull String userRoleUid, @NonNull String programUid,
                       @NonNull String whereUserRoleUid, @NonNull String whereProgramUid) {
+        SQLiteStatement updateStatement = databaseAdapter.cachedStatement(UPDATE_STATEMENT);
         nonNull(userRoleUid);
         nonNull(programUid);
         nonNull(whereUserRoleUid);
@@ -93,6 +113,7 @@ public class UserRoleProgramLinkStoreImpl implements UserRoleProgramLinkStore {
 
     @Override
     public int delete(@NonNull String userRoleUid, @NonNull String programUid) {
+        SQLiteStatement deleteStatement = databaseAdapter.cachedStatement(DELETE_STATEMENT);
         nonNull(userRoleUid);
         nonNull(programUid);
         sqLiteBind(deleteStatement, 1, userRoleUid);
@@ -102,4 +123,13 @@ public class UserRoleProgramLinkStoreImpl implements UserRoleProgramLinkStore {
         deleteStatement.clearBindings();
         return delete;
     }
+
+    @Override
+    public int replaceLinks(@NonNull String userRole,
+                            @NonNull Collection<String> programs) {
+        nonNull(userRole);
+        nonNull(programs);
+
+        return linkSynchronizer.replaceLinks(programs, userRole);
+    }
 }
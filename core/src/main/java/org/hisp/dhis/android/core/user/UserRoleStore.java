@@ -41,6 +41,17 @@ public interface UserRoleStore {
             @Nullable Date created,
             @Nullable Date lastUpdated);
 
+    /**
+     * Inserts the row, or updates it if a row with the same uid exists already.
+     */
+    void upsert(
+            @NonNull String uid,
+            @Nullable String code,
+            @Nullable String name,
+            @Nullable String displayName,
+            @Nullable Date created,
+            @Nullable Date lastUpdated);
+
     int update(
             @NonNull String uid,
             @Nullable String code,
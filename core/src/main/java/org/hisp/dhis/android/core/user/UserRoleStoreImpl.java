@@ -32,10 +32,12 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Upsert;
 import org.hisp.dhis.android.core.user.UserRoleModel.Columns;
 
 import java.util.Date;
 
+import static org.hisp.dhis.android.core.data.database.DbUtils.upsertStatement;
 import static org.hisp.dhis.android.core.utils.StoreUtils.nonNull;
 import static org.hisp.dhis.android.core.utils.StoreUtils.sqLiteBind;
 
@@ -53,6 +55,8 @@ public class UserRoleStoreImpl implements UserRoleStore {
             Columns.LAST_UPDATED +
             ") VALUES (?, ?, ?, ?, ?, ?)";
 
+    private static final String UPSERT_STATEMENT = upsertStatement(INSERT_STATEMENT, UserRoleModel.Columns.UID);
+
     private static final String UPDATE_STATEMENT = "UPDATE " + UserRoleModel.TABLE + " SET " +
             Columns.UID + " =?, " +
             Columns.CODE + "=?, " +
@@ -66,17 +70,13 @@ public class UserRoleStoreImpl implements UserRoleStore {
     private static final String DELETE_STATEMENT = "DELETE FROM " + UserRoleModel.TABLE +
             " WHERE " + UserRoleModel.Columns.UID + " =?;";
 
-    private final SQLiteStatement insertStatement;
-    private final SQLiteStatement updateStatement;
-    private final SQLiteStatement deleteStatement;
+    private final Upsert upsert;
 
     private final DatabaseAdapter databaseAdapter;
 
     public UserRoleStoreImpl(DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
-        this.insertStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
-        this.updateStatement = databaseAdapter.compileStatement(UPDATE_STATEMENT);
-        this.deleteStatement = databaseAdapter.compileStatement(DELETE_STATEMENT);
+        this.upsert = new Upsert(databaseAdapter, UserRoleModel.TABLE, INSERT_STATEMENT, UPSERT_STATEMENT);
     }
 
     @Override
@@ -86,6 +86,7 @@ public class UserRoleStoreImpl implements UserRoleStore {
                        @Nullable String displayName,
                        @Nullable Date created,
                        @Nullable Date lastUpdated) {
+        SQLiteStatement insertStatement = databaseAdapter.cachedStatement(INSERT_STATEMENT);
 
         nonNull(uid);
         bindArguments(insertStatement, uid, code, name, displayName, created, lastUpdated);
@@ -95,6 +96,29 @@ public class UserRoleStoreImpl implements UserRoleStore {
         return insert;
     }
 
+    @Override
+    public void upsert(@NonNull String uid,
+                       @Nullable String code,
+                       @Nullable String name,
+                       @Nullable String displayName,
+                       @Nullable Date created,
+                       @Nullable Date lastUpdated) {
+        SQLiteStatement statement = upsert.statement();
+        if (statement != null) {
+            nonNull(uid);
+            bindArguments(statement, uid, code, name, displayName, created, lastUpdated);
+
+            if (upsert.execute()) {
+                return;
+            }
+        }
+
+        if (update(uid, code, name, displayName, created, lastUpdated, uid) <= 0) {
+            insert(uid, code, name, displayName, created, lastUpdated);
+            upsert.inserted();
+        }
+    }
+
     @Override
     public int update(@NonNull String uid,
                       @Nullable String code,
@@ -103,6 +127,7 @@ public class UserRoleStoreImpl implements UserRoleStore {
                       @Nullable Date created,
                       @Nullable Date lastUpdated,
                       @NonNull String whereUid) {
+        SQLiteStatement updateStatement = databaseAdapter.cachedStatement(UPDATE_STATEMENT);
         nonNull(uid);
         nonNull(whereUid);
         bindArguments(updateStatement, uid, code, name, displayName, created, lastUpdated);
@@ -115,6 +140,7 @@ public class UserRoleStoreImpl implements UserRoleStore {
 
     @Override
     public int delete(@NonNull String uid) {
+        SQLiteStatement deleteStatement = databaseAdapter.cachedStatement(DELETE_STATEMENT);
         nonNull(uid);
         sqLiteBind(deleteStatement, 1, uid);
 
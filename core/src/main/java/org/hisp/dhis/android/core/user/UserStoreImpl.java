@@ -33,9 +33,11 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Upsert;
 
 import java.util.Date;
 
+import static org.hisp.dhis.android.core.data.database.DbUtils.upsertStatement;
 import static org.hisp.dhis.android.core.utils.StoreUtils.nonNull;
 import static org.hisp.dhis.android.core.utils.StoreUtils.sqLiteBind;
 
@@ -64,6 +66,8 @@ public class UserStoreImpl implements UserStore {
             UserModel.Columns.NATIONALITY +
             ") " + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
+    private static final String UPSERT_STATEMENT = upsertStatement(INSERT_STATEMENT, UserModel.Columns.UID);
+
     private static final String UPDATE_STATEMENT = "UPDATE " + UserModel.TABLE + " SET " +
             UserModel.Columns.UID + " =?, " +
             UserModel.Columns.CODE + " =?, " +
@@ -90,15 +94,11 @@ public class UserStoreImpl implements UserStore {
             " WHERE " + UserModel.Columns.UID + " =?;";
 
     private final DatabaseAdapter databaseAdapter;
-    private final SQLiteStatement insertStatement;
-    private final SQLiteStatement updateStatement;
-    private final SQLiteStatement deleteStatement;
+    private final Upsert upsert;
 
     public UserStoreImpl(DatabaseAdapter databaseAdapter) {
         this.databaseAdapter = databaseAdapter;
-        this.insertStatement = databaseAdapter.compileStatement(INSERT_STATEMENT);
-        this.updateStatement = databaseAdapter.compileStatement(UPDATE_STATEMENT);
-        this.deleteStatement = databaseAdapter.compileStatement(DELETE_STATEMENT);
+        this.upsert = new Upsert(databaseAdapter, UserModel.TABLE, INSERT_STATEMENT, UPSERT_STATEMENT);
     }
 
     @Override
@@ -111,6 +111,7 @@ public class UserStoreImpl implements UserStore {
             @Nullable String introduction, @Nullable String employer, @Nullable String interests,
             @Nullable String languages, @Nullable String email, @Nullable String phoneNumber,
             @Nullable String nationality) {
+        SQLiteStatement insertStatement = databaseAdapter.cachedStatement(INSERT_STATEMENT);
 
         nonNull(uid);
         bindArguments(
@@ -125,6 +126,41 @@ public class UserStoreImpl implements UserStore {
         return insert;
     }
 
+    @Override
+    public void upsert(
+            @NonNull String uid, @Nullable String code,
+            @Nullable String name, @Nullable String displayName,
+            @Nullable Date created, @Nullable Date lastUpdated,
+            @Nullable String birthday, @Nullable String education, @Nullable String gender,
+            @Nullable String jobTitle, @Nullable String surname, @Nullable String firstName,
+            @Nullable String introduction, @Nullable String employer, @Nullable String interests,
+            @Nullable String languages, @Nullable String email, @Nullable String phoneNumber,
+            @Nullable String nationality) {
+        SQLiteStatement statement = upsert.statement();
+        if (statement != null) {
+            nonNull(uid);
+            bindArguments(
+                    statement, uid, code, name,
+                    displayName, created, lastUpdated, birthday, education, gender,
+                    jobTitle, surname, firstName, introduction, employer, interests,
+                    languages, email, phoneNumber, nationality
+            );
+
+            if (upsert.execute()) {
+                return;
+            }
+        }
+
+        if (update(uid, code, name, displayName, created, lastUpdated, birthday, education, gender, jobTitle,
+                surname, firstName, introduction, employer, interests, languages, email, phoneNumber, nationality,
+                uid) <= 0) {
+            insert(uid, code, name, displayName, created, lastUpdated, birthday, education, gender, jobTitle,
+                    surname, firstName, introduction, employer, interests, languages, email, phoneNumber,
+                    nationality);
+            upsert.inserted();
+        }
+    }
+
     @Override
     public int update(
             @NonNull String uid, @Nullable String code,
@@ -135,6 +171,7 @@ public class UserStoreImpl implements UserStore {
             @Nullable String introduction, @Nullable String employer, @Nullable String interests,
             @Nullable String languages, @Nullable String email, @Nullable String phoneNumber,
             @Nullable String nationality, @NonNull String whereUid) {
+        SQLiteStatement updateStatement = databaseAdapter.cachedStatement(UPDATE_STATEMENT);
 
         nonNull(uid);
         nonNull(whereUid);
@@ -151,6 +188,7 @@ public class UserStoreImpl implements UserStore {
 
     @Override
     public int delete(@NonNull String uid) {
+        SQLiteStatement deleteStatement = databaseAdapter.cachedStatement(DELETE_STATEMENT);
         nonNull(uid);
         sqLiteBind(deleteStatement, 1, uid);
 
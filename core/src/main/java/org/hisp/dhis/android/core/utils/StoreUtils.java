@@ -30,8 +30,6 @@ package org.hisp.dhis.android.core.utils;
 
 import android.database.sqlite.SQLiteStatement;
 
-import org.hisp.dhis.android.core.common.BaseIdentifiableObject;
-
 import java.util.Date;
 
 /**
@@ -94,6 +92,7 @@ public final class StoreUtils {
 
     /**
      * Handle if Date argument is null and bind it using .bindNull() if so.
+     * Dates are bound as epoch milliseconds.
      * A helper function to abstract/clean up boilerplate if/else bloat..
      *
      * @param sqLiteStatement
@@ -104,7 +103,7 @@ public final class StoreUtils {
         if (arg == null) {
             sqLiteStatement.bindNull(index);
         } else {
-            sqLiteStatement.bindString(index, BaseIdentifiableObject.DATE_FORMAT.format(arg));
+            sqLiteStatement.bindLong(index, arg.getTime());
         }
     }
 
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hisp.dhis.android.core.common;
+
+import android.database.Cursor;
+
+import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.program.ProgramModel;
+import org.hisp.dhis.android.core.program.ProgramStageModel;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.contains;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(JUnit4.class)
+public class ChangeDetectorTests {
+
+    @Mock
+    private DatabaseAdapter databaseAdapter;
+
+    @Mock
+    private Cursor cursor;
+
+    private ChangeDetector changeDetector;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+
+        // rows of the program table, ordered by uid: uid_a updated at 1000, uid_b without lastUpdated
+        when(cursor.getCount()).thenReturn(2);
+        when(cursor.moveToNext()).thenReturn(true, true, false);
+        when(cursor.getString(0)).thenReturn("uid_a", "uid_b");
+        when(cursor.isNull(1)).thenReturn(false, true);
+        when(cursor.getLong(1)).thenReturn(1000L);
+        when(databaseAdapter.query(contains(ProgramModel.TABLE))).thenReturn(cursor);
+
+        changeDetector = new ChangeDetector(databaseAdapter);
+    }
+
+    @Test
+    public void hasChanged_shouldReturnFalse_ifStoredRowIsNotOlder() {
+        assertThat(changeDetector.hasChanged(ProgramModel.TABLE, "uid_a", new Date(1000L))).isFalse();
+        assertThat(changeDetector.hasChanged(ProgramModel.TABLE, "uid_a", new Date(999L))).isFalse();
+    }
+
+    @Test
+    public void hasChanged_shouldReturnTrue_forNewerOrUnknownRows() {
+        assertThat(changeDetector.hasChanged(ProgramModel.TABLE, "uid_a", new Date(1001L))).isTrue();
+        assertThat(changeDetector.hasChanged(ProgramModel.TABLE, "uid_b", new Date(1L))).isTrue();
+        assertThat(changeDetector.hasChanged(ProgramModel.TABLE, "uid_c", new Date(1L))).isTrue();
+        assertThat(changeDetector.hasChanged(ProgramModel.TABLE, "uid_a", null)).isTrue();
+    }
+
+    @Test
+    public void hasChanged_shouldRememberRowsReportedAsChanged() {
+        assertThat(changeDetector.hasChanged(ProgramModel.TABLE, "uid_c", new Date(2000L))).isTrue();
+        assertThat(changeDetector.hasChanged(ProgramModel.TABLE, "uid_c", new Date(2000L))).isFalse();
+        assertThat(changeDetector.hasChanged(ProgramModel.TABLE, "uid_c", new Date(3000L))).isTrue();
+    }
+
+    @Test
+    public void hasChanged_shouldLoadEachTableOnce() {
+        changeDetector.hasChanged(ProgramModel.TABLE, "uid_a", new Date(1L));
+        changeDetector.hasChanged(ProgramModel.TABLE, "uid_b", new Date(1L));
+        changeDetector.hasChanged(ProgramModel.TABLE, "uid_c", new Date(1L));
+
+        verify(databaseAdapter, times(1)).query(contains(ProgramModel.TABLE));
+        verify(databaseAdapter, never()).query(contains(ProgramStageModel.TABLE));
+        verify(cursor).close();
+    }
+
+    @Test
+    public void hasChanged_shouldReturnTrue_ifTableCannotBeQueried() {
+        when(databaseAdapter.query(anyString())).thenReturn(null);
+
+        assertThat(changeDetector.hasChanged(ProgramStageModel.TABLE, "uid_a", new Date(1L))).isTrue();
+    }
+}
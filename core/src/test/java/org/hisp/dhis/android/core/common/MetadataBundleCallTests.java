@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hisp.dhis.android.core.common;
+
+import org.hisp.dhis.android.core.Inject;
+import org.hisp.dhis.android.core.data.api.FieldsConverterFactory;
+import org.hisp.dhis.android.core.data.api.FilterConverterFactory;
+import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Transaction;
+import org.hisp.dhis.android.core.option.OptionSet;
+import org.hisp.dhis.android.core.option.OptionSetHandler;
+import org.hisp.dhis.android.core.organisationunit.OrganisationUnit;
+import org.hisp.dhis.android.core.organisationunit.OrganisationUnitHandler;
+import org.hisp.dhis.android.core.organisationunit.OrganisationUnitModel;
+import org.hisp.dhis.android.core.program.Program;
+import org.hisp.dhis.android.core.program.ProgramHandler;
+import org.hisp.dhis.android.core.resource.ResourceModel;
+import org.hisp.dhis.android.core.resource.ResourceStore;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntity;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityHandler;
+import org.hisp.dhis.android.core.user.User;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(JUnit4.class)
+public class MetadataBundleCallTests {
+    private static final String METADATA = "{\n" +
+            "    \"system\": {\"id\": \"eed3d451-4ff5-4193-b951-ffcc68954299\", \"rev\": \"abb0f1d\"},\n" +
+            "    \"organisationUnits\": [\n" +
+            "        {\"id\": \"ImspTQPwCqd\", \"path\": \"/ImspTQPwCqd\"},\n" +
+            "        {\"id\": \"O6uvpzGd5pu\", \"path\": \"/ImspTQPwCqd/O6uvpzGd5pu\"}\n" +
+            "    ],\n" +
+            "    \"programs\": [{\n" +
+            "        \"id\": \"IpHINAT79UW\",\n" +
+            "        \"trackedEntity\": {\"id\": \"nEenWmSyUEp\", \"name\": \"Person\"},\n" +
+            "        \"programTrackedEntityAttributes\": [{\n" +
+            "            \"id\": \"l2T72XzBCLd\",\n" +
+            "            \"trackedEntityAttribute\": {\n" +
+            "                \"id\": \"cejWyOfXge6\",\n" +
+            "                \"optionSet\": {\"id\": \"pC3N9N77UmT\", \"version\": 2}\n" +
+            "            }\n" +
+            "        }],\n" +
+            "        \"programStages\": [{\n" +
+            "            \"id\": \"A03MvHHogjR\",\n" +
+            "            \"programStageDataElements\": [{\n" +
+            "                \"id\": \"LBNxoXdMnkv\",\n" +
+            "                \"dataElement\": {\n" +
+            "                    \"id\": \"a3kGcGDCuk6\",\n" +
+            "                    \"optionSet\": {\"id\": \"pC3N9N77UmT\", \"version\": 2}\n" +
+            "                }\n" +
+            "            }]\n" +
+            "        }]\n" +
+            "    }]\n" +
+            "}";
+
+    @Mock
+    private DatabaseAdapter databaseAdapter;
+
+    @Mock
+    private Transaction transaction;
+
+    @Mock
+    private ResourceStore resourceStore;
+
+    @Mock
+    private ProgramHandler programHandler;
+
+    @Mock
+    private OptionSetHandler optionSetHandler;
+
+    @Mock
+    private TrackedEntityHandler trackedEntityHandler;
+
+    @Mock
+    private OrganisationUnitHandler organisationUnitHandler;
+
+    @Mock
+    private User user;
+
+    @Mock
+    private OrganisationUnit assignedOrganisationUnit;
+
+    @Captor
+    private ArgumentCaptor<Program> programCaptor;
+
+    @Captor
+    private ArgumentCaptor<OptionSet> optionSetCaptor;
+
+    @Captor
+    private ArgumentCaptor<TrackedEntity> trackedEntityCaptor;
+
+    @Captor
+    private ArgumentCaptor<List<OrganisationUnit>> organisationUnitsCaptor;
+
+    private Date serverDate;
+    private MockWebServer server;
+    private MetadataService metadataService;
+
+    @Before
+    public void setUp() throws IOException {
+        MockitoAnnotations.initMocks(this);
+
+        server = new MockWebServer();
+        server.start();
+
+        Retrofit retrofit = new Retrofit.Builder()
+                .baseUrl(server.url("/api/"))
+                .addConverterFactory(FilterConverterFactory.create())
+                .addConverterFactory(FieldsConverterFactory.create())
+                .build();
+        metadataService = retrofit.create(MetadataService.class);
+        serverDate = new Date();
+
+        when(databaseAdapter.beginNewTransaction()).thenReturn(transaction);
+        when(user.uid()).thenReturn("DXyJmlo9rge");
+        when(user.organisationUnits()).thenReturn(Collections.singletonList(assignedOrganisationUnit));
+        when(assignedOrganisationUnit.uid()).thenReturn("ImspTQPwCqd");
+        when(assignedOrganisationUnit.path()).thenReturn("/ImspTQPwCqd");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void call_shouldRequestProgramsAndOrganisationUnitsInSingleRequest() throws Exception {
+        server.enqueue(new MockResponse().setBody(METADATA));
+
+        call(new HashSet<>(Arrays.asList("IpHINAT79UW", "eBAyeGv0exc"))).call();
+
+        assertThat(server.getRequestCount()).isEqualTo(1);
+        HttpUrl url = requestUrl(server.takeRequest());
+        assertThat(url.encodedPath()).isEqualTo("/api/metadata");
+        assertThat(url.queryParameter("assumeTrue")).isEqualTo("false");
+        assertThat(url.queryParameter("rootJunction")).isEqualTo("OR");
+        assertThat(url.queryParameter("programs")).isEqualTo("true");
+        assertThat(url.queryParameter("programs:filter")).startsWith("id:in:[")
+                .contains("IpHINAT79UW").contains("eBAyeGv0exc");
+        assertThat(url.queryParameter("programs:fields")).contains("optionSet[").contains("trackedEntity[");
+        assertThat(url.queryParameter("organisationUnits")).isEqualTo("true");
+        assertThat(url.queryParameterValues("organisationUnits:filter")).containsExactly("path:like:ImspTQPwCqd");
+        assertThat(url.queryParameter("organisationUnits:fields")).isNotNull();
+    }
+
+    @Test
+    public void call_shouldHandItemsOfEverySectionToTheirHandlers() throws Exception {
+        server.enqueue(new MockResponse().setBody(METADATA));
+
+        Response<Void> response = call(Collections.singleton("IpHINAT79UW")).call();
+
+        assertThat(response.isSuccessful()).isTrue();
+
+        verify(programHandler).handleProgram(programCaptor.capture());
+        assertThat(programCaptor.getValue().uid()).isEqualTo("IpHINAT79UW");
+
+        // the option set is referenced twice, but handled once
+        verify(optionSetHandler, times(1)).handleOptionSet(optionSetCaptor.capture());
+        assertThat(optionSetCaptor.getValue().uid()).isEqualTo("pC3N9N77UmT");
+
+        verify(trackedEntityHandler).handleTrackedEntity(trackedEntityCaptor.capture());
+        assertThat(trackedEntityCaptor.getValue().uid()).isEqualTo("nEenWmSyUEp");
+
+        verify(organisationUnitHandler, times(2)).handleOrganisationUnits(organisationUnitsCaptor.capture(),
+                eq(OrganisationUnitModel.Scope.SCOPE_DATA_CAPTURE), eq("DXyJmlo9rge"));
+        assertThat(organisationUnitsCaptor.getAllValues().get(0).get(0).uid()).isEqualTo("ImspTQPwCqd");
+        assertThat(organisationUnitsCaptor.getAllValues().get(1).get(0).uid()).isEqualTo("O6uvpzGd5pu");
+
+        verify(resourceStore).insert(ResourceModel.Type.PROGRAM.name(), serverDate);
+        verify(resourceStore).insert(ResourceModel.Type.OPTION_SET.name(), serverDate);
+        verify(resourceStore).insert(ResourceModel.Type.TRACKED_ENTITY.name(), serverDate);
+        verify(resourceStore).insert(ResourceModel.Type.ORGANISATION_UNIT.name(), serverDate);
+
+        verify(transaction).setSuccessful();
+        verify(transaction).end();
+    }
+
+    @Test
+    public void call_shouldExcludePrograms_ifNoProgramIsAssigned() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"organisationUnits\": []}"));
+
+        call(Collections.<String>emptySet()).call();
+
+        HttpUrl url = requestUrl(server.takeRequest());
+        assertThat(url.queryParameter("programs")).isEqualTo("false");
+        assertThat(url.queryParameter("programs:filter")).isNull();
+        assertThat(url.queryParameter("organisationUnits")).isEqualTo("true");
+
+        verify(resourceStore, never()).insert(eq(ResourceModel.Type.PROGRAM.name()), any(Date.class));
+        verify(resourceStore).insert(ResourceModel.Type.ORGANISATION_UNIT.name(), serverDate);
+    }
+
+    @Test
+    public void call_shouldNotHitTheNetwork_ifNothingIsAssigned() throws Exception {
+        when(user.organisationUnits()).thenReturn(Collections.<OrganisationUnit>emptyList());
+
+        Response<Void> response = call(null).call();
+
+        assertThat(response.isSuccessful()).isTrue();
+        assertThat(server.getRequestCount()).isEqualTo(0);
+        verify(databaseAdapter, never()).beginNewTransaction();
+    }
+
+    @Test
+    public void call_shouldNotPersistAnything_ifRequestFails() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(500));
+
+        Response<Void> response = call(Collections.singleton("IpHINAT79UW")).call();
+
+        assertThat(response.isSuccessful()).isFalse();
+        assertThat(response.code()).isEqualTo(500);
+        verify(databaseAdapter, never()).beginNewTransaction();
+        verify(programHandler, never()).handleProgram(any(Program.class));
+        verify(organisationUnitHandler, never()).handleOrganisationUnits(
+                anyListOf(OrganisationUnit.class), any(OrganisationUnitModel.Scope.class), anyString());
+        verify(resourceStore, never()).insert(anyString(), any(Date.class));
+    }
+
+    private HttpUrl requestUrl(RecordedRequest request) {
+        return server.url(request.getPath());
+    }
+
+    private MetadataBundleCall call(Set<String> programUids) {
+        return new MetadataBundleCall(metadataService, databaseAdapter, resourceStore, Inject.objectMapper(),
+                programHandler, optionSetHandler, trackedEntityHandler, organisationUnitHandler, user,
+                programUids, serverDate);
+    }
+}
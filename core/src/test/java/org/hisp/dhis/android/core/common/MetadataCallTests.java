@@ -27,9 +27,13 @@
  */
 package org.hisp.dhis.android.core.common;
 
+import android.database.sqlite.SQLiteStatement;
+
+import org.hisp.dhis.android.core.Inject;
 import org.hisp.dhis.android.core.data.api.Fields;
 import org.hisp.dhis.android.core.data.api.Filter;
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.MetricsDatabaseAdapter;
 import org.hisp.dhis.android.core.data.database.Transaction;
 import org.hisp.dhis.android.core.dataelement.DataElementStore;
 import org.hisp.dhis.android.core.option.OptionSet;
@@ -50,15 +54,20 @@ import org.hisp.dhis.android.core.program.ProgramStageSectionProgramIndicatorLin
 import org.hisp.dhis.android.core.program.ProgramStageSectionStore;
 import org.hisp.dhis.android.core.program.ProgramStageStore;
 import org.hisp.dhis.android.core.program.ProgramStore;
+import org.hisp.dhis.android.core.program.ProgramTrackedEntityAttribute;
 import org.hisp.dhis.android.core.program.ProgramTrackedEntityAttributeStore;
 import org.hisp.dhis.android.core.relationship.RelationshipTypeStore;
 import org.hisp.dhis.android.core.resource.ResourceModel;
 import org.hisp.dhis.android.core.resource.ResourceStore;
+import org.hisp.dhis.android.core.resource.ResourceStoreImpl;
 import org.hisp.dhis.android.core.systeminfo.SystemInfo;
 import org.hisp.dhis.android.core.systeminfo.SystemInfoHandler;
+import org.hisp.dhis.android.core.systeminfo.SystemInfoModel;
 import org.hisp.dhis.android.core.systeminfo.SystemInfoService;
 import org.hisp.dhis.android.core.systeminfo.SystemInfoStore;
+import org.hisp.dhis.android.core.systeminfo.SystemInfoStoreImpl;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntity;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttribute;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttributeStore;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityService;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityStore;
@@ -76,14 +85,21 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.mockito.InOrder;
 import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.HttpsURLConnection;
 
@@ -94,14 +110,21 @@ import retrofit2.Response;
 import static org.assertj.core.api.Java6Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
-import static org.mockito.Mockito.atMost;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(JUnit4.class)
 public class MetadataCallTests {
+    private static final long TIMEOUT_SECONDS = 5;
+
     @Mock
     private DatabaseAdapter databaseAdapter;
 
@@ -258,6 +281,12 @@ public class MetadataCallTests {
     @Mock
     private TrackedEntity trackedEntity;
 
+    @Mock
+    private ProgramTrackedEntityAttribute programTrackedEntityAttribute;
+
+    @Mock
+    private TrackedEntityAttribute trackedEntityAttribute;
+
 
     // object to test
     private MetadataCall metadataCall;
@@ -301,6 +330,14 @@ public class MetadataCallTests {
         when(trackedEntityPayload.items()).thenReturn(Collections.singletonList(trackedEntity));
         when(trackedEntity.uid()).thenReturn("test_tracked_entity_uid");
         when(optionSetPayload.items()).thenReturn(Collections.singletonList(optionSet));
+        when(program.programTrackedEntityAttributes()).thenReturn(
+                Collections.singletonList(programTrackedEntityAttribute));
+        when(programTrackedEntityAttribute.trackedEntityAttribute()).thenReturn(trackedEntityAttribute);
+        when(programTrackedEntityAttribute.program()).thenReturn(program);
+        when(program.uid()).thenReturn("test_program_uid");
+        when(trackedEntityAttribute.optionSet()).thenReturn(optionSet);
+        when(optionSet.uid()).thenReturn("test_option_set_uid");
+        when(optionSet.version()).thenReturn(1);
 
         when(resourceStore.getLastUpdated(any(ResourceModel.Type.class))).thenReturn("2017-01-01");
 
@@ -313,7 +350,8 @@ public class MetadataCallTests {
                 programTrackedEntityAttributeStore, programRuleVariableStore, programIndicatorStore,
                 programStageSectionProgramIndicatorLinkStore, programRuleActionStore, programRuleStore,
                 optionStore, optionSetStore, dataElementStore, programStageDataElementStore,
-                programStageSectionStore, programStageStore, relationshipStore, trackedEntityStore);
+                programStageSectionStore, programStageStore, relationshipStore, trackedEntityStore, null, 0, null,
+                false, null);
 
         when(databaseAdapter.beginNewTransaction()).thenReturn(transaction);
 
@@ -335,90 +373,220 @@ public class MetadataCallTests {
     @Test
     @SuppressWarnings("unchecked")
     public void call_shouldNotMarkTransactionSuccessful_ifSystemInfoCall_Fails() throws Exception {
-        final int expectedTransactions = 1;
         when(systemInfoCall.execute()).thenReturn(errorResponse);
 
         Response response = metadataCall.call();
 
         assertThat(response).isEqualTo(errorResponse);
         assertThat(response.code()).isEqualTo(HttpURLConnection.HTTP_CLIENT_TIMEOUT);
-        verify(databaseAdapter, times(expectedTransactions)).beginNewTransaction();
-        verify(transaction, times(expectedTransactions)).end();
-        verify(transaction, times(expectedTransactions - 1)).setSuccessful();
+        // nothing is written unless every stage has been downloaded
+        verify(databaseAdapter, never()).beginNewTransaction();
+        verify(transaction, never()).setSuccessful();
     }
 
     @Test
     @SuppressWarnings("unchecked")
     public void call_shouldNotMarkTransactionSuccessful_ifUserCall_Fails() throws Exception {
-        final int expectedTransactions = 2;
         when(userCall.execute()).thenReturn(errorResponse);
 
         Response response = metadataCall.call();
 
         assertThat(response).isEqualTo(errorResponse);
         assertThat(response.code()).isEqualTo(HttpURLConnection.HTTP_CLIENT_TIMEOUT);
-        verify(databaseAdapter, times(expectedTransactions)).beginNewTransaction();
-        verify(transaction, times(expectedTransactions)).end();
-        verify(transaction, atMost(expectedTransactions - 1)).setSuccessful();//ie last one is not marked as success...
+        // nothing is written unless every stage has been downloaded
+        verify(databaseAdapter, never()).beginNewTransaction();
+        verify(transaction, never()).setSuccessful();
     }
 
     @Test
     @SuppressWarnings("unchecked")
     public void call_shouldNotMarkTransactionSuccessful_ifOrganisationUnitCall_Fails() throws Exception {
-        final int expectedTransactions = 4;
         when(organisationUnitCall.execute()).thenReturn(errorResponse);
 
         Response response = metadataCall.call();
 
         assertThat(response).isEqualTo(errorResponse);
         assertThat(response.code()).isEqualTo(HttpURLConnection.HTTP_CLIENT_TIMEOUT);
-        verify(databaseAdapter, times(expectedTransactions)).beginNewTransaction();
-        verify(transaction, times(expectedTransactions)).end();
-        verify(transaction, atMost(expectedTransactions - 1)).setSuccessful(); //taking in account the sub-transactions
+        // nothing is written unless every stage has been downloaded
+        verify(databaseAdapter, never()).beginNewTransaction();
+        verify(transaction, never()).setSuccessful();
     }
 
     @Test
     @SuppressWarnings("unchecked")
     public void call_shouldNotMarkTransactionSuccessful_ifProgramCall_Fails() throws Exception {
-        final int expectedTransactions = 4;
         when(programCall.execute()).thenReturn(errorResponse);
 
         Response response = metadataCall.call();
 
         assertThat(response).isEqualTo(errorResponse);
         assertThat(response.code()).isEqualTo(HttpURLConnection.HTTP_CLIENT_TIMEOUT);
-        verify(databaseAdapter, times(expectedTransactions)).beginNewTransaction();
-        verify(transaction, times(expectedTransactions)).end();
-        verify(transaction, atMost(expectedTransactions - 1)).setSuccessful();
+        // nothing is written unless every stage has been downloaded
+        verify(databaseAdapter, never()).beginNewTransaction();
+        verify(transaction, never()).setSuccessful();
     }
 
     @Test
     @SuppressWarnings("unchecked")
     public void call_shouldNotMarkTransactionSuccessful_ifTrackedEntityCall_Fails() throws Exception {
-        final int expectedTransactions = 6;
         when(trackedEntityCall.execute()).thenReturn(errorResponse);
 
         Response response = metadataCall.call();
 
         assertThat(response).isEqualTo(errorResponse);
         assertThat(response.code()).isEqualTo(HttpURLConnection.HTTP_CLIENT_TIMEOUT);
-        verify(databaseAdapter, times(expectedTransactions)).beginNewTransaction();
-        verify(transaction, times(expectedTransactions)).end();
-        verify(transaction, atMost(expectedTransactions - 1)).setSuccessful();
+        // nothing is written unless every stage has been downloaded
+        verify(databaseAdapter, never()).beginNewTransaction();
+        verify(transaction, never()).setSuccessful();
     }
 
     @Test
     @SuppressWarnings("unchecked")
     public void call_shouldNotMarkTransactionSuccessful_ifOptionSet_Fails() throws Exception {
-        final int expectedTransactions = 6;
         when(optionSetCall.execute()).thenReturn(errorResponse);
 
         Response response = metadataCall.call();
 
         assertThat(response).isEqualTo(errorResponse);
         assertThat(response.code()).isEqualTo(HttpURLConnection.HTTP_CLIENT_TIMEOUT);
-        verify(databaseAdapter, times(expectedTransactions)).beginNewTransaction();
+        // nothing is written unless every stage has been downloaded
+        verify(databaseAdapter, never()).beginNewTransaction();
+        verify(transaction, never()).setSuccessful();
+    }
+
+    @Test
+    public void call_shouldPersistAllStagesInOneTransaction_afterDownloads() throws Exception {
+        final int expectedTransactions = 7; // outer transaction and one per stage
+
+        metadataCall.call();
+
+        InOrder inOrder = inOrder(optionSetCall, trackedEntityCall, databaseAdapter);
+        inOrder.verify(optionSetCall).execute();
+        inOrder.verify(databaseAdapter, times(expectedTransactions)).beginNewTransaction();
+
+        inOrder = inOrder(trackedEntityCall, databaseAdapter);
+        inOrder.verify(trackedEntityCall).execute();
+        inOrder.verify(databaseAdapter, times(expectedTransactions)).beginNewTransaction();
+
+        verify(transaction, times(expectedTransactions)).setSuccessful();
         verify(transaction, times(expectedTransactions)).end();
-        verify(transaction, atMost(expectedTransactions - 1)).setSuccessful();
+    }
+
+    @Test
+    public void call_shouldDownloadIndependentStagesConcurrently() throws Exception {
+        final CountDownLatch organisationUnitsRequested = new CountDownLatch(1);
+        final CountDownLatch programsRequested = new CountDownLatch(1);
+
+        // each request only completes once the other one has been issued as well
+        when(organisationUnitCall.execute()).then(new Answer<Response<Payload<OrganisationUnit>>>() {
+            @Override
+            public Response<Payload<OrganisationUnit>> answer(InvocationOnMock invocation) throws Throwable {
+                organisationUnitsRequested.countDown();
+                assertThat(programsRequested.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+                return Response.success(organisationUnitPayload);
+            }
+        });
+        when(programCall.execute()).then(new Answer<Response<Payload<Program>>>() {
+            @Override
+            public Response<Payload<Program>> answer(InvocationOnMock invocation) throws Throwable {
+                programsRequested.countDown();
+                assertThat(organisationUnitsRequested.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+                return Response.success(programPayload);
+            }
+        });
+
+        Response response = metadataCall.call();
+
+        assertThat(response.body()).isEqualTo(optionSetPayload);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void call_shouldDownloadReferencesOfPrograms_whenPagedAndStreamed() throws Exception {
+        when(programService.getProgramsPage(
+                any(Fields.class), any(Filter.class), any(Filter.class), anyInt(), anyInt())
+        ).thenReturn(programCall);
+        when(trackedEntityService.trackedEntitiesPage(
+                any(Fields.class), any(Filter.class), any(Filter.class), anyInt(), anyInt())
+        ).thenReturn(trackedEntityCall);
+        when(optionSetService.optionSetsPage(any(Fields.class), any(Filter.class), anyInt(), anyInt()))
+                .thenReturn(optionSetCall);
+        when(optionSetStore.queryVersions()).thenReturn(Collections.<String, Integer>emptyMap());
+
+        // the defaults of D2: pages, a mapper to stream with and no checkpoint
+        Response response = new MetadataCall(
+                databaseAdapter, systemInfoService, userService,
+                programService, organisationUnitService, trackedEntityService, optionSetService,
+                systemInfoStore, resourceStore, userStore,
+                userCredentialsStore, userRoleStore, userRoleProgramLinkStore, organisationUnitStore,
+                userOrganisationUnitLinkStore, programStore, trackedEntityAttributeStore,
+                programTrackedEntityAttributeStore, programRuleVariableStore, programIndicatorStore,
+                programStageSectionProgramIndicatorLinkStore, programRuleActionStore, programRuleStore,
+                optionStore, optionSetStore, dataElementStore, programStageDataElementStore,
+                programStageSectionStore, programStageStore, relationshipStore, trackedEntityStore,
+                Inject.objectMapper(), 50, null, false, null).call();
+
+        assertThat(response.isSuccessful()).isTrue();
+
+        ArgumentCaptor<Filter> trackedEntityFilter = ArgumentCaptor.forClass(Filter.class);
+        verify(trackedEntityService).trackedEntitiesPage(any(Fields.class), trackedEntityFilter.capture(),
+                any(Filter.class), anyInt(), anyInt());
+        assertThat(trackedEntityFilter.getValue()).isNotNull();
+        assertThat(trackedEntityFilter.getValue().values()).containsExactly("test_tracked_entity_uid");
+
+        ArgumentCaptor<Filter> optionSetFilter = ArgumentCaptor.forClass(Filter.class);
+        verify(optionSetService).optionSetsPage(any(Fields.class), optionSetFilter.capture(), anyInt(), anyInt());
+        assertThat(optionSetFilter.getValue()).isNotNull();
+        assertThat(optionSetFilter.getValue().values()).containsExactly("test_option_set_uid");
+    }
+
+    @Test
+    public void call_shouldLetSyncSchedulerBackOff_ifOnlyTheBookkeepingOfTheSyncIsWritten() throws Exception {
+        long minInterval = TimeUnit.MINUTES.toMillis(15);
+        when(systemInfo.dateFormat()).thenReturn("yyyy-mm-dd'T'HH:mm:ss");
+        when(systemInfo.version()).thenReturn("2.26");
+        when(systemInfo.contextPath()).thenReturn("https://play.dhis2.org/dev");
+        when(databaseAdapter.cachedStatement(anyString())).thenReturn(mock(SQLiteStatement.class));
+        when(databaseAdapter.executeInsert(anyString(), any(SQLiteStatement.class))).thenReturn(1L);
+        when(databaseAdapter.executeUpdateDelete(anyString(), any(SQLiteStatement.class))).thenReturn(1);
+
+        // the resource and system info tables are written through the adapter which counts the changed rows
+        final DatabaseAdapter metricsDatabaseAdapter = new MetricsDatabaseAdapter(databaseAdapter);
+        final SyncScheduler[] syncScheduler = new SyncScheduler[1];
+        syncScheduler[0] = new SyncScheduler.Builder()
+                .clock(new SyncScheduler.Clock() {
+                    @Override
+                    public long currentTimeMillis() {
+                        return 0L;
+                    }
+                })
+                .metadataSync(new Callable<Response>() {
+                    @Override
+                    public Response call() throws Exception {
+                        return new MetadataCall(
+                                metricsDatabaseAdapter, systemInfoService, userService,
+                                programService, organisationUnitService, trackedEntityService, optionSetService,
+                                new SystemInfoStoreImpl(metricsDatabaseAdapter),
+                                new ResourceStoreImpl(metricsDatabaseAdapter), userStore,
+                                userCredentialsStore, userRoleStore, userRoleProgramLinkStore, organisationUnitStore,
+                                userOrganisationUnitLinkStore, programStore, trackedEntityAttributeStore,
+                                programTrackedEntityAttributeStore, programRuleVariableStore, programIndicatorStore,
+                                programStageSectionProgramIndicatorLinkStore, programRuleActionStore,
+                                programRuleStore, optionStore, optionSetStore, dataElementStore,
+                                programStageDataElementStore, programStageSectionStore, programStageStore,
+                                relationshipStore, trackedEntityStore, null, 0, null, false,
+                                syncScheduler[0]).call();
+                    }
+                })
+                .interval(minInterval, 4 * minInterval)
+                .build();
+
+        long nextRunTime = syncScheduler[0].runDue();
+
+        verify(databaseAdapter, atLeastOnce())
+                .executeUpdateDelete(eq(ResourceModel.TABLE), any(SQLiteStatement.class));
+        verify(databaseAdapter).executeUpdateDelete(eq(SystemInfoModel.TABLE), any(SQLiteStatement.class));
+        // the content stores haven't written anything, so the interval is doubled
+        assertThat(nextRunTime).isEqualTo(2 * minInterval);
     }
 }
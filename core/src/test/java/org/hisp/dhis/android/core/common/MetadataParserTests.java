@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hisp.dhis.android.core.common;
+
+import android.support.annotation.NonNull;
+
+import org.hisp.dhis.android.core.Inject;
+import org.hisp.dhis.android.core.organisationunit.OrganisationUnit;
+import org.hisp.dhis.android.core.program.Program;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import okio.Buffer;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.fail;
+
+@RunWith(JUnit4.class)
+public class MetadataParserTests {
+    private List<String> handledUids;
+    private MetadataParser metadataParser;
+
+    @Before
+    public void setUp() {
+        handledUids = new ArrayList<>();
+        metadataParser = new MetadataParser(Inject.objectMapper())
+                .section("programs", Program.class, new PayloadParser.ItemHandler<Program>() {
+                    @Override
+                    public void handle(@NonNull Program program) {
+                        handledUids.add("program:" + program.uid());
+                    }
+                })
+                .section("organisationUnits", OrganisationUnit.class,
+                        new PayloadParser.ItemHandler<OrganisationUnit>() {
+                            @Override
+                            public void handle(@NonNull OrganisationUnit organisationUnit) {
+                                handledUids.add("organisationUnit:" + organisationUnit.uid());
+                            }
+                        });
+    }
+
+    @Test
+    public void parse_shouldHandItemsOfEverySectionInOrder() throws IOException {
+        metadataParser.parse(source("{\n" +
+                "    \"system\": {\"id\": \"eed3d451-4ff5-4193-b951-ffcc68954299\"},\n" +
+                "    \"organisationUnits\": [{\"id\": \"ImspTQPwCqd\"}, null],\n" +
+                "    \"optionSets\": [{\"id\": \"pC3N9N77UmT\"}],\n" +
+                "    \"programs\": [{\"id\": \"IpHINAT79UW\"}, {\"id\": \"eBAyeGv0exc\"}]\n" +
+                "}"));
+
+        assertThat(handledUids).containsExactly(
+                "organisationUnit:ImspTQPwCqd", "program:IpHINAT79UW", "program:eBAyeGv0exc");
+    }
+
+    @Test
+    public void parse_shouldFail_ifMetadataIsNotAnObject() {
+        try {
+            metadataParser.parse(source("[{\"id\": \"IpHINAT79UW\"}]"));
+            fail("IOException was expected but nothing was thrown");
+        } catch (IOException ioException) {
+            // swallow exception
+        }
+
+        assertThat(handledUids).isEmpty();
+    }
+
+    private static Buffer source(String json) {
+        return new Buffer().writeUtf8(json);
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.common;
+
+import android.support.annotation.NonNull;
+
+import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Transaction;
+import org.hisp.dhis.android.core.resource.ResourceModel;
+import org.hisp.dhis.android.core.resource.ResourceStore;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import retrofit2.Response;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(JUnit4.class)
+public class PagedSyncTests {
+    private static final ResourceModel.Type RESOURCE_TYPE = ResourceModel.Type.OPTION_SET;
+    private static final String RESOURCE = RESOURCE_TYPE.name();
+    private static final int PAGE_SIZE = 2;
+
+    @Mock
+    private DatabaseAdapter databaseAdapter;
+
+    @Mock
+    private Transaction transaction;
+
+    @Mock
+    private ResourceStore resourceStore;
+
+    private Set<String> uids;
+    private Date serverDate;
+    private FakePageCall pageCall;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+
+        uids = new HashSet<>(Arrays.asList("uid1", "uid2", "uid3", "uid4", "uid5"));
+        serverDate = new Date(2000L);
+        pageCall = new FakePageCall(3);
+
+        when(databaseAdapter.beginNewTransaction()).thenReturn(transaction);
+        when(resourceStore.updatePaging(anyString(), anyString(), anyInt(), any(Date.class))).thenReturn(1);
+    }
+
+    @Test
+    public void download_shouldPersistEveryPageInItsOwnTransaction() throws Exception {
+        PagedSync<String> pagedSync = new PagedSync<>(databaseAdapter, resourceStore,
+                RESOURCE_TYPE, uids, PAGE_SIZE, serverDate);
+
+        Response<Payload<String>> response = pagedSync.download(pageCall);
+
+        assertThat(response.isSuccessful()).isTrue();
+        assertThat(response.body().pager().page()).isEqualTo(3);
+        assertThat(response.body().items()).isEmpty();
+        assertThat(pageCall.downloadedPages).containsExactly(1, 2, 3);
+        assertThat(pageCall.persistedPages).containsExactly(1, 2, 3);
+
+        verify(databaseAdapter, times(3)).beginNewTransaction();
+        verify(transaction, times(3)).setSuccessful();
+        verify(transaction, times(3)).end();
+        verify(resourceStore).updatePaging(eq(RESOURCE), anyString(), eq(3), eq(serverDate));
+
+        // the resource is only marked as synced by complete()
+        verify(resourceStore, never()).update(anyString(), any(Date.class), anyString());
+        pagedSync.complete();
+        verify(resourceStore).update(RESOURCE, serverDate, RESOURCE);
+    }
+
+    @Test
+    public void download_shouldStopAtFirstUnsuccessfulPage() throws Exception {
+        pageCall.failingPage = 2;
+        PagedSync<String> pagedSync = new PagedSync<>(databaseAdapter, resourceStore,
+                RESOURCE_TYPE, uids, PAGE_SIZE, serverDate);
+
+        Response<Payload<String>> response = pagedSync.download(pageCall);
+
+        assertThat(response.code()).isEqualTo(HttpURLConnection.HTTP_INTERNAL_ERROR);
+        assertThat(pageCall.downloadedPages).containsExactly(1, 2);
+        assertThat(pageCall.persistedPages).containsExactly(1);
+        verify(databaseAdapter, times(1)).beginNewTransaction();
+        verify(resourceStore).updatePaging(eq(RESOURCE), anyString(), eq(1), eq(serverDate));
+    }
+
+    @Test
+    public void download_shouldResumeAfterLastPersistedPage_ifRequestIsRepeated() throws Exception {
+        pageCall.failingPage = 3;
+        new PagedSync<String>(databaseAdapter, resourceStore,
+                RESOURCE_TYPE, uids, PAGE_SIZE, serverDate).download(pageCall);
+        ArgumentCaptor<String> pagingKey = ArgumentCaptor.forClass(String.class);
+        verify(resourceStore).updatePaging(eq(RESOURCE), pagingKey.capture(), eq(2), eq(serverDate));
+
+        when(resourceStore.getResource(RESOURCE_TYPE)).thenReturn(ResourceModel.builder()
+                .resourceType(RESOURCE)
+                .pagingKey(pagingKey.getValue())
+                .lastPage(2)
+                .pagingStarted(serverDate)
+                .build());
+        FakePageCall repeatedPageCall = new FakePageCall(3);
+        Date laterServerDate = new Date(5000L);
+        PagedSync<String> pagedSync = new PagedSync<>(databaseAdapter, resourceStore,
+                RESOURCE_TYPE, new HashSet<>(uids), PAGE_SIZE, laterServerDate);
+
+        pagedSync.download(repeatedPageCall);
+        pagedSync.complete();
+
+        assertThat(repeatedPageCall.downloadedPages).containsExactly(3);
+        // changes made while the first pages were synced must not be skipped by the next sync
+        verify(resourceStore).update(RESOURCE, serverDate, RESOURCE);
+    }
+
+    @Test
+    public void download_shouldStartOver_ifRequestHasChanged() throws Exception {
+        when(resourceStore.getResource(RESOURCE_TYPE)).thenReturn(ResourceModel.builder()
+                .resourceType(RESOURCE)
+                .pagingKey("paging_key_of_another_request")
+                .lastPage(2)
+                .pagingStarted(serverDate)
+                .build());
+        PagedSync<String> pagedSync = new PagedSync<>(databaseAdapter, resourceStore,
+                RESOURCE_TYPE, uids, PAGE_SIZE, serverDate);
+
+        pagedSync.download(pageCall);
+
+        assertThat(pageCall.downloadedPages).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    public void download_shouldCreateResource_ifItDoesNotExist() throws Exception {
+        when(resourceStore.updatePaging(anyString(), anyString(), anyInt(), any(Date.class))).thenReturn(0);
+        pageCall = new FakePageCall(1);
+
+        new PagedSync<String>(databaseAdapter, resourceStore,
+                RESOURCE_TYPE, uids, PAGE_SIZE, serverDate).download(pageCall);
+
+        verify(resourceStore).insert(RESOURCE, null);
+        verify(resourceStore, times(2)).updatePaging(eq(RESOURCE), anyString(), eq(1), eq(serverDate));
+    }
+
+    @Test
+    public void download_shouldResumeWithinTheChunkOfTheLastPersistedPage() throws Exception {
+        List<FakePageCall> chunks = Arrays.asList(new FakePageCall(2), new FakePageCall(3));
+        chunks.get(1).failingPage = 2;
+        new PagedSync<String>(databaseAdapter, resourceStore,
+                RESOURCE_TYPE, uids, PAGE_SIZE, serverDate).download(chunks);
+        ArgumentCaptor<String> pagingKey = ArgumentCaptor.forClass(String.class);
+        // the first page of each chunk
+        verify(resourceStore, times(2)).updatePaging(eq(RESOURCE), pagingKey.capture(), eq(1), eq(serverDate));
+        assertThat(pagingKey.getAllValues().get(0)).isNotEqualTo(pagingKey.getAllValues().get(1));
+
+        when(resourceStore.getResource(RESOURCE_TYPE)).thenReturn(ResourceModel.builder()
+                .resourceType(RESOURCE)
+                .pagingKey(pagingKey.getAllValues().get(1))
+                .lastPage(1)
+                .pagingStarted(serverDate)
+                .build());
+        List<FakePageCall> repeatedChunks = Arrays.asList(new FakePageCall(2), new FakePageCall(3));
+
+        Response<Payload<String>> response = new PagedSync<String>(databaseAdapter, resourceStore,
+                RESOURCE_TYPE, uids, PAGE_SIZE, serverDate).download(repeatedChunks);
+
+        assertThat(response.isSuccessful()).isTrue();
+        assertThat(repeatedChunks.get(0).downloadedPages).isEmpty();
+        assertThat(repeatedChunks.get(1).downloadedPages).containsExactly(2, 3);
+    }
+
+    @Test
+    public void downloadPages_shouldNotWriteUntilPagesArePersisted() throws Exception {
+        PagedSync<String> pagedSync = new PagedSync<>(databaseAdapter, resourceStore,
+                RESOURCE_TYPE, uids, PAGE_SIZE, serverDate);
+
+        Response<Payload<String>> response = pagedSync.downloadPages(Collections.singletonList(pageCall));
+
+        assertThat(response.isSuccessful()).isTrue();
+        assertThat(response.body().pager().page()).isEqualTo(3);
+        assertThat(pageCall.downloadedPages).containsExactly(1, 2, 3);
+        assertThat(pageCall.persistedPages).isEmpty();
+        verify(databaseAdapter, never()).beginNewTransaction();
+        verify(resourceStore, never()).updatePaging(anyString(), anyString(), anyInt(), any(Date.class));
+
+        pagedSync.persistPages();
+
+        assertThat(pageCall.persistedPages).containsExactly(1, 2, 3);
+        verify(databaseAdapter, times(3)).beginNewTransaction();
+        verify(resourceStore).updatePaging(eq(RESOURCE), anyString(), eq(3), eq(serverDate));
+    }
+
+    @Test
+    public void downloadPages_shouldNotHoldPages_ifAPageFails() throws Exception {
+        pageCall.failingPage = 2;
+        PagedSync<String> pagedSync = new PagedSync<>(databaseAdapter, resourceStore,
+                RESOURCE_TYPE, uids, PAGE_SIZE, serverDate);
+
+        Response<Payload<String>> response = pagedSync.downloadPages(Collections.singletonList(pageCall));
+        pagedSync.persistPages();
+
+        assertThat(response.code()).isEqualTo(HttpURLConnection.HTTP_INTERNAL_ERROR);
+        assertThat(pageCall.persistedPages).isEmpty();
+        verify(databaseAdapter, never()).beginNewTransaction();
+    }
+
+    @Test
+    public void downloadPages_shouldHandEveryPageToTheWriter_asSoonAsItIsDownloaded() throws Exception {
+        final PagedSync<String> pagedSync = new PagedSync<>(databaseAdapter, resourceStore,
+                RESOURCE_TYPE, uids, PAGE_SIZE, serverDate);
+        final DatabaseWriter writer = new DatabaseWriter();
+        final List<Response<Payload<String>>> responses = new ArrayList<>();
+
+        Thread downloader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writer.attach();
+                try {
+                    responses.add(pagedSync.downloadPages(Collections.singletonList(pageCall)));
+                } catch (IOException ioException) {
+                    throw new AssertionError(ioException);
+                } finally {
+                    DatabaseWriter.detach();
+                }
+            }
+        });
+        downloader.start();
+
+        // the downloader waits for every page to be written before it downloads the next one
+        for (int page = 1; page <= 3; page++) {
+            Runnable write = writer.take();
+            assertThat(pageCall.downloadedPages).hasSize(page);
+            assertThat(pageCall.persistedPages).hasSize(page - 1);
+            write.run();
+        }
+        downloader.join();
+
+        assertThat(responses.get(0).isSuccessful()).isTrue();
+        assertThat(pageCall.persistedPages).containsExactly(1, 2, 3);
+        verify(databaseAdapter, times(3)).beginNewTransaction();
+        verify(resourceStore).updatePaging(eq(RESOURCE), anyString(), eq(3), eq(serverDate));
+
+        pagedSync.persistPages();
+        verify(databaseAdapter, times(3)).beginNewTransaction();
+    }
+
+    private static class FakePageCall implements PagedSync.PageCall<Payload<String>> {
+        private final int pageCount;
+        private final List<Integer> downloadedPages = new ArrayList<>();
+        private final List<Integer> persistedPages = new ArrayList<>();
+        private int failingPage;
+
+        FakePageCall(int pageCount) {
+            this.pageCount = pageCount;
+        }
+
+        @NonNull
+        @Override
+        public Response<Payload<String>> download(int page, int pageSize) throws IOException {
+            downloadedPages.add(page);
+            if (page == failingPage) {
+                return Response.error(HttpURLConnection.HTTP_INTERNAL_ERROR,
+                        ResponseBody.create(MediaType.parse("application/json"), "{}"));
+            }
+            Pager pager = new Pager(page, pageCount, pageSize, pageCount * pageSize);
+            return Response.success(Payload.create(pager, Collections.singletonList("item" + page)));
+        }
+
+        @Override
+        public Pager persist(@NonNull Payload<String> page) throws IOException {
+            persistedPages.add(page.pager().page());
+            return page.pager();
+        }
+    }
+}
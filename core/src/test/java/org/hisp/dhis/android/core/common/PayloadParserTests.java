@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.common;
+
+import android.support.annotation.NonNull;
+
+import org.hisp.dhis.android.core.Inject;
+import org.hisp.dhis.android.core.program.Program;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import okio.Buffer;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.fail;
+
+@RunWith(JUnit4.class)
+public class PayloadParserTests {
+    private PayloadParser<Program> payloadParser;
+    private List<String> handledUids;
+    private PayloadParser.ItemHandler<Program> itemHandler;
+
+    @Before
+    public void setUp() {
+        payloadParser = new PayloadParser<>(Inject.objectMapper(), Program.class);
+        handledUids = new ArrayList<>();
+        itemHandler = new PayloadParser.ItemHandler<Program>() {
+            @Override
+            public void handle(@NonNull Program program) {
+                handledUids.add(program.uid());
+            }
+        };
+    }
+
+    @Test
+    public void parse_shouldHandItemsToHandlerInOrder() throws IOException {
+        Pager pager = payloadParser.parse(source("{\n" +
+                "    \"pager\": {\"page\": 2, \"pageCount\": 3, \"pageSize\": 50, \"total\": 120},\n" +
+                "    \"programs\": [\n" +
+                "        {\"id\": \"IpHINAT79UW\", \"unknownProperty\": {\"nested\": [1, 2]}},\n" +
+                "        {\"id\": \"eBAyeGv0exc\"}\n" +
+                "    ]\n" +
+                "}"), itemHandler);
+
+        assertThat(handledUids).containsExactly("IpHINAT79UW", "eBAyeGv0exc");
+        assertThat(pager.page()).isEqualTo(2);
+        assertThat(pager.pageCount()).isEqualTo(3);
+        assertThat(pager.pageSize()).isEqualTo(50);
+        assertThat(pager.total()).isEqualTo(120);
+    }
+
+    @Test
+    public void parse_shouldReturnNullPager_ifPayloadIsNotPaged() throws IOException {
+        Pager pager = payloadParser.parse(source("{\"programs\": [{\"id\": \"IpHINAT79UW\"}]}"), itemHandler);
+
+        assertThat(handledUids).containsExactly("IpHINAT79UW");
+        assertThat(pager).isNull();
+    }
+
+    @Test
+    public void parse_shouldSkipNullItems() throws IOException {
+        payloadParser.parse(source("{\"programs\": [null, {\"id\": \"IpHINAT79UW\"}]}"), itemHandler);
+
+        assertThat(handledUids).containsExactly("IpHINAT79UW");
+    }
+
+    @Test
+    public void parse_shouldFail_ifPayloadIsNotAnObject() {
+        try {
+            payloadParser.parse(source("[{\"id\": \"IpHINAT79UW\"}]"), itemHandler);
+            fail("IOException was expected but nothing was thrown");
+        } catch (IOException ioException) {
+            // swallow exception
+        }
+
+        assertThat(handledUids).isEmpty();
+    }
+
+    private static Buffer source(String json) {
+        return new Buffer().writeUtf8(json);
+    }
+}
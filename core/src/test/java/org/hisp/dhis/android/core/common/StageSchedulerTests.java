@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.common;
+
+import android.support.annotation.NonNull;
+
+import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Transaction;
+import org.hisp.dhis.android.core.resource.ResourceModel;
+import org.hisp.dhis.android.core.resource.ResourceStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.net.ssl.HttpsURLConnection;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import retrofit2.Response;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(JUnit4.class)
+public class StageSchedulerTests {
+
+    @Mock
+    private DatabaseAdapter databaseAdapter;
+
+    @Mock
+    private Transaction transaction;
+
+    @Mock
+    private SyncCall<String> firstCall;
+
+    @Mock
+    private SyncCall<String> secondCall;
+
+    @Mock
+    private ResourceStore resourceStore;
+
+    private ExecutorService executor;
+
+    private StageScheduler stageScheduler;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+
+        executor = Executors.newFixedThreadPool(2);
+        stageScheduler = new StageScheduler(executor);
+
+        when(databaseAdapter.beginNewTransaction()).thenReturn(transaction);
+        when(firstCall.download()).thenReturn(Response.success("first"));
+        when(secondCall.download()).thenReturn(Response.success("second"));
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void execute_shouldPassDependencyResponses_andPersistInDeclarationOrder() throws Exception {
+        stageScheduler
+                .stage("first", new StageScheduler.Stage() {
+                    @NonNull
+                    @Override
+                    public SyncCall<?> create(@NonNull Map<String, Response> dependencies) {
+                        assertThat(dependencies).isEmpty();
+                        return firstCall;
+                    }
+                })
+                .stage("second", new StageScheduler.Stage() {
+                    @NonNull
+                    @Override
+                    public SyncCall<?> create(@NonNull Map<String, Response> dependencies) {
+                        assertThat(dependencies.get("first").body()).isEqualTo("first");
+                        return secondCall;
+                    }
+                }, "first");
+
+        Response response = stageScheduler.execute(databaseAdapter);
+
+        assertThat(response.body()).isEqualTo("second");
+
+        InOrder inOrder = inOrder(firstCall, secondCall, databaseAdapter, transaction);
+        inOrder.verify(firstCall).download();
+        inOrder.verify(secondCall).download();
+        inOrder.verify(databaseAdapter).beginNewTransaction();
+        inOrder.verify(firstCall).persist(any(Response.class));
+        inOrder.verify(secondCall).persist(any(Response.class));
+        inOrder.verify(transaction).setSuccessful();
+        inOrder.verify(transaction).end();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void execute_shouldNotPersist_ifDownloadFails() throws Exception {
+        Response<String> errorResponse = Response.error(HttpsURLConnection.HTTP_CLIENT_TIMEOUT,
+                ResponseBody.create(MediaType.parse("application/json"), "{}"));
+        when(secondCall.download()).thenReturn(errorResponse);
+
+        stageScheduler
+                .stage("first", stage(firstCall))
+                .stage("second", stage(secondCall));
+
+        Response response = stageScheduler.execute(databaseAdapter);
+
+        assertThat(response).isEqualTo(errorResponse);
+        verify(databaseAdapter, never()).beginNewTransaction();
+        verify(firstCall, never()).persist(any(Response.class));
+        verify(secondCall, never()).persist(any(Response.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void executeWithCheckpoint_shouldSkipCompletedStages_andCommitEachStage() throws Exception {
+        when(resourceStore.getResource(ResourceModel.Type.METADATA)).thenReturn(ResourceModel.builder()
+                .resourceType(ResourceModel.Type.METADATA.name())
+                .pagingKey("first")
+                .lastPage(1)
+                .pagingStarted(new Date())
+                .build());
+        when(resourceStore.updatePaging(anyString(), anyString(), anyInt(), any(Date.class))).thenReturn(1);
+        when(resourceStore.update(anyString(), any(Date.class), anyString())).thenReturn(1);
+        SyncCheckpoint checkpoint = new SyncCheckpoint(resourceStore, new Date(),
+                new HashSet<>(Arrays.asList("first", "second")));
+
+        stageScheduler
+                .stage("first", stage(firstCall))
+                .stage("second", new StageScheduler.Stage() {
+                    @NonNull
+                    @Override
+                    public SyncCall<?> create(@NonNull Map<String, Response> dependencies) {
+                        assertThat(dependencies).isEmpty();
+                        return secondCall;
+                    }
+                }, "first");
+
+        Response response = stageScheduler.execute(databaseAdapter, checkpoint);
+
+        assertThat(response.body()).isEqualTo("second");
+        verify(firstCall, never()).download();
+
+        InOrder inOrder = inOrder(secondCall, resourceStore, transaction);
+        inOrder.verify(secondCall).persist(any(Response.class));
+        inOrder.verify(resourceStore).updatePaging(anyString(), eq("first,second"), eq(2), any(Date.class));
+        inOrder.verify(transaction).setSuccessful();
+        inOrder.verify(transaction).end();
+        inOrder.verify(resourceStore).update(anyString(), any(Date.class), anyString());
+        inOrder.verify(transaction).setSuccessful();
+        inOrder.verify(transaction).end();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void executeWithCheckpoint_shouldKeepCommittedStages_ifDownloadFails() throws Exception {
+        Response<String> errorResponse = Response.error(HttpsURLConnection.HTTP_CLIENT_TIMEOUT,
+                ResponseBody.create(MediaType.parse("application/json"), "{}"));
+        when(secondCall.download()).thenReturn(errorResponse);
+        when(resourceStore.updatePaging(anyString(), anyString(), anyInt(), any(Date.class))).thenReturn(1);
+        SyncCheckpoint checkpoint = new SyncCheckpoint(resourceStore, new Date(),
+                new HashSet<>(Arrays.asList("first", "second")));
+
+        stageScheduler
+                .stage("first", stage(firstCall))
+                .stage("second", stage(secondCall), "first");
+
+        Response response = stageScheduler.execute(databaseAdapter, checkpoint);
+
+        assertThat(response).isEqualTo(errorResponse);
+        verify(firstCall).persist(any(Response.class));
+        verify(resourceStore).updatePaging(anyString(), eq("first"), eq(1), any(Date.class));
+        verify(transaction).setSuccessful();
+        verify(secondCall, never()).persist(any(Response.class));
+        verify(resourceStore, never()).update(anyString(), any(Date.class), anyString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void execute_shouldReportMetricsOfEveryStage_inDeclarationOrder() throws Exception {
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                StageMetricsRecorder.current().recordInserted(2);
+                return null;
+            }
+        }).when(secondCall).persist(any(Response.class));
+        final List<StageMetrics> metrics = new ArrayList<>();
+
+        stageScheduler
+                .stage("first", stage(firstCall))
+                .stage("second", stage(secondCall), "first")
+                .listener(new StageListener() {
+                    @Override
+                    public void onStageCompleted(@NonNull StageMetrics stageMetrics) {
+                        metrics.add(stageMetrics);
+                    }
+                });
+
+        stageScheduler.execute(databaseAdapter);
+
+        assertThat(metrics).hasSize(2);
+        assertThat(metrics.get(0).stage()).isEqualTo("first");
+        assertThat(metrics.get(0).rowsInserted()).isEqualTo(0);
+        assertThat(metrics.get(1).stage()).isEqualTo("second");
+        assertThat(metrics.get(1).rowsInserted()).isEqualTo(2);
+        // persisting is done, so the thread doesn't record for any stage anymore
+        assertThat(StageMetricsRecorder.current()).isNull();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void execute_shouldRunWritesOfDownloads_onCallingThread_beforeTheStagesArePersisted() throws Exception {
+        final Thread callingThread = Thread.currentThread();
+        final List<Thread> writeThreads = new ArrayList<>();
+        final List<StageMetricsRecorder> writeRecorders = new ArrayList<>();
+        when(firstCall.download()).then(new Answer<Response<String>>() {
+            @Override
+            public Response<String> answer(InvocationOnMock invocation) throws Throwable {
+                assertThat(Thread.currentThread()).isNotEqualTo(callingThread);
+                for (int page = 0; page < 2; page++) {
+                    DatabaseWriter.current().write(new Callable<Void>() {
+                        @Override
+                        public Void call() {
+                            writeThreads.add(Thread.currentThread());
+                            writeRecorders.add(StageMetricsRecorder.current());
+                            // the stages are persisted in a transaction which is only begun after the downloads
+                            verify(databaseAdapter, never()).beginNewTransaction();
+                            return null;
+                        }
+                    });
+                }
+                // both writes are done once they have been handed over
+                assertThat(writeThreads).hasSize(2);
+                return Response.success("first");
+            }
+        });
+
+        stageScheduler
+                .stage("first", stage(firstCall))
+                .stage("second", stage(secondCall), "first");
+
+        stageScheduler.execute(databaseAdapter);
+
+        assertThat(writeThreads).containsExactly(callingThread, callingThread);
+        assertThat(writeRecorders.get(0)).isNotNull();
+        assertThat(writeRecorders.get(0).metrics().stage()).isEqualTo("first");
+        // the calling thread only writes on behalf of a stage while it runs its writes
+        assertThat(StageMetricsRecorder.current()).isNull();
+        assertThat(DatabaseWriter.current()).isNull();
+        verify(firstCall).persist(any(Response.class));
+    }
+
+    @Test
+    public void stage_shouldThrowException_onUndeclaredDependency() {
+        try {
+            stageScheduler.stage("second", stage(secondCall), "first");
+            fail("IllegalArgumentException was expected but nothing was thrown");
+        } catch (IllegalArgumentException illegalArgumentException) {
+            // swallow exception
+        }
+    }
+
+    private static StageScheduler.Stage stage(final SyncCall<?> call) {
+        return new StageScheduler.Stage() {
+            @NonNull
+            @Override
+            public SyncCall<?> create(@NonNull Map<String, Response> dependencies) {
+                return call;
+            }
+        };
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hisp.dhis.android.core.common;
+
+import org.hisp.dhis.android.core.resource.ResourceModel;
+import org.hisp.dhis.android.core.resource.ResourceStore;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(JUnit4.class)
+public class SyncCheckpointTests {
+    private static final ResourceModel.Type RESOURCE_TYPE = ResourceModel.Type.METADATA;
+    private static final String RESOURCE = RESOURCE_TYPE.name();
+
+    @Mock
+    private ResourceStore resourceStore;
+
+    private Set<String> resumableStages;
+    private Date started;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+
+        resumableStages = new HashSet<>(Arrays.asList("program", "optionSet"));
+        started = new Date(1000L);
+
+        when(resourceStore.updatePaging(anyString(), anyString(), anyInt(), any(Date.class))).thenReturn(1);
+    }
+
+    @Test
+    public void isCompleted_shouldReturnStoredStages_ifCheckpointIsRecent() {
+        storeCheckpoint("program,user");
+
+        SyncCheckpoint checkpoint = new SyncCheckpoint(resourceStore,
+                new Date(started.getTime() + SyncCheckpoint.MAX_AGE_MILLIS), resumableStages);
+
+        assertThat(checkpoint.isCompleted("program")).isTrue();
+        // only resumable stages are ever skipped
+        assertThat(checkpoint.isCompleted("user")).isFalse();
+        assertThat(checkpoint.isCompleted("optionSet")).isFalse();
+    }
+
+    @Test
+    public void isCompleted_shouldIgnoreStaleCheckpoint() {
+        storeCheckpoint("program");
+
+        SyncCheckpoint checkpoint = new SyncCheckpoint(resourceStore,
+                new Date(started.getTime() + SyncCheckpoint.MAX_AGE_MILLIS + 1), resumableStages);
+
+        assertThat(checkpoint.isCompleted("program")).isFalse();
+    }
+
+    @Test
+    public void complete_shouldRecordResumableStages() {
+        storeCheckpoint("program");
+        SyncCheckpoint checkpoint = new SyncCheckpoint(resourceStore, new Date(5000L), resumableStages);
+
+        checkpoint.complete("user");
+        checkpoint.complete("optionSet");
+
+        verify(resourceStore, times(1)).updatePaging(anyString(), anyString(), anyInt(), any(Date.class));
+        verify(resourceStore).updatePaging(RESOURCE, "program,optionSet", 2, started);
+        assertThat(checkpoint.isCompleted("optionSet")).isTrue();
+    }
+
+    @Test
+    public void finish_shouldRecordStartOfInterruptedSync() {
+        storeCheckpoint("program");
+        SyncCheckpoint checkpoint = new SyncCheckpoint(resourceStore, new Date(5000L), resumableStages);
+
+        checkpoint.finish();
+
+        // changes made while the first stages were synced must not be skipped by the next sync
+        verify(resourceStore).update(RESOURCE, started, RESOURCE);
+        assertThat(checkpoint.isCompleted("program")).isFalse();
+    }
+
+    @Test
+    public void finish_shouldRecordStartOfSync_ifThereIsNoCheckpoint() {
+        Date now = new Date(5000L);
+        SyncCheckpoint checkpoint = new SyncCheckpoint(resourceStore, now, resumableStages);
+
+        checkpoint.finish();
+
+        verify(resourceStore).update(RESOURCE, now, RESOURCE);
+        verify(resourceStore).insert(RESOURCE, now);
+    }
+
+    private void storeCheckpoint(String completedStages) {
+        when(resourceStore.getResource(RESOURCE_TYPE)).thenReturn(ResourceModel.builder()
+                .resourceType(RESOURCE)
+                .pagingKey(completedStages)
+                .lastPage(1)
+                .pagingStarted(started)
+                .build());
+    }
+}
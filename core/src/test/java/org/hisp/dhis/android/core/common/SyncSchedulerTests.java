@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.common;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.net.HttpURLConnection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import retrofit2.Response;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(JUnit4.class)
+public class SyncSchedulerTests {
+    private static final long MIN_INTERVAL = 1000L;
+    private static final long MAX_INTERVAL = 8000L;
+    private static final long INITIAL_BACKOFF = 100L;
+    private static final long MAX_BACKOFF = 400L;
+    private static final long BATCHING_WINDOW = 50L;
+
+    @Mock
+    private Callable<Response> metadataSync;
+
+    @Mock
+    private Callable<Response> dataSync;
+
+    @Mock
+    private ScheduledExecutorService executor;
+
+    private FakeClock clock;
+
+    private SyncScheduler syncScheduler;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+
+        clock = new FakeClock();
+        syncScheduler = new SyncScheduler.Builder()
+                .clock(clock)
+                .metadataSync(metadataSync)
+                .dataSync(dataSync)
+                .interval(MIN_INTERVAL, MAX_INTERVAL)
+                .backoff(INITIAL_BACKOFF, MAX_BACKOFF)
+                .batchingWindow(BATCHING_WINDOW)
+                .build();
+
+        when(metadataSync.call()).thenReturn(Response.success(null));
+        when(dataSync.call()).thenReturn(Response.success(null));
+    }
+
+    @Test
+    public void runDue_shouldSyncMetadataBeforeData_initially() throws Exception {
+        long nextRunTime = syncScheduler.runDue();
+
+        InOrder inOrder = inOrder(metadataSync, dataSync);
+        inOrder.verify(metadataSync).call();
+        inOrder.verify(dataSync).call();
+
+        // nothing has changed, so the interval is doubled
+        assertThat(nextRunTime).isEqualTo(2 * MIN_INTERVAL);
+    }
+
+    @Test
+    public void runDue_shouldNotSync_beforeSyncsAreDue() throws Exception {
+        syncScheduler.runDue();
+        clock.now = 2 * MIN_INTERVAL - 1;
+
+        syncScheduler.runDue();
+
+        verify(metadataSync, times(1)).call();
+        verify(dataSync, times(1)).call();
+    }
+
+    @Test
+    public void runDue_shouldGrowIntervalUpToMaximum_ifNothingChanges() throws Exception {
+        long lastRunTime = 0;
+        for (int i = 0; i < 5; i++) {
+            lastRunTime = clock.now;
+            clock.now = syncScheduler.runDue();
+        }
+
+        // 2, 4, 8, 8 and 8 times the minimum interval
+        assertThat(clock.now).isEqualTo(30 * MIN_INTERVAL);
+        assertThat(clock.now - lastRunTime).isEqualTo(MAX_INTERVAL);
+    }
+
+    @Test
+    public void runDue_shouldShrinkInterval_ifStagesChangeRows() throws Exception {
+        clock.now = syncScheduler.runDue();
+        clock.now = syncScheduler.runDue();
+        when(metadataSync.call()).thenAnswer(new Answer<Response>() {
+            @Override
+            public Response answer(InvocationOnMock invocation) throws Throwable {
+                syncScheduler.onStageCompleted(metrics(3));
+                return Response.success(null);
+            }
+        });
+
+        syncScheduler.runDue();
+        clock.now = syncScheduler.nextRunTime();
+
+        // the interval of the metadata sync has been halved, the one of the data sync doubled
+        assertThat(clock.now).isEqualTo(6 * MIN_INTERVAL + 2 * MIN_INTERVAL);
+        syncScheduler.runDue();
+        verify(metadataSync, times(4)).call();
+        verify(dataSync, times(3)).call();
+    }
+
+    @Test
+    public void runDue_shouldShrinkInterval_ifRowsAreWrittenOutsideOfStages() throws Exception {
+        clock.now = syncScheduler.runDue();
+        when(dataSync.call()).thenAnswer(new Answer<Response>() {
+            @Override
+            public Response answer(InvocationOnMock invocation) throws Throwable {
+                // like the metrics database adapter does for every write
+                StageMetricsRecorder.current().recordInserted(1);
+                return Response.success(null);
+            }
+        });
+
+        syncScheduler.runDue();
+        clock.now = syncScheduler.nextRunTime();
+
+        // the interval of the data sync is back to the minimum
+        assertThat(clock.now).isEqualTo(3 * MIN_INTERVAL);
+        syncScheduler.runDue();
+        verify(metadataSync, times(2)).call();
+        verify(dataSync, times(3)).call();
+        assertThat(StageMetricsRecorder.current()).isNull();
+    }
+
+    @Test
+    public void runDue_shouldBackOffExponentially_onFailure() throws Exception {
+        when(metadataSync.call()).thenReturn(Response.error(HttpURLConnection.HTTP_INTERNAL_ERROR,
+                ResponseBody.create(MediaType.parse("application/json"), "{}")));
+        clock.now = syncScheduler.runDue();
+        assertThat(clock.now).isEqualTo(INITIAL_BACKOFF);
+
+        clock.now = syncScheduler.runDue();
+        assertThat(clock.now).isEqualTo(INITIAL_BACKOFF + 2 * INITIAL_BACKOFF);
+
+        clock.now = syncScheduler.runDue();
+        assertThat(clock.now).isEqualTo(INITIAL_BACKOFF + 2 * INITIAL_BACKOFF + MAX_BACKOFF);
+
+        clock.now = syncScheduler.runDue();
+        assertThat(clock.now).isEqualTo(INITIAL_BACKOFF + 2 * INITIAL_BACKOFF + 2 * MAX_BACKOFF);
+
+        // a successful sync resets the backoff, and the interval is the one before the failures
+        when(metadataSync.call()).thenReturn(Response.success(null));
+        long metadataRunTime = clock.now;
+        clock.now = syncScheduler.runDue();
+
+        // the data sync is not held back by the failures of the metadata sync
+        assertThat(clock.now).isEqualTo(2 * MIN_INTERVAL);
+        assertThat(syncScheduler.runDue()).isEqualTo(metadataRunTime + 2 * MIN_INTERVAL);
+        verify(dataSync, times(2)).call();
+    }
+
+    @Test
+    public void runDue_shouldBackOff_ifSyncThrows() throws Exception {
+        when(dataSync.call()).thenThrow(new IllegalStateException());
+
+        long nextRunTime = syncScheduler.runDue();
+
+        assertThat(nextRunTime).isEqualTo(INITIAL_BACKOFF);
+        verify(metadataSync).call();
+    }
+
+    @Test
+    public void request_shouldCoalesceRequestsWithinBatchingWindow() throws Exception {
+        syncScheduler.runDue();
+        clock.now = 10L;
+
+        syncScheduler.requestDataSync();
+        clock.now = 30L;
+        syncScheduler.requestDataSync();
+
+        assertThat(syncScheduler.nextRunTime()).isEqualTo(10L + BATCHING_WINDOW);
+        clock.now = 10L + BATCHING_WINDOW;
+        syncScheduler.runDue();
+        syncScheduler.runDue();
+
+        verify(dataSync, times(2)).call();
+        verify(metadataSync, times(1)).call();
+    }
+
+    @Test
+    public void runDue_shouldRunSyncsDueWithinBatchingWindowTogether() throws Exception {
+        syncScheduler.runDue();
+        syncScheduler.requestMetadataSync();
+        clock.now = BATCHING_WINDOW / 2;
+        syncScheduler.requestDataSync();
+
+        clock.now = BATCHING_WINDOW;
+        syncScheduler.runDue();
+
+        verify(metadataSync, times(2)).call();
+        verify(dataSync, times(2)).call();
+    }
+
+    @Test
+    public void request_shouldNotCutBackoffShort() throws Exception {
+        when(metadataSync.call()).thenThrow(new IllegalStateException());
+        syncScheduler.runDue();
+
+        syncScheduler.requestMetadataSync();
+
+        assertThat(syncScheduler.nextRunTime()).isEqualTo(INITIAL_BACKOFF);
+    }
+
+    @Test
+    public void start_shouldScheduleRunOnExecutor() throws Exception {
+        syncScheduler.runDue();
+        clock.now = 500L;
+
+        syncScheduler.start(executor);
+
+        verify(executor).schedule(any(Runnable.class), eq(2 * MIN_INTERVAL - 500L), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void request_shouldRescheduleRunOnExecutor() throws Exception {
+        syncScheduler.runDue();
+        syncScheduler.start(executor);
+
+        syncScheduler.requestDataSync();
+        syncScheduler.stop();
+        syncScheduler.requestMetadataSync();
+
+        verify(executor).schedule(any(Runnable.class), eq(2 * MIN_INTERVAL), eq(TimeUnit.MILLISECONDS));
+        verify(executor).schedule(any(Runnable.class), eq(BATCHING_WINDOW), eq(TimeUnit.MILLISECONDS));
+        verify(executor, never()).schedule(any(Runnable.class), eq(0L), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void build_shouldThrow_withoutSyncs() {
+        new SyncScheduler.Builder().build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void build_shouldThrow_ifMaximumIntervalIsBelowMinimum() {
+        new SyncScheduler.Builder()
+                .metadataSync(metadataSync)
+                .interval(MAX_INTERVAL, MIN_INTERVAL)
+                .build();
+    }
+
+    private static StageMetrics metrics(long rowsUpdated) {
+        return StageMetrics.builder()
+                .stage(MetadataCall.PROGRAM)
+                .requests(1)
+                .requestMillis(0)
+                .responseBytes(0)
+                .downloadMillis(0)
+                .parseMillis(0)
+                .handlerMillis(0)
+                .commitMillis(0)
+                .rowsInserted(0)
+                .rowsUpdated(rowsUpdated)
+                .rowsDeleted(0)
+                .build();
+    }
+
+    private static class FakeClock implements SyncScheduler.Clock {
+        long now;
+
+        @Override
+        public long currentTimeMillis() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hisp.dhis.android.core.common;
+
+import android.support.annotation.NonNull;
+
+import org.hisp.dhis.android.core.data.api.ConditionalCacheInterceptor;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import retrofit2.Response;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(JUnit4.class)
+public class UidChunksTests {
+
+    @Test
+    public void split_shouldKeepEveryChunkWithinMaxLength() {
+        Set<String> uids = new HashSet<>(Arrays.asList("uid5", "uid4", "uid3", "uid2", "uid1"));
+
+        List<Set<String>> chunks = UidChunks.split(uids, 10);
+
+        assertThat(chunks).hasSize(3);
+        assertThat(chunks.get(0)).containsExactly("uid1", "uid2");
+        assertThat(chunks.get(1)).containsExactly("uid3", "uid4");
+        assertThat(chunks.get(2)).containsExactly("uid5");
+    }
+
+    @Test
+    public void split_shouldReturnSingleChunk_ifUidsFit() {
+        Set<String> uids = new HashSet<>(Arrays.asList("uid1", "uid2"));
+
+        assertThat(UidChunks.split(uids, UidChunks.MAX_FILTER_LENGTH)).containsExactly(uids);
+        assertThat(UidChunks.split(Collections.<String>emptySet(), 10)).hasSize(1);
+    }
+
+    @Test
+    public void download_shouldMergeTheItemsOfAllChunks() throws Exception {
+        final Set<String> uids = uids(Call.MAX_UIDS * 3);
+        final List<Set<String>> requestedChunks = Collections.synchronizedList(new ArrayList<Set<String>>());
+
+        Response<Payload<String>> response = UidChunks.download(uids, new UidChunks.ChunkCall<Payload<String>>() {
+            @NonNull
+            @Override
+            public Response<Payload<String>> download(@NonNull Set<String> chunk) {
+                requestedChunks.add(chunk);
+                return Response.success(Payload.create(null, new ArrayList<>(chunk)));
+            }
+        });
+
+        assertThat(requestedChunks).hasSize(3);
+        assertThat(response.isSuccessful()).isTrue();
+        assertThat(response.body().items()).hasSize(uids.size());
+        assertThat(new HashSet<>(response.body().items())).isEqualTo(uids);
+    }
+
+    @Test
+    public void downloadAll_shouldDownloadChunksConcurrently_upToTheLimit() throws Exception {
+        final int maxConcurrency = 2;
+        final CountDownLatch started = new CountDownLatch(maxConcurrency);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+
+        Response<List<Integer>> response = UidChunks.downloadAll(UidChunks.split(uids(5), 1),
+                new UidChunks.ChunkCall<Integer>() {
+                    @NonNull
+                    @Override
+                    public Response<Integer> download(@NonNull Set<String> chunk) throws IOException {
+                        int current = running.incrementAndGet();
+                        maxRunning.set(Math.max(maxRunning.get(), current));
+                        started.countDown();
+                        try {
+                            // only returns in time if the chunks are downloaded in parallel
+                            started.await(5, TimeUnit.SECONDS);
+                        } catch (InterruptedException interruptedException) {
+                            throw new IOException(interruptedException);
+                        } finally {
+                            running.decrementAndGet();
+                        }
+                        return Response.success(chunk.size());
+                    }
+                }, maxConcurrency);
+
+        assertThat(response.body()).containsExactly(1, 1, 1, 1, 1);
+        assertThat(maxRunning.get()).isEqualTo(maxConcurrency);
+    }
+
+    @Test
+    public void download_shouldReturnFailure_ifAnyChunkFails() throws Exception {
+        Set<String> uids = uids(Call.MAX_UIDS * 2);
+        final String failingUid = UidChunks.split(uids, UidChunks.MAX_FILTER_LENGTH).get(1).iterator().next();
+
+        Response<Payload<String>> response = UidChunks.download(uids, new UidChunks.ChunkCall<Payload<String>>() {
+            @NonNull
+            @Override
+            public Response<Payload<String>> download(@NonNull Set<String> chunk) {
+                if (chunk.contains(failingUid)) {
+                    return Response.error(HttpURLConnection.HTTP_INTERNAL_ERROR,
+                            ResponseBody.create(MediaType.parse("application/json"), "{}"));
+                }
+                return Response.success(Payload.create(null, new ArrayList<>(chunk)));
+            }
+        });
+
+        assertThat(response.code()).isEqualTo(HttpURLConnection.HTTP_INTERNAL_ERROR);
+    }
+
+    @Test
+    public void downloadAll_shouldOnlyBeNotModified_ifEveryChunkIsNotModified() throws Exception {
+        final Set<String> modifiedChunk = UidChunks.split(uids(3), 1).get(1);
+
+        Response<List<Set<String>>> response = UidChunks.downloadAll(UidChunks.split(uids(3), 1),
+                new UidChunks.ChunkCall<Set<String>>() {
+                    @NonNull
+                    @Override
+                    public Response<Set<String>> download(@NonNull Set<String> chunk) {
+                        return Response.success(chunk, raw(chunk.equals(modifiedChunk)
+                                ? HttpURLConnection.HTTP_OK : HttpURLConnection.HTTP_NOT_MODIFIED));
+                    }
+                }, UidChunks.MAX_CONCURRENT_CHUNKS);
+
+        assertThat(response.body()).hasSize(3);
+        assertThat(ConditionalCacheInterceptor.isNotModified(response)).isFalse();
+    }
+
+    @Test
+    public void downloadAll_shouldBeNotModified_ifNoChunkIsModified() throws Exception {
+        Response<List<Set<String>>> response = UidChunks.downloadAll(UidChunks.split(uids(3), 1),
+                new UidChunks.ChunkCall<Set<String>>() {
+                    @NonNull
+                    @Override
+                    public Response<Set<String>> download(@NonNull Set<String> chunk) {
+                        return Response.success(chunk, raw(HttpURLConnection.HTTP_NOT_MODIFIED));
+                    }
+                }, UidChunks.MAX_CONCURRENT_CHUNKS);
+
+        assertThat(ConditionalCacheInterceptor.isNotModified(response)).isTrue();
+    }
+
+    private static okhttp3.Response raw(int networkCode) {
+        Request request = new Request.Builder().url("http://localhost/api/programs").build();
+        okhttp3.Response cacheResponse = new okhttp3.Response.Builder()
+                .request(request).protocol(Protocol.HTTP_1_1).code(HttpURLConnection.HTTP_OK).build();
+        okhttp3.Response networkResponse = new okhttp3.Response.Builder()
+                .request(request).protocol(Protocol.HTTP_1_1).code(networkCode).build();
+        return new okhttp3.Response.Builder()
+                .request(request).protocol(Protocol.HTTP_1_1).code(HttpURLConnection.HTTP_OK)
+                .cacheResponse(networkCode == HttpURLConnection.HTTP_NOT_MODIFIED ? cacheResponse : null)
+                .networkResponse(networkResponse)
+                .build();
+    }
+
+    private static Set<String> uids(int count) {
+        Set<String> uids = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            uids.add(String.format("uid%08d", i));
+        }
+        return uids;
+    }
+}
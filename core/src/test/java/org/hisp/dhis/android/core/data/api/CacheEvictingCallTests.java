@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hisp.dhis.android.core.data.api;
+
+import org.hisp.dhis.android.core.common.Call;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+
+import okhttp3.Cache;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import retrofit2.Response;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.fail;
+import static org.mockito.Mockito.when;
+
+@RunWith(JUnit4.class)
+public class CacheEvictingCallTests {
+
+    @Mock
+    private Call<Response> call;
+
+    private MockWebServer server;
+    private Cache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        MockitoAnnotations.initMocks(this);
+
+        server = new MockWebServer();
+        server.start();
+
+        File cacheDirectory = File.createTempFile("cache", "");
+        assertThat(cacheDirectory.delete()).isTrue();
+        cache = new Cache(cacheDirectory, 1024 * 1024);
+
+        // fill the cache with a single response
+        server.enqueue(new MockResponse().setHeader("ETag", "\"8a1f3c\"").setBody("{}"));
+        OkHttpClient client = new OkHttpClient.Builder()
+                .cache(cache)
+                .addNetworkInterceptor(new ConditionalCacheInterceptor())
+                .build();
+        client.newCall(new Request.Builder().url(server.url("/api/me")).build()).execute().body().close();
+        assertThat(cache.urls().hasNext()).isTrue();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+        cache.delete();
+    }
+
+    @Test
+    public void call_shouldKeepCache_ifCallSucceeds() throws Exception {
+        Response response = Response.success("{}");
+        when(call.call()).thenReturn(response);
+
+        assertThat(new CacheEvictingCall(call, cache).call()).isSameAs(response);
+        assertThat(cache.urls().hasNext()).isTrue();
+    }
+
+    @Test
+    public void call_shouldEvictCache_ifCallIsNotSuccessful() throws Exception {
+        Response response = Response.error(HttpURLConnection.HTTP_INTERNAL_ERROR,
+                ResponseBody.create(MediaType.parse("application/json"), "{}"));
+        when(call.call()).thenReturn(response);
+
+        assertThat(new CacheEvictingCall(call, cache).call()).isSameAs(response);
+        assertThat(cache.urls().hasNext()).isFalse();
+    }
+
+    @Test
+    public void call_shouldEvictCache_ifCallThrows() throws Exception {
+        when(call.call()).thenThrow(new IllegalStateException("constraint failed"));
+
+        try {
+            new CacheEvictingCall(call, cache).call();
+            fail("IllegalStateException was expected but nothing was thrown");
+        } catch (IllegalStateException illegalStateException) {
+            // swallow exception
+        }
+
+        assertThat(cache.urls().hasNext()).isFalse();
+    }
+}
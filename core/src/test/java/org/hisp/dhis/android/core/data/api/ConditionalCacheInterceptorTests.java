@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hisp.dhis.android.core.data.api;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(JUnit4.class)
+public class ConditionalCacheInterceptorTests {
+    private static final String ETAG = "\"8a1f3c\"";
+    private static final String LAST_MODIFIED = "Mon, 02 Oct 2017 10:00:00 GMT";
+
+    private MockWebServer server;
+    private File cacheDirectory;
+    private Cache cache;
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+
+        cacheDirectory = File.createTempFile("cache", "");
+        assertThat(cacheDirectory.delete()).isTrue();
+        cache = new Cache(cacheDirectory, 1024 * 1024);
+        client = new OkHttpClient.Builder()
+                .cache(cache)
+                .addNetworkInterceptor(new ConditionalCacheInterceptor())
+                .build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+        cache.delete();
+    }
+
+    @Test
+    public void intercept_shouldRevalidateResponseWithETag_evenIfServerForbidsStoringIt() throws Exception {
+        server.enqueue(new MockResponse().setHeader("ETag", ETAG)
+                .setHeader("Cache-Control", "no-store").setBody("{\"programs\": []}"));
+        server.enqueue(new MockResponse().setResponseCode(HttpURLConnection.HTTP_NOT_MODIFIED)
+                .setHeader("ETag", ETAG));
+
+        Response first = execute();
+        assertThat(first.body().string()).isEqualTo("{\"programs\": []}");
+        assertThat(ConditionalCacheInterceptor.isNotModified(first)).isFalse();
+
+        Response second = execute();
+        assertThat(second.code()).isEqualTo(HttpURLConnection.HTTP_OK);
+        assertThat(second.body().string()).isEqualTo("{\"programs\": []}");
+        assertThat(ConditionalCacheInterceptor.isNotModified(second)).isTrue();
+
+        server.takeRequest();
+        RecordedRequest conditionalRequest = server.takeRequest();
+        assertThat(conditionalRequest.getHeader("If-None-Match")).isEqualTo(ETAG);
+    }
+
+    @Test
+    public void intercept_shouldRevalidateResponseWithLastModified() throws Exception {
+        server.enqueue(new MockResponse().setHeader("Last-Modified", LAST_MODIFIED).setBody("{}"));
+        server.enqueue(new MockResponse().setResponseCode(HttpURLConnection.HTTP_NOT_MODIFIED));
+
+        execute().body().close();
+        Response second = execute();
+        second.body().close();
+
+        assertThat(ConditionalCacheInterceptor.isNotModified(second)).isTrue();
+        server.takeRequest();
+        assertThat(server.takeRequest().getHeader("If-Modified-Since")).isEqualTo(LAST_MODIFIED);
+    }
+
+    @Test
+    public void intercept_shouldNotReportModifiedResponse_asNotModified() throws Exception {
+        server.enqueue(new MockResponse().setHeader("ETag", ETAG).setBody("{\"version\": 1}"));
+        server.enqueue(new MockResponse().setHeader("ETag", "\"9b2e4d\"").setBody("{\"version\": 2}"));
+
+        execute().body().close();
+        Response second = execute();
+
+        assertThat(second.body().string()).isEqualTo("{\"version\": 2}");
+        assertThat(ConditionalCacheInterceptor.isNotModified(second)).isFalse();
+    }
+
+    @Test
+    public void intercept_shouldNotSendConditionalRequest_ifResponseHasNoValidator() throws Exception {
+        server.enqueue(new MockResponse().setBody("{}"));
+        server.enqueue(new MockResponse().setBody("{}"));
+
+        execute().body().close();
+        Response second = execute();
+        second.body().close();
+
+        assertThat(ConditionalCacheInterceptor.isNotModified(second)).isFalse();
+        server.takeRequest();
+        RecordedRequest request = server.takeRequest();
+        assertThat(request.getHeader("If-None-Match")).isNull();
+        assertThat(request.getHeader("If-Modified-Since")).isNull();
+    }
+
+    private Response execute() throws IOException {
+        return client.newCall(new Request.Builder().url(server.url("/api/programs")).build()).execute();
+    }
+}
@@ -32,6 +32,9 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import nl.jqno.equalsverifier.EqualsVerifier;
 import nl.jqno.equalsverifier.Warning;
 
@@ -101,4 +104,17 @@ public class FieldTests {
         NestedField<String, ?> nestedField = NestedField.create("test_nested_field");
         assertThat(nestedField.with().children()).isEmpty();
     }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void nestedFieldWithFields_shouldUseTheFieldsAsChildren() {
+        Field<String, String> fieldOne = Field.create("fieldOne");
+        Field<String, String> fieldTwo = Field.create("fieldTwo");
+        Fields<String> fields = Fields.<String>builder().fields(fieldOne, fieldTwo).build();
+
+        NestedField<String, String> nestedField = NestedField.create("test_nested_field");
+
+        List<Object> children = new ArrayList<Object>(nestedField.with(fields).children());
+        assertThat(children).containsExactly(fieldOne, fieldTwo);
+    }
 }
@@ -60,4 +60,12 @@ public class FilterTests {
                 .suppress(Warning.NULL_FIELDS)
                 .verify();
     }
+
+    @Test
+    public void likeFilter_shouldGenerateFilterString() {
+        Field<String, String> field = Field.create("path");
+
+        assertThat(field.like("root_uid").generateString()).isEqualTo("path:like:root_uid");
+        assertThat(field.like(null)).isNull();
+    }
 }
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hisp.dhis.android.core.data.api;
+
+import org.hisp.dhis.android.core.common.StageMetrics;
+import org.hisp.dhis.android.core.common.StageMetricsRecorder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(JUnit4.class)
+public class MetricsInterceptorTests {
+    private static final String BODY = "{\"programs\":[]}";
+
+    private MockWebServer server;
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+
+        client = new OkHttpClient.Builder()
+                .addNetworkInterceptor(new MetricsInterceptor())
+                .build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        StageMetricsRecorder.detach();
+        server.shutdown();
+    }
+
+    @Test
+    public void intercept_shouldRecordRequestsAndResponseBytes_ofCurrentStage() throws IOException {
+        server.enqueue(new MockResponse().setBody(BODY));
+        server.enqueue(new MockResponse().setBody(BODY));
+        StageMetricsRecorder recorder = new StageMetricsRecorder("program");
+        recorder.attach();
+
+        assertThat(get().body().string()).isEqualTo(BODY);
+        assertThat(get().body().string()).isEqualTo(BODY);
+
+        StageMetrics metrics = recorder.metrics();
+        assertThat(metrics.requests()).isEqualTo(2);
+        assertThat(metrics.responseBytes()).isEqualTo(2 * BODY.length());
+    }
+
+    @Test
+    public void intercept_shouldNotRecord_outsideOfStage() throws IOException {
+        server.enqueue(new MockResponse().setBody(BODY));
+        StageMetricsRecorder recorder = new StageMetricsRecorder("program");
+
+        assertThat(get().body().string()).isEqualTo(BODY);
+
+        assertThat(recorder.metrics().requests()).isEqualTo(0);
+        assertThat(recorder.metrics().responseBytes()).isEqualTo(0);
+    }
+
+    private Response get() throws IOException {
+        return client.newCall(new Request.Builder().url(server.url("/api/programs")).build()).execute();
+    }
+}
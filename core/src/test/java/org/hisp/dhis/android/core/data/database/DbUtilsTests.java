@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.data.database;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(JUnit4.class)
+public class DbUtilsTests {
+
+    @Test
+    public void upsertStatement_shouldUpdateAllColumnsButTheConflictColumn() {
+        String upsert = DbUtils.upsertStatement(
+                "INSERT INTO Option (uid, code, name) VALUES (?, ?, ?);", "uid");
+
+        assertThat(upsert).isEqualTo("INSERT INTO Option (uid, code, name) VALUES (?, ?, ?) " +
+                "ON CONFLICT (uid) DO UPDATE SET code = excluded.code, name = excluded.name;");
+    }
+
+    @Test
+    public void insertStatement_shouldInsertAllColumns() {
+        String insert = DbUtils.insertStatement("Option", new String[]{"uid", "code", "name"});
+
+        assertThat(insert).isEqualTo("INSERT INTO Option (uid, code, name) VALUES (?, ?, ?);");
+    }
+
+    @Test
+    public void updateStatement_shouldUpdateAllColumnsOfTheWhereRow() {
+        String update = DbUtils.updateStatement("Option", new String[]{"uid", "code", "name"}, "uid");
+
+        assertThat(update).isEqualTo("UPDATE Option SET uid = ?, code = ?, name = ? WHERE uid = ?;");
+    }
+
+    @Test
+    public void placeholders_shouldSeparatePlaceholdersWithCommas() {
+        assertThat(DbUtils.placeholders(1)).isEqualTo("?");
+        assertThat(DbUtils.placeholders(3)).isEqualTo("?, ?, ?");
+    }
+
+    @Test
+    public void multiRowInsertStatement_shouldRepeatValues() {
+        String insert = DbUtils.multiRowInsertStatement("INSERT INTO Option (uid, code) VALUES (?, ?);", 3);
+
+        assertThat(insert).isEqualTo("INSERT INTO Option (uid, code) VALUES (?, ?), (?, ?), (?, ?);");
+    }
+
+    @Test
+    public void multiRowInsertStatement_shouldKeepUpsertClause() {
+        String upsert = DbUtils.upsertStatement("INSERT INTO Option (uid, code) VALUES (?, ?);", "uid");
+
+        assertThat(DbUtils.multiRowInsertStatement(upsert, 2)).isEqualTo("INSERT INTO Option (uid, code) " +
+                "VALUES (?, ?), (?, ?) ON CONFLICT (uid) DO UPDATE SET code = excluded.code;");
+    }
+
+    @Test
+    public void isVersionAtLeast_shouldComparePatchVersion() {
+        assertThat(DbUtils.isVersionAtLeast("3.7.11", 3, 7, 11)).isTrue();
+        assertThat(DbUtils.isVersionAtLeast("3.8", 3, 7, 11)).isTrue();
+        assertThat(DbUtils.isVersionAtLeast("3.7.4", 3, 7, 11)).isFalse();
+        assertThat(DbUtils.isVersionAtLeast("3.7", 3, 7, 11)).isFalse();
+    }
+
+    @Test
+    public void isVersionAtLeast_shouldCompareMajorAndMinorVersion() {
+        assertThat(DbUtils.isVersionAtLeast("3.24.0", 3, 24)).isTrue();
+        assertThat(DbUtils.isVersionAtLeast("3.28.0", 3, 24)).isTrue();
+        assertThat(DbUtils.isVersionAtLeast("4.0", 3, 24)).isTrue();
+        assertThat(DbUtils.isVersionAtLeast("3.8.10.2", 3, 24)).isFalse();
+        assertThat(DbUtils.isVersionAtLeast("2.99.0", 3, 24)).isFalse();
+    }
+
+    @Test
+    public void isVersionAtLeast_shouldReturnFalseOnUnknownVersion() {
+        assertThat(DbUtils.isVersionAtLeast(null, 3, 24)).isFalse();
+        assertThat(DbUtils.isVersionAtLeast("unknown", 3, 24)).isFalse();
+    }
+}
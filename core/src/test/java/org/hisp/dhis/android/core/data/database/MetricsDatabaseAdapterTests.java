@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hisp.dhis.android.core.data.database;
+
+import android.database.sqlite.SQLiteStatement;
+
+import org.hisp.dhis.android.core.common.StageMetrics;
+import org.hisp.dhis.android.core.common.StageMetricsRecorder;
+import org.hisp.dhis.android.core.resource.ResourceModel;
+import org.hisp.dhis.android.core.systeminfo.SystemInfoModel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@RunWith(JUnit4.class)
+public class MetricsDatabaseAdapterTests {
+    private static final String TABLE = "Program";
+    private static final String INSERT = "INSERT INTO Program (uid) VALUES (?)";
+    private static final String UPDATE = "UPDATE Program SET uid = ? WHERE uid = ?";
+    private static final String DELETE = "DELETE FROM Program WHERE uid = ?";
+
+    @Mock
+    private DatabaseAdapter databaseAdapter;
+
+    @Mock
+    private SQLiteStatement insertStatement;
+
+    @Mock
+    private SQLiteStatement updateStatement;
+
+    @Mock
+    private SQLiteStatement deleteStatement;
+
+    private MetricsDatabaseAdapter metricsDatabaseAdapter;
+    private StageMetricsRecorder recorder;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+
+        when(databaseAdapter.cachedStatement(INSERT)).thenReturn(insertStatement);
+        when(databaseAdapter.cachedStatement(UPDATE)).thenReturn(updateStatement);
+        when(databaseAdapter.cachedStatement(DELETE)).thenReturn(deleteStatement);
+
+        metricsDatabaseAdapter = new MetricsDatabaseAdapter(databaseAdapter);
+        recorder = new StageMetricsRecorder("program");
+    }
+
+    @After
+    public void tearDown() {
+        StageMetricsRecorder.detach();
+    }
+
+    @Test
+    public void execute_shouldRecordRowsOfCurrentStage() {
+        when(databaseAdapter.executeInsert(TABLE, insertStatement)).thenReturn(1L, -1L);
+        when(databaseAdapter.executeUpdateDelete(TABLE, updateStatement)).thenReturn(1, 0);
+        when(databaseAdapter.executeUpdateDelete(TABLE, deleteStatement)).thenReturn(2);
+        when(databaseAdapter.delete(TABLE)).thenReturn(3);
+        recorder.attach();
+
+        SQLiteStatement insert = metricsDatabaseAdapter.cachedStatement(INSERT);
+        SQLiteStatement update = metricsDatabaseAdapter.cachedStatement(UPDATE);
+        SQLiteStatement delete = metricsDatabaseAdapter.cachedStatement(DELETE);
+        assertThat(metricsDatabaseAdapter.executeInsert(TABLE, insert)).isEqualTo(1L);
+        // ignored insert
+        assertThat(metricsDatabaseAdapter.executeInsert(TABLE, insert)).isEqualTo(-1L);
+        assertThat(metricsDatabaseAdapter.executeUpdateDelete(TABLE, update)).isEqualTo(1);
+        assertThat(metricsDatabaseAdapter.executeUpdateDelete(TABLE, update)).isEqualTo(0);
+        assertThat(metricsDatabaseAdapter.executeUpdateDelete(TABLE, delete)).isEqualTo(2);
+        assertThat(metricsDatabaseAdapter.delete(TABLE)).isEqualTo(3);
+
+        StageMetrics metrics = recorder.metrics();
+        assertThat(metrics.rowsInserted()).isEqualTo(1);
+        assertThat(metrics.rowsUpdated()).isEqualTo(1);
+        assertThat(metrics.rowsDeleted()).isEqualTo(5);
+    }
+
+    @Test
+    public void execute_shouldNotRecord_outsideOfStage() {
+        when(databaseAdapter.executeInsert(TABLE, insertStatement)).thenReturn(1L);
+
+        metricsDatabaseAdapter.executeInsert(TABLE, metricsDatabaseAdapter.cachedStatement(INSERT));
+
+        assertThat(recorder.metrics().rowsInserted()).isEqualTo(0);
+    }
+
+    @Test
+    public void execute_shouldNotRecordRowsOfSyncBookkeeping() {
+        when(databaseAdapter.executeInsert(ResourceModel.TABLE, insertStatement)).thenReturn(1L);
+        when(databaseAdapter.executeUpdateDelete(SystemInfoModel.TABLE, updateStatement)).thenReturn(1);
+        when(databaseAdapter.delete(ResourceModel.TABLE)).thenReturn(2);
+        recorder.attach();
+
+        metricsDatabaseAdapter.executeInsert(ResourceModel.TABLE, metricsDatabaseAdapter.cachedStatement(INSERT));
+        metricsDatabaseAdapter.executeUpdateDelete(SystemInfoModel.TABLE,
+                metricsDatabaseAdapter.cachedStatement(UPDATE));
+        metricsDatabaseAdapter.delete(ResourceModel.TABLE);
+
+        StageMetrics metrics = recorder.metrics();
+        assertThat(metrics.rowsInserted()).isEqualTo(0);
+        assertThat(metrics.rowsUpdated()).isEqualTo(0);
+        assertThat(metrics.rowsDeleted()).isEqualTo(0);
+    }
+}
@@ -35,6 +35,7 @@ import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -63,6 +64,16 @@ public class SqLiteTransactionTests {
         verify(database).beginTransaction();
     }
 
+    @Test
+    public void nonExclusiveTransactionIsBegunWithWriteAheadLogging() throws Exception {
+        when(dbOpenHelper.isWriteAheadLoggingEnabled()).thenReturn(true);
+
+        transaction.begin();
+
+        verify(database).beginTransactionNonExclusive();
+        verify(database, never()).beginTransaction();
+    }
+
     @Test
     public void transactionSuccessfulIsSetOnSqlDatabase() throws Exception {
         transaction.setSuccessful();
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.data.database;
+
+import android.database.sqlite.SQLiteStatement;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(JUnit4.class)
+public class StatementCacheTests {
+    private static final String INSERT = "INSERT INTO Program (uid) VALUES (?)";
+    private static final String UPDATE = "UPDATE Program SET uid = ? WHERE uid = ?";
+    private static final String DELETE = "DELETE FROM Program WHERE uid = ?";
+
+    @Mock
+    private StatementCache.Compiler compiler;
+
+    @Mock
+    private SQLiteStatement insertStatement;
+
+    @Mock
+    private SQLiteStatement updateStatement;
+
+    @Mock
+    private SQLiteStatement deleteStatement;
+
+    private StatementCache statementCache;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+
+        when(compiler.compile(INSERT)).thenReturn(insertStatement);
+        when(compiler.compile(UPDATE)).thenReturn(updateStatement);
+        when(compiler.compile(DELETE)).thenReturn(deleteStatement);
+
+        statementCache = new StatementCache(compiler, 2);
+    }
+
+    @Test
+    public void get_shouldCompileStatementOnce() {
+        assertThat(statementCache.get(INSERT)).isSameAs(insertStatement);
+        assertThat(statementCache.get(INSERT)).isSameAs(insertStatement);
+
+        verify(compiler, times(1)).compile(INSERT);
+    }
+
+    @Test
+    public void get_shouldCloseLeastRecentlyBorrowedStatement_whenFull() {
+        statementCache.get(INSERT);
+        statementCache.get(UPDATE);
+        statementCache.get(INSERT);
+
+        statementCache.get(DELETE);
+
+        verify(updateStatement).close();
+        verify(insertStatement, never()).close();
+        verify(deleteStatement, never()).close();
+    }
+
+    @Test
+    public void get_shouldRecompileEvictedStatement() {
+        statementCache.get(INSERT);
+        statementCache.get(UPDATE);
+        statementCache.get(DELETE);
+
+        statementCache.get(INSERT);
+
+        verify(compiler, times(2)).compile(INSERT);
+        verify(updateStatement).close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_shouldThrowOnNonPositiveCapacity() {
+        new StatementCache(compiler, 0);
+    }
+}
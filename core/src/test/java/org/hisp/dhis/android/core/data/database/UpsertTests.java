@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hisp.dhis.android.core.data.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteConstraintException;
+import android.database.sqlite.SQLiteStatement;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(JUnit4.class)
+public class UpsertTests {
+    private static final String TABLE = "Program";
+    private static final String INSERT = "INSERT INTO Program (uid, name) VALUES (?, ?);";
+    private static final String UPSERT = DbUtils.upsertStatement(INSERT, "uid");
+
+    @Mock
+    private DatabaseAdapter databaseAdapter;
+
+    @Mock
+    private SQLiteStatement upsertStatement;
+
+    @Mock
+    private SQLiteStatement insertStatement;
+
+    @Mock
+    private Cursor cursor;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+
+        when(databaseAdapter.cachedStatement(UPSERT)).thenReturn(upsertStatement);
+        when(databaseAdapter.cachedStatement(INSERT)).thenReturn(insertStatement);
+        when(databaseAdapter.query(anyString())).thenReturn(cursor);
+        when(cursor.moveToFirst()).thenReturn(true);
+    }
+
+    @Test
+    public void statement_shouldAlwaysUpsert_whenUpsertIsSupported() {
+        when(databaseAdapter.isUpsertSupported()).thenReturn(true);
+        when(databaseAdapter.executeInsert(TABLE, upsertStatement)).thenReturn(-1L);
+
+        Upsert upsert = new Upsert(databaseAdapter, TABLE, INSERT, UPSERT);
+
+        assertThat(upsert.statement()).isSameAs(upsertStatement);
+        assertThat(upsert.execute()).isTrue();
+        assertThat(upsert.statement()).isSameAs(upsertStatement);
+        verify(upsertStatement).clearBindings();
+    }
+
+    @Test
+    public void statement_shouldInsertFirst_whenTableIsEmpty() {
+        when(cursor.getInt(0)).thenReturn(0);
+
+        Upsert upsert = new Upsert(databaseAdapter, TABLE, INSERT, UPSERT);
+
+        assertThat(upsert.statement()).isSameAs(insertStatement);
+        verify(cursor).close();
+    }
+
+    @Test
+    public void statement_shouldUpdateFirst_whenTableHasRows() {
+        when(cursor.getInt(0)).thenReturn(1);
+
+        Upsert upsert = new Upsert(databaseAdapter, TABLE, INSERT, UPSERT);
+
+        assertThat(upsert.statement()).isNull();
+    }
+
+    @Test
+    public void statement_shouldFollowOutcomeOfPreviousRow() {
+        when(cursor.getInt(0)).thenReturn(0);
+        when(databaseAdapter.executeInsert(TABLE, insertStatement))
+                .thenReturn(1L)
+                .thenThrow(mock(SQLiteConstraintException.class));
+
+        Upsert upsert = new Upsert(databaseAdapter, TABLE, INSERT, UPSERT);
+
+        assertThat(upsert.statement()).isSameAs(insertStatement);
+        assertThat(upsert.execute()).isTrue();
+
+        // the row violates a constraint, so the store updates it and the next rows are updated first
+        assertThat(upsert.statement()).isSameAs(insertStatement);
+        assertThat(upsert.execute()).isFalse();
+        verify(insertStatement, times(2)).clearBindings();
+        assertThat(upsert.statement()).isNull();
+
+        upsert.inserted();
+        assertThat(upsert.statement()).isSameAs(insertStatement);
+    }
+
+    @Test(expected = SQLiteConstraintException.class)
+    public void execute_shouldThrowConstraintViolation_whenUpsertIsSupported() {
+        when(databaseAdapter.isUpsertSupported()).thenReturn(true);
+        when(databaseAdapter.executeInsert(TABLE, upsertStatement)).thenThrow(mock(SQLiteConstraintException.class));
+
+        Upsert upsert = new Upsert(databaseAdapter, TABLE, INSERT, UPSERT);
+
+        upsert.statement();
+        upsert.execute();
+    }
+}
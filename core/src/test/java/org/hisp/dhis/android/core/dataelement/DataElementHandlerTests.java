@@ -27,6 +27,7 @@
  */
 package org.hisp.dhis.android.core.dataelement;
 
+import org.hisp.dhis.android.core.common.ChangeDetector;
 import org.hisp.dhis.android.core.common.ValueType;
 import org.hisp.dhis.android.core.option.OptionSet;
 import org.hisp.dhis.android.core.option.OptionSetHandler;
@@ -65,10 +66,14 @@ public class DataElementHandlerTests {
     // object to test
     private DataElementHandler dataElementHandler;
 
+    @Mock
+    private ChangeDetector changeDetector;
+
     @Before
     public void setUp() throws Exception {
         MockitoAnnotations.initMocks(this);
-        dataElementHandler = new DataElementHandler(dataElementStore, optionSetHandler);
+        when(changeDetector.hasChanged(anyString(), anyString(), any(Date.class))).thenReturn(true);
+        dataElementHandler = new DataElementHandler(dataElementStore, optionSetHandler, changeDetector);
         when(dataElement.uid()).thenReturn("test_data_element_uid");
         when(dataElement.optionSet()).thenReturn(optionSet);
     }
@@ -77,21 +82,16 @@ public class DataElementHandlerTests {
     public void doNothing_shouldDoNothingWhenPassingInNull() throws Exception {
         dataElementHandler.handleDataElement(null);
 
-        // verify that delete, update and insert is never called
+        // verify that delete and upsert are never called
         verify(dataElementStore, never()).delete(anyString());
 
-        verify(dataElementStore, never()).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
-                any(ValueType.class), anyBoolean(), anyString(), anyString(), anyString(), anyString(),
-                anyString(), anyString(), anyString(), anyString());
-
-        verify(dataElementStore, never()).insert(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
-                any(ValueType.class), anyBoolean(), anyString(), anyString(), anyString(), anyString(),
-                anyString(), anyString(), anyString());
+        verify(dataElementStore, never()).upsert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
+                any(Date.class), anyString(), anyString(), anyString(), anyString(), any(ValueType.class),
+                anyBoolean(), anyString(), anyString(), anyString(), anyString(), anyString(), anyString(),
+                anyString());
 
         // verify that option set handler is never called
-        verify(optionSetHandler, never()).handleOptionSet(any(OptionSet.class));
+        verify(optionSetHandler, never()).handleOptionSetReference(any(OptionSet.class));
     }
 
     @Test
@@ -103,74 +103,29 @@ public class DataElementHandlerTests {
         // verify that delete is called once
         verify(dataElementStore, times(1)).delete(dataElement.uid());
 
-
-        // verify that update and insert is never called
-        verify(dataElementStore, never()).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
-                any(ValueType.class), anyBoolean(), anyString(), anyString(), anyString(), anyString(),
-                anyString(), anyString(), anyString(), anyString());
-
-        verify(dataElementStore, never()).insert(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
-                any(ValueType.class), anyBoolean(), anyString(), anyString(), anyString(), anyString(),
-                anyString(), anyString(), anyString());
+        verify(dataElementStore, never()).upsert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
+                any(Date.class), anyString(), anyString(), anyString(), anyString(), any(ValueType.class),
+                anyBoolean(), anyString(), anyString(), anyString(), anyString(), anyString(), anyString(),
+                anyString());
 
         // verify that option set handler is called once
-        verify(optionSetHandler, times(1)).handleOptionSet(any(OptionSet.class));
+        verify(optionSetHandler, times(1)).handleOptionSetReference(any(OptionSet.class));
     }
 
     @Test
     public void update_shouldUpdateDataElement() throws Exception {
-        when(dataElementStore.update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
-                any(ValueType.class), anyBoolean(), anyString(), anyString(), anyString(), anyString(),
-                anyString(), anyString(), anyString(), anyString())).thenReturn(1);
-
         dataElementHandler.handleDataElement(dataElement);
 
-        verify(dataElementStore, times(1)).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
-                any(ValueType.class), anyBoolean(), anyString(), anyString(), anyString(), anyString(),
-                anyString(), anyString(), anyString(), anyString());
+        verify(dataElementStore, times(1)).upsert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
+                any(Date.class), anyString(), anyString(), anyString(), anyString(), any(ValueType.class),
+                anyBoolean(), anyString(), anyString(), anyString(), anyString(), anyString(), anyString(),
+                anyString());
 
         // verify that delete or insert is never called
         verify(dataElementStore, never()).delete(anyString());
 
-        verify(dataElementStore, never()).insert(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
-                any(ValueType.class), anyBoolean(), anyString(), anyString(), anyString(), anyString(),
-                anyString(), anyString(), anyString());
-
         // verify that option set handler is called once
-        verify(optionSetHandler, times(1)).handleOptionSet(any(OptionSet.class));
-
-    }
+        verify(optionSetHandler, times(1)).handleOptionSetReference(any(OptionSet.class));
 
-    @Test
-    public void insert_shouldInsertDataElement() throws Exception {
-        when(dataElementStore.update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
-                any(ValueType.class), anyBoolean(), anyString(), anyString(), anyString(), anyString(),
-                anyString(), anyString(), anyString(), anyString())).thenReturn(0);
-
-        dataElementHandler.handleDataElement(dataElement);
-
-        // verify that insert is called once
-        verify(dataElementStore, times(1)).insert(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
-                any(ValueType.class), anyBoolean(), anyString(), anyString(), anyString(), anyString(),
-                anyString(), anyString(), anyString());
-
-        // verify that update is called once since we update before we insert
-        verify(dataElementStore, times(1)).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
-                any(ValueType.class), anyBoolean(), anyString(), anyString(), anyString(), anyString(),
-                anyString(), anyString(), anyString(), anyString());
-
-        // verify that delete is never called
-        verify(dataElementStore, never()).delete(anyString());
-
-        // verify that option set handler is called once
-        verify(optionSetHandler, times(1)).handleOptionSet(any(OptionSet.class));
     }
 }
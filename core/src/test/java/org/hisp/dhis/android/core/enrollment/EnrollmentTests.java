@@ -58,7 +58,13 @@ public class EnrollmentTests {
                 "    \"incidentDate\": \"2014-07-21T12:27:50.730\",\n " +
                 "    \"status\": \"ACTIVE\",\n " +
                 "    \"notes\": [],\n " +
-                "    \"attributes\": []\n " +
+                "    \"attributes\": [],\n " +
+                "    \"events\": [{\n " +
+                "        \"event\": \"V1CerIi3sdL\",\n " +
+                "        \"enrollment\": \"BVJQIxoM2o4\",\n " +
+                "        \"programStage\": \"dBwrot7S420\",\n " +
+                "        \"dataValues\": [{\"dataElement\": \"vV9UWAZohSf\", \"value\": \"12\"}]\n " +
+                "    }]\n " +
                 "    }",
                 Enrollment.class);
 
@@ -74,5 +80,9 @@ public class EnrollmentTests {
         assertThat(enrollment.followUp()).isEqualTo(false);
         assertThat(enrollment.enrollmentStatus()).isEqualTo(EnrollmentStatus.ACTIVE);
         assertThat(enrollment.trackedEntityInstance()).isEqualTo("D2dUWKQErfQ");
+        assertThat(enrollment.events()).hasSize(1);
+        assertThat(enrollment.events().get(0).uid()).isEqualTo("V1CerIi3sdL");
+        assertThat(enrollment.events().get(0).enrollmentUid()).isEqualTo("BVJQIxoM2o4");
+        assertThat(enrollment.events().get(0).trackedEntityDataValues().get(0).value()).isEqualTo("12");
     }
 }
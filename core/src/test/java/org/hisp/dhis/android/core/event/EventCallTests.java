@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.event;
+
+import org.hisp.dhis.android.core.Inject;
+import org.hisp.dhis.android.core.common.State;
+import org.hisp.dhis.android.core.data.api.FieldsConverterFactory;
+import org.hisp.dhis.android.core.data.api.FilterConverterFactory;
+import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Transaction;
+import org.hisp.dhis.android.core.resource.ResourceModel;
+import org.hisp.dhis.android.core.resource.ResourceStore;
+import org.hisp.dhis.android.core.systeminfo.SystemInfoService;
+import org.hisp.dhis.android.core.systeminfo.SystemInfoStore;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityDataValueModel;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityDataValueStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.converter.jackson.JacksonConverterFactory;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(JUnit4.class)
+public class EventCallTests {
+    private static final String SYSTEM_INFO = "{\"serverDate\": \"2017-05-10T08:00:00.000\"}";
+
+    private static final String EVENTS = "{\n" +
+            "    \"pager\": {\"page\": %d, \"pageCount\": %d, \"pageSize\": 2, \"total\": 3},\n" +
+            "    \"events\": [%s]\n" +
+            "}";
+
+    @Mock
+    private DatabaseAdapter databaseAdapter;
+
+    @Mock
+    private Transaction transaction;
+
+    @Mock
+    private SystemInfoStore systemInfoStore;
+
+    @Mock
+    private ResourceStore resourceStore;
+
+    @Mock
+    private EventStore eventStore;
+
+    @Mock
+    private TrackedEntityDataValueStore trackedEntityDataValueStore;
+
+    @Captor
+    private ArgumentCaptor<List<EventModel>> eventsCaptor;
+
+    @Captor
+    private ArgumentCaptor<List<TrackedEntityDataValueModel>> dataValuesCaptor;
+
+    private MockWebServer server;
+    private SystemInfoService systemInfoService;
+    private EventService eventService;
+
+    @Before
+    public void setUp() throws IOException {
+        MockitoAnnotations.initMocks(this);
+
+        server = new MockWebServer();
+        server.start();
+
+        Retrofit retrofit = new Retrofit.Builder()
+                .baseUrl(server.url("/api/"))
+                .addConverterFactory(JacksonConverterFactory.create(Inject.objectMapper()))
+                .addConverterFactory(FilterConverterFactory.create())
+                .addConverterFactory(FieldsConverterFactory.create())
+                .build();
+        systemInfoService = retrofit.create(SystemInfoService.class);
+        eventService = retrofit.create(EventService.class);
+
+        when(databaseAdapter.beginNewTransaction()).thenReturn(transaction);
+        when(eventStore.queryUidsWithLocalChanges(anyCollectionOf(String.class)))
+                .thenReturn(Collections.<String>emptySet());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void call_shouldRequestEveryPageOfProgramInOrganisationUnit() throws Exception {
+        // the events are downloaded since the last download of the program in the organisation unit
+        when(resourceStore.getLastUpdated(ResourceModel.Type.EVENT.name() + "/DiszpKrYNg8:lxAQ7Zs9VYR"))
+                .thenReturn("2017-05-01T00:00:00.000");
+        server.enqueue(new MockResponse().setBody(SYSTEM_INFO));
+        server.enqueue(new MockResponse().setBody(events(1, 2, event("a1b2c3d4e5f") + ", " + event("b1b2c3d4e5f"))));
+        server.enqueue(new MockResponse().setBody(events(2, 2, event("c1b2c3d4e5f"))));
+
+        Response response = call(Collections.singleton("DiszpKrYNg8"), Collections.singleton("lxAQ7Zs9VYR")).call();
+
+        assertThat(response.isSuccessful()).isTrue();
+        assertThat(server.getRequestCount()).isEqualTo(3);
+        server.takeRequest();
+        HttpUrl url = requestUrl(server.takeRequest());
+        assertThat(url.encodedPath()).isEqualTo("/api/events");
+        assertThat(url.queryParameter("orgUnit")).isEqualTo("DiszpKrYNg8");
+        assertThat(url.queryParameter("ouMode")).isEqualTo("DESCENDANTS");
+        assertThat(url.queryParameter("program")).isEqualTo("lxAQ7Zs9VYR");
+        assertThat(url.queryParameter("lastUpdatedStartDate")).isEqualTo("2017-05-01T00:00:00.000");
+        assertThat(url.queryParameter("page")).isEqualTo("1");
+        assertThat(url.queryParameter("pageSize")).isEqualTo("2");
+        assertThat(url.queryParameter("totalPages")).isEqualTo("true");
+        assertThat(requestUrl(server.takeRequest()).queryParameter("page")).isEqualTo("2");
+
+        // the system info and every page are written in their own transaction, and so is the completed sync
+        verify(transaction, times(4)).setSuccessful();
+        verify(resourceStore).update(eq(ResourceModel.Type.EVENT.name()), any(Date.class),
+                eq(ResourceModel.Type.EVENT.name()));
+        verify(resourceStore).insert(eq(ResourceModel.Type.EVENT.name() + "/DiszpKrYNg8:lxAQ7Zs9VYR"),
+                any(Date.class));
+    }
+
+    @Test
+    public void call_shouldInsertEventsWithTheirDataValues() throws Exception {
+        server.enqueue(new MockResponse().setBody(SYSTEM_INFO));
+        server.enqueue(new MockResponse().setBody(events(1, 1, event("a1b2c3d4e5f"))));
+
+        call(Collections.singleton("DiszpKrYNg8"), Collections.singleton("lxAQ7Zs9VYR")).call();
+
+        verify(eventStore).delete(Collections.singleton("a1b2c3d4e5f"));
+        verify(eventStore).insertAll(eventsCaptor.capture());
+        EventModel event = eventsCaptor.getValue().get(0);
+        assertThat(event.uid()).isEqualTo("a1b2c3d4e5f");
+        assertThat(event.program()).isEqualTo("lxAQ7Zs9VYR");
+        assertThat(event.organisationUnit()).isEqualTo("DiszpKrYNg8");
+        assertThat(event.status()).isEqualTo(EventStatus.COMPLETED);
+        assertThat(event.latitude()).isEqualTo("8.4");
+        assertThat(event.longitude()).isEqualTo("-13.2");
+        assertThat(event.state()).isEqualTo(State.SYNCED);
+
+        verify(trackedEntityDataValueStore).insertAll(dataValuesCaptor.capture());
+        TrackedEntityDataValueModel dataValue = dataValuesCaptor.getValue().get(0);
+        assertThat(dataValue.event()).isEqualTo("a1b2c3d4e5f");
+        assertThat(dataValue.dataElement()).isEqualTo("qrur9Dvnyt5");
+        assertThat(dataValue.value()).isEqualTo("42");
+    }
+
+    @Test
+    public void call_shouldKeepEventsWithLocalChanges() throws Exception {
+        when(eventStore.queryUidsWithLocalChanges(anyCollectionOf(String.class)))
+                .thenReturn(Collections.singleton("a1b2c3d4e5f"));
+        server.enqueue(new MockResponse().setBody(SYSTEM_INFO));
+        server.enqueue(new MockResponse().setBody(events(1, 1, event("a1b2c3d4e5f") + ", " + event("b1b2c3d4e5f"))));
+
+        call(Collections.singleton("DiszpKrYNg8"), Collections.singleton("lxAQ7Zs9VYR")).call();
+
+        verify(eventStore).delete(Collections.singleton("b1b2c3d4e5f"));
+        verify(eventStore).insertAll(eventsCaptor.capture());
+        assertThat(eventsCaptor.getValue()).hasSize(1);
+        assertThat(eventsCaptor.getValue().get(0).uid()).isEqualTo("b1b2c3d4e5f");
+        verify(trackedEntityDataValueStore).insertAll(dataValuesCaptor.capture());
+        assertThat(dataValuesCaptor.getValue()).hasSize(1);
+        assertThat(dataValuesCaptor.getValue().get(0).event()).isEqualTo("b1b2c3d4e5f");
+    }
+
+    @Test
+    public void call_shouldRequestEveryProgramInEveryOrganisationUnit() throws Exception {
+        server.enqueue(new MockResponse().setBody(SYSTEM_INFO));
+        for (int i = 0; i < 4; i++) {
+            server.enqueue(new MockResponse().setBody(events(1, 1, "")));
+        }
+
+        call(new HashSet<>(Arrays.asList("DiszpKrYNg8", "ImspTQPwCqd")),
+                new HashSet<>(Arrays.asList("lxAQ7Zs9VYR", "eBAyeGv0exc"))).call();
+
+        assertThat(server.getRequestCount()).isEqualTo(5);
+        server.takeRequest();
+        assertThat(eventRequest()).isEqualTo("DiszpKrYNg8/eBAyeGv0exc");
+        assertThat(eventRequest()).isEqualTo("DiszpKrYNg8/lxAQ7Zs9VYR");
+        assertThat(eventRequest()).isEqualTo("ImspTQPwCqd/eBAyeGv0exc");
+        assertThat(eventRequest()).isEqualTo("ImspTQPwCqd/lxAQ7Zs9VYR");
+        verify(eventStore, never()).insertAll(anyListOf(EventModel.class));
+    }
+
+    @Test
+    public void call_shouldNotDownloadEvents_ifSystemInfoFails() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(500));
+
+        Response response = call(Collections.singleton("DiszpKrYNg8"), Collections.singleton("lxAQ7Zs9VYR")).call();
+
+        assertThat(response.code()).isEqualTo(500);
+        assertThat(server.getRequestCount()).isEqualTo(1);
+        verify(resourceStore, never()).updatePaging(anyString(), anyString(), anyInt(),
+                any(Date.class));
+    }
+
+    private EventCall call(Set<String> organisationUnitUids, Set<String> programUids) {
+        return new EventCall(databaseAdapter, systemInfoStore, systemInfoService, resourceStore, eventService,
+                eventStore, trackedEntityDataValueStore, Inject.objectMapper(), organisationUnitUids, programUids, 2);
+    }
+
+    private HttpUrl requestUrl(RecordedRequest request) {
+        return server.url(request.getPath());
+    }
+
+    private String eventRequest() throws InterruptedException {
+        HttpUrl url = requestUrl(server.takeRequest());
+        return url.queryParameter("orgUnit") + "/" + url.queryParameter("program");
+    }
+
+    private static String events(int page, int pageCount, String events) {
+        return String.format(EVENTS, page, pageCount, events);
+    }
+
+    private static String event(String uid) {
+        return "{\"event\": \"" + uid + "\", \"program\": \"lxAQ7Zs9VYR\", \"programStage\": \"dBwrot7S420\"," +
+                " \"orgUnit\": \"DiszpKrYNg8\", \"status\": \"COMPLETED\"," +
+                " \"coordinate\": {\"latitude\": 8.4, \"longitude\": -13.2}," +
+                " \"dataValues\": [{\"dataElement\": \"qrur9Dvnyt5\", \"value\": \"42\"}]}";
+    }
+}
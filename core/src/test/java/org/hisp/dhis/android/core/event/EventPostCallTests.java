@@ -0,0 +1,361 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.event;
+
+import org.hisp.dhis.android.core.Inject;
+import org.hisp.dhis.android.core.common.State;
+import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Transaction;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityDataValueModel;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityDataValueStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.converter.jackson.JacksonConverterFactory;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(JUnit4.class)
+public class EventPostCallTests {
+    private static final String IMPORT_SUMMARIES = "{\n" +
+            "    \"httpStatus\": \"%s\",\n" +
+            "    \"response\": {\n" +
+            "        \"responseType\": \"ImportSummaries\",\n" +
+            "        \"importSummaries\": [%s]\n" +
+            "    }\n" +
+            "}";
+
+    @Mock
+    private DatabaseAdapter databaseAdapter;
+
+    @Mock
+    private Transaction transaction;
+
+    @Mock
+    private EventStore eventStore;
+
+    @Mock
+    private TrackedEntityDataValueStore trackedEntityDataValueStore;
+
+    private MockWebServer server;
+    private EventService eventService;
+
+    @Before
+    public void setUp() throws IOException {
+        MockitoAnnotations.initMocks(this);
+
+        server = new MockWebServer();
+        server.start();
+
+        Retrofit retrofit = new Retrofit.Builder()
+                .baseUrl(server.url("/api/"))
+                .addConverterFactory(JacksonConverterFactory.create(Inject.objectMapper()))
+                .build();
+        eventService = retrofit.create(EventService.class);
+
+        when(databaseAdapter.beginNewTransaction()).thenReturn(transaction);
+        when(eventStore.queryEventsToUpload(anyLong(), anyInt()))
+                .thenReturn(Collections.<EventModel>emptyList());
+        when(trackedEntityDataValueStore.queryByEvents(anyCollectionOf(String.class)))
+                .thenReturn(Collections.<String, List<TrackedEntityDataValueModel>>emptyMap());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void call_shouldPostEventsWithTheirDataValues() throws Exception {
+        when(eventStore.queryEventsToUpload(0, 2)).thenReturn(Collections.singletonList(event(1L, "a1b2c3d4e5f")));
+        when(trackedEntityDataValueStore.queryByEvents(Collections.singletonList("a1b2c3d4e5f"))).thenReturn(
+                Collections.singletonMap("a1b2c3d4e5f", Collections.singletonList(TrackedEntityDataValueModel
+                        .builder().event("a1b2c3d4e5f").dataElement("qrur9Dvnyt5").value("42").build())));
+        server.enqueue(new MockResponse().setBody(summaries("OK", summary("SUCCESS", "a1b2c3d4e5f"))));
+
+        Response response = call(2).call();
+
+        assertThat(response.isSuccessful()).isTrue();
+        RecordedRequest request = server.takeRequest();
+        assertThat(request.getMethod()).isEqualTo("POST");
+        assertThat(request.getPath()).isEqualTo("/api/events");
+        assertThat(request.getBody().readUtf8())
+                .contains("\"events\":[{\"event\":\"a1b2c3d4e5f\"")
+                .contains("\"orgUnit\":\"DiszpKrYNg8\"")
+                .contains("\"coordinate\":{\"latitude\":8.4,\"longitude\":-13.2}")
+                .contains("\"dataValues\":[{")
+                .contains("\"dataElement\":\"qrur9Dvnyt5\"")
+                .contains("\"value\":\"42\"");
+
+        // the data values have been uploaded with their event
+        verify(trackedEntityDataValueStore).setState(Collections.singletonList(TrackedEntityDataValueModel
+                .builder().event("a1b2c3d4e5f").dataElement("qrur9Dvnyt5").value("42").build()), State.SYNCED);
+    }
+
+    @Test
+    public void call_shouldUploadEventsByBatches() throws Exception {
+        when(eventStore.queryEventsToUpload(0, 2)).thenReturn(Arrays.asList(
+                event(1L, "a1b2c3d4e5f"), event(4L, "b1b2c3d4e5f")));
+        when(eventStore.queryEventsToUpload(4, 2)).thenReturn(Collections.singletonList(event(7L, "c1b2c3d4e5f")));
+        server.enqueue(new MockResponse().setBody(summaries("OK",
+                summary("SUCCESS", "a1b2c3d4e5f") + ", " + summary("SUCCESS", "b1b2c3d4e5f"))));
+        server.enqueue(new MockResponse().setBody(summaries("OK", summary("SUCCESS", "c1b2c3d4e5f"))));
+
+        call(2).call();
+
+        assertThat(server.getRequestCount()).isEqualTo(2);
+        InOrder inOrder = inOrder(eventStore, transaction);
+        inOrder.verify(eventStore).queryEventsToUpload(0, 2);
+        inOrder.verify(eventStore).setStateIfUnchanged(
+                Arrays.asList(event(1L, "a1b2c3d4e5f"), event(4L, "b1b2c3d4e5f")), State.SYNCED);
+        inOrder.verify(transaction).setSuccessful();
+        inOrder.verify(transaction).end();
+        inOrder.verify(eventStore).queryEventsToUpload(4, 2);
+        inOrder.verify(eventStore).setStateIfUnchanged(Collections.singletonList(event(7L, "c1b2c3d4e5f")),
+                State.SYNCED);
+        inOrder.verify(transaction).setSuccessful();
+        inOrder.verify(transaction).end();
+
+        // the last page is not full, so there is nothing left to upload
+        verify(eventStore, never()).queryEventsToUpload(eq(7L), anyInt());
+    }
+
+    @Test
+    public void call_shouldMarkRejectedEventsAsErrors_onConflict() throws Exception {
+        when(eventStore.queryEventsToUpload(0, 2)).thenReturn(Arrays.asList(
+                event(1L, "a1b2c3d4e5f"), event(2L, "b1b2c3d4e5f")));
+        server.enqueue(new MockResponse().setResponseCode(409).setBody(summaries("Conflict",
+                summary("SUCCESS", "a1b2c3d4e5f") + ", " + summary("ERROR", "b1b2c3d4e5f"))));
+
+        Response response = call(2).call();
+
+        assertThat(response.code()).isEqualTo(409);
+        verify(eventStore).setStateIfUnchanged(Collections.singletonList(event(1L, "a1b2c3d4e5f")), State.SYNCED);
+        verify(eventStore).setStateIfUnchanged(Collections.singletonList(event(2L, "b1b2c3d4e5f")), State.ERROR);
+        verify(transaction).setSuccessful();
+        verify(transaction).end();
+
+        // the events which have been rejected are not read again
+        verify(eventStore).queryEventsToUpload(2, 2);
+    }
+
+    @Test
+    public void call_shouldStopAndKeepStates_onServerError() throws Exception {
+        when(eventStore.queryEventsToUpload(0, 1)).thenReturn(Collections.singletonList(event(1L, "a1b2c3d4e5f")));
+        server.enqueue(new MockResponse().setResponseCode(500));
+
+        Response response = call(1).call();
+
+        assertThat(response.code()).isEqualTo(500);
+        assertThat(server.getRequestCount()).isEqualTo(1);
+        verify(eventStore, never()).setStateIfUnchanged(anyCollectionOf(EventModel.class), eq(State.SYNCED));
+        verify(eventStore, never()).queryEventsToUpload(eq(1L), anyInt());
+        verify(databaseAdapter, never()).beginNewTransaction();
+    }
+
+    @Test
+    public void call_shouldPutOnlyChangedValuesOfUpdatedEvents_ifChangedValuesOnly() throws Exception {
+        when(eventStore.queryEventsToUpload(0, 2)).thenReturn(Arrays.asList(
+                event(1L, "a1b2c3d4e5f", State.TO_UPDATE), event(2L, "b1b2c3d4e5f", State.TO_POST)));
+        when(trackedEntityDataValueStore.queryByEvents(Arrays.asList("a1b2c3d4e5f", "b1b2c3d4e5f"))).thenReturn(
+                Collections.singletonMap("a1b2c3d4e5f", Arrays.asList(
+                        dataValue("a1b2c3d4e5f", "qrur9Dvnyt5", "41", State.SYNCED),
+                        dataValue("a1b2c3d4e5f", "oZg33kd9taw", "42", State.TO_UPDATE))));
+        server.enqueue(new MockResponse().setBody("{\"httpStatus\": \"OK\", \"status\": \"OK\"}"));
+        server.enqueue(new MockResponse().setBody(summaries("OK", summary("SUCCESS", "b1b2c3d4e5f"))));
+
+        Response response = call(2, true).call();
+
+        assertThat(response.isSuccessful()).isTrue();
+        RecordedRequest putRequest = server.takeRequest();
+        assertThat(putRequest.getMethod()).isEqualTo("PUT");
+        assertThat(putRequest.getPath()).isEqualTo("/api/events/a1b2c3d4e5f/oZg33kd9taw");
+        String putBody = putRequest.getBody().readUtf8();
+        assertThat(putBody)
+                .contains("\"event\":\"a1b2c3d4e5f\"")
+                .contains("\"dataElement\":\"oZg33kd9taw\"")
+                .contains("\"value\":\"42\"");
+        assertThat(putBody).doesNotContain("qrur9Dvnyt5");
+
+        // the event which the server does not have yet is uploaded as a whole
+        RecordedRequest postRequest = server.takeRequest();
+        assertThat(postRequest.getMethod()).isEqualTo("POST");
+        assertThat(postRequest.getBody().readUtf8())
+                .contains("\"event\":\"b1b2c3d4e5f\"")
+                .doesNotContain("a1b2c3d4e5f");
+
+        verify(trackedEntityDataValueStore).setState(Collections.singletonList(
+                dataValue("a1b2c3d4e5f", "oZg33kd9taw", "42", State.TO_UPDATE)), State.SYNCED);
+        verify(eventStore).setStateIfUnchanged(
+                Collections.singletonList(event(1L, "a1b2c3d4e5f", State.TO_UPDATE)), State.SYNCED);
+        verify(eventStore).setStateIfUnchanged(
+                Collections.singletonList(event(2L, "b1b2c3d4e5f", State.TO_POST)), State.SYNCED);
+    }
+
+    @Test
+    public void call_shouldMarkEventAsError_ifChangedValueIsRejected() throws Exception {
+        when(eventStore.queryEventsToUpload(0, 2)).thenReturn(
+                Collections.singletonList(event(1L, "a1b2c3d4e5f", State.TO_UPDATE)));
+        when(trackedEntityDataValueStore.queryByEvents(Collections.singletonList("a1b2c3d4e5f"))).thenReturn(
+                Collections.singletonMap("a1b2c3d4e5f", Arrays.asList(
+                        dataValue("a1b2c3d4e5f", "qrur9Dvnyt5", "41", State.TO_UPDATE),
+                        dataValue("a1b2c3d4e5f", "oZg33kd9taw", "42", State.TO_UPDATE))));
+        server.enqueue(new MockResponse().setResponseCode(409));
+        server.enqueue(new MockResponse().setBody("{\"httpStatus\": \"OK\", \"status\": \"OK\"}"));
+
+        Response response = call(2, true).call();
+
+        assertThat(response.isSuccessful()).isTrue();
+        assertThat(server.getRequestCount()).isEqualTo(2);
+        verify(trackedEntityDataValueStore).setState(Collections.singletonList(
+                dataValue("a1b2c3d4e5f", "oZg33kd9taw", "42", State.TO_UPDATE)), State.SYNCED);
+        verify(eventStore).setStateIfUnchanged(
+                Collections.singletonList(event(1L, "a1b2c3d4e5f", State.TO_UPDATE)), State.ERROR);
+        verify(eventStore, never()).setStateIfUnchanged(anyCollectionOf(EventModel.class), eq(State.SYNCED));
+    }
+
+    @Test
+    public void call_shouldStopAndKeepEventState_onServerErrorOfChangedValue() throws Exception {
+        when(eventStore.queryEventsToUpload(0, 2)).thenReturn(Arrays.asList(
+                event(1L, "a1b2c3d4e5f", State.TO_UPDATE), event(2L, "b1b2c3d4e5f", State.TO_POST)));
+        when(trackedEntityDataValueStore.queryByEvents(Arrays.asList("a1b2c3d4e5f", "b1b2c3d4e5f"))).thenReturn(
+                Collections.singletonMap("a1b2c3d4e5f", Collections.singletonList(
+                        dataValue("a1b2c3d4e5f", "oZg33kd9taw", "42", State.TO_UPDATE))));
+        server.enqueue(new MockResponse().setResponseCode(500));
+
+        Response response = call(2, true).call();
+
+        assertThat(response.code()).isEqualTo(500);
+        assertThat(server.getRequestCount()).isEqualTo(1);
+        verify(eventStore, never()).setStateIfUnchanged(anyCollectionOf(EventModel.class), any(State.class));
+        verify(eventStore, never()).queryEventsToUpload(eq(2L), anyInt());
+    }
+
+    @Test
+    public void call_shouldPostUpdatedEventsAsAWhole_ifNotChangedValuesOnly() throws Exception {
+        when(eventStore.queryEventsToUpload(0, 2)).thenReturn(
+                Collections.singletonList(event(1L, "a1b2c3d4e5f", State.TO_UPDATE)));
+        when(trackedEntityDataValueStore.queryByEvents(Collections.singletonList("a1b2c3d4e5f"))).thenReturn(
+                Collections.singletonMap("a1b2c3d4e5f", Collections.singletonList(
+                        dataValue("a1b2c3d4e5f", "oZg33kd9taw", "42", State.TO_UPDATE))));
+        server.enqueue(new MockResponse().setBody(summaries("OK", summary("SUCCESS", "a1b2c3d4e5f"))));
+
+        call(2).call();
+
+        RecordedRequest request = server.takeRequest();
+        assertThat(request.getMethod()).isEqualTo("POST");
+        assertThat(request.getPath()).isEqualTo("/api/events");
+    }
+
+    @Test
+    public void call_shouldNotPost_ifThereAreNoEventsToUpload() throws Exception {
+        Response response = call(2).call();
+
+        assertThat(response.isSuccessful()).isTrue();
+        assertThat(server.getRequestCount()).isEqualTo(0);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void call_shouldThrow_ifExecutedTwice() throws Exception {
+        EventPostCall call = call(2);
+        call.call();
+        call.call();
+    }
+
+    private EventPostCall call(int batchSize) {
+        return new EventPostCall(databaseAdapter, eventService, eventStore, trackedEntityDataValueStore,
+                Inject.objectMapper(), batchSize);
+    }
+
+    private EventPostCall call(int batchSize, boolean changedValuesOnly) {
+        return new EventPostCall(databaseAdapter, eventService, eventStore, trackedEntityDataValueStore,
+                Inject.objectMapper(), batchSize, changedValuesOnly);
+    }
+
+    private static EventModel event(long id, String uid) {
+        return event(id, uid, State.TO_POST);
+    }
+
+    private static EventModel event(long id, String uid, State state) {
+        return EventModel.builder()
+                .id(id)
+                .uid(uid)
+                .program("lxAQ7Zs9VYR")
+                .programStage("dBwrot7S420")
+                .organisationUnit("DiszpKrYNg8")
+                .status(EventStatus.COMPLETED)
+                .latitude("8.4")
+                .longitude("-13.2")
+                .state(state)
+                .build();
+    }
+
+    private static TrackedEntityDataValueModel dataValue(String event, String dataElement, String value,
+                                                         State state) {
+        return TrackedEntityDataValueModel.builder()
+                .event(event)
+                .dataElement(dataElement)
+                .value(value)
+                .state(state)
+                .build();
+    }
+
+    private static String summaries(String httpStatus, String summaries) {
+        return String.format(IMPORT_SUMMARIES, httpStatus, summaries);
+    }
+
+    private static String summary(String status, String reference) {
+        return "{\"status\": \"" + status + "\", \"reference\": \"" + reference + "\"}";
+    }
+}
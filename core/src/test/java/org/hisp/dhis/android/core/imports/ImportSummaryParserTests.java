@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.imports;
+
+import android.support.annotation.NonNull;
+
+import org.hisp.dhis.android.core.Inject;
+import org.hisp.dhis.android.core.common.PayloadParser;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import okio.Buffer;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.fail;
+
+@RunWith(JUnit4.class)
+public class ImportSummaryParserTests {
+    private ImportSummaryParser importSummaryParser;
+    private List<ImportSummary> summaries;
+    private PayloadParser.ItemHandler<ImportSummary> summaryHandler;
+
+    @Before
+    public void setUp() {
+        importSummaryParser = new ImportSummaryParser(Inject.objectMapper());
+        summaries = new ArrayList<>();
+        summaryHandler = new PayloadParser.ItemHandler<ImportSummary>() {
+            @Override
+            public void handle(@NonNull ImportSummary summary) {
+                summaries.add(summary);
+            }
+        };
+    }
+
+    @Test
+    public void parse_shouldHandSummariesOfWrappedResponseToHandler() throws IOException {
+        importSummaryParser.parse(source("{\n" +
+                "    \"httpStatus\": \"Conflict\",\n" +
+                "    \"status\": \"ERROR\",\n" +
+                "    \"response\": {\n" +
+                "        \"responseType\": \"ImportSummaries\",\n" +
+                "        \"status\": \"ERROR\",\n" +
+                "        \"importSummaries\": [\n" +
+                "            {\"status\": \"SUCCESS\", \"reference\": \"a1b2c3d4e5f\",\n" +
+                "                \"importCount\": {\"imported\": 1, \"updated\": 0}, \"conflicts\": []},\n" +
+                "            {\"status\": \"ERROR\", \"reference\": \"f5e4d3c2b1a\",\n" +
+                "                \"description\": \"Event.orgUnit does not point to a valid organisation unit\"}\n" +
+                "        ]\n" +
+                "    }\n" +
+                "}"), summaryHandler);
+
+        assertThat(summaries).containsExactly(
+                ImportSummary.create(ImportStatus.SUCCESS, "a1b2c3d4e5f", null),
+                ImportSummary.create(ImportStatus.ERROR, "f5e4d3c2b1a",
+                        "Event.orgUnit does not point to a valid organisation unit"));
+    }
+
+    @Test
+    public void parse_shouldHandSummariesOfTopLevelResponseToHandler() throws IOException {
+        importSummaryParser.parse(source("{\"responseType\": \"ImportSummaries\", \"importSummaries\": [" +
+                "{\"status\": \"WARNING\", \"reference\": \"a1b2c3d4e5f\"}]}"), summaryHandler);
+
+        assertThat(summaries).containsExactly(ImportSummary.create(ImportStatus.WARNING, "a1b2c3d4e5f", null));
+    }
+
+    @Test
+    public void parse_shouldFail_ifResponseIsNotAnObject() {
+        try {
+            importSummaryParser.parse(source("[{\"status\": \"SUCCESS\"}]"), summaryHandler);
+            fail("IOException was expected but nothing was thrown");
+        } catch (IOException ioException) {
+            // swallow exception
+        }
+
+        assertThat(summaries).isEmpty();
+    }
+
+    private static Buffer source(String json) {
+        return new Buffer().writeUtf8(json);
+    }
+}
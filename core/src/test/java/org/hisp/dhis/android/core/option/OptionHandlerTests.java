@@ -35,10 +35,11 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
-import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -79,10 +80,7 @@ public class OptionHandlerTests {
     public void doNothing_shouldDoNothingWhenPassingNullArgument() throws Exception {
         optionHandler.handleOptions(null);
         verify(optionStore, never()).delete(anyString());
-        verify(optionStore, never()).insert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString());
-        verify(optionStore, never()).update(anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString());
+        verify(optionStore, never()).upsertAll(anyListOf(OptionModel.class));
     }
 
     @Test
@@ -94,49 +92,42 @@ public class OptionHandlerTests {
         // verify that option is deleted
         verify(optionStore, times(1)).delete(option.uid());
 
-        // verify that update and insert is never called
-        verify(optionStore, never()).insert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString());
-        verify(optionStore, never()).update(
-                anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString());
+        // verify that upsert is never called
+        verify(optionStore, never()).upsertAll(anyListOf(OptionModel.class));
     }
 
     @Test
     public void update_shouldUpdateOption() throws Exception {
-        when(optionStore.update(anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString())).thenReturn(1);
-
         optionHandler.handleOptions(options);
 
-        // verify that update is called once
-        verify(optionStore, times(1)).update(anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString());
+        // verify that the option is upserted in a single batch
+        verify(optionStore, times(1)).upsertAll(Collections.singletonList(
+                OptionModel.builder().uid("test_option_uid").optionSet("test_option_set_uid").build()));
 
-        // verify that insert and delete is never called
-        verify(optionStore, never()).insert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString());
         verify(optionStore, never()).delete(anyString());
 
     }
 
     @Test
-    public void insert_shouldInsertOption() throws Exception {
-        when(optionStore.update(anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString())).thenReturn(0);
+    public void handleChangedOptions_shouldSkipUnchangedOptions() throws Exception {
+        Date lastUpdated = new Date(1000L);
+        when(option.lastUpdated()).thenReturn(lastUpdated);
+        when(optionStore.queryLastUpdated("test_option_set_uid")).thenReturn(
+                Collections.singletonMap("test_option_uid", new Date(lastUpdated.getTime())));
 
-        optionHandler.handleOptions(options);
+        optionHandler.handleChangedOptions("test_option_set_uid", options);
 
-        // verify that insert is called once
-        verify(optionStore, times(1)).insert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString());
+        verify(optionStore, never()).upsertAll(anyListOf(OptionModel.class));
+    }
 
-        // verify that update is called once since we try to update before we insert
-        verify(optionStore, times(1)).update(anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString());
+    @Test
+    public void handleChangedOptions_shouldUpdateChangedOptions() throws Exception {
+        when(option.lastUpdated()).thenReturn(new Date(2000L));
+        when(optionStore.queryLastUpdated("test_option_set_uid")).thenReturn(
+                Collections.singletonMap("test_option_uid", new Date(1000L)));
 
-        // verify that delete is never called
-        verify(optionStore, never()).delete(anyString());
+        optionHandler.handleChangedOptions("test_option_set_uid", options);
 
+        verify(optionStore, times(1)).upsertAll(anyListOf(OptionModel.class));
     }
 }
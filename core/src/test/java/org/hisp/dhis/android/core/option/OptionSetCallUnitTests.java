@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hisp.dhis.android.core.option;
+
+import org.hisp.dhis.android.core.common.Payload;
+import org.hisp.dhis.android.core.data.api.Fields;
+import org.hisp.dhis.android.core.data.api.Filter;
+import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Transaction;
+import org.hisp.dhis.android.core.resource.ResourceModel;
+import org.hisp.dhis.android.core.resource.ResourceStore;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import retrofit2.Response;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(JUnit4.class)
+public class OptionSetCallUnitTests {
+
+    @Mock
+    private OptionSetService optionSetService;
+
+    @Mock
+    private OptionSetStore optionSetStore;
+
+    @Mock
+    private OptionStore optionStore;
+
+    @Mock
+    private DatabaseAdapter databaseAdapter;
+
+    @Mock
+    private Transaction transaction;
+
+    @Mock
+    private ResourceStore resourceStore;
+
+    @Mock
+    private retrofit2.Call<Payload<OptionSet>> retrofitCall;
+
+    @Captor
+    private ArgumentCaptor<Filter<OptionSet, String>> filterCaptor;
+
+    private Map<String, Integer> versions;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+
+        versions = new HashMap<>();
+        versions.put("unchanged_uid", 1);
+        versions.put("changed_uid", 3);
+        versions.put("new_uid", 1);
+
+        Map<String, Integer> storedVersions = new HashMap<>();
+        storedVersions.put("unchanged_uid", 1);
+        storedVersions.put("changed_uid", 2);
+
+        when(databaseAdapter.beginNewTransaction()).thenReturn(transaction);
+        when(resourceStore.getLastUpdated(ResourceModel.Type.OPTION_SET)).thenReturn("2017-01-01T00:00:00.000");
+        when(optionSetStore.queryVersions()).thenReturn(storedVersions);
+        when(optionSetService.optionSets(anyBoolean(), any(Fields.class), any(Filter.class)))
+                .thenReturn(retrofitCall);
+        when(retrofitCall.execute()).thenReturn(
+                Response.success(Payload.create(null, Collections.<OptionSet>emptyList())));
+    }
+
+    @Test
+    public void call_shouldOnlyDownloadChangedOptionSets() throws Exception {
+        call(versions).call();
+
+        verify(optionSetService).optionSets(anyBoolean(), any(Fields.class), filterCaptor.capture());
+        assertThat(filterCaptor.getValue().values()).containsOnly("changed_uid", "new_uid");
+    }
+
+    @Test
+    public void call_shouldNotHitTheNetwork_ifNoOptionSetChanged() throws Exception {
+        versions.remove("changed_uid");
+        versions.remove("new_uid");
+
+        Response<Payload<OptionSet>> response = call(versions).call();
+
+        assertThat(response.isSuccessful()).isTrue();
+        assertThat(response.body().items()).isEmpty();
+        verify(optionSetService, never()).optionSets(anyBoolean(), any(Fields.class), any(Filter.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void call_shouldDownloadAllOptionSets_ifNeverSynced() throws Exception {
+        when(resourceStore.getLastUpdated(ResourceModel.Type.OPTION_SET)).thenReturn(null);
+
+        call(versions).call();
+
+        verify(optionSetService).optionSets(anyBoolean(), any(Fields.class), filterCaptor.capture());
+        assertThat(filterCaptor.getValue().values()).containsOnly("unchanged_uid", "changed_uid", "new_uid");
+    }
+
+    private OptionSetCall call(Map<String, Integer> versions) {
+        return new OptionSetCall(optionSetService, optionSetStore, databaseAdapter, resourceStore,
+                new HashSet<>(versions.keySet()), new Date(), optionStore, 0, versions);
+    }
+}
@@ -39,6 +39,7 @@ import java.util.Date;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -70,13 +71,10 @@ public class OptionSetHandlerTests {
     public void doNothing_shouldDoNothingWhenPassingInNull() throws Exception {
         optionSetHandler.handleOptionSet(null);
 
-        // verify that delete, update and insert is never called
+        // verify that delete and upsert are never called
         verify(optionSetStore, never()).delete(anyString());
 
-        verify(optionSetStore, never()).update(anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyInt(), any(ValueType.class), anyString());
-
-        verify(optionSetStore, never()).insert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
+        verify(optionSetStore, never()).upsert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
                 any(Date.class), anyInt(), any(ValueType.class));
 
     }
@@ -90,49 +88,31 @@ public class OptionSetHandlerTests {
         // verify that delete is called once
         verify(optionSetStore, times(1)).delete(optionSet.uid());
 
-        // verify that update and insert is never called
-        verify(optionSetStore, never()).update(anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyInt(), any(ValueType.class), anyString());
-
-        verify(optionSetStore, never()).insert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
+        verify(optionSetStore, never()).upsert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
                 any(Date.class), anyInt(), any(ValueType.class));
 
     }
 
     @Test
     public void update_shouldUpdateOptionSet() throws Exception {
-        when(optionSetStore.update(anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyInt(), any(ValueType.class), anyString())).thenReturn(1);
-
         optionSetHandler.handleOptionSet(optionSet);
 
-        // verify that update is called once
-        verify(optionSetStore, times(1)).update(anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyInt(), any(ValueType.class), anyString());
-
-        // verify that insert and delete is never called
-        verify(optionSetStore, never()).insert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
+        // verify that upsert is called once
+        verify(optionSetStore, times(1)).upsert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
                 any(Date.class), anyInt(), any(ValueType.class));
 
         verify(optionSetStore, never()).delete(anyString());
     }
 
     @Test
-    public void insert_shouldInsertOptionSet() throws Exception {
-        when(optionSetStore.update(anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyInt(), any(ValueType.class), anyString())).thenReturn(0);
+    public void reference_shouldOnlyInsertOptionSetIfNotExists() throws Exception {
+        optionSetHandler.handleOptionSetReference(optionSet);
 
-        optionSetHandler.handleOptionSet(optionSet);
+        verify(optionSetStore, times(1)).insertIfNotExists("test_option_set_uid");
 
-        // verify that insert is called once
-        verify(optionSetStore, times(1)).insert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
+        // the option set must not be overwritten by the reference
+        verify(optionSetStore, never()).upsert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
                 any(Date.class), anyInt(), any(ValueType.class));
-
-        // verify that update is called once since we update before we insert
-        verify(optionSetStore, times(1)).update(anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyInt(), any(ValueType.class), anyString());
-
-        // verify that delete is never called
-        verify(optionSetStore, never()).delete(anyString());
+        verify(optionHandler, never()).handleChangedOptions(anyString(), anyListOf(Option.class));
     }
 }
@@ -51,11 +51,18 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import java.io.IOException;
 import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.HttpsURLConnection;
 
@@ -67,8 +74,10 @@ import retrofit2.Response;
 import static junit.framework.Assert.fail;
 import static org.assertj.core.api.Java6Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -304,14 +313,61 @@ public class OrganisationUnitCallUnitTests {
         verify(transaction, times(1)).setSuccessful();
         verify(transaction, times(1)).end();
 
-        verify(organisationUnitStore, times(1)).insert(
-                anyString(), anyString(), anyString(), anyString(), any(Date.class), any(Date.class),
-                anyString(), anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyInt()
-        );
+        verify(organisationUnitStore, times(1)).upsert(anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyString(), anyInt());
         verify(resourceStore, times(1)).insert(anyString(), any(Date.class));
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void download_shouldDownloadRootsConcurrently_andMergeThemInOrderOfRoots() throws Exception {
+        when(organisationUnit.uid()).thenReturn("orgUnitUid1");
+        when(organisationUnit.path()).thenReturn("/root/orgUnitUid1");
+        when(organisationUnit2.uid()).thenReturn("orgUnitUid2");
+        when(organisationUnit2.path()).thenReturn("/root/orgUnitUid2");
+        when(user.organisationUnits()).thenReturn(Arrays.asList(organisationUnit, organisationUnit2));
+
+        // each sub-tree only returns once the other one has been requested as well
+        final CountDownLatch requested = new CountDownLatch(2);
+        when(organisationUnitService.getOrganisationUnits(anyString(), any(Fields.class), any(Filter.class),
+                anyBoolean(), anyBoolean())).thenAnswer(new Answer<retrofit2.Call<Payload<OrganisationUnit>>>() {
+                    @Override
+                    public retrofit2.Call<Payload<OrganisationUnit>> answer(InvocationOnMock invocation)
+                            throws IOException {
+                        String uid = (String) invocation.getArguments()[0];
+                        return subTreeCall(requested, "orgUnitUid1".equals(uid) ? organisationUnit : organisationUnit2);
+                    }
+                });
+
+        Response<Payload<OrganisationUnit>> response = organisationUnitCall.download();
+
+        List<OrganisationUnit> expected = new ArrayList<>();
+        for (String root : OrganisationUnitTree.findRoots(user.organisationUnits())) {
+            expected.add("orgUnitUid1".equals(root) ? organisationUnit : organisationUnit2);
+        }
+        assertThat(response.body().items()).isEqualTo(expected);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static retrofit2.Call<Payload<OrganisationUnit>> subTreeCall(
+            final CountDownLatch requested, OrganisationUnit root) throws IOException {
+        retrofit2.Call<Payload<OrganisationUnit>> call = mock(retrofit2.Call.class);
+        final Response<Payload<OrganisationUnit>> response =
+                Response.success(Payload.create(null, Collections.singletonList(root)));
+        when(call.execute()).thenAnswer(new Answer<Response<Payload<OrganisationUnit>>>() {
+            @Override
+            public Response<Payload<OrganisationUnit>> answer(InvocationOnMock invocation) throws Exception {
+                requested.countDown();
+                if (!requested.await(5, TimeUnit.SECONDS)) {
+                    throw new IOException("sub-trees have not been requested concurrently");
+                }
+                return response;
+            }
+        });
+        return call;
+    }
+
     @Test
     @SuppressWarnings("unchecked")
     public void call_shouldNotFail_onEmptyInput() {
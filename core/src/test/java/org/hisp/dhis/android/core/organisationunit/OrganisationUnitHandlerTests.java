@@ -37,10 +37,12 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.never;
@@ -104,164 +106,62 @@ public class OrganisationUnitHandlerTests {
 
         verify(organisationUnitStore, times(1)).delete(organisationUnit.uid());
 
-        verify(organisationUnitStore, never()).update(
-                anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyInt(), anyString()
-        );
-        verify(organisationUnitStore, never()).insert(
-                anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
+        verify(organisationUnitStore, never()).upsert(anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
                 any(Date.class), any(Date.class), anyString(), anyInt());
 
         // verify that link store is never invoked
-        verify(userOrganisationUnitLinkStore, never()).insert(anyString(), anyString(), anyString());
-        verify(userOrganisationUnitLinkStore, never()).update(
-                anyString(), anyString(), anyString(), anyString(), anyString(), anyString()
-        );
+        verify(userOrganisationUnitLinkStore, never()).addLinks(anyString(), anyString(),
+                anyCollectionOf(String.class));
     }
 
     @Test
     public void update_shouldUpdateOrganisationUnitAndLinkStore() throws Exception {
-        when(organisationUnitStore.update(anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyInt(), anyString())).thenReturn(1);
-
-        when(userOrganisationUnitLinkStore.update(
-                anyString(), anyString(), anyString(), anyString(), anyString(), anyString())
-        ).thenReturn(1);
-
         organisationUnitHandler.handleOrganisationUnits(organisationUnits, scope, user.uid());
 
-        // verify that update is called once
-        verify(organisationUnitStore, times(1)).update(
-                anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyInt(), anyString()
-        );
-
-        // verify that insert and delete is never called
-        verify(organisationUnitStore, never()).insert(
-                anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyInt()
-        );
+        // verify that upsert is called once
+        verify(organisationUnitStore, times(1)).upsert(anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyString(), anyInt());
 
         verify(organisationUnitStore, never()).delete(anyString());
 
-        // verify that link store #update method is called once
-        verify(userOrganisationUnitLinkStore, times(1)).update(
-                anyString(), anyString(), anyString(), anyString(),anyString(), anyString()
-        );
-
-        // verify that insert in link store is never called
-        verify(userOrganisationUnitLinkStore, never()).insert(anyString(), anyString(), anyString());
+        // verify that the organisation unit is linked to the user once
+        verify(userOrganisationUnitLinkStore, times(1)).addLinks("test_user_uid", scope.name(),
+                Collections.singletonList("test_organisation_unit_uid"));
     }
 
     @Test
     public void update_shouldUpdateOrganisationUnit() throws Exception {
-        when(organisationUnitStore.update(anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyInt(), anyString())).thenReturn(1);
-
         // we pass in null as scope parameter for not invoking the link store
         organisationUnitHandler.handleOrganisationUnits(organisationUnits, null, user.uid());
 
-        // verify that update is called once
-        verify(organisationUnitStore, times(1)).update(
-                anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyInt(), anyString()
-        );
-
-        // verify that insert and delete is never called
-        verify(organisationUnitStore, never()).insert(
-                anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyInt()
-        );
+        // verify that upsert is called once
+        verify(organisationUnitStore, times(1)).upsert(anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyString(), anyInt());
 
         verify(organisationUnitStore, never()).delete(anyString());
 
-        // verify that link store #update method is called once
-        verify(userOrganisationUnitLinkStore, never()).update(
-                anyString(), anyString(), anyString(), anyString(),anyString(), anyString()
-        );
-
         // verify that insert in link store is never called
-        verify(userOrganisationUnitLinkStore, never()).insert(anyString(), anyString(), anyString());
-    }
-
-    @Test
-    public void insert_shouldInsertOrganisationUnitAndInLinkStore() throws Exception {
-        when(organisationUnitStore.update(anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyInt(), anyString())).thenReturn(0);
-
-        when(userOrganisationUnitLinkStore.update(
-                anyString(), anyString(), anyString(), anyString(), anyString(), anyString())
-        ).thenReturn(0);
-
-        organisationUnitHandler.handleOrganisationUnits(organisationUnits, scope, user.uid());
-
-        // verify that insert is called once
-        verify(organisationUnitStore, times(1)).insert(
-                anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyInt()
-        );
-
-        // verify that update is called once since we try to update before we insert
-        verify(organisationUnitStore, times(1)).update(
-                anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyInt(), anyString()
-        );
-
-        // verify that delete is never called
-        verify(organisationUnitStore, never()).delete(anyString());
-
-        // verify that insert in link store is called once
-        verify(userOrganisationUnitLinkStore, times(1)).insert(anyString(), anyString(), anyString());
-
-
-        // verify that link store #update method is called once since we try to update before inserting
-        verify(userOrganisationUnitLinkStore, times(1)).update(
-                anyString(), anyString(), anyString(), anyString(),anyString(), anyString()
-        );
+        verify(userOrganisationUnitLinkStore, never()).addLinks(anyString(), anyString(),
+                anyCollectionOf(String.class));
     }
 
     @Test
     public void insert_shouldInsertOrganisationUnit() throws Exception {
-        when(organisationUnitStore.update(anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyInt(), anyString())).thenReturn(0);
-
-
         organisationUnitHandler.handleOrganisationUnits(organisationUnits, null, null);
 
-        // verify that insert is called once
-        verify(organisationUnitStore, times(1)).insert(
-                anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyInt()
-        );
-
-        // verify that update is called once since we try to update before we insert
-        verify(organisationUnitStore, times(1)).update(
-                anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyInt(), anyString()
-        );
+        // verify that upsert is called once
+        verify(organisationUnitStore, times(1)).upsert(anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyString(), anyInt());
 
         // verify that delete is never called
         verify(organisationUnitStore, never()).delete(anyString());
 
         // verify that link store is never called
-        verify(userOrganisationUnitLinkStore, never()).insert(anyString(), anyString(), anyString());
-
-        verify(userOrganisationUnitLinkStore, never()).update(
-                anyString(), anyString(), anyString(), anyString(),anyString(), anyString()
-        );
+        verify(userOrganisationUnitLinkStore, never()).addLinks(anyString(), anyString(),
+                anyCollectionOf(String.class));
     }
 }
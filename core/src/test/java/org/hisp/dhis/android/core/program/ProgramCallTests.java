@@ -29,8 +29,12 @@ package org.hisp.dhis.android.core.program;
 
 import android.database.Cursor;
 
+import android.support.annotation.NonNull;
+
+import org.hisp.dhis.android.core.Inject;
 import org.hisp.dhis.android.core.common.Call;
 import org.hisp.dhis.android.core.common.Payload;
+import org.hisp.dhis.android.core.common.PayloadParser;
 import org.hisp.dhis.android.core.data.api.Fields;
 import org.hisp.dhis.android.core.data.api.Filter;
 import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
@@ -47,6 +51,7 @@ import org.hisp.dhis.android.core.resource.ResourceStore;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntity;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttribute;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttributeStore;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityStore;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -60,10 +65,12 @@ import org.mockito.MockitoAnnotations;
 
 import java.io.IOException;
 import java.net.HttpURLConnection;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import okhttp3.MediaType;
@@ -137,12 +144,18 @@ public class ProgramCallTests {
     @Mock
     private RelationshipTypeStore relationshipStore;
 
+    @Mock
+    private TrackedEntityStore trackedEntityStore;
+
     @Mock
     private ResourceStore resourceStore;
 
     @Mock(answer = Answers.RETURNS_DEEP_STUBS)
     private retrofit2.Call<Payload<Program>> programCall;
 
+    @Mock
+    private retrofit2.Call<ResponseBody> programStreamCall;
+
     @Mock
     private Program program;
 
@@ -190,7 +203,7 @@ public class ProgramCallTests {
                 programTrackedEntityAttributeStore, programRuleVariableStore, programIndicatorStore,
                 programStageSectionProgramIndicatorLinkStore, programRuleActionStore, programRuleStore,
                 optionStore, optionSetStore, dataElementStore, programStageDataElementStore,
-                programStageSectionStore, programStageStore, relationshipStore
+                programStageSectionStore, programStageStore, relationshipStore, trackedEntityStore
         );
 
         when(program.uid()).thenReturn("test_program_uid");
@@ -210,6 +223,10 @@ public class ProgramCallTests {
         when(programService.getPrograms(any(Fields.class), any(Filter.class), any(Filter.class), anyBoolean())
         ).thenReturn(programCall);
 
+        when(programService.streamPrograms(any(Fields.class), any(Filter.class), any(Filter.class), anyBoolean(),
+                anyInt(), anyInt())
+        ).thenReturn(programStreamCall);
+
         when(databaseAdapter.beginNewTransaction()).thenReturn(transaction);
 
     }
@@ -406,17 +423,11 @@ public class ProgramCallTests {
         verify(transaction, never()).end();
 
         // verify that program store is never called
-        verify(programStore, never()).insert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyInt(),
-                anyBoolean(), anyString(), anyBoolean(), anyString(), anyBoolean(), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(),
-                any(ProgramType.class), anyString(), anyString(), anyString(), anyString());
-
-        verify(programStore, never()).update(anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyInt(),
-                anyBoolean(), anyString(), anyBoolean(), anyString(), anyBoolean(), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(),
-                any(ProgramType.class), anyString(), anyString(), anyString(), anyString(), anyString());
+        verify(programStore, never()).upsert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
+                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyInt(), anyBoolean(),
+                anyString(), anyBoolean(), anyString(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(),
+                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), any(ProgramType.class),
+                anyString(), anyString(), anyString(), anyString());
 
         verify(programStore, never()).delete(anyString());
 
@@ -442,11 +453,11 @@ public class ProgramCallTests {
         // assert that payload contains 3 times and all is handled by ProgramHandler
         assertThat(payload.items().size()).isEqualTo(3);
 
-        verify(programStore, times(3)).insert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyInt(),
-                anyBoolean(), anyString(), anyBoolean(), anyString(), anyBoolean(), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(),
-                any(ProgramType.class), anyString(), anyString(), anyString(), anyString());
+        verify(programStore, times(3)).upsert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
+                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyInt(), anyBoolean(),
+                anyString(), anyBoolean(), anyString(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(),
+                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), any(ProgramType.class),
+                anyString(), anyString(), anyString(), anyString());
 
         verify(resourceStore, times(1)).update(anyString(), any(Date.class), anyString());
 
@@ -472,11 +483,11 @@ public class ProgramCallTests {
         assertThat(payload.items().size()).isEqualTo(3);
 
         // verify that insert is called 3 times in program store
-        verify(programStore, times(3)).insert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyInt(),
-                anyBoolean(), anyString(), anyBoolean(), anyString(), anyBoolean(), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(),
-                any(ProgramType.class), anyString(), anyString(), anyString(), anyString());
+        verify(programStore, times(3)).upsert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
+                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyInt(), anyBoolean(),
+                anyString(), anyBoolean(), anyString(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(),
+                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), any(ProgramType.class),
+                anyString(), anyString(), anyString(), anyString());
 
         // we need to verify that resource store is invoked with update since we update before we insert
         verify(resourceStore, times(1)).update(anyString(), any(Date.class), anyString());
@@ -507,12 +518,12 @@ public class ProgramCallTests {
         // only 1 program in payload (See setUp method)
         assertThat(payload.items().size()).isEqualTo(1);
 
-        // verify that insert is called once in program store
-        verify(programStore, times(1)).insert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
-                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyInt(),
-                anyBoolean(), anyString(), anyBoolean(), anyString(), anyBoolean(), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(),
-                any(ProgramType.class), anyString(), anyString(), anyString(), anyString());
+        // verify that upsert is called once in program store
+        verify(programStore, times(1)).upsert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
+                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyInt(), anyBoolean(),
+                anyString(), anyBoolean(), anyString(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(),
+                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), any(ProgramType.class),
+                anyString(), anyString(), anyString(), anyString());
     }
 
     @Test
@@ -544,4 +555,92 @@ public class ProgramCallTests {
         assertThat(programSyncCall.isExecuted()).isTrue();
 
     }
+
+    @Test
+    public void call_shouldHandleStreamedPrograms_inStreamingMode() throws Exception {
+        when(programStreamCall.execute()).thenReturn(Response.success(programsBody()));
+
+        Response<Payload<Program>> response = streamingProgramCall(null).call();
+
+        assertThat(response.isSuccessful()).isTrue();
+        assertThat(response.body().items()).isEmpty();
+        verify(programService, never()).getPrograms(
+                any(Fields.class), any(Filter.class), any(Filter.class), anyBoolean());
+
+        verify(databaseAdapter, times(1)).beginNewTransaction();
+        InOrder transactionMethodsOrder = inOrder(transaction);
+        transactionMethodsOrder.verify(transaction, times(1)).setSuccessful();
+        transactionMethodsOrder.verify(transaction, times(1)).end();
+
+        verify(programStore, times(2)).upsert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
+                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyInt(), anyBoolean(),
+                anyString(), anyBoolean(), anyString(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(),
+                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), any(ProgramType.class),
+                anyString(), anyString(), anyString(), anyString());
+        verify(resourceStore, times(1)).update(anyString(), any(Date.class), anyString());
+    }
+
+    @Test
+    public void download_shouldNotifyListenerWhileSpooling_withoutPersisting_inStreamingMode() throws Exception {
+        when(programStreamCall.execute()).thenReturn(Response.success(programsBody()));
+        final List<String> downloadedUids = new ArrayList<>();
+        ProgramCall streamingProgramCall = streamingProgramCall(new PayloadParser.ItemHandler<Program>() {
+            @Override
+            public void handle(@NonNull Program program) {
+                downloadedUids.add(program.uid());
+            }
+        });
+
+        Response<Payload<Program>> response = streamingProgramCall.download();
+
+        assertThat(downloadedUids).containsExactly("IpHINAT79UW", "eBAyeGv0exc");
+        verify(databaseAdapter, never()).beginNewTransaction();
+        verify(programStore, never()).upsert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
+                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyInt(), anyBoolean(),
+                anyString(), anyBoolean(), anyString(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(),
+                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), any(ProgramType.class),
+                anyString(), anyString(), anyString(), anyString());
+
+        streamingProgramCall.persist(response);
+
+        // the spool files are not parsed for the listener again
+        assertThat(downloadedUids).containsExactly("IpHINAT79UW", "eBAyeGv0exc");
+        verify(transaction, times(1)).setSuccessful();
+        verify(programStore, times(2)).upsert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
+                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyInt(), anyBoolean(),
+                anyString(), anyBoolean(), anyString(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(),
+                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), any(ProgramType.class),
+                anyString(), anyString(), anyString(), anyString());
+    }
+
+    @Test
+    public void call_shouldNotOpenTransactionIfStreamingRequestFail() throws Exception {
+        when(programStreamCall.execute()).thenReturn(Response.<ResponseBody>error(
+                HttpURLConnection.HTTP_UNAUTHORIZED, ResponseBody.create(MediaType.parse("application/json"), "{}")));
+
+        Response<Payload<Program>> response = streamingProgramCall(null).call();
+
+        assertThat(response.code()).isEqualTo(HttpURLConnection.HTTP_UNAUTHORIZED);
+        verify(databaseAdapter, never()).beginNewTransaction();
+    }
+
+    private ProgramCall streamingProgramCall(PayloadParser.ItemHandler<Program> downloadListener) {
+        return new ProgramCall(programService, databaseAdapter,
+                resourceStore, uids, programStore, serverDate, trackedEntityAttributeStore,
+                programTrackedEntityAttributeStore, programRuleVariableStore, programIndicatorStore,
+                programStageSectionProgramIndicatorLinkStore, programRuleActionStore, programRuleStore,
+                optionStore, optionSetStore, dataElementStore, programStageDataElementStore,
+                programStageSectionStore, programStageStore, relationshipStore, trackedEntityStore,
+                Inject.objectMapper(), downloadListener, 0
+        );
+    }
+
+    private static ResponseBody programsBody() {
+        return ResponseBody.create(MediaType.parse("application/json"), "{\n" +
+                "    \"programs\": [\n" +
+                "        {\"id\": \"IpHINAT79UW\", \"name\": \"Child Programme\"},\n" +
+                "        {\"id\": \"eBAyeGv0exc\", \"name\": \"Inpatient morbidity and mortality\"}\n" +
+                "    ]\n" +
+                "}");
+    }
 }
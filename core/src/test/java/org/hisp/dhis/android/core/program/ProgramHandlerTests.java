@@ -27,9 +27,11 @@
  */
 package org.hisp.dhis.android.core.program;
 
+import org.hisp.dhis.android.core.common.ChangeDetector;
 import org.hisp.dhis.android.core.relationship.RelationshipType;
 import org.hisp.dhis.android.core.relationship.RelationshipTypeHandler;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntity;
+import org.hisp.dhis.android.core.trackedentity.TrackedEntityHandler;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -86,18 +88,25 @@ public class ProgramHandlerTests {
     @Mock
     private RelationshipTypeHandler relationshipTypeHandler;
 
+    @Mock
+    private TrackedEntityHandler trackedEntityHandler;
+
     // object to test
     private ProgramHandler programHandler;
 
+    @Mock
+    private ChangeDetector changeDetector;
+
     @Before
     public void setUp() throws Exception {
         MockitoAnnotations.initMocks(this);
+        when(changeDetector.hasChanged(anyString(), anyString(), any(Date.class))).thenReturn(true);
 
         programHandler = new ProgramHandler(
                 programStore, programRuleVariableHandler,
                 programStageHandler, programIndicatorHandler,
                 programRuleHandler, programTrackedEntityAttributeHandler,
-                relationshipTypeHandler);
+                relationshipTypeHandler, trackedEntityHandler, changeDetector);
         when(relationshipType.uid()).thenReturn("relationshipTypeUid");
 
         when(program.uid()).thenReturn("test_program_uid");
@@ -146,20 +155,12 @@ public class ProgramHandlerTests {
         // check that program store is invoked with delete method
         verify(programStore, times(1)).delete(anyString());
 
-        // check that update and insert is never called
-        verify(programStore, never()).insert(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
-                anyInt(), anyBoolean(), anyString(), anyBoolean(), anyString(), anyBoolean(),
-                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyBoolean(), any(ProgramType.class), anyString(), anyString(),
-                anyString(), anyString());
-
-        verify(programStore, never()).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
-                anyInt(), anyBoolean(), anyString(), anyBoolean(), anyString(), anyBoolean(),
-                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyBoolean(), any(ProgramType.class), anyString(), anyString(),
-                anyString(), anyString(), anyString());
+        // check that upsert is never called
+        verify(programStore, never()).upsert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
+                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyInt(), anyBoolean(),
+                anyString(), anyBoolean(), anyString(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(),
+                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), any(ProgramType.class),
+                anyString(), anyString(), anyString(), anyString());
 
         // verify that all the handlers is called once
 
@@ -174,30 +175,14 @@ public class ProgramHandlerTests {
 
     @Test
     public void insert_shouldInsertProgram() throws Exception {
-        when(programStore.update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
-                anyInt(), anyBoolean(), anyString(), anyBoolean(), anyString(), anyBoolean(),
-                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyBoolean(), any(ProgramType.class), anyString(), anyString(),
-                anyString(), anyString(), anyString())).thenReturn(0);
-
         programHandler.handleProgram(program);
 
         // verify that insert is called
-        verify(programStore, times(1)).insert(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
-                anyInt(), anyBoolean(), anyString(), anyBoolean(), anyString(), anyBoolean(),
-                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyBoolean(), any(ProgramType.class), anyString(), anyString(),
-                anyString(), anyString());
-
-        // verify that update is called since we update before we can insert
-        verify(programStore, times(1)).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
-                anyInt(), anyBoolean(), anyString(), anyBoolean(), anyString(), anyBoolean(),
-                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyBoolean(), any(ProgramType.class), anyString(), anyString(),
-                anyString(), anyString(), anyString());
+        verify(programStore, times(1)).upsert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
+                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyInt(), anyBoolean(),
+                anyString(), anyBoolean(), anyString(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(),
+                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), any(ProgramType.class),
+                anyString(), anyString(), anyString(), anyString());
 
         // verify that delete is never called
         verify(programStore, never()).delete(anyString());
@@ -211,35 +196,19 @@ public class ProgramHandlerTests {
         verify(programIndicatorHandler, times(1)).handleProgramIndicator(null, program.programIndicators());
         verify(programRuleHandler, times(1)).handleProgramRules(program.programRules());
         verify(programRuleVariableHandler, times(1)).handleProgramRuleVariables(program.programRuleVariables());
-
+        verify(trackedEntityHandler, times(1)).handleTrackedEntityReference(trackedEntity);
     }
 
     @Test
     public void update_shouldUpdateProgram() throws Exception {
-        when(programStore.update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
-                anyInt(), anyBoolean(), anyString(), anyBoolean(), anyString(), anyBoolean(),
-                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyBoolean(), any(ProgramType.class), anyString(), anyString(),
-                anyString(), anyString(), anyString())).thenReturn(1);
-
         programHandler.handleProgram(program);
 
         // verify that update is called
-        verify(programStore, times(1)).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
-                anyInt(), anyBoolean(), anyString(), anyBoolean(), anyString(), anyBoolean(),
-                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyBoolean(), any(ProgramType.class), anyString(), anyString(),
-                anyString(), anyString(), anyString());
-
-        // check that insert and delete is never called
-        verify(programStore, never()).insert(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
-                anyInt(), anyBoolean(), anyString(), anyBoolean(), anyString(), anyBoolean(),
-                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyBoolean(), any(ProgramType.class), anyString(), anyString(),
-                anyString(), anyString());
+        verify(programStore, times(1)).upsert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
+                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyInt(), anyBoolean(),
+                anyString(), anyBoolean(), anyString(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(),
+                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), any(ProgramType.class),
+                anyString(), anyString(), anyString(), anyString());
 
         verify(programStore, never()).delete(anyString());
 
@@ -259,22 +228,14 @@ public class ProgramHandlerTests {
         programHandler.handleProgram(null);
 
         // verify that programStore is never called with insert, update or delete
-        verify(programStore, never()).insert(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
-                anyInt(), anyBoolean(), anyString(), anyBoolean(), anyString(), anyBoolean(),
-                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyBoolean(), any(ProgramType.class), anyString(), anyString(),
-                anyString(), anyString());
+        verify(programStore, never()).upsert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
+                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyInt(), anyBoolean(),
+                anyString(), anyBoolean(), anyString(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(),
+                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), any(ProgramType.class),
+                anyString(), anyString(), anyString(), anyString());
 
         verify(programStore, never()).delete(anyString());
 
-        verify(programStore, never()).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
-                anyInt(), anyBoolean(), anyString(), anyBoolean(), anyString(), anyBoolean(),
-                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyBoolean(), any(ProgramType.class), anyString(), anyString(),
-                anyString(), anyString(), anyString());
-
         // verify that handlers is never called
         verify(programStageHandler, never()).handleProgramStage(anyString(), anyListOf(ProgramStage.class));
         verify(programTrackedEntityAttributeHandler, never()).handleProgramTrackedEntityAttributes(
@@ -27,6 +27,7 @@
  */
 package org.hisp.dhis.android.core.program;
 
+import org.hisp.dhis.android.core.common.ChangeDetector;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -35,11 +36,13 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyCollectionOf;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.never;
@@ -67,12 +70,16 @@ public class ProgramIndicatorHandlerTests {
     // list of program indicators
     private List<ProgramIndicator> programIndicators;
 
+    @Mock
+    private ChangeDetector changeDetector;
+
     @Before
     public void setUp() throws Exception {
         MockitoAnnotations.initMocks(this);
+        when(changeDetector.hasChanged(anyString(), anyString(), any(Date.class))).thenReturn(true);
 
         programIndicatorHandler = new ProgramIndicatorHandler(
-                programIndicatorStore, programStageSectionProgramIndicatorLinkStore
+                programIndicatorStore, programStageSectionProgramIndicatorLinkStore, changeDetector
         );
 
         when(programIndicator.uid()).thenReturn("test_program_indicator_uid");
@@ -89,23 +96,14 @@ public class ProgramIndicatorHandlerTests {
         // verify that program indicator store is never called
         verify(programIndicatorStore, never()).delete(anyString());
 
-        verify(programIndicatorStore, never()).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
-                anyBoolean(), anyString(), anyString(), anyString(), anyInt(), anyString(), anyString());
-
-        verify(programIndicatorStore, never()).insert(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
-                anyBoolean(), anyString(), anyString(), anyString(), anyInt(), anyString());
-
-        // verify that link store is never called
-        verify(programStageSectionProgramIndicatorLinkStore, never()).update(
-                anyString(), anyString(), anyString(), anyString()
-        );
+        verify(programIndicatorStore, never()).upsert(anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(), anyBoolean(),
+                anyString(), anyString(), anyString(), anyInt(), anyString());
 
-        verify(programStageSectionProgramIndicatorLinkStore, never()).insert(anyString(), anyString());
+        verify(programStageSectionProgramIndicatorLinkStore, never()).replaceLinks(anyString(),
+                anyCollectionOf(String.class));
     }
 
-
     @Test
     public void delete_shouldDeleteProgramIndicator() throws Exception {
         when(programIndicator.deleted()).thenReturn(Boolean.TRUE);
@@ -115,163 +113,74 @@ public class ProgramIndicatorHandlerTests {
         // verify that delete is called once
         verify(programIndicatorStore, times(1)).delete(programIndicator.uid());
 
-        // verify that update and insert is never called
-        verify(programIndicatorStore, never()).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
-                anyBoolean(), anyString(), anyString(), anyString(), anyInt(), anyString(), anyString());
-
-        verify(programIndicatorStore, never()).insert(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
-                anyBoolean(), anyString(), anyString(), anyString(), anyInt(), anyString());
-
-        // verify that link store is never called because it is self-maintained through sqLite
-        verify(programStageSectionProgramIndicatorLinkStore, never()).update(
-                anyString(), anyString(), anyString(), anyString()
-        );
+        verify(programIndicatorStore, never()).upsert(anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(), anyBoolean(),
+                anyString(), anyString(), anyString(), anyInt(), anyString());
 
-        verify(programStageSectionProgramIndicatorLinkStore, never()).insert(anyString(), anyString());
+        verify(programStageSectionProgramIndicatorLinkStore, never()).replaceLinks(anyString(),
+                anyCollectionOf(String.class));
     }
 
     @Test
     public void update_shouldUpdateProgramIndicatorWithoutProgramStageSection() throws Exception {
-        when(programIndicatorStore.update(
-                anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(),
-                anyString(), anyString(), anyBoolean(), anyString(), anyString(),
-                anyString(), anyInt(), anyString(), anyString())).thenReturn(1);
-
         programIndicatorHandler.handleProgramIndicator(null, programIndicators);
 
-        // verify that update is called once
-        verify(programIndicatorStore, times(1)).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(),
-                anyString(), anyString(), anyBoolean(), anyString(), anyString(),
-                anyString(), anyInt(), anyString(), anyString());
-
-        // verify that insert and delete is never called
-        verify(programIndicatorStore, never()).insert(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(),
-                anyString(), anyString(), anyBoolean(), anyString(), anyString(),
-                anyString(), anyInt(), anyString());
+        // verify that upsert is called once
+        verify(programIndicatorStore, times(1)).upsert(anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(), anyBoolean(),
+                anyString(), anyString(), anyString(), anyInt(), anyString());
 
         verify(programIndicatorStore, never()).delete(anyString());
 
-        // verify that link store is never called since we're passing in null program stage section uid
-        verify(programStageSectionProgramIndicatorLinkStore, never()).update(
-                anyString(), anyString(), anyString(), anyString()
-        );
-
-        verify(programStageSectionProgramIndicatorLinkStore, never()).insert(anyString(), anyString());
+        verify(programStageSectionProgramIndicatorLinkStore, never()).replaceLinks(anyString(),
+                anyCollectionOf(String.class));
 
     }
 
     @Test
     public void update_shouldUpdateProgramIndicatorWithProgramStageSection() throws Exception {
-        when(programIndicatorStore.update(
-                anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(),
-                anyString(), anyString(), anyBoolean(), anyString(), anyString(),
-                anyString(), anyInt(), anyString(), anyString())).thenReturn(1);
-
-        when(programStageSectionProgramIndicatorLinkStore.update(
-                anyString(), anyString(), anyString(), anyString())
-        ).thenReturn(1);
-
         programIndicatorHandler.handleProgramIndicator("test_program_stage_section", programIndicators);
 
-        // verify that update is called once
-        verify(programIndicatorStore, times(1)).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(),
-                anyString(), anyString(), anyBoolean(), anyString(), anyString(),
-                anyString(), anyInt(), anyString(), anyString());
-
-        // verify that insert and delete is never called
-        verify(programIndicatorStore, never()).insert(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(),
-                anyString(), anyString(), anyBoolean(), anyString(), anyString(),
-                anyString(), anyInt(), anyString());
+        // verify that upsert is called once
+        verify(programIndicatorStore, times(1)).upsert(anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(), anyBoolean(),
+                anyString(), anyString(), anyString(), anyInt(), anyString());
 
         verify(programIndicatorStore, never()).delete(anyString());
 
-        // verify that link store is updated
-        verify(programStageSectionProgramIndicatorLinkStore, times(1)).update(
-                anyString(), anyString(), anyString(), anyString()
-        );
-
-        verify(programStageSectionProgramIndicatorLinkStore, never()).insert(anyString(), anyString());
+        // verify that the links of the section are replaced
+        verify(programStageSectionProgramIndicatorLinkStore, times(1)).replaceLinks("test_program_stage_section",
+                Collections.singletonList("test_program_indicator_uid"));
     }
 
     @Test
-    public void insert_shouldInsertProgramIndicatorWithoutProgramStageSection() throws Exception {
-        when(programIndicatorStore.update(
-                anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(),
-                anyString(), anyString(), anyBoolean(), anyString(), anyString(),
-                anyString(), anyInt(), anyString(), anyString())).thenReturn(0);
-
-        programIndicatorHandler.handleProgramIndicator(null, programIndicators);
-
-        // verify that insert is called once
-        verify(programIndicatorStore, times(1)).insert(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(),
-                anyString(), anyString(), anyBoolean(), anyString(), anyString(),
-                anyString(), anyInt(), anyString());
-
-        // verify that update is called since we update before we insert
-        verify(programIndicatorStore, times(1)).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(),
-                anyString(), anyString(), anyBoolean(), anyString(), anyString(),
-                anyString(), anyInt(), anyString(), anyString());
-
-        // verify that delete is never called
-        verify(programIndicatorStore, never()).delete(anyString());
+    public void delete_shouldUnlinkDeletedProgramIndicatorFromProgramStageSection() throws Exception {
+        when(programIndicator.deleted()).thenReturn(Boolean.TRUE);
 
-        // verify that link store is never called
-        verify(programStageSectionProgramIndicatorLinkStore, never()).update(
-                anyString(), anyString(), anyString(), anyString()
-        );
+        programIndicatorHandler.handleProgramIndicator("test_program_stage_section_uid", programIndicators);
 
-        verify(programStageSectionProgramIndicatorLinkStore, never()).insert(anyString(), anyString());
+        verify(programIndicatorStore, times(1)).delete("test_program_indicator_uid");
 
+        // verify that the section keeps no link to the deleted program indicator
+        verify(programStageSectionProgramIndicatorLinkStore, times(1)).replaceLinks(
+                "test_program_stage_section_uid", Collections.<String>emptyList());
     }
 
-
     @Test
     public void insert_shouldInsertProgramIndicatorWithProgramStageSection() throws Exception {
-        when(programIndicatorStore.update(
-                anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(),
-                anyString(), anyString(), anyBoolean(), anyString(), anyString(),
-                anyString(), anyInt(), anyString(), anyString())).thenReturn(0);
-
-        when(programStageSectionProgramIndicatorLinkStore.update(
-                anyString(), anyString(), anyString(), anyString())
-        ).thenReturn(0);
-
         programIndicatorHandler.handleProgramIndicator("test_program_stage_section_uid", programIndicators);
 
-        // verify that insert is called once
-        verify(programIndicatorStore, times(1)).insert(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(),
-                anyString(), anyString(), anyBoolean(), anyString(), anyString(),
-                anyString(), anyInt(), anyString());
-
-        // verify that update is called since we update before we insert
-        verify(programIndicatorStore, times(1)).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(),
-                anyString(), anyString(), anyBoolean(), anyString(), anyString(),
-                anyString(), anyInt(), anyString(), anyString());
+        // verify that upsert is called once
+        verify(programIndicatorStore, times(1)).upsert(anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(), anyBoolean(),
+                anyString(), anyString(), anyString(), anyInt(), anyString());
 
         // verify that delete is never called
         verify(programIndicatorStore, never()).delete(anyString());
 
-        // verify that link store's insert method is called once
-        verify(programStageSectionProgramIndicatorLinkStore, times(1)).insert(anyString(), anyString());
-
-        // verify that link store's update method is called once since we try to update before we insert
-        verify(programStageSectionProgramIndicatorLinkStore, times(1)).update(
-                anyString(), anyString(), anyString(), anyString()
-        );
+        // verify that the links of the section are replaced once
+        verify(programStageSectionProgramIndicatorLinkStore, times(1)).replaceLinks(
+                "test_program_stage_section_uid", Collections.singletonList("test_program_indicator_uid"));
 
     }
 }
@@ -27,6 +27,7 @@
  */
 package org.hisp.dhis.android.core.program;
 
+import org.hisp.dhis.android.core.common.ChangeDetector;
 import org.hisp.dhis.android.core.dataelement.DataElement;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttribute;
 import org.junit.Before;
@@ -80,10 +81,14 @@ public class ProgramRuleActionHandlerTests {
     // list of program rule actions
     private List<ProgramRuleAction> programRuleActions;
 
+    @Mock
+    private ChangeDetector changeDetector;
+
     @Before
     public void setUp() throws Exception {
         MockitoAnnotations.initMocks(this);
-        programRuleActionHandler = new ProgramRuleActionHandler(programRuleActionStore);
+        when(changeDetector.hasChanged(anyString(), anyString(), any(Date.class))).thenReturn(true);
+        programRuleActionHandler = new ProgramRuleActionHandler(programRuleActionStore, changeDetector);
 
         when(programRuleAction.uid()).thenReturn("test_program_rule_action_uid");
         when(programStage.uid()).thenReturn("test_program_stage_uid");
@@ -110,14 +115,10 @@ public class ProgramRuleActionHandlerTests {
 
         // verify that store is never called
         verify(programRuleActionStore, never()).delete(anyString());
-        verify(programRuleActionStore, never()).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
-                anyString(), anyString(), any(ProgramRuleActionType.class), anyString(), anyString(), anyString(),
-                anyString());
 
-        verify(programRuleActionStore, never()).insert(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
-                anyString(), anyString(), any(ProgramRuleActionType.class), anyString(), anyString(), anyString());
+        verify(programRuleActionStore, never()).upsert(anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
+                anyString(), any(ProgramRuleActionType.class), anyString(), anyString(), anyString());
 
     }
 
@@ -130,63 +131,22 @@ public class ProgramRuleActionHandlerTests {
         // verify that delete is called once
         verify(programRuleActionStore, times(1)).delete(anyString());
 
-        // verify that update and insert is never called
-        verify(programRuleActionStore, never()).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
-                anyString(), anyString(), any(ProgramRuleActionType.class), anyString(), anyString(), anyString(),
-                anyString());
-
-        verify(programRuleActionStore, never()).insert(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
-                anyString(), anyString(), any(ProgramRuleActionType.class), anyString(), anyString(), anyString());
+        verify(programRuleActionStore, never()).upsert(anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
+                anyString(), any(ProgramRuleActionType.class), anyString(), anyString(), anyString());
 
     }
 
     @Test
     public void update_shouldUpdateProgramRuleAction() throws Exception {
-        when(programRuleActionStore.update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
-                anyString(), anyString(), any(ProgramRuleActionType.class), anyString(), anyString(), anyString(),
-                anyString())).thenReturn(1);
-
         programRuleActionHandler.handleProgramRuleActions(programRuleActions);
 
-        // verify that update is called once
-        verify(programRuleActionStore, times(1)).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
-                anyString(), anyString(), any(ProgramRuleActionType.class), anyString(), anyString(), anyString(),
-                anyString());
-
-        // verify that insert and delete is never called
-        verify(programRuleActionStore, never()).insert(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
-                anyString(), anyString(), any(ProgramRuleActionType.class), anyString(), anyString(), anyString());
+        // verify that upsert is called once
+        verify(programRuleActionStore, times(1)).upsert(anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
+                anyString(), any(ProgramRuleActionType.class), anyString(), anyString(), anyString());
 
         verify(programRuleActionStore, never()).delete(anyString());
 
     }
-
-    @Test
-    public void insert_shouldInsertProgramRuleAction() throws Exception {
-        when(programRuleActionStore.update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
-                anyString(), anyString(), any(ProgramRuleActionType.class), anyString(), anyString(), anyString(),
-                anyString())).thenReturn(0);
-
-        programRuleActionHandler.handleProgramRuleActions(programRuleActions);
-
-        // verify that insert is called once
-        verify(programRuleActionStore, times(1)).insert(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
-                anyString(), anyString(), any(ProgramRuleActionType.class), anyString(), anyString(), anyString());
-
-        // verify that update is called once since we try to update before we insert
-        verify(programRuleActionStore, times(1)).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
-                anyString(), anyString(), any(ProgramRuleActionType.class), anyString(),
-                anyString(), anyString(), anyString());
-
-        // verify that delete is never called
-        verify(programRuleActionStore, never()).delete(anyString());
-    }
 }
@@ -27,6 +27,7 @@
  */
 package org.hisp.dhis.android.core.program;
 
+import org.hisp.dhis.android.core.common.ChangeDetector;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -70,10 +71,14 @@ public class ProgramRuleHandlerTests {
     // list of program rules
     private List<ProgramRule> programRules;
 
+    @Mock
+    private ChangeDetector changeDetector;
+
     @Before
     public void setUp() throws Exception {
         MockitoAnnotations.initMocks(this);
-        programRuleHandler = new ProgramRuleHandler(programRuleStore, programRuleActionHandler);
+        when(changeDetector.hasChanged(anyString(), anyString(), any(Date.class))).thenReturn(true);
+        programRuleHandler = new ProgramRuleHandler(programRuleStore, programRuleActionHandler, changeDetector);
 
         when(programRule.uid()).thenReturn("test_program_rule_uid");
         when(programRule.program()).thenReturn(program);
@@ -91,12 +96,8 @@ public class ProgramRuleHandlerTests {
         // verify that store is never called
         verify(programRuleStore, never()).delete(anyString());
 
-        verify(programRuleStore, never()).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyInt(), anyString(), anyString(), anyString(),
-                anyString());
-
-        verify(programRuleStore, never()).insert(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyInt(), anyString(), anyString(), anyString());
+        verify(programRuleStore, never()).upsert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
+                any(Date.class), anyInt(), anyString(), anyString(), anyString());
 
         // verify that program rule action handler is never called
         verify(programRuleActionHandler, never()).handleProgramRuleActions(anyListOf(ProgramRuleAction.class));
@@ -112,13 +113,8 @@ public class ProgramRuleHandlerTests {
         // verify that delete is called once
         verify(programRuleStore, times(1)).delete(anyString());
 
-        // verify that update and insert is never called
-        verify(programRuleStore, never()).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyInt(), anyString(), anyString(), anyString(),
-                anyString());
-
-        verify(programRuleStore, never()).insert(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyInt(), anyString(), anyString(), anyString());
+        verify(programRuleStore, never()).upsert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
+                any(Date.class), anyInt(), anyString(), anyString(), anyString());
 
         // verify that program rule action handler is called
         verify(programRuleActionHandler, times(1)).handleProgramRuleActions(anyListOf(ProgramRuleAction.class));
@@ -126,44 +122,12 @@ public class ProgramRuleHandlerTests {
 
     @Test
     public void update_shouldUpdateProgramRule() throws Exception {
-        when(programRuleStore.update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyInt(), anyString(), anyString(), anyString(),
-                anyString())).thenReturn(1);
-
-        programRuleHandler.handleProgramRules(programRules);
-
-        // verify that update is called once
-        verify(programRuleStore, times(1)).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyInt(), anyString(), anyString(), anyString(),
-                anyString());
-
-        // verify that insert and delete is never called
-        verify(programRuleStore, never()).insert(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyInt(), anyString(), anyString(), anyString());
-
-        verify(programRuleStore, never()).delete(anyString());
-
-        // verify that program rule action handler is called
-        verify(programRuleActionHandler, times(1)).handleProgramRuleActions(anyListOf(ProgramRuleAction.class));
-    }
-
-    @Test
-    public void insert_shouldInsertProgramRule() throws Exception {
-        when(programRuleStore.update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyInt(), anyString(), anyString(), anyString(),
-                anyString())).thenReturn(0);
-
         programRuleHandler.handleProgramRules(programRules);
 
-        // verify that insert is called once
-        verify(programRuleStore, times(1)).insert(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyInt(), anyString(), anyString(), anyString());
-
-        // verify that update is called once since we try to update before we insert
-        verify(programRuleStore, times(1)).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyInt(), anyString(), anyString(), anyString(), anyString());
+        // verify that upsert is called once
+        verify(programRuleStore, times(1)).upsert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
+                any(Date.class), anyInt(), anyString(), anyString(), anyString());
 
-        // verify that delete is never called
         verify(programRuleStore, never()).delete(anyString());
 
         // verify that program rule action handler is called
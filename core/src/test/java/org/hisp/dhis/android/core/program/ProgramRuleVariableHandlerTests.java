@@ -27,6 +27,7 @@
  */
 package org.hisp.dhis.android.core.program;
 
+import org.hisp.dhis.android.core.common.ChangeDetector;
 import org.hisp.dhis.android.core.dataelement.DataElement;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttribute;
 import org.junit.Before;
@@ -74,10 +75,14 @@ public class ProgramRuleVariableHandlerTests {
     // list of program rule variables
     private List<ProgramRuleVariable> programRuleVariables;
 
+    @Mock
+    private ChangeDetector changeDetector;
+
     @Before
     public void setUp() throws Exception {
         MockitoAnnotations.initMocks(this);
-        programRuleVariableHandler = new ProgramRuleVariableHandler(programRuleVariableStore);
+        when(changeDetector.hasChanged(anyString(), anyString(), any(Date.class))).thenReturn(true);
+        programRuleVariableHandler = new ProgramRuleVariableHandler(programRuleVariableStore, changeDetector);
 
         when(programRuleVariable.uid()).thenReturn("test_program_rule_variable_uid");
         when(programRuleVariable.program()).thenReturn(program);
@@ -94,14 +99,10 @@ public class ProgramRuleVariableHandlerTests {
         programRuleVariableHandler.handleProgramRuleVariables(null);
 
         // verify that store is never called
-        verify(programRuleVariableStore, never()).insert(anyString(), anyString(), anyString(), anyString(),
+        verify(programRuleVariableStore, never()).upsert(anyString(), anyString(), anyString(), anyString(),
                 any(Date.class), any(Date.class), anyBoolean(), anyString(), anyString(), anyString(), anyString(),
                 any(ProgramRuleVariableSourceType.class));
 
-        verify(programRuleVariableStore, never()).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyBoolean(), anyString(), anyString(), anyString(), anyString(),
-                any(ProgramRuleVariableSourceType.class), anyString());
-
         verify(programRuleVariableStore, never()).delete(anyString());
 
     }
@@ -115,12 +116,7 @@ public class ProgramRuleVariableHandlerTests {
         // verify that delete is called once
         verify(programRuleVariableStore, times(1)).delete(anyString());
 
-        // verify that update and insert is never called
-        verify(programRuleVariableStore, never()).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyBoolean(), anyString(), anyString(), anyString(), anyString(),
-                any(ProgramRuleVariableSourceType.class), anyString());
-
-        verify(programRuleVariableStore, never()).insert(anyString(), anyString(), anyString(), anyString(),
+        verify(programRuleVariableStore, never()).upsert(anyString(), anyString(), anyString(), anyString(),
                 any(Date.class), any(Date.class), anyBoolean(), anyString(), anyString(), anyString(), anyString(),
                 any(ProgramRuleVariableSourceType.class));
 
@@ -128,45 +124,13 @@ public class ProgramRuleVariableHandlerTests {
 
     @Test
     public void update_shouldUpdateProgramRuleVariable() throws Exception {
-        when(programRuleVariableStore.update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyBoolean(), anyString(), anyString(), anyString(), anyString(),
-                any(ProgramRuleVariableSourceType.class), anyString())).thenReturn(1);
-
-        programRuleVariableHandler.handleProgramRuleVariables(programRuleVariables);
-
-        // verify that update is called once
-        verify(programRuleVariableStore, times(1)).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyBoolean(), anyString(), anyString(), anyString(), anyString(),
-                any(ProgramRuleVariableSourceType.class), anyString());
-
-        // verify that insert and delete is never called
-        verify(programRuleVariableStore, never()).insert(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyBoolean(), anyString(), anyString(), anyString(), anyString(),
-                any(ProgramRuleVariableSourceType.class));
-
-        verify(programRuleVariableStore, never()).delete(anyString());
-
-    }
-
-    @Test
-    public void insert_shouldInsertProgramRuleVariable() throws Exception {
-        when(programRuleVariableStore.update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyBoolean(), anyString(), anyString(), anyString(), anyString(),
-                any(ProgramRuleVariableSourceType.class), anyString())).thenReturn(0);
-
         programRuleVariableHandler.handleProgramRuleVariables(programRuleVariables);
 
-        // verify that insert is called once
-        verify(programRuleVariableStore, times(1)).insert(anyString(), anyString(), anyString(), anyString(),
+        // verify that upsert is called once
+        verify(programRuleVariableStore, times(1)).upsert(anyString(), anyString(), anyString(), anyString(),
                 any(Date.class), any(Date.class), anyBoolean(), anyString(), anyString(), anyString(), anyString(),
                 any(ProgramRuleVariableSourceType.class));
 
-        // verify that update is called once since we try to update before we insert
-        verify(programRuleVariableStore, times(1)).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyBoolean(), anyString(), anyString(), anyString(), anyString(),
-                any(ProgramRuleVariableSourceType.class), anyString());
-
-        // verify that delete is never called
         verify(programRuleVariableStore, never()).delete(anyString());
 
     }
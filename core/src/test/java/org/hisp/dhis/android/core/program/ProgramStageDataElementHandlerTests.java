@@ -27,6 +27,7 @@
  */
 package org.hisp.dhis.android.core.program;
 
+import org.hisp.dhis.android.core.common.ChangeDetector;
 import org.hisp.dhis.android.core.dataelement.DataElement;
 import org.hisp.dhis.android.core.dataelement.DataElementHandler;
 import org.junit.Before;
@@ -44,6 +45,8 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -71,12 +74,16 @@ public class ProgramStageDataElementHandlerTests {
     // object to test
     private ProgramStageDataElementHandler programStageDataElementHandler;
 
+    @Mock
+    private ChangeDetector changeDetector;
+
     @Before
     public void setUp() throws Exception {
         MockitoAnnotations.initMocks(this);
+        when(changeDetector.hasChanged(anyString(), anyString(), any(Date.class))).thenReturn(true);
 
         programStageDataElementHandler = new ProgramStageDataElementHandler(
-                programStageDataElementStore, dataElementHandler
+                programStageDataElementStore, dataElementHandler, changeDetector
         );
 
         when(programStageDataElement.uid()).thenReturn("test_psde_uid");
@@ -97,15 +104,9 @@ public class ProgramStageDataElementHandlerTests {
 
         // verify that program stage data element store is never invoked
         verify(programStageDataElementStore, never()).delete(anyString());
-        verify(programStageDataElementStore, never()).insert(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyBoolean(), anyBoolean(), anyBoolean(), anyInt(), anyBoolean(),
-                anyString(), anyString(), anyString());
-        verify(programStageDataElementStore, never()).updateWithoutSection(anyString(), anyString(), anyString(), anyString(),
+        verify(programStageDataElementStore, never()).upsert(anyString(), anyString(), anyString(), anyString(),
                 any(Date.class), any(Date.class), anyBoolean(), anyBoolean(), anyBoolean(), anyInt(), anyBoolean(),
                 anyString(), anyString(), anyString());
-        verify(programStageDataElementStore, never()).updateWithSection(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyBoolean(), anyBoolean(), anyBoolean(), anyInt(), anyBoolean(),
-                anyString(), anyString(), anyString(), anyString());
 
         // verify that data element handler is never invoked
         verify(dataElementHandler, never()).handleDataElement(any(DataElement.class));
@@ -121,56 +122,25 @@ public class ProgramStageDataElementHandlerTests {
 
         verify(programStageDataElementStore, times(1)).delete(programStageDataElement.uid());
 
-        // verify that insert and any update function is never called
-        verify(programStageDataElementStore, never()).insert(
-                anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyBoolean(), anyBoolean(), anyBoolean(), anyInt(), anyBoolean(),
-                anyString(), anyString(), anyString()
-        );
-        verify(programStageDataElementStore, never()).updateWithoutSection(
-                anyString(), anyString(), anyString(), anyString(),
+        // verify that upsert is never called
+        verify(programStageDataElementStore, never()).upsert(anyString(), anyString(), anyString(), anyString(),
                 any(Date.class), any(Date.class), anyBoolean(), anyBoolean(), anyBoolean(), anyInt(), anyBoolean(),
-                anyString(), anyString(), anyString()
-        );
-        verify(programStageDataElementStore, never()).updateWithSection(
-                anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyInt(), anyBoolean(),
-                anyString(), anyString(), anyString(), anyString()
-        );
+                anyString(), anyString(), anyString());
 
         // verify that data element handler is invoked once
         verify(dataElementHandler, times(1)).handleDataElement(any(DataElement.class));
     }
 
     @Test
-    public void update_shouldUpdateProgramStageDataElementWithoutProgramStageSection() throws Exception {
-        when(programStageDataElementStore.updateWithoutSection(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyBoolean(), anyBoolean(), anyBoolean(), anyInt(), anyBoolean(),
-                anyString(), anyString(), anyString())).thenReturn(1);
-
+    public void upsert_shouldUpsertProgramStageDataElementWithoutProgramStageSection() throws Exception {
         programStageDataElementHandler.handleProgramStageDataElements(
                 null, programStageDataElements
         );
 
-        // verify that updateWithoutSection is invoked once
-        verify(programStageDataElementStore, times(1)).updateWithoutSection(
-                anyString(), anyString(), anyString(), anyString(),
+        // verify that upsert is invoked once without section, which keeps the section of an existing row
+        verify(programStageDataElementStore, times(1)).upsert(anyString(), anyString(), anyString(), anyString(),
                 any(Date.class), any(Date.class), anyBoolean(), anyBoolean(), anyBoolean(), anyInt(), anyBoolean(),
-                anyString(), anyString(), anyString()
-        );
-
-
-        // verify that insert and updateWithSection and delete function is never called
-        verify(programStageDataElementStore, never()).updateWithSection(
-                anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyBoolean(), anyBoolean(), anyBoolean(), anyInt(), anyBoolean(),
-                anyString(), anyString(), anyString(), anyString()
-        );
-
-        verify(programStageDataElementStore, never()).insert(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyBoolean(), anyBoolean(), anyBoolean(), anyInt(), anyBoolean(),
-                anyString(), anyString(), anyString());
+                eq("test_data_element_uid"), eq("test_program_stage_uid"), (String) isNull());
 
         verify(programStageDataElementStore, never()).delete(anyString());
 
@@ -179,71 +149,19 @@ public class ProgramStageDataElementHandlerTests {
     }
 
     @Test
-    public void update_shouldUpdateProgramStageDataElementWithProgramStageSection() throws Exception {
-        when(programStageDataElementStore.updateWithSection(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyBoolean(), anyBoolean(), anyBoolean(), anyInt(), anyBoolean(),
-                anyString(), anyString(), anyString(), anyString())).thenReturn(1);
+    public void upsert_shouldUpsertProgramStageDataElementWithProgramStageSection() throws Exception {
         programStageDataElementHandler.handleProgramStageDataElements(
                 "test_program_stage_section_uid", programStageDataElements
         );
 
-        // verify that updateWithSection is invoked once
-        verify(programStageDataElementStore, times(1)).updateWithSection(
-                anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyBoolean(), anyBoolean(), anyBoolean(), anyInt(), anyBoolean(),
-                anyString(), anyString(), anyString(), anyString()
-        );
-
-
-        // verify that insert and updateWithoutSection and delete function is never called
-        verify(programStageDataElementStore, never()).updateWithoutSection(
-                anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyBoolean(), anyBoolean(), anyBoolean(), anyInt(), anyBoolean(),
-                anyString(), anyString(), anyString()
-        );
-
-        verify(programStageDataElementStore, never()).insert(anyString(), anyString(), anyString(), anyString(),
+        // verify that upsert is invoked once with section
+        verify(programStageDataElementStore, times(1)).upsert(anyString(), anyString(), anyString(), anyString(),
                 any(Date.class), any(Date.class), anyBoolean(), anyBoolean(), anyBoolean(), anyInt(), anyBoolean(),
-                anyString(), anyString(), anyString());
+                eq("test_data_element_uid"), eq("test_program_stage_uid"), eq("test_program_stage_section_uid"));
 
         verify(programStageDataElementStore, never()).delete(anyString());
 
         // verify that data element handler is called once
         verify(dataElementHandler, times(1)).handleDataElement(any(DataElement.class));
-
-    }
-
-    @Test
-    public void insert_shouldInsertProgramStageDataElement() throws Exception {
-        when(programStageDataElementStore.updateWithSection(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyBoolean(), anyBoolean(), anyBoolean(), anyInt(), anyBoolean(),
-                anyString(), anyString(), anyString(), anyString())).thenReturn(0);
-        programStageDataElementHandler.handleProgramStageDataElements(
-                "test_program_stage_section_uid", programStageDataElements
-        );
-
-        // verify that insert is called once
-        verify(programStageDataElementStore, times(1)).insert(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyBoolean(), anyBoolean(), anyBoolean(), anyInt(), anyBoolean(),
-                anyString(), anyString(), anyString());
-
-        // verify that updateWithSection is invoked once since we update before we insert
-        verify(programStageDataElementStore, times(1)).updateWithSection(
-                anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyBoolean(), anyBoolean(), anyBoolean(), anyInt(), anyBoolean(),
-                anyString(), anyString(), anyString(), anyString()
-        );
-
-        // verify that updateWithoutSection and delete function is never called
-        verify(programStageDataElementStore, never()).updateWithoutSection(
-                anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyBoolean(), anyBoolean(), anyBoolean(), anyInt(), anyBoolean(),
-                anyString(), anyString(), anyString()
-        );
-
-        verify(programStageDataElementStore, never()).delete(anyString());
-
-        // verify that data element handler is never called
-        verify(dataElementHandler, times(1)).handleDataElement(any(DataElement.class));
     }
 }
@@ -27,6 +27,7 @@
  */
 package org.hisp.dhis.android.core.program;
 
+import org.hisp.dhis.android.core.common.ChangeDetector;
 import org.hisp.dhis.android.core.common.FormType;
 import org.junit.Before;
 import org.junit.Test;
@@ -69,13 +70,17 @@ public class ProgramStageHandlerTests {
     // object to test
     private ProgramStageHandler programStageHandler;
 
+    @Mock
+    private ChangeDetector changeDetector;
+
     @Before
     public void setUp() throws Exception {
         MockitoAnnotations.initMocks(this);
+        when(changeDetector.hasChanged(anyString(), anyString(), any(Date.class))).thenReturn(true);
 
         programStageHandler = new ProgramStageHandler(
                 programStageStore, programStageSectionHandler,
-                programStageDataElementHandler
+                programStageDataElementHandler, changeDetector
         );
 
         when(programStage.uid()).thenReturn("test_program_stage_uid");
@@ -95,16 +100,11 @@ public class ProgramStageHandlerTests {
         // verify that delete is called once
         verify(programStageStore, times(1)).delete(anyString());
 
-        // verify that update and insert is never called
-        verify(programStageStore, never()).insert(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyBoolean(), anyBoolean(), anyString(),
-                anyBoolean(), anyBoolean(), anyBoolean(), any(FormType.class), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyInt(), anyBoolean(), anyBoolean(), anyInt(), anyInt(), anyString());
-
-        verify(programStageStore, never()).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyBoolean(), anyBoolean(), anyString(),
-                anyBoolean(), anyBoolean(), anyBoolean(), any(FormType.class), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyInt(), anyBoolean(), anyBoolean(), anyInt(), anyInt(), anyString(), anyString());
+        // verify that upsert is never called
+        verify(programStageStore, never()).upsert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
+                any(Date.class), anyString(), anyBoolean(), anyBoolean(), anyString(), anyBoolean(), anyBoolean(),
+                anyBoolean(), any(FormType.class), anyBoolean(), anyBoolean(), anyBoolean(), anyInt(), anyBoolean(),
+                anyBoolean(), anyInt(), anyInt(), anyString());
 
         // verify that the handlers is invoked
         verify(programStageSectionHandler, times(1)).handleProgramStageSection(
@@ -119,32 +119,20 @@ public class ProgramStageHandlerTests {
 
     @Test
     public void update_shouldUpdateProgramStage() throws Exception {
-        when(programStageStore.update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyBoolean(), anyBoolean(), anyString(),
-                anyBoolean(), anyBoolean(), anyBoolean(), any(FormType.class), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyInt(), anyBoolean(), anyBoolean(), anyInt(), anyInt(), anyString(), anyString()))
-                .thenReturn(1);
-
         // now there is two program stages
         programStages.add(programStage);
 
         programStageHandler.handleProgramStage("test_program_uid", programStages);
 
         // verify that update is called twice
-        verify(programStageStore, times(2)).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyBoolean(), anyBoolean(), anyString(),
-                anyBoolean(), anyBoolean(), anyBoolean(), any(FormType.class), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyInt(), anyBoolean(), anyBoolean(), anyInt(), anyInt(), anyString(), anyString());
+        verify(programStageStore, times(2)).upsert(anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyString(), anyBoolean(), anyBoolean(), anyString(), anyBoolean(),
+                anyBoolean(), anyBoolean(), any(FormType.class), anyBoolean(), anyBoolean(), anyBoolean(), anyInt(),
+                anyBoolean(), anyBoolean(), anyInt(), anyInt(), anyString());
 
         // verify that delete and insert is never invoked
         verify(programStageStore, never()).delete(anyString());
 
-        // verify that update and insert is never called
-        verify(programStageStore, never()).insert(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyBoolean(), anyBoolean(), anyString(),
-                anyBoolean(), anyBoolean(), anyBoolean(), any(FormType.class), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyInt(), anyBoolean(), anyBoolean(), anyInt(), anyInt(), anyString());
-
         // verify that the handlers is invoked twice
         verify(programStageSectionHandler, times(2)).handleProgramStageSection(
                 anyString(), anyListOf(ProgramStageSection.class)
@@ -158,25 +146,12 @@ public class ProgramStageHandlerTests {
 
     @Test
     public void insert_shouldInsertProgramStage() throws Exception {
-        // simulate that programStageStore didn't update anything
-        when(programStageStore.update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyBoolean(), anyBoolean(), anyString(),
-                anyBoolean(), anyBoolean(), anyBoolean(), any(FormType.class), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyInt(), anyBoolean(), anyBoolean(), anyInt(), anyInt(), anyString(), anyString()))
-                .thenReturn(0);
-
         programStageHandler.handleProgramStage("test_program_uid", programStages);
 
-        verify(programStageStore, times(1)).insert(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyBoolean(), anyBoolean(), anyString(),
-                anyBoolean(), anyBoolean(), anyBoolean(), any(FormType.class), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyInt(), anyBoolean(), anyBoolean(), anyInt(), anyInt(), anyString());
-
-        // verify that update is called once since we update before we insert
-        verify(programStageStore, times(1)).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyBoolean(), anyBoolean(), anyString(),
-                anyBoolean(), anyBoolean(), anyBoolean(), any(FormType.class), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyInt(), anyBoolean(), anyBoolean(), anyInt(), anyInt(), anyString(), anyString());
+        verify(programStageStore, times(1)).upsert(anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyString(), anyBoolean(), anyBoolean(), anyString(), anyBoolean(),
+                anyBoolean(), anyBoolean(), any(FormType.class), anyBoolean(), anyBoolean(), anyBoolean(), anyInt(),
+                anyBoolean(), anyBoolean(), anyInt(), anyInt(), anyString());
 
         // verify that delete is never called
         verify(programStageStore, never()).delete(anyString());
@@ -192,21 +167,39 @@ public class ProgramStageHandlerTests {
 
     }
 
+    @Test
+    public void unchanged_shouldNotUpsertProgramStageButHandleItsChildren() throws Exception {
+        when(changeDetector.hasChanged(ProgramStageModel.TABLE, "test_program_stage_uid", null)).thenReturn(false);
+
+        programStageHandler.handleProgramStage("test_program_uid", programStages);
+
+        // verify that the unchanged program stage is not rewritten
+        verify(programStageStore, never()).upsert(anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyString(), anyBoolean(), anyBoolean(), anyString(), anyBoolean(),
+                anyBoolean(), anyBoolean(), any(FormType.class), anyBoolean(), anyBoolean(), anyBoolean(), anyInt(),
+                anyBoolean(), anyBoolean(), anyInt(), anyInt(), anyString());
+        verify(programStageStore, never()).delete(anyString());
+
+        // verify that the children are handled, since they carry their own lastUpdated
+        verify(programStageSectionHandler, times(1)).handleProgramStageSection(
+                anyString(), anyListOf(ProgramStageSection.class)
+        );
+
+        verify(programStageDataElementHandler, times(1)).handleProgramStageDataElements(
+                anyString(), anyListOf(ProgramStageDataElement.class)
+        );
+    }
+
     @Test
     public void doNothing_shouldDoNothingWhenPassingInNullArgumentProgramUid() throws Exception {
         programStageHandler.handleProgramStage(null, programStages);
 
         // verify that programStageStore is never invoked
         verify(programStageStore, never()).delete(anyString());
-        verify(programStageStore, never()).insert(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyBoolean(), anyBoolean(), anyString(),
-                anyBoolean(), anyBoolean(), anyBoolean(), any(FormType.class), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyInt(), anyBoolean(), anyBoolean(), anyInt(), anyInt(), anyString());
-        verify(programStageStore, never()).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyBoolean(), anyBoolean(), anyString(),
-                anyBoolean(), anyBoolean(), anyBoolean(), any(FormType.class), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyInt(), anyBoolean(), anyBoolean(), anyInt(), anyInt(), anyString(), anyString());
-
+        verify(programStageStore, never()).upsert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
+                any(Date.class), anyString(), anyBoolean(), anyBoolean(), anyString(), anyBoolean(), anyBoolean(),
+                anyBoolean(), any(FormType.class), anyBoolean(), anyBoolean(), anyBoolean(), anyInt(), anyBoolean(),
+                anyBoolean(), anyInt(), anyInt(), anyString());
 
         // verify that the handlers is never invoked
         verify(programStageSectionHandler, never()).handleProgramStageSection(
@@ -225,15 +218,10 @@ public class ProgramStageHandlerTests {
 
         // verify that programStageStore is never invoked
         verify(programStageStore, never()).delete(anyString());
-        verify(programStageStore, never()).insert(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyBoolean(), anyBoolean(), anyString(),
-                anyBoolean(), anyBoolean(), anyBoolean(), any(FormType.class), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyInt(), anyBoolean(), anyBoolean(), anyInt(), anyInt(), anyString());
-        verify(programStageStore, never()).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyBoolean(), anyBoolean(), anyString(),
-                anyBoolean(), anyBoolean(), anyBoolean(), any(FormType.class), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyInt(), anyBoolean(), anyBoolean(), anyInt(), anyInt(), anyString(), anyString());
-
+        verify(programStageStore, never()).upsert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
+                any(Date.class), anyString(), anyBoolean(), anyBoolean(), anyString(), anyBoolean(), anyBoolean(),
+                anyBoolean(), any(FormType.class), anyBoolean(), anyBoolean(), anyBoolean(), anyInt(), anyBoolean(),
+                anyBoolean(), anyInt(), anyInt(), anyString());
 
         // verify that the handlers is never invoked
         verify(programStageSectionHandler, never()).handleProgramStageSection(
@@ -252,15 +240,10 @@ public class ProgramStageHandlerTests {
 
         // verify that programStageStore is never invoked
         verify(programStageStore, never()).delete(anyString());
-        verify(programStageStore, never()).insert(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyBoolean(), anyBoolean(), anyString(),
-                anyBoolean(), anyBoolean(), anyBoolean(), any(FormType.class), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyInt(), anyBoolean(), anyBoolean(), anyInt(), anyInt(), anyString());
-        verify(programStageStore, never()).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyBoolean(), anyBoolean(), anyString(),
-                anyBoolean(), anyBoolean(), anyBoolean(), any(FormType.class), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyInt(), anyBoolean(), anyBoolean(), anyInt(), anyInt(), anyString(), anyString());
-
+        verify(programStageStore, never()).upsert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
+                any(Date.class), anyString(), anyBoolean(), anyBoolean(), anyString(), anyBoolean(), anyBoolean(),
+                anyBoolean(), any(FormType.class), anyBoolean(), anyBoolean(), anyBoolean(), anyInt(), anyBoolean(),
+                anyBoolean(), anyInt(), anyInt(), anyString());
 
         // verify that the handlers is never invoked
         verify(programStageSectionHandler, never()).handleProgramStageSection(
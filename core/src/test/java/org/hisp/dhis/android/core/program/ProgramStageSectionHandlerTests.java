@@ -27,6 +27,7 @@
  */
 package org.hisp.dhis.android.core.program;
 
+import org.hisp.dhis.android.core.common.ChangeDetector;
 import org.hisp.dhis.android.core.dataelement.DataElement;
 import org.junit.Before;
 import org.junit.Test;
@@ -36,14 +37,15 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.anyString;
-import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -76,12 +78,17 @@ public class ProgramStageSectionHandlerTests {
     // object to test
     private ProgramStageSectionHandler programStageSectionHandler;
 
+    @Mock
+    private ChangeDetector changeDetector;
+
     @Before
     public void setUp() throws Exception {
         MockitoAnnotations.initMocks(this);
+        when(changeDetector.hasChanged(anyString(), anyString(), any(Date.class))).thenReturn(true);
 
         programStageSectionHandler = new ProgramStageSectionHandler(
-                programStageSectionStore, programStageSectionDataElementLinkStore, programIndicatorHandler
+                programStageSectionStore, programStageSectionDataElementLinkStore, programIndicatorHandler,
+                changeDetector
         );
 
         when(programStageSection.uid()).thenReturn(PROGRAM_STAGE_SECTION_UID);
@@ -100,16 +107,12 @@ public class ProgramStageSectionHandlerTests {
         // verify that delete is called once
         verify(programStageSectionStore, times(1)).delete(programStageSection.uid());
 
-        // verify that update and insert is never called
-        verify(programStageSectionStore, never()).insert(anyString(), anyString(), anyString(),
-                anyString(), any(Date.class), any(Date.class), anyInt(), anyString());
-
-        verify(programStageSectionStore, never()).update(anyString(), anyString(), anyString(),
-                anyString(), any(Date.class), any(Date.class), anyInt(), anyString(), anyString());
+        // verify that upsert is never called
+        verify(programStageSectionStore, never()).upsert(anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyInt(), anyString());
 
-        verify(programStageSectionDataElementLinkStore, never()).update(anyString(), anyString(), anyString(),
-                anyString());
-        verify(programStageSectionDataElementLinkStore, never()).insert(anyString(), anyString());
+        verify(programStageSectionDataElementLinkStore, never()).replaceLinks(anyString(),
+                anyCollectionOf(String.class));
 
         // verify that handlers is called once
         verify(programIndicatorHandler, times(1)).handleProgramIndicator(
@@ -120,33 +123,20 @@ public class ProgramStageSectionHandlerTests {
 
     @Test
     public void update_shouldUpdateProgramStageSection() throws Exception {
-        when(programStageSectionStore.update(
-                anyString(), anyString(), anyString(),
-                anyString(), any(Date.class), any(Date.class), anyInt(), anyString(), anyString())
-        ).thenReturn(1);
-
         when(programStageSection.dataElements()).thenReturn(dataElements);
         when(dataElement.uid()).thenReturn(DATA_ELEMENT_UID);
-        when(programStageSectionDataElementLinkStore.update(eq(PROGRAM_STAGE_SECTION_UID), eq(DATA_ELEMENT_UID),
-                eq(PROGRAM_STAGE_SECTION_UID), eq(DATA_ELEMENT_UID))).thenReturn(1);
 
         programStageSectionHandler.handleProgramStageSection(PROGRAM_STAGE_UID, programStageSections);
 
-        // verify that update is called once
-        verify(programStageSectionStore, times(1)).update(anyString(), anyString(), anyString(),
-                anyString(), any(Date.class), any(Date.class), anyInt(), anyString(), anyString());
-
-        // verify that insert and delete is never called
-        verify(programStageSectionStore, never()).insert(anyString(), anyString(), anyString(),
-                anyString(), any(Date.class), any(Date.class), anyInt(), anyString());
+        // verify that upsert is called once
+        verify(programStageSectionStore, times(1)).upsert(anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyInt(), anyString());
 
         verify(programStageSectionStore, never()).delete(anyString());
 
-        // verify that handlers is called once
-        verify(programStageSectionDataElementLinkStore, times(1)).update(eq(PROGRAM_STAGE_SECTION_UID),
-                eq(DATA_ELEMENT_UID), eq(PROGRAM_STAGE_SECTION_UID), eq(DATA_ELEMENT_UID));
-        verify(programStageSectionDataElementLinkStore, never()).insert(eq(PROGRAM_STAGE_SECTION_UID),
-                eq(DATA_ELEMENT_UID));
+        // verify that the links of the section are replaced once
+        verify(programStageSectionDataElementLinkStore, times(1)).replaceLinks(PROGRAM_STAGE_SECTION_UID,
+                Collections.singletonList(DATA_ELEMENT_UID));
 
         verify(programIndicatorHandler, times(1)).handleProgramIndicator(
                 anyString(), anyListOf(ProgramIndicator.class)
@@ -155,35 +145,21 @@ public class ProgramStageSectionHandlerTests {
 
     @Test
     public void insert_shouldInsertProgramStageSection() throws Exception {
-        when(programStageSectionStore.update(
-                anyString(), anyString(), anyString(),
-                anyString(), any(Date.class), any(Date.class), anyInt(), anyString(), anyString())
-        ).thenReturn(0);
-
         when(programStageSection.dataElements()).thenReturn(dataElements);
         when(dataElement.uid()).thenReturn(DATA_ELEMENT_UID);
-        when(programStageSectionDataElementLinkStore.update(eq(PROGRAM_STAGE_SECTION_UID), eq(DATA_ELEMENT_UID),
-                eq(PROGRAM_STAGE_SECTION_UID), eq(DATA_ELEMENT_UID))).thenReturn(0);
 
         programStageSectionHandler.handleProgramStageSection(PROGRAM_STAGE_UID, programStageSections);
 
-        // verify that update is called once since we update before we insert
-        verify(programStageSectionStore, times(1)).update(anyString(), anyString(), anyString(),
-                anyString(), any(Date.class), any(Date.class), anyInt(), anyString(), anyString());
-
-        // verify that insert is called once
-        verify(programStageSectionStore, times(1)).insert(anyString(), anyString(), anyString(),
-                anyString(), any(Date.class), any(Date.class), anyInt(), anyString());
+        // verify that upsert is called once
+        verify(programStageSectionStore, times(1)).upsert(anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyInt(), anyString());
 
         // verify that delete is never called
         verify(programStageSectionStore, never()).delete(anyString());
 
-        // verify that handlers is called once
-        //TODO:...
-        verify(programStageSectionDataElementLinkStore, times(1)).update(eq(PROGRAM_STAGE_SECTION_UID),
-                eq(DATA_ELEMENT_UID), eq(PROGRAM_STAGE_SECTION_UID), eq(DATA_ELEMENT_UID));
-        verify(programStageSectionDataElementLinkStore, times(1)).insert(eq(PROGRAM_STAGE_SECTION_UID),
-                eq(DATA_ELEMENT_UID));
+        // verify that the links of the section are replaced once
+        verify(programStageSectionDataElementLinkStore, times(1)).replaceLinks(PROGRAM_STAGE_SECTION_UID,
+                Collections.singletonList(DATA_ELEMENT_UID));
 
         verify(programIndicatorHandler, times(1)).handleProgramIndicator(
                 anyString(), anyListOf(ProgramIndicator.class)
@@ -196,17 +172,13 @@ public class ProgramStageSectionHandlerTests {
         programStageSectionHandler.handleProgramStageSection(null, programStageSections);
 
         // verify that program stage section store is never invoked
-        verify(programStageSectionStore, never()).insert(anyString(), anyString(), anyString(),
-                anyString(), any(Date.class), any(Date.class), anyInt(), anyString());
-
-        verify(programStageSectionStore, never()).update(anyString(), anyString(), anyString(),
-                anyString(), any(Date.class), any(Date.class), anyInt(), anyString(), anyString());
+        verify(programStageSectionStore, never()).upsert(anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyInt(), anyString());
 
         verify(programStageSectionStore, never()).delete(anyString());
 
-        verify(programStageSectionDataElementLinkStore, never()).update(anyString(), anyString(), anyString(),
-                anyString());
-        verify(programStageSectionDataElementLinkStore, never()).insert(anyString(), anyString());
+        verify(programStageSectionDataElementLinkStore, never()).replaceLinks(anyString(),
+                anyCollectionOf(String.class));
 
         verify(programIndicatorHandler, never()).handleProgramIndicator(
                 anyString(), anyListOf(ProgramIndicator.class)
@@ -218,17 +190,13 @@ public class ProgramStageSectionHandlerTests {
         programStageSectionHandler.handleProgramStageSection(PROGRAM_STAGE_UID, null);
 
         // verify that program stage section store is never invoked
-        verify(programStageSectionStore, never()).insert(anyString(), anyString(), anyString(),
-                anyString(), any(Date.class), any(Date.class), anyInt(), anyString());
-
-        verify(programStageSectionStore, never()).update(anyString(), anyString(), anyString(),
-                anyString(), any(Date.class), any(Date.class), anyInt(), anyString(), anyString());
+        verify(programStageSectionStore, never()).upsert(anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyInt(), anyString());
 
         verify(programStageSectionStore, never()).delete(anyString());
 
-        verify(programStageSectionDataElementLinkStore, never()).update(anyString(), anyString(), anyString(),
-                anyString());
-        verify(programStageSectionDataElementLinkStore, never()).insert(anyString(), anyString());
+        verify(programStageSectionDataElementLinkStore, never()).replaceLinks(anyString(),
+                anyCollectionOf(String.class));
 
         verify(programIndicatorHandler, never()).handleProgramIndicator(
                 anyString(), anyListOf(ProgramIndicator.class)
@@ -240,17 +208,13 @@ public class ProgramStageSectionHandlerTests {
         programStageSectionHandler.handleProgramStageSection(null, null);
 
         // verify that program stage section store is never invoked
-        verify(programStageSectionStore, never()).insert(anyString(), anyString(), anyString(),
-                anyString(), any(Date.class), any(Date.class), anyInt(), anyString());
-
-        verify(programStageSectionStore, never()).update(anyString(), anyString(), anyString(),
-                anyString(), any(Date.class), any(Date.class), anyInt(), anyString(), anyString());
+        verify(programStageSectionStore, never()).upsert(anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyInt(), anyString());
 
         verify(programStageSectionStore, never()).delete(anyString());
 
-        verify(programStageSectionDataElementLinkStore, never()).update(anyString(), anyString(), anyString(),
-                anyString());
-        verify(programStageSectionDataElementLinkStore, never()).insert(anyString(), anyString());
+        verify(programStageSectionDataElementLinkStore, never()).replaceLinks(anyString(),
+                anyCollectionOf(String.class));
 
         verify(programIndicatorHandler, never()).handleProgramIndicator(
                 anyString(), anyListOf(ProgramIndicator.class)
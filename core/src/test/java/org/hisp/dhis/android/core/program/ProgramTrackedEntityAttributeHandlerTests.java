@@ -27,6 +27,7 @@
  */
 package org.hisp.dhis.android.core.program;
 
+import org.hisp.dhis.android.core.common.ChangeDetector;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttribute;
 import org.hisp.dhis.android.core.trackedentity.TrackedEntityAttributeHandler;
 import org.junit.Before;
@@ -73,12 +74,16 @@ public class ProgramTrackedEntityAttributeHandlerTests {
     // list of program tracked entity attributes
     private List<ProgramTrackedEntityAttribute> programTrackedEntityAttributes;
 
+    @Mock
+    private ChangeDetector changeDetector;
+
     @Before
     public void setUp() throws Exception {
         MockitoAnnotations.initMocks(this);
+        when(changeDetector.hasChanged(anyString(), anyString(), any(Date.class))).thenReturn(true);
 
         programTrackedEntityAttributeHandler = new ProgramTrackedEntityAttributeHandler(
-                programTrackedEntityAttributeStore, trackedEntityAttributeHandler
+                programTrackedEntityAttributeStore, trackedEntityAttributeHandler, changeDetector
         );
 
         when(programTrackedEntityAttribute.uid()).thenReturn("test_program_tracked_entity_attribute_uid");
@@ -98,10 +103,7 @@ public class ProgramTrackedEntityAttributeHandlerTests {
 
         // verify that store is never called
         verify(programTrackedEntityAttributeStore, never()).delete(anyString());
-        verify(programTrackedEntityAttributeStore, never()).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(), anyBoolean(),
-                anyString(), anyBoolean(), anyBoolean(), anyString(), anyInt(), anyString());
-        verify(programTrackedEntityAttributeStore, never()).insert(anyString(), anyString(), anyString(), anyString(),
+        verify(programTrackedEntityAttributeStore, never()).upsert(anyString(), anyString(), anyString(), anyString(),
                 any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(), anyBoolean(),
                 anyString(), anyBoolean(), anyBoolean(), anyString(), anyInt());
 
@@ -119,12 +121,7 @@ public class ProgramTrackedEntityAttributeHandlerTests {
         // verify that delete is called once
         verify(programTrackedEntityAttributeStore, times(1)).delete(programTrackedEntityAttribute.uid());
 
-        // verify that update and insert is never called
-        verify(programTrackedEntityAttributeStore, never()).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(), anyBoolean(),
-                anyString(), anyBoolean(), anyBoolean(), anyString(), anyInt(), anyString());
-
-        verify(programTrackedEntityAttributeStore, never()).insert(anyString(), anyString(), anyString(), anyString(),
+        verify(programTrackedEntityAttributeStore, never()).upsert(anyString(), anyString(), anyString(), anyString(),
                 any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(), anyBoolean(),
                 anyString(), anyBoolean(), anyBoolean(), anyString(), anyInt());
 
@@ -137,60 +134,13 @@ public class ProgramTrackedEntityAttributeHandlerTests {
 
     @Test
     public void update_shouldUpdateProgramTrackedEntityAttribute() throws Exception {
-        when(programTrackedEntityAttributeStore.update(
-                anyString(), anyString(), anyString(), anyString(), any(Date.class), any(Date.class),
-                anyString(), anyString(), anyString(), anyString(), anyBoolean(),
-                anyString(), anyBoolean(), anyBoolean(),
-                anyString(), anyInt(), anyString())
-        ).thenReturn(1);
-
         programTrackedEntityAttributeHandler.handleProgramTrackedEntityAttributes(programTrackedEntityAttributes);
 
-        // verify that update is called once
-        verify(programTrackedEntityAttributeStore, times(1)).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(), anyBoolean(),
-                anyString(), anyBoolean(), anyBoolean(), anyString(), anyInt(), anyString());
-
-        // verify that insert and delete is never called
-        verify(programTrackedEntityAttributeStore, never()).insert(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(), anyBoolean(),
-                anyString(), anyBoolean(), anyBoolean(), anyString(), anyInt());
-
-        verify(programTrackedEntityAttributeStore, never()).delete(anyString());
-
-        // verify that tracked entity attribute handler is called once
-        verify(trackedEntityAttributeHandler, times(1)).handleTrackedEntityAttribute(
-                programTrackedEntityAttribute.trackedEntityAttribute()
-        );
-
-    }
-
-    @Test
-    public void insert_shouldInsertProgramTrackedEntityAttribute() throws Exception {
-        when(programTrackedEntityAttributeStore.update(
-                anyString(), anyString(), anyString(), anyString(), any(Date.class), any(Date.class),
-                anyString(), anyString(), anyString(), anyString(), anyBoolean(),
-                anyString(), anyBoolean(), anyBoolean(),
-                anyString(), anyInt(), anyString())
-        ).thenReturn(0);
-
-        programTrackedEntityAttributeHandler.handleProgramTrackedEntityAttributes(programTrackedEntityAttributes);
+        // verify that upsert is called once
+        verify(programTrackedEntityAttributeStore, times(1)).upsert(anyString(), anyString(), anyString(),
+                anyString(), any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(),
+                anyBoolean(), anyString(), anyBoolean(), anyBoolean(), anyString(), anyInt());
 
-        // verify that insert is called once
-        verify(programTrackedEntityAttributeStore, times(1)).insert(
-                anyString(), anyString(), anyString(), anyString(), any(Date.class), any(Date.class),
-                anyString(), anyString(), anyString(), anyString(), anyBoolean(),
-                anyString(), anyBoolean(), anyBoolean(),
-                anyString(), anyInt());
-
-        // verify that update is called once since we try to update before we insert
-        verify(programTrackedEntityAttributeStore, times(1)).update(
-                anyString(), anyString(), anyString(), anyString(), any(Date.class), any(Date.class),
-                anyString(), anyString(), anyString(), anyString(), anyBoolean(),
-                anyString(), anyBoolean(), anyBoolean(),
-                anyString(), anyInt(), anyString());
-
-        // verify that delete is never called
         verify(programTrackedEntityAttributeStore, never()).delete(anyString());
 
         // verify that tracked entity attribute handler is called once
@@ -27,6 +27,7 @@
  */
 package org.hisp.dhis.android.core.trackedentity;
 
+import org.hisp.dhis.android.core.common.ChangeDetector;
 import org.hisp.dhis.android.core.common.ValueType;
 import org.hisp.dhis.android.core.option.OptionSet;
 import org.junit.Before;
@@ -43,7 +44,6 @@ import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.never;
-import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -63,10 +63,14 @@ public class TrackedEntityAttributeHandlerTests {
     // object to test
     private TrackedEntityAttributeHandler trackedEntityAttributeHandler;
 
+    @Mock
+    private ChangeDetector changeDetector;
+
     @Before
     public void setUp() throws Exception {
         MockitoAnnotations.initMocks(this);
-        trackedEntityAttributeHandler = new TrackedEntityAttributeHandler(trackedEntityAttributeStore);
+        when(changeDetector.hasChanged(anyString(), anyString(), any(Date.class))).thenReturn(true);
+        trackedEntityAttributeHandler = new TrackedEntityAttributeHandler(trackedEntityAttributeStore, changeDetector);
 
         when(trackedEntityAttribute.uid()).thenReturn("test_tracked_entity_attribute_uid");
         when(optionSet.uid()).thenReturn("test_option_set_uid");
@@ -80,17 +84,11 @@ public class TrackedEntityAttributeHandlerTests {
         // verify that store is never called
         verify(trackedEntityAttributeStore, never()).delete(anyString());
 
-        verify(trackedEntityAttributeStore, never()).update(anyString(), anyString(), anyString(),
-                anyString(), any(Date.class), any(Date.class), anyString(), anyString(), anyString(),
-                anyString(), anyString(), anyInt(), anyString(), any(ValueType.class), anyString(),
-                any(TrackedEntityAttributeSearchScope.class), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyString());
-
-        verify(trackedEntityAttributeStore, never()).insert(anyString(), anyString(), anyString(),
-                anyString(), any(Date.class), any(Date.class), anyString(), anyString(), anyString(),
-                anyString(), anyString(), anyInt(), anyString(), any(ValueType.class), anyString(),
-                any(TrackedEntityAttributeSearchScope.class), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean());
+        verify(trackedEntityAttributeStore, never()).upsert(anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
+                anyInt(), anyString(), any(ValueType.class), anyString(),
+                any(TrackedEntityAttributeSearchScope.class), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(),
+                anyBoolean(), anyBoolean(), anyBoolean());
     }
 
     @Test
@@ -102,74 +100,26 @@ public class TrackedEntityAttributeHandlerTests {
         // verify that delete is called once
         verify(trackedEntityAttributeStore, times(1)).delete(anyString());
 
-        // verify that update and insert is never called
-        verify(trackedEntityAttributeStore, never()).update(anyString(), anyString(), anyString(),
-                anyString(), any(Date.class), any(Date.class), anyString(), anyString(), anyString(),
-                anyString(), anyString(), anyInt(), anyString(), any(ValueType.class), anyString(),
-                any(TrackedEntityAttributeSearchScope.class), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyString());
-
-        verify(trackedEntityAttributeStore, never()).insert(anyString(), anyString(), anyString(),
-                anyString(), any(Date.class), any(Date.class), anyString(), anyString(), anyString(),
-                anyString(), anyString(), anyInt(), anyString(), any(ValueType.class), anyString(),
-                any(TrackedEntityAttributeSearchScope.class), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean());
+        verify(trackedEntityAttributeStore, never()).upsert(anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
+                anyInt(), anyString(), any(ValueType.class), anyString(),
+                any(TrackedEntityAttributeSearchScope.class), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(),
+                anyBoolean(), anyBoolean(), anyBoolean());
 
     }
 
     @Test
-    public void update_shouldUpdateTrackedEntityAttribute() throws Exception {
-        when(trackedEntityAttributeStore.update(anyString(), anyString(), anyString(),
-                anyString(), any(Date.class), any(Date.class), anyString(), anyString(), anyString(),
-                anyString(), anyString(), anyInt(), anyString(), any(ValueType.class), anyString(),
-                any(TrackedEntityAttributeSearchScope.class), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyString())).thenReturn(1);
-
+    public void upsert_shouldUpsertTrackedEntityAttribute() throws Exception {
         trackedEntityAttributeHandler.handleTrackedEntityAttribute(trackedEntityAttribute);
 
-        // verify that update is called once
-        verify(trackedEntityAttributeStore, timeout(1)).update(anyString(), anyString(), anyString(),
-                anyString(), any(Date.class), any(Date.class), anyString(), anyString(), anyString(),
-                anyString(), anyString(), anyInt(), anyString(), any(ValueType.class), anyString(),
-                any(TrackedEntityAttributeSearchScope.class), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyString());
-
-        // verify that insert and delete is never called
-        verify(trackedEntityAttributeStore, never()).insert(anyString(), anyString(), anyString(),
-                anyString(), any(Date.class), any(Date.class), anyString(), anyString(), anyString(),
-                anyString(), anyString(), anyInt(), anyString(), any(ValueType.class), anyString(),
-                any(TrackedEntityAttributeSearchScope.class), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean());
-
-        verify(trackedEntityAttributeStore, never()).delete(anyString());
-    }
-
-    @Test
-    public void insert_shouldInsertTrackedEntityAttribute() throws Exception {
-        when(trackedEntityAttributeStore.update(anyString(), anyString(), anyString(),
-                anyString(), any(Date.class), any(Date.class), anyString(), anyString(), anyString(),
-                anyString(), anyString(), anyInt(), anyString(), any(ValueType.class), anyString(),
-                any(TrackedEntityAttributeSearchScope.class), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyString())).thenReturn(0);
-
-        trackedEntityAttributeHandler.handleTrackedEntityAttribute(trackedEntityAttribute);
-
-        // verify that insert is called once
-        verify(trackedEntityAttributeStore, times(1)).insert(anyString(), anyString(), anyString(),
-                anyString(), any(Date.class), any(Date.class), anyString(), anyString(), anyString(),
-                anyString(), anyString(), anyInt(), anyString(), any(ValueType.class), anyString(),
-                any(TrackedEntityAttributeSearchScope.class), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean());
-
-        // verify that update is called once since we try to update before we insert
-        verify(trackedEntityAttributeStore, times(1)).update(anyString(), anyString(), anyString(),
-                anyString(), any(Date.class), any(Date.class), anyString(), anyString(), anyString(),
-                anyString(), anyString(), anyInt(), anyString(), any(ValueType.class), anyString(),
-                any(TrackedEntityAttributeSearchScope.class), anyBoolean(), anyBoolean(),
-                anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(), anyString());
+        // verify that upsert is called once
+        verify(trackedEntityAttributeStore, times(1)).upsert(anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(),
+                anyInt(), anyString(), any(ValueType.class), anyString(),
+                any(TrackedEntityAttributeSearchScope.class), anyBoolean(), anyBoolean(), anyBoolean(), anyBoolean(),
+                anyBoolean(), anyBoolean(), anyBoolean());
 
         // verify that delete is never called
-
         verify(trackedEntityAttributeStore, never()).delete(anyString());
     }
 }
@@ -30,6 +30,7 @@ package org.hisp.dhis.android.core.trackedentity;
 import android.database.Cursor;
 
 import org.assertj.core.util.Sets;
+import org.hisp.dhis.android.core.common.Pager;
 import org.hisp.dhis.android.core.common.Payload;
 import org.hisp.dhis.android.core.data.api.Fields;
 import org.hisp.dhis.android.core.data.api.Filter;
@@ -44,6 +45,7 @@ import org.junit.runners.JUnit4;
 import org.mockito.Answers;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
@@ -58,8 +60,11 @@ import retrofit2.Response;
 import static junit.framework.Assert.fail;
 import static org.assertj.core.api.Java6Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -216,14 +221,25 @@ public class TrackedEntityCallUnitTests {
         verify(database, times(1)).beginNewTransaction();
         verify(transaction, times(1)).setSuccessful();
         verify(transaction, times(1)).end();
-        verify(trackedEntityStore, times(1)).insert(
-                anyString(), anyString(), anyString(), anyString(), any(Date.class), any(Date.class),
-                anyString(), anyString(), anyString(), anyString());
+        verify(trackedEntityStore, times(1)).upsert(anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyString(), anyString(), anyString(), anyString());
         //TODO: after implementing the SystemInfoCall, tests..etc modify this to actually check the date:
         //Right now it only checks if: (Date) null is an instance of Date.class, not a terribly useful:
         verify(resourceStore, times(1)).insert(anyString(), any(Date.class));
     }
 
+    @Test
+    public void call_shouldKeepLastSync_ifDeltaIsEmpty() throws Exception {
+        when(payload.items()).thenReturn(Collections.<TrackedEntity>emptyList());
+
+        call.call();
+
+        // the next call requests the same url, which the cache can revalidate
+        verify(transaction).setSuccessful();
+        verify(resourceStore, never()).insert(anyString(), any(Date.class));
+        verify(resourceStore, never()).update(anyString(), any(Date.class), anyString());
+    }
+
 
     @Test
     @SuppressWarnings("unchecked")
@@ -283,5 +299,75 @@ public class TrackedEntityCallUnitTests {
             assertThat(call.isExecuted()).isTrue();
         }
     }
-}
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void call_shouldPersistEveryPage_ifPaged() throws Exception {
+        TrackedEntityCall pagedCall = new TrackedEntityCall(Sets.newLinkedHashSet(trackedEntity.uid()), database,
+                trackedEntityStore, resourceStore, service, serverDate, 1);
+        retrofit2.Call<Payload<TrackedEntity>> firstPage = pageCall(1, 2);
+        retrofit2.Call<Payload<TrackedEntity>> secondPage = pageCall(2, 2);
+        when(service.trackedEntitiesPage(any(Fields.class), any(Filter.class), any(Filter.class), eq(1), eq(1)))
+                .thenReturn(firstPage);
+        when(service.trackedEntitiesPage(any(Fields.class), any(Filter.class), any(Filter.class), eq(2), eq(1)))
+                .thenReturn(secondPage);
+
+        pagedCall.call();
+
+        InOrder pagesOrder = inOrder(firstPage, trackedEntityStore, secondPage, resourceStore);
+        pagesOrder.verify(firstPage).execute();
+        pagesOrder.verify(trackedEntityStore).upsert(
+                anyString(), anyString(), anyString(), anyString(), any(Date.class), any(Date.class),
+                anyString(), anyString(), anyString(), anyString());
+        pagesOrder.verify(secondPage).execute();
+        pagesOrder.verify(trackedEntityStore).upsert(
+                anyString(), anyString(), anyString(), anyString(), any(Date.class), any(Date.class),
+                anyString(), anyString(), anyString(), anyString());
+        pagesOrder.verify(resourceStore).update(anyString(), any(Date.class), anyString());
+
+        // one transaction per page and one to mark the resource as synced
+        verify(database, times(3)).beginNewTransaction();
+        verify(transaction, times(3)).setSuccessful();
+        verify(service, never()).trackedEntities(
+                any(Fields.class), any(Filter.class), any(Filter.class), any(Boolean.class));
+        verify(service, never()).trackedEntitiesPage(
+                any(Fields.class), any(Filter.class), any(Filter.class), eq(3), anyInt());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void download_shouldNotWritePages_untilPersisted() throws Exception {
+        TrackedEntityCall pagedCall = new TrackedEntityCall(Sets.newLinkedHashSet(trackedEntity.uid()), database,
+                trackedEntityStore, resourceStore, service, serverDate, 1);
+        retrofit2.Call<Payload<TrackedEntity>> firstPage = pageCall(1, 2);
+        retrofit2.Call<Payload<TrackedEntity>> secondPage = pageCall(2, 2);
+        when(service.trackedEntitiesPage(any(Fields.class), any(Filter.class), any(Filter.class), eq(1), eq(1)))
+                .thenReturn(firstPage);
+        when(service.trackedEntitiesPage(any(Fields.class), any(Filter.class), any(Filter.class), eq(2), eq(1)))
+                .thenReturn(secondPage);
+
+        // the download step runs on a worker thread, so it must neither write nor open a transaction
+        Response<Payload<TrackedEntity>> response = pagedCall.download();
+
+        verify(secondPage).execute();
+        verify(database, never()).beginNewTransaction();
+        verify(trackedEntityStore, never()).upsert(
+                anyString(), anyString(), anyString(), anyString(), any(Date.class), any(Date.class),
+                anyString(), anyString(), anyString(), anyString());
+
+        pagedCall.persist(response);
+
+        verify(trackedEntityStore, times(2)).upsert(
+                anyString(), anyString(), anyString(), anyString(), any(Date.class), any(Date.class),
+                anyString(), anyString(), anyString(), anyString());
+        verify(resourceStore).update(anyString(), any(Date.class), anyString());
+    }
+
+    @SuppressWarnings("unchecked")
+    private retrofit2.Call<Payload<TrackedEntity>> pageCall(int page, int pageCount) throws IOException {
+        retrofit2.Call<Payload<TrackedEntity>> pageCall = mock(retrofit2.Call.class);
+        when(pageCall.execute()).thenReturn(Response.success(Payload.create(
+                new Pager(page, pageCount, 1, pageCount), Collections.singletonList(trackedEntity))));
+        return pageCall;
+    }
+}
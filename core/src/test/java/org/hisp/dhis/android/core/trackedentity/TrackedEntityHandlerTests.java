@@ -39,6 +39,7 @@ import java.util.Date;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -91,27 +92,30 @@ public class TrackedEntityHandlerTests {
     }
 
     @Test
-    public void shouldUpdate() {
-        when(store.update(anyString(), anyString(), anyString(), anyString(), any(Date.class), any(Date.class),
-                anyString(), anyString(), anyString(), anyString(), anyString())
-        ).thenReturn(1);
-
+    public void shouldUpsert() {
         handler.handleTrackedEntity(trackedEntity);
 
-        verify(store, times(1)).update(eq(UID), eq(CODE), eq(NAME), eq(DISPLAY_NAME), eq(created), eq(lastUpdated),
-                eq(SHORT_NAME), eq(DISPLAY_SHORT_NAME), eq(DESCRIPTION), eq(DISPLAY_DESCRIPTION), eq(UID));
+        verify(store, times(1)).upsert(eq(UID), eq(CODE), eq(NAME), eq(DISPLAY_NAME), eq(created), eq(lastUpdated),
+                eq(SHORT_NAME), eq(DISPLAY_SHORT_NAME), eq(DESCRIPTION), eq(DISPLAY_DESCRIPTION));
     }
 
     @Test
-    public void shouldInsert() {
-        when(store.update(anyString(), anyString(), anyString(), anyString(), any(Date.class), any(Date.class),
-                anyString(), anyString(), anyString(), anyString(), anyString())
-        ).thenReturn(-1);
+    public void handleTrackedEntityReference_shouldInsertIfNotExists() {
+        handler.handleTrackedEntityReference(trackedEntity);
 
-        handler.handleTrackedEntity(trackedEntity);
+        verify(store, times(1)).insertIfNotExists(UID);
+        verify(store, never()).upsert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
+                any(Date.class), anyString(), anyString(), anyString(), anyString());
+    }
 
-        verify(store, times(1)).insert(eq(UID), eq(CODE), eq(NAME), eq(DISPLAY_NAME), eq(created), eq(lastUpdated),
-                eq(SHORT_NAME), eq(DISPLAY_SHORT_NAME), eq(DESCRIPTION), eq(DISPLAY_DESCRIPTION));
+    @Test
+    public void handleTrackedEntityReference_shouldIgnoreDeletedTrackedEntity() {
+        when(trackedEntity.deleted()).thenReturn(true);
+
+        handler.handleTrackedEntityReference(trackedEntity);
+        handler.handleTrackedEntityReference(null);
+
+        verify(store, never()).insertIfNotExists(anyString());
     }
 
     @Test (expected = NullPointerException.class)
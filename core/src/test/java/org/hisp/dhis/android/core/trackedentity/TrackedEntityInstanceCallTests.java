@@ -0,0 +1,354 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.core.trackedentity;
+
+import org.hisp.dhis.android.core.Inject;
+import org.hisp.dhis.android.core.common.State;
+import org.hisp.dhis.android.core.data.api.FieldsConverterFactory;
+import org.hisp.dhis.android.core.data.api.FilterConverterFactory;
+import org.hisp.dhis.android.core.data.database.DatabaseAdapter;
+import org.hisp.dhis.android.core.data.database.Transaction;
+import org.hisp.dhis.android.core.enrollment.EnrollmentModel;
+import org.hisp.dhis.android.core.enrollment.EnrollmentStatus;
+import org.hisp.dhis.android.core.enrollment.EnrollmentStore;
+import org.hisp.dhis.android.core.event.EventModel;
+import org.hisp.dhis.android.core.event.EventStore;
+import org.hisp.dhis.android.core.resource.ResourceModel;
+import org.hisp.dhis.android.core.resource.ResourceStore;
+import org.hisp.dhis.android.core.systeminfo.SystemInfoService;
+import org.hisp.dhis.android.core.systeminfo.SystemInfoStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.converter.jackson.JacksonConverterFactory;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(JUnit4.class)
+public class TrackedEntityInstanceCallTests {
+    private static final String SYSTEM_INFO = "{\"serverDate\": \"2017-05-10T08:00:00.000\"}";
+
+    private static final String TRACKED_ENTITY_INSTANCES = "{\n" +
+            "    \"pager\": {\"page\": %d, \"pageCount\": %d, \"pageSize\": 2, \"total\": 3},\n" +
+            "    \"trackedEntityInstances\": [%s]\n" +
+            "}";
+
+    private static final String RESOURCE_TYPE = ResourceModel.Type.TRACKED_ENTITY_INSTANCE.name();
+
+    @Mock
+    private DatabaseAdapter databaseAdapter;
+
+    @Mock
+    private Transaction transaction;
+
+    @Mock
+    private SystemInfoStore systemInfoStore;
+
+    @Mock
+    private ResourceStore resourceStore;
+
+    @Mock
+    private TrackedEntityInstanceStore trackedEntityInstanceStore;
+
+    @Mock
+    private TrackedEntityAttributeValueStore trackedEntityAttributeValueStore;
+
+    @Mock
+    private EnrollmentStore enrollmentStore;
+
+    @Mock
+    private EventStore eventStore;
+
+    @Mock
+    private TrackedEntityDataValueStore trackedEntityDataValueStore;
+
+    @Captor
+    private ArgumentCaptor<List<TrackedEntityInstanceModel>> trackedEntityInstancesCaptor;
+
+    @Captor
+    private ArgumentCaptor<List<TrackedEntityAttributeValueModel>> attributeValuesCaptor;
+
+    @Captor
+    private ArgumentCaptor<List<EnrollmentModel>> enrollmentsCaptor;
+
+    @Captor
+    private ArgumentCaptor<List<EventModel>> eventsCaptor;
+
+    @Captor
+    private ArgumentCaptor<List<TrackedEntityDataValueModel>> dataValuesCaptor;
+
+    private MockWebServer server;
+    private SystemInfoService systemInfoService;
+    private TrackedEntityInstanceService trackedEntityInstanceService;
+
+    @Before
+    public void setUp() throws IOException {
+        MockitoAnnotations.initMocks(this);
+
+        server = new MockWebServer();
+        server.start();
+
+        Retrofit retrofit = new Retrofit.Builder()
+                .baseUrl(server.url("/api/"))
+                .addConverterFactory(JacksonConverterFactory.create(Inject.objectMapper()))
+                .addConverterFactory(FilterConverterFactory.create())
+                .addConverterFactory(FieldsConverterFactory.create())
+                .build();
+        systemInfoService = retrofit.create(SystemInfoService.class);
+        trackedEntityInstanceService = retrofit.create(TrackedEntityInstanceService.class);
+
+        when(databaseAdapter.beginNewTransaction()).thenReturn(transaction);
+        when(trackedEntityInstanceStore.queryUidsWithLocalChanges(anyCollectionOf(String.class)))
+                .thenReturn(Collections.<String>emptySet());
+        when(eventStore.queryUidsWithLocalChanges(anyCollectionOf(String.class)))
+                .thenReturn(Collections.<String>emptySet());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void call_shouldRequestEveryPageOfOrganisationUnitWithNestedFields() throws Exception {
+        when(resourceStore.getLastUpdated(RESOURCE_TYPE + "/DiszpKrYNg8")).thenReturn("2017-05-01T00:00:00.000");
+        server.enqueue(new MockResponse().setBody(SYSTEM_INFO));
+        server.enqueue(new MockResponse().setBody(trackedEntityInstances(1, 2,
+                trackedEntityInstance("a1b2c3d4e5f") + ", " + trackedEntityInstance("b1b2c3d4e5f"))));
+        server.enqueue(new MockResponse().setBody(trackedEntityInstances(2, 2,
+                trackedEntityInstance("c1b2c3d4e5f"))));
+
+        Response response = call(Collections.singleton("DiszpKrYNg8")).call();
+
+        assertThat(response.isSuccessful()).isTrue();
+        assertThat(server.getRequestCount()).isEqualTo(3);
+        server.takeRequest();
+        HttpUrl url = requestUrl(server.takeRequest());
+        assertThat(url.encodedPath()).isEqualTo("/api/trackedEntityInstances");
+        assertThat(url.queryParameter("ou")).isEqualTo("DiszpKrYNg8");
+        assertThat(url.queryParameter("ouMode")).isEqualTo("DESCENDANTS");
+        assertThat(url.queryParameter("lastUpdatedStartDate")).isEqualTo("2017-05-01T00:00:00.000");
+        assertThat(url.queryParameter("page")).isEqualTo("1");
+        assertThat(url.queryParameter("pageSize")).isEqualTo("2");
+        assertThat(url.queryParameter("totalPages")).isEqualTo("true");
+        assertThat(url.queryParameter("fields"))
+                .contains("attributes[attribute,value]")
+                .contains("enrollments[enrollment,")
+                .contains("events[event,")
+                .contains("dataValues[dataElement,");
+        assertThat(requestUrl(server.takeRequest()).queryParameter("page")).isEqualTo("2");
+
+        // the system info and every page are written in their own transaction, and so is the completed sync
+        verify(transaction, times(4)).setSuccessful();
+        verify(resourceStore).update(eq(RESOURCE_TYPE + "/DiszpKrYNg8"), any(Date.class),
+                eq(RESOURCE_TYPE + "/DiszpKrYNg8"));
+        verify(resourceStore).update(eq(RESOURCE_TYPE), any(Date.class), eq(RESOURCE_TYPE));
+    }
+
+    @Test
+    public void call_shouldInsertTrackedEntityInstancesWithTheirNestedRows() throws Exception {
+        server.enqueue(new MockResponse().setBody(SYSTEM_INFO));
+        server.enqueue(new MockResponse().setBody(trackedEntityInstances(1, 1,
+                trackedEntityInstance("a1b2c3d4e5f"))));
+
+        call(Collections.singleton("DiszpKrYNg8")).call();
+
+        verify(trackedEntityInstanceStore).delete(Collections.singleton("a1b2c3d4e5f"));
+        verify(eventStore).delete(Collections.singleton("v1b2c3d4e5f"));
+        verify(trackedEntityInstanceStore).insertAll(trackedEntityInstancesCaptor.capture());
+        TrackedEntityInstanceModel trackedEntityInstance = trackedEntityInstancesCaptor.getValue().get(0);
+        assertThat(trackedEntityInstance.uid()).isEqualTo("a1b2c3d4e5f");
+        assertThat(trackedEntityInstance.organisationUnit()).isEqualTo("DiszpKrYNg8");
+        assertThat(trackedEntityInstance.trackedEntity()).isEqualTo("nEenWmSyUEp");
+        assertThat(trackedEntityInstance.state()).isEqualTo(State.SYNCED);
+
+        verify(trackedEntityAttributeValueStore).insertAll(attributeValuesCaptor.capture());
+        TrackedEntityAttributeValueModel attributeValue = attributeValuesCaptor.getValue().get(0);
+        assertThat(attributeValue.trackedEntityInstance()).isEqualTo("a1b2c3d4e5f");
+        assertThat(attributeValue.trackedEntityAttribute()).isEqualTo("w75KJ2mc4zz");
+        assertThat(attributeValue.value()).isEqualTo("Makda");
+
+        verify(enrollmentStore).insertAll(enrollmentsCaptor.capture());
+        EnrollmentModel enrollment = enrollmentsCaptor.getValue().get(0);
+        assertThat(enrollment.uid()).isEqualTo("e1b2c3d4e5f");
+        assertThat(enrollment.trackedEntityInstance()).isEqualTo("a1b2c3d4e5f");
+        assertThat(enrollment.program()).isEqualTo("IpHINAT79UW");
+        assertThat(enrollment.enrollmentStatus()).isEqualTo(EnrollmentStatus.ACTIVE);
+        assertThat(enrollment.state()).isEqualTo(State.SYNCED);
+
+        verify(eventStore).insertAll(eventsCaptor.capture());
+        EventModel event = eventsCaptor.getValue().get(0);
+        assertThat(event.uid()).isEqualTo("v1b2c3d4e5f");
+        assertThat(event.enrollmentUid()).isEqualTo(enrollment.uid());
+        assertThat(event.state()).isEqualTo(State.SYNCED);
+
+        verify(trackedEntityDataValueStore).insertAll(dataValuesCaptor.capture());
+        TrackedEntityDataValueModel dataValue = dataValuesCaptor.getValue().get(0);
+        assertThat(dataValue.event()).isEqualTo(event.uid());
+        assertThat(dataValue.value()).isEqualTo("42");
+    }
+
+    @Test
+    public void call_shouldKeepTrackedEntityInstancesWithLocalChanges() throws Exception {
+        when(trackedEntityInstanceStore.queryUidsWithLocalChanges(anyCollectionOf(String.class)))
+                .thenReturn(Collections.singleton("a1b2c3d4e5f"));
+        server.enqueue(new MockResponse().setBody(SYSTEM_INFO));
+        server.enqueue(new MockResponse().setBody(trackedEntityInstances(1, 1,
+                trackedEntityInstance("a1b2c3d4e5f") + ", " + trackedEntityInstance("b1b2c3d4e5f"))));
+
+        call(Collections.singleton("DiszpKrYNg8")).call();
+
+        verify(trackedEntityInstanceStore).delete(Collections.singleton("b1b2c3d4e5f"));
+        verify(trackedEntityInstanceStore).insertAll(trackedEntityInstancesCaptor.capture());
+        assertThat(trackedEntityInstancesCaptor.getValue()).hasSize(1);
+        assertThat(trackedEntityInstancesCaptor.getValue().get(0).uid()).isEqualTo("b1b2c3d4e5f");
+        verify(enrollmentStore).insertAll(enrollmentsCaptor.capture());
+        assertThat(enrollmentsCaptor.getValue()).hasSize(1);
+        assertThat(enrollmentsCaptor.getValue().get(0).trackedEntityInstance()).isEqualTo("b1b2c3d4e5f");
+        verify(eventStore).insertAll(eventsCaptor.capture());
+        assertThat(eventsCaptor.getValue()).hasSize(1);
+    }
+
+    @Test
+    public void call_shouldReplaceDownloadedEvents_butKeepEventsWithLocalChanges() throws Exception {
+        // both events may have been written by the download of events before, one of them has been changed since
+        when(eventStore.queryUidsWithLocalChanges(anyCollectionOf(String.class)))
+                .thenReturn(Collections.singleton("v1b2c3d4e5f"));
+        server.enqueue(new MockResponse().setBody(SYSTEM_INFO));
+        server.enqueue(new MockResponse().setBody(trackedEntityInstances(1, 1,
+                trackedEntityInstance("a1b2c3d4e5f") + ", " + trackedEntityInstance("b2b2c3d4e5f"))));
+
+        call(Collections.singleton("DiszpKrYNg8")).call();
+
+        verify(eventStore).delete(Collections.singleton("v2b2c3d4e5f"));
+        verify(eventStore).insertAll(eventsCaptor.capture());
+        assertThat(eventsCaptor.getValue()).hasSize(1);
+        assertThat(eventsCaptor.getValue().get(0).uid()).isEqualTo("v2b2c3d4e5f");
+        verify(trackedEntityDataValueStore).insertAll(dataValuesCaptor.capture());
+        assertThat(dataValuesCaptor.getValue()).hasSize(1);
+        assertThat(dataValuesCaptor.getValue().get(0).event()).isEqualTo("v2b2c3d4e5f");
+    }
+
+    @Test
+    public void call_shouldRequestEveryOrganisationUnitSinceItsOwnLastDownload() throws Exception {
+        when(resourceStore.getLastUpdated(RESOURCE_TYPE + "/DiszpKrYNg8")).thenReturn("2017-05-01T00:00:00.000");
+        server.enqueue(new MockResponse().setBody(SYSTEM_INFO));
+        server.enqueue(new MockResponse().setBody(trackedEntityInstances(1, 1, "")));
+        server.enqueue(new MockResponse().setBody(trackedEntityInstances(1, 1, "")));
+
+        call(new HashSet<>(Arrays.asList("ImspTQPwCqd", "DiszpKrYNg8"))).call();
+
+        assertThat(server.getRequestCount()).isEqualTo(3);
+        server.takeRequest();
+        HttpUrl first = requestUrl(server.takeRequest());
+        assertThat(first.queryParameter("ou")).isEqualTo("DiszpKrYNg8");
+        assertThat(first.queryParameter("lastUpdatedStartDate")).isEqualTo("2017-05-01T00:00:00.000");
+        HttpUrl second = requestUrl(server.takeRequest());
+        assertThat(second.queryParameter("ou")).isEqualTo("ImspTQPwCqd");
+        assertThat(second.queryParameter("lastUpdatedStartDate")).isNull();
+        verify(trackedEntityInstanceStore, never()).insertAll(anyListOf(TrackedEntityInstanceModel.class));
+
+        // the last download is recorded for both organisation units
+        verify(resourceStore).update(eq(RESOURCE_TYPE + "/DiszpKrYNg8"), any(Date.class),
+                eq(RESOURCE_TYPE + "/DiszpKrYNg8"));
+        verify(resourceStore).update(eq(RESOURCE_TYPE + "/ImspTQPwCqd"), any(Date.class),
+                eq(RESOURCE_TYPE + "/ImspTQPwCqd"));
+    }
+
+    @Test
+    public void call_shouldNotDownloadTrackedEntityInstances_ifSystemInfoFails() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(500));
+
+        Response response = call(Collections.singleton("DiszpKrYNg8")).call();
+
+        assertThat(response.code()).isEqualTo(500);
+        assertThat(server.getRequestCount()).isEqualTo(1);
+        verify(resourceStore, never()).updatePaging(anyString(), anyString(), anyInt(),
+                any(Date.class));
+    }
+
+    private TrackedEntityInstanceCall call(Set<String> organisationUnitUids) {
+        return new TrackedEntityInstanceCall(databaseAdapter, systemInfoStore, systemInfoService, resourceStore,
+                trackedEntityInstanceService, trackedEntityInstanceStore, trackedEntityAttributeValueStore,
+                enrollmentStore, eventStore, trackedEntityDataValueStore, Inject.objectMapper(),
+                organisationUnitUids, 2);
+    }
+
+    private HttpUrl requestUrl(RecordedRequest request) {
+        return server.url(request.getPath());
+    }
+
+    private static String trackedEntityInstances(int page, int pageCount, String trackedEntityInstances) {
+        return String.format(TRACKED_ENTITY_INSTANCES, page, pageCount, trackedEntityInstances);
+    }
+
+    private static String trackedEntityInstance(String uid) {
+        String enrollment = "e" + uid.substring(1);
+        String event = "v" + uid.substring(1);
+        return "{\"trackedEntityInstance\": \"" + uid + "\", \"orgUnit\": \"DiszpKrYNg8\"," +
+                " \"trackedEntity\": \"nEenWmSyUEp\"," +
+                " \"attributes\": [{\"attribute\": \"w75KJ2mc4zz\", \"value\": \"Makda\"}]," +
+                " \"enrollments\": [{\"enrollment\": \"" + enrollment + "\", \"orgUnit\": \"DiszpKrYNg8\"," +
+                " \"program\": \"IpHINAT79UW\", \"status\": \"ACTIVE\", \"trackedEntityInstance\": \"" + uid + "\"," +
+                " \"events\": [{\"event\": \"" + event + "\", \"enrollment\": \"" + enrollment + "\"," +
+                " \"program\": \"IpHINAT79UW\", \"programStage\": \"A03MvHHogjR\", \"orgUnit\": \"DiszpKrYNg8\"," +
+                " \"dataValues\": [{\"dataElement\": \"qrur9Dvnyt5\", \"value\": \"42\"}]}]}]}";
+    }
+}
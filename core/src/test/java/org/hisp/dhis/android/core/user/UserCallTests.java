@@ -57,6 +57,7 @@ import retrofit2.Response;
 import static org.assertj.core.api.Java6Assertions.assertThat;
 import static org.assertj.core.api.Java6Assertions.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -254,33 +255,18 @@ public class UserCallTests {
             verify(transaction, never()).setSuccessful();
             verify(transaction, never()).end();
 
-            verify(userStore, never()).insert(
-                    anyString(), anyString(), anyString(), anyString(), any(Date.class), any(Date.class),
-                    anyString(), anyString(), anyString(), anyString(), anyString(), anyString(), anyString(),
-                    anyString(), anyString(), anyString(), anyString(), anyString(), anyString());
-            verify(userStore, never()).update(
-                    anyString(), anyString(), anyString(), anyString(), any(Date.class), any(Date.class),
-                    anyString(), anyString(), anyString(), anyString(), anyString(), anyString(), anyString(),
+            verify(userStore, never()).upsert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
+                    any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(), anyString(),
                     anyString(), anyString(), anyString(), anyString(), anyString(), anyString(), anyString());
             verify(userStore, never()).delete(anyString());
 
-            verify(userCredentialsStore, never()).insert(
-                    anyString(), anyString(), anyString(), anyString(),
-                    any(Date.class), any(Date.class), anyString(), anyString()
-            );
-            verify(userCredentialsStore, never()).update(
-                    anyString(), anyString(), anyString(), anyString(),
-                    any(Date.class), any(Date.class), anyString(), anyString(), anyString()
-            );
+            verify(userCredentialsStore, never()).upsert(anyString(), anyString(), anyString(), anyString(),
+                    any(Date.class), any(Date.class), anyString(), anyString());
 
             verify(userCredentialsStore, never()).delete(anyString());
 
-            verify(userRoleStore, never()).insert(
-                    anyString(), anyString(), anyString(), anyString(), any(Date.class), any(Date.class)
-            );
-            verify(userRoleStore, never()).update(
-                    anyString(), anyString(), anyString(), anyString(), any(Date.class), any(Date.class), anyString()
-            );
+            verify(userRoleStore, never()).upsert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
+                    any(Date.class));
             verify(userRoleStore, never()).delete(anyString());
         }
     }
@@ -301,33 +287,18 @@ public class UserCallTests {
         verify(transaction, never()).setSuccessful();
         verify(transaction, never()).end();
 
-        verify(userStore, never()).insert(
-                anyString(), anyString(), anyString(), anyString(), any(Date.class), any(Date.class),
-                anyString(), anyString(), anyString(), anyString(), anyString(), anyString(), anyString(),
-                anyString(), anyString(), anyString(), anyString(), anyString(), anyString());
-        verify(userStore, never()).update(
-                anyString(), anyString(), anyString(), anyString(), any(Date.class), any(Date.class),
-                anyString(), anyString(), anyString(), anyString(), anyString(), anyString(), anyString(),
+        verify(userStore, never()).upsert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
+                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(), anyString(),
                 anyString(), anyString(), anyString(), anyString(), anyString(), anyString(), anyString());
         verify(userStore, never()).delete(anyString());
 
-        verify(userCredentialsStore, never()).insert(
-                anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString()
-        );
-        verify(userCredentialsStore, never()).update(
-                anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString(), anyString()
-        );
+        verify(userCredentialsStore, never()).upsert(anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyString(), anyString());
 
         verify(userCredentialsStore, never()).delete(anyString());
 
-        verify(userRoleStore, never()).insert(
-                anyString(), anyString(), anyString(), anyString(), any(Date.class), any(Date.class)
-        );
-        verify(userRoleStore, never()).update(
-                anyString(), anyString(), anyString(), anyString(), any(Date.class), any(Date.class), anyString()
-        );
+        verify(userRoleStore, never()).upsert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
+                any(Date.class));
         verify(userRoleStore, never()).delete(anyString());
     }
 
@@ -376,22 +347,17 @@ public class UserCallTests {
 
         userSyncCall.call();
 
-        verify(userStore, times(1)).insert(
-                anyString(), anyString(), anyString(), anyString(), any(Date.class), any(Date.class),
-                anyString(), anyString(), anyString(), anyString(), anyString(), anyString(), anyString(),
-                anyString(), anyString(), anyString(), anyString(), anyString(), anyString()
-        );
+        verify(userStore, times(1)).upsert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
+                any(Date.class), anyString(), anyString(), anyString(), anyString(), anyString(), anyString(),
+                anyString(), anyString(), anyString(), anyString(), anyString(), anyString(), anyString());
 
-        verify(userCredentialsStore, times(1)).insert(
-                anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(), anyString()
-        );
+        verify(userCredentialsStore, times(1)).upsert(anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyString(), anyString());
 
-        verify(userRoleStore, times(1)).insert(
-                anyString(), anyString(), anyString(), anyString(), any(Date.class), any(Date.class)
-        );
+        verify(userRoleStore, times(1)).upsert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
+                any(Date.class));
 
-        verify(userRoleProgramLinkStore, times(1)).insert(anyString(), anyString());
+        verify(userRoleProgramLinkStore, times(1)).replaceLinks(anyString(), anyCollectionOf(String.class));
 
         verify(resourceStore, times(1)).insert(anyString(), any(Date.class));
 
@@ -81,19 +81,11 @@ public class UserCredentialsHandlerTests {
 
     @Test
     public void update_shouldUpdateUserCredentials() throws Exception {
-        // insert userCredentials first to check the updateWithSection mechanism
-        when(userCredentialsStore.update(anyString(), anyString(), anyString(),
-                anyString(), any(Date.class), any(Date.class), anyString(), anyString(), anyString())).thenReturn(1);
-
         userCredentialHandler.handleUserCredentials(userCredentials, user);
 
-        // verify that update is called once
-        verify(userCredentialsStore, times(1)).update(anyString(), anyString(), anyString(),
-                anyString(), any(Date.class), any(Date.class), anyString(), anyString(), anyString());
-
-        // verify that insert and delete is never called
-        verify(userCredentialsStore, never()).insert(anyString(), anyString(), anyString(),
-                anyString(), any(Date.class), any(Date.class), anyString(), anyString());
+        // verify that upsert is called once
+        verify(userCredentialsStore, times(1)).upsert(anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyString(), anyString());
 
         verify(userCredentialsStore, never()).delete(anyString());
     }
@@ -106,14 +98,8 @@ public class UserCredentialsHandlerTests {
 
         verify(userCredentialsStore, times(1)).delete(anyString());
 
-        // verify that insert and update is never called
-        verify(userCredentialsStore, never()).update(anyString(), anyString(),
-                anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString(),
-                anyString(), anyString());
-
-        verify(userCredentialsStore, never()).insert(anyString(), anyString(), anyString(),
-                anyString(), any(Date.class), any(Date.class), anyString(), anyString());
+        verify(userCredentialsStore, never()).upsert(anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyString(), anyString());
 
     }
 
@@ -122,31 +108,8 @@ public class UserCredentialsHandlerTests {
         userCredentialHandler.handleUserCredentials(null, user);
 
         verify(userCredentialsStore, never()).delete(anyString());
-        verify(userCredentialsStore, never()).insert(anyString(), anyString(), anyString(),
-                anyString(), any(Date.class), any(Date.class), anyString(), anyString());
-        verify(userCredentialsStore, never()).update(anyString(), anyString(), anyString(),
-                anyString(), any(Date.class), any(Date.class), anyString(), anyString(), anyString());
-
-    }
-
-    @Test
-    public void insert_shouldInsertUserCredentials() throws Exception {
-        when(userCredentialsStore.update(
-                anyString(), anyString(), anyString(), anyString(), any(Date.class), any(Date.class),
-                anyString(), anyString(), anyString())
-        ).thenReturn(0);
-
-        userCredentialHandler.handleUserCredentials(userCredentials, user);
+        verify(userCredentialsStore, never()).upsert(anyString(), anyString(), anyString(), anyString(),
+                any(Date.class), any(Date.class), anyString(), anyString());
 
-        // verify that insert is called once
-        verify(userCredentialsStore, times(1)).insert(anyString(), anyString(), anyString(),
-                anyString(), any(Date.class), any(Date.class), anyString(), anyString());
-
-        // verify that update is called once since we try to update before we insert
-        verify(userCredentialsStore, times(1)).update(anyString(), anyString(), anyString(),
-                anyString(), any(Date.class), any(Date.class), anyString(), anyString(), anyString());
-
-        // verify that delete is never called
-        verify(userCredentialsStore, never()).delete(anyString());
     }
 }
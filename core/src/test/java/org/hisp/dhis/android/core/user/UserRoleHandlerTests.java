@@ -92,55 +92,23 @@ public class UserRoleHandlerTests {
         userRoles.add(userRole);
     }
 
-    @Test
-    public void insert_shouldInsertUserRole() throws Exception {
-        when(userRoleStore.update(anyString(), anyString(), anyString(),
-                anyString(), any(Date.class), any(Date.class), anyString())).thenReturn(0);
-
-        userRoleHandler.handleUserRoles(userRoles);
-
-
-        // verify that userRoleStore was called once with insert
-        verify(userRoleStore, times(1)).insert(anyString(), anyString(), anyString(),
-                anyString(), any(Date.class), any(Date.class));
-
-        // verify that update was called once (Because we try to update before we can insert)
-        verify(userRoleStore, times(1)).update(anyString(), anyString(), anyString(),
-                anyString(), any(Date.class), any(Date.class), anyString());
-
-        // verify that delete was not called
-        verify(userRoleStore, never()).delete(anyString());
-    }
-
     @Test
     public void update_shouldUpdateUserRole() throws Exception {
-
-        when(userRoleStore.update(anyString(), anyString(), anyString(),
-                anyString(), any(Date.class), any(Date.class), anyString())).thenReturn(1);
-
         userRoleHandler.handleUserRoles(userRoles);
 
-
-        verify(userRoleStore, times(1)).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString());
-
-        verify(userRoleStore, never()).insert(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class));
+        verify(userRoleStore, times(1)).upsert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
+                any(Date.class));
 
         verify(userRoleStore, never()).delete(anyString());
     }
 
     @Test
     public void insert_shouldInsertInLinkStore() throws Exception {
-        when(userRoleProgramLinkStore.update(anyString(), anyString(), anyString(), anyString())).thenReturn(0);
-
         userRoleHandler.handleUserRoles(userRoles);
 
-        // verify that insert is called once
-        verify(userRoleProgramLinkStore, times(1)).insert(anyString(), anyString());
-
-        // verify that updateWithSection is called once since we try to updateWithSection before we insert
-        verify(userRoleProgramLinkStore, times(1)).update(anyString(), anyString(), anyString(), anyString());
+        // verify that the links of the user role are replaced once
+        verify(userRoleProgramLinkStore, times(1)).replaceLinks("user_role_uid",
+                Collections.singletonList("program_uid"));
 
         // verify that delete is never called
         verify(userRoleProgramLinkStore, never()).delete(anyString(), anyString());
@@ -150,17 +118,16 @@ public class UserRoleHandlerTests {
     public void update_shouldUpdateInLinkStore() throws Exception {
         when(userRole.uid()).thenReturn("new_user_role_uid");
         when(program.uid()).thenReturn("new_program_uid");
-        when(userRoleProgramLinkStore.update(anyString(), anyString(), anyString(), anyString())).thenReturn(1);
 
         userRoleHandler.handleUserRoles(userRoles);
 
-        // verify that updateWithSection is called once
-        verify(userRoleProgramLinkStore, times(1)).update(anyString(), anyString(), anyString(), anyString());
+        // verify that the links of the user role are replaced once
+        verify(userRoleProgramLinkStore, times(1)).replaceLinks("new_user_role_uid",
+                Collections.singletonList("new_program_uid"));
 
-        // verify that insert and delete is never called
+        // verify that delete is never called
 
         verify(userRoleProgramLinkStore, never()).delete(anyString(), anyString());
-        verify(userRoleProgramLinkStore, never()).insert(anyString(), anyString());
     }
 
     @Test
@@ -172,11 +139,7 @@ public class UserRoleHandlerTests {
         // verify that delete is called once
         verify(userRoleStore, times(1)).delete(anyString());
 
-        // verify that updateWithSection and insert is never called
-        verify(userRoleStore, never()).update(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class), anyString());
-
-        verify(userRoleStore, never()).insert(anyString(), anyString(), anyString(), anyString(),
-                any(Date.class), any(Date.class));
+        verify(userRoleStore, never()).upsert(anyString(), anyString(), anyString(), anyString(), any(Date.class),
+                any(Date.class));
     }
 }
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hisp.dhis.android.processor;
+
+import com.google.auto.value.extension.AutoValueExtension;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+
+/**
+ * AutoValue extension which implements {@code void bindTo(SQLiteStatement statement, int index)} of the models
+ * which declare it, usually by implementing {@code StatementBinder}.
+ * <p>
+ * Every column of the model, but the auto-incremented id, is bound by the setter of its SQLite type, like
+ * {@code bindLong()} for booleans, integers and dates (as epoch milliseconds), to a bind argument at a fixed
+ * offset from {@code index}. The column names are taken from the {@code @ColumnName} annotations of
+ * auto-value-cursor and are listed, in the order of their bind arguments, by the static {@code COLUMNS} array
+ * of the generated class.
+ * </p>
+ */
+public class StatementBinderExtension extends AutoValueExtension {
+    private static final String BIND_METHOD = "bindTo";
+    private static final String STATEMENT = "android.database.sqlite.SQLiteStatement";
+    private static final String CONTENT_VALUES = "android.content.ContentValues";
+    private static final String COLUMN_NAME = "com.gabrielittner.auto.value.cursor.ColumnName";
+    private static final String ID_COLUMN = "_id";
+
+    private static final String INDENT = "    ";
+
+    @Override
+    public boolean applicable(Context context) {
+        return bindMethod(context) != null;
+    }
+
+    @Override
+    public Set<ExecutableElement> consumeMethods(Context context) {
+        ExecutableElement bindMethod = bindMethod(context);
+        return bindMethod == null ? Collections.<ExecutableElement>emptySet() : Collections.singleton(bindMethod);
+    }
+
+    @Override
+    public String generateClass(Context context, String className, String classToExtend, boolean isFinal) {
+        List<String> parameters = new ArrayList<>();
+        List<String> arguments = new ArrayList<>();
+        List<String> columns = new ArrayList<>();
+        StringBuilder bindings = new StringBuilder();
+
+        for (Map.Entry<String, ExecutableElement> property : context.properties().entrySet()) {
+            ExecutableElement getter = property.getValue();
+            TypeMirror type = getter.getReturnType();
+            parameters.add(type + " " + property.getKey());
+            arguments.add(property.getKey());
+            if (CONTENT_VALUES.equals(type.toString())) {
+                // toContentValues() of auto-value-cursor is no column, but may still be passed to the constructor
+                continue;
+            }
+
+            String column = columnName(getter, property.getKey());
+            if (!ID_COLUMN.equals(column)) {
+                appendBinding(context, bindings, getter, columns.size());
+                columns.add('"' + column + '"');
+            }
+        }
+
+        return "package " + context.packageName() + ";\n\n" +
+                (isFinal ? "final" : "abstract") + " class " + className + " extends " + classToExtend + " {\n" +
+                INDENT + "static final String[] COLUMNS = {" + join(columns) + "};\n\n" +
+                INDENT + className + "(" + join(parameters) + ") {\n" +
+                INDENT + INDENT + "super(" + join(arguments) + ");\n" +
+                INDENT + "}\n\n" +
+                INDENT + "@Override\n" +
+                INDENT + "public final void " + BIND_METHOD + "(" + STATEMENT + " statement, int index) {\n" +
+                bindings +
+                INDENT + "}\n" +
+                "}\n";
+    }
+
+    private static ExecutableElement bindMethod(Context context) {
+        for (ExecutableElement method : context.abstractMethods()) {
+            if (method.getSimpleName().contentEquals(BIND_METHOD)
+                    && method.getReturnType().getKind() == TypeKind.VOID
+                    && method.getParameters().size() == 2
+                    && STATEMENT.equals(method.getParameters().get(0).asType().toString())
+                    && method.getParameters().get(1).asType().getKind() == TypeKind.INT) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    private static String columnName(ExecutableElement getter, String property) {
+        for (AnnotationMirror annotation : getter.getAnnotationMirrors()) {
+            if (COLUMN_NAME.equals(annotation.getAnnotationType().toString())) {
+                for (AnnotationValue value : annotation.getElementValues().values()) {
+                    return value.getValue().toString();
+                }
+            }
+        }
+        return property;
+    }
+
+    private static void appendBinding(Context context, StringBuilder bindings, ExecutableElement getter,
+                                      int offset) {
+        TypeMirror type = getter.getReturnType();
+        String index = offset == 0 ? "index" : "index + " + offset;
+        String value = "value" + offset;
+        String statement = INDENT + INDENT;
+
+        if (type.getKind().isPrimitive()) {
+            bindings.append(statement).append(bindCall(type.getKind(), index,
+                    getter.getSimpleName() + "()")).append(";\n");
+            return;
+        }
+
+        String bindCall;
+        String typeName = type.toString();
+        if ("java.lang.String".equals(typeName)) {
+            bindCall = "statement.bindString(" + index + ", " + value + ")";
+        } else if ("java.util.Date".equals(typeName)) {
+            bindCall = "statement.bindLong(" + index + ", " + value + ".getTime())";
+        } else if (isEnum(type)) {
+            bindCall = "statement.bindString(" + index + ", " + value + ".name())";
+        } else if ("java.lang.Boolean".equals(typeName)) {
+            bindCall = bindCall(TypeKind.BOOLEAN, index, value);
+        } else if ("java.lang.Integer".equals(typeName) || "java.lang.Long".equals(typeName)
+                || "java.lang.Short".equals(typeName)) {
+            bindCall = bindCall(TypeKind.LONG, index, value);
+        } else if ("java.lang.Double".equals(typeName) || "java.lang.Float".equals(typeName)) {
+            bindCall = bindCall(TypeKind.DOUBLE, index, value);
+        } else {
+            context.processingEnvironment().getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Cannot bind " + typeName + " to a statement", getter);
+            return;
+        }
+
+        bindings.append(statement).append(typeName).append(' ').append(value).append(" = ")
+                .append(getter.getSimpleName()).append("();\n")
+                .append(statement).append("if (").append(value).append(" == null) {\n")
+                .append(statement).append(INDENT).append("statement.bindNull(").append(index).append(");\n")
+                .append(statement).append("} else {\n")
+                .append(statement).append(INDENT).append(bindCall).append(";\n")
+                .append(statement).append("}\n");
+    }
+
+    private static String bindCall(TypeKind kind, String index, String value) {
+        switch (kind) {
+            case BOOLEAN:
+                return "statement.bindLong(" + index + ", " + value + " ? 1L : 0L)";
+            case FLOAT:
+            case DOUBLE:
+                return "statement.bindDouble(" + index + ", " + value + ")";
+            default:
+                return "statement.bindLong(" + index + ", " + value + ")";
+        }
+    }
+
+    private static boolean isEnum(TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+        Element element = ((DeclaredType) type).asElement();
+        return element.getKind() == ElementKind.ENUM;
+    }
+
+    private static String join(List<String> parts) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < parts.size(); i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(parts.get(i));
+        }
+        return builder.toString();
+    }
+}
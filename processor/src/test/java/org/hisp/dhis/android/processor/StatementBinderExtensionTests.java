@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2017, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.processor;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+/**
+ * Compiles the models of the test resources with AutoValue, which loads the extension from the classpath, and
+ * compares the generated classes with the golden files next to the models.
+ */
+@RunWith(JUnit4.class)
+public class StatementBinderExtensionTests {
+    private static final String MODELS = "org/hisp/dhis/android/processor/model/";
+    private static final String[] STUBS = {
+            "android/content/ContentValues.java",
+            "android/database/sqlite/SQLiteStatement.java",
+            "com/gabrielittner/auto/value/cursor/ColumnName.java"
+    };
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File generated;
+    private DiagnosticCollector<JavaFileObject> diagnostics;
+
+    @Before
+    public void setUp() throws IOException {
+        generated = temporaryFolder.newFolder("generated");
+        diagnostics = new DiagnosticCollector<>();
+    }
+
+    @Test
+    public void generateClass_shouldBindEveryColumnButTheId() throws Exception {
+        assertThat(compile(MODELS + "RowModel.java")).isTrue();
+
+        assertThat(generatedSource("AutoValue_RowModel.java"))
+                .isEqualTo(resource(MODELS + "AutoValue_RowModel.golden"));
+    }
+
+    @Test
+    public void applicable_shouldBeFalse_withoutBindMethod() throws Exception {
+        assertThat(compile(MODELS + "UnboundModel.java")).isTrue();
+
+        // AutoValue generates the class by itself, with no bindTo() and no columns
+        assertThat(generatedSource("AutoValue_UnboundModel.java")).doesNotContain("COLUMNS");
+    }
+
+    @Test
+    public void generateClass_shouldReportError_ifColumnCannotBeBound() throws Exception {
+        assertThat(compile(MODELS + "UnbindableModel.java")).isFalse();
+
+        List<String> errors = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors.add(diagnostic.getMessage(null));
+            }
+        }
+        assertThat(errors).contains("Cannot bind java.util.List<java.lang.String> to a statement");
+    }
+
+    private boolean compile(String model) throws IOException, URISyntaxException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8);
+        try {
+            List<File> sources = new ArrayList<>();
+            for (String stub : STUBS) {
+                sources.add(resourceFile(stub));
+            }
+            sources.add(resourceFile(model));
+            fileManager.setLocation(StandardLocation.SOURCE_OUTPUT, Collections.singletonList(generated));
+            fileManager.setLocation(StandardLocation.CLASS_OUTPUT,
+                    Collections.singletonList(temporaryFolder.newFolder()));
+
+            // the processors, and the extensions of AutoValue, are found on the classpath of the tests
+            List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"),
+                    "-encoding", "UTF-8", "-implicit:none");
+            return compiler.getTask(null, fileManager, diagnostics, options, null,
+                    fileManager.getJavaFileObjectsFromFiles(sources)).call();
+        } finally {
+            fileManager.close();
+        }
+    }
+
+    private String generatedSource(String name) throws IOException {
+        return new String(Files.readAllBytes(new File(generated, MODELS + name).toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static String resource(String name) throws IOException, URISyntaxException {
+        return new String(Files.readAllBytes(resourceFile(name).toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static File resourceFile(String name) throws URISyntaxException {
+        return new File(StatementBinderExtensionTests.class.getClassLoader().getResource(name).toURI());
+    }
+}
@@ -0,0 +1,15 @@
+package android.database.sqlite;
+
+public class SQLiteStatement {
+    public void bindNull(int index) {
+    }
+
+    public void bindLong(int index, long value) {
+    }
+
+    public void bindDouble(int index, double value) {
+    }
+
+    public void bindString(int index, String value) {
+    }
+}
@@ -0,0 +1,45 @@
+package org.hisp.dhis.android.processor.model;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteStatement;
+
+import com.gabrielittner.auto.value.cursor.ColumnName;
+import com.google.auto.value.AutoValue;
+
+import java.util.Date;
+
+@AutoValue
+public abstract class RowModel {
+    public enum State {
+        SYNCED
+    }
+
+    @ColumnName("_id")
+    public abstract Long id();
+
+    @ColumnName("uid")
+    public abstract String uid();
+
+    @ColumnName("created")
+    public abstract Date created();
+
+    @ColumnName("state")
+    public abstract State state();
+
+    @ColumnName("deleted")
+    public abstract Boolean deleted();
+
+    @ColumnName("sortOrder")
+    public abstract Integer sortOrder();
+
+    @ColumnName("weight")
+    public abstract Double weight();
+
+    public abstract int count();
+
+    public abstract boolean optional();
+
+    public abstract ContentValues toContentValues();
+
+    public abstract void bindTo(SQLiteStatement statement, int index);
+}
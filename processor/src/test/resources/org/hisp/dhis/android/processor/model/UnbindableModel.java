@@ -0,0 +1,14 @@
+package org.hisp.dhis.android.processor.model;
+
+import android.database.sqlite.SQLiteStatement;
+
+import com.google.auto.value.AutoValue;
+
+import java.util.List;
+
+@AutoValue
+public abstract class UnbindableModel {
+    public abstract List<String> uids();
+
+    public abstract void bindTo(SQLiteStatement statement, int index);
+}
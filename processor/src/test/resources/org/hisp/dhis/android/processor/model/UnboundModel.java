@@ -0,0 +1,8 @@
+package org.hisp.dhis.android.processor.model;
+
+import com.google.auto.value.AutoValue;
+
+@AutoValue
+public abstract class UnboundModel {
+    public abstract String uid();
+}